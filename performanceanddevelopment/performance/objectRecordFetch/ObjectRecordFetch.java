@@ -0,0 +1,155 @@
+package performance.objectRecordFetch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.bson.Document;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+
+import us.kbase.workspace.database.mongo.CollectionNames;
+import us.kbase.workspace.database.mongo.LookupObjectRecordFetcher;
+import us.kbase.workspace.database.mongo.ObjectRecordFetcher;
+import us.kbase.workspace.database.mongo.OrQueryObjectRecordFetcher;
+import us.kbase.workspace.database.mongo.PerWorkspaceObjectRecordFetcher;
+
+/** Times each {@link ObjectRecordFetcher} strategy fetching a fixed size batch of object
+ * records spread over increasing numbers of workspaces, and reports the fastest strategy for
+ * each workspace count. Use the results to choose the threshold for
+ * {@link ObjectRecordFetcher#byWorkspaceCount(int, ObjectRecordFetcher, ObjectRecordFetcher)}.
+ *
+ * Requires a MongoDB instance at MONGO_HOST. The database in DB_NAME is dropped.
+ */
+public class ObjectRecordFetch {
+
+	private static final String MONGO_HOST = "localhost:27017";
+	private static final String DB_NAME = "object_record_fetch";
+	// the number of objects fetched per call, e.g. a list_objects batch
+	private static final int BATCH_SIZE = 2000;
+	private static final List<Integer> WORKSPACE_COUNTS = Arrays.asList(
+			1, 10, 100, 500, 1000, 2000);
+	private static final int PER_WORKSPACE_THREADS = 10;
+	private static final int WARMUPS = 3;
+	private static final int REPS = 10;
+
+	public static void main(final String[] args) throws Exception {
+		final MongoClient mc = MongoClients.create("mongodb://" + MONGO_HOST);
+		final MongoDatabase db = mc.getDatabase(DB_NAME);
+		db.drop();
+		load(db);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(PER_WORKSPACE_THREADS);
+		final Map<String, ObjectRecordFetcher> fetchers = new LinkedHashMap<>();
+		fetchers.put("$or", new OrQueryObjectRecordFetcher(db));
+		fetchers.put("$lookup", new LookupObjectRecordFetcher(db));
+		fetchers.put(String.format("per workspace (%s threads)", PER_WORKSPACE_THREADS),
+				new PerWorkspaceObjectRecordFetcher(db, executor, PER_WORKSPACE_THREADS));
+
+		System.out.println(String.format(
+				"Median ms to fetch %s object records over %s runs", BATCH_SIZE, REPS));
+		for (final int wsCount: WORKSPACE_COUNTS) {
+			final Map<Long, Set<Long>> ids = buildRequest(wsCount);
+			String best = null;
+			double bestTime = Double.MAX_VALUE;
+			final StringBuilder sb = new StringBuilder(String.format("%5s workspaces:", wsCount));
+			for (final Entry<String, ObjectRecordFetcher> e: fetchers.entrySet()) {
+				final double time = time(e.getValue(), ids);
+				sb.append(String.format(" %s %.1f", e.getKey(), time));
+				if (time < bestTime) {
+					bestTime = time;
+					best = e.getKey();
+				}
+			}
+			System.out.println(sb.append(" -> best: ").append(best));
+		}
+		executor.shutdown();
+		mc.close();
+	}
+
+	private static double time(final ObjectRecordFetcher fetcher, final Map<Long, Set<Long>> ids)
+			throws Exception {
+		for (int i = 0; i < WARMUPS; i++) {
+			check(fetcher.fetch(ids).size());
+		}
+		final List<Double> times = new ArrayList<>();
+		for (int i = 0; i < REPS; i++) {
+			final long start = System.nanoTime();
+			final int count = fetcher.fetch(ids).size();
+			times.add((System.nanoTime() - start) / 1_000_000.0);
+			check(count);
+		}
+		Collections.sort(times);
+		return times.get(times.size() / 2);
+	}
+
+	private static void check(final int count) {
+		if (count != BATCH_SIZE) {
+			throw new IllegalStateException(String.format(
+					"Expected %s records, got %s", BATCH_SIZE, count));
+		}
+	}
+
+	/* Workspace w is part of the request for every workspace count >= w, so it needs enough
+	 * objects for the smallest such count.
+	 */
+	private static int objectsInWorkspace(final long workspaceID) {
+		for (final int wsCount: WORKSPACE_COUNTS) {
+			if (workspaceID <= wsCount) {
+				return BATCH_SIZE / wsCount;
+			}
+		}
+		throw new IllegalArgumentException("workspace ID out of range: " + workspaceID);
+	}
+
+	private static Map<Long, Set<Long>> buildRequest(final int wsCount) {
+		final Map<Long, Set<Long>> ret = new HashMap<>();
+		for (long ws = 1; ws <= wsCount; ws++) {
+			final Set<Long> objs = new HashSet<>();
+			for (long id = 1; id <= BATCH_SIZE / wsCount; id++) {
+				objs.add(id);
+			}
+			ret.put(ws, objs);
+		}
+		return ret;
+	}
+
+	private static void load(final MongoDatabase db) {
+		final MongoCollection<Document> wsCol = db.getCollection(CollectionNames.COL_WORKSPACES);
+		final MongoCollection<Document> objCol = db.getCollection(
+				CollectionNames.COL_WORKSPACE_OBJS);
+		// the same indexes as the workspace service
+		wsCol.createIndex(new Document("ws", 1), new IndexOptions().unique(true));
+		objCol.createIndex(new Document("ws", 1).append("id", 1),
+				new IndexOptions().unique(true));
+		final int maxWS = WORKSPACE_COUNTS.get(WORKSPACE_COUNTS.size() - 1);
+		final List<Document> objs = new ArrayList<>();
+		for (long ws = 1; ws <= maxWS; ws++) {
+			wsCol.insertOne(new Document("ws", ws).append("name", "ws" + ws));
+			for (long id = 1; id <= objectsInWorkspace(ws); id++) {
+				objs.add(new Document("ws", ws)
+						.append("id", id)
+						.append("name", "obj" + id)
+						.append("del", false)
+						.append("hide", false)
+						.append("numver", 1));
+			}
+		}
+		objCol.insertMany(objs);
+		System.out.println(String.format(
+				"Loaded %s workspaces and %s objects", maxWS, objs.size()));
+	}
+}
@@ -0,0 +1,206 @@
+package performance.referenceCounting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.bson.Document;
+
+import us.kbase.common.utils.Counter;
+import us.kbase.workspace.database.Reference;
+import us.kbase.workspace.database.mongo.ReferenceCounter;
+
+/** Compares the reference counting used when saving, copying, and cloning objects before and
+ * after the {@link ReferenceCounter} was added. Both variants count the references in a list of
+ * version documents, as read from the database when cloning a workspace, and build the
+ * reference count update documents.
+ *
+ * No database is required, so the times cover the counting and the update documents only.
+ */
+public class ReferenceCountingBenchmark {
+
+	private static final int WARMUPS = 10;
+	private static final int REPS = 30;
+
+	private static final String REF = "ref";
+	private static final String PROVREF = "provrefs";
+
+	public static void main(final String[] args) throws Exception {
+		// versions, referenced workspaces, referenced objects per workspace
+		final int[][] inputs = {
+				{1_000, 5, 500},
+				{10_000, 10, 5_000},
+				{50_000, 10, 20_000},
+				{100_000, 20, 50_000},
+		};
+		for (final int[] in: inputs) {
+			final List<Map<String, Object>> versions = makeVersions(in[0], in[1], in[2]);
+			long refs = 0;
+			for (final Map<String, Object> v: versions) {
+				refs += refs(v).size();
+			}
+			final double nested = time(() -> nestedMaps(versions));
+			final double counter = time(() -> referenceCounter(versions));
+			System.out.println(String.format(
+					"%7s versions %7s refs: nested maps ms %.3f ReferenceCounter ms %.3f",
+					in[0], refs, nested, counter));
+		}
+	}
+
+	/* Each version references one object and has 0 - 2 provenance references, which may
+	 * repeat the object reference. The versions of the referenced objects are skewed towards 1.
+	 */
+	private static List<Map<String, Object>> makeVersions(
+			final int count,
+			final int workspaces,
+			final int objects) {
+		final Random r = new Random(42);
+		final List<Map<String, Object>> ret = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			final String ref = randomRef(r, workspaces, objects);
+			final List<String> prov = new ArrayList<>();
+			final int provcount = r.nextInt(3);
+			for (int j = 0; j < provcount; j++) {
+				prov.add(r.nextInt(4) == 0 ? ref : randomRef(r, workspaces, objects));
+			}
+			final Map<String, Object> v = new HashMap<>();
+			v.put(REF, new ArrayList<>(Collections.singletonList(ref)));
+			v.put(PROVREF, prov);
+			ret.add(v);
+		}
+		return ret;
+	}
+
+	private static String randomRef(final Random r, final int workspaces, final int objects) {
+		final int ver = r.nextInt(10) < 8 ? 1 : r.nextInt(5) + 2;
+		return new Reference(r.nextInt(workspaces) + 1, r.nextInt(objects) + 1, ver).toString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Set<String> refs(final Map<String, Object> v) {
+		final Set<String> refs = new HashSet<>((List<String>) v.get(REF));
+		refs.addAll((List<String>) v.get(PROVREF));
+		return refs;
+	}
+
+	private interface Run {
+		int run();
+	}
+
+	// returns the median time in ms
+	private static double time(final Run r) {
+		int sink = 0;
+		for (int i = 0; i < WARMUPS; i++) {
+			sink += r.run();
+		}
+		final List<Double> times = new ArrayList<>();
+		for (int i = 0; i < REPS; i++) {
+			final long start = System.nanoTime();
+			sink += r.run();
+			times.add((System.nanoTime() - start) / 1_000_000.0);
+		}
+		if (sink == 42) {
+			System.out.println(); // prevent dead code elimination
+		}
+		Collections.sort(times);
+		return times.get(times.size() / 2);
+	}
+
+	private static int referenceCounter(final List<Map<String, Object>> versions) {
+		final ReferenceCounter counter = new ReferenceCounter(versions.size());
+		for (final Map<String, Object> v: versions) {
+			for (final String s: refs(v)) {
+				counter.add(s);
+			}
+		}
+		return counter.toUpdates().size();
+	}
+
+	/* The code below is the counting code from MongoWorkspaceDB before the ReferenceCounter
+	 * was added.
+	 */
+
+	private static class VerCount {
+		final public int ver;
+		final public int count;
+
+		public VerCount (final int ver, final int count) {
+			this.ver = ver;
+			this.count = count;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + count;
+			result = prime * result + ver;
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			VerCount other = (VerCount) obj;
+			if (count != other.count)
+				return false;
+			if (ver != other.ver)
+				return false;
+			return true;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static int nestedMaps(final List<Map<String, Object>> versions) {
+		final Map<Long, Map<Long, Map<Integer, Counter>>> refcounts = new HashMap<>();
+		for (final Map<String, Object> p: versions) {
+			final Set<Reference> refs = new HashSet<Reference>();
+			for (final String s: (List<String>) p.get(REF)) {
+				refs.add(new Reference(s));
+			}
+			for (final String s: (List<String>) p.get(PROVREF)) {
+				refs.add(new Reference(s));
+			}
+			for (final Reference r: refs) {
+				refcounts.computeIfAbsent(r.getWorkspaceID(), k -> new HashMap<>())
+						.computeIfAbsent(r.getObjectID(), k -> new HashMap<>())
+						.computeIfAbsent(r.getVersion(), k -> new Counter())
+						.increment();
+			}
+		}
+		final Map<VerCount, Map<Long, List<Long>>> queries = new HashMap<>();
+		for (final Long ws: refcounts.keySet()) {
+			for (final Long obj: refcounts.get(ws).keySet()) {
+				for (final Integer ver: refcounts.get(ws).get(obj).keySet()) {
+					final VerCount vc = new VerCount(ver,
+							refcounts.get(ws).get(obj).get(ver).getValue());
+					queries.computeIfAbsent(vc, k -> new HashMap<>())
+							.computeIfAbsent(ws, k -> new LinkedList<>()).add(obj);
+				}
+			}
+		}
+		final List<Document> updates = new ArrayList<>();
+		for (final VerCount vc: queries.keySet()) {
+			final List<Document> orquery = new LinkedList<>();
+			for (final Long ws: queries.get(vc).keySet()) {
+				orquery.add(new Document("ws", ws)
+						.append("id", new Document("$in", queries.get(vc).get(ws))));
+			}
+			updates.add(new Document("$or", orquery));
+			updates.add(new Document("$inc",
+					new Document("refcnt." + (vc.ver - 1), vc.count)));
+		}
+		return updates.size();
+	}
+}
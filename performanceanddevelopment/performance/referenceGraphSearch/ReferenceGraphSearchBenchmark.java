@@ -0,0 +1,188 @@
+package performance.referenceGraphSearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import us.kbase.workspace.database.Reference;
+import us.kbase.workspace.database.refsearch.ReferenceGraphSearch;
+import us.kbase.workspace.database.refsearch.ReferenceGraphSearch.SearchMode;
+import us.kbase.workspace.database.refsearch.ReferenceGraphTopologyProvider;
+
+/** Compares the {@link SearchMode}s of {@link ReferenceGraphSearch} on synthetic reference
+ * graphs held in memory, reporting the number of calls to the topology provider, the number of
+ * references the provider returned, and the median search time.
+ *
+ * The graphs follow the legacy reference BFS experiment (linear chains and branched trees) and
+ * add a lattice where many target objects share the same ancestors.
+ *
+ * No database is required, so the times only cover the search itself. With the Mongo backed
+ * provider the number of references returned dominates the time.
+ */
+public class ReferenceGraphSearchBenchmark {
+
+	private static final int MAX_SEARCH = 100_000_000;
+	private static final int WARMUPS = 5;
+	private static final int REPS = 20;
+
+	// the search terminates at objects in this workspace, e.g. a readable workspace
+	private static final long READABLE_WS = 1;
+	private static final long PRIVATE_WS = 2;
+
+	public static void main(final String[] args) throws Exception {
+		System.out.println("Linear chains");
+		for (final int depth: Arrays.asList(1, 10, 25, 50)) {
+			run(String.format("depth %s", depth), linearChain(depth));
+		}
+		System.out.println("Branched trees, depth 6");
+		for (final int breadth: Arrays.asList(1, 2, 3, 4, 5)) {
+			run(String.format("breadth %s", breadth), branchedTree(6, breadth));
+		}
+		System.out.println("Lattices, 100 targets");
+		for (final int width: Arrays.asList(1, 10, 50)) {
+			for (final int depth: Arrays.asList(5, 20)) {
+				run(String.format("width %s depth %s", width, depth),
+						lattice(100, width, depth));
+			}
+		}
+	}
+
+	private static class Graph implements ReferenceGraphTopologyProvider {
+
+		// references to the objects that reference them, e.g. the search direction
+		private final Map<Reference, Map<Reference, Boolean>> incoming = new HashMap<>();
+		private final Set<Reference> targets = new HashSet<>();
+		private long nextObjectID = 1;
+		private int calls = 0;
+		private long returned = 0;
+
+		private Reference newRef(final long workspaceID) {
+			return new Reference(workspaceID, nextObjectID++, 1);
+		}
+
+		private void addReference(final Reference from, final Reference to) {
+			incoming.computeIfAbsent(to, k -> new LinkedHashMap<>())
+					.put(from, from.getWorkspaceID() == READABLE_WS);
+		}
+
+		@Override
+		public Map<Reference, Map<Reference, Boolean>> getAssociatedReferences(
+				final Set<Reference> sourceRefs) {
+			calls++;
+			final Map<Reference, Map<Reference, Boolean>> ret = new HashMap<>();
+			for (final Reference r: sourceRefs) {
+				final Map<Reference, Boolean> refs = incoming.getOrDefault(
+						r, Collections.emptyMap());
+				returned += refs.size();
+				ret.put(r, refs);
+			}
+			return ret;
+		}
+	}
+
+	/* A single target at the end of a chain of private objects, referenced by a readable
+	 * object.
+	 */
+	private static Graph linearChain(final int depth) {
+		final Graph g = new Graph();
+		Reference ref = g.newRef(PRIVATE_WS);
+		g.targets.add(ref);
+		for (int i = 1; i < depth; i++) {
+			final Reference next = g.newRef(PRIVATE_WS);
+			g.addReference(next, ref);
+			ref = next;
+		}
+		g.addReference(g.newRef(READABLE_WS), ref);
+		return g;
+	}
+
+	/* A single target where every private object has breadth incoming references. Only the
+	 * objects at the bottom of the tree are readable.
+	 */
+	private static Graph branchedTree(final int depth, final int breadth) {
+		final Graph g = new Graph();
+		List<Reference> level = Arrays.asList(g.newRef(PRIVATE_WS));
+		g.targets.addAll(level);
+		for (int d = 1; d <= depth; d++) {
+			final List<Reference> next = new ArrayList<>();
+			for (final Reference r: level) {
+				for (int b = 0; b < breadth; b++) {
+					final Reference from = g.newRef(d == depth ? READABLE_WS : PRIVATE_WS);
+					g.addReference(from, r);
+					next.add(from);
+				}
+			}
+			level = next;
+		}
+		return g;
+	}
+
+	/* Many targets, each referenced by every object in the first layer of private objects.
+	 * Every object in a layer is referenced by every object in the next layer, and the last
+	 * layer is referenced by a single readable object. For example, a set of objects produced
+	 * by the same chain of analyses.
+	 */
+	private static Graph lattice(final int targets, final int width, final int depth) {
+		final Graph g = new Graph();
+		List<Reference> level = new ArrayList<>();
+		for (int i = 0; i < targets; i++) {
+			level.add(g.newRef(PRIVATE_WS));
+		}
+		g.targets.addAll(level);
+		for (int d = 0; d < depth; d++) {
+			final List<Reference> next = new ArrayList<>();
+			for (int i = 0; i < width; i++) {
+				next.add(g.newRef(PRIVATE_WS));
+			}
+			for (final Reference from: next) {
+				for (final Reference to: level) {
+					g.addReference(from, to);
+				}
+			}
+			level = next;
+		}
+		final Reference top = g.newRef(READABLE_WS);
+		for (final Reference to: level) {
+			g.addReference(top, to);
+		}
+		return g;
+	}
+
+	private static void run(final String name, final Graph g) throws Exception {
+		final StringBuilder sb = new StringBuilder(String.format("%20s:", name));
+		for (final SearchMode mode: SearchMode.values()) {
+			g.calls = 0;
+			g.returned = 0;
+			search(g, mode);
+			final int calls = g.calls;
+			final long returned = g.returned;
+			for (int i = 0; i < WARMUPS; i++) {
+				search(g, mode);
+			}
+			final List<Double> times = new ArrayList<>();
+			for (int i = 0; i < REPS; i++) {
+				final long start = System.nanoTime();
+				search(g, mode);
+				times.add((System.nanoTime() - start) / 1_000_000.0);
+			}
+			Collections.sort(times);
+			sb.append(String.format(" %s calls %s refs %s ms %.3f",
+					mode, calls, returned, times.get(times.size() / 2)));
+		}
+		System.out.println(sb);
+	}
+
+	private static void search(final Graph g, final SearchMode mode) throws Exception {
+		final ReferenceGraphSearch s = new ReferenceGraphSearch(
+				g.targets, g, MAX_SEARCH, true, mode);
+		for (final Reference r: g.targets) {
+			s.getPath(r);
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package performance.saveObjectsRoundTrips;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.bson.BsonDocument;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+
+import us.kbase.typedobj.core.LocalTypeProvider;
+import us.kbase.typedobj.core.TempFilesManager;
+import us.kbase.typedobj.core.TypeDefId;
+import us.kbase.typedobj.core.TypeDefName;
+import us.kbase.typedobj.core.TypedObjectValidator;
+import us.kbase.typedobj.db.MongoTypeStorage;
+import us.kbase.typedobj.db.TypeDefinitionDB;
+import us.kbase.typedobj.idref.IdReferenceHandlerSetFactoryBuilder;
+import us.kbase.workspace.database.ObjectIDNoWSNoVer;
+import us.kbase.workspace.database.ResourceUsageConfigurationBuilder;
+import us.kbase.workspace.database.Types;
+import us.kbase.workspace.database.Workspace;
+import us.kbase.workspace.database.WorkspaceIdentifier;
+import us.kbase.workspace.database.WorkspaceSaveObject;
+import us.kbase.workspace.database.WorkspaceUser;
+import us.kbase.workspace.database.WorkspaceUserMetadata;
+import us.kbase.workspace.database.mongo.GridFSBlobStore;
+import us.kbase.workspace.database.mongo.MongoWorkspaceDB;
+import us.kbase.workspace.database.provenance.Provenance;
+
+/** Counts the MongoDB commands, and therefore round trips, sent by saveObjects calls that
+ * save many small objects. Run against the code before and after a change to the save code
+ * to compare the number of round trips per object.
+ * 
+ * Requires a MongoDB instance at MONGO_HOST. The databases in DB_NAME and TYPE_DB_NAME are
+ * dropped.
+ */
+public class SaveObjectsRoundTrips {
+	
+	private static final String MONGO_HOST = "localhost:27017";
+	private static final String DB_NAME = "saveobjs_roundtrips";
+	private static final String TYPE_DB_NAME = "saveobjs_roundtrips_types";
+	private static final List<Integer> OBJECT_COUNTS = Arrays.asList(1, 10, 100, 1000);
+	private static final TypeDefId TYPE =
+			new TypeDefId(new TypeDefName("SomeModule", "AType"), 0, 1);
+	private static final WorkspaceUser USER = new WorkspaceUser("foo");
+	
+	private static class CommandCounter implements CommandListener {
+		
+		private final Map<String, Integer> counts = new TreeMap<>();
+		
+		@Override
+		public synchronized void commandStarted(final CommandStartedEvent event) {
+			final BsonDocument cmd = event.getCommand();
+			final String target = cmd.isString(event.getCommandName()) ?
+					cmd.getString(event.getCommandName()).getValue() : "";
+			counts.merge(event.getCommandName() + " " + target, 1, Integer::sum);
+		}
+		
+		public synchronized Map<String, Integer> reset() {
+			final Map<String, Integer> ret = new TreeMap<>(counts);
+			counts.clear();
+			return ret;
+		}
+	}
+	
+	public static void main(final String[] args) throws Exception {
+		final CommandCounter counter = new CommandCounter();
+		final MongoClient mc = MongoClients.create(MongoClientSettings.builder()
+				.applyConnectionString(new ConnectionString("mongodb://" + MONGO_HOST))
+				.addCommandListener(counter)
+				.build());
+		final MongoDatabase db = mc.getDatabase(DB_NAME);
+		final MongoDatabase tdb = mc.getDatabase(TYPE_DB_NAME);
+		db.drop();
+		tdb.drop();
+		final File tempDir = Files.createTempDirectory("saveobjs_roundtrips").toFile();
+		final TypeDefinitionDB typeDB = new TypeDefinitionDB(new MongoTypeStorage(tdb));
+		final Workspace ws = new Workspace(
+				new MongoWorkspaceDB(db, new GridFSBlobStore(db)),
+				new ResourceUsageConfigurationBuilder().build(),
+				new TypedObjectValidator(new LocalTypeProvider(typeDB)),
+				new TempFilesManager(tempDir));
+		final Types types = new Types(typeDB);
+		types.requestModuleRegistration(USER, "SomeModule");
+		types.resolveModuleRegistration("SomeModule", true);
+		types.compileNewTypeSpec(USER,
+				"module SomeModule {" +
+				"    /* @optional thing */" +
+				"    typedef structure {" +
+				"        string thing;" +
+				"    } AType;" +
+				"};",
+				Arrays.asList("AType"), null, null, false, null);
+		types.releaseTypes(USER, "SomeModule");
+
+		for (final int count: OBJECT_COUNTS) {
+			final WorkspaceIdentifier wsi = new WorkspaceIdentifier("ws" + count);
+			ws.createWorkspace(USER, wsi.getName(), false, null, null);
+			counter.reset();
+			save(ws, wsi, count);
+			print("new objects", count, counter.reset());
+			save(ws, wsi, count);
+			print("new versions of existing objects", count, counter.reset());
+		}
+		mc.close();
+	}
+
+	private static void save(final Workspace ws, final WorkspaceIdentifier wsi, final int count)
+			throws Exception {
+		final List<WorkspaceSaveObject> objs = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			final Map<String, Object> data = new HashMap<>();
+			data.put("thing", "value" + i);
+			objs.add(new WorkspaceSaveObject(
+					new ObjectIDNoWSNoVer("obj" + i),
+					data,
+					TYPE,
+					new WorkspaceUserMetadata(),
+					Provenance.getBuilder(USER, Instant.now()).build(),
+					false));
+		}
+		ws.saveObjects(USER, wsi, objs, IdReferenceHandlerSetFactoryBuilder
+				.getBuilder(100000).build().getFactory(null));
+	}
+
+	private static void print(
+			final String desc,
+			final int count,
+			final Map<String, Integer> commands) {
+		final int total = commands.values().stream().mapToInt(i -> i).sum();
+		System.out.println(String.format("Saving %s %s: %s commands, %.2f per object",
+				count, desc, total, total / (double) count));
+		for (final String cmd: commands.keySet()) {
+			System.out.println(String.format("    %s: %s", cmd, commands.get(cmd)));
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package performance.versionDecoding;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import us.kbase.workspace.database.mongo.VersionRecord;
+import us.kbase.workspace.database.mongo.VersionRecordCodec;
+
+/** Compares decoding workspace object version documents to a Document that is then copied to
+ * a map, as list_objects used to do, with decoding the documents directly to
+ * {@link VersionRecord}s. See versionDecoding.md for how to run the benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VersionDecoding {
+
+	// the number of documents decoded per benchmark invocation, e.g. a list_objects call
+	private static final int DOCS = 10000;
+
+	@Param({"0", "10"})
+	public int metadataEntries;
+
+	private final DocumentCodec documentCodec = new DocumentCodec();
+	private final VersionRecordCodec recordCodec = new VersionRecordCodec();
+	private final List<byte[]> docs = new ArrayList<>();
+
+	@Setup
+	public void setup() {
+		for (int i = 0; i < DOCS; i++) {
+			docs.add(toBytes(makeDocument(i)));
+		}
+	}
+
+	private Document makeDocument(final int id) {
+		final List<Document> meta = new ArrayList<>();
+		for (int i = 0; i < metadataEntries; i++) {
+			meta.add(new Document("k", "key" + i).append("v", "value" + i));
+		}
+		// the list_objects projection, plus the _id which is always returned
+		return new Document("_id", new ObjectId())
+				.append("ws", 1L)
+				.append("id", (long) id)
+				.append("ver", 1)
+				.append("tyname", "KBaseGenomes.Genome")
+				.append("tymaj", 14)
+				.append("tymin", 2)
+				.append("savedate", new Date())
+				.append("savedby", "someuser")
+				.append("chksum", "a2d2c4a0b2e1e9d3c6d2b1e0f9a8c7b6")
+				.append("size", 123456789L)
+				.append("meta", meta)
+				.append("adminmeta", new ArrayList<>());
+	}
+
+	private byte[] toBytes(final Document doc) {
+		final BasicOutputBuffer buf = new BasicOutputBuffer();
+		documentCodec.encode(new BsonBinaryWriter(buf), doc, EncoderContext.builder().build());
+		return buf.toByteArray();
+	}
+
+	private static BsonBinaryReader reader(final byte[] doc) {
+		return new BsonBinaryReader(ByteBuffer.wrap(doc));
+	}
+
+	@Benchmark
+	public void decodeToMap(final Blackhole bh) {
+		for (final byte[] doc: docs) {
+			final Document d = documentCodec.decode(reader(doc), DecoderContext.builder().build());
+			// equivalent to QueryMethods.dbObjectToMap
+			final Map<String, Object> m = new HashMap<>();
+			for (final String name: d.keySet()) {
+				m.put(name, d.get(name));
+			}
+			bh.consume(m);
+		}
+	}
+
+	@Benchmark
+	public void decodeToRecord(final Blackhole bh) {
+		for (final byte[] doc: docs) {
+			bh.consume(recordCodec.decode(reader(doc), DecoderContext.builder().build()));
+		}
+	}
+}
@@ -55,6 +55,19 @@ public class JsonTokenStreamWriter {
 		JsonToken t = src.nextToken();
 		if (src.isComplete() || jgen == null)
 			return t;
+		writeToken(t, src, jgen);
+		return t;
+	}
+	
+	/**
+	 * Write a single token, which must be the current token of the source, to a generator.
+	 * @param t the token to write.
+	 * @param src the source of the token, used to get text and numeric values.
+	 * @param jgen the target generator.
+	 * @throws IOException if an IO error occurs.
+	 */
+	static void writeToken(final JsonToken t, final TokenSequenceProvider src,
+			final JsonGenerator jgen) throws IOException {
 		if (t == JsonToken.START_ARRAY) {
 			jgen.writeStartArray();
 		} else if (t == JsonToken.START_OBJECT) {
@@ -101,6 +114,25 @@ public class JsonTokenStreamWriter {
 		} else {
 			throw new IOException("Unexpected token type: " + t);
 		}
-		return t;
+	}
+	
+	/**
+	 * Get the text of a numeric token as it would be written by {@link #writeToken}.
+	 * @param t the token, which must be a numeric token.
+	 * @param value the value of the token.
+	 * @return the text of the number.
+	 */
+	static String getNumberText(final JsonToken t, final Number value) {
+		if (t == JsonToken.VALUE_NUMBER_INT) {
+			if (value instanceof Short || value instanceof Integer || value instanceof Long ||
+					value instanceof BigInteger) {
+				return value.toString();
+			}
+			return Long.toString(value.longValue());
+		}
+		if (value instanceof Float || value instanceof Double || value instanceof BigDecimal) {
+			return value.toString();
+		}
+		return Double.toString(value.doubleValue());
 	}
 }
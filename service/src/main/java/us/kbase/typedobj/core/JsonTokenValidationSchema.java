@@ -25,6 +25,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * This is main validation algorithm.
+ * 
+ * A schema is not modified after parsing and so may be shared between threads and reused for
+ * any number of validations.
  * @author rsutormin
  */
 public class JsonTokenValidationSchema {
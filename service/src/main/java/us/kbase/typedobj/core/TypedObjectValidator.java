@@ -6,6 +6,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -53,6 +58,9 @@ import us.kbase.typedobj.idref.IdReferenceHandlerSet.TooManyIdsException;
  *   ... handle invalid typed object
  * }
  * 
+ * Parsed type schemas are cached by absolute type ID so that validating many objects of the
+ * same type only parses the type's JSONSchema once. The cache is bounded by the total size
+ * of the cached JSONSchema documents.
  * 
  * @author msneddon
  * @author gaprice@lbl.gov
@@ -70,12 +78,37 @@ public class TypedObjectValidator {
 	
 	private static final int maxErrorCount = 10;
 	
+	/** The default maximum size of the parsed schema cache. The size of a cache entry is
+	 * calculated as the number of characters in the JSONSchema document from which the parsed
+	 * schema was generated. The parsed schema itself, references, etc. are not accounted for.
+	 */
+	public static final int DEFAULT_SCHEMA_CACHE_MAX_SIZE = 8 * 1024 * 1024;
+	
 	/**
 	 * This object is used to fetch the typed object Json Schema documents and
 	 * JsonSchema objects which are used for validation
 	 */
 	private TypeProvider typeProvider;
 	
+	// null if caching is disabled
+	private final Cache<AbsoluteTypeDefId, CachedSchema> schemaCache;
+	// hits and misses are recorded here rather than by the cache so that stale entries count
+	// as misses
+	private final StatsCounter schemaCacheStats = new ConcurrentStatsCounter();
+	
+	private static class CachedSchema {
+		
+		// keep the source document so that a changed schema for the same absolute type,
+		// which should never happen outside of tests, is never validated against a stale tree
+		private final String jsonSchema;
+		private final JsonTokenValidationSchema schema;
+		
+		private CachedSchema(final String jsonSchema, final JsonTokenValidationSchema schema) {
+			this.jsonSchema = jsonSchema;
+			this.schema = schema;
+		}
+	}
+	
 	
 	/**
 	 * Get the type provider the validator validates typed object instances against.
@@ -87,10 +120,73 @@ public class TypedObjectValidator {
 	
 	
 	/**
-	 * Construct a TypedObjectValidator set to the specified Typed Provider
+	 * Construct a TypedObjectValidator set to the specified Typed Provider with the default
+	 * parsed schema cache size, {@link #DEFAULT_SCHEMA_CACHE_MAX_SIZE}.
 	 */
 	public TypedObjectValidator(TypeProvider typeProvider) {
+		this(typeProvider, DEFAULT_SCHEMA_CACHE_MAX_SIZE);
+	}
+	
+	/**
+	 * Construct a TypedObjectValidator set to the specified Typed Provider.
+	 * @param typeProvider the type provider.
+	 * @param schemaCacheMaxSize the maximum size of the parsed schema cache, calculated as the
+	 * sum of the number of characters in the JSONSchema documents of the cached schemas.
+	 * Pass 0 to disable caching.
+	 */
+	public TypedObjectValidator(
+			final TypeProvider typeProvider,
+			final long schemaCacheMaxSize) {
+		if (schemaCacheMaxSize < 0) {
+			throw new IllegalArgumentException("schemaCacheMaxSize must be >= 0");
+		}
 		this.typeProvider = typeProvider;
+		// TODO JAVA11 upgrade Caffeine to v3.x after dumping java 8
+		this.schemaCache = schemaCacheMaxSize == 0 ? null : Caffeine.newBuilder()
+				.maximumWeight(schemaCacheMaxSize)
+				.weigher((AbsoluteTypeDefId k, CachedSchema v) -> v.jsonSchema.length())
+				.recordStats(() -> schemaCacheStats)
+				.build();
+	}
+	
+	/** Get statistics for the parsed schema cache, including the hit and miss counts.
+	 * @return the cache statistics.
+	 */
+	public CacheStats getSchemaCacheStats() {
+		return schemaCacheStats.snapshot();
+	}
+	
+	/** Get the approximate number of parsed schemas in the cache.
+	 * @return the number of cached schemas.
+	 */
+	public long getSchemaCacheSize() {
+		return schemaCache == null ? 0 : schemaCache.estimatedSize();
+	}
+	
+	private JsonTokenValidationSchema getSchema(final ResolvedType rtype)
+			throws TypedObjectSchemaException {
+		// the map view doesn't record statistics, so a stale entry can be recorded as a miss
+		final CachedSchema cached = schemaCache == null ?
+				null : schemaCache.asMap().get(rtype.getType());
+		if (cached != null && cached.jsonSchema.equals(rtype.getJsonSchema())) {
+			schemaCacheStats.recordHits(1);
+			return cached.schema;
+		}
+		schemaCacheStats.recordMisses(1);
+		// parsing the same schema concurrently is harmless, so don't block other threads
+		final long start = System.nanoTime();
+		final JsonTokenValidationSchema schema;
+		try {
+			schema = JsonTokenValidationSchema.parseJsonSchema(rtype.getJsonSchema());
+		} catch (TypedObjectSchemaException | RuntimeException e) {
+			schemaCacheStats.recordLoadFailure(System.nanoTime() - start);
+			throw e;
+		}
+		schemaCacheStats.recordLoadSuccess(System.nanoTime() - start);
+		if (schemaCache != null) {
+			schemaCache.put(rtype.getType(), new CachedSchema(rtype.getJsonSchema(), schema));
+		}
+		return schema;
 	}
 	
 	// TODO MEMORY delete these methods that work on strings / JSON nodes. They'll kill memory
@@ -179,8 +275,7 @@ public class TypedObjectValidator {
 				TypeFetchException {
 		final List<String> errors = new ArrayList<>();
 		final ResolvedType rtype = typeProvider.getTypeJsonSchema(typeDefId);
-		final JsonTokenValidationSchema schema =
-				JsonTokenValidationSchema.parseJsonSchema(rtype.getJsonSchema());
+		final JsonTokenValidationSchema schema = getSchema(rtype);
 		
 		// these must be arrays to get the inner class def override to work
 		final JsonNode [] metadataSelection = new JsonNode[] {null};
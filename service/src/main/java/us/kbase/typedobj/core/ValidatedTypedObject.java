@@ -16,6 +16,7 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import us.kbase.common.service.JsonTokenStream;
 import us.kbase.common.service.UObject;
@@ -42,6 +43,13 @@ import com.fasterxml.jackson.databind.JsonNode;
  * {@link ValidatedTypedObject#sort(UTF8JsonSorterFactory)} or
  * {@link ValidatedTypedObject#sort(UTF8JsonSorterFactory, TempFilesManager)} method must be
  * called.
+ * 
+ * To minimize the number of passes through the object data, call
+ * {@link #relabel(TempFilesManager, long, long, long)} once IDs have been processed. This
+ * calculates the relabeled size, checks the sort order, calculates the MD5 and extracts the
+ * metadata in the same pass that writes the relabeled object, and subsequent calls to
+ * {@link #sort(UTF8JsonSorterFactory, TempFilesManager)} and {@link #extractMetadata(long)}
+ * reuse the results.
  *
  * @author msneddon
  * @author rsutormin
@@ -89,6 +97,14 @@ public class ValidatedTypedObject implements Restreamable {
 	
 	private File fileCache = null;
 	
+	// true if the caches contain the output of relabel() that has not yet been consumed by sort()
+	private boolean relabeledCache = false;
+	
+	// metadata extracted during relabeling. Only valid if inlineMetadataMaxSize > 0.
+	private long inlineMetadataMaxSize = -1;
+	private ExtractedMetadata inlineMetadata = null;
+	private ExceededMaxMetadataSizeException inlineMetadataException = null;
+	
 	private final JsonTokenValidationSchema schema;
 	
 	/**
@@ -159,7 +175,8 @@ public class ValidatedTypedObject implements Restreamable {
 	 */
 	@Override
 	public InputStream getInputStream() {
-		if (byteCache == null && fileCache == null) {
+		// md5 is null if the caches contain relabeled but unsorted data
+		if (md5 == null || (byteCache == null && fileCache == null)) {
 			throw new IllegalStateException(
 					"You must call sort() prior to accessing the object data.");
 		}
@@ -247,9 +264,155 @@ public class ValidatedTypedObject implements Restreamable {
 		}
 	}
 
+	/** Relabel ids and keep a copy of the relabeled object, calculating the relabeled size,
+	 * whether the object is naturally sorted, the MD5 of the object if it is naturally sorted,
+	 * and the object metadata in the same pass through the object.
+	 * 
+	 * The results are reused by {@link #sort(UTF8JsonSorterFactory, TempFilesManager)},
+	 * which only needs to make another pass through the data if the object is not naturally
+	 * sorted, and by {@link #extractMetadata(long)} when called with the same maximum metadata
+	 * size.
+	 * 
+	 * If the relabeled object is larger than maxSize, the copy of the object is discarded,
+	 * although the size is still calculated. Check {@link #getRelabeledSize()} after calling
+	 * this method.
+	 * @param tfm the temporary file manager to use for storing the relabeled object if it is
+	 * larger than maxMemoryUsage. If null, the object is always stored in memory.
+	 * @param maxMemoryUsage the maximum size of the relabeled object that will be stored in
+	 * memory.
+	 * @param maxSize the maximum size of the relabeled object that will be stored.
+	 * @param maxMetadataSize the maximum size of the extracted metadata, as for
+	 * {@link #extractMetadata(long)}. If less than 1, metadata is not extracted.
+	 * @throws IOException if an IO error occurs.
+	 */
+	public void relabel(
+			final TempFilesManager tfm,
+			final long maxMemoryUsage,
+			final long maxSize,
+			final long maxMetadataSize)
+			throws IOException {
+		relabel(tfm, new AtomicLong(maxMemoryUsage), maxSize, maxMetadataSize);
+	}
+	
+	/** Relabel ids and keep a copy of the relabeled object as
+	 * {@link #relabel(TempFilesManager, long, long, long)}, but with the memory available for
+	 * storing the object shared with other objects.
+	 * 
+	 * The size of the object is subtracted from memoryAvailable if the object is stored in
+	 * memory. If there is insufficient memory available, the object is stored in a file. This
+	 * allows relabeling several objects concurrently without exceeding a total memory limit.
+	 * @param tfm the temporary file manager to use for storing the relabeled object if there is
+	 * insufficient memory available. If null, the object is always stored in memory and
+	 * memoryAvailable is ignored.
+	 * @param memoryAvailable the memory available for storing relabeled objects.
+	 * @param maxSize the maximum size of the relabeled object that will be stored.
+	 * @param maxMetadataSize the maximum size of the extracted metadata, as for
+	 * {@link #extractMetadata(long)}. If less than 1, metadata is not extracted.
+	 * @throws IOException if an IO error occurs.
+	 */
+	public void relabel(
+			final TempFilesManager tfm,
+			final AtomicLong memoryAvailable,
+			final long maxSize,
+			final long maxMetadataSize)
+			throws IOException {
+		if (memoryAvailable == null) {
+			throw new NullPointerException("memoryAvailable");
+		}
+		if (!idHandler.wereIdsProcessed()) {
+			throw new IllegalStateException(
+					"Must process IDs in handler prior to relabling");
+		}
+		destroyCachedResources();
+		md5 = null;
+		clearInlineMetadata();
+		final MessageDigest digest = getMD5Digest();
+		final RelabelOutputStream out = new RelabelOutputStream(tfm, memoryAvailable, maxSize);
+		final IdRefTokenSequenceProvider idSubst;
+		try {
+			final JsonGenerator jgen = new JsonFactory().createGenerator(
+					new DigestOutputStream(out, digest));
+			idSubst = new IdRefTokenSequenceProvider(
+					tokenStreamProvider.getPlacedStream(), schema, idHandler);
+			try {
+				final WritingTokenSequenceProvider wtsp =
+						new WritingTokenSequenceProvider(idSubst, jgen);
+				if (maxMetadataSize > 0 && isInstanceValid()) {
+					extractMetadataInline(wtsp, maxMetadataSize);
+				}
+				wtsp.writeRemainingTokens();
+				jgen.close();
+			} finally {
+				idSubst.close();
+			}
+		} catch (IOException | RuntimeException | Error e) {
+			out.destroy();
+			clearInlineMetadata();
+			throw e;
+		}
+		size = out.getSize();
+		naturallySorted = idSubst.isSorted();
+		if (out.isDiscarded()) {
+			return;
+		}
+		byteCache = out.getBytes();
+		fileCache = out.getFile();
+		relabeledCache = true;
+		if (naturallySorted) {
+			md5 = getMD5fromDigest(digest);
+		}
+	}
+	
+	private void extractMetadataInline(
+			final TokenSequenceProvider tsp,
+			final long maxMetadataSize)
+			throws IOException {
+		inlineMetadataMaxSize = maxMetadataSize;
+		try {
+			inlineMetadata = MetadataExtractor.extractFields(tsp,
+					new MetadataExtractionHandler(wsMetadataSelection, maxMetadataSize));
+		} catch (ExceededMaxMetadataSizeException e) {
+			// thrown when extractMetadata() is called, like a normal extraction
+			inlineMetadataException = e;
+		}
+	}
+	
+	private void clearInlineMetadata() {
+		inlineMetadataMaxSize = -1;
+		inlineMetadata = null;
+		inlineMetadataException = null;
+	}
+	
+	/** Move the copy of the object created by
+	 * {@link #relabel(TempFilesManager, long, long, long)} or by sorting to a temporary file if
+	 * it is currently stored in memory. This allows a caller to keep objects in memory until a
+	 * memory limit is exceeded, and then move all the objects to disk.
+	 * @param tfm the temporary file manager to use to create the file.
+	 * @throws IOException if an IO error occurs.
+	 */
+	public void moveCacheToFile(final TempFilesManager tfm) throws IOException {
+		if (tfm == null) {
+			throw new NullPointerException("tfm");
+		}
+		if (byteCache == null) {
+			return;
+		}
+		final File f = tfm.generateTempFile("relabelout", "json");
+		try (final OutputStream os = new FileOutputStream(f)) {
+			os.write(byteCache);
+		} catch (IOException | RuntimeException | Error e) {
+			f.delete();
+			throw e;
+		}
+		byteCache = null;
+		fileCache = f;
+	}
+
 	/** Relabel ids, sort the object if necessary and keep a copy.
 	 * You must call this method prior to calling getInputStream().
-	 * Equivalent of sort(null). All data is kept in memory.
+	 * Equivalent of sort(null). All data is kept in memory unless
+	 * {@link #relabel(TempFilesManager, long, long, long)} was previously called and stored the
+	 * object in a file.
 	 * @param fac the sorter factory to use when generating a sorter.
 	 * @throws IOException if an IO exception occurs.
 	 * @throws TooManyKeysException if the memory required to sort the map is
@@ -264,9 +427,15 @@ public class ValidatedTypedObject implements Restreamable {
 	
 	/** Relabel ids, sort the object if necessary and keep a copy.
 	 * You must call this method prior to calling getInputStream().
+	 * 
+	 * If {@link #relabel(TempFilesManager, long, long, long)} was called previously, the
+	 * relabeled copy of the object is used as the sort input and is stored in the same location,
+	 * memory or file, as the sorted output. A naturally sorted object requires no further work.
 	 * @param fac the sorter factory to use when generating a sorter.
 	 * @param tfm the temporary file manager to use for managing temporary
-	 * files. All data is kept in memory if tfm is null.
+	 * files. All data is kept in memory if tfm is null, unless
+	 * {@link #relabel(TempFilesManager, long, long, long)} was previously called and stored the
+	 * object in a file, in which case the tfm is required.
 	 * @throws IOException if an IO exception occurs.
 	 * @throws TooManyKeysException if the memory required to sort the map is
 	 * too high.
@@ -278,60 +447,48 @@ public class ValidatedTypedObject implements Restreamable {
 		if (fac == null) {
 			throw new NullPointerException("Sorter factory cannot be null");
 		}
-		if (size < 0) {
-			calculateRelabeledSize();
-		}
-		destroyCachedResources();
-		final MessageDigest digest = getMD5Digest();
-		if (tfm == null) {
-			if (naturallySorted) {
-				final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-				relabelWsIdReferencesIntoWriter(new DigestOutputStream(
-						baos, digest));
-				byteCache = baos.toByteArray();
-			} else {
-				ByteArrayOutputStream baos = new ByteArrayOutputStream();
-				relabelWsIdReferencesIntoWriter(baos);
-				byteCache = baos.toByteArray();
-				baos = new ByteArrayOutputStream();
-				fac.getSorter(byteCache).writeIntoStream(
-						new DigestOutputStream(baos, digest));
-				byteCache = baos.toByteArray();
-			}
-		} else {
+		if (!relabeledCache) {
 			/* note that Jackson, JsonTokenStream (the data source) and the
 			 * sorters do their own buffering, so wrapping streams in a buffer
 			 * isn't necessary
 			 */
-			if (naturallySorted) {
-				fileCache = tfm.generateTempFile("natsortout", "json");
+			relabel(tfm, tfm == null ? Long.MAX_VALUE : 0, Long.MAX_VALUE, 0);
+		}
+		relabeledCache = false;
+		if (naturallySorted) {
+			return; // relabel() calculated the MD5 and kept a copy of the data
+		}
+		final MessageDigest digest = getMD5Digest();
+		if (byteCache != null) {
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			try {
+				fac.getSorter(byteCache).writeIntoStream(new DigestOutputStream(baos, digest));
+			} catch (IOException | KeyDuplicationException | TooManyKeysException |
+					RuntimeException | Error e) {
+				destroyCachedResources();
+				throw e;
+			}
+			byteCache = baos.toByteArray();
+		} else {
+			if (tfm == null) {
+				destroyCachedResources();
+				throw new NullPointerException(
+						"A temporary files manager is required to sort data stored in a file");
+			}
+			final File f1 = fileCache;
+			fileCache = null;
+			try {
+				fileCache = tfm.generateTempFile("sortout", "json");
 				try (final OutputStream os = new FileOutputStream(fileCache)) {
-					relabelWsIdReferencesIntoWriter(new DigestOutputStream(
-							os, digest));
-				} catch (IOException | RuntimeException | Error e) {
+					fac.getSorter(f1).writeIntoStream(new DigestOutputStream(os, digest));
+				} catch (IOException | KeyDuplicationException |
+						TooManyKeysException | RuntimeException |
+						Error e) {
 					destroyCachedResources();
 					throw e;
 				}
-			} else {
-				final File f1 = tfm.generateTempFile("sortinp", "json");
-				try {
-					try (final OutputStream os = new FileOutputStream(f1)) {
-						relabelWsIdReferencesIntoWriter(os);
-					}
-					fileCache = tfm.generateTempFile("sortout", "json");
-					try (final OutputStream os =
-							new FileOutputStream(fileCache)) {
-						fac.getSorter(f1).writeIntoStream(
-								new DigestOutputStream(os, digest));
-					} catch (IOException | KeyDuplicationException |
-							TooManyKeysException | RuntimeException |
-							Error e) {
-						destroyCachedResources();
-						throw e;
-					}
-				} finally {
-					f1.delete();
-				}
+			} finally {
+				f1.delete();
 			}
 		}
 		md5 = getMD5fromDigest(digest);
@@ -343,6 +500,7 @@ public class ValidatedTypedObject implements Restreamable {
 	 * recreated as necessary. 
 	 */
 	public void destroyCachedResources() {
+		this.relabeledCache = false;
 		this.byteCache = null;
 		if (this.fileCache != null) {
 			this.fileCache.delete();
@@ -350,23 +508,6 @@ public class ValidatedTypedObject implements Restreamable {
 		}
 	}
 	
-	private void relabelWsIdReferencesIntoWriter(final OutputStream os)
-			throws IOException {
-		relabelWsIdReferencesIntoGenerator(
-				new JsonFactory().createGenerator(os));
-	}
-
-	private void relabelWsIdReferencesIntoGenerator(final JsonGenerator jgen)
-			throws IOException {
-		final TokenSequenceProvider tsp = createIdRefTokenSequenceProvider();
-		try {
-			new JsonTokenStreamWriter().writeTokens(tsp, jgen);
-			jgen.flush();
-		} finally {
-			tsp.close();
-		}
-	}
-	
 	private TokenSequenceProvider createIdRefTokenSequenceProvider() throws IOException {
 		JsonTokenStream jts = tokenStreamProvider.getPlacedStream();
 		if (idHandler.isEmpty())
@@ -376,7 +517,6 @@ public class ValidatedTypedObject implements Restreamable {
 	
 	private boolean relabelWsIdReferencesIntoGeneratorAndCheckOrder(final JsonGenerator jgen)
 			throws IOException {
-		//TODO PERFORMANCE make the metadata extractor a TSP wrapper and extract here
 		TokenSequenceProvider tsp = null;
 		try {
 			final JsonTokenStream jts = tokenStreamProvider.getPlacedStream();
@@ -464,6 +604,12 @@ public class ValidatedTypedObject implements Restreamable {
 		if (!isInstanceValid()) {
 			return new ExtractedMetadata(null);
 		}
+		if (inlineMetadataMaxSize > 0 && inlineMetadataMaxSize == maxMetadataSize) {
+			if (inlineMetadataException != null) {
+				throw inlineMetadataException;
+			}
+			return inlineMetadata;
+		}
 		final MetadataExtractionHandler handler =
 				new MetadataExtractionHandler(wsMetadataSelection,
 						maxMetadataSize);
@@ -487,6 +633,118 @@ public class ValidatedTypedObject implements Restreamable {
 		
 	}
 	
+	/* Keeps written data in memory while memory is available, then moves the data to a temporary
+	 * file. Past a size limit stores no data at all but continues counting the bytes written.
+	 */
+	private static class RelabelOutputStream extends OutputStream {
+		
+		private final TempFilesManager tfm;
+		private final AtomicLong memoryAvailable;
+		private final long maxSize;
+		private long size = 0;
+		private ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		private File file = null;
+		private OutputStream fileOut = null;
+		private boolean discarded = false;
+		
+		private RelabelOutputStream(
+				final TempFilesManager tfm,
+				final AtomicLong memoryAvailable,
+				final long maxSize) {
+			this.tfm = tfm;
+			this.memoryAvailable = memoryAvailable;
+			this.maxSize = maxSize;
+		}
+		
+		private boolean reserveMemory(final long bytes) {
+			if (tfm == null) {
+				return true;
+			}
+			if (memoryAvailable.addAndGet(-bytes) >= 0) {
+				return true;
+			}
+			memoryAvailable.addAndGet(bytes);
+			return false;
+		}
+		
+		private void releaseMemory(final long bytes) {
+			if (tfm != null) {
+				memoryAvailable.addAndGet(bytes);
+			}
+		}
+		
+		@Override
+		public void write(final int b) throws IOException {
+			write(new byte[] {(byte) b}, 0, 1);
+		}
+		
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			size += len;
+			if (discarded) {
+				return;
+			}
+			if (size > maxSize) {
+				destroy();
+				discarded = true;
+				return;
+			}
+			if (fileOut == null && !reserveMemory(len)) {
+				file = tfm.generateTempFile("relabelout", "json");
+				fileOut = new FileOutputStream(file);
+				baos.writeTo(fileOut);
+				releaseMemory(baos.size());
+				baos = null;
+			}
+			if (fileOut != null) {
+				fileOut.write(b, off, len);
+			} else {
+				baos.write(b, off, len);
+			}
+		}
+		
+		@Override
+		public void close() throws IOException {
+			if (fileOut != null) {
+				fileOut.close();
+			}
+		}
+		
+		private void destroy() {
+			if (baos != null) {
+				releaseMemory(baos.size());
+				baos = null;
+			}
+			if (fileOut != null) {
+				try {
+					fileOut.close();
+				} catch (IOException e) {
+					// nothing to be done, the file is being deleted anyway
+				}
+			}
+			if (file != null) {
+				file.delete();
+				file = null;
+			}
+		}
+		
+		private long getSize() {
+			return size;
+		}
+		
+		private boolean isDiscarded() {
+			return discarded;
+		}
+		
+		private byte[] getBytes() {
+			return baos == null ? null : baos.toByteArray();
+		}
+		
+		private File getFile() {
+			return file;
+		}
+	}
+	
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
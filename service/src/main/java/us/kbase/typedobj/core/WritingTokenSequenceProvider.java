@@ -0,0 +1,100 @@
+package us.kbase.typedobj.core;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * A token sequence provider that writes each token it provides to a JSON generator. This
+ * allows a consumer of the token sequence, for example the {@link MetadataExtractor}, to
+ * process the tokens in the same pass through the data that writes them elsewhere.
+ *
+ * Numeric token text is returned as it will appear in the written JSON, rather than as it
+ * appeared in the source data.
+ */
+public class WritingTokenSequenceProvider implements TokenSequenceProvider {
+
+	private final TokenSequenceProvider src;
+	private final JsonGenerator jgen;
+	private JsonToken current = null;
+	private int depth = 0;
+	private boolean started = false;
+
+	/** Create the provider.
+	 * @param src the source of the tokens.
+	 * @param jgen the generator to which tokens will be written.
+	 */
+	public WritingTokenSequenceProvider(
+			final TokenSequenceProvider src,
+			final JsonGenerator jgen) {
+		if (src == null) {
+			throw new NullPointerException("src");
+		}
+		if (jgen == null) {
+			throw new NullPointerException("jgen");
+		}
+		this.src = src;
+		this.jgen = jgen;
+	}
+
+	@Override
+	public JsonToken nextToken() throws IOException, JsonParseException {
+		if (started && depth == 0) {
+			// the top level value is complete, don't write anything else
+			current = null;
+			return null;
+		}
+		started = true;
+		current = src.nextToken();
+		if (current == null) {
+			return null;
+		}
+		if (current == JsonToken.START_OBJECT || current == JsonToken.START_ARRAY) {
+			depth++;
+		} else if (current == JsonToken.END_OBJECT || current == JsonToken.END_ARRAY) {
+			depth--;
+		}
+		JsonTokenStreamWriter.writeToken(current, src, jgen);
+		return current;
+	}
+
+	/** Write any tokens that have not yet been consumed from this provider to the generator,
+	 * completing the top level JSON value.
+	 * @throws IOException if an IO error occurs.
+	 */
+	public void writeRemainingTokens() throws IOException {
+		if (!started) {
+			nextToken();
+		}
+		while (depth > 0) {
+			if (nextToken() == null) {
+				throw new IOException("Unexpected end of token sequence");
+			}
+		}
+	}
+
+	@Override
+	public String getText() throws IOException, JsonParseException {
+		if (current == JsonToken.VALUE_NUMBER_INT || current == JsonToken.VALUE_NUMBER_FLOAT) {
+			return JsonTokenStreamWriter.getNumberText(current, src.getNumberValue());
+		}
+		return src.getText();
+	}
+
+	@Override
+	public Number getNumberValue() throws IOException, JsonParseException {
+		return src.getNumberValue();
+	}
+
+	@Override
+	public void close() throws IOException {
+		src.close();
+	}
+
+	@Override
+	public boolean isComplete() {
+		return src.isComplete();
+	}
+}
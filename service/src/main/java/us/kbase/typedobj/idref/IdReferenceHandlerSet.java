@@ -1,12 +1,21 @@
 package us.kbase.typedobj.idref;
 
+import java.time.Duration;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class IdReferenceHandlerSet<T> {
 	
@@ -18,7 +27,18 @@ public class IdReferenceHandlerSet<T> {
 	private boolean processed = false;
 	private T associated = null;
 	
+	// sorted by type so handlers are processed, and errors reported, in a consistent order
 	private final Map<IdReferenceType, IdReferenceHandler<T>> handlers;
+	// null to process the handlers serially
+	private final Executor executor;
+	private final Map<IdReferenceType, Duration> timeouts;
+	
+	// null unless this set records its IDs for later addition to another set
+	private final Set<RecordedId<T>> recordedIds;
+	// the distinct IDs in all the recording sets sharing the ID limit, or null
+	private final SharedIdCount sharedIdCount;
+	// the set to which this set's IDs were added, if any
+	private IdReferenceHandlerSet<T> addedTo = null;
 	
 	/** A handler for typed object IDs. Responsible for checking the
 	 * syntax of the id and its attributes, and remapping IDs if necessary.
@@ -162,9 +182,103 @@ public class IdReferenceHandlerSet<T> {
 	protected IdReferenceHandlerSet(
 			final int maxUniqueIdCount,
 			final Map<IdReferenceType, IdReferenceHandler<T>> handlers) {
+		this(maxUniqueIdCount, handlers, false);
+	}
+	
+	/** Create the handler set.
+	 * @param maxUniqueIdCount the maximum number of unique IDs allowed in this set.
+	 * @param handlers the ID handlers.
+	 * @param recordIds true to record the IDs added to this set so that they may be added to
+	 * another handler set via {@link #addIds(IdReferenceHandlerSet)}.
+	 */
+	protected IdReferenceHandlerSet(
+			final int maxUniqueIdCount,
+			final Map<IdReferenceType, IdReferenceHandler<T>> handlers,
+			final boolean recordIds) {
+		this(maxUniqueIdCount, handlers, recordIds, null, Collections.emptyMap());
+	}
+	
+	/** Create the handler set.
+	 * @param maxUniqueIdCount the maximum number of unique IDs allowed in this set.
+	 * @param handlers the ID handlers.
+	 * @param recordIds true to record the IDs added to this set so that they may be added to
+	 * another handler set via {@link #addIds(IdReferenceHandlerSet)}.
+	 * @param executor the executor with which to process the IDs of each type concurrently in
+	 * {@link #processIDs()}, or null to process the ID types serially.
+	 * @param timeouts the maximum time to wait for the IDs of each type to be processed when
+	 * processing concurrently. ID types without a timeout are waited for indefinitely.
+	 */
+	protected IdReferenceHandlerSet(
+			final int maxUniqueIdCount,
+			final Map<IdReferenceType, IdReferenceHandler<T>> handlers,
+			final boolean recordIds,
+			final Executor executor,
+			final Map<IdReferenceType, Duration> timeouts) {
+		this(maxUniqueIdCount, handlers, recordIds, null, executor, timeouts);
+	}
+	
+	/** Create the handler set.
+	 * @param maxUniqueIdCount the maximum number of unique IDs allowed in this set, or, if
+	 * sharedIdCount is provided, in all the sets sharing the count.
+	 * @param handlers the ID handlers.
+	 * @param recordIds true to record the IDs added to this set so that they may be added to
+	 * another handler set via {@link #addIds(IdReferenceHandlerSet)}.
+	 * @param sharedIdCount a count of the distinct IDs in all the handler sets sharing the
+	 * count, or null if this set's IDs count only towards this set's maximum.
+	 * @param executor the executor with which to process the IDs of each type concurrently in
+	 * {@link #processIDs()}, or null to process the ID types serially.
+	 * @param timeouts the maximum time to wait for the IDs of each type to be processed when
+	 * processing concurrently. ID types without a timeout are waited for indefinitely.
+	 */
+	protected IdReferenceHandlerSet(
+			final int maxUniqueIdCount,
+			final Map<IdReferenceType, IdReferenceHandler<T>> handlers,
+			final boolean recordIds,
+			final SharedIdCount sharedIdCount,
+			final Executor executor,
+			final Map<IdReferenceType, Duration> timeouts) {
 		this.maxUniqueIdCount = maxUniqueIdCount;
-		this.handlers = new HashMap<IdReferenceType, IdReferenceHandler<T>>(
+		this.handlers = new TreeMap<IdReferenceType, IdReferenceHandler<T>>(
 				handlers);
+		this.recordedIds = recordIds ? new LinkedHashSet<>() : null;
+		this.sharedIdCount = sharedIdCount;
+		this.executor = executor;
+		this.timeouts = Collections.unmodifiableMap(new TreeMap<>(timeouts));
+	}
+	
+	private static class RecordedId<T> {
+		
+		private final T associated;
+		private final IdReference<String> id;
+		
+		private RecordedId(final T associated, final IdReference<String> id) {
+			this.associated = associated;
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + associated.hashCode();
+			result = prime * result + id.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null) {
+				return false;
+			}
+			if (getClass() != obj.getClass()) {
+				return false;
+			}
+			final RecordedId<?> other = (RecordedId<?>) obj;
+			return associated.equals(other.associated) && id.equals(other.id);
+		}
 	}
 
 	/** Returns true if this handler set contains a handler for the ID type
@@ -174,6 +288,9 @@ public class IdReferenceHandlerSet<T> {
 	 * specified.
 	 */
 	public boolean hasHandler(final IdReferenceType idType) {
+		if (addedTo != null) {
+			return addedTo.hasHandler(idType);
+		}
 		return handlers.containsKey(idType);
 	}
 	
@@ -215,20 +332,85 @@ public class IdReferenceHandlerSet<T> {
 	public void addStringId(final IdReference<String> id)
 			throws TooManyIdsException, IdReferenceHandlerException {
 		checkIdRefValidity(id);
-		updateIdCount(handlers.get(id.getType()).addId(associated, 
-				id.getId(), id.getAttributes()));
+		final boolean unique = handlers.get(id.getType()).addId(
+				associated, id.getId(), id.getAttributes());
+		if (recordedIds != null) {
+			recordedIds.add(new RecordedId<>(associated, id));
+		}
+		updateIdCount(unique, id);
+	}
+	
+	/** Add the IDs from another handler set to this set, along with the objects with which the
+	 * IDs are associated. The IDs are added in the order they were added to the other set.
+	 * 
+	 * This allows collecting the IDs from several typed objects concurrently, using one handler
+	 * set per object, and then combining the IDs into a single set in a deterministic order for
+	 * batch processing.
+	 * 
+	 * The other set must have been created with
+	 * {@link IdReferenceHandlerSetFactory#createRecordingHandlers(Class)}. Once its IDs have been
+	 * added to this set, the other set can no longer accept IDs and otherwise acts as a view
+	 * of this set, for example when processing or remapping IDs. The other set's copies of the
+	 * IDs are discarded.
+	 * @param other the handler set containing the IDs to add.
+	 * @return this.
+	 * @throws TooManyIdsException if too many IDs are currently in memory.
+	 * @throws IdReferenceHandlerException if an id could not be handled.
+	 */
+	public IdReferenceHandlerSet<T> addIds(final IdReferenceHandlerSet<T> other)
+			throws TooManyIdsException, IdReferenceHandlerException {
+		if (other == null) {
+			throw new NullPointerException("other cannot be null");
+		}
+		if (other.recordedIds == null) {
+			throw new IllegalArgumentException("The other handler set does not record its IDs");
+		}
+		if (other.addedTo != null) {
+			throw new IllegalArgumentException(
+					"The other handler set's IDs have already been added to a handler set");
+		}
+		if (other.processed) {
+			throw new IllegalArgumentException(
+					"The other handler set's IDs have been processed");
+		}
+		final T prevAssociated = associated;
+		try {
+			for (final RecordedId<T> rid: other.recordedIds) {
+				associated = rid.associated;
+				addStringId(rid.id);
+			}
+		} finally {
+			associated = prevAssociated;
+		}
+		other.addedTo = this;
+		other.recordedIds.clear();
+		other.handlers.clear();
+		return this;
 	}
 
-	private void updateIdCount(final boolean newId)
+	private void updateIdCount(final boolean newId, final IdReference<String> id)
 			throws TooManyIdsException {
 		currentUniqueIdCount += newId ? 1 : 0;
-		if (currentUniqueIdCount > maxUniqueIdCount) {
+		final int count;
+		if (sharedIdCount == null) {
+			count = currentUniqueIdCount;
+		} else {
+			// IDs found in more than one of the sharing sets are only counted once
+			sharedIdCount.add(id.getType(), id.getId());
+			count = sharedIdCount.get();
+		}
+		if (count > maxUniqueIdCount) {
 			throw new TooManyIdsException("Maximum ID count of " + 
 					maxUniqueIdCount + " exceeded");
 		}
 	}
 
 	private void checkIdRefValidity(final IdReference<?> id) {
+		if (addedTo != null) {
+			throw new IllegalStateException(
+					"This ID handler set instance's IDs have been added to another handler set " +
+					"and no more can be added");
+		}
 		if (processed) {
 			throw new IllegalStateException(
 					"This ID handler set instance's IDs have been processed and no more can be added");
@@ -249,28 +431,113 @@ public class IdReferenceHandlerSet<T> {
 	
 	/** Process all the IDs saved in all the registered handlers and locks
 	 * the handlers. Calling this methond twice will have no effect.
+	 * 
+	 * If the handler set was created with an executor, the handlers for each ID type are
+	 * processed concurrently, as they typically contact independent remote services. Otherwise
+	 * the handlers are processed serially in ID type order. In either case, if more than one
+	 * handler fails, the error from the handler for the first ID type is thrown.
 	 * @return this.
 	 * @throws IdReferenceHandlerException if there was an error processing
-	 * the IDs.
+	 * the IDs, or the IDs of a type were not processed within the timeout for the type.
 	 * 
 	 */
 	public IdReferenceHandlerSet<T> processIDs() throws IdReferenceHandlerException {
+		if (addedTo != null) {
+			addedTo.processIDs();
+			return this;
+		}
 		if (processed) {
 			return this;
 		}
 		processed = true;
-		for (final Entry<IdReferenceType, IdReferenceHandler<T>> es:
-				handlers.entrySet()) {
-			es.getValue().processIds();
+		if (executor == null) {
+			for (final Entry<IdReferenceType, IdReferenceHandler<T>> es:
+					handlers.entrySet()) {
+				es.getValue().processIds();
+			}
+		} else {
+			processIDsConcurrently();
 		}
 		return this;
 	}
 	
+	/* Tasks that the executor rejects, e.g. because its queue is full, are run in this thread.
+	 * The tasks are waited for in ID type order, so the error thrown doesn't depend on which
+	 * task happened to fail first. Time spent queued in the executor counts towards the timeout.
+	 */
+	private void processIDsConcurrently() throws IdReferenceHandlerException {
+		final long start = System.nanoTime();
+		final Map<IdReferenceType, FutureTask<Void>> tasks = new LinkedHashMap<>();
+		try {
+			for (final Entry<IdReferenceType, IdReferenceHandler<T>> es: handlers.entrySet()) {
+				final IdReferenceHandler<T> handler = es.getValue();
+				final FutureTask<Void> task = new FutureTask<>(() -> {
+					handler.processIds();
+					return null;
+				});
+				tasks.put(es.getKey(), task);
+				try {
+					executor.execute(task);
+				} catch (RejectedExecutionException e) {
+					task.run();
+				}
+			}
+			for (final Entry<IdReferenceType, FutureTask<Void>> et: tasks.entrySet()) {
+				waitForTask(et.getKey(), et.getValue(), start);
+			}
+		} finally {
+			// no op for tasks that are complete
+			for (final FutureTask<Void> task: tasks.values()) {
+				task.cancel(true);
+			}
+		}
+	}
+
+	private void waitForTask(
+			final IdReferenceType idType,
+			final FutureTask<Void> task,
+			final long start)
+			throws IdReferenceHandlerException {
+		final Duration timeout = timeouts.get(idType);
+		try {
+			if (timeout == null) {
+				task.get();
+			} else {
+				final long remaining = start + timeout.toNanos() - System.nanoTime();
+				task.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IdReferenceHandlerException(String.format(
+					"Interrupted while processing IDs of type %s", idType.getType()),
+					idType, e);
+		} catch (TimeoutException e) {
+			throw new IdReferenceHandlerException(String.format(
+					"Timed out processing IDs of type %s after %s ms",
+					idType.getType(), timeout.toMillis()),
+					idType, e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IdReferenceHandlerException) {
+				throw (IdReferenceHandlerException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			// processIds only throws IdReferenceHandlerExceptions
+			throw new RuntimeException("Unexpected error", cause);
+		}
+	}
+	
 	/** Check if processIds() has been called on this handler. Implies
 	 * that the handler is locked.
 	 * @return true if processIds() has been called.
 	 */
 	public boolean wereIdsProcessed() {
+		if (addedTo != null) {
+			return addedTo.wereIdsProcessed();
+		}
 		return processed;
 	}
 	
@@ -279,6 +546,9 @@ public class IdReferenceHandlerSet<T> {
 	 * set.
 	 */
 	public Set<IdReferenceType> getIDTypes() {
+		if (addedTo != null) {
+			return addedTo.getIDTypes();
+		}
 		return handlers.keySet();
 	}
 	
@@ -293,6 +563,9 @@ public class IdReferenceHandlerSet<T> {
 		if (idType == null || oldId == null) {
 			throw new NullPointerException("idType and oldId can't be null");
 		}
+		if (addedTo != null) {
+			return addedTo.getRemappedId(idType, oldId);
+		}
 		if (!handlers.containsKey(idType)) {
 			throw new NoSuchIdReferenceHandlerException(
 					"There is no handler registered for the ID type " + 
@@ -313,6 +586,9 @@ public class IdReferenceHandlerSet<T> {
 			throw new NullPointerException(
 					"idType and associatedObject can't be null");
 		}
+		if (addedTo != null) {
+			return addedTo.getRemappedIds(idType, associatedObject);
+		}
 		if (!handlers.containsKey(idType)) {
 			throw new NoSuchIdReferenceHandlerException(
 					"There is no handler registered for the ID type " + 
@@ -325,6 +601,9 @@ public class IdReferenceHandlerSet<T> {
 	 * @return the number of unique IDs.
 	 */
 	public int size() {
+		if (addedTo != null) {
+			return addedTo.size();
+		}
 		return currentUniqueIdCount;
 	}
 	
@@ -332,7 +611,7 @@ public class IdReferenceHandlerSet<T> {
 	 * @return true if this handler set contains no IDs.
 	 */
 	public boolean isEmpty() {
-		return currentUniqueIdCount == 0;
+		return size() == 0;
 	}
 	
 
@@ -1,9 +1,11 @@
 package us.kbase.typedobj.idref;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Executor;
 
 import us.kbase.auth.AuthToken;
 import us.kbase.typedobj.idref.IdReferenceHandlerSet.IdReferenceHandler;
@@ -30,6 +32,8 @@ public class IdReferenceHandlerSetFactory {
 	private final Map<IdReferenceType, IdReferenceHandlerFactory> factories;
 	private final int maxUniqueIdCount;
 	private final AuthToken userToken;
+	private final Executor executor;
+	private final Map<IdReferenceType, Duration> timeouts;
 	
 	/** An interface for a factory that creates an ID handler.
 	 * @author gaprice@lbl.gov
@@ -83,11 +87,17 @@ public class IdReferenceHandlerSetFactory {
 	 * may be used to lookup and/or process information in authenticated resources. The token
 	 * may be null in the case where all the registered {@link IdReferenceHandlerFactory}s
 	 * do not require a token.
+	 * @param executor the executor with which to process the IDs of each type concurrently, or
+	 * null to process the ID types serially.
+	 * @param timeouts the maximum time to wait for the IDs of each type to be processed when
+	 * processing concurrently.
 	 */
 	IdReferenceHandlerSetFactory(
 			final int maxUniqueIdCount,
 			final Map<IdReferenceType, IdReferenceHandlerFactory> factories,
-			final AuthToken userToken) {
+			final AuthToken userToken,
+			final Executor executor,
+			final Map<IdReferenceType, Duration> timeouts) {
 		if (maxUniqueIdCount < 0) {
 			throw new IllegalArgumentException(
 					"maxUniqueIdCount must be at least 0");
@@ -95,6 +105,8 @@ public class IdReferenceHandlerSetFactory {
 		this.userToken = userToken;
 		this.maxUniqueIdCount = maxUniqueIdCount;
 		this.factories = new HashMap<>(factories);
+		this.executor = executor;
+		this.timeouts = timeouts;
 	}
 	
 	/** Add a factory to this factory set. If the type of the factory is the same as the type
@@ -122,12 +134,49 @@ public class IdReferenceHandlerSetFactory {
 	 * @return the set of ID handlers.
 	 */
 	public <T> IdReferenceHandlerSet<T> createHandlers(final Class<T> clazz) {
+		return new IdReferenceHandlerSet<T>(
+				maxUniqueIdCount, createHandlerMap(clazz), false, executor, timeouts);
+	}
+	
+	/** Create a set of ID handlers that records the IDs added to it, so that the IDs can later
+	 * be added to another handler set via
+	 * {@link IdReferenceHandlerSet#addIds(IdReferenceHandlerSet)}.
+	 * @param clazz the class of object to associate with IDs.
+	 * @return the set of ID handlers.
+	 */
+	public <T> IdReferenceHandlerSet<T> createRecordingHandlers(final Class<T> clazz) {
+		return new IdReferenceHandlerSet<T>(
+				maxUniqueIdCount, createHandlerMap(clazz), true, executor, timeouts);
+	}
+	
+	/** Create a set of ID handlers that records the IDs added to it, so that the IDs can later
+	 * be added to another handler set via
+	 * {@link IdReferenceHandlerSet#addIds(IdReferenceHandlerSet)}. The distinct IDs in all the
+	 * handler sets created with the same count are limited to the maximum ID count, so
+	 * collecting IDs into several sets concurrently can be stopped early when there are too
+	 * many IDs. An ID found in more than one of the sets is counted once.
+	 * @param clazz the class of object to associate with IDs.
+	 * @param sharedIdCount the count of distinct IDs shared between handler sets.
+	 * @return the set of ID handlers.
+	 */
+	public <T> IdReferenceHandlerSet<T> createRecordingHandlers(
+			final Class<T> clazz,
+			final SharedIdCount sharedIdCount) {
+		if (sharedIdCount == null) {
+			throw new NullPointerException("sharedIdCount cannot be null");
+		}
+		return new IdReferenceHandlerSet<T>(maxUniqueIdCount, createHandlerMap(clazz), true,
+				sharedIdCount, executor, timeouts);
+	}
+
+	private <T> Map<IdReferenceType, IdReferenceHandler<T>> createHandlerMap(
+			final Class<T> clazz) {
 		final Map<IdReferenceType, IdReferenceHandler<T>> handlers =
 				new HashMap<IdReferenceType, IdReferenceHandler<T>>();
 		for (final Entry<IdReferenceType, IdReferenceHandlerFactory> e: factories.entrySet()) {
 			handlers.put(e.getKey(), e.getValue().createHandler(clazz, userToken));
 		}
-		return new IdReferenceHandlerSet<T>(maxUniqueIdCount, handlers);
+		return handlers;
 	}
 	
 }
@@ -2,10 +2,13 @@ package us.kbase.typedobj.idref;
 
 import static java.util.Objects.requireNonNull;
 
+import java.time.Duration;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import us.kbase.auth.AuthToken;
@@ -39,12 +42,18 @@ public class IdReferenceHandlerSetFactoryBuilder {
 	
 	private final Map<IdReferenceType, IdReferenceHandlerFactory> factories; // tree map
 	private final int maxUniqueIdCount;
+	private final Executor executor;
+	private final Map<IdReferenceType, Duration> timeouts;
 	
 	private IdReferenceHandlerSetFactoryBuilder(
 			final Map<IdReferenceType, IdReferenceHandlerFactory> factories, // tree map
-			final int maxUniqueIdCount) {
+			final int maxUniqueIdCount,
+			final Executor executor,
+			final Map<IdReferenceType, Duration> timeouts) {
 		this.factories = factories;
 		this.maxUniqueIdCount = maxUniqueIdCount;
+		this.executor = executor;
+		this.timeouts = timeouts;
 	}
 	
 	// deliberately not implementing hashcode & equals
@@ -57,7 +66,8 @@ public class IdReferenceHandlerSetFactoryBuilder {
 	 * @return a handler factory.
 	 */
 	public IdReferenceHandlerSetFactory getFactory(final AuthToken userToken) {
-		return new IdReferenceHandlerSetFactory(maxUniqueIdCount, factories, userToken);
+		return new IdReferenceHandlerSetFactory(
+				maxUniqueIdCount, factories, userToken, executor, timeouts);
 	}
 	
 	// TODO NAMING this is actually a general post processing mechanism, not just permissions.
@@ -117,6 +127,8 @@ public class IdReferenceHandlerSetFactoryBuilder {
 
 		private final int maxUniqueIdCount;
 		private final Map<IdReferenceType,IdReferenceHandlerFactory> factories = new TreeMap<>();
+		private final Map<IdReferenceType, Duration> timeouts = new TreeMap<>();
+		private Executor executor = null;
 
 		private Builder(final int maxUniqueIdCount) {
 			if (maxUniqueIdCount < 0) {
@@ -144,11 +156,55 @@ public class IdReferenceHandlerSetFactoryBuilder {
 			return this;
 		}
 		
+		/** Process the IDs of each type concurrently when
+		 * {@link IdReferenceHandlerSet#processIDs()} is called, rather than serially. Since the
+		 * handlers for different ID types typically contact different remote services, this
+		 * means processing the IDs takes about as long as the slowest service rather than the
+		 * sum of the times for each service.
+		 * 
+		 * The executor should be bounded and shared between requests. Tasks the executor rejects
+		 * are run on the calling thread. Since time a task spends queued in the executor counts
+		 * towards any processing timeout, the executor should reject tasks when all its threads
+		 * are busy rather than queuing them, e.g. by handing tasks to threads via a
+		 * {@link java.util.concurrent.SynchronousQueue}.
+		 * @param executor the executor with which to process the IDs.
+		 * @return this builder.
+		 */
+		public Builder withConcurrentProcessing(final Executor executor) {
+			this.executor = requireNonNull(executor, "executor");
+			return this;
+		}
+		
+		/** Set the maximum time to wait for the IDs of a type to be processed when processing
+		 * IDs concurrently, including any time the processing task spends waiting for an
+		 * executor thread. If the IDs are not processed in time, processing the IDs fails.
+		 * The timeout has no effect when processing IDs serially.
+		 * 
+		 * The timeout may be set for an ID type that has no factory in this builder, for example
+		 * when the factory will be added later via
+		 * {@link IdReferenceHandlerSetFactory#addFactory(IdReferenceHandlerFactory)}.
+		 * @param idType the type of the IDs.
+		 * @param timeout the timeout.
+		 * @return this builder.
+		 */
+		public Builder withProcessingTimeout(
+				final IdReferenceType idType,
+				final Duration timeout) {
+			requireNonNull(idType, "idType");
+			requireNonNull(timeout, "timeout");
+			if (timeout.isNegative() || timeout.isZero()) {
+				throw new IllegalArgumentException("timeout must be positive");
+			}
+			timeouts.put(idType, timeout);
+			return this;
+		}
+		
 		/** Build the factory builder.
 		 * @return the new factory builder.
 		 */
 		public IdReferenceHandlerSetFactoryBuilder build() {
-			return new IdReferenceHandlerSetFactoryBuilder(factories, maxUniqueIdCount);
+			return new IdReferenceHandlerSetFactoryBuilder(factories, maxUniqueIdCount, executor,
+					Collections.unmodifiableMap(new TreeMap<>(timeouts)));
 		}
 	}
 	
@@ -0,0 +1,34 @@
+package us.kbase.typedobj.idref;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** A count of the distinct IDs added to a group of ID handler sets, for example the handler
+ * sets for each of the objects in a save. An ID added to more than one of the handler sets
+ * is only counted once. The count is thread safe, so the handler sets may be filled
+ * concurrently.
+ *
+ * @see IdReferenceHandlerSetFactory#createRecordingHandlers(Class, SharedIdCount)
+ */
+public class SharedIdCount {
+
+	private final Set<Entry<IdReferenceType, String>> ids = ConcurrentHashMap.newKeySet();
+
+	/** Add an ID to the count.
+	 * @param type the type of the ID.
+	 * @param id the ID.
+	 * @return true if the ID had not already been counted.
+	 */
+	boolean add(final IdReferenceType type, final String id) {
+		return ids.add(new SimpleImmutableEntry<>(type, id));
+	}
+
+	/** Get the number of distinct IDs counted.
+	 * @return the ID count.
+	 */
+	public int get() {
+		return ids.size();
+	}
+}
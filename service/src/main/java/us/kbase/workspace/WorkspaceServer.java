@@ -341,6 +341,14 @@ public class WorkspaceServer extends JsonServerServlet {
 		ws.setResourceConfig(cfg);
 	}
 	
+	@Override
+	public void destroy() {
+		if (ws != null) {
+			ws.shutdown();
+		}
+		super.destroy();
+	}
+	
 	public void setUpLogger() {
 		final Logger rootLogger = ((Logger) LoggerFactory.getLogger(
 				org.slf4j.Logger.ROOT_LOGGER_NAME));
@@ -1066,7 +1074,7 @@ public class WorkspaceServer extends JsonServerServlet {
     public List<Tuple11<Long, String, String, String, Long, String, Long, String, String, Long, Map<String,String>>> listObjects(ListObjectsParams params, AuthToken authPart, RpcContext jsonRpcContext) throws Exception {
         List<Tuple11<Long, String, String, String, Long, String, Long, String, String, Long, Map<String,String>>> returnVal = null;
         //BEGIN list_objects
-		returnVal = wsmeth.listObjects(params, wsmeth.getUser(authPart), false);
+		returnVal = wsmeth.listObjectsStreaming(params, wsmeth.getUser(authPart), false);
         //END list_objects
         return returnVal;
     }
@@ -2,15 +2,21 @@ package us.kbase.workspace.database;
 
 import static java.util.Objects.requireNonNull;
 
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 import org.apache.commons.io.IOUtils;
 
@@ -41,6 +47,8 @@ import us.kbase.typedobj.exceptions.TypedObjectExtractionException;
  */
 public class ByteArrayFileCacheManager {
 	
+	private static final long TRANSFER_SIZE = 1024 * 1024;
+	
 	private final TempFilesManager tfm;
 
 	/** Create a data cache manager that stores all data in memory. */
@@ -81,23 +89,25 @@ public class ByteArrayFileCacheManager {
 		File tempFile = null;
 		try {
 			if (tfm == null) {
-				final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-				final int size = IOUtils.copy(input, baos);
-				// TODO CODE this creates a new byte[], doubling the memory usage temporarily
-				final JsonTokenStream jts = new JsonTokenStream(baos.toByteArray());
+				final SegmentedOutputStream sos = new SegmentedOutputStream();
+				IOUtils.copy(input, sos);
+				final long size = sos.getSize();
+				// the JsonTokenStream requires a single array. If the size of the data is known,
+				// use createBAFC(InputStream, long, boolean, boolean) to avoid this copy.
+				final byte[] data = sos.toByteArray();
+				final JsonTokenStream jts = new JsonTokenStream(data);
 				return new ByteArrayFileCache(
-						null, null, jts.setTrustedWholeJson(trustedJson), sorted, size);
+						null, null, data, jts.setTrustedWholeJson(trustedJson), sorted, size);
 			} else {
 				tempFile = tfm.generateTempFile("resp", "json");
-				final int size;
-				try (final OutputStream os = new BufferedOutputStream(
-						new FileOutputStream(tempFile))) {
-					size = IOUtils.copy(input, os);
+				final long size;
+				try (final FileChannel chan = openForWrite(tempFile)) {
+					size = transferAll(Channels.newChannel(input), chan);
 				}
 				@SuppressWarnings("resource")
 				final JsonTokenStream jts = new JsonTokenStream(tempFile);
 				return new ByteArrayFileCache(
-						null, tempFile, jts.setTrustedWholeJson(trustedJson), sorted, size);
+						null, tempFile, null, jts.setTrustedWholeJson(trustedJson), sorted, size);
 			}
 		} catch (RuntimeException | IOException e) {
 			cleanUp(tempFile);
@@ -105,6 +115,163 @@ public class ByteArrayFileCacheManager {
 		}
 	}
 	
+	/** Create a data cache from data of a known size. The cache storage is allocated before the
+	 * data is read, and when storing data in memory the data is read directly into the
+	 * storage without any intermediate copies.
+	 * @param input the data to be stored in the cache.
+	 * @param size the size of the data.
+	 * @param trustedJson true if the cache stores known good JSON. If this is the case the JSON
+	 * will not be parsed when serializing a {@link UObject} from
+	 * {@link ByteArrayFileCache#getUObject()}, which can save significant time.
+	 * @param sorted true if the JSON is sorted.
+	 * @return the new data cache.
+	 * @throws IOException if an IO exception occurs when attempting to read the data or the
+	 * size of the data does not match the given size.
+	 */
+	public ByteArrayFileCache createBAFC(
+			final InputStream input,
+			final long size,
+			final boolean trustedJson,
+			final boolean sorted)
+			throws IOException {
+		requireNonNull(input, "input");
+		return createBAFC(size, sink -> {
+			sink.write(0, input, size);
+			if (input.read() >= 0) {
+				throw new IOException("Input data is longer than the expected size of " + size);
+			}
+		}, trustedJson, sorted);
+	}
+	
+	/** A destination for data that may be written in ranges, in any order, and concurrently.
+	 * Concurrent writes must not overlap.
+	 */
+	public interface RangeSink {
+		
+		/** Write a range of data to the sink.
+		 * @param position the position in the sink at which to start writing.
+		 * @param data the data to write.
+		 * @param length the number of bytes to read from the input stream and write to the sink.
+		 * @throws IOException if an IO error occurs or the input stream contains fewer than
+		 * length bytes.
+		 */
+		void write(long position, InputStream data, long length) throws IOException;
+	}
+	
+	/** A source of data that writes the data to a {@link RangeSink} in ranges. */
+	public interface RangeSource {
+		
+		/** Write the entirety of the data to the sink. The method must not return until all
+		 * writes to the sink are complete.
+		 * @param sink the sink.
+		 * @throws IOException if an IO error occurs.
+		 */
+		void writeTo(RangeSink sink) throws IOException;
+	}
+	
+	/** Create a data cache from data of a known size that is provided in ranges, possibly
+	 * concurrently. The cache storage is allocated before the data is written.
+	 * @param size the size of the data.
+	 * @param source the source of the data. The entire range of the data must be written
+	 * to the sink provided to the source.
+	 * @param trustedJson true if the cache stores known good JSON. If this is the case the JSON
+	 * will not be parsed when serializing a {@link UObject} from
+	 * {@link ByteArrayFileCache#getUObject()}, which can save significant time.
+	 * @param sorted true if the JSON is sorted.
+	 * @return the new data cache.
+	 * @throws IOException if an IO exception occurs when attempting to write the data.
+	 */
+	public ByteArrayFileCache createBAFC(
+			final long size,
+			final RangeSource source,
+			final boolean trustedJson,
+			final boolean sorted)
+			throws IOException {
+		requireNonNull(source, "source");
+		if (size < 0) {
+			throw new IllegalArgumentException("size must be >= 0");
+		}
+		File tempFile = null;
+		try {
+			if (tfm == null) {
+				if (size > Integer.MAX_VALUE) {
+					throw new IllegalArgumentException(
+							"size is too large to be stored in memory: " + size);
+				}
+				final byte[] data = new byte[(int) size];
+				source.writeTo((position, input, length) -> {
+					checkRange(position, length, size);
+					IOUtils.readFully(input, data, (int) position, (int) length);
+				});
+				final JsonTokenStream jts = new JsonTokenStream(data);
+				return new ByteArrayFileCache(
+						null, null, data, jts.setTrustedWholeJson(trustedJson), sorted, size);
+			} else {
+				tempFile = tfm.generateTempFile("resp", "json");
+				try (final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw")) {
+					raf.setLength(size);
+					final FileChannel chan = raf.getChannel();
+					// positional channel writes are safe for concurrent use
+					source.writeTo((position, input, length) -> {
+						checkRange(position, length, size);
+						writeRange(chan, position, input, length);
+					});
+				}
+				@SuppressWarnings("resource")
+				final JsonTokenStream jts = new JsonTokenStream(tempFile);
+				return new ByteArrayFileCache(
+						null, tempFile, null, jts.setTrustedWholeJson(trustedJson), sorted, size);
+			}
+		} catch (RuntimeException | IOException e) {
+			cleanUp(tempFile);
+			throw e;
+		}
+	}
+	
+	private static void checkRange(final long position, final long length, final long size) {
+		if (position < 0 || length < 0 || position + length > size) {
+			throw new IllegalArgumentException(String.format(
+					"Range at position %s with length %s is outside of data of size %s",
+					position, length, size));
+		}
+	}
+	
+	private static void writeRange(
+			final FileChannel chan,
+			final long position,
+			final InputStream input,
+			final long length)
+			throws IOException {
+		// the channel transfer never reads more than the requested count from the input
+		final ReadableByteChannel src = Channels.newChannel(input);
+		long written = 0;
+		while (written < length) {
+			final long count = chan.transferFrom(src, position + written, length - written);
+			if (count < 1) {
+				throw new EOFException(String.format(
+						"Length to read: %s actual: %s", length, written));
+			}
+			written += count;
+		}
+	}
+	
+	private static FileChannel openForWrite(final File file) throws IOException {
+		return FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+	}
+	
+	// returns the number of bytes transferred
+	private static long transferAll(final ReadableByteChannel src, final FileChannel dest)
+			throws IOException {
+		long position = 0;
+		long count;
+		// for a stream backed channel, no bytes are transferred only at the end of the stream
+		while ((count = dest.transferFrom(src, position, TRANSFER_SIZE)) > 0) {
+			position += count;
+		}
+		return position;
+	}
+	
 	private void cleanUp(final File tempFile) {
 		if (tempFile != null) {
 			tempFile.delete();
@@ -129,30 +296,36 @@ public class ByteArrayFileCacheManager {
 		File tempFile = null;
 		try {
 			if (tfm == null) {
-				final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-				parent.getSubdataExtractionAsStream(paths, baos);
-				// TODO CODE this creates a new byte[], doubling the memory usage temporarily
-				final JsonTokenStream jts = new JsonTokenStream(baos.toByteArray());
+				final SegmentedOutputStream sos = new SegmentedOutputStream();
+				parent.getSubdataExtractionAsStream(paths, sos);
+				final long size = sos.getSize();
+				// the size of the subdata is unknown in advance, so a copy is required
+				final byte[] data = sos.toByteArray();
+				final JsonTokenStream jts = new JsonTokenStream(data);
 				return new ByteArrayFileCache(
 						parent,
 						null,
+						data,
 						jts.setTrustedWholeJson(parent.containsTrustedJson()),
 						parent.isSorted(),
-						baos.size());
+						size);
 			} else {
 				tempFile = tfm.generateTempFile("resp", "json");
-				try (final OutputStream os = new BufferedOutputStream(
-						new FileOutputStream(tempFile))) {
-					parent.getSubdataExtractionAsStream(paths, os);
+				try (final FileChannel chan = openForWrite(tempFile)) {
+					// the JSON generator buffers its output, so no stream buffer is needed.
+					// Closing the generator closes the channel.
+					parent.getSubdataExtractionAsStream(paths, Channels.newOutputStream(chan));
 				}
+				final long size = Files.size(tempFile.toPath());
 				@SuppressWarnings("resource")
 				final JsonTokenStream jts = new JsonTokenStream(tempFile);
 				return new ByteArrayFileCache(
 						parent,
 						tempFile,
+						null,
 						jts.setTrustedWholeJson(parent.containsTrustedJson()),
 						parent.isSorted(),
-						Files.size(tempFile.toPath())); 
+						size);
 			}
 		} catch (IOException | TypedObjectExtractionException | RuntimeException e) {
 			// based on the inputs it doesn't seem possible to test the IOException case
@@ -161,9 +334,173 @@ public class ByteArrayFileCacheManager {
 		}
 	}
 	
+	/** Create a data cache backed by shared data. The cache holds a reference to the shared
+	 * data until the cache is destroyed, and so the data is not deleted while the cache is in
+	 * use. The data is stored wherever the shared data is stored, regardless of the storage
+	 * mode of this manager.
+	 * @param shared the shared data.
+	 * @return the new data cache, or empty if all references to the shared data have been
+	 * released.
+	 * @throws IOException if an IO exception occurs when attempting to read the data.
+	 */
+	public Optional<ByteArrayFileCache> createBAFC(final SharedData shared) throws IOException {
+		requireNonNull(shared, "shared");
+		if (!shared.acquire()) {
+			return Optional.empty();
+		}
+		try {
+			@SuppressWarnings("resource")
+			final JsonTokenStream jts = shared.file == null ?
+					new JsonTokenStream(shared.data) : new JsonTokenStream(shared.file);
+			return Optional.of(new ByteArrayFileCache(
+					shared, jts.setTrustedWholeJson(shared.trustedJson)));
+		} catch (IOException | RuntimeException e) {
+			shared.release();
+			throw e;
+		}
+	}
+	
+	/** Immutable data that may back multiple data caches, each of which reads the data
+	 * independently. The data is reference counted and is deleted when all references are
+	 * released.
+	 * @see ByteArrayFileCache#share()
+	 */
+	public static class SharedData {
+		
+		private final byte[] data;
+		private final File file;
+		private final long size;
+		private final boolean trustedJson;
+		private final boolean sorted;
+		private int references = 1;
+		
+		private SharedData(
+				final byte[] data,
+				final File file,
+				final long size,
+				final boolean trustedJson,
+				final boolean sorted) {
+			this.data = data;
+			this.file = file;
+			this.size = size;
+			this.trustedJson = trustedJson;
+			this.sorted = sorted;
+		}
+		
+		/** Get the size of the data.
+		 * @return the size of the data.
+		 */
+		public long getSize() {
+			return size;
+		}
+		
+		/** Check if the data is stored in memory or on disk.
+		 * @return true if the data is stored on disk.
+		 */
+		public boolean isStoredOnDisk() {
+			return file != null;
+		}
+		
+		private synchronized boolean acquire() {
+			if (references < 1) {
+				return false;
+			}
+			references++;
+			return true;
+		}
+		
+		/** Release a reference to the data. The creator of the shared data holds a reference
+		 * that must be released when the creator no longer needs the data. Data caches backed
+		 * by the data release their references when destroyed. When no references remain, the
+		 * data is deleted. Calling this method after all references are released has no effect.
+		 */
+		public synchronized void release() {
+			if (references < 1) {
+				return;
+			}
+			references--;
+			if (references == 0 && file != null) {
+				file.delete();
+			}
+		}
+	}
+	
+	/* An output stream that stores data in a list of segments. Unlike a ByteArrayOutputStream,
+	 * the data is never copied as the stream grows and at most one partially filled segment is
+	 * allocated. Segments grow with the data size up to a maximum, so small data uses small
+	 * segments.
+	 * Converting to a single array requires one copy, during which the segments are released
+	 * as they are copied. As such the peak memory use is about twice the data size, compared to
+	 * up to 3 times the data size for a ByteArrayOutputStream.
+	 */
+	private static class SegmentedOutputStream extends OutputStream {
+		
+		private static final int MIN_SEGMENT_SIZE = 8 * 1024;
+		private static final int MAX_SEGMENT_SIZE = 1024 * 1024;
+		
+		private final List<byte[]> segments = new ArrayList<>();
+		private byte[] current = null;
+		private int position = 0;
+		private long size = 0;
+		
+		@Override
+		public void write(final int b) throws IOException {
+			ensureSpace();
+			current[position++] = (byte) b;
+			size++;
+		}
+		
+		@Override
+		public void write(final byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				ensureSpace();
+				final int count = Math.min(len, current.length - position);
+				System.arraycopy(b, off, current, position, count);
+				position += count;
+				off += count;
+				len -= count;
+				size += count;
+			}
+		}
+		
+		private void ensureSpace() throws IOException {
+			if (current == null || position == current.length) {
+				if (size + 1 > Integer.MAX_VALUE) {
+					throw new IOException("Data is too large to be stored in memory");
+				}
+				// double the total capacity with each new segment, up to the max segment size
+				current = new byte[(int) Math.min(MAX_SEGMENT_SIZE,
+						Math.min(Integer.MAX_VALUE - size, Math.max(MIN_SEGMENT_SIZE, size)))];
+				segments.add(current);
+				position = 0;
+			}
+		}
+		
+		private long getSize() {
+			return size;
+		}
+		
+		// the stream is unusable after this method is called
+		private byte[] toByteArray() {
+			final byte[] ret = new byte[(int) size];
+			int offset = 0;
+			for (int i = 0; i < segments.size(); i++) {
+				final int count = (int) Math.min(segments.get(i).length, size - offset);
+				System.arraycopy(segments.get(i), 0, ret, offset, count);
+				offset += count;
+				segments.set(i, null); // allow the segment to be garbage collected
+			}
+			segments.clear();
+			current = null;
+			return ret;
+		}
+	}
+	
 	/** A container for arbitrary JSON data. */
 	public class ByteArrayFileCache {
 		private File tempFile = null;
+		private byte[] data = null;
+		private SharedData shared = null;
 		private JsonTokenStream jts;
 		private ByteArrayFileCache parent = null;
 		private boolean destroyed = false;
@@ -174,16 +511,23 @@ public class ByteArrayFileCacheManager {
 		private ByteArrayFileCache(
 				final ByteArrayFileCache parent,
 				final File tempFile,
+				final byte[] data,
 				final JsonTokenStream jts,
 				final boolean sorted,
 				final long size) {
 			this.parent = parent;
 			this.tempFile = tempFile;
+			this.data = data;
 			this.jts = jts;
 			this.sorted = sorted;
 			this.size = size;
 		}
 		
+		private ByteArrayFileCache(final SharedData shared, final JsonTokenStream jts) {
+			this(null, shared.file, shared.data, jts, shared.sorted, shared.size);
+			this.shared = shared;
+		}
+		
 		/** Check if the JSON data is sorted.
 		 * @return true if sorted.
 		 */
@@ -254,6 +598,26 @@ public class ByteArrayFileCacheManager {
 			}
 		}
 		
+		/** Convert this cache to data that can be shared between multiple caches. This cache is
+		 * destroyed, but the data is not deleted - ownership of the data passes to the shared
+		 * data. The single reference to the shared data is held by the caller.
+		 * @return the shared data.
+		 * @see ByteArrayFileCacheManager#createBAFC(SharedData)
+		 */
+		public SharedData share() {
+			checkIfDestroyed();
+			if (parent != null || shared != null) {
+				throw new IllegalStateException(
+						"Only a cache that is not a subset and does not use shared data " +
+						"can be shared");
+			}
+			final SharedData sd = new SharedData(
+					data, tempFile, size, jts.hasTrustedWholeJson(), sorted);
+			tempFile = null; // don't delete the file on destroy
+			destroy();
+			return sd;
+		}
+		
 		/** Check if this cache has been destroyed and is no longer useful.
 		 * @return true if the cache is destroyed.
 		 */
@@ -274,7 +638,9 @@ public class ByteArrayFileCacheManager {
 			} catch (IOException ioe) {
 				//nothing can be done
 			}
-			if (tempFile != null) {
+			if (shared != null) {
+				shared.release();
+			} else if (tempFile != null) {
 				tempFile.delete();
 			}
 			if (parent != null) {
@@ -282,6 +648,8 @@ public class ByteArrayFileCacheManager {
 			}
 			parent = null;
 			jts = null;
+			data = null;
+			shared = null;
 			tempFile = null;
 			destroyed = true;
 		}
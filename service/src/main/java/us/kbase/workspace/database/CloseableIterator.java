@@ -0,0 +1,21 @@
+package us.kbase.workspace.database;
+
+import java.util.Iterator;
+
+/** An iterator over resources that must be released if the iterator is not exhausted, for
+ * example a database cursor. Implementations release the resources automatically when the
+ * iterator is exhausted.
+ *
+ * Since the {@link Iterator} methods cannot throw checked exceptions, errors that occur
+ * while iterating are thrown as unchecked exceptions. See the documentation of the method
+ * returning the iterator for details.
+ * @param <T> the type of the elements of the iterator.
+ */
+public interface CloseableIterator<T> extends Iterator<T>, AutoCloseable {
+
+	/** Release any resources held by the iterator. After closing, the iterator has no more
+	 * elements. Closing an iterator more than once has no effect.
+	 */
+	@Override
+	void close();
+}
@@ -11,8 +11,8 @@ import java.util.TreeMap;
 
 /** Represents the state of workspace configuration that can be updated dynamically. */
 public class DynamicConfig {
-	// This is a minimal implementation since there's only one configuration item currently.
-	// May want to add more features / DRY things up later.
+	// This is a minimal implementation since there's only a couple of configuration items
+	// currently. May want to add more features / DRY things up later.
 	
 	// may want to add a means to get a subset of the config to save bandwidth, but for
 	// now that's moot.
@@ -20,10 +20,15 @@ public class DynamicConfig {
 	/** The map key name for the backend scaling parameter. */
 	public static final String KEY_BACKEND_SCALING = "backend-file-retrieval-scaling";
 	private static final int DEFAULT_BACKEND_SCALING = 1;
+	/** The map key name for the backend upload scaling parameter. */
+	public static final String KEY_BACKEND_UPLOAD_SCALING = "backend-file-upload-scaling";
+	private static final int DEFAULT_BACKEND_UPLOAD_SCALING = 1;
 	private final int backendScaling;
+	private final int backendUploadScaling;
 	
-	private DynamicConfig(final int backendScaling) {
+	private DynamicConfig(final int backendScaling, final int backendUploadScaling) {
 		this.backendScaling = backendScaling;
+		this.backendUploadScaling = backendUploadScaling;
 	}
 	
 	/** Get the backend scaling parameter - e.g. how many simultaneous requests should be
@@ -35,6 +40,16 @@ public class DynamicConfig {
 		return backendScaling < 1 ? Optional.empty() : Optional.of(backendScaling);
 	}
 	
+	/** Get the backend upload scaling parameter - e.g. how many simultaneous requests should
+	 * be made to a file backend to save data for workspace objects for a single object
+	 * save call.
+	 * @return the upload scaling parameter.
+	 */
+	public Optional<Integer> getBackendUploadScaling() {
+		return backendUploadScaling < 1 ?
+				Optional.empty() : Optional.of(backendUploadScaling);
+	}
+	
 	/** Get the configuration as a map.
 	 * @return the configuration map.
 	 */
@@ -43,6 +58,9 @@ public class DynamicConfig {
 		if (backendScaling > 0) {
 			ret.put(KEY_BACKEND_SCALING, backendScaling);
 		}
+		if (backendUploadScaling > 0) {
+			ret.put(KEY_BACKEND_UPLOAD_SCALING, backendUploadScaling);
+		}
 		return ret;
 	}
 	
@@ -53,6 +71,13 @@ public class DynamicConfig {
 		return backendScaling;
 	}
 	
+	private static int checkBackendUploadScaling(final int backendUploadScaling) {
+		if (backendUploadScaling < 1) {
+			throw new IllegalArgumentException("backend upload scaling must be > 0");
+		}
+		return backendUploadScaling;
+	}
+	
 	private static int checkMapInteger(final Map<String, Object> configItems, final String key) {
 		final Object value = configItems.get(key);
 		if (!(value instanceof Integer) || (Integer) value < 1) {
@@ -64,18 +89,23 @@ public class DynamicConfig {
 	
 	private static class MapState {
 		private int backendScaling = -1;
+		private int backendUploadScaling = -1;
 	}
 
 	private static MapState checkMap(final Map<String, Object> configItems) {
 		// don't mutate source
 		final Map<String, Object> copy = new TreeMap<>(requireNonNull(configItems, "configItems"));
 		final MapState ret = new MapState();
+		// may want to add handlers for each key, as this might get unwieldy with a lot
+		// of config items, but since there's only a couple for now...
 		if (copy.containsKey(KEY_BACKEND_SCALING)) {
-			// may want to add handlers for each key, as this might get unwieldy with a lot
-			// of config items, but since there's only one for now...
 			ret.backendScaling = checkMapInteger(copy, KEY_BACKEND_SCALING);
 			copy.remove(KEY_BACKEND_SCALING);
 		}
+		if (copy.containsKey(KEY_BACKEND_UPLOAD_SCALING)) {
+			ret.backendUploadScaling = checkMapInteger(copy, KEY_BACKEND_UPLOAD_SCALING);
+			copy.remove(KEY_BACKEND_UPLOAD_SCALING);
+		}
 		if (!copy.isEmpty()) {
 			throw new IllegalArgumentException(String.format(
 					"Unexpected key in configuration map: %s", copy.keySet().iterator().next()));
@@ -88,6 +118,7 @@ public class DynamicConfig {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + backendScaling;
+		result = prime * result + backendUploadScaling;
 		return result;
 	}
 
@@ -102,6 +133,8 @@ public class DynamicConfig {
 		DynamicConfig other = (DynamicConfig) obj;
 		if (backendScaling != other.backendScaling)
 			return false;
+		if (backendUploadScaling != other.backendUploadScaling)
+			return false;
 		return true;
 	}
 
@@ -116,6 +149,7 @@ public class DynamicConfig {
 	public static class Builder {
 
 		private int backendScaling = -1;
+		private int backendUploadScaling = -1;
 		
 		private Builder() {}
 		
@@ -130,6 +164,17 @@ public class DynamicConfig {
 			return this;
 		}
 		
+		/** Set the backend upload scaling parameter for the builder. This parameter determines
+		 * how many simultaneous requests should be made to a file backend to save data for
+		 * workspace objects for a single object save call.
+		 * @param backendUploadScaling the backend upload scaling parameter.
+		 * @return this builder.
+		 */
+		public Builder withBackendUploadScaling(final int backendUploadScaling) {
+			this.backendUploadScaling = checkBackendUploadScaling(backendUploadScaling);
+			return this;
+		}
+		
 		/** Set the state of the builder from a map of configuration keys to configuration values.
 		 * @param configItems the map of configuration items.
 		 * @return this builder.
@@ -137,6 +182,8 @@ public class DynamicConfig {
 		public Builder withMap(final Map<String, Object> configItems) {
 			final MapState ms = checkMap(configItems);
 			this.backendScaling = ms.backendScaling > 0 ? ms.backendScaling : this.backendScaling;
+			this.backendUploadScaling = ms.backendUploadScaling > 0 ?
+					ms.backendUploadScaling : this.backendUploadScaling;
 			return this;
 		}
 		
@@ -144,7 +191,7 @@ public class DynamicConfig {
 		 * @return the configuration.
 		 */
 		public DynamicConfig build() {
-			return new DynamicConfig(backendScaling);
+			return new DynamicConfig(backendScaling, backendUploadScaling);
 		}
 	}
 	
@@ -157,16 +204,19 @@ public class DynamicConfig {
 		
 		// should never be removed
 		private final int backendScaling;
+		private final int backendUploadScaling;
 
-		private DynamicConfigUpdate(final int backendScaling) {
+		private DynamicConfigUpdate(final int backendScaling, final int backendUploadScaling) {
 			this.backendScaling = backendScaling;
+			this.backendUploadScaling = backendUploadScaling;
 		}
 		
 		/** Get the default configuration as an update.
 		 * @return the default configuration update.
 		 */
 		public static DynamicConfigUpdate getDefault() {
-			return new DynamicConfigUpdate(DEFAULT_BACKEND_SCALING);
+			return new DynamicConfigUpdate(
+					DEFAULT_BACKEND_SCALING, DEFAULT_BACKEND_UPLOAD_SCALING);
 		}
 		
 		/** Get a map of configuration key to configuration value to which the configuration
@@ -178,6 +228,9 @@ public class DynamicConfig {
 			if (backendScaling > 0) {
 				ret.put(KEY_BACKEND_SCALING, backendScaling);
 			}
+			if (backendUploadScaling > 0) {
+				ret.put(KEY_BACKEND_UPLOAD_SCALING, backendUploadScaling);
+			}
 			return ret;
 		}
 		
@@ -194,6 +247,7 @@ public class DynamicConfig {
 			final int prime = 31;
 			int result = 1;
 			result = prime * result + backendScaling;
+			result = prime * result + backendUploadScaling;
 			return result;
 		}
 
@@ -208,6 +262,8 @@ public class DynamicConfig {
 			DynamicConfigUpdate other = (DynamicConfigUpdate) obj;
 			if (backendScaling != other.backendScaling)
 				return false;
+			if (backendUploadScaling != other.backendUploadScaling)
+				return false;
 			return true;
 		}
 
@@ -222,6 +278,7 @@ public class DynamicConfig {
 		public static class Builder {
 
 			private int backendScaling = -1;
+			private int backendUploadScaling = -1;
 
 			private Builder() {};
 
@@ -236,6 +293,17 @@ public class DynamicConfig {
 				return this;
 			}
 
+			/** Set the backend upload scaling parameter for the builder. This parameter
+			 * determines how many simultaneous requests should be made to a file backend to
+			 * save data for workspace objects for a single object save call.
+			 * @param backendUploadScaling the backend upload scaling parameter.
+			 * @return this builder.
+			 */
+			public Builder withBackendUploadScaling(final int backendUploadScaling) {
+				this.backendUploadScaling = checkBackendUploadScaling(backendUploadScaling);
+				return this;
+			}
+
 			/** Set the state of the builder from a map of configuration keys to configuration
 			 * values.
 			 * @param configItems the map of configuration items.
@@ -245,6 +313,8 @@ public class DynamicConfig {
 				final MapState ms = checkMap(configItems);
 				this.backendScaling = ms.backendScaling > 0 ?
 						ms.backendScaling : this.backendScaling;
+				this.backendUploadScaling = ms.backendUploadScaling > 0 ?
+						ms.backendUploadScaling : this.backendUploadScaling;
 				return this;
 			}
 
@@ -252,7 +322,7 @@ public class DynamicConfig {
 			 * @return the configuration update.
 			 */
 			public DynamicConfigUpdate build() {
-				return new DynamicConfigUpdate(backendScaling);
+				return new DynamicConfigUpdate(backendScaling, backendUploadScaling);
 			}
 		}
 	}
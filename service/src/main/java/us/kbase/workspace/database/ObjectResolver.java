@@ -13,7 +13,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
-import java.util.stream.Collectors;
 
 import us.kbase.workspace.database.exceptions.CorruptWorkspaceDBException;
 import us.kbase.workspace.database.exceptions.InaccessibleObjectException;
@@ -21,6 +20,7 @@ import us.kbase.workspace.database.exceptions.NoSuchObjectException;
 import us.kbase.workspace.database.exceptions.NoSuchReferenceException;
 import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
 import us.kbase.workspace.database.refsearch.ReferenceGraphSearch;
+import us.kbase.workspace.database.refsearch.ReferenceGraphSearch.SearchMode;
 import us.kbase.workspace.database.refsearch.ReferenceGraphTopologyProvider;
 import us.kbase.workspace.database.refsearch.ReferenceProviderException;
 import us.kbase.workspace.database.refsearch.ReferenceSearchFailedException;
@@ -46,6 +46,7 @@ public class ObjectResolver {
 	private final boolean nullIfInaccessible;
 	private final boolean asAdmin;
 	private final int maximumObjectSearchCount;
+	private final SearchMode searchMode;
 	
 	/* only the below are accessible via the api. The variables above are only needed during the
 	 * object resolution process. 
@@ -65,7 +66,8 @@ public class ObjectResolver {
 			final List<ObjectIdentifier> objects,
 			final boolean nullIfInaccessible,
 			final boolean asAdmin,
-			final int maxSearch)
+			final int maxSearch,
+			final SearchMode searchMode)
 			throws WorkspaceCommunicationException, InaccessibleObjectException,
 				CorruptWorkspaceDBException, NoSuchReferenceException,
 				ReferenceSearchMaximumSizeExceededException {
@@ -77,6 +79,7 @@ public class ObjectResolver {
 		this.nullIfInaccessible = nullIfInaccessible;
 		this.asAdmin = asAdmin;
 		this.maximumObjectSearchCount = maxSearch;
+		this.searchMode = searchMode;
 		resolve();
 	}
 	
@@ -229,21 +232,17 @@ public class ObjectResolver {
 	}
 	
 
-	private Set<Long> getReadableWorkspaces()
+	private WorkspaceIDSet getReadableWorkspaces()
 			throws WorkspaceCommunicationException, CorruptWorkspaceDBException {
-		//could make a method to just get IDs of workspace with specific permission to save mem
-		final PermissionSet pset = db.getPermissions(user, Permission.READ, false);
-		return pset.getWorkspaces().stream()
-				.filter(ws -> !ws.isDeleted())
-				.map(ws -> ws.getID())
-				.collect(Collectors.toSet());
+		final WorkspaceIDSet pub = db.getPublicWorkspaceIDs();
+		return user == null ? pub : db.getUserReadableWorkspaceIDs(user).union(pub);
 	}
 	
 	private class TopoProvider implements ReferenceGraphTopologyProvider {
 			
-		private final Set<Long> readableWorkspaceIDs;
+		private final WorkspaceIDSet readableWorkspaceIDs;
 		
-		private TopoProvider(final Set<Long> readableWorkspaceIDs) {
+		private TopoProvider(final WorkspaceIDSet readableWorkspaceIDs) {
 			this.readableWorkspaceIDs = readableWorkspaceIDs;
 		}
 
@@ -280,14 +279,14 @@ public class ObjectResolver {
 		}
 	}
 
-	//TODO REF LOOKUP positive and negative caches (?)
 	private void searchObjectDAG(final Set<ObjectIdentifier> lookup)
 			throws WorkspaceCommunicationException, ReferenceSearchMaximumSizeExceededException,
 				InaccessibleObjectException, CorruptWorkspaceDBException {
 		if (lookup.isEmpty()) {
 			return;
 		}
-		final Set<Long> readableWorkspaceIDs = asAdmin? new HashSet<>() : getReadableWorkspaces();
+		final WorkspaceIDSet readableWorkspaceIDs = asAdmin ?
+				WorkspaceIDSet.empty() : getReadableWorkspaces();
 		final Map<ObjectIdentifier, ObjectIDResolvedWS> resobjs = permissionsFactory
 				.getObjectChecker(lookup, Permission.NONE)
 				.withIncludeDeletedWorkspaces().check();
@@ -310,7 +309,7 @@ public class ObjectResolver {
 			}
 			final ReferenceGraphSearch search = new ReferenceGraphSearch(
 					startingRefs, new TopoProvider(readableWorkspaceIDs),
-					maximumObjectSearchCount, !nullIfInaccessible);
+					maximumObjectSearchCount, !nullIfInaccessible, searchMode);
 			searchObjectDAGBuildResolvedObjectPaths(resobjs, objrefs, search);
 		} catch (final ReferenceSearchFailedException |
 				ObjectDAGSearchFromObjectIDFailedException e) {
@@ -327,7 +326,7 @@ public class ObjectResolver {
 	}
 
 	private Set<Reference> searchObjectDAGGetStartingRefs(
-			final Set<Long> readableWorkspaceIDs,
+			final WorkspaceIDSet readableWorkspaceIDs,
 			final Set<ObjectIdentifier> lookup,
 			final Map<ObjectIdentifier, ObjectIDResolvedWS> resobjs,
 			final Map<ObjectIDResolvedWS, Reference> objrefs)
@@ -566,6 +565,7 @@ public class ObjectResolver {
 		private boolean nullIfInaccessible = false;
 		private boolean asAdmin = false;
 		private int maxSearch = MAX_OBJECT_SEARCH_COUNT_DEFAULT;
+		private SearchMode searchMode = SearchMode.INDEPENDENT_TREES;
 		
 		private Builder(final WorkspaceDatabase db, final WorkspaceUser user) {
 			nonNull(db, "db");
@@ -590,7 +590,8 @@ public class ObjectResolver {
 			if (objects.isEmpty()) {
 				throw new IllegalArgumentException("No object identifiers provided");
 			}
-			return new ObjectResolver(db, user, objects, nullIfInaccessible, asAdmin, maxSearch);
+			return new ObjectResolver(db, user, objects, nullIfInaccessible, asAdmin, maxSearch,
+					searchMode);
 		}
 		
 		/** Build an empty ObjectResolver containing no objects. Ignores any objects added to the
@@ -601,7 +602,7 @@ public class ObjectResolver {
 
 			try {
 				return new ObjectResolver(db, user, Collections.emptyList(), nullIfInaccessible,
-						asAdmin, maxSearch);
+						asAdmin, maxSearch, searchMode);
 			} catch (WorkspaceCommunicationException | InaccessibleObjectException |
 					CorruptWorkspaceDBException | NoSuchReferenceException |
 					ReferenceSearchMaximumSizeExceededException e) {
@@ -633,6 +634,17 @@ public class ObjectResolver {
 			return this;
 		}
 		
+		/** Set the strategy for searching the object reference graph for paths to objects.
+		 * The default is {@link SearchMode#INDEPENDENT_TREES}.
+		 * @param searchMode the search strategy.
+		 * @return this builder.
+		 */
+		public Builder withSearchMode(final SearchMode searchMode) {
+			nonNull(searchMode, "searchMode");
+			this.searchMode = searchMode;
+			return this;
+		}
+		
 		/** Run the resolution as an admin - e.g. all workspaces are accessible.
 		 * @param asAdmin
 		 * @return this builder.
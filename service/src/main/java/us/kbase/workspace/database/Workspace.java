@@ -20,8 +20,18 @@ import java.util.Map.Entry;
 import java.util.stream.Collectors;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.fasterxml.jackson.core.JsonParseException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -56,9 +66,12 @@ import us.kbase.typedobj.idref.IdReferenceHandlerSetFactory.IdReferenceHandlerFa
 import us.kbase.typedobj.idref.IdReferencePermissionHandlerSet.IdReferencePermissionHandler;
 import us.kbase.typedobj.idref.IdReferenceType;
 import us.kbase.typedobj.idref.RemappedId;
+import us.kbase.typedobj.idref.SharedIdCount;
 import us.kbase.workspace.database.DynamicConfig.DynamicConfigUpdate;
+import us.kbase.workspace.database.ListObjectsParameters.ResolvedListObjectParameters;
 import us.kbase.workspace.database.ObjectResolver.ObjectResolution;
 import us.kbase.workspace.database.ResourceUsageConfigurationBuilder.ResourceUsageConfiguration;
+import us.kbase.workspace.database.refsearch.ReferenceGraphSearch.SearchMode;
 import us.kbase.workspace.database.refsearch.ReferenceSearchMaximumSizeExceededException;
 import us.kbase.workspace.database.exceptions.CorruptWorkspaceDBException;
 import us.kbase.workspace.database.exceptions.InaccessibleObjectException;
@@ -95,6 +108,10 @@ public class Workspace {
 	 */
 	private final static int MAX_OBJECT_SEARCH_COUNT_DEFAULT = 10000;
 	private final static int MAX_GET_OBJECTS_REQUEST = 10000;
+	/* the dynamic configuration is read for every save and get, so it's cached. Changes made
+	 * by other servers are seen once the cached configuration expires.
+	 */
+	private final static long CONFIG_CACHE_TTL_MS = 30000;
 	
 	private final static IdReferenceType WS_ID_TYPE = new IdReferenceType("ws");
 	
@@ -103,7 +120,13 @@ public class Workspace {
 	private final TypedObjectValidator validator;
 	private final TempFilesManager tfm;
 	private final List<WorkspaceEventListener> listeners;
+	private final int saveThreads;
+	// null if objects are processed on the calling thread
+	private final ExecutorService saveExecutor;
 	private int maximumObjectSearchCount;
+	private SearchMode referenceSearchMode = SearchMode.INDEPENDENT_TREES;
+	private DynamicConfig cachedConfig = null;
+	private long cachedConfigExpiresNanos;
 	
 	public Workspace(
 			final WorkspaceDatabase db,
@@ -121,6 +144,32 @@ public class Workspace {
 			final TempFilesManager tfm,
 			final List<WorkspaceEventListener> listeners)
 			throws WorkspaceCommunicationException {
+		this(db, cfg, validator, tfm, listeners, 1);
+	}
+	
+	/** Create the workspace.
+	 * @param db the workspace database.
+	 * @param cfg the resource usage configuration.
+	 * @param validator the typed object validator.
+	 * @param tfm the temporary files manager.
+	 * @param listeners any event listeners.
+	 * @param saveThreads the number of threads to use for validating and relabeling objects
+	 * when saving objects. The threads are shared between all save operations. If 1,
+	 * objects are processed serially on the calling thread.
+	 * @throws WorkspaceCommunicationException if a communication error occurs when contacting
+	 * the workspace database.
+	 */
+	public Workspace(
+			final WorkspaceDatabase db,
+			final ResourceUsageConfiguration cfg,
+			final TypedObjectValidator validator,
+			final TempFilesManager tfm,
+			final List<WorkspaceEventListener> listeners,
+			final int saveThreads)
+			throws WorkspaceCommunicationException {
+		if (saveThreads < 1) {
+			throw new IllegalArgumentException("saveThreads must be > 0");
+		}
 		this.db = requireNonNull(db, "db");
 		this.db.setConfig(DynamicConfigUpdate.getDefault(), false);
 		rescfg = requireNonNull(cfg, "cfg");
@@ -131,6 +180,27 @@ public class Workspace {
 		noNulls(listeners, "null item in listeners");
 		this.listeners = Collections.unmodifiableList(listeners);
 		this.maximumObjectSearchCount = MAX_OBJECT_SEARCH_COUNT_DEFAULT;
+		this.saveThreads = saveThreads;
+		this.saveExecutor = saveThreads == 1 ? null : newSaveExecutor(saveThreads);
+	}
+	
+	// idle threads exit, so a workspace that is discarded without being shut down holds no threads
+	private static ExecutorService newSaveExecutor(final int saveThreads) {
+		final ThreadPoolExecutor pool = new ThreadPoolExecutor(
+				saveThreads, saveThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ws-save-%d").build());
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+	
+	/** Stop the threads used for processing objects when saving objects. Saves in progress
+	 * complete, but saving objects fails afterwards, so this method should only be called when
+	 * the workspace is no longer in use. Calling this method more than once has no effect.
+	 */
+	public void shutdown() {
+		if (saveExecutor != null) {
+			saveExecutor.shutdown();
+		}
 	}
 	
 	/* this is temporary until we have path returning code when searching for objects.
@@ -145,6 +215,20 @@ public class Workspace {
 		return maximumObjectSearchCount;
 	}
 	
+	/** Set the strategy for searching the object reference graph for paths to objects.
+	 * @param searchMode the search strategy.
+	 */
+	public void setReferenceSearchMode(final SearchMode searchMode) {
+		referenceSearchMode = requireNonNull(searchMode, "searchMode");
+	}
+	
+	/** Get the strategy for searching the object reference graph for paths to objects.
+	 * @return the search strategy.
+	 */
+	public SearchMode getReferenceSearchMode() {
+		return referenceSearchMode;
+	}
+	
 	public ResourceUsageConfiguration getResourceConfig() {
 		return rescfg;
 	}
@@ -160,18 +244,29 @@ public class Workspace {
 		return tfm;
 	}
 	
+	/** Get the number of threads used to process objects when saving objects.
+	 * @return the number of threads.
+	 */
+	public int getSaveThreadCount() {
+		return saveThreads;
+	}
+	
 	public List<DependencyStatus> status() {
 		return db.status();
 	}
 	
 	/** Set the dynamic configuration for the workspace. This method should only be exposed
-	 * to workspace admins.
+	 * to workspace admins. Other workspace servers using the same database apply the new
+	 * configuration within 30 seconds.
 	 * @param config the configuration
 	 * @throws WorkspaceCommunicationException if a communication error occurs.
 	 */
 	public void setConfig(final DynamicConfigUpdate config)
 			throws WorkspaceCommunicationException {
 		db.setConfig(requireNonNull(config, "config"), true);
+		synchronized (this) {
+			cachedConfig = null;
+		}
 	}
 	
 	/** Get the dynamic configuration for the workspace. This method should only be exposed to
@@ -185,6 +280,16 @@ public class Workspace {
 		return db.getConfig();
 	}
 	
+	private synchronized DynamicConfig getCachedConfig()
+			throws WorkspaceCommunicationException, CorruptWorkspaceDBException {
+		if (cachedConfig == null || System.nanoTime() - cachedConfigExpiresNanos >= 0) {
+			cachedConfig = db.getConfig();
+			cachedConfigExpiresNanos = System.nanoTime() +
+					TimeUnit.MILLISECONDS.toNanos(CONFIG_CACHE_TTL_MS);
+		}
+		return cachedConfig;
+	}
+	
 	public WorkspaceInformation createWorkspace(final WorkspaceUser user, 
 			final String wsname, boolean globalread, final String description,
 			final WorkspaceUserMetadata meta)
@@ -689,13 +794,140 @@ public class Workspace {
 				idHandlerFac.createHandlers(IDAssociation.class);
 		
 		final Map<WorkspaceSaveObject, ValidatedTypedObject> reports = 
-				validateObjectsAndExtractReferences(objects, idhandler);
+				validateObjectsAndExtractReferences(objects, idhandler, idHandlerFac);
 		
 		processIds(objects, idhandler, reports);
 		
-		//handle references and calculate size with new references
+		final List<ValidatedTypedObject> reps = new ArrayList<>(reports.values());
+		try {
+			//handle references and relabel with new references
+			final List<ResolvedSaveObject> saveobjs = resolveAndRelabelObjects(
+					rwsi, objects, idhandler, reports);
+			objects = null;
+			reports.clear();
+			
+			final WorkspaceInformation wsinfo = db.getWorkspaceInformation(user, rwsi);
+			
+			sortObjects(saveobjs);
+			// a single object is always uploaded in this thread, so don't read the config
+			final int uploadScaling = saveobjs.size() < 2 ?
+					1 : getCachedConfig().getBackendUploadScaling().get();
+			final List<ObjectInformation> ret = db.saveObjects(
+					user, rwsi, saveobjs, uploadScaling);
+			for (final WorkspaceEventListener l: listeners) {
+				for (final ObjectInformation oi: ret) {
+					l.saveObject(oi, wsinfo.isGloballyReadable());
+				}
+			}
+			return ret;
+		} finally {
+			for (final ValidatedTypedObject rep: reps) {
+				try {
+					rep.destroyCachedResources();
+				} catch (RuntimeException | Error e) {
+					//damn the torpedoes full speed ahead
+				}
+			}
+		}
+	}
+	
+	/* A task to run for a single object, numbered from 1 in the input order, during a save. */
+	private interface SaveTask<T> {
+		
+		T run(int objnum) throws Exception;
+	}
+	
+	private static class SaveTaskResult<T> {
+		
+		private final T result;
+		private final Exception error;
+		
+		private SaveTaskResult(final T result, final Exception error) {
+			this.result = result;
+			this.error = error;
+		}
+	}
+	
+	/* Runs a task for each object, concurrently if there is a save thread pool, and returns the
+	 * results in input order once all the tasks are complete. Errors are returned rather than
+	 * thrown. Once a task fails, tasks for later objects are skipped and their results are null,
+	 * so the first error in input order is always the same as if the tasks were run serially.
+	 */
+	private <T> List<SaveTaskResult<T>> runSaveTasks(final int count, final SaveTask<T> task) {
+		final AtomicInteger firstError = new AtomicInteger(Integer.MAX_VALUE);
+		final List<Callable<SaveTaskResult<T>>> callables = new ArrayList<>();
+		for (int i = 1; i <= count; i++) {
+			final int objnum = i;
+			callables.add(() -> {
+				if (objnum > firstError.get()) {
+					return null;
+				}
+				try {
+					return new SaveTaskResult<>(task.run(objnum), null);
+				} catch (Exception e) {
+					firstError.accumulateAndGet(objnum, Math::min);
+					return new SaveTaskResult<>(null, e);
+				}
+			});
+		}
+		final List<SaveTaskResult<T>> ret = new ArrayList<>();
+		if (saveExecutor == null || count == 1) {
+			for (final Callable<SaveTaskResult<T>> c: callables) {
+				try {
+					ret.add(c.call());
+				} catch (Exception e) {
+					throw new RuntimeException("This is impossible, the task catches exceptions", e);
+				}
+			}
+			return ret;
+		}
+		final List<Future<SaveTaskResult<T>>> futures;
+		try {
+			futures = saveExecutor.invokeAll(callables);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while processing objects", e);
+		}
+		for (final Future<SaveTaskResult<T>> f: futures) {
+			try {
+				ret.add(f.get());
+			} catch (InterruptedException e) {
+				// can't happen, invokeAll waits for the tasks to complete
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while processing objects", e);
+			} catch (ExecutionException e) {
+				// only errors are thrown by the task
+				if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw new RuntimeException("Unexpected error", e);
+			}
+		}
+		return ret;
+	}
+	
+	private static void throwSaveTaskError(final Exception e) throws IOException {
+		if (e instanceof IOException) {
+			throw (IOException) e;
+		} else if (e instanceof RuntimeException) {
+			throw (RuntimeException) e;
+		} else {
+			throw new RuntimeException("Unexpected error", e);
+		}
+	}
+	
+	/* Relabeling writes the relabeled object to memory or a temporary file, calculates the
+	 * object size and MD5, checks the sort order, and extracts metadata in a single pass.
+	 * Objects are kept in memory until the total size exceeds the incoming data memory limit,
+	 * at which point all the objects are moved to temporary files.
+	 */
+	private List<ResolvedSaveObject> resolveAndRelabelObjects(
+			final ResolvedWorkspaceID rwsi,
+			final List<WorkspaceSaveObject> objects,
+			final IdReferenceHandlerSet<IDAssociation> idhandler,
+			final Map<WorkspaceSaveObject, ValidatedTypedObject> reports)
+			throws IOException {
 		final List<ResolvedSaveObject> saveobjs = new ArrayList<ResolvedSaveObject>();
-		long ttlObjSize = 0;
 		int objcount = 1;
 		for (WorkspaceSaveObject wo: objects) {
 			//maintain ordering
@@ -722,61 +954,53 @@ public class Workspace {
 			for (final RemappedId id: refids) {
 				refs.add((Reference) id);
 			}
-			
-			final ValidatedTypedObject rep = reports.get(wo);
-			saveobjs.add(wo.resolve(rwsi, rep, refs, provrefs, extractedIDs));
-			ttlObjSize += rep.calculateRelabeledSize();
+			saveobjs.add(wo.resolve(rwsi, reports.get(wo), refs, provrefs, extractedIDs));
+			objcount++;
+		}
+		// the objects share the memory limit, so concurrent relabeling can't exceed it
+		final AtomicLong memoryAvailable = new AtomicLong(rescfg.getMaxIncomingDataMemoryUsage());
+		final List<SaveTaskResult<Void>> results = runSaveTasks(saveobjs.size(), objnum -> {
+			final ResolvedSaveObject ro = saveobjs.get(objnum - 1);
+			final ValidatedTypedObject rep = ro.getRep();
+			rep.relabel(tfm, memoryAvailable, rescfg.getMaxObjectSize(),
+					WorkspaceUserMetadata.MAX_METADATA_SIZE);
 			if (rep.getRelabeledSize() > rescfg.getMaxObjectSize()) {
 				throw new IllegalArgumentException(String.format(
 						"Object %s data size %s exceeds limit of %s",
-						getObjectErrorId(wo.getObjectIdentifier(), objcount),
+						getObjectErrorId(ro.getObjectIdentifier(), objnum),
 						rep.getRelabeledSize(),
 						rescfg.getMaxObjectSize()));
 			}
-			objcount++;
-		}
-		objects = null;
-		reports.clear();
-		
-		final WorkspaceInformation wsinfo = db.getWorkspaceInformation(user, rwsi);
-		
-		try {
-			sortObjects(saveobjs, ttlObjSize);
-			final List<ObjectInformation> ret = db.saveObjects(user, rwsi, saveobjs);
-			for (final WorkspaceEventListener l: listeners) {
-				for (final ObjectInformation oi: ret) {
-					l.saveObject(oi, wsinfo.isGloballyReadable());
-				}
+			return null;
+		});
+		long ttlObjSize = 0;
+		for (int i = 0; i < results.size(); i++) {
+			if (results.get(i).error != null) {
+				throwSaveTaskError(results.get(i).error);
 			}
-			return ret;
-		} finally {
-			for (final ResolvedSaveObject wo: saveobjs) {
-				try {
-					wo.getRep().destroyCachedResources();
-				} catch (RuntimeException | Error e) {
-					//damn the torpedoes full speed ahead
-				}
+			ttlObjSize += saveobjs.get(i).getRep().getRelabeledSize();
+		}
+		if (ttlObjSize > rescfg.getMaxIncomingDataMemoryUsage()) {
+			// some objects went to disk, send all the others there as well
+			for (final ResolvedSaveObject ro: saveobjs) {
+				ro.getRep().moveCacheToFile(tfm);
 			}
 		}
+		return saveobjs;
 	}
 
-	private void sortObjects(
-			final List<ResolvedSaveObject> saveobjs,
-			final long ttlObjSize)
+	/* The objects are sorted serially, as each sorter may use up to the sort memory limit and
+	 * the sorters don't share a memory budget.
+	 */
+	private void sortObjects(final List<ResolvedSaveObject> saveobjs)
 			throws IOException, TypedObjectValidationException {
 		int objcount = 1;
-		final TempFilesManager tempTFM;
-		if (ttlObjSize > rescfg.getMaxIncomingDataMemoryUsage()) {
-			tempTFM = getTempFilesManager();
-		} else {
-			tempTFM = null;
-		}
 		final UTF8JsonSorterFactory fac = new UTF8JsonSorterFactory(
 				rescfg.getMaxRelabelAndSortMemoryUsage());
 		for (final ResolvedSaveObject ro: saveobjs) {
 			try {
-				//modifies object in place
-				ro.getRep().sort(fac, tempTFM);
+				//modifies object in place, and uses the same storage as the relabeled object
+				ro.getRep().sort(fac, tfm);
 			} catch (KeyDuplicationException kde) {
 				/* this occurs when two references in the same hash resolve
 				 * to the same reference, so one value would be lost
@@ -794,37 +1018,95 @@ public class Workspace {
 			objcount++;
 		}
 	}
-
+	
+	/* Each object is validated with its own ID handler set, which allows validating objects
+	 * concurrently. The IDs are then added to the main handler set in input order, so the
+	 * IDs, and any errors due to too many IDs, are the same as when validating serially.
+	 * The object handler sets share the ID limit, counting each distinct ID in the save once,
+	 * so concurrent validation stops early when the save has too many IDs.
+	 */
 	private Map<WorkspaceSaveObject, ValidatedTypedObject>
 			validateObjectsAndExtractReferences(
 			final List<WorkspaceSaveObject> objects,
-			final IdReferenceHandlerSet<IDAssociation> idhandler)
+			final IdReferenceHandlerSet<IDAssociation> idhandler,
+			final IdReferenceHandlerSetFactory idHandlerFac)
 			throws TypeStorageException, TypedObjectSchemaException,
 				TypedObjectValidationException {
+		final SharedIdCount idCount = new SharedIdCount();
+		final List<IdReferenceHandlerSet<IDAssociation>> objhandlers = new ArrayList<>();
+		for (int i = 0; i < objects.size(); i++) {
+			objhandlers.add(idHandlerFac.createRecordingHandlers(IDAssociation.class, idCount));
+		}
+		final List<SaveTaskResult<ValidatedTypedObject>> results = runSaveTasks(
+				objects.size(), objnum -> validateAndExtractReferences(
+						objects.get(objnum - 1), objhandlers.get(objnum - 1), objnum));
 		final Map<WorkspaceSaveObject, ValidatedTypedObject> reports = new HashMap<>();
-		int objcount = 1;
-		for (final WorkspaceSaveObject wo: objects) {
-			idhandler.associateObject(new IDAssociation(objcount, false));
-			final ValidatedTypedObject rep = validate(wo, idhandler, objcount);
-			reports.put(wo, rep);
-			idhandler.associateObject(new IDAssociation(objcount, true));
-			try {
-				for (final ProvenanceAction action: wo.getProvenance().getActions()) {
-					for (final String pref: action.getWorkspaceObjects()) {
-						idhandler.addStringId(new IdReference<String>(WS_ID_TYPE, pref, null));
-					}
+		for (int objcount = 1; objcount <= objects.size(); objcount++) {
+			final SaveTaskResult<ValidatedTypedObject> r = results.get(objcount - 1);
+			final WorkspaceSaveObject wo = objects.get(objcount - 1);
+			if (r.error != null && idCount.get() > idhandler.getMaximumIdCount()) {
+				/* The shared ID limit was exceeded, so the save will fail. However, IDs in
+				 * later objects may have caused this object to fail early, so validate the
+				 * remaining objects serially to get the same error as serial validation,
+				 * discarding their concurrent results first to free the memory.
+				 */
+				objhandlers.subList(objcount - 1, objhandlers.size()).clear();
+				results.subList(objcount - 1, results.size()).clear();
+				for (int i = objcount; i <= objects.size(); i++) {
+					reports.put(objects.get(i - 1), validateAndExtractReferences(
+							objects.get(i - 1), idhandler, i));
 				}
+				return reports;
+			}
+			// add any IDs found prior to a validation error, as the error may not have been
+			// reached when validating serially if too many IDs were found
+			try {
+				idhandler.addIds(objhandlers.get(objcount - 1));
 			} catch (IdReferenceHandlerException e) {
-				// thrown if ID is null or the empty string, which is impossible
+				// the IDs were already successfully added to the object's handler set
 				throw new RuntimeException("This exception didn't actually happen. In fact "
 						+ "you're on extremely strong drugs. Pay me no heed", e);
 			} catch (TooManyIdsException tmie) {
 				throw wrapTooManyIDsException(wo, objcount, idhandler.getMaximumIdCount(), tmie);
 			}
-			objcount++;
+			if (r.error instanceof TypeStorageException) {
+				throw (TypeStorageException) r.error;
+			} else if (r.error instanceof TypedObjectSchemaException) {
+				throw (TypedObjectSchemaException) r.error;
+			} else if (r.error instanceof TypedObjectValidationException) {
+				throw (TypedObjectValidationException) r.error;
+			} else if (r.error != null) {
+				throw (RuntimeException) r.error;
+			}
+			reports.put(wo, r.result);
 		}
 		return reports;
 	}
+	
+	private ValidatedTypedObject validateAndExtractReferences(
+			final WorkspaceSaveObject wo,
+			final IdReferenceHandlerSet<IDAssociation> idhandler,
+			final int objcount)
+			throws TypeStorageException, TypedObjectSchemaException,
+				TypedObjectValidationException {
+		idhandler.associateObject(new IDAssociation(objcount, false));
+		final ValidatedTypedObject rep = validate(wo, idhandler, objcount);
+		idhandler.associateObject(new IDAssociation(objcount, true));
+		try {
+			for (final ProvenanceAction action: wo.getProvenance().getActions()) {
+				for (final String pref: action.getWorkspaceObjects()) {
+					idhandler.addStringId(new IdReference<String>(WS_ID_TYPE, pref, null));
+				}
+			}
+		} catch (IdReferenceHandlerException e) {
+			// thrown if ID is null or the empty string, which is impossible
+			throw new RuntimeException("This exception didn't actually happen. In fact "
+					+ "you're on extremely strong drugs. Pay me no heed", e);
+		} catch (TooManyIdsException tmie) {
+			throw wrapTooManyIDsException(wo, objcount, idhandler.getMaximumIdCount(), tmie);
+		}
+		return rep;
+	}
 
 	private void processIds(
 			final List<WorkspaceSaveObject> objects,
@@ -986,6 +1268,17 @@ public class Workspace {
 		if (minPerm == null || Permission.READ.compareTo(minPerm) > 0) {
 			minPerm = Permission.READ;
 		}
+		if (Permission.READ.equals(minPerm)) {
+			// the common case, which doesn't require building a permission set
+			final WorkspaceIDSet userIDs = user == null ?
+					WorkspaceIDSet.empty() : db.getUserReadableWorkspaceIDs(user);
+			final WorkspaceIDSet pubIDs = excludeGlobal ?
+					WorkspaceIDSet.empty() : db.getPublicWorkspaceIDs();
+			return new UserWorkspaceIDs(user, minPerm,
+					userIDs.stream().boxed().collect(Collectors.toList()),
+					pubIDs.stream().filter(id -> !userIDs.contains(id)).boxed()
+							.collect(Collectors.toList()));
+		}
 		final PermissionSet perms = db.getPermissions(
 				user, null, minPerm, excludeGlobal, true, false);
 		final List<Long> workspaceIDs = new LinkedList<>();
@@ -1003,7 +1296,31 @@ public class Workspace {
 	public List<ObjectInformation> listObjects(final ListObjectsParameters params)
 			throws CorruptWorkspaceDBException, NoSuchWorkspaceException,
 				WorkspaceCommunicationException, WorkspaceAuthorizationException {
-
+		return db.getObjectInformation(resolveListParams(params));
+	}
+	
+	/** List objects, retrieving the objects from the storage system as the returned iterator is
+	 * consumed rather than holding all the objects in memory. See
+	 * {@link WorkspaceDatabase#iterateObjectInformation(ResolvedListObjectParameters)} for
+	 * error handling.
+	 * @param params the parameters for listing objects.
+	 * @return an iterator over the objects. The iterator must be closed if it is not exhausted.
+	 * @throws CorruptWorkspaceDBException if corrupt data is found in the storage system.
+	 * @throws NoSuchWorkspaceException if a workspace does not exist.
+	 * @throws WorkspaceCommunicationException if a communication error occurs when contacting the
+	 * storage system.
+	 * @throws WorkspaceAuthorizationException if the user may not read one of the workspaces.
+	 */
+	public CloseableIterator<ObjectInformation> iterateObjects(
+			final ListObjectsParameters params)
+			throws CorruptWorkspaceDBException, NoSuchWorkspaceException,
+				WorkspaceCommunicationException, WorkspaceAuthorizationException {
+		return db.iterateObjectInformation(resolveListParams(params));
+	}
+	
+	private ResolvedListObjectParameters resolveListParams(final ListObjectsParameters params)
+			throws CorruptWorkspaceDBException, NoSuchWorkspaceException,
+				WorkspaceCommunicationException, WorkspaceAuthorizationException {
 		final Map<WorkspaceIdentifier, ResolvedWorkspaceID> rwsis =
 				db.resolveWorkspaces(params.getWorkspaces());
 		final Set<ResolvedWorkspaceID> rw = new HashSet<>(rwsis.values());
@@ -1018,7 +1335,7 @@ public class Workspace {
 						Permission.READ, pset.getPermission(rwsis.get(wsi)), wsi, "read");
 			}
 		}
-		return db.getObjectInformation(params.resolve(pset));
+		return params.resolve(pset);
 	}
 	
 	/** Get data objects from the workspace.
@@ -1060,7 +1377,8 @@ public class Workspace {
 		final ObjectResolver.Builder orb = ObjectResolver.getBuilder(db, user)
 				.withIgnoreInaccessible(nullIfInaccessible)
 				.withAsAdmin(asAdmin)
-				.withMaximumObjectsSearched(maximumObjectSearchCount);
+				.withMaximumObjectsSearched(maximumObjectSearchCount)
+				.withSearchMode(referenceSearchMode);
 		for (final ObjectIdentifier oi: objs) {
 			orb.withObject(oi);
 		}
@@ -1107,7 +1425,7 @@ public class Workspace {
 				db.addDataToObjects(
 						f,
 						getDataManagerAndCheckObjectSize(f),
-						db.getConfig().getBackendScaling().get());
+						getCachedConfig().getBackendScaling().get());
 			} catch (NoObjectDataException e) { // should be impossible
 				throw new CorruptWorkspaceDBException(e.getLocalizedMessage(), e);
 			}
@@ -1330,7 +1648,8 @@ public class Workspace {
 		final ObjectResolver.Builder orb = ObjectResolver.getBuilder(db, user)
 				.withIgnoreInaccessible(nullIfInaccessible)
 				.withAsAdmin(asAdmin)
-				.withMaximumObjectsSearched(maximumObjectSearchCount);
+				.withMaximumObjectsSearched(maximumObjectSearchCount)
+				.withSearchMode(referenceSearchMode);
 		for (final ObjectIdentifier oi: loi) {
 			orb.withObject(oi);
 		}
@@ -1919,7 +2238,8 @@ public class Workspace {
 				final Set<ObjectIdentifier> idset)
 				throws IdReferenceHandlerException {
 			final ObjectResolver.Builder orb = ObjectResolver.getBuilder(db, user)
-					.withMaximumObjectsSearched(maximumObjectSearchCount);
+					.withMaximumObjectsSearched(maximumObjectSearchCount)
+					.withSearchMode(referenceSearchMode);
 			if (!idset.isEmpty()) {
 				try {
 					for (final ObjectIdentifier oi: idset) {
@@ -16,6 +16,7 @@ import us.kbase.workspace.database.exceptions.NoObjectDataException;
 import us.kbase.workspace.database.exceptions.NoSuchObjectException;
 import us.kbase.workspace.database.exceptions.NoSuchWorkspaceException;
 import us.kbase.workspace.database.exceptions.PreExistingWorkspaceException;
+import us.kbase.workspace.database.exceptions.UncheckedWorkspaceCommunicationException;
 import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
 
 public interface WorkspaceDatabase {
@@ -296,6 +297,33 @@ public interface WorkspaceDatabase {
 			boolean excludeDeletedWorkspaces,
 			boolean includeProvidedWorkspaces)
 			throws WorkspaceCommunicationException, CorruptWorkspaceDBException;
+
+	/** Get the IDs of the non-deleted workspaces for which a user has been explicitly granted
+	 * at least read permission, excluding workspaces that are only readable because they are
+	 * public. Much cheaper than
+	 * {@link #getPermissions(WorkspaceUser, Set, Permission, boolean, boolean, boolean)} for
+	 * users with access to many workspaces.
+	 * 
+	 * The IDs may be cached, in which case changes made by other processes may not be seen
+	 * until the cache entry expires.
+	 * @param user the user.
+	 * @return the workspace IDs.
+	 * @throws WorkspaceCommunicationException if a communication error occurs.
+	 * @throws CorruptWorkspaceDBException if the workspace database is corrupt.
+	 */
+	WorkspaceIDSet getUserReadableWorkspaceIDs(WorkspaceUser user)
+			throws WorkspaceCommunicationException, CorruptWorkspaceDBException;
+	
+	/** Get the IDs of the non-deleted public workspaces.
+	 * 
+	 * The IDs may be cached, in which case changes made by other processes may not be seen
+	 * until the cache entry expires.
+	 * @return the workspace IDs.
+	 * @throws WorkspaceCommunicationException if a communication error occurs.
+	 * @throws CorruptWorkspaceDBException if the workspace database is corrupt.
+	 */
+	WorkspaceIDSet getPublicWorkspaceIDs()
+			throws WorkspaceCommunicationException, CorruptWorkspaceDBException;
 	
 	/** Returns all users' permissions for a set of workspaces */
 	Map<ResolvedWorkspaceID, Map<User, Permission>> getAllPermissions(
@@ -334,6 +362,10 @@ public interface WorkspaceDatabase {
 	 * @param user the workspace user that is saving the objects.
 	 * @param rwsi the workspace to which the objects will be saved.
 	 * @param objects the objects to be saved.
+	 * @param backendScaling the number of threads to use when saving object data to the
+	 * backend. For backends where the object data cannot be saved in a batch this could
+	 * significantly speed up data saving. Details depend on the backend implementation
+	 * and the environment in which the system is run.
 	 * @return information about each new object.
 	 * @throws WorkspaceCommunicationException if a communication exception with the backend
 	 * occurs.
@@ -342,7 +374,8 @@ public interface WorkspaceDatabase {
 	List<ObjectInformation> saveObjects(
 			WorkspaceUser user,
 			ResolvedWorkspaceID rwsi,
-			List<ResolvedSaveObject> objects)
+			List<ResolvedSaveObject> objects,
+			int backendScaling)
 			throws WorkspaceCommunicationException, NoSuchObjectException;
 	
 	/** Get object and provenance information from the workspace database. The object data
@@ -430,6 +463,9 @@ public interface WorkspaceDatabase {
 	/** Get the set of incoming references for an object. The object referred to by the reference
 	 * is not checked for existence - if the reference does not exist, the reference set of
 	 * incoming references will be empty. Includes deleted objects.
+	 * 
+	 * The references may be cached, and so may not include references saved recently by other
+	 * processes.
 	 * @param objs the objects for which to retrieve references.
 	 * @return the set of references for each object.
 	 * @throws WorkspaceCommunicationException  if a communication error with the backend occurs.
@@ -592,6 +628,20 @@ public interface WorkspaceDatabase {
 			ResolvedListObjectParameters params)
 			throws WorkspaceCommunicationException;
 
+	/** Get information about objects in a set of workspaces, retrieving the information from
+	 * the database as the returned iterator is consumed.
+	 * 
+	 * Errors from the initial query are thrown from this method. Errors that occur while
+	 * iterating are thrown as {@link UncheckedWorkspaceCommunicationException}s.
+	 * @param params the parameters for getting the objects.
+	 * @return an iterator over the object information. The iterator must be closed if it is
+	 * not exhausted.
+	 * @throws WorkspaceCommunicationException if a communication exception occurs.
+	 */
+	CloseableIterator<ObjectInformation> iterateObjectInformation(
+			ResolvedListObjectParameters params)
+			throws WorkspaceCommunicationException;
+
 	/** Verify that a set of objects exist in the database and are not in
 	 * the deleted state.
 	 * @param objectIDs the objects to check.
@@ -605,6 +655,9 @@ public interface WorkspaceDatabase {
 	
 	/** Verify that a set of objects as specified by absolute references exist and are not deleted.
 	 * This method does not verify the version exists.
+	 * 
+	 * The states may be cached for a short time, and so may not reflect changes made recently
+	 * by other processes.
 	 * @param refs the objects to check.
 	 * @return a mapping of each object to its state of existence / deletion.
 	 * @throws WorkspaceCommunicationException if a communication exception occurs. 
@@ -0,0 +1,137 @@
+package us.kbase.workspace.database;
+
+import static us.kbase.workspace.database.Util.noNulls;
+import static us.kbase.workspace.database.Util.nonNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.LongStream;
+
+/** An immutable set of workspace IDs backed by a sorted array of primitive longs. The set
+ * takes 8 bytes per ID, much less than a set of {@link Long}s or {@link ResolvedWorkspaceID}s,
+ * which matters for users with access to many workspaces.
+ */
+public class WorkspaceIDSet {
+
+	private static final WorkspaceIDSet EMPTY = new WorkspaceIDSet(new long[0]);
+
+	// sorted with no duplicates
+	private final long[] ids;
+
+	private WorkspaceIDSet(final long[] ids) {
+		this.ids = ids;
+	}
+
+	/** Create a set of workspace IDs.
+	 * @param ids the workspace IDs. Duplicates are ignored.
+	 * @return the set.
+	 */
+	public static WorkspaceIDSet of(final long... ids) {
+		nonNull(ids, "ids");
+		return ids.length == 0 ? EMPTY : new WorkspaceIDSet(LongStream.of(ids)
+				.sorted().distinct().toArray());
+	}
+
+	/** Create a set of workspace IDs.
+	 * @param ids the workspace IDs. Duplicates are ignored.
+	 * @return the set.
+	 */
+	public static WorkspaceIDSet of(final Collection<Long> ids) {
+		nonNull(ids, "ids");
+		noNulls(ids, "null item in ids");
+		return ids.isEmpty() ? EMPTY : new WorkspaceIDSet(ids.stream().mapToLong(l -> l)
+				.sorted().distinct().toArray());
+	}
+
+	/** Get an empty set.
+	 * @return the set.
+	 */
+	public static WorkspaceIDSet empty() {
+		return EMPTY;
+	}
+
+	/** Check whether the set contains a workspace ID.
+	 * @param id the workspace ID.
+	 * @return true if the set contains the ID.
+	 */
+	public boolean contains(final long id) {
+		return Arrays.binarySearch(ids, id) >= 0;
+	}
+
+	/** Get the number of workspace IDs in the set.
+	 * @return the size of the set.
+	 */
+	public int size() {
+		return ids.length;
+	}
+
+	/** Check whether the set is empty.
+	 * @return true if the set contains no workspace IDs.
+	 */
+	public boolean isEmpty() {
+		return ids.length == 0;
+	}
+
+	/** Get the workspace IDs in ascending order.
+	 * @return the workspace IDs.
+	 */
+	public LongStream stream() {
+		return LongStream.of(ids);
+	}
+
+	/** Get the union of this set and another set.
+	 * @param other the other set.
+	 * @return a set containing the IDs in either set.
+	 */
+	public WorkspaceIDSet union(final WorkspaceIDSet other) {
+		nonNull(other, "other");
+		if (other.isEmpty()) {
+			return this;
+		}
+		if (isEmpty()) {
+			return other;
+		}
+		final long[] merged = new long[ids.length + other.ids.length];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < ids.length || j < other.ids.length) {
+			final long next;
+			if (j >= other.ids.length || (i < ids.length && ids[i] < other.ids[j])) {
+				next = ids[i++];
+			} else if (i >= ids.length || other.ids[j] < ids[i]) {
+				next = other.ids[j++];
+			} else {
+				next = ids[i++];
+				j++;
+			}
+			merged[k++] = next;
+		}
+		return new WorkspaceIDSet(Arrays.copyOf(merged, k));
+	}
+
+	@Override
+	public String toString() {
+		return "WorkspaceIDSet " + Arrays.toString(ids);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(ids);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		final WorkspaceIDSet other = (WorkspaceIDSet) obj;
+		return Arrays.equals(ids, other.ids);
+	}
+}
@@ -0,0 +1,23 @@
+package us.kbase.workspace.database.exceptions;
+
+import static java.util.Objects.requireNonNull;
+
+/** Wraps a {@link WorkspaceCommunicationException} with an unchecked exception, for use in
+ * code that cannot throw checked exceptions, such as iterators.
+ */
+public class UncheckedWorkspaceCommunicationException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Create the exception.
+	 * @param cause the wrapped exception.
+	 */
+	public UncheckedWorkspaceCommunicationException(final WorkspaceCommunicationException cause) {
+		super(requireNonNull(cause, "cause").getMessage(), cause);
+	}
+
+	@Override
+	public WorkspaceCommunicationException getCause() {
+		return (WorkspaceCommunicationException) super.getCause();
+	}
+}
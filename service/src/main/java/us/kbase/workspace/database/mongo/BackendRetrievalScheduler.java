@@ -0,0 +1,263 @@
+package us.kbase.workspace.database.mongo;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/** Runs the retrievals of object data from the backend blob store for all the requests to a
+ * workspace server, using threads shared between the requests.
+ *
+ * The number of retrievals running at once is limited for the server as a whole, which bounds
+ * the number of concurrent connections to the backend, and for each request. When the server
+ * limit is reached, queued retrievals are started in turn for each waiting request, so a request
+ * for many objects does not delay requests for a few objects until it completes.
+ *
+ * Idle threads are kept for a short time for reuse by later requests.
+ */
+public class BackendRetrievalScheduler {
+
+	// TODO JAVA21 consider virtual threads once java 8 support is dropped
+
+	private final int maxConcurrency;
+	private final ExecutorService executor;
+
+	// requests that have queued tasks and are under their concurrency limit, in the order
+	// in which their next task will be started
+	private final Deque<Request> ready = new ArrayDeque<>();
+	private int running = 0;
+	private int queued = 0;
+
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder queueNanos = new LongAdder();
+	private final LongAdder runNanos = new LongAdder();
+
+	private static class Request {
+
+		private final Deque<Task<?>> tasks = new ArrayDeque<>();
+		private final int maxConcurrency;
+		private int running = 0;
+
+		private Request(final int maxConcurrency) {
+			this.maxConcurrency = maxConcurrency;
+		}
+	}
+
+	private class Task<T> {
+
+		private final Request request;
+		private final FutureTask<T> future;
+
+		private Task(final Request request, final Callable<T> callable, final long queuedAt) {
+			this.request = request;
+			// record the statistics before the result is available to the caller
+			this.future = new FutureTask<>(() -> {
+				final long start = System.nanoTime();
+				queueNanos.add(start - queuedAt);
+				try {
+					return callable.call();
+				} finally {
+					runNanos.add(System.nanoTime() - start);
+					completed.increment();
+				}
+			});
+		}
+	}
+
+	/** Create a scheduler with no limit on the number of retrievals running at once for the
+	 * server. The number of retrievals for each request is still limited.
+	 */
+	public BackendRetrievalScheduler() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/** Create a scheduler.
+	 * @param maxConcurrency the maximum number of retrievals to run at once across all requests.
+	 */
+	public BackendRetrievalScheduler(final int maxConcurrency) {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("maxConcurrency must be > 0");
+		}
+		this.maxConcurrency = maxConcurrency;
+		// the scheduler bounds the number of threads in use
+		executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+				.setDaemon(true).setNameFormat("ws-backend-retrieval-%d").build());
+	}
+
+	/** Run a set of retrievals for a request and wait for them to complete. Retrievals that
+	 * have not completed when the timeout expires are cancelled.
+	 * @param <T> the type of the retrieval results.
+	 * @param tasks the retrievals to run.
+	 * @param maxConcurrency the maximum number of the retrievals to run at once.
+	 * @param timeout the maximum time to wait.
+	 * @param unit the unit of the timeout.
+	 * @return the futures for the retrievals, in the order of the tasks. All the futures are
+	 * complete.
+	 * @throws InterruptedException if the thread is interrupted while waiting. Any retrievals
+	 * that have not completed are cancelled.
+	 */
+	public <T> List<Future<T>> invokeAll(
+			final Collection<? extends Callable<T>> tasks,
+			final int maxConcurrency,
+			final long timeout,
+			final TimeUnit unit)
+			throws InterruptedException {
+		requireNonNull(tasks, "tasks");
+		requireNonNull(unit, "unit");
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("maxConcurrency must be > 0");
+		}
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		final Request req = new Request(maxConcurrency);
+		final List<Future<T>> futures = new ArrayList<>();
+		final long now = System.nanoTime();
+		for (final Callable<T> c: tasks) {
+			final Task<T> t = new Task<>(req, requireNonNull(c, "null found in tasks"), now);
+			req.tasks.add(t);
+			futures.add(t.future);
+		}
+		if (futures.isEmpty()) {
+			return futures;
+		}
+		for (final Task<?> t: submit(req)) {
+			executor.execute(() -> runTasks(t));
+		}
+		boolean done = false;
+		try {
+			for (final Future<T> f: futures) {
+				if (!f.isDone()) {
+					try {
+						f.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+					} catch (CancellationException | ExecutionException e) {
+						// the caller handles failures
+					} catch (TimeoutException e) {
+						return futures;
+					}
+				}
+			}
+			done = true;
+			return futures;
+		} finally {
+			if (!done) {
+				cancel(req, futures);
+			}
+		}
+	}
+
+	private synchronized List<Task<?>> submit(final Request req) {
+		queued += req.tasks.size();
+		// a new request starts a task before the requests that already have tasks running
+		ready.addFirst(req);
+		final List<Task<?>> start = new ArrayList<>();
+		while (running < maxConcurrency && !ready.isEmpty()) {
+			running++;
+			start.add(nextTask());
+		}
+		return start;
+	}
+
+	// caller must hold the lock
+	private Task<?> nextTask() {
+		final Request req = ready.poll();
+		final Task<?> t = req.tasks.poll();
+		queued--;
+		req.running++;
+		if (!req.tasks.isEmpty() && req.running < req.maxConcurrency) {
+			ready.add(req);
+		}
+		return t;
+	}
+
+	// returns the next task to run in the same thread, if any
+	private synchronized Task<?> complete(final Request req) {
+		req.running--;
+		if (!req.tasks.isEmpty() && req.running == req.maxConcurrency - 1) {
+			// the request was at its limit, so it wasn't ready
+			ready.add(req);
+		}
+		if (ready.isEmpty()) {
+			running--;
+			return null;
+		}
+		return nextTask();
+	}
+
+	private void runTasks(final Task<?> first) {
+		Task<?> t = first;
+		while (t != null) {
+			// clear any interrupt from cancelling the previous task
+			Thread.interrupted();
+			try {
+				t.future.run();
+			} finally {
+				t = complete(t.request);
+			}
+		}
+	}
+
+	private void cancel(final Request req, final List<? extends Future<?>> futures) {
+		synchronized (this) {
+			queued -= req.tasks.size();
+			req.tasks.clear();
+			ready.remove(req);
+		}
+		for (final Future<?> f: futures) {
+			f.cancel(true);
+		}
+	}
+
+	/** Get the number of retrievals waiting to start.
+	 * @return the number of retrievals.
+	 */
+	public synchronized int getQueueDepth() {
+		return queued;
+	}
+
+	/** Get the number of retrievals currently running.
+	 * @return the number of retrievals.
+	 */
+	public synchronized int getRunning() {
+		return running;
+	}
+
+	/** Get the number of retrievals that have been run, including failed retrievals.
+	 * @return the number of retrievals.
+	 */
+	public long getCompleted() {
+		return completed.sum();
+	}
+
+	/** Get the mean time retrievals have waited to start.
+	 * @return the mean time in milliseconds, or 0 if no retrievals have been run.
+	 */
+	public double getMeanQueueTimeMillis() {
+		return mean(queueNanos);
+	}
+
+	/** Get the mean time taken to run retrievals.
+	 * @return the mean time in milliseconds, or 0 if no retrievals have been run.
+	 */
+	public double getMeanRunTimeMillis() {
+		return mean(runNanos);
+	}
+
+	private double mean(final LongAdder nanos) {
+		final long count = completed.sum();
+		return count == 0 ? 0 : nanos.sum() / (count * 1_000_000.0);
+	}
+}
@@ -0,0 +1,209 @@
+package us.kbase.workspace.database.mongo;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import us.kbase.typedobj.core.MD5;
+import us.kbase.typedobj.core.Restreamable;
+import us.kbase.workspace.database.ByteArrayFileCacheManager;
+import us.kbase.workspace.database.ByteArrayFileCacheManager.ByteArrayFileCache;
+import us.kbase.workspace.database.ByteArrayFileCacheManager.SharedData;
+import us.kbase.workspace.database.DependencyStatus;
+import us.kbase.workspace.database.mongo.exceptions.BlobStoreAuthorizationException;
+import us.kbase.workspace.database.mongo.exceptions.BlobStoreCommunicationException;
+import us.kbase.workspace.database.mongo.exceptions.NoSuchBlobException;
+
+/** A blob store that caches blob data retrieved from another blob store, allowing the data
+ * to be shared between requests. Since blobs are addressed by their MD5, cached data never
+ * becomes stale.
+ *
+ * The cache has a memory tier and a disk tier, each with a maximum size. A blob is cached in
+ * the tier matching where the {@link ByteArrayFileCacheManager} provided when the blob is
+ * first retrieved stores data. Blobs larger than the tier are not cached. When a tier is full,
+ * the least valuable blobs are evicted.
+ *
+ * The cached data is reference counted, and so data evicted from the cache is not deleted
+ * until all the {@link ByteArrayFileCache}s using the data are destroyed.
+ */
+public class CachingBlobStore implements BlobStore {
+
+	private static final long KB = 1024;
+
+	private final BlobStore store;
+	private final Cache<String, SharedData> memoryTier;
+	private final Cache<String, SharedData> diskTier;
+	private final long memoryTierMaxSize;
+	private final long diskTierMaxSize;
+	private final AtomicLong memoryTierSize = new AtomicLong();
+	private final AtomicLong diskTierSize = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong loadFailures = new AtomicLong();
+	private final AtomicLong loadTime = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong evictionSize = new AtomicLong();
+
+	/** Create the caching blob store.
+	 * @param store the blob store to cache.
+	 * @param memoryTierMaxSize the maximum size, in bytes, of the data cached in memory. 0
+	 * disables the memory tier.
+	 * @param diskTierMaxSize the maximum size, in bytes, of the data cached on disk. 0
+	 * disables the disk tier.
+	 */
+	public CachingBlobStore(
+			final BlobStore store,
+			final long memoryTierMaxSize,
+			final long diskTierMaxSize) {
+		this.store = requireNonNull(store, "store");
+		if (memoryTierMaxSize < 0) {
+			throw new IllegalArgumentException("memoryTierMaxSize must be >= 0");
+		}
+		if (diskTierMaxSize < 0) {
+			throw new IllegalArgumentException("diskTierMaxSize must be >= 0");
+		}
+		this.memoryTierMaxSize = memoryTierMaxSize;
+		this.diskTierMaxSize = diskTierMaxSize;
+		this.memoryTier = buildTier(memoryTierMaxSize, memoryTierSize);
+		this.diskTier = buildTier(diskTierMaxSize, diskTierSize);
+	}
+
+	private Cache<String, SharedData> buildTier(final long maxSize, final AtomicLong tierSize) {
+		// TODO JAVA11 upgrade Caffeine to v3.x after dumping java 8
+		return Caffeine.newBuilder()
+				// weights are ints, so weigh in KB to allow for large blobs
+				.maximumWeight(toKB(maxSize))
+				.weigher((final String k, final SharedData v) -> (int) toKB(v.getSize()))
+				// run maintenance in the calling thread so data is released promptly
+				.executor(Runnable::run)
+				.removalListener((final String k, final SharedData v, final RemovalCause c) -> {
+					tierSize.addAndGet(-v.getSize());
+					if (c.wasEvicted()) {
+						evictions.incrementAndGet();
+						evictionSize.addAndGet(v.getSize());
+					}
+					v.release();
+				})
+				.build();
+	}
+
+	private static long toKB(final long size) {
+		return (size + KB - 1) / KB;
+	}
+
+	@Override
+	public void saveBlob(final MD5 md5, final Restreamable data, final boolean sorted)
+			throws BlobStoreAuthorizationException, BlobStoreCommunicationException {
+		store.saveBlob(md5, data, sorted);
+	}
+
+	@Override
+	public ByteArrayFileCache getBlob(final MD5 md5, final ByteArrayFileCacheManager bafcMan)
+			throws BlobStoreAuthorizationException, BlobStoreCommunicationException,
+				NoSuchBlobException, IOException {
+		requireNonNull(md5, "md5");
+		requireNonNull(bafcMan, "bafcMan");
+		final Optional<ByteArrayFileCache> cached = getCached(md5.getMD5(), bafcMan);
+		if (cached.isPresent()) {
+			hits.incrementAndGet();
+			return cached.get();
+		}
+		misses.incrementAndGet();
+		final long start = System.nanoTime();
+		final ByteArrayFileCache loaded;
+		try {
+			loaded = store.getBlob(md5, bafcMan);
+		} catch (BlobStoreAuthorizationException | BlobStoreCommunicationException |
+				NoSuchBlobException | IOException | RuntimeException e) {
+			loadFailures.incrementAndGet();
+			throw e;
+		} finally {
+			loadTime.addAndGet(System.nanoTime() - start);
+		}
+		final SharedData shared = loaded.share();
+		try {
+			// the data can't be released yet since a reference is held here
+			final ByteArrayFileCache ret = bafcMan.createBAFC(shared).get();
+			final Cache<String, SharedData> tier = shared.isStoredOnDisk() ? diskTier : memoryTier;
+			final long maxSize = shared.isStoredOnDisk() ? diskTierMaxSize : memoryTierMaxSize;
+			// a tier with a max size of zero is disabled, even for empty blobs
+			if (maxSize > 0 && shared.getSize() <= maxSize &&
+					tier.asMap().putIfAbsent(md5.getMD5(), shared) == null) {
+				(shared.isStoredOnDisk() ? diskTierSize : memoryTierSize)
+						.addAndGet(shared.getSize());
+				// the cache now owns the reference
+				return ret;
+			}
+			// not cacheable, or the blob was cached concurrently. The data will be deleted
+			// when the returned cache is destroyed
+			shared.release();
+			return ret;
+		} catch (IOException | RuntimeException e) {
+			shared.release();
+			throw e;
+		}
+	}
+
+	private Optional<ByteArrayFileCache> getCached(
+			final String md5,
+			final ByteArrayFileCacheManager bafcMan)
+			throws IOException {
+		SharedData shared = memoryTier.getIfPresent(md5);
+		if (shared == null) {
+			shared = diskTier.getIfPresent(md5);
+		}
+		// if the data was evicted and released after it was retrieved, the result is empty
+		return shared == null ? Optional.empty() : bafcMan.createBAFC(shared);
+	}
+
+	@Override
+	public void removeBlob(final MD5 md5)
+			throws BlobStoreAuthorizationException, BlobStoreCommunicationException {
+		requireNonNull(md5, "md5");
+		memoryTier.invalidate(md5.getMD5());
+		diskTier.invalidate(md5.getMD5());
+		store.removeBlob(md5);
+	}
+
+	@Override
+	public List<DependencyStatus> status() {
+		return store.status();
+	}
+
+	/** Get statistics for the cache. Loads are retrievals of blobs from the cached blob store
+	 * on a cache miss. Eviction weights are in bytes.
+	 * @return the cache statistics.
+	 */
+	public CacheStats getStats() {
+		return new CacheStats(
+				hits.get(),
+				misses.get(),
+				misses.get() - loadFailures.get(),
+				loadFailures.get(),
+				loadTime.get(),
+				evictions.get(),
+				evictionSize.get());
+	}
+
+	/** Get the size of the data cached in memory.
+	 * @return the size in bytes.
+	 */
+	public long getMemoryTierSize() {
+		return memoryTierSize.get();
+	}
+
+	/** Get the size of the data cached on disk.
+	 * @return the size in bytes.
+	 */
+	public long getDiskTierSize() {
+		return diskTierSize.get();
+	}
+}
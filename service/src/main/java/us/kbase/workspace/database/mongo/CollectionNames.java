@@ -8,6 +8,8 @@ public class CollectionNames {
 	public static final String COL_WS_ACLS = "workspaceACLs";
 	public static final String COL_WORKSPACE_OBJS = "workspaceObjects";
 	public static final String COL_WORKSPACE_VERS = "workspaceObjVersions";
+	// a copy of the latest version of each object, see LatestVersions
+	public static final String COL_WORKSPACE_LATEST = "workspaceObjLatest";
 	public static final String COL_PROVENANCE = "provenance";
 	public static final String COL_SCHEMA_CONFIG = "config"; // bad choice of name here
 	public static final String COL_DYNAMIC_CONFIG = "dyncfg";
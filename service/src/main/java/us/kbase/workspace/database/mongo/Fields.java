@@ -143,6 +143,8 @@ public class Fields {
 	public static final String SCHEMA_CONFIG_VALUE = "config";
 	public static final String SCHEMA_CONFIG_UPDATE = "inupdate";
 	public static final String SCHEMA_CONFIG_VERSION = "schemaver";
+	// true if the latest version collection contains every object. Missing = false
+	public static final String SCHEMA_CONFIG_LATEST_COMPLETE = "latestcomplete";
 	
 	// dynamic configuration keys, since 0.13.0
 	public static final String DYNAMIC_CONFIG_KEY = "key";
@@ -24,6 +24,7 @@ import com.mongodb.MongoWriteException;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.gridfs.GridFSBucket;
 import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.GridFSDownloadStream;
 import com.mongodb.client.gridfs.model.GridFSFile;
 import com.mongodb.client.gridfs.model.GridFSUploadOptions;
 
@@ -81,8 +82,9 @@ public class GridFSBlobStore implements BlobStore {
 						"Attempt to retrieve non-existant blob with chksum " + md5.getMD5(), md5);
 			}
 			final boolean sorted = out.getBoolean(Fields.GFS_SORTED, false);
-			try (final InputStream file = gfs.openDownloadStream(new BsonString(md5.getMD5()))) {
-				return bafcMan.createBAFC(file, true, sorted);
+			try (final GridFSDownloadStream file = gfs.openDownloadStream(
+					new BsonString(md5.getMD5()))) {
+				return bafcMan.createBAFC(file, file.getGridFSFile().getLength(), true, sorted);
 			}	
 		} catch (MongoException me) {
 			throw new BlobStoreCommunicationException(
@@ -0,0 +1,420 @@
+package us.kbase.workspace.database.mongo;
+
+import static java.util.Objects.requireNonNull;
+import static us.kbase.workspace.database.mongo.CollectionNames.COL_WORKSPACE_LATEST;
+import static us.kbase.workspace.database.mongo.CollectionNames.COL_WORKSPACE_OBJS;
+import static us.kbase.workspace.database.mongo.CollectionNames.COL_WORKSPACE_VERS;
+import static us.kbase.workspace.database.mongo.CollectionNames.COL_SCHEMA_CONFIG;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Consumer;
+
+import org.bson.Document;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+
+import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
+
+/** Maintains the latest version collection, which holds a copy of the latest version of each
+ * object along with the object's hidden and deleted state. Listing only the latest versions of
+ * objects can query this collection rather than scanning every version of every object and
+ * discarding all but the latest.
+ *
+ * The object and version collections remain the source of truth. Documents in this
+ * collection are only replaced by versions with a higher version number, so concurrent saves
+ * of the same object resolve to the highest version regardless of the order of the writes.
+ *
+ * Databases created before this collection existed must be backfilled with
+ * {@link #backfill(MongoDatabase, Consumer, boolean)} before the collection is used.
+ */
+final class LatestVersions {
+
+	/** The version fields copied into the latest version documents. */
+	static final List<String> VERSION_FIELDS = Arrays.asList(
+			Fields.VER_WS_ID, Fields.VER_ID, Fields.VER_VER,
+			Fields.VER_TYPE_NAME, Fields.VER_TYPE_MAJOR_VERSION, Fields.VER_TYPE_MINOR_VERSION,
+			Fields.VER_SAVEDATE, Fields.VER_SAVEDBY, Fields.VER_CHKSUM, Fields.VER_SIZE,
+			Fields.VER_META, Fields.VER_ADMINMETA);
+
+	private static final String ERR_DB_COMM =
+			"There was a problem communicating with the database";
+
+	private static final int BATCH_SIZE = 1000;
+
+	private static final int MAX_COPY_ATTEMPTS = 5;
+
+	private final MongoCollection<Document> col;
+	private final MongoCollection<Document> objCol;
+	private final MongoCollection<Document> verCol;
+
+	/** Create the latest version collection manager.
+	 * @param workspaceDB the workspace database.
+	 */
+	LatestVersions(final MongoDatabase workspaceDB) {
+		requireNonNull(workspaceDB, "workspaceDB");
+		col = workspaceDB.getCollection(COL_WORKSPACE_LATEST);
+		objCol = workspaceDB.getCollection(COL_WORKSPACE_OBJS);
+		verCol = workspaceDB.getCollection(COL_WORKSPACE_VERS);
+	}
+
+	/** Get the latest version collection.
+	 * @return the collection.
+	 */
+	MongoCollection<Document> getCollection() {
+		return col;
+	}
+
+	/** Record newly saved versions. For each object, the highest version replaces the current
+	 * latest version if it is higher. The hidden and deleted state of the objects is then
+	 * copied from the object collection, as for
+	 * {@link #copyObjectState(long, List)}, so that hiding or deleting an object while it is
+	 * saved is not overwritten.
+	 * 
+	 * Also used to repair latest versions that are older than the object's actual latest
+	 * version, for example if the server failed after saving the versions but before updating
+	 * this collection.
+	 * @param versions the new versions, which must all be in the same workspace. The versions
+	 * may include several versions of the same object.
+	 * @throws WorkspaceCommunicationException if a communication error with the database
+	 * occurs.
+	 */
+	void update(final List<Document> versions) throws WorkspaceCommunicationException {
+		if (versions.isEmpty()) {
+			return;
+		}
+		final Map<Long, Document> latest = new HashMap<>();
+		for (final Document v: versions) {
+			final Document cur = latest.get(v.getLong(Fields.VER_ID));
+			if (cur == null || cur.getInteger(Fields.VER_VER) < v.getInteger(Fields.VER_VER)) {
+				latest.put(v.getLong(Fields.VER_ID), v);
+			}
+		}
+		final List<WriteModel<Document>> updates = new ArrayList<>();
+		for (final Document v: latest.values()) {
+			updates.add(upsert(v, null, false));
+		}
+		write(col, updates);
+		copyObjectState(versions.get(0).getLong(Fields.VER_WS_ID),
+				new ArrayList<>(latest.keySet()));
+	}
+
+	/* Replace the latest version with the given version if the given version is higher.
+	 * If hidden is null and the object has no latest version, it is not hidden.
+	 */
+	private static WriteModel<Document> upsert(
+			final Document version,
+			final Boolean hidden,
+			final boolean deleted) {
+		final Document set = new Document(Fields.OBJ_DEL, deleted);
+		final Document unset = new Document();
+		for (final String field: VERSION_FIELDS) {
+			// older versions may be missing optional fields, e.g. the admin metadata
+			if (version.containsKey(field)) {
+				set.append(field, version.get(field));
+			} else {
+				unset.append(field, "");
+			}
+		}
+		final Document update = new Document("$set", set);
+		if (!unset.isEmpty()) {
+			update.append("$unset", unset);
+		}
+		if (hidden == null) {
+			update.append("$setOnInsert", new Document(Fields.OBJ_HIDE, false));
+		} else {
+			set.append(Fields.OBJ_HIDE, hidden);
+		}
+		// if the recorded version is the same or higher, the filter doesn't match and the
+		// upsert fails with a duplicate key error, which is ignored
+		return new UpdateOneModel<>(
+				new Document(Fields.VER_WS_ID, version.getLong(Fields.VER_WS_ID))
+						.append(Fields.VER_ID, version.getLong(Fields.VER_ID))
+						.append(Fields.VER_VER,
+								new Document("$lt", version.getInteger(Fields.VER_VER))),
+				update,
+				new UpdateOptions().upsert(true));
+	}
+
+	private static void write(
+			final MongoCollection<Document> col,
+			final List<WriteModel<Document>> updates)
+			throws WorkspaceCommunicationException {
+		if (updates.isEmpty()) {
+			return;
+		}
+		try {
+			col.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+		} catch (MongoBulkWriteException mbwe) {
+			if (mbwe.getWriteConcernError() != null) {
+				throw new WorkspaceCommunicationException(ERR_DB_COMM, mbwe);
+			}
+			for (final BulkWriteError err: mbwe.getWriteErrors()) {
+				if (!err.getCategory().equals(ErrorCategory.DUPLICATE_KEY)) {
+					throw new WorkspaceCommunicationException(ERR_DB_COMM, mbwe);
+				}
+			}
+		} catch (MongoException me) {
+			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
+		}
+	}
+
+	/** Replace outdated latest versions with the given versions from the version collection,
+	 * as for {@link #update(List)}. Versions that don't exist, for example because a save
+	 * failed before saving the version, are ignored.
+	 * @param versions the actual latest version of each object, keyed by the workspace ID
+	 * and then the object ID.
+	 * @throws WorkspaceCommunicationException if a communication error with the database
+	 * occurs.
+	 */
+	void repair(final Map<Long, Map<Long, Integer>> versions)
+			throws WorkspaceCommunicationException {
+		final Document verProj = new Document(Fields.MONGO_ID, 0);
+		VERSION_FIELDS.forEach(f -> verProj.append(f, 1));
+		for (final Entry<Long, Map<Long, Integer>> ws: versions.entrySet()) {
+			final List<Document> orquery = new ArrayList<>();
+			for (final Entry<Long, Integer> obj: ws.getValue().entrySet()) {
+				orquery.add(new Document(Fields.VER_WS_ID, ws.getKey())
+						.append(Fields.VER_ID, obj.getKey())
+						.append(Fields.VER_VER, obj.getValue()));
+			}
+			final List<Document> vers = new ArrayList<>();
+			try {
+				verCol.find(new Document("$or", orquery)).projection(verProj).into(vers);
+			} catch (MongoException me) {
+				throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
+			}
+			update(vers);
+		}
+	}
+
+	/** Copy the hidden and deleted state of objects from the object collection. The state is
+	 * read from the object documents after they are modified, rather than copied from the
+	 * modification, so that concurrent modifications can't leave the latest version collection
+	 * out of sync with the object collection.
+	 * @param workspaceID the ID of the workspace containing the objects.
+	 * @param objectIDs the IDs of the objects. If empty, all the objects in the workspace are
+	 * copied.
+	 * @throws WorkspaceCommunicationException if a communication error with the database
+	 * occurs.
+	 */
+	void copyObjectState(final long workspaceID, final List<Long> objectIDs)
+			throws WorkspaceCommunicationException {
+		List<Long> ids = objectIDs;
+		for (int i = 0; i < MAX_COPY_ATTEMPTS; i++) {
+			copyState(workspaceID, ids);
+			// a concurrent copy may have read the state before a modification and written it
+			// after this copy, so check the copies and copy again if they're out of date.
+			// The last copy always reads the state after the last write to the copies.
+			ids = getOutOfSync(workspaceID, ids);
+			if (ids.isEmpty()) {
+				return;
+			}
+		}
+		// only possible with constant modifications of the same objects, in which case the
+		// next modification copies the state again
+	}
+
+	private Document objectStateQuery(final long workspaceID, final List<Long> objectIDs) {
+		final Document query = new Document(Fields.OBJ_WS_ID, workspaceID);
+		if (!objectIDs.isEmpty()) {
+			query.append(Fields.OBJ_ID, new Document("$in", objectIDs));
+		}
+		return query;
+	}
+
+	private static Document objectStateProjection() {
+		return new Document(Fields.MONGO_ID, 0)
+				.append(Fields.OBJ_ID, 1)
+				.append(Fields.OBJ_HIDE, 1)
+				.append(Fields.OBJ_DEL, 1);
+	}
+
+	private void copyState(final long workspaceID, final List<Long> objectIDs)
+			throws WorkspaceCommunicationException {
+		final List<WriteModel<Document>> updates = new ArrayList<>();
+		try (final MongoCursor<Document> objs = objCol.find(
+				objectStateQuery(workspaceID, objectIDs))
+				.projection(objectStateProjection())
+				.iterator()) {
+			while (objs.hasNext()) {
+				final Document o = objs.next();
+				updates.add(new UpdateOneModel<>(
+						new Document(Fields.VER_WS_ID, workspaceID)
+								.append(Fields.VER_ID, o.getLong(Fields.OBJ_ID)),
+						new Document("$set", new Document(
+								Fields.OBJ_HIDE, o.getBoolean(Fields.OBJ_HIDE))
+								.append(Fields.OBJ_DEL, o.getBoolean(Fields.OBJ_DEL)))));
+				if (updates.size() == BATCH_SIZE) {
+					write(col, updates);
+					updates.clear();
+				}
+			}
+		} catch (MongoException me) {
+			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
+		}
+		write(col, updates);
+	}
+
+	/* Get the IDs of objects where the copied state doesn't match the object state. Objects
+	 * without a latest version are ignored.
+	 */
+	private List<Long> getOutOfSync(final long workspaceID, final List<Long> objectIDs)
+			throws WorkspaceCommunicationException {
+		final List<Long> ret = new ArrayList<>();
+		try (final MongoCursor<Document> objs = objCol.find(
+				objectStateQuery(workspaceID, objectIDs))
+				.projection(objectStateProjection())
+				.iterator()) {
+			final Map<Long, Document> batch = new HashMap<>();
+			while (objs.hasNext()) {
+				final Document o = objs.next();
+				batch.put(o.getLong(Fields.OBJ_ID), o);
+				if (batch.size() == BATCH_SIZE || !objs.hasNext()) {
+					for (final Document l: col.find(objectStateQuery(
+							workspaceID, new ArrayList<>(batch.keySet())))
+							.projection(objectStateProjection())) {
+						final Document o2 = batch.get(l.getLong(Fields.VER_ID));
+						if (!o2.getBoolean(Fields.OBJ_HIDE).equals(l.getBoolean(Fields.OBJ_HIDE))
+								|| !o2.getBoolean(Fields.OBJ_DEL).equals(
+										l.getBoolean(Fields.OBJ_DEL))) {
+							ret.add(l.getLong(Fields.VER_ID));
+						}
+					}
+					batch.clear();
+				}
+			}
+		} catch (MongoException me) {
+			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
+		}
+		return ret;
+	}
+
+	/** Set the administrative metadata of an object version, if it is the latest version.
+	 * @param workspaceID the ID of the workspace containing the object.
+	 * @param objectID the ID of the object.
+	 * @param version the version of the object.
+	 * @param adminMeta the administrative metadata, as stored in the version document.
+	 * @throws WorkspaceCommunicationException if a communication error with the database
+	 * occurs.
+	 */
+	void setAdminMetadata(
+			final long workspaceID,
+			final long objectID,
+			final int version,
+			final Object adminMeta)
+			throws WorkspaceCommunicationException {
+		set(new Document(Fields.VER_WS_ID, workspaceID)
+						.append(Fields.VER_ID, objectID)
+						.append(Fields.VER_VER, version),
+				new Document(Fields.VER_ADMINMETA, adminMeta));
+	}
+
+	private void set(final Document query, final Document set)
+			throws WorkspaceCommunicationException {
+		try {
+			col.updateMany(query, new Document("$set", set));
+		} catch (MongoException me) {
+			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
+		}
+	}
+
+	/** Populate the latest version collection from the object and version collections.
+	 * Existing latest versions are only replaced by higher versions, so the backfill may
+	 * run while workspace servers are saving objects. However, hiding or deleting objects
+	 * during the backfill may not be reflected in the latest version collection, so the
+	 * collection is only marked as complete if requested, which must only be done if no other
+	 * processes are writing to the database.
+	 *
+	 * The workspace database indexes must already exist.
+	 * @param db the workspace database.
+	 * @param logger a logger to which the backfill can write messages.
+	 * @param complete mark the latest version collection as complete, after which workspace
+	 * servers started against the database will use it to list objects.
+	 * @return the number of objects processed.
+	 * @throws MongoException if a communication error with the database occurs.
+	 */
+	static long backfill(
+			final MongoDatabase db,
+			final Consumer<String> logger,
+			final boolean complete) {
+		final MongoCollection<Document> latest = db.getCollection(COL_WORKSPACE_LATEST);
+		final MongoCollection<Document> vers = db.getCollection(COL_WORKSPACE_VERS);
+		final Document verProj = new Document(Fields.MONGO_ID, 0);
+		VERSION_FIELDS.forEach(f -> verProj.append(f, 1));
+		long count = 0;
+		try (final MongoCursor<Document> objs = db.getCollection(COL_WORKSPACE_OBJS)
+				// objects without versions are the result of a failed save and are never listed
+				.find(new Document(Fields.OBJ_VCNT, new Document("$gt", 0)))
+				.projection(new Document(Fields.MONGO_ID, 0)
+						.append(Fields.OBJ_WS_ID, 1)
+						.append(Fields.OBJ_ID, 1)
+						.append(Fields.OBJ_VCNT, 1)
+						.append(Fields.OBJ_HIDE, 1)
+						.append(Fields.OBJ_DEL, 1))
+				.iterator()) {
+			final List<Document> batch = new ArrayList<>();
+			while (objs.hasNext()) {
+				batch.add(objs.next());
+				if (batch.size() == BATCH_SIZE || !objs.hasNext()) {
+					backfill(latest, vers, verProj, batch);
+					count += batch.size();
+					batch.clear();
+					logger.accept("Processed objects: " + count);
+				}
+			}
+		}
+		if (complete) {
+			db.getCollection(COL_SCHEMA_CONFIG).updateOne(
+					new Document(Fields.SCHEMA_CONFIG_KEY, Fields.SCHEMA_CONFIG_VALUE),
+					new Document("$set", new Document(
+							Fields.SCHEMA_CONFIG_LATEST_COMPLETE, true)));
+			logger.accept("Marked the latest version collection as complete");
+		}
+		return count;
+	}
+
+	private static void backfill(
+			final MongoCollection<Document> latest,
+			final MongoCollection<Document> vers,
+			final Document verProj,
+			final List<Document> objs) {
+		final Map<Long, Map<Long, Document>> wsToIDToObj = new HashMap<>();
+		final List<Document> orquery = new ArrayList<>();
+		for (final Document o: objs) {
+			final long ws = o.getLong(Fields.OBJ_WS_ID);
+			final long id = o.getLong(Fields.OBJ_ID);
+			wsToIDToObj.computeIfAbsent(ws, k -> new HashMap<>()).put(id, o);
+			orquery.add(new Document(Fields.VER_WS_ID, ws)
+					.append(Fields.VER_ID, id)
+					.append(Fields.VER_VER, o.getInteger(Fields.OBJ_VCNT)));
+		}
+		final List<WriteModel<Document>> updates = new ArrayList<>();
+		// a version may be missing if a save failed after incrementing the version count, in
+		// which case the object is not listed, as when listing via the version collection
+		for (final Document v: vers.find(new Document("$or", orquery)).projection(verProj)) {
+			final Document o = wsToIDToObj.get(v.getLong(Fields.VER_WS_ID))
+					.get(v.getLong(Fields.VER_ID));
+			updates.add(upsert(v, o.getBoolean(Fields.OBJ_HIDE), o.getBoolean(Fields.OBJ_DEL)));
+		}
+		try {
+			write(latest, updates);
+		} catch (WorkspaceCommunicationException e) {
+			throw (MongoException) e.getCause();
+		}
+	}
+}
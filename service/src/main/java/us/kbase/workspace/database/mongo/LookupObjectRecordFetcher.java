@@ -0,0 +1,90 @@
+package us.kbase.workspace.database.mongo;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.bson.Document;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+
+import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
+
+/** Fetches object records with a single aggregation that joins the requested
+ * (workspace ID, object ID) pairs to the object collection with a $lookup stage.
+ *
+ * Since MongoDB 3.6 has no stage to create documents from a literal, the pipeline
+ * runs against a single workspace document and unwinds the literal list of pairs.
+ *
+ * The $lookup subpipeline can only use the workspace ID / object ID index on MongoDB 5.0+.
+ * On earlier versions this strategy scans the object collection for each pair and must not
+ * be used.
+ */
+public class LookupObjectRecordFetcher implements ObjectRecordFetcher {
+
+	private static final String PAIRS = "pairs";
+	private static final String OBJ = "obj";
+
+	private final MongoCollection<Document> workspaces;
+
+	/** Create the fetcher.
+	 * @param workspaceDB the workspace database.
+	 */
+	public LookupObjectRecordFetcher(final MongoDatabase workspaceDB) {
+		workspaces = RecordCodecs.withRecordCodecs(requireNonNull(workspaceDB, "workspaceDB")
+				.getCollection(CollectionNames.COL_WORKSPACES));
+	}
+
+	@Override
+	public List<ObjectRecord> fetch(final Map<Long, Set<Long>> objectIDs)
+			throws WorkspaceCommunicationException {
+		final List<ObjectRecord> ret = new ArrayList<>();
+		if (objectIDs.isEmpty()) {
+			return ret;
+		}
+		final List<Document> pairs = new ArrayList<>();
+		for (final Entry<Long, Set<Long>> e: objectIDs.entrySet()) {
+			for (final Long id: e.getValue()) {
+				pairs.add(new Document(Fields.OBJ_WS_ID, e.getKey()).append(Fields.OBJ_ID, id));
+			}
+		}
+		final Document join = new Document("$match", new Document("$expr", new Document("$and",
+				Arrays.asList(
+						new Document("$eq", Arrays.asList(
+								"$" + Fields.OBJ_WS_ID, "$$" + Fields.OBJ_WS_ID)),
+						new Document("$eq", Arrays.asList(
+								"$" + Fields.OBJ_ID, "$$" + Fields.OBJ_ID))))));
+		final List<Document> pipeline = Arrays.asList(
+				// the workspaces for the objects must exist, so use one of them as the source
+				new Document("$match", new Document(
+						Fields.WS_ID, new Document("$in", objectIDs.keySet()))),
+				new Document("$limit", 1),
+				new Document("$project", new Document(Fields.MONGO_ID, 0)
+						.append(PAIRS, new Document("$literal", pairs))),
+				new Document("$unwind", "$" + PAIRS),
+				new Document("$replaceRoot", new Document("newRoot", "$" + PAIRS)),
+				new Document("$lookup", new Document("from", CollectionNames.COL_WORKSPACE_OBJS)
+						.append("let", new Document(Fields.OBJ_WS_ID, "$" + Fields.OBJ_WS_ID)
+								.append(Fields.OBJ_ID, "$" + Fields.OBJ_ID))
+						.append("pipeline", Arrays.asList(
+								join,
+								new Document("$project", RecordCodecs.objectRecordProjection())))
+						.append("as", OBJ)),
+				new Document("$unwind", "$" + OBJ),
+				new Document("$replaceRoot", new Document("newRoot", "$" + OBJ)));
+		try {
+			workspaces.aggregate(pipeline, ObjectRecord.class).into(ret);
+		} catch (MongoException me) {
+			throw new WorkspaceCommunicationException(
+					"There was a problem communicating with the database", me);
+		}
+		return ret;
+	}
+}
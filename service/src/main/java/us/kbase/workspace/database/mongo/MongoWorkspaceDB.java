@@ -8,6 +8,7 @@ import static us.kbase.workspace.database.mongo.CollectionNames.COL_WORKSPACES;
 import static us.kbase.workspace.database.mongo.CollectionNames.COL_WS_ACLS;
 import static us.kbase.workspace.database.mongo.CollectionNames.COL_WORKSPACE_OBJS;
 import static us.kbase.workspace.database.mongo.CollectionNames.COL_WORKSPACE_VERS;
+import static us.kbase.workspace.database.mongo.CollectionNames.COL_WORKSPACE_LATEST;
 import static us.kbase.workspace.database.mongo.CollectionNames.COL_PROVENANCE;
 import static us.kbase.workspace.database.mongo.CollectionNames.COL_SCHEMA_CONFIG;
 import static us.kbase.workspace.database.mongo.CollectionNames.COL_DYNAMIC_CONFIG;
@@ -20,10 +21,12 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -33,22 +36,23 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.slf4j.LoggerFactory;
 
-import us.kbase.common.utils.Counter;
 import us.kbase.common.utils.CountingOutputStream;
 import us.kbase.typedobj.core.AbsoluteTypeDefId;
 import us.kbase.typedobj.core.ExtractedMetadata;
 import us.kbase.typedobj.core.MD5;
+import us.kbase.typedobj.core.Restreamable;
 import us.kbase.typedobj.core.SubsetSelection;
 import us.kbase.typedobj.core.TypeDefName;
 import us.kbase.typedobj.exceptions.ExceededMaxMetadataSizeException;
@@ -63,6 +67,7 @@ import us.kbase.workspace.database.DynamicConfig.DynamicConfigUpdate;
 import us.kbase.workspace.database.ObjectReferenceSet;
 import us.kbase.workspace.database.WorkspaceUserMetadata.MetadataException;
 import us.kbase.workspace.database.ByteArrayFileCacheManager;
+import us.kbase.workspace.database.CloseableIterator;
 import us.kbase.workspace.database.CopyResult;
 import us.kbase.workspace.database.ListObjectsParameters.ResolvedListObjectParameters;
 import us.kbase.workspace.database.MetadataUpdate;
@@ -84,6 +89,7 @@ import us.kbase.workspace.database.UncheckedUserMetadata;
 import us.kbase.workspace.database.User;
 import us.kbase.workspace.database.Workspace;
 import us.kbase.workspace.database.WorkspaceDatabase;
+import us.kbase.workspace.database.WorkspaceIDSet;
 import us.kbase.workspace.database.WorkspaceIdentifier;
 import us.kbase.workspace.database.WorkspaceInformation;
 import us.kbase.workspace.database.WorkspaceObjectData;
@@ -109,16 +115,22 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mongodb.DuplicateKeyException;
 import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoException;
 import com.mongodb.MongoWriteException;
 import com.mongodb.client.DistinctIterable;
 import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.InsertOneModel;
 import com.mongodb.client.model.ReturnDocument;
 import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.UpdateResult;
 
 public class MongoWorkspaceDB implements WorkspaceDatabase {
@@ -161,10 +173,20 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 	private final BlobStore blob;
 	private final QueryMethods query;
 	private final ObjectInfoUtils objutils;
+	private final LatestVersions latest;
+	private final ReferenceCache refCache; // null if reference graph data isn't cached
+	private final ReadableWorkspaceCache wsCache; // null if readable workspaces aren't cached
+	private final ObjectNameCache nameCache; // null if object names aren't cached
+	private final BackendRetrievalScheduler retrievalScheduler;
+	// true if the latest version collection can be used to list objects
+	private final boolean latestComplete;
 
 	// TODO TEST add more unit tests using the mocked clock
 	private final Clock clock;
 
+	// uploads object data for all saves, or null to upload in the saving threads
+	private final Executor uploads;
+
 	private static final IndexOptions IDX_UNIQ = new IndexOptions().unique(true);
 	private static final IndexOptions IDX_SPARSE = new IndexOptions().sparse(true);
 	private static final IndexOptions IDX_UNIQ_SPARSE = new IndexOptions()
@@ -244,6 +266,34 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		wsVer.add(idxSpec(Fields.VER_META, 1, IDX_SPARSE));
 		indexes.put(COL_WORKSPACE_VERS, wsVer);
 
+		//latest object version indexes. The list indexes must match the version collection
+		//indexes, since the same sorts and hints are used for both collections
+		final LinkedList<IndexSpecification> wsLatest = new LinkedList<>();
+		//one latest version per object
+		wsLatest.add(idxSpec(Fields.VER_WS_ID, 1, Fields.VER_ID, 1, IDX_UNIQ));
+		//list objects
+		wsLatest.add(idxSpec(Fields.VER_WS_ID, 1, Fields.VER_ID, 1, Fields.VER_VER, -1));
+		//list objects per type
+		wsLatest.add(idxSpec(
+				Fields.VER_TYPE_NAME, 1, Fields.VER_TYPE_MAJOR_VERSION, 1,
+				Fields.VER_TYPE_MINOR_VERSION, 1,
+				Fields.VER_WS_ID, 1, Fields.VER_ID, 1, Fields.VER_VER, -1));
+		//list objects per type with major version
+		wsLatest.add(idxSpec(
+				Fields.VER_TYPE_NAME, 1, Fields.VER_TYPE_MAJOR_VERSION, 1,
+				Fields.VER_WS_ID, 1, Fields.VER_ID, 1, Fields.VER_VER, -1));
+		//list objects per type name only
+		wsLatest.add(idxSpec(
+				Fields.VER_TYPE_NAME, 1,
+				Fields.VER_WS_ID, 1, Fields.VER_ID, 1, Fields.VER_VER, -1));
+		//list objects by user
+		wsLatest.add(idxSpec(Fields.VER_SAVEDBY, 1));
+		//list objects by saved date
+		wsLatest.add(idxSpec(Fields.VER_SAVEDATE, 1));
+		//list objects by metadata
+		wsLatest.add(idxSpec(Fields.VER_META, 1, IDX_SPARSE));
+		indexes.put(COL_WORKSPACE_LATEST, wsLatest);
+
 		//no indexes needed for provenance since all lookups are by _id
 
 		//admin indexes
@@ -277,28 +327,176 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 	public MongoWorkspaceDB(final MongoDatabase workspaceDB, final BlobStore blobStore)
 			throws WorkspaceCommunicationException,
 				WorkspaceDBInitializationException, CorruptWorkspaceDBException {
-		this(workspaceDB, blobStore, Clock.systemDefaultZone());
+		this(getBuilder(workspaceDB, blobStore), Clock.systemDefaultZone());
 	}
 
 	// for tests
-	private MongoWorkspaceDB(
-			final MongoDatabase workspaceDB,
-			final BlobStore blobStore,
-			final Clock clock)
+	private MongoWorkspaceDB(final Builder builder, final Clock clock)
 			throws WorkspaceCommunicationException,
 				WorkspaceDBInitializationException, CorruptWorkspaceDBException {
-		if (workspaceDB == null || blobStore == null) {
-			throw new NullPointerException("No arguments can be null");
-		}
 		this.clock = clock;
-		wsmongo = workspaceDB;
+		wsmongo = builder.workspaceDB;
 		query = new QueryMethods(wsmongo, (AllUsers) ALL_USERS, COL_WORKSPACES,
 				COL_WORKSPACE_OBJS, COL_WORKSPACE_VERS, COL_WS_ACLS);
-		objutils = new ObjectInfoUtils(query);
-		blob = blobStore;
+		objutils = new ObjectInfoUtils(builder.objectRecordFetcher == null ?
+				new OrQueryObjectRecordFetcher(wsmongo) : builder.objectRecordFetcher);
+		latest = new LatestVersions(wsmongo);
+		refCache = builder.referenceCache;
+		wsCache = builder.readableWorkspaceCache;
+		nameCache = builder.objectNameCache;
+		retrievalScheduler = builder.retrievalScheduler == null ?
+				new BackendRetrievalScheduler() : builder.retrievalScheduler;
+		uploads = builder.uploadExecutor;
+		blob = builder.blobStore;
 		//TODO DBCONSIST check a few random types and make sure they exist
 		ensureIndexes(wsmongo);
 		checkSchema(wsmongo);
+		latestComplete = isLatestVersionsComplete(wsmongo);
+	}
+
+	/** Get a builder for a workspace database using MongoDB as a backend.
+	 * @param workspaceDB the MongoDB in which to store data
+	 * @param blobStore the blob store in which to store object data
+	 * @return the builder.
+	 */
+	public static Builder getBuilder(final MongoDatabase workspaceDB, final BlobStore blobStore) {
+		return new Builder(workspaceDB, blobStore);
+	}
+
+	/** A builder for a workspace database using MongoDB as a backend.
+	 * 
+	 * Any caches are only invalidated when the built instance alters the cached data, so
+	 * alterations made by other processes are only seen when the cache entries expire.
+	 */
+	public static class Builder {
+
+		private final MongoDatabase workspaceDB;
+		private final BlobStore blobStore;
+		private ReferenceCache referenceCache = null;
+		private ReadableWorkspaceCache readableWorkspaceCache = null;
+		private ObjectNameCache objectNameCache = null;
+		private BackendRetrievalScheduler retrievalScheduler = null;
+		private ObjectRecordFetcher objectRecordFetcher = null;
+		private Executor uploadExecutor = null;
+
+		private Builder(final MongoDatabase workspaceDB, final BlobStore blobStore) {
+			this.workspaceDB = requireNonNull(workspaceDB, "workspaceDB");
+			this.blobStore = requireNonNull(blobStore, "blobStore");
+		}
+
+		/** Cache the object reference graph data used when searching for an accessible path
+		 * to an object. By default the graph is not cached.
+		 * @param referenceCache the cache, or null to not cache the graph.
+		 * @return this builder.
+		 */
+		public Builder withReferenceCache(final ReferenceCache referenceCache) {
+			this.referenceCache = referenceCache;
+			return this;
+		}
+
+		/** Cache the IDs of the workspaces each user can read. By default the IDs are not
+		 * cached.
+		 * @param readableWorkspaceCache the cache, or null to not cache the IDs.
+		 * @return this builder.
+		 */
+		public Builder withReadableWorkspaceCache(
+				final ReadableWorkspaceCache readableWorkspaceCache) {
+			this.readableWorkspaceCache = readableWorkspaceCache;
+			return this;
+		}
+
+		/** Cache the object names in each workspace used when finding names by prefix. By
+		 * default the names are not cached.
+		 * @param objectNameCache the cache, or null to not cache the names.
+		 * @return this builder.
+		 */
+		public Builder withObjectNameCache(final ObjectNameCache objectNameCache) {
+			this.objectNameCache = objectNameCache;
+			return this;
+		}
+
+		/** Set the scheduler with which to retrieve object data from the blob store, shared
+		 * by all requests. By default a scheduler with the default number of threads is used.
+		 * @param retrievalScheduler the scheduler.
+		 * @return this builder.
+		 */
+		public Builder withBackendRetrievalScheduler(
+				final BackendRetrievalScheduler retrievalScheduler) {
+			this.retrievalScheduler = requireNonNull(retrievalScheduler, "retrievalScheduler");
+			return this;
+		}
+
+		/** Set the fetcher for the object records when getting object information. By
+		 * default, the records are fetched with a single query.
+		 * @param objectRecordFetcher the fetcher, which must query the same database as the
+		 * built instance.
+		 * @return this builder.
+		 */
+		public Builder withObjectRecordFetcher(final ObjectRecordFetcher objectRecordFetcher) {
+			this.objectRecordFetcher = requireNonNull(
+					objectRecordFetcher, "objectRecordFetcher");
+			return this;
+		}
+
+		/** Set the executor with which to upload object data to the blob store, shared by all
+		 * saves. The number of threads each save uses is set by the backend upload scaling
+		 * parameter of the dynamic configuration, including the saving thread, which always
+		 * uploads data. The executor should reject tasks rather than queue them when all its
+		 * threads are busy, e.g. by using a {@link java.util.concurrent.SynchronousQueue}; a
+		 * save then uses fewer threads rather than waiting for a thread.
+		 * 
+		 * By default, each save uploads its data in the saving thread only.
+		 * @param uploadExecutor the executor.
+		 * @return this builder.
+		 */
+		public Builder withUploadExecutor(final Executor uploadExecutor) {
+			this.uploadExecutor = requireNonNull(uploadExecutor, "uploadExecutor");
+			return this;
+		}
+
+		/** Build the workspace database.
+		 * @return the workspace database.
+		 * @throws WorkspaceCommunicationException if the backend cannot be reached
+		 * @throws WorkspaceDBInitializationException if the database cannot be initialized
+		 * @throws CorruptWorkspaceDBException if the database is corrupt.
+		 */
+		public MongoWorkspaceDB build()
+				throws WorkspaceCommunicationException,
+					WorkspaceDBInitializationException, CorruptWorkspaceDBException {
+			return new MongoWorkspaceDB(this, Clock.systemDefaultZone());
+		}
+	}
+
+	/** Get the cache used for the object reference graph when searching for an accessible
+	 * path to an object, e.g. to retrieve cache statistics.
+	 * @return the reference cache, or empty if the reference graph is not cached.
+	 */
+	public Optional<ReferenceCache> getReferenceCache() {
+		return Optional.ofNullable(refCache);
+	}
+
+	/** Get the cache used for the IDs of the workspaces each user can read, e.g. to retrieve
+	 * cache statistics.
+	 * @return the readable workspace cache, or empty if the IDs are not cached.
+	 */
+	public Optional<ReadableWorkspaceCache> getReadableWorkspaceCache() {
+		return Optional.ofNullable(wsCache);
+	}
+
+	/** Get the cache used for the object names when finding names by prefix, e.g. to retrieve
+	 * cache statistics.
+	 * @return the object name cache, or empty if the names are not cached.
+	 */
+	public Optional<ObjectNameCache> getObjectNameCache() {
+		return Optional.ofNullable(nameCache);
+	}
+
+	/** Get the scheduler used to retrieve object data from the blob store, e.g. to retrieve
+	 * queue statistics.
+	 * @return the scheduler.
+	 */
+	public BackendRetrievalScheduler getBackendRetrievalScheduler() {
+		return retrievalScheduler;
 	}
 
 	private static class IndexSpecification {
@@ -432,6 +630,8 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 				Fields.SCHEMA_CONFIG_KEY, Fields.SCHEMA_CONFIG_VALUE);
 		cfg.put(Fields.SCHEMA_CONFIG_UPDATE, false);
 		cfg.put(Fields.SCHEMA_CONFIG_VERSION, SCHEMA_VERSION);
+		// a new database has no objects, so the latest version collection is complete
+		cfg.put(Fields.SCHEMA_CONFIG_LATEST_COMPLETE, true);
 		try {
 			wsmongo.getCollection(COL_SCHEMA_CONFIG).insertOne(cfg);
 		} catch (MongoWriteException mwe) {
@@ -491,6 +691,17 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		}
 	}
 
+	private static boolean isLatestVersionsComplete(final MongoDatabase wsmongo)
+			throws WorkspaceCommunicationException {
+		try {
+			final Document cfg = wsmongo.getCollection(COL_SCHEMA_CONFIG).find(
+					new Document(Fields.SCHEMA_CONFIG_KEY, Fields.SCHEMA_CONFIG_VALUE)).first();
+			return Boolean.TRUE.equals(cfg.get(Fields.SCHEMA_CONFIG_LATEST_COMPLETE));
+		} catch (MongoException me) {
+			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
+		}
+	}
+
 	static void ensureIndexes(final MongoDatabase wsdb)
 			throws CorruptWorkspaceDBException, WorkspaceCommunicationException {
 		final HashMap<String, List<IndexSpecification>> indexes = getIndexSpecs();
@@ -734,7 +945,7 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		for (final ObjectIDResolvedWS oirw: update.keySet()) {
 			final ResolvedObjectID roi = oids.get(oirw);
 			try {
-				setMetadataOnDocument(
+				final Optional<Instant> time = setMetadataOnDocument(
 						update.get(oirw),
 						COL_WORKSPACE_VERS,
 						() -> queryVersions(new HashSet<>(Arrays.asList(roi)), fields, false)
@@ -744,6 +955,16 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 								.append(Fields.VER_VER, roi.getVersion()),
 						Fields.VER_ADMINMETA,
 						null);
+				if (time.isPresent()) {
+					// copy the result rather than the update so that concurrent updates can't
+					// leave the latest version collection out of sync
+					latest.setAdminMetadata(
+							roi.getWorkspaceIdentifier().getID(),
+							roi.getId(),
+							roi.getVersion(),
+							queryVersions(new HashSet<>(Arrays.asList(roi)), fields, false)
+									.get(roi).get(Fields.VER_ADMINMETA));
+				}
 			} catch (IllegalArgumentException e) {
 				final String err;
 				if (oirw.getVersion() == null) {
@@ -850,7 +1071,13 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 	}
 
 	private static final Set<String> FLDS_CLONE_WS =
-			newHashSet(Fields.OBJ_ID, Fields.OBJ_NAME, Fields.OBJ_DEL, Fields.OBJ_HIDE);
+			newHashSet(Fields.OBJ_ID, Fields.OBJ_NAME, Fields.OBJ_HIDE, Fields.OBJ_VCNT);
+
+	// the maximum number of objects cloned per batch of database writes
+	private static final int CLONE_BATCH_SIZE = 1000;
+	// the maximum number of versions cloned per batch, unless a single object has more
+	// versions, and the maximum number of versions per insert
+	private static final int CLONE_BATCH_VERSIONS = 10000;
 
 	@Override
 	public WorkspaceInformation cloneWorkspace(
@@ -888,45 +1115,26 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		try {
 			final FindIterable<Document> wsobjects = query.queryCollectionCursor(
 					COL_WORKSPACE_OBJS, q, FLDS_CLONE_WS, hint, -1);
+			final List<Document> batch = new ArrayList<>(CLONE_BATCH_SIZE);
+			long batchVersions = 0;
 			for (final Document o: wsobjects) {
-				final long objid = o.getLong(Fields.OBJ_ID);
-				final String name = o.getString(Fields.OBJ_NAME);
-				final boolean hidden = o.getBoolean(Fields.OBJ_HIDE);
-				final boolean deleted = o.getBoolean(Fields.OBJ_DEL);
-				maxid = Math.max(maxid, objid);
-				final ResolvedObjectIDNoVer roi =
-						new ResolvedObjectIDNoVer(fromWS, objid, name, deleted);
-				final List<Map<String, Object>> versions;
-				try {
-					versions = queryAllVersions(
-							new HashSet<ResolvedObjectIDNoVer>(Arrays.asList(roi)),
-							FLDS_VER_COPYOBJ).get(roi);
-				} catch (NoSuchObjectException nsoe) {
-					/* The object was saved to the objects collections and the
-					 * version was incremented at least once. However, no
-					 * versions exist in the version collection. So either a
-					 * race condition or the system died before versions could
-					 * be saved, so skip it. Really need to move to a backend
-					 * with transactions or simplify the schema so it's
-					 * relationless.
-					 */
-					continue;
+				maxid = Math.max(maxid, o.getLong(Fields.OBJ_ID));
+				// objects can have many versions, so cap the versions held in memory as well
+				final int vercount = o.getInteger(Fields.OBJ_VCNT);
+				if (!batch.isEmpty() && batchVersions + vercount > CLONE_BATCH_VERSIONS) {
+					cloneObjects(user, fromWS, toWS, batch);
+					batch.clear();
+					batchVersions = 0;
 				}
-				for (final Map<String, Object> v: versions) {
-					final int ver = (Integer) v.get(Fields.VER_VER);
-					v.remove(Fields.MONGO_ID);
-					v.put(Fields.VER_SAVEDBY, user.getUser());
-					v.put(Fields.VER_RVRT, null);
-					v.put(Fields.VER_COPIED, new Reference(fromWS.getID(), objid, ver).toString());
+				batch.add(o);
+				batchVersions += vercount;
+				if (batch.size() >= CLONE_BATCH_SIZE) {
+					cloneObjects(user, fromWS, toWS, batch);
+					batch.clear();
+					batchVersions = 0;
 				}
-				updateReferenceCountsForVersions(versions);
-				// so if a save fails here the reference counts in other objects are wrong.
-				// need to detect failed saves on start up and fix or something
-				// mark a save started, then update ref counts etc.
-				// Or don't use refcounts - search for refs at time of deletion?
-				saveWorkspaceObject(toWS, objid, name);
-				saveObjectVersions(user, toWS, objid, versions, hidden);
 			}
+			cloneObjects(user, fromWS, toWS, batch);
 		} catch (MongoException me) {
 			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
 		}
@@ -948,6 +1156,96 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 				.build();
 	}
 
+	/* Clones a batch of objects into a workspace that is being cloned, using a fixed number of
+	 * round trips per batch rather than per object:
+	 * 1) pull all the versions of the objects in one query
+	 * 2) increment the reference counts for all the versions' references
+	 * 3) create all the objects, with their version counts already allocated, in one insert
+	 * 4) save all the versions in one insert
+	 * The workspace is not accessible until the clone is complete, so the object IDs and names
+	 * cannot collide with other saves.
+	 */
+	private void cloneObjects(
+			final WorkspaceUser user,
+			final ResolvedWorkspaceID fromWS,
+			final ResolvedWorkspaceID toWS,
+			final List<Document> objects)
+			throws WorkspaceCommunicationException {
+		if (objects.isEmpty()) {
+			return;
+		}
+		final List<Long> ids = objects.stream().map(o -> o.getLong(Fields.OBJ_ID))
+				.collect(Collectors.toList());
+		final Map<Long, Map<Integer, Map<String, Object>>> idToVers = new HashMap<>();
+		for (final Map<String, Object> v: query.queryCollection(COL_WORKSPACE_VERS,
+				new Document(Fields.VER_WS_ID, fromWS.getID())
+						.append(Fields.VER_ID, new Document("$in", ids)),
+				new HashSet<>(FLDS_VER_COPYOBJ))) {
+			idToVers.computeIfAbsent((Long) v.get(Fields.VER_ID), k -> new TreeMap<>())
+					.put((Integer) v.get(Fields.VER_VER), v);
+		}
+		final List<Map<String, Object>> versions = new ArrayList<>();
+		for (final Document o: objects) {
+			final long objid = o.getLong(Fields.OBJ_ID);
+			/* If there are no versions, the object was saved to the objects collection and the
+			 * version was incremented at least once, but no versions exist in the version
+			 * collection. So either a race condition or the system died before versions could
+			 * be saved, so skip it. Really need to move to a backend with transactions or
+			 * simplify the schema so it's relationless.
+			 */
+			for (final Map<String, Object> v: idToVers.getOrDefault(
+					objid, Collections.emptyMap()).values()) {
+				final int ver = (Integer) v.get(Fields.VER_VER);
+				v.put(Fields.VER_SAVEDBY, user.getUser());
+				v.put(Fields.VER_RVRT, null);
+				v.put(Fields.VER_COPIED, new Reference(fromWS.getID(), objid, ver).toString());
+				versions.add(v);
+			}
+		}
+		if (versions.isEmpty()) {
+			return;
+		}
+		updateReferenceCountsForVersions(versions);
+		// so if a save fails here the reference counts in other objects are wrong.
+		// need to detect failed saves on start up and fix or something
+		// mark a save started, then update ref counts etc.
+		// Or don't use refcounts - search for refs at time of deletion?
+		final Date saved = new Date();
+		final List<Document> objdocs = new LinkedList<>();
+		final List<Document> verdocs = new ArrayList<>(versions.size());
+		for (final Document o: objects) {
+			final long objid = o.getLong(Fields.OBJ_ID);
+			if (!idToVers.containsKey(objid)) {
+				continue;
+			}
+			final Collection<Map<String, Object>> vers = idToVers.get(objid).values();
+			final Document dbo = newObjectDocument(toWS, objid, o.getString(Fields.OBJ_NAME));
+			dbo.put(Fields.OBJ_VCNT, vers.size());
+			dbo.put(Fields.OBJ_REFCOUNTS, zeroRefCounts(vers.size()));
+			dbo.put(Fields.OBJ_MODDATE, saved);
+			dbo.put(Fields.OBJ_HIDE, o.getBoolean(Fields.OBJ_HIDE));
+			objdocs.add(dbo);
+			int ver = 1;
+			for (final Map<String, Object> v: vers) {
+				verdocs.add(toVersionDocument(toWS, objid, ver++, saved, v));
+			}
+		}
+		try {
+			wsmongo.getCollection(COL_WORKSPACE_OBJS).insertMany(objdocs);
+		} catch (MongoException me) {
+			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
+		}
+		// a single object may have more versions than a batch
+		for (int i = 0; i < verdocs.size(); i += CLONE_BATCH_VERSIONS) {
+			insertVersions(verdocs.subList(
+					i, Math.min(i + CLONE_BATCH_VERSIONS, verdocs.size())));
+		}
+		latest.update(verdocs);
+		if (nameCache != null) {
+			nameCache.invalidate(toWS.getID());
+		}
+	}
+
 	// this method expects that the id exists. If it does not it'll throw an
 	// IllegalState exception.
 	private Instant updateClonedWorkspaceInformation(
@@ -1108,6 +1406,10 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 			objid = rto.getId();
 		}
 		saveObjectVersions(user, toWS, objid, versions, null);
+		if (nameCache != null) {
+			// the hidden state is unchanged, but the save may have undeleted the object
+			nameCache.update(toWS.getID(), rto == null ? to.getName() : rto.getName(), null);
+		}
 		final Map<String, Object> info = versions.get(versions.size() - 1);
 		updateWorkspaceModifiedDate(toWS);
 		final ObjectInformation oi = ObjectInfoUtils.generateObjectInfo(toWS, objid,
@@ -1167,6 +1469,9 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		} catch (MongoException me) {
 			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
 		}
+		if (nameCache != null) {
+			nameCache.invalidate(roi.getWorkspaceIdentifier().getID());
+		}
 		final ObjectIDResolvedWS oid = new ObjectIDResolvedWS(
 				roi.getWorkspaceIdentifier(), roi.getId(), roi.getVersion());
 		input = new HashSet<ObjectIDResolvedWS>(Arrays.asList(oid));
@@ -1389,6 +1694,27 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		return pset.build();
 	}
 
+	@Override
+	public WorkspaceIDSet getUserReadableWorkspaceIDs(final WorkspaceUser user)
+			throws WorkspaceCommunicationException, CorruptWorkspaceDBException {
+		requireNonNull(user, "user");
+		return getReadableWorkspaceIDs(user);
+	}
+
+	@Override
+	public WorkspaceIDSet getPublicWorkspaceIDs()
+			throws WorkspaceCommunicationException, CorruptWorkspaceDBException {
+		return getReadableWorkspaceIDs(ALL_USERS);
+	}
+
+	private WorkspaceIDSet getReadableWorkspaceIDs(final User user)
+			throws WorkspaceCommunicationException, CorruptWorkspaceDBException {
+		if (wsCache == null) {
+			return query.queryWorkspaceIDs(user, Permission.READ);
+		}
+		return wsCache.get(user, u -> query.queryWorkspaceIDs(u, Permission.READ));
+	}
+
 	private static String getWSErrorId(final WorkspaceIdentifier wsi) {
 		if (wsi.getId() == null) {
 			return "name " + wsi.getName();
@@ -1476,25 +1802,32 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		} else {
 			owner = null;
 		}
-		for (final User user: users) {
-			if (owner != null && owner.getUser().equals(user.getUser())) {
-				continue; // can't change owner permissions
-			}
-			final Document query = new Document(Fields.ACL_WSID, wsid.getID())
-					.append(Fields.ACL_USER, user.getUser());
-			try {
-				if (perm.equals(Permission.NONE)) {
-					wsmongo.getCollection(COL_WS_ACLS).deleteOne(query);
-				} else {
-					wsmongo.getCollection(COL_WS_ACLS).updateOne(
-							query,
-							new Document(
-									"$set", new Document(Fields.ACL_PERM, perm.getPermission())),
-							new UpdateOptions().upsert(true)
-					);
+		try {
+			for (final User user: users) {
+				if (owner != null && owner.getUser().equals(user.getUser())) {
+					continue; // can't change owner permissions
 				}
-			} catch (MongoException me) {
-				throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
+				final Document query = new Document(Fields.ACL_WSID, wsid.getID())
+						.append(Fields.ACL_USER, user.getUser());
+				try {
+					if (perm.equals(Permission.NONE)) {
+						wsmongo.getCollection(COL_WS_ACLS).deleteOne(query);
+					} else {
+						wsmongo.getCollection(COL_WS_ACLS).updateOne(
+								query,
+								new Document("$set",
+										new Document(Fields.ACL_PERM, perm.getPermission())),
+								new UpdateOptions().upsert(true)
+						);
+					}
+				} catch (MongoException me) {
+					throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
+				}
+			}
+		} finally {
+			// the public workspaces are cached under the all users user
+			if (wsCache != null) {
+				wsCache.invalidate(users);
 			}
 		}
 		// hmm. should the workspace mod date be changed when setting perms? Currently not
@@ -1660,6 +1993,14 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 			final long objectid,
 			final ObjectSavePackage pkg)
 			throws WorkspaceCommunicationException {
+		final Map<String, Object> version = buildVersion(user, pkg);
+		saveObjectVersions(user, wsid, objectid, Arrays.asList(version), pkg.wo.isHidden());
+		return buildObjectInfo(user, wsid, objectid, pkg, version);
+	}
+
+	private Map<String, Object> buildVersion(
+			final WorkspaceUser user,
+			final ObjectSavePackage pkg) {
 		final Map<String, Object> version = new HashMap<String, Object>();
 		final AbsoluteTypeDefId t = pkg.wo.getRep().getValidationTypeDefId();
 		version.put(Fields.VER_SAVEDBY, user.getUser());
@@ -1677,9 +2018,16 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		version.put(Fields.VER_RVRT, null);
 		version.put(Fields.VER_COPIED, null);
 		version.put(Fields.VER_EXT_IDS, extractedIDsToStrings(pkg.wo.getExtractedIDs()));
+		return version;
+	}
 
-		saveObjectVersions(user, wsid, objectid, Arrays.asList(version), pkg.wo.isHidden());
-		
+	// the version must have been saved, which sets the save date and version fields
+	private ObjectInformation buildObjectInfo(
+			final WorkspaceUser user,
+			final ResolvedWorkspaceID wsid,
+			final long objectid,
+			final ObjectSavePackage pkg,
+			final Map<String, Object> version) {
 		return ObjectInformation.getBuilder()
 				.withObjectID(objectid)
 				.withObjectName(pkg.name)
@@ -1723,19 +2071,34 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		 * None of the above addresses the object w/ 0 versions failure. Not sure what to do about that.
 		 *
 		*/
-		int ver;
-		final List<Integer> zeros = new LinkedList<Integer>();
-		for (int i = 0; i < versions.size(); i++) {
-			zeros.add(0);
-		}
 		final Date saved = new Date();
+		int ver = incrementVersionCount(wsid, objectid, versions.size(), hidden, saved);
+		//TODO look into why saving array of maps via List.ToArray() makes Lazy?Objects return, which screw up everything
+		// note ^ this may or may not be moot with the conversion to Document
+		final List<Document> dbo = new LinkedList<>();
+		for (final Map<String, Object> v: versions) {
+			dbo.add(toVersionDocument(wsid, objectid, ver++, saved, v));
+		}
+		insertVersions(dbo);
+		latest.update(dbo);
+	}
+
+	// returns the first of the newly allocated version numbers
+	private int incrementVersionCount(
+			final ResolvedWorkspaceID wsid,
+			final long objectid,
+			final int versions,
+			final Boolean hidden,
+			final Date saved)
+			throws WorkspaceCommunicationException {
 		final Document set = new Document(Fields.OBJ_DEL, false)
 				.append(Fields.OBJ_MODDATE, saved)
 				.append(Fields.OBJ_LATEST, null);
 		final Document update = new Document(
-				"$inc", new Document(Fields.OBJ_VCNT, versions.size()))
+				"$inc", new Document(Fields.OBJ_VCNT, versions))
 				.append("$set", set)
-				.append("$push", new Document(Fields.OBJ_REFCOUNTS, new Document("$each", zeros)));
+				.append("$push", new Document(Fields.OBJ_REFCOUNTS,
+						new Document("$each", zeroRefCounts(versions))));
 		if (hidden != null) {
 			set.append(Fields.OBJ_HIDE, hidden);
 		}
@@ -1748,30 +2111,63 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 									.append(Fields.MONGO_ID, 0))
 							.returnDocument(ReturnDocument.AFTER)
 			);
-			ver = res.getInteger(Fields.OBJ_VCNT) - versions.size() + 1;
+			return res.getInteger(Fields.OBJ_VCNT) - versions + 1;
 		} catch (MongoException me) {
 			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
 		}
-		//TODO look into why saving array of maps via List.ToArray() makes Lazy?Objects return, which screw up everything
-		// note ^ this may or may not be moot with the conversion to Document
-		final List<Document> dbo = new LinkedList<>();
-		for (final Map<String, Object> v: versions) {
-			v.put(Fields.VER_SAVEDATE, saved);
-			v.put(Fields.VER_WS_ID, wsid.getID());
-			v.put(Fields.VER_ID, objectid);
-			v.put(Fields.VER_VER, ver++);
-			final Document d = new Document();
-			for (final Entry<String, Object> e: v.entrySet()) {
-				d.put(e.getKey(), e.getValue());
-			}
-			dbo.add(d);
+	}
+
+	private List<Integer> zeroRefCounts(final int versions) {
+		final List<Integer> zeros = new LinkedList<Integer>();
+		for (int i = 0; i < versions; i++) {
+			zeros.add(0);
 		}
+		return zeros;
+	}
+
+	// has a side effect of adding the save date, workspace, object, and version fields to
+	// the version
+	private Document toVersionDocument(
+			final ResolvedWorkspaceID wsid,
+			final long objectid,
+			final int ver,
+			final Date saved,
+			final Map<String, Object> version) {
+		version.put(Fields.VER_SAVEDATE, saved);
+		version.put(Fields.VER_WS_ID, wsid.getID());
+		version.put(Fields.VER_ID, objectid);
+		version.put(Fields.VER_VER, ver);
+		final Document d = new Document();
+		for (final Entry<String, Object> e: version.entrySet()) {
+			d.put(e.getKey(), e.getValue());
+		}
+		return d;
+	}
 
+	private void insertVersions(final List<Document> versions)
+			throws WorkspaceCommunicationException {
 		try {
-			wsmongo.getCollection(COL_WORKSPACE_VERS).insertMany(dbo);
+			wsmongo.getCollection(COL_WORKSPACE_VERS).insertMany(versions);
 		} catch (MongoException me) {
 			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
 		}
+		if (refCache == null) {
+			return;
+		}
+		// the new versions are incoming references for the versions they reference
+		final Set<Reference> refs = new HashSet<>();
+		for (final Document v: versions) {
+			for (final String field: Arrays.asList(Fields.VER_REF, Fields.VER_PROVREF)) {
+				@SuppressWarnings("unchecked")
+				final List<String> vrefs = (List<String>) v.get(field);
+				if (vrefs != null) {
+					for (final String r: vrefs) {
+						refs.add(new Reference(r));
+					}
+				}
+			}
+		}
+		refCache.invalidateIncomingReferences(refs);
 	}
 
 	//save brand new object - create container
@@ -1785,15 +2181,7 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		if (name == null) {
 			throw new NullPointerException("name");
 		}
-		final Document dbo = new Document();
-		dbo.put(Fields.OBJ_WS_ID, wsid.getID());
-		dbo.put(Fields.OBJ_ID, objectid);
-		dbo.put(Fields.OBJ_VCNT, 0); //Integer
-		dbo.put(Fields.OBJ_REFCOUNTS, new LinkedList<Integer>());
-		dbo.put(Fields.OBJ_NAME, name);
-		dbo.put(Fields.OBJ_LATEST, null); //TODO DBUPDATE remove this field. Deleting versions is out, just delete the entire object.
-		dbo.put(Fields.OBJ_DEL, false);
-		dbo.put(Fields.OBJ_HIDE, false);
+		final Document dbo = newObjectDocument(wsid, objectid, name);
 		try {
 			//maybe could speed things up with batch inserts but dealing with
 			//errors would really suck
@@ -1823,6 +2211,89 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		return new IDName(objectid, name);
 	}
 
+	private Document newObjectDocument(
+			final ResolvedWorkspaceID wsid,
+			final long objectid,
+			final String name) {
+		final Document dbo = new Document();
+		dbo.put(Fields.OBJ_WS_ID, wsid.getID());
+		dbo.put(Fields.OBJ_ID, objectid);
+		dbo.put(Fields.OBJ_VCNT, 0); //Integer
+		dbo.put(Fields.OBJ_REFCOUNTS, new LinkedList<Integer>());
+		dbo.put(Fields.OBJ_NAME, name);
+		dbo.put(Fields.OBJ_LATEST, null); //TODO DBUPDATE remove this field. Deleting versions is out, just delete the entire object.
+		dbo.put(Fields.OBJ_DEL, false);
+		dbo.put(Fields.OBJ_HIDE, false);
+		return dbo;
+	}
+
+	/* Save brand new objects with their versions already allocated, in one round trip.
+	 * The object IDs *must not exist* in the workspace.
+	 * Returns the objects that could not be saved because another object with the same name
+	 * was saved after the names were resolved. These objects' containers must be saved
+	 * individually via saveWorkspaceObject(), which handles the race.
+	 */
+	private List<ObjectVersions> saveWorkspaceObjects(
+			final ResolvedWorkspaceID wsid,
+			final List<ObjectVersions> objects,
+			final Date saved)
+			throws WorkspaceCommunicationException {
+		if (objects.isEmpty()) {
+			return Collections.emptyList();
+		}
+		final List<WriteModel<Document>> inserts = new LinkedList<>();
+		for (final ObjectVersions o: objects) {
+			final Document dbo = newObjectDocument(wsid, o.objectid, o.name);
+			dbo.put(Fields.OBJ_VCNT, o.packages.size());
+			dbo.put(Fields.OBJ_REFCOUNTS, zeroRefCounts(o.packages.size()));
+			dbo.put(Fields.OBJ_MODDATE, saved);
+			dbo.put(Fields.OBJ_HIDE, o.isHidden());
+			inserts.add(new InsertOneModel<>(dbo));
+		}
+		final List<ObjectVersions> raced = new LinkedList<>();
+		try {
+			// unordered so that a name race only affects the object with the name
+			wsmongo.getCollection(COL_WORKSPACE_OBJS).bulkWrite(
+					inserts, new BulkWriteOptions().ordered(false));
+		} catch (MongoBulkWriteException mbwe) {
+			if (mbwe.getWriteConcernError() != null) {
+				throw new WorkspaceCommunicationException(ERR_DB_COMM, mbwe);
+			}
+			for (final BulkWriteError err: mbwe.getWriteErrors()) {
+				if (!err.getCategory().equals(ErrorCategory.DUPLICATE_KEY)) {
+					throw new WorkspaceCommunicationException(ERR_DB_COMM, mbwe);
+				}
+				//TODO BUG if id dupe throw exception. Can't actually happen unless bug in code though.
+				raced.add(objects.get(err.getIndex()));
+			}
+		} catch (MongoException me) {
+			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
+		}
+		return raced;
+	}
+
+	/* The versions of a single object to be saved in a saveObjects() call, in the input order.
+	 * If the object is new, the versions are allocated when the object is created, otherwise
+	 * the versions are allocated by incrementing the object's version count.
+	 */
+	private static class ObjectVersions {
+		
+		private long objectid;
+		private final String name; // null for pre-existing objects
+		private final List<ObjectSavePackage> packages = new LinkedList<>();
+		private int firstVersion = 1;
+		
+		private ObjectVersions(final long objectid, final String name) {
+			this.objectid = objectid;
+			this.name = name;
+		}
+		
+		// the last version saved determines whether the object is hidden
+		private boolean isHidden() {
+			return packages.get(packages.size() - 1).wo.isHidden();
+		}
+	}
+
 	private static String getObjectErrorId(final ObjectIDNoWSNoVer oi, final int objcount) {
 		return "#" + objcount + ", " + oi.getIdentifierString();
 	}
@@ -1930,9 +2401,13 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 	@Override
 	public List<ObjectInformation> saveObjects(final WorkspaceUser user,
 			final ResolvedWorkspaceID rwsi,
-			final List<ResolvedSaveObject> objects)
+			final List<ResolvedSaveObject> objects,
+			final int backendScaling)
 			throws WorkspaceCommunicationException,
 			NoSuchObjectException {
+		if (backendScaling < 1) {
+			throw new IllegalArgumentException("backendScaling must be > 0");
+		}
 		//TODO CODE break this up
 		//this method must maintain the order of the objects
 
@@ -1978,45 +2453,101 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		}
 		//at this point everything should be ready to save, only comm errors
 		//can stop us now, the world is doomed
-		saveData(rwsi, packages);
+		saveData(rwsi, packages, backendScaling);
 		saveProvenance(packages);
 		updateReferenceCounts(packages);
-		long newid = incrementWorkspaceCounter(rwsi, newobjects);
-		/*  alternate impl: 1) make all save objects 2) increment all version
-		 *  counters 3) batch save versions
-		 *  This probably won't help much. Firstly, saving the same object
-		 *  multiple times (e.g. save over the same object in the same
-		 *  saveObjects call) is going to be a rare op - who wants to do that?
-		 *  Hence batching up the version increments is probably not going to
-		 *  help much.
-		 *  Secondly, the write lock is on a per document basis, so batching
-		 *  writes has no effect on write locking.
-		 *  That means that the gain from batching writes is removal of the
-		 *  flight time to/from the server between each object. This may
-		 *  be significant for many small objects, but is probably
-		 *  insignificant for a few objects, or many large objects.
-		 *  Summary: probably not worth the trouble and increase in code
-		 *  complexity.
-		 */
-		final List<ObjectInformation> ret = new ArrayList<ObjectInformation>();
-		final Map<String, Long> seenNames = new HashMap<String, Long>();
+		final long newid = incrementWorkspaceCounter(rwsi, newobjects);
+		final List<ObjectInformation> ret = saveObjectPackages(user, rwsi, packages, objIDs, newid);
+		updateWorkspaceModifiedDate(rwsi);
+		return ret;
+	}
+
+	/* Saves the versions for the packages, batching the writes so the number of round trips
+	 * to the database doesn't depend on the number of new objects:
+	 * 1) create all the new objects, with their version counts and reference counts already
+	 *    allocated, in one bulk write
+	 * 2) increment the version count of each pre-existing object, once per object rather than
+	 *    once per version
+	 * 3) save all the versions in one insert
+	 * newid is the first of the object IDs allocated for new objects.
+	 */
+	private List<ObjectInformation> saveObjectPackages(
+			final WorkspaceUser user,
+			final ResolvedWorkspaceID rwsi,
+			final List<ObjectSavePackage> packages,
+			final Map<ObjectIDNoWSNoVer, ResolvedObjectID> objIDs,
+			long newid)
+			throws WorkspaceCommunicationException {
+		final List<ObjectVersions> newObjects = new LinkedList<>();
+		final List<ObjectVersions> extantObjects = new LinkedList<>();
+		final Map<Long, ObjectVersions> idToVers = new HashMap<>();
+		final Map<String, ObjectVersions> newNameToVers = new HashMap<>();
+		final Map<ObjectSavePackage, ObjectVersions> pkgToVers = new HashMap<>();
 		for (final ObjectSavePackage p: packages) {
 			final ObjectIDNoWSNoVer oi = p.wo.getObjectIdentifier();
+			final Long id;
 			if (oi.getId().isPresent()) { //confirmed ok id
-				ret.add(saveObjectVersion(user, rwsi, oi.getId().get(), p));
+				id = oi.getId().get();
 			} else if (objIDs.get(oi) != null) {//given name translated to id
-				ret.add(saveObjectVersion(user, rwsi, objIDs.get(oi).getId(), p));
-			} else if (seenNames.containsKey(oi.getName().get())) {
+				id = objIDs.get(oi).getId();
+			} else {
+				id = null;
+			}
+			final ObjectVersions vers;
+			if (id != null) {
+				if (!idToVers.containsKey(id)) {
+					idToVers.put(id, new ObjectVersions(id, null));
+					extantObjects.add(idToVers.get(id));
+				}
+				vers = idToVers.get(id);
+			} else if (newNameToVers.containsKey(oi.getName().get())) {
 				//we've already generated an id for this name
-				ret.add(saveObjectVersion(user, rwsi, seenNames.get(oi.getName().get()), p));
+				vers = newNameToVers.get(oi.getName().get());
 			} else {//new name, need to generate new id
-				final IDName obj = saveWorkspaceObject(rwsi, newid++, oi.getName().get());
+				vers = new ObjectVersions(newid++, oi.getName().get());
+				newNameToVers.put(vers.name, vers);
+				newObjects.add(vers);
+			}
+			vers.packages.add(p);
+			pkgToVers.put(p, vers);
+		}
+		final Date saved = new Date();
+		for (final ObjectVersions o: saveWorkspaceObjects(rwsi, newObjects, saved)) {
+			// someone saved an object with the same name since we resolved the names, so
+			// fall back to saving the container individually, which will usually resolve to
+			// the other object
+			final IDName obj = saveWorkspaceObject(rwsi, o.objectid, o.name);
+			o.objectid = obj.id;
+			for (final ObjectSavePackage p: o.packages) {
 				p.name = obj.name;
-				seenNames.put(obj.name, obj.id);
-				ret.add(saveObjectVersion(user, rwsi, obj.id, p));
 			}
+			extantObjects.add(o);
+		}
+		for (final ObjectVersions o: extantObjects) {
+			o.firstVersion = incrementVersionCount(
+					rwsi, o.objectid, o.packages.size(), o.isHidden(), saved);
+		}
+		//this method must maintain the order of the objects
+		final List<Map<String, Object>> versions = new ArrayList<>();
+		final List<Document> dbo = new LinkedList<>();
+		for (final ObjectSavePackage p: packages) {
+			final ObjectVersions o = pkgToVers.get(p);
+			final Map<String, Object> version = buildVersion(user, p);
+			dbo.add(toVersionDocument(rwsi, o.objectid, o.firstVersion++, saved, version));
+			versions.add(version);
+		}
+		insertVersions(dbo);
+		latest.update(dbo);
+		if (nameCache != null) {
+			for (final ObjectVersions o: new HashSet<>(pkgToVers.values())) {
+				nameCache.update(rwsi.getID(), o.packages.get(0).name, o.isHidden());
+			}
+		}
+		final List<ObjectInformation> ret = new ArrayList<ObjectInformation>();
+		for (int i = 0; i < packages.size(); i++) {
+			ret.add(buildObjectInfo(user, rwsi, pkgToVers.get(packages.get(i)).objectid,
+					packages.get(i), versions.get(i)));
 		}
-		updateWorkspaceModifiedDate(rwsi);
 		return ret;
 	}
 
@@ -2130,195 +2661,96 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		return ret;
 	}
 
-	private static class VerCount {
-		final public int ver;
-		final public int count;
-
-		public VerCount (final int ver, final int count) {
-			this.ver = ver;
-			this.count = count;
-		}
-
-		@Override
-		public String toString() {
-			return "VerCount [ver=" + ver + ", count=" + count + "]";
-		}
-
-		@Override
-		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + count;
-			result = prime * result + ver;
-			return result;
-		}
-
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			VerCount other = (VerCount) obj;
-			if (count != other.count)
-				return false;
-			if (ver != other.ver)
-				return false;
-			return true;
-		}
-	}
-
 	private void updateReferenceCounts(final List<ObjectSavePackage> packages)
 			throws WorkspaceCommunicationException {
 		//TODO GC when garbage collection working much more testing of these methods
-		final Map<Long, Map<Long, Map<Integer, Counter>>> refcounts =
-				countReferences(packages);
-		/* since the version numbers are probably highly skewed towards 1 and
-		 * the reference counts are also highly skewed towards 1 we can
-		 * probably minimize the number of updates by running one update
-		 * per version/count combination
-		 */
-		updateReferenceCounts(refcounts);
-	}
-
-	private void updateReferenceCountsForVersions(
-			final List<Map<String, Object>> versions)
-			throws WorkspaceCommunicationException {
-		//TODO GC when garbage collection working much more testing of these methods
-		final Map<Long, Map<Long, Map<Integer, Counter>>> refcounts =
-				countReferencesForVersions(versions);
-		/* since the version numbers are probably highly skewed towards 1 and
-		 * the reference counts are also highly skewed towards 1 we can
-		 * probably minimize the number of updates by running one update
-		 * per version/count combination
-		 */
-		updateReferenceCounts(refcounts);
-	}
-
-	private void updateReferenceCounts(
-			final Map<Long, Map<Long, Map<Integer, Counter>>> refcounts)
-			throws WorkspaceCommunicationException {
-		final Map<VerCount, Map<Long, List<Long>>> queries =
-				new HashMap<VerCount, Map<Long,List<Long>>>();
-		for (final Long ws: refcounts.keySet()) {
-			for (final Long obj: refcounts.get(ws).keySet()) {
-				for (final Integer ver: refcounts.get(ws).get(obj).keySet()) {
-					final VerCount vc = new VerCount(ver,
-							refcounts.get(ws).get(obj).get(ver).getValue());
-					if (!queries.containsKey(vc)) {
-						queries.put(vc, new HashMap<Long, List<Long>>());
-					}
-					if (!queries.get(vc).containsKey(ws)) {
-						queries.get(vc).put(ws, new LinkedList<Long>());
-					}
-					queries.get(vc).get(ws).add(obj);
-				}
-			}
-		}
-		for (final VerCount vc: queries.keySet()) {
-			updateReferenceCounts(vc, queries.get(vc));
-		}
-	}
-
-	private void updateReferenceCounts(final VerCount vc,
-			final Map<Long, List<Long>> wsToObjs)
-			throws WorkspaceCommunicationException {
-		final Document update = new Document("$inc",
-				new Document(Fields.OBJ_REFCOUNTS + "." + (vc.ver - 1),
-						vc.count));
-		final List<Document> orquery = new LinkedList<>();
-		for (final Long ws: wsToObjs.keySet()) {
-			final Document query = new Document(Fields.OBJ_WS_ID, ws);
-			query.put(Fields.OBJ_ID, new Document("$in", wsToObjs.get(ws)));
-			orquery.add(query);
-		}
-		try {
-			wsmongo.getCollection(COL_WORKSPACE_OBJS).updateMany(
-					new Document("$or", orquery), update);
-		} catch (MongoException me) {
-			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
-		}
-	}
-
-	private Map<Long, Map<Long, Map<Integer, Counter>>> countReferences(
-			final List<ObjectSavePackage> packages) {
-		final Map<Long, Map<Long, Map<Integer, Counter>>> refcounts =
-				new HashMap<Long, Map<Long,Map<Integer,Counter>>>();
+		final ReferenceCounter counter = new ReferenceCounter(packages.size());
 		for (final ObjectSavePackage p: packages) {
 			//these were checked to be MongoReferences in saveObjectBuildPackages
 			final Set<Reference> refs = new HashSet<Reference>();
 			refs.addAll(p.wo.getRefs());
 			refs.addAll(p.wo.getProvRefs());
-			countReferences(refcounts, refs);
+			for (final Reference r: refs) {
+				counter.add(r);
+			}
 		}
-		return refcounts;
+		updateReferenceCounts(counter);
 	}
 
-	private Map<Long, Map<Long, Map<Integer, Counter>>> countReferencesForVersions(
-			final List<Map<String, Object>> versions) {
-		final Map<Long, Map<Long, Map<Integer, Counter>>> refcounts =
-				new HashMap<Long, Map<Long,Map<Integer,Counter>>>();
+	private void updateReferenceCountsForVersions(
+			final List<Map<String, Object>> versions)
+			throws WorkspaceCommunicationException {
+		//TODO GC when garbage collection working much more testing of these methods
+		final ReferenceCounter counter = new ReferenceCounter(versions.size());
 		for (final Map<String, Object> p: versions) {
-			//these were checked to be MongoReferences in saveObjectBuildPackages
-			final Set<Reference> refs = new HashSet<Reference>();
 			@SuppressWarnings("unchecked")
 			final List<String> objrefs = (List<String>) p.get(Fields.VER_REF);
 			@SuppressWarnings("unchecked")
 			final List<String> provrefs = (List<String>) p.get(Fields.VER_PROVREF);
-//			objrefs.addAll(provrefs); //DON'T DO THIS YOU MORON
-			for (final String s: objrefs) {
-				refs.add(new Reference(s));
-			}
-			for (final String s: provrefs) {
-				refs.add(new Reference(s));
+			// each version counts a referenced object once, even if it's in both lists
+			final Set<String> refs = new HashSet<>(objrefs);
+			refs.addAll(provrefs);
+			for (final String s: refs) {
+				counter.add(s);
 			}
-			countReferences(refcounts, refs);
 		}
-		return refcounts;
+		updateReferenceCounts(counter);
 	}
 
-	private void countReferences(
-			final Map<Long, Map<Long, Map<Integer, Counter>>> refcounts,
-			final Set<Reference> refs) {
-		for (final Reference r: refs) {
-			if (!refcounts.containsKey(r.getWorkspaceID())) {
-				refcounts.put(r.getWorkspaceID(),
-						new HashMap<Long, Map<Integer, Counter>>());
-			}
-			if (!refcounts.get(r.getWorkspaceID())
-					.containsKey(r.getObjectID())) {
-				refcounts.get(r.getWorkspaceID()).put(r.getObjectID(),
-						new HashMap<Integer, Counter>());
-			}
-			if (!refcounts.get(r.getWorkspaceID()).get(r.getObjectID())
-					.containsKey(r.getVersion())) {
-				refcounts.get(r.getWorkspaceID()).get(r.getObjectID())
-					.put(r.getVersion(), new Counter());
-			}
-			refcounts.get(r.getWorkspaceID()).get(r.getObjectID())
-				.get(r.getVersion()).increment();
+	private void updateReferenceCounts(final ReferenceCounter counter)
+			throws WorkspaceCommunicationException {
+		if (counter.size() == 0) {
+			return;
+		}
+		try {
+			wsmongo.getCollection(COL_WORKSPACE_OBJS).bulkWrite(
+					counter.toUpdates(), new BulkWriteOptions().ordered(false));
+		} catch (MongoException me) {
+			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
 		}
 	}
 
 	private void saveData(
 			final ResolvedWorkspaceID workspaceid,
-			final List<ObjectSavePackage> data)
+			final List<ObjectSavePackage> data,
+			final int backendScaling)
 			throws WorkspaceCommunicationException {
 		try {
-			for (ObjectSavePackage p: data) {
-				final String md5 = p.wo.getRep().getMD5().getMD5();
-				try {
-					blob.saveBlob(new MD5(md5), p.wo.getRep(), true); //always sorted in 0.2.0+
-				} catch (BlobStoreCommunicationException e) {
-					throw new WorkspaceCommunicationException(
-							e.getLocalizedMessage(), e);
-				} catch (BlobStoreAuthorizationException e) {
+			// identical data only needs to be saved once, and saving the same data
+			// concurrently would just make the blob store deal with the race
+			final Map<String, ObjectSavePackage> chksum2pkg = new LinkedHashMap<>();
+			for (final ObjectSavePackage p: data) {
+				chksum2pkg.putIfAbsent(p.wo.getRep().getMD5().getMD5(), p);
+			}
+			final AtomicBoolean failed = new AtomicBoolean(false);
+			final List<BackendSaveCallable> callables = chksum2pkg.entrySet().stream()
+					.map(e -> new BackendSaveCallable(
+							blob, e.getKey(), e.getValue().wo.getRep(), failed))
+					.collect(Collectors.toList());
+			if (callables.isEmpty()) {
+				return;
+			}
+			try {
+				uploadData(callables, backendScaling);
+			} catch (ExecutionException e) { // just throw the 1st exception encountered
+				final Throwable cause = e.getCause();
+				if (cause instanceof BlobStoreCommunicationException) {
+					throw new WorkspaceCommunicationException(cause.getLocalizedMessage(), cause);
+				} else if (cause instanceof BlobStoreAuthorizationException) {
 					throw new WorkspaceCommunicationException(
 							"Authorization error communicating with the backend storage system",
-							e);
+							cause);
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				} else {
+					throw new RuntimeException("Unexpected error", e);
 				}
+			} catch (InterruptedException e) {
+				// no easy way to test this AFAICT
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while saving object data", e);
 			}
 		} finally {
 			for (final ObjectSavePackage o: data) {
@@ -2332,6 +2764,51 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		}
 	}
 
+	/* Runs the uploads in the calling thread and up to backendScaling - 1 upload threads.
+	 * Returns only once all the uploads are complete, so no upload is still reading a temp file
+	 * when the files are destroyed. Once an upload fails, the uploads that haven't started yet
+	 * are skipped.
+	 */
+	private void uploadData(final List<BackendSaveCallable> callables, final int backendScaling)
+			throws ExecutionException, InterruptedException {
+		ParallelTasks.run(callables, uploads, backendScaling);
+	}
+
+	private static class BackendSaveCallable implements Callable<Void> {
+
+		private final BlobStore blob;
+		private final String chksum;
+		private final Restreamable data;
+		private final AtomicBoolean failed;
+
+		private BackendSaveCallable(
+				final BlobStore blob,
+				final String chksum,
+				final Restreamable data,
+				final AtomicBoolean failed) {
+			this.blob = blob;
+			this.chksum = chksum;
+			this.data = data;
+			this.failed = failed;
+		}
+
+		@Override
+		public Void call() throws BlobStoreAuthorizationException,
+				BlobStoreCommunicationException {
+			if (failed.get()) {
+				return null; // the save call is going to fail anyway
+			}
+			try {
+				blob.saveBlob(new MD5(chksum), data, true); //always sorted in 0.2.0+
+			} catch (BlobStoreAuthorizationException | BlobStoreCommunicationException |
+					RuntimeException | Error e) {
+				failed.set(true);
+				throw e;
+			}
+			return null;
+		}
+	}
+
 	private static final Set<String> FLDS_VER_GET_OBJECT = newHashSet(
 			Fields.VER_VER, Fields.VER_META, Fields.VER_ADMINMETA,
 			Fields.VER_TYPE_NAME, Fields.VER_TYPE_MAJOR_VERSION, Fields.VER_TYPE_MINOR_VERSION,
@@ -2414,11 +2891,10 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		final List<BackendFileCallable> callables = chksum2obj.entrySet().stream()
 				.map(e -> new BackendFileCallable(blob, e.getKey(), dataManager, e.getValue()))
 				.collect(Collectors.toList());
-		final ExecutorService eserv = Executors.newFixedThreadPool(
-				Math.min(backendScaling, chksum2obj.size()));
 		try {
-			final List<Future<Void>> futures = eserv.invokeAll(
-					callables, OBJECT_DATA_FETCH_TIMEOUT_SEC, TimeUnit.SECONDS);
+			// the scheduler cancels any retrievals that haven't completed by the timeout
+			final List<Future<Void>> futures = retrievalScheduler.invokeAll(
+					callables, backendScaling, OBJECT_DATA_FETCH_TIMEOUT_SEC, TimeUnit.SECONDS);
 			for (final Future<Void> f: futures) {
 				f.get(); // trigger exceptions
 			}
@@ -2450,8 +2926,6 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 			// no easy way to test this AFAICT
 			cleanUpTempObjectFiles(objects, callables);
 			throw e;
-		} finally {
-			eserv.shutdownNow();
 		}
 	}
 
@@ -2617,9 +3091,21 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 	public Map<Reference, ObjectReferenceSet> getObjectIncomingReferences(
 			final Set<Reference> refs)
 			throws WorkspaceCommunicationException {
+		final Map<Reference, ObjectReferenceSet> ret = new HashMap<>();
 		if (refs.isEmpty()) {
-			return new HashMap<>();
+			return ret;
+		}
+		final Map<Reference, Set<Reference>> incoming = refCache == null ?
+				queryIncomingReferences(refs) :
+				refCache.getIncomingReferences(refs, this::queryIncomingReferences);
+		for (final Reference r: refs) {
+			ret.put(r, new ObjectReferenceSet(r, incoming.get(r), true));
 		}
+		return ret;
+	}
+
+	private Map<Reference, Set<Reference>> queryIncomingReferences(final Set<Reference> refs)
+			throws WorkspaceCommunicationException {
 		//TODO MEM add limit for number of refs returned (probably 50K, but make a method param) & throw exception if more than that returned
 		final List<String> refStrings = new LinkedList<>();
 		for (final Reference r: refs) {
@@ -2634,7 +3120,7 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		return buildReferenceToReferencesMap(refs, vers);
 	}
 
-	private Map<Reference, ObjectReferenceSet> buildReferenceToReferencesMap(
+	private Map<Reference, Set<Reference>> buildReferenceToReferencesMap(
 			final Set<Reference> refs,
 			final List<Map<String, Object>> vers) {
 		final Map<Reference, Set<Reference>> refToRefs = new HashMap<Reference, Set<Reference>>();
@@ -2664,11 +3150,7 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 			}
 
 		}
-		final Map<Reference, ObjectReferenceSet> ret = new HashMap<>();
-		for (final Reference r: refToRefs.keySet()) {
-			ret.put(r, new ObjectReferenceSet(r, refToRefs.get(r), true));
-		}
-		return ret;
+		return refToRefs;
 	}
 
 	private static final Set<String> FLDS_GETREFOBJ = newHashSet(
@@ -2706,7 +3188,7 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 				new Document(Fields.VER_PROVREF, new Document("$in", ref2id.keySet()))));
 		final List<Map<String, Object>> vers = query.queryCollection(
 				COL_WORKSPACE_VERS, q, FLDS_GETREFOBJ);
-		final Map<Map<String, Object>, ObjectInformation> voi = objutils.generateObjectInfo(
+		final Map<Map<String, Object>, ObjectInformation> voi = objutils.generateObjectInfoFromMaps(
 				perms, vers, true, false, false, true, false);
 		final Map<ObjectIDResolvedWS, Set<ObjectInformation>> ret = new HashMap<>();
 		for (final ObjectIDResolvedWS o: objs) {
@@ -2946,8 +3428,27 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		for (final ResolvedWorkspaceID rwsid: rwsis) {
 			wsIDtoWS.put(rwsid.getID(), rwsid);
 		}
+		final Map<Long, List<String>> names;
+		if (nameCache == null) {
+			names = queryNamesByPrefix(wsIDtoWS.keySet(), prefix, includeHidden, limit);
+		} else {
+			names = nameCache.getNamesByPrefix(wsIDtoWS.keySet(), prefix, includeHidden, limit,
+					this::loadObjectNames, this::queryNamesByPrefix);
+		}
+		for (final Entry<Long, List<String>> e: names.entrySet()) {
+			ret.put(wsIDtoWS.get(e.getKey()), e.getValue());
+		}
+		return ret;
+	}
+
+	private Map<Long, List<String>> queryNamesByPrefix(
+			final Set<Long> wsids,
+			final String prefix,
+			final boolean includeHidden,
+			final int limit)
+			throws WorkspaceCommunicationException {
 		final Document q = new Document(Fields.OBJ_DEL, false);
-		q.put(Fields.OBJ_WS_ID, new Document("$in", wsIDtoWS.keySet()));
+		q.put(Fields.OBJ_WS_ID, new Document("$in", wsids));
 		if (!prefix.isEmpty()) {
 			// escape regex chars
 			q.put(Fields.OBJ_NAME, new Document("$regex", "^" + Pattern.quote(prefix)));
@@ -2956,16 +3457,47 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 			q.put(Fields.OBJ_HIDE, false);
 		}
 
+		final Map<Long, List<String>> ret = new HashMap<>();
 		final List<Map<String, Object>> names = query.queryCollection(
 				COL_WORKSPACE_OBJS, q, FLDS_NAME_PREFIX, limit);
 		for (final Map<String, Object> o: names) {
 			final Long wsid = (Long) o.get(Fields.OBJ_WS_ID);
 			final String name = (String) o.get(Fields.OBJ_NAME);
-			final ResolvedWorkspaceID rwsid = wsIDtoWS.get(wsid);
-			if (!ret.containsKey(rwsid)) {
-				ret.put(rwsid, new LinkedList<String>());
+			if (!ret.containsKey(wsid)) {
+				ret.put(wsid, new LinkedList<String>());
+			}
+			ret.get(wsid).add(name);
+		}
+		return ret;
+	}
+
+	private Map<Long, Map<String, Boolean>> loadObjectNames(
+			final Set<Long> wsids,
+			final int maxNamesPerWorkspace)
+			throws WorkspaceCommunicationException {
+		final Document proj = new Document(Fields.OBJ_NAME, 1).append(Fields.OBJ_HIDE, 1)
+				.append(Fields.MONGO_ID, 0);
+		final Map<Long, Map<String, Boolean>> ret = new HashMap<>();
+		// query each workspace separately so the names read from large workspaces are limited
+		for (final Long wsid: wsids) {
+			final Document q = new Document(Fields.OBJ_WS_ID, wsid)
+					.append(Fields.OBJ_DEL, false);
+			final Map<String, Boolean> names = new HashMap<>();
+			// one more name than the maximum shows the workspace is too large to cache
+			try (final MongoCursor<Document> cur = wsmongo.getCollection(COL_WORKSPACE_OBJS)
+					.find(q).projection(proj).limit(maxNamesPerWorkspace + 1).iterator()) {
+				while (cur.hasNext()) {
+					final Document o = cur.next();
+					// anything other than false is hidden, matching the query above
+					names.put(o.getString(Fields.OBJ_NAME),
+							!Boolean.FALSE.equals(o.get(Fields.OBJ_HIDE)));
+				}
+			} catch (MongoException me) {
+				throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
+			}
+			if (!names.isEmpty()) {
+				ret.put(wsid, names);
 			}
-			ret.get(rwsid).add(name);
 		}
 		return ret;
 	}
@@ -2974,8 +3506,21 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 	public List<ObjectInformation> getObjectInformation(
 			final ResolvedListObjectParameters params)
 			throws WorkspaceCommunicationException {
-		return new ObjectLister(wsmongo.getCollection(COL_WORKSPACE_VERS), objutils)
-				.filter(params);
+		return getObjectLister().filter(params);
+	}
+
+	@Override
+	public CloseableIterator<ObjectInformation> iterateObjectInformation(
+			final ResolvedListObjectParameters params)
+			throws WorkspaceCommunicationException {
+		return getObjectLister().iterate(params);
+	}
+
+	private ObjectLister getObjectLister() {
+		final MongoCollection<Document> vers = RecordCodecs.withRecordCodecs(
+				wsmongo.getCollection(COL_WORKSPACE_VERS));
+		return latestComplete ?
+				new ObjectLister(vers, latest, objutils) : new ObjectLister(vers, objutils);
 	}
 
 	private static final Set<String> FLDS_VER_OBJ_HIST = newHashSet(
@@ -3024,10 +3569,8 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		} else {
 			fields = FLDS_VER_META;
 		}
-		final Map<ResolvedObjectID, Map<String, Object>> vers =
-				queryVersions(
-						new HashSet<ResolvedObjectID>(oids.values()),
-						fields, !exceptIfMissing);
+		final Map<ResolvedObjectID, VersionRecord> vers = queryVersionRecords(
+				new HashSet<ResolvedObjectID>(oids.values()), fields, !exceptIfMissing);
 		final Map<ObjectIDResolvedWS, ObjectInformation> ret =
 				new HashMap<ObjectIDResolvedWS, ObjectInformation>();
 		for (ObjectIDResolvedWS o: objectIDs) {
@@ -3150,8 +3693,23 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 			final Set<String> fields,
 			boolean ignoreMissing)
 			throws WorkspaceCommunicationException, NoSuchObjectException {
-		final Map<ResolvedObjectID, Map<String, Object>> vers =
-				query.queryVersions(objectIds, fields);
+		return checkVersionsExist(objectIds, query.queryVersions(objectIds, fields), ignoreMissing);
+	}
+
+	private Map<ResolvedObjectID, VersionRecord> queryVersionRecords(
+			final Set<ResolvedObjectID> objectIds,
+			final Set<String> fields,
+			boolean ignoreMissing)
+			throws WorkspaceCommunicationException, NoSuchObjectException {
+		return checkVersionsExist(
+				objectIds, query.queryVersionRecords(objectIds, fields), ignoreMissing);
+	}
+
+	private <T> Map<ResolvedObjectID, T> checkVersionsExist(
+			final Set<ResolvedObjectID> objectIds,
+			final Map<ResolvedObjectID, T> vers,
+			final boolean ignoreMissing)
+			throws NoSuchObjectException {
 		if (ignoreMissing) {
 			return vers;
 		}
@@ -3221,10 +3779,16 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 	@Override
 	public Map<Reference, Boolean> getObjectExistsRef(final Set<Reference> refs)
 			throws WorkspaceCommunicationException {
-		final Map<Reference, Boolean> ret = new HashMap<>();
 		if (refs.isEmpty()) {
-			return ret;
+			return new HashMap<>();
 		}
+		return refCache == null ? queryObjectExistsRef(refs) :
+				refCache.getExists(refs, this::queryObjectExistsRef);
+	}
+
+	private Map<Reference, Boolean> queryObjectExistsRef(final Set<Reference> refs)
+			throws WorkspaceCommunicationException {
+		final Map<Reference, Boolean> ret = new HashMap<>();
 		final Set<ObjectIDResolvedWSNoVer> objs = new HashSet<>();
 		for (final Reference r: refs) {
 			// this is a bit of a hack
@@ -3328,6 +3892,10 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		} catch (MongoException me) {
 			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
 		}
+		latest.copyObjectState(ws.getID(), objectIDs);
+		if (nameCache != null) {
+			nameCache.invalidate(ws.getID());
+		}
 		return now;
 	}
 
@@ -3383,6 +3951,13 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		} catch (MongoException me) {
 			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
 		}
+		latest.copyObjectState(ws.getID(), objectIDs);
+		if (refCache != null) {
+			refCache.invalidateExists(ws.getID(), objectIDs);
+		}
+		if (nameCache != null) {
+			nameCache.invalidate(ws.getID());
+		}
 		return time;
 	}
 
@@ -3405,6 +3980,9 @@ public class MongoWorkspaceDB implements WorkspaceDatabase {
 		} catch (MongoException me) {
 			throw new WorkspaceCommunicationException(ERR_DB_COMM, me);
 		}
+		if (wsCache != null) {
+			wsCache.invalidateAll();
+		}
 		if (!delete) {
 			//undelete object last so we yadda yadda
 			setObjectsDeleted(rwsi, new ArrayList<Long>(), delete);
@@ -5,13 +5,12 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.Function;
 
 import org.bson.Document;
 
@@ -37,17 +36,46 @@ public class ObjectInfoUtils {
 	//TODO TEST unit tests
 	//TODO JAVADOC
 	
-	private final QueryMethods query;
+	private final ObjectRecordFetcher fetcher;
 	
-	public ObjectInfoUtils(final QueryMethods query) {
-		this.query = requireNonNull(query, "query argument may not be null");
+	/** Create the utilities.
+	 * @param fetcher the strategy with which to fetch object records from the database.
+	 */
+	public ObjectInfoUtils(final ObjectRecordFetcher fetcher) {
+		this.fetcher = requireNonNull(fetcher, "fetcher");
 	}
 	
-	private static final Set<String> FLDS_LIST_OBJ = Stream.of(
-			Fields.OBJ_ID, Fields.OBJ_NAME, Fields.OBJ_DEL, Fields.OBJ_HIDE,
-			Fields.OBJ_VCNT, Fields.OBJ_WS_ID).collect(Collectors.toSet());
+	/** Generate object information for a list of object version records, filtering out
+	 * versions as specified by the parameters.
+	 * @param pset the permissions of the user for the workspaces containing the objects.
+	 * @param verobjs the version records.
+	 * @param includeHidden include hidden objects.
+	 * @param includeDeleted include deleted objects.
+	 * @param onlyIncludeDeleted include only deleted objects.
+	 * @param includeAllVers include all versions of the objects rather than the latest only.
+	 * @param asAdmin true if the user is acting as an administrator.
+	 * @return a mapping of version record to object information for the records that were not
+	 * filtered out.
+	 * @throws WorkspaceCommunicationException if a communication error with the database
+	 * occurs.
+	 */
+	public Map<VersionRecord, ObjectInformation> generateObjectInfo(
+			final PermissionSet pset,
+			final List<VersionRecord> verobjs,
+			final boolean includeHidden,
+			final boolean includeDeleted,
+			final boolean onlyIncludeDeleted,
+			final boolean includeAllVers,
+			final boolean asAdmin)
+			throws WorkspaceCommunicationException {
+		return generateObjectInfo(pset, verobjs, v -> v, includeHidden, includeDeleted,
+				onlyIncludeDeleted, includeAllVers, asAdmin);
+	}
 	
-	public Map<Map<String, Object>, ObjectInformation> generateObjectInfo(
+	/** As {@link #generateObjectInfo(PermissionSet, List, boolean, boolean, boolean, boolean,
+	 * boolean)}, but for object version documents that have been converted to maps.
+	 */
+	public Map<Map<String, Object>, ObjectInformation> generateObjectInfoFromMaps(
 			final PermissionSet pset,
 			final List<Map<String, Object>> verobjs,
 			final boolean includeHidden,
@@ -56,7 +84,21 @@ public class ObjectInfoUtils {
 			final boolean includeAllVers,
 			final boolean asAdmin)
 			throws WorkspaceCommunicationException {
-		final Map<Map<String, Object>, ObjectInformation> ret = new HashMap<>();
+		return generateObjectInfo(pset, verobjs, ObjectInfoUtils::toVersionRecord,
+				includeHidden, includeDeleted, onlyIncludeDeleted, includeAllVers, asAdmin);
+	}
+	
+	private <T> Map<T, ObjectInformation> generateObjectInfo(
+			final PermissionSet pset,
+			final List<T> verobjs,
+			final Function<T, VersionRecord> toRecord,
+			final boolean includeHidden,
+			final boolean includeDeleted,
+			final boolean onlyIncludeDeleted,
+			final boolean includeAllVers,
+			final boolean asAdmin)
+			throws WorkspaceCommunicationException {
+		final Map<T, ObjectInformation> ret = new HashMap<>();
 		if (verobjs.isEmpty()) {
 			return ret;
 		}
@@ -64,32 +106,24 @@ public class ObjectInfoUtils {
 		for (final ResolvedWorkspaceID rwsi: pset.getWorkspaces()) {
 			ids.put(rwsi.getID(), rwsi);
 		}
-		final Map<Long, Set<Long>> verdata = getObjectIDsFromVersions(verobjs);
-		//TODO PERFORMANCE This $or query might be better as multiple individual queries, test
-		// e.g. one workspace per query
-		final List<Document> orquery = new LinkedList<>();
-		for (final Long wsid: verdata.keySet()) {
-			final Document query = new Document(Fields.VER_WS_ID, wsid);
-			query.put(Fields.VER_ID, new Document("$in", verdata.get(wsid)));
-			orquery.add(query);
+		final List<VersionRecord> records = new ArrayList<>(verobjs.size());
+		for (final T vo: verobjs) {
+			records.add(toRecord.apply(vo));
 		}
-		final Document objq = new Document("$or", orquery);
-		//could include / exclude hidden and deleted objects here? Given reports are hidden
-		// and a large chunk of the objects might make sense
+		final Map<Long, Set<Long>> verdata = getObjectIDsFromVersions(records);
 		//we're querying with known versions, so there's no need to exclude
 		//workspace objects with 0 versions
-		final Map<Long, Map<Long, Map<String, Object>>> objdata =
-				organizeObjData(query.queryCollection(
-						query.getObjectCollection(), objq, FLDS_LIST_OBJ));
-		for (final Map<String, Object> vo: verobjs) {
-			final long wsid = (Long) vo.get(Fields.VER_WS_ID);
-			final long id = (Long) vo.get(Fields.VER_ID);
-			final int ver = (Integer) vo.get(Fields.VER_VER);
-			final Map<String, Object> obj = objdata.get(wsid).get(id);
-			final int lastver = (Integer) obj.get(Fields.OBJ_VCNT);
+		final Map<Long, Map<Long, ObjectRecord>> objdata =
+				organizeObjData(fetcher.fetch(verdata));
+		final Iterator<T> voiter = verobjs.iterator();
+		for (final VersionRecord vr: records) {
+			final T vo = voiter.next();
+			final long wsid = vr.getWorkspaceID();
+			final long id = vr.getObjectID();
+			final ObjectRecord obj = objdata.get(wsid).get(id);
 			final ResolvedWorkspaceID rwsi = ids.get(wsid);
-			boolean isDeleted = (Boolean) obj.get(Fields.OBJ_DEL);
-			if (!includeAllVers && lastver != ver) {
+			final boolean isDeleted = obj.isDeleted();
+			if (!includeAllVers && obj.getVersionCount() != vr.getVersion()) {
 				/* this is tricky. As is, if there's a failure between incrementing
 				 * an object ver count and saving the object version no latest
 				 * ver will be listed. On the other hand, if we just take
@@ -101,13 +135,12 @@ public class ObjectInfoUtils {
 				 */
 				continue;
 			}
-			if ((Boolean) obj.get(Fields.OBJ_HIDE) && !includeHidden) {
+			if (obj.isHidden() && !includeHidden) {
 				continue;
 			}
 			if (onlyIncludeDeleted) {
 				if (isDeleted && (asAdmin || pset.hasPermission(rwsi, Permission.WRITE))) {
-					ret.put(vo, generateObjectInfo(rwsi, id,
-							(String) obj.get(Fields.OBJ_NAME), vo));
+					ret.put(vo, generateObjectInfo(rwsi, id, obj.getName(), vr));
 				}
 				continue;
 			}
@@ -115,7 +148,7 @@ public class ObjectInfoUtils {
 					(!asAdmin && !pset.hasPermission(rwsi, Permission.WRITE)))) {
 				continue;
 			}
-			ret.put(vo, generateObjectInfo(rwsi, id, (String) obj.get(Fields.OBJ_NAME), vo));
+			ret.put(vo, generateObjectInfo(rwsi, id, obj.getName(), vr));
 		}
 		return ret;
 	}
@@ -123,6 +156,12 @@ public class ObjectInfoUtils {
 	static ObjectInformation generateObjectInfo(
 			final ResolvedObjectID roi,
 			final Map<String, Object> ver) {
+		return generateObjectInfo(roi, toVersionRecord(ver));
+	}
+	
+	static ObjectInformation generateObjectInfo(
+			final ResolvedObjectID roi,
+			final VersionRecord ver) {
 		return generateObjectInfo(
 				roi.getWorkspaceIdentifier(),
 				roi.getId(),
@@ -134,35 +173,72 @@ public class ObjectInfoUtils {
 			final ResolvedWorkspaceID rwsi,
 			final long objid,
 			final String name,
-			// TODO CODE converting from Document to Map is stupid. Stop that
 			final Map<String, Object> ver) {
-		@SuppressWarnings("unchecked")
-		final List<Map<String, String>> meta =
-				(List<Map<String, String>>) ver.get(Fields.VER_META);
-		@SuppressWarnings("unchecked")
-		final List<Map<String, String>> adminmeta =
-				(List<Map<String, String>>) ver.get(Fields.VER_ADMINMETA);
+		return generateObjectInfo(rwsi, objid, name, toVersionRecord(ver));
+	}
+	
+	static ObjectInformation generateObjectInfo(
+			final ResolvedWorkspaceID rwsi,
+			final long objid,
+			final String name,
+			final VersionRecord ver) {
 		final AbsoluteTypeDefId type = new AbsoluteTypeDefId(
-				new TypeDefName((String) ver.get(Fields.VER_TYPE_NAME)),
-				(int) ver.get(Fields.VER_TYPE_MAJOR_VERSION),
-				(int) ver.get(Fields.VER_TYPE_MINOR_VERSION));
+				new TypeDefName(ver.getTypeName()),
+				ver.getTypeMajorVersion(),
+				ver.getTypeMinorVersion());
 		return ObjectInformation.getBuilder()
 				.withObjectID(objid)
 				.withObjectName(name)
 				.withType(type)
-				.withSavedDate((Date) ver.get(Fields.VER_SAVEDATE))
-				.withVersion((int) ver.get(Fields.VER_VER))
-				.withSavedBy(new WorkspaceUser((String) ver.get(Fields.VER_SAVEDBY)))
+				.withSavedDate(ver.getSavedDate())
+				.withVersion(ver.getVersion())
+				.withSavedBy(new WorkspaceUser(ver.getSavedBy()))
 				.withWorkspace(rwsi)
-				.withChecksum((String) ver.get(Fields.VER_CHKSUM))
-				.withSize((long) ver.get(Fields.VER_SIZE))
-				.withUserMetadata(
-					new UncheckedUserMetadata(metaMongoArrayToHash(meta)))
-				.withAdminUserMetadata(
-					new UncheckedUserMetadata(metaMongoArrayToHash(adminmeta)))
+				.withChecksum(ver.getChecksum())
+				.withSize(ver.getSize())
+				.withUserMetadata(new UncheckedUserMetadata(ver.getMetadata()))
+				.withAdminUserMetadata(new UncheckedUserMetadata(ver.getAdminMetadata()))
 				.build();
 	}
 	
+	/* Convert an object version document that has been converted to a map to a record.
+	 * Only used for code paths that need fields that aren't included in the record.
+	 */
+	static VersionRecord toVersionRecord(final Map<String, Object> ver) {
+		@SuppressWarnings("unchecked")
+		final List<Map<String, String>> meta =
+				(List<Map<String, String>>) ver.get(Fields.VER_META);
+		@SuppressWarnings("unchecked")
+		final List<Map<String, String>> adminmeta =
+				(List<Map<String, String>>) ver.get(Fields.VER_ADMINMETA);
+		final Date savedate = (Date) ver.get(Fields.VER_SAVEDATE);
+		final VersionRecord.Builder b = VersionRecord.getBuilder()
+				.withTypeName((String) ver.get(Fields.VER_TYPE_NAME))
+				.withSavedDate(savedate == null ? null : savedate.toInstant())
+				.withSavedBy((String) ver.get(Fields.VER_SAVEDBY))
+				.withChecksum((String) ver.get(Fields.VER_CHKSUM))
+				.withMetadata(metaMongoArrayToHash(meta))
+				.withAdminMetadata(metaMongoArrayToHash(adminmeta));
+		// the workspace and object IDs are not always included in the projection
+		if (ver.get(Fields.VER_WS_ID) != null) {
+			b.withWorkspaceID((Long) ver.get(Fields.VER_WS_ID));
+		}
+		if (ver.get(Fields.VER_ID) != null) {
+			b.withObjectID((Long) ver.get(Fields.VER_ID));
+		}
+		if (ver.get(Fields.VER_VER) != null) {
+			b.withVersion((int) ver.get(Fields.VER_VER));
+		}
+		if (ver.get(Fields.VER_TYPE_NAME) != null) {
+			b.withTypeMajorVersion((int) ver.get(Fields.VER_TYPE_MAJOR_VERSION))
+					.withTypeMinorVersion((int) ver.get(Fields.VER_TYPE_MINOR_VERSION));
+		}
+		if (ver.get(Fields.VER_SIZE) != null) {
+			b.withSize((long) ver.get(Fields.VER_SIZE));
+		}
+		return b.build();
+	}
+	
 	// TODO CODE not clear if this is still necessary with Document vs DBObject
 	static Map<String, String> metaMongoArrayToHash(
 			final List<? extends Object> meta) {
@@ -197,30 +273,49 @@ public class ObjectInfoUtils {
 		return meta;
 	}
 	
-	private Map<Long, Set<Long>> getObjectIDsFromVersions(
-			final List<Map<String, Object>> objs) {
+	/** Find version records that are older than the latest version of their object, for
+	 * example copies of the latest version that were not updated when a new version was saved.
+	 * @param verobjs the version records.
+	 * @return a mapping from each record that is not the latest version of its object to the
+	 * version count of the object.
+	 * @throws WorkspaceCommunicationException if a communication error with the database
+	 * occurs.
+	 */
+	public Map<VersionRecord, Integer> getOutdatedVersions(final List<VersionRecord> verobjs)
+			throws WorkspaceCommunicationException {
+		final Map<VersionRecord, Integer> ret = new HashMap<>();
+		if (verobjs.isEmpty()) {
+			return ret;
+		}
+		final Map<Long, Map<Long, ObjectRecord>> objdata =
+				organizeObjData(fetcher.fetch(getObjectIDsFromVersions(verobjs)));
+		for (final VersionRecord vr: verobjs) {
+			final ObjectRecord obj = objdata.get(vr.getWorkspaceID()).get(vr.getObjectID());
+			if (obj.getVersionCount() > vr.getVersion()) {
+				ret.put(vr, obj.getVersionCount());
+			}
+		}
+		return ret;
+	}
+	
+	private Map<Long, Set<Long>> getObjectIDsFromVersions(final List<VersionRecord> objs) {
 		final Map<Long, Set<Long>> ret = new HashMap<>();
-		for (final Map<String, Object> o: objs) {
-			final long wsid = (Long) o.get(Fields.VER_WS_ID);
-			final long objid = (Long) o.get(Fields.VER_ID);
-			if (!ret.containsKey(wsid)) {
-				ret.put(wsid, new HashSet<>());
+		for (final VersionRecord o: objs) {
+			if (!ret.containsKey(o.getWorkspaceID())) {
+				ret.put(o.getWorkspaceID(), new HashSet<>());
 			}
-			ret.get(wsid).add(objid);
+			ret.get(o.getWorkspaceID()).add(o.getObjectID());
 		}
 		return ret;
 	}
 	
-	private Map<Long, Map<Long, Map<String, Object>>> organizeObjData(
-			final List<Map<String, Object>> objs) {
-		final Map<Long, Map<Long, Map<String, Object>>> ret = new HashMap<>();
-		for (final Map<String, Object> o: objs) {
-			final long wsid = (Long) o.get(Fields.OBJ_WS_ID);
-			final long objid = (Long) o.get(Fields.OBJ_ID);
-			if (!ret.containsKey(wsid)) {
-				ret.put(wsid, new HashMap<>());
+	private Map<Long, Map<Long, ObjectRecord>> organizeObjData(final List<ObjectRecord> objs) {
+		final Map<Long, Map<Long, ObjectRecord>> ret = new HashMap<>();
+		for (final ObjectRecord o: objs) {
+			if (!ret.containsKey(o.getWorkspaceID())) {
+				ret.put(o.getWorkspaceID(), new HashMap<>());
 			}
-			ret.get(wsid).put(objid, o);
+			ret.get(o.getWorkspaceID()).put(o.getObjectID(), o);
 		}
 		return ret;
 	}
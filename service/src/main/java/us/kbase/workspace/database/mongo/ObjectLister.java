@@ -2,14 +2,20 @@ package us.kbase.workspace.database.mongo;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -22,10 +28,11 @@ import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 
 import us.kbase.typedobj.core.TypeDefId;
+import us.kbase.workspace.database.CloseableIterator;
 import us.kbase.workspace.database.ListObjectsParameters.ResolvedListObjectParameters;
 import us.kbase.workspace.database.ObjectInformation;
-import us.kbase.workspace.database.PermissionSet;
 import us.kbase.workspace.database.RefLimit;
+import us.kbase.workspace.database.exceptions.UncheckedWorkspaceCommunicationException;
 import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
 
 /** A helper class for listing workspace objects based on a set of filters. Depends
@@ -34,19 +41,69 @@ import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
 public class ObjectLister {
 	
 	private final MongoCollection<Document> verCol;
+	private final MongoCollection<Document> latestCol;
+	private final LatestVersions latest;
 	private final ObjectInfoUtils infoUtils;
 	
 	/** Create the lister.
-	 * @param verCol the MongoDB collection storing workspace object version information.
+	 * @param verCol the MongoDB collection storing workspace object version information. The
+	 * collection's codec registry must include a codec for {@link VersionRecord}s.
 	 * @param infoUtils an instance of the objects informational utilities class.
 	 */
 	public ObjectLister(
 			final MongoCollection<Document> verCol,
 			final ObjectInfoUtils infoUtils) {
+		this(verCol, null, infoUtils);
+	}
+	
+	/** Create the lister.
+	 * @param verCol the MongoDB collection storing workspace object version information. The
+	 * collection's codec registry must include a codec for {@link VersionRecord}s.
+	 * @param latestCol the MongoDB collection storing the latest version of each object,
+	 * maintained by {@link LatestVersions}, or null to always list objects from the version
+	 * collection. If provided, the collection is used when only the latest versions of objects
+	 * are requested. The collection's codec registry must include a codec for
+	 * {@link VersionRecord}s.
+	 * @param infoUtils an instance of the objects informational utilities class.
+	 */
+	public ObjectLister(
+			final MongoCollection<Document> verCol,
+			final MongoCollection<Document> latestCol,
+			final ObjectInfoUtils infoUtils) {
+		this(verCol, latestCol, null, infoUtils);
+	}
+	
+	/** Create the lister, listing the latest versions of objects from the latest version
+	 * collection and repairing any outdated latest versions found while listing.
+	 * @param verCol the MongoDB collection storing workspace object version information. The
+	 * collection's codec registry must include a codec for {@link VersionRecord}s.
+	 * @param latest the manager for the latest version collection.
+	 * @param infoUtils an instance of the objects informational utilities class.
+	 */
+	ObjectLister(
+			final MongoCollection<Document> verCol,
+			final LatestVersions latest,
+			final ObjectInfoUtils infoUtils) {
+		this(verCol, RecordCodecs.withRecordCodecs(
+				requireNonNull(latest, "latest cannot be null").getCollection()),
+				latest, infoUtils);
+	}
+	
+	private ObjectLister(
+			final MongoCollection<Document> verCol,
+			final MongoCollection<Document> latestCol,
+			final LatestVersions latest,
+			final ObjectInfoUtils infoUtils) {
 		this.verCol = requireNonNull(verCol, "verCol cannot be null");
+		this.latestCol = latestCol;
+		this.latest = latest;
 		this.infoUtils = requireNonNull(infoUtils, "infoUtils cannot be null");
 	}
 	
+	private boolean useLatest(final ResolvedListObjectParameters params) {
+		return latestCol != null && !params.isShowAllVersions();
+	}
+	
 	private static final Set<String> FLDS_LIST_OBJ_VER = Stream.of(
 			Fields.VER_VER,
 			Fields.VER_TYPE_NAME, Fields.VER_TYPE_MAJOR_VERSION, Fields.VER_TYPE_MINOR_VERSION,
@@ -63,69 +120,218 @@ public class ObjectLister {
 	 */
 	public List<ObjectInformation> filter(final ResolvedListObjectParameters params)
 			throws WorkspaceCommunicationException {
-		/* Could make this method more efficient by doing different queries
-		 * based on the filters. If there's no filters except the workspace,
-		 * for example, just grab all the objects for the workspaces,
-		 * filtering out hidden and deleted in the query and pull the most
-		 * recent versions for the remaining objects. For now, just go
-		 * with a dumb general method and add smarter heuristics as needed.
-		 */
-		// if the limit = 1 don't want to keep querying for 1 object
-		// until one is found that's not deleted/hidden/early version
-		final int querysize = requireNonNull(params, "params cannot be null")
-				.getLimit() < 100 ? 100 : params.getLimit();
-		// TODO CODE experiment with max size for querysize, 10K might slow things down. 1K?
-		final PermissionSet pset = params.getPermissionSet();
 		final List<ObjectInformation> ret = new LinkedList<>();
-		if (pset.isEmpty()) {
-			return ret;
+		try (final CloseableIterator<ObjectInformation> iter = iterate(params)) {
+			iter.forEachRemaining(ret::add);
+		} catch (UncheckedWorkspaceCommunicationException e) {
+			throw e.getCause();
 		}
-		final Document verq = buildQuery(params);
-		final Document projection = buildProjection(params);
-		final Document sort = buildSortSpec(params);
-		final Document startFrom = buildStartFromSpec(params);
-		
-		//querying on versions directly so no need to worry about race 
-		//condition where the workspace object was saved but no versions
-		//were saved yet
+		return ret;
+	}
+	
+	/** List objects as per the given parameters, retrieving the objects from the database in
+	 * batches as the iterator is consumed. At most one batch of objects is held in memory at
+	 * once.
+	 * 
+	 * The first batch is retrieved when this method is called, and so errors from the initial
+	 * query are thrown from this method. Errors when retrieving subsequent batches are thrown
+	 * from the iterator as {@link UncheckedWorkspaceCommunicationException}s.
+	 * 
+	 * The iterator holds an open database cursor until it is exhausted or closed.
+	 * 
+	 * See {@link #filter(ResolvedListObjectParameters)} for the sort order.
+	 * @param params the parameters for listing objects.
+	 * @return an iterator over the objects.
+	 * @throws WorkspaceCommunicationException if the database could not be contacted.
+	 */
+	public CloseableIterator<ObjectInformation> iterate(
+			final ResolvedListObjectParameters params)
+			throws WorkspaceCommunicationException {
+		final ObjectIterator iter = new ObjectIterator(
+				requireNonNull(params, "params cannot be null"));
 		try {
-			final FindIterable<Document> fi = verCol.find(verq).projection(projection);
-			if (!startFrom.keySet().isEmpty()) {
-				fi.hint(sort).min(startFrom);  // hint for a min will be required in MDB 4.2
-			}
-			fi.sort(sort);
-			final MongoCursor<Document> cur = fi.iterator();
-			final List<Map<String, Object>> verobjs = new ArrayList<>(querysize);
-			while (cur.hasNext() && ret.size() < params.getLimit()) {
-				verobjs.clear();
-				while (cur.hasNext() && verobjs.size() < querysize) {
-					verobjs.add(QueryMethods.dbObjectToMap(cur.next()));
+			iter.fill();
+		} catch (UncheckedWorkspaceCommunicationException e) {
+			throw e.getCause();
+		}
+		return iter;
+	}
+	
+	private class ObjectIterator implements CloseableIterator<ObjectInformation> {
+		
+		private final ResolvedListObjectParameters params;
+		private final int querysize;
+		private final MongoCursor<VersionRecord> cur;
+		private final List<VersionRecord> verobjs;
+		private final Deque<ObjectInformation> batch = new ArrayDeque<>();
+		private int returned = 0;
+		private boolean closed = false;
+		
+		private ObjectIterator(final ResolvedListObjectParameters params)
+				throws WorkspaceCommunicationException {
+			this.params = params;
+			/* Could make this method more efficient by doing different queries
+			 * based on the filters. If there's no filters except the workspace,
+			 * for example, just grab all the objects for the workspaces,
+			 * filtering out hidden and deleted in the query and pull the most
+			 * recent versions for the remaining objects. For now, just go
+			 * with a dumb general method and add smarter heuristics as needed.
+			 */
+			// if the limit = 1 don't want to keep querying for 1 object
+			// until one is found that's not deleted/hidden/early version
+			querysize = params.getLimit() < 100 ? 100 : params.getLimit();
+			// TODO CODE experiment with max size for querysize, 10K might slow things down. 1K?
+			verobjs = new ArrayList<>(querysize);
+			if (params.getPermissionSet().isEmpty()) {
+				cur = null;
+				closed = true;
+				return;
+			}
+			final Document verq = buildQuery(params, useLatest(params));
+			final Document projection = buildProjection(params);
+			final Document sort = buildSortSpec(params);
+			final Document startFrom = buildStartFromSpec(params);
+			
+			//querying on versions directly so no need to worry about race 
+			//condition where the workspace object was saved but no versions
+			//were saved yet
+			try {
+				// the latest version collection has the same list indexes as the version
+				// collection, so the sort and hint work for either
+				final MongoCollection<Document> col = useLatest(params) ? latestCol : verCol;
+				final FindIterable<VersionRecord> fi = col.find(verq, VersionRecord.class)
+						.projection(projection);
+				if (!startFrom.keySet().isEmpty()) {
+					fi.hint(sort).min(startFrom);  // hint for a min will be required in MDB 4.2
 				}
-				// this method accesses the DB, so we batch calls to it to reduce transport time
-				final Map<Map<String, Object>, ObjectInformation> objs =
-						infoUtils.generateObjectInfo(
-								pset,
-								verobjs,
-								params.isShowHidden(),
-								params.isShowDeleted(),
-								params.isShowOnlyDeleted(),
-								params.isShowAllVersions(),
-								params.asAdmin()
-								);
-				//maintain the ordering from Mongo
-				final Iterator<Map<String, Object>> veriter = verobjs.iterator();
-				while (veriter.hasNext() && ret.size() < params.getLimit()) {
-					final Map<String, Object> v = veriter.next();
-					if (objs.containsKey(v)) {
-						ret.add(objs.get(v));
+				fi.sort(sort);
+				cur = fi.iterator();
+			} catch (MongoException me) {
+				throw new WorkspaceCommunicationException(
+						"There was a problem communicating with the database", me);
+			}
+		}
+		
+		// fills the batch if it's empty and objects remain
+		private void fill() {
+			try {
+				while (!closed && batch.isEmpty() && cur.hasNext() &&
+						returned < params.getLimit()) {
+					verobjs.clear();
+					while (cur.hasNext() && verobjs.size() < querysize) {
+						verobjs.add(cur.next());
+					}
+					// this method accesses the DB, so we batch calls to it to reduce
+					// transport time
+					final Map<VersionRecord, ObjectInformation> objs = new HashMap<>(
+							generateObjectInfo(verobjs));
+					if (useLatest(params) && objs.size() < verobjs.size()) {
+						objs.putAll(replaceOutdated(objs));
+					}
+					//maintain the ordering from Mongo
+					final Iterator<VersionRecord> veriter = verobjs.iterator();
+					while (veriter.hasNext() && returned + batch.size() < params.getLimit()) {
+						final VersionRecord v = veriter.next();
+						if (objs.containsKey(v)) {
+							batch.add(objs.get(v));
+						}
 					}
 				}
+			} catch (MongoException me) {
+				close();
+				throw new UncheckedWorkspaceCommunicationException(
+						new WorkspaceCommunicationException(
+								"There was a problem communicating with the database", me));
+			} catch (WorkspaceCommunicationException e) {
+				close();
+				throw new UncheckedWorkspaceCommunicationException(e);
+			}
+			if (batch.isEmpty()) {
+				close();
+			}
+		}
+		
+		private Map<VersionRecord, ObjectInformation> generateObjectInfo(
+				final List<VersionRecord> records)
+				throws WorkspaceCommunicationException {
+			return infoUtils.generateObjectInfo(
+					params.getPermissionSet(),
+					records,
+					params.isShowHidden(),
+					params.isShowDeleted(),
+					params.isShowOnlyDeleted(),
+					params.isShowAllVersions(),
+					params.asAdmin()
+					);
+		}
+		
+		/* A copy of the latest version of an object is outdated if the server failed after
+		 * saving a new version of the object but before updating the copy. In that case, list
+		 * the actual latest version from the version collection in place of the copy, and
+		 * repair the copy so later listings are correct.
+		 */
+		private Map<VersionRecord, ObjectInformation> replaceOutdated(
+				final Map<VersionRecord, ObjectInformation> listed)
+				throws WorkspaceCommunicationException {
+			final List<VersionRecord> unlisted = verobjs.stream()
+					.filter(v -> !listed.containsKey(v)).collect(Collectors.toList());
+			final Map<VersionRecord, Integer> outdated = infoUtils.getOutdatedVersions(unlisted);
+			if (outdated.isEmpty()) {
+				return Collections.emptyMap();
+			}
+			final Map<Long, Map<Long, Integer>> latestVers = new HashMap<>();
+			final Map<List<Long>, VersionRecord> objToOutdated = new HashMap<>();
+			final List<Document> orquery = new ArrayList<>();
+			for (final Entry<VersionRecord, Integer> e: outdated.entrySet()) {
+				final VersionRecord v = e.getKey();
+				latestVers.computeIfAbsent(v.getWorkspaceID(), k -> new HashMap<>())
+						.put(v.getObjectID(), e.getValue());
+				objToOutdated.put(Arrays.asList(v.getWorkspaceID(), v.getObjectID()), v);
+				orquery.add(new Document(Fields.VER_WS_ID, v.getWorkspaceID())
+						.append(Fields.VER_ID, v.getObjectID())
+						.append(Fields.VER_VER, e.getValue()));
+			}
+			final Document verq = buildQuery(params, false);
+			verq.put("$or", orquery);
+			final List<VersionRecord> current = new ArrayList<>();
+			verCol.find(verq, VersionRecord.class).projection(buildProjection(params))
+					.into(current);
+			final Map<VersionRecord, ObjectInformation> ret = new HashMap<>();
+			for (final Entry<VersionRecord, ObjectInformation> e:
+					generateObjectInfo(current).entrySet()) {
+				// list the current version in place of the outdated version to keep the order
+				ret.put(objToOutdated.get(Arrays.asList(
+						e.getKey().getWorkspaceID(), e.getKey().getObjectID())), e.getValue());
+			}
+			if (latest != null) {
+				latest.repair(latestVers);
+			}
+			return ret;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			fill();
+			return !batch.isEmpty();
+		}
+		
+		@Override
+		public ObjectInformation next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			returned++;
+			return batch.remove();
+		}
+		
+		@Override
+		public void close() {
+			if (!closed) {
+				closed = true;
+				verobjs.clear();
+				cur.close();
 			}
-		} catch (MongoException me) {
-			throw new WorkspaceCommunicationException(
-					"There was a problem communicating with the database", me);
 		}
-		return ret;
 	}
 	
 	private Document buildProjection(final ResolvedListObjectParameters params) {
@@ -206,7 +412,9 @@ public class ObjectLister {
 		}
 	}
 
-	private Document buildQuery(final ResolvedListObjectParameters params) {
+	private Document buildQuery(
+			final ResolvedListObjectParameters params,
+			final boolean latestCollection) {
 		final List<Long> ids = params.getPermissionSet().getWorkspaces().stream()
 				.map(ws -> ws.getID()).distinct().sorted().collect(Collectors.toList());
 		final Document verq = new Document();
@@ -249,6 +457,18 @@ public class ObjectLister {
 			}
 			verq.put(Fields.VER_ID, id);
 		}
+		if (latestCollection) {
+			// the object state is checked again when the object information is generated,
+			// but filtering here avoids pulling versions that will be discarded
+			if (!params.isShowHidden()) {
+				verq.put(Fields.OBJ_HIDE, false);
+			}
+			if (params.isShowOnlyDeleted()) {
+				verq.put(Fields.OBJ_DEL, true);
+			} else if (!params.isShowDeleted()) {
+				verq.put(Fields.OBJ_DEL, false);
+			}
+		}
 		
 		return verq;
 	}
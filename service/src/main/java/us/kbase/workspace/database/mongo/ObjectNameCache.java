@@ -0,0 +1,305 @@
+package us.kbase.workspace.database.mongo;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
+
+/** A cache of the names of the undeleted objects in each workspace, sorted so that the names
+ * with a given prefix can be found without a database query, e.g. for auto-completion.
+ *
+ * Workspaces are loaded lazily, only when the names already found in cached workspaces don't
+ * reach the requested limit, and evicted in approximately least recently used order when the
+ * total number of cached names exceeds the maximum. Workspaces with more names than the per
+ * workspace maximum are not cached and are searched in the backend. At most
+ * {@link #MAX_LOADS_PER_REQUEST} workspaces are loaded per request; any further uncached
+ * workspaces are also searched in the backend.
+ *
+ * The owner of the cache must report new and changed object names with
+ * {@link #update(long, String, Boolean)} after writing them to the backend, and must invalidate
+ * a workspace after renaming, hiding, unhiding, deleting, or undeleting objects in the
+ * workspace. Changes made by other processes are only seen once the entries expire.
+ *
+ * Loads that overlap a change to a workspace do not cache the workspace, so a load cannot
+ * cache data that was read before a change.
+ */
+public class ObjectNameCache {
+
+	/** Loads the names of the undeleted objects in workspaces from the backend. */
+	public interface Loader {
+
+		/** Load the object names.
+		 * @param workspaceIDs the IDs of the workspaces. At most
+		 * {@link ObjectNameCache#MAX_LOADS_PER_REQUEST} workspaces are loaded at once.
+		 * @param maxNamesPerWorkspace the maximum number of names that will be cached for a
+		 * workspace. The loader should stop loading names for a workspace once it has loaded
+		 * one more than this number of names.
+		 * @return a mapping of workspace ID to a mapping of object name to whether the object is
+		 * hidden. Workspaces with no undeleted objects may be omitted.
+		 * @throws WorkspaceCommunicationException if a communication error with the backend
+		 * occurs.
+		 */
+		Map<Long, Map<String, Boolean>> load(Set<Long> workspaceIDs, int maxNamesPerWorkspace)
+				throws WorkspaceCommunicationException;
+	}
+
+	/** Finds names by prefix in the backend for workspaces that are too large to cache. */
+	public interface PrefixQuery {
+
+		/** Get the object names with a prefix.
+		 * @param workspaceIDs the IDs of the workspaces.
+		 * @param prefix the prefix.
+		 * @param includeHidden whether to include hidden objects.
+		 * @param limit the maximum number of names to return.
+		 * @return a mapping of workspace ID to the names in the workspace.
+		 * @throws WorkspaceCommunicationException if a communication error with the backend
+		 * occurs.
+		 */
+		Map<Long, List<String>> query(
+				Set<Long> workspaceIDs,
+				String prefix,
+				boolean includeHidden,
+				int limit)
+				throws WorkspaceCommunicationException;
+	}
+
+	/** The maximum number of workspaces loaded into the cache by a single call to
+	 * {@link #getNamesByPrefix(Set, String, boolean, int, Loader, PrefixQuery)}.
+	 */
+	public static final int MAX_LOADS_PER_REQUEST = 10;
+
+	// marks workspaces with too many names to cache
+	private static final NavigableMap<String, Boolean> TOO_LARGE =
+			Collections.unmodifiableNavigableMap(new ConcurrentSkipListMap<>());
+
+	// must be a power of 2
+	private static final int GENERATION_STRIPES = 256;
+
+	private final Cache<Long, NavigableMap<String, Boolean>> cache;
+	private final int maxNamesPerWorkspace;
+	// incremented on every change to a workspace with an ID in the stripe
+	private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+	/** Create the cache.
+	 * @param maxNames the maximum number of names to cache, summed over all workspaces.
+	 * Each workspace also counts as one name, so empty workspaces are bounded as well.
+	 * @param maxNamesPerWorkspace the maximum number of names to cache for a single
+	 * workspace. Larger workspaces are searched in the backend.
+	 * @param ttl the time to live for each workspace's names.
+	 */
+	public ObjectNameCache(
+			final long maxNames,
+			final int maxNamesPerWorkspace,
+			final Duration ttl) {
+		this(maxNames, maxNamesPerWorkspace, ttl, Ticker.systemTicker());
+	}
+
+	/** Create the cache with a custom time source. Generally only useful for tests.
+	 * @param maxNames the maximum number of names to cache, summed over all workspaces.
+	 * Each workspace also counts as one name, so empty workspaces are bounded as well.
+	 * @param maxNamesPerWorkspace the maximum number of names to cache for a single
+	 * workspace. Larger workspaces are searched in the backend.
+	 * @param ttl the time to live for each workspace's names.
+	 * @param ticker the time source for expiring entries.
+	 */
+	public ObjectNameCache(
+			final long maxNames,
+			final int maxNamesPerWorkspace,
+			final Duration ttl,
+			final Ticker ticker) {
+		requireNonNull(ttl, "ttl");
+		requireNonNull(ticker, "ticker");
+		if (maxNames < 1) {
+			throw new IllegalArgumentException("maxNames must be > 0");
+		}
+		if (maxNamesPerWorkspace < 1) {
+			throw new IllegalArgumentException("maxNamesPerWorkspace must be > 0");
+		}
+		if (ttl.isNegative() || ttl.isZero()) {
+			throw new IllegalArgumentException("ttl must be positive");
+		}
+		this.maxNamesPerWorkspace = maxNamesPerWorkspace;
+		// TODO JAVA11 upgrade Caffeine to v3.x after dumping java 8
+		cache = Caffeine.newBuilder()
+				.maximumWeight(maxNames)
+				// the weight is calculated when the names are loaded, so updates aren't counted
+				.weigher((final Long k, final NavigableMap<String, Boolean> v) -> v.size() + 1)
+				.expireAfterWrite(ttl.toNanos(), TimeUnit.NANOSECONDS)
+				.ticker(ticker)
+				.recordStats()
+				.build();
+	}
+
+	/** Get the names of undeleted objects that start with a prefix.
+	 * @param workspaceIDs the IDs of the workspaces to search.
+	 * @param prefix the prefix.
+	 * @param includeHidden whether to include hidden objects.
+	 * @param limit the maximum number of names to return. If less than 1, all the names are
+	 * returned.
+	 * @param loader loads the names of workspaces that are not cached.
+	 * @param prefixQuery finds names in workspaces that are too large to cache.
+	 * @return a mapping of workspace ID to the names in the workspace. Workspaces with no
+	 * matching names are omitted.
+	 * @throws WorkspaceCommunicationException if a communication error with the backend
+	 * occurs.
+	 */
+	public Map<Long, List<String>> getNamesByPrefix(
+			final Set<Long> workspaceIDs,
+			final String prefix,
+			final boolean includeHidden,
+			final int limit,
+			final Loader loader,
+			final PrefixQuery prefixQuery)
+			throws WorkspaceCommunicationException {
+		requireNonNull(workspaceIDs, "workspaceIDs");
+		requireNonNull(prefix, "prefix");
+		requireNonNull(loader, "loader");
+		requireNonNull(prefixQuery, "prefixQuery");
+		final Map<Long, List<String>> ret = new HashMap<>();
+		final int[] remaining = {limit < 1 ? Integer.MAX_VALUE : limit};
+		// sorted so the same workspaces are loaded each time for the same request
+		final Set<Long> missing = new TreeSet<>();
+		// workspaces searched in the backend
+		final Set<Long> uncacheable = new HashSet<>();
+		for (final Long ws: workspaceIDs) {
+			final NavigableMap<String, Boolean> names = cache.getIfPresent(ws);
+			if (names == null) {
+				missing.add(ws);
+			} else if (names == TOO_LARGE) {
+				uncacheable.add(ws);
+			} else {
+				findNames(ws, names, prefix, includeHidden, remaining, ret);
+			}
+		}
+		if (remaining[0] > 0 && !missing.isEmpty()) {
+			final Set<Long> load = new HashSet<>();
+			final Map<Long, Long> gens = new HashMap<>();
+			for (final Long ws: missing) {
+				if (load.size() < MAX_LOADS_PER_REQUEST) {
+					load.add(ws);
+					gens.put(ws, generations.get(stripe(ws)));
+				} else {
+					uncacheable.add(ws);
+				}
+			}
+			final Map<Long, Map<String, Boolean>> loaded = requireNonNull(
+					loader.load(load, maxNamesPerWorkspace), "loaded names");
+			for (final Long ws: load) {
+				final NavigableMap<String, Boolean> names = toNames(loaded.get(ws));
+				cache.put(ws, names);
+				// see ReadableWorkspaceCache for why this works
+				if (generations.get(stripe(ws)) != gens.get(ws)) {
+					cache.invalidate(ws);
+				}
+				if (names == TOO_LARGE) {
+					uncacheable.add(ws);
+				} else {
+					findNames(ws, names, prefix, includeHidden, remaining, ret);
+				}
+			}
+		}
+		if (remaining[0] > 0 && !uncacheable.isEmpty()) {
+			final Map<Long, List<String>> found = requireNonNull(prefixQuery.query(
+					uncacheable, prefix, includeHidden, limit < 1 ? 0 : remaining[0]),
+					"found names");
+			for (final Long ws: found.keySet()) {
+				if (!found.get(ws).isEmpty()) {
+					ret.computeIfAbsent(ws, k -> new LinkedList<>()).addAll(found.get(ws));
+				}
+			}
+		}
+		return ret;
+	}
+
+	private NavigableMap<String, Boolean> toNames(final Map<String, Boolean> loaded) {
+		if (loaded == null) {
+			return new ConcurrentSkipListMap<>();
+		}
+		if (loaded.size() > maxNamesPerWorkspace) {
+			return TOO_LARGE;
+		}
+		return new ConcurrentSkipListMap<>(loaded);
+	}
+
+	private static void findNames(
+			final long ws,
+			final NavigableMap<String, Boolean> names,
+			final String prefix,
+			final boolean includeHidden,
+			final int[] remaining,
+			final Map<Long, List<String>> ret) {
+		List<String> found = null;
+		for (final Map.Entry<String, Boolean> e: names.tailMap(prefix, true).entrySet()) {
+			if (remaining[0] < 1 || !e.getKey().startsWith(prefix)) {
+				break;
+			}
+			if (includeHidden || !e.getValue()) {
+				if (found == null) {
+					found = ret.computeIfAbsent(ws, k -> new LinkedList<>());
+				}
+				found.add(e.getKey());
+				remaining[0]--;
+			}
+		}
+	}
+
+	private static int stripe(final long workspaceID) {
+		return (int) (workspaceID ^ (workspaceID >>> 32)) & (GENERATION_STRIPES - 1);
+	}
+
+	/** Record that an object was saved with a name, e.g. when a new object is saved or when
+	 * saving a version undeletes an object.
+	 * @param workspaceID the ID of the workspace containing the object.
+	 * @param name the name of the object.
+	 * @param hidden whether the object is hidden, or null if the hidden state of the object
+	 * was not changed. If null and the object is not already cached, the workspace is
+	 * invalidated.
+	 */
+	public void update(final long workspaceID, final String name, final Boolean hidden) {
+		requireNonNull(name, "name");
+		generations.incrementAndGet(stripe(workspaceID));
+		final NavigableMap<String, Boolean> names = cache.getIfPresent(workspaceID);
+		if (names == null || names == TOO_LARGE) {
+			return;
+		}
+		if (hidden != null) {
+			names.put(name, hidden);
+		} else if (!names.containsKey(name)) {
+			cache.invalidate(workspaceID);
+		}
+	}
+
+	/** Invalidate the names for a workspace.
+	 * @param workspaceID the ID of the workspace.
+	 */
+	public void invalidate(final long workspaceID) {
+		generations.incrementAndGet(stripe(workspaceID));
+		cache.invalidate(workspaceID);
+	}
+
+	/** Get statistics for the cache. Evictions are weighted by the number of names, as
+	 * described in the constructor.
+	 * @return the cache statistics.
+	 */
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+}
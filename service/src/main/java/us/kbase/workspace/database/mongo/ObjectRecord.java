@@ -0,0 +1,124 @@
+package us.kbase.workspace.database.mongo;
+
+/** The fields of a workspace object document needed to determine whether an object version
+ * should be listed. Decoded directly from BSON by {@link ObjectRecordCodec}.
+ *
+ * Fields that were not included in the query projection have their default values.
+ */
+public class ObjectRecord {
+
+	private final long workspaceID;
+	private final long objectID;
+	private final String name;
+	private final boolean deleted;
+	private final boolean hidden;
+	private final int versionCount;
+
+	/** Create the record.
+	 * @param workspaceID the ID of the workspace containing the object.
+	 * @param objectID the ID of the object.
+	 * @param name the name of the object.
+	 * @param deleted whether the object is deleted.
+	 * @param hidden whether the object is hidden.
+	 * @param versionCount the number of versions of the object.
+	 */
+	public ObjectRecord(
+			final long workspaceID,
+			final long objectID,
+			final String name,
+			final boolean deleted,
+			final boolean hidden,
+			final int versionCount) {
+		this.workspaceID = workspaceID;
+		this.objectID = objectID;
+		this.name = name;
+		this.deleted = deleted;
+		this.hidden = hidden;
+		this.versionCount = versionCount;
+	}
+
+	/** Get the ID of the workspace containing the object.
+	 * @return the workspace ID.
+	 */
+	public long getWorkspaceID() {
+		return workspaceID;
+	}
+
+	/** Get the ID of the object.
+	 * @return the object ID.
+	 */
+	public long getObjectID() {
+		return objectID;
+	}
+
+	/** Get the name of the object.
+	 * @return the name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/** Get whether the object is deleted.
+	 * @return true if the object is deleted.
+	 */
+	public boolean isDeleted() {
+		return deleted;
+	}
+
+	/** Get whether the object is hidden.
+	 * @return true if the object is hidden.
+	 */
+	public boolean isHidden() {
+		return hidden;
+	}
+
+	/** Get the number of versions of the object, which is also the latest version.
+	 * @return the version count.
+	 */
+	public int getVersionCount() {
+		return versionCount;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + (deleted ? 1231 : 1237);
+		result = prime * result + (hidden ? 1231 : 1237);
+		result = prime * result + ((name == null) ? 0 : name.hashCode());
+		result = prime * result + (int) (objectID ^ (objectID >>> 32));
+		result = prime * result + versionCount;
+		result = prime * result + (int) (workspaceID ^ (workspaceID >>> 32));
+		return result;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		final ObjectRecord other = (ObjectRecord) obj;
+		if (deleted != other.deleted) {
+			return false;
+		}
+		if (hidden != other.hidden) {
+			return false;
+		}
+		if (name == null) {
+			if (other.name != null) {
+				return false;
+			}
+		} else if (!name.equals(other.name)) {
+			return false;
+		}
+		return objectID == other.objectID
+				&& versionCount == other.versionCount
+				&& workspaceID == other.workspaceID;
+	}
+}
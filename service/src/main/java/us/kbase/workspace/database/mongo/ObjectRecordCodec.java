@@ -0,0 +1,83 @@
+package us.kbase.workspace.database.mongo;
+
+import static us.kbase.workspace.database.mongo.RecordCodecs.readInt;
+import static us.kbase.workspace.database.mongo.RecordCodecs.readLong;
+import static us.kbase.workspace.database.mongo.RecordCodecs.skipNull;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/** A codec that decodes workspace object documents directly into {@link ObjectRecord}s.
+ * Fields that are not part of the record are skipped without being decoded.
+ */
+public class ObjectRecordCodec implements Codec<ObjectRecord> {
+
+	@Override
+	public Class<ObjectRecord> getEncoderClass() {
+		return ObjectRecord.class;
+	}
+
+	@Override
+	public ObjectRecord decode(final BsonReader reader, final DecoderContext context) {
+		long workspaceID = 0;
+		long objectID = 0;
+		String name = null;
+		boolean deleted = false;
+		boolean hidden = false;
+		int versionCount = 0;
+		reader.readStartDocument();
+		while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			final String field = reader.readName();
+			if (skipNull(reader)) {
+				continue;
+			}
+			switch (field) {
+				case Fields.OBJ_WS_ID:
+					workspaceID = readLong(reader);
+					break;
+				case Fields.OBJ_ID:
+					objectID = readLong(reader);
+					break;
+				case Fields.OBJ_NAME:
+					name = reader.readString();
+					break;
+				case Fields.OBJ_DEL:
+					deleted = reader.readBoolean();
+					break;
+				case Fields.OBJ_HIDE:
+					hidden = reader.readBoolean();
+					break;
+				case Fields.OBJ_VCNT:
+					versionCount = readInt(reader);
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.readEndDocument();
+		return new ObjectRecord(workspaceID, objectID, name, deleted, hidden, versionCount);
+	}
+
+	@Override
+	public void encode(
+			final BsonWriter writer,
+			final ObjectRecord record,
+			final EncoderContext context) {
+		writer.writeStartDocument();
+		writer.writeInt64(Fields.OBJ_WS_ID, record.getWorkspaceID());
+		writer.writeInt64(Fields.OBJ_ID, record.getObjectID());
+		if (record.getName() == null) {
+			writer.writeNull(Fields.OBJ_NAME);
+		} else {
+			writer.writeString(Fields.OBJ_NAME, record.getName());
+		}
+		writer.writeBoolean(Fields.OBJ_DEL, record.isDeleted());
+		writer.writeBoolean(Fields.OBJ_HIDE, record.isHidden());
+		writer.writeInt32(Fields.OBJ_VCNT, record.getVersionCount());
+		writer.writeEndDocument();
+	}
+}
@@ -0,0 +1,51 @@
+package us.kbase.workspace.database.mongo;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
+
+/** A strategy for fetching the {@link ObjectRecord}s for a set of objects that may be spread
+ * over many workspaces. Different strategies perform better or worse depending on the
+ * number of workspaces; see the objectRecordFetch benchmark in the performanceanddevelopment
+ * directory.
+ */
+public interface ObjectRecordFetcher {
+
+	/** Fetch object records.
+	 * @param objectIDs a mapping of workspace ID to the IDs of the objects to fetch from that
+	 * workspace.
+	 * @return the object records, in no particular order. Objects that do not exist are
+	 * omitted.
+	 * @throws WorkspaceCommunicationException if a communication error with the database
+	 * occurs.
+	 */
+	List<ObjectRecord> fetch(Map<Long, Set<Long>> objectIDs)
+			throws WorkspaceCommunicationException;
+
+	/** Create a fetcher that selects a strategy based on the number of workspaces in each
+	 * fetch.
+	 * @param threshold the minimum number of workspaces for which the second strategy is
+	 * used.
+	 * @param fewWorkspaces the strategy to use when there are fewer workspaces than the
+	 * threshold.
+	 * @param manyWorkspaces the strategy to use when the number of workspaces is at least the
+	 * threshold.
+	 * @return the new fetcher.
+	 */
+	static ObjectRecordFetcher byWorkspaceCount(
+			final int threshold,
+			final ObjectRecordFetcher fewWorkspaces,
+			final ObjectRecordFetcher manyWorkspaces) {
+		if (threshold < 1) {
+			throw new IllegalArgumentException("threshold must be > 0");
+		}
+		requireNonNull(fewWorkspaces, "fewWorkspaces");
+		requireNonNull(manyWorkspaces, "manyWorkspaces");
+		return objectIDs -> objectIDs.size() < threshold ?
+				fewWorkspaces.fetch(objectIDs) : manyWorkspaces.fetch(objectIDs);
+	}
+}
@@ -0,0 +1,58 @@
+package us.kbase.workspace.database.mongo;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.Document;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+
+import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
+
+/** Fetches object records with a single query containing an $or clause per workspace.
+ * Efficient for small numbers of workspaces, but the query planner handles queries with
+ * very large numbers of $or clauses poorly.
+ */
+public class OrQueryObjectRecordFetcher implements ObjectRecordFetcher {
+
+	private final MongoCollection<Document> objects;
+
+	/** Create the fetcher.
+	 * @param workspaceDB the workspace database.
+	 */
+	public OrQueryObjectRecordFetcher(final MongoDatabase workspaceDB) {
+		objects = RecordCodecs.withRecordCodecs(requireNonNull(workspaceDB, "workspaceDB")
+				.getCollection(CollectionNames.COL_WORKSPACE_OBJS));
+	}
+
+	@Override
+	public List<ObjectRecord> fetch(final Map<Long, Set<Long>> objectIDs)
+			throws WorkspaceCommunicationException {
+		final List<ObjectRecord> ret = new ArrayList<>();
+		if (objectIDs.isEmpty()) {
+			return ret;
+		}
+		final List<Document> orquery = new ArrayList<>();
+		for (final Long wsid: objectIDs.keySet()) {
+			final Document query = new Document(Fields.OBJ_WS_ID, wsid);
+			query.put(Fields.OBJ_ID, new Document("$in", objectIDs.get(wsid)));
+			orquery.add(query);
+		}
+		//could include / exclude hidden and deleted objects here? Given reports are hidden
+		// and a large chunk of the objects might make sense
+		try {
+			objects.find(new Document("$or", orquery), ObjectRecord.class)
+					.projection(RecordCodecs.objectRecordProjection()).into(ret);
+		} catch (MongoException me) {
+			throw new WorkspaceCommunicationException(
+					"There was a problem communicating with the database", me);
+		}
+		return ret;
+	}
+}
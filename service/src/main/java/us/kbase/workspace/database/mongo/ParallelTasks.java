@@ -0,0 +1,67 @@
+package us.kbase.workspace.database.mongo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/** Runs a list of tasks in the calling thread and, optionally, in helper threads requested
+ * from an executor. The calling thread and the helpers take tasks from the list in turn, so
+ * the tasks are never queued behind other work in the executor.
+ */
+final class ParallelTasks {
+
+	private ParallelTasks() {}
+
+	/** Run the tasks and wait for them to complete.
+	 * @param <T> the type of the task results.
+	 * @param tasks the tasks to run.
+	 * @param executor the executor from which to request helper threads, or null to run the
+	 * tasks in the calling thread. The executor should reject tasks rather than queue them when
+	 * all its threads are busy, e.g. by using a {@link java.util.concurrent.SynchronousQueue};
+	 * the calling thread then runs more of the tasks itself rather than waiting for a thread.
+	 * @param threads the maximum number of threads, including the calling thread, with which to
+	 * run the tasks.
+	 * @return the results of the tasks, in the same order as the tasks.
+	 * @throws ExecutionException the exception thrown by the first task, in order, that
+	 * failed.
+	 * @throws InterruptedException if the calling thread is interrupted while waiting for the
+	 * helper threads.
+	 */
+	static <T> List<T> run(
+			final List<? extends Callable<T>> tasks,
+			final Executor executor,
+			final int threads)
+			throws ExecutionException, InterruptedException {
+		final List<FutureTask<T>> futures = tasks.stream().map(c -> new FutureTask<>(c))
+				.collect(Collectors.toList());
+		final AtomicInteger next = new AtomicInteger();
+		final Runnable worker = () -> {
+			int i;
+			while ((i = next.getAndIncrement()) < futures.size()) {
+				futures.get(i).run();
+			}
+		};
+		if (executor != null) {
+			for (int i = 1; i < Math.min(threads, futures.size()); i++) {
+				try {
+					executor.execute(worker);
+				} catch (RejectedExecutionException e) {
+					break; // the executor is busy, so this thread runs more of the tasks
+				}
+			}
+		}
+		worker.run();
+		// every task has been started, so the helper threads will complete them
+		final List<T> ret = new ArrayList<>(futures.size());
+		for (final FutureTask<T> f: futures) {
+			ret.add(f.get());
+		}
+		return ret;
+	}
+}
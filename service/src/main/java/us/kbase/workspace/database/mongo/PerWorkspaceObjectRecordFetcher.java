@@ -0,0 +1,95 @@
+package us.kbase.workspace.database.mongo;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import org.bson.Document;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+
+import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
+
+/** Fetches object records with one query per workspace, running the queries in parallel.
+ * Each query is a simple range scan of the workspace ID / object ID index, at the cost of a
+ * round trip per workspace.
+ */
+public class PerWorkspaceObjectRecordFetcher implements ObjectRecordFetcher {
+
+	private final MongoCollection<Document> objects;
+	private final ExecutorService executor;
+	private final int threads;
+
+	/** Create the fetcher.
+	 * @param workspaceDB the workspace database.
+	 * @param executor the executor with which to run queries, shared between fetches. The
+	 * executor should reject tasks rather than queue them when all its threads are busy, e.g.
+	 * by using a {@link java.util.concurrent.SynchronousQueue}; the fetching thread then runs
+	 * the queries itself rather than waiting for a thread.
+	 * @param threads the maximum number of queries to run in parallel for each fetch.
+	 */
+	public PerWorkspaceObjectRecordFetcher(
+			final MongoDatabase workspaceDB,
+			final ExecutorService executor,
+			final int threads) {
+		objects = RecordCodecs.withRecordCodecs(requireNonNull(workspaceDB, "workspaceDB")
+				.getCollection(CollectionNames.COL_WORKSPACE_OBJS));
+		this.executor = requireNonNull(executor, "executor");
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be > 0");
+		}
+		this.threads = threads;
+	}
+
+	@Override
+	public List<ObjectRecord> fetch(final Map<Long, Set<Long>> objectIDs)
+			throws WorkspaceCommunicationException {
+		final List<ObjectRecord> ret = new ArrayList<>();
+		if (objectIDs.isEmpty()) {
+			return ret;
+		}
+		final List<Callable<List<ObjectRecord>>> tasks = new ArrayList<>();
+		for (final Entry<Long, Set<Long>> e: objectIDs.entrySet()) {
+			tasks.add(() -> query(e.getKey(), e.getValue()));
+		}
+		try {
+			for (final List<ObjectRecord> recs: ParallelTasks.run(tasks, executor, threads)) {
+				ret.addAll(recs);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new WorkspaceCommunicationException(
+					"Interrupted while querying the database", e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof MongoException) {
+				throw new WorkspaceCommunicationException(
+						"There was a problem communicating with the database", cause);
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw new RuntimeException("Unexpected error", cause);
+			}
+		}
+		return ret;
+	}
+
+	private List<ObjectRecord> query(final long wsid, final Set<Long> ids) {
+		return objects.find(new Document(Fields.OBJ_WS_ID, wsid)
+						.append(Fields.OBJ_ID, new Document("$in", ids)),
+					ObjectRecord.class)
+				.projection(RecordCodecs.objectRecordProjection())
+				.into(new ArrayList<>());
+	}
+}
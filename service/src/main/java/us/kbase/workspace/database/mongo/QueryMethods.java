@@ -18,6 +18,7 @@ import us.kbase.workspace.database.ResolvedObjectID;
 import us.kbase.workspace.database.ResolvedObjectIDNoVer;
 import us.kbase.workspace.database.ResolvedWorkspaceID;
 import us.kbase.workspace.database.User;
+import us.kbase.workspace.database.WorkspaceIDSet;
 import us.kbase.workspace.database.WorkspaceIdentifier;
 import us.kbase.workspace.database.WorkspaceUser;
 import us.kbase.workspace.database.exceptions.CorruptWorkspaceDBException;
@@ -284,22 +285,9 @@ public class QueryMethods {
 			final Set<ResolvedObjectID> objectIDs, final Set<String> fields)
 			throws WorkspaceCommunicationException {
 
-		final Map<ResolvedWorkspaceID, Map<Long, List<Integer>>> ids = new HashMap<>();
-		
-		for (final ResolvedObjectID roi: objectIDs) {
-			final ResolvedWorkspaceID rwsi = roi.getWorkspaceIdentifier();
-			if (ids.get(rwsi) == null) {
-				ids.put(rwsi, new HashMap<>());
-			}
-			if (ids.get(rwsi).get(roi.getId()) == null) {
-				ids.get(rwsi).put(roi.getId(), new LinkedList<Integer>());
-			}
-			ids.get(rwsi).get(roi.getId()).add(roi.getVersion());
-		}
-		
 		// ws id, obj id, obj version, version data map
 		final Map<ResolvedWorkspaceID, Map<Long, Map<Integer, Map<String, Object>>>> data = //this is getting ridiculous
-				queryVersions(ids, fields);
+				queryVersions(groupVersions(objectIDs), fields);
 		
 		final Map<ResolvedObjectID, Map<String, Object>> ret = new HashMap<>();
 		
@@ -313,6 +301,59 @@ public class QueryMethods {
 		return ret;
 	}
 	
+	/* As queryVersions, but decodes the version documents directly into records rather than
+	 * converting them to maps. The object and version fields are always included.
+	 * All incoming object IDs must have versions.
+	 */
+	Map<ResolvedObjectID, VersionRecord> queryVersionRecords(
+			final Set<ResolvedObjectID> objectIDs, final Set<String> fields)
+			throws WorkspaceCommunicationException {
+		final Set<String> flds = new HashSet<>(fields);
+		flds.add(Fields.VER_ID);
+		flds.add(Fields.VER_VER);
+		final Map<ResolvedWorkspaceID, Map<Long, List<Integer>>> ids = groupVersions(objectIDs);
+		// ws id, obj id, obj version, version record
+		final Map<ResolvedWorkspaceID, Map<Long, Map<Integer, VersionRecord>>> data =
+				new HashMap<>();
+		for (final ResolvedWorkspaceID rwsi: ids.keySet()) {
+			data.put(rwsi, new HashMap<>());
+			for (final Long objectID: ids.get(rwsi).keySet()) {
+				data.get(rwsi).put(objectID, new HashMap<>());
+				final List<VersionRecord> res = queryCollection(versionCollection,
+						versionQuery(rwsi, objectID, ids.get(rwsi).get(objectID)),
+						flds, VersionRecord.class);
+				for (final VersionRecord r: res) {
+					data.get(rwsi).get(r.getObjectID()).put(r.getVersion(), r);
+				}
+			}
+		}
+		final Map<ResolvedObjectID, VersionRecord> ret = new HashMap<>();
+		for (final ResolvedObjectID roi: objectIDs) {
+			final VersionRecord r = data.get(
+					roi.getWorkspaceIdentifier()).get(roi.getId()).get(roi.getVersion());
+			if (r != null) {
+				ret.put(roi, r);
+			}
+		}
+		return ret;
+	}
+	
+	private Map<ResolvedWorkspaceID, Map<Long, List<Integer>>> groupVersions(
+			final Set<ResolvedObjectID> objectIDs) {
+		final Map<ResolvedWorkspaceID, Map<Long, List<Integer>>> ids = new HashMap<>();
+		for (final ResolvedObjectID roi: objectIDs) {
+			final ResolvedWorkspaceID rwsi = roi.getWorkspaceIdentifier();
+			if (ids.get(rwsi) == null) {
+				ids.put(rwsi, new HashMap<>());
+			}
+			if (ids.get(rwsi).get(roi.getId()) == null) {
+				ids.get(rwsi).put(roi.getId(), new LinkedList<Integer>());
+			}
+			ids.get(rwsi).get(roi.getId()).add(roi.getVersion());
+		}
+		return ids;
+	}
+	
 	//method assumes at least one version exists
 	Map<ResolvedObjectIDNoVer, List<Map<String, Object>>> queryAllVersions(
 			final HashSet<ResolvedObjectIDNoVer> objIDs,
@@ -367,19 +408,8 @@ public class QueryMethods {
 			ret.put(rwsi, new HashMap<>());
 			for (final Long objectID: ids.get(rwsi).keySet()) {
 				ret.get(rwsi).put(objectID, new HashMap<>());
-				final Document q;
-				if (ids.get(rwsi).get(objectID).size() == 0) {
-					q = new Document();
-				} else if (ids.get(rwsi).get(objectID).size() == 1) {
-					q = new Document(Fields.VER_VER, ids.get(rwsi).get(objectID).get(0));
-				} else {
-					q = new Document(Fields.VER_VER,
-							new Document("$in", ids.get(rwsi).get(objectID)));
-				}
-				q.put(Fields.VER_ID, objectID);
-				q.put(Fields.VER_WS_ID, rwsi.getID());
-				final List<Map<String, Object>> res = queryCollection(
-						versionCollection, q, fields);
+				final List<Map<String, Object>> res = queryCollection(versionCollection,
+						versionQuery(rwsi, objectID, ids.get(rwsi).get(objectID)), fields);
 				for (final Map<String, Object> r: res) {
 					final Long id = (Long) r.get(Fields.VER_ID);
 					final Integer ver = (Integer) r.get(Fields.VER_VER);
@@ -390,6 +420,24 @@ public class QueryMethods {
 		return ret;
 	}
 	
+	// an empty versions list means all versions
+	private Document versionQuery(
+			final ResolvedWorkspaceID rwsi,
+			final long objectID,
+			final List<Integer> versions) {
+		final Document q;
+		if (versions.size() == 0) {
+			q = new Document();
+		} else if (versions.size() == 1) {
+			q = new Document(Fields.VER_VER, versions.get(0));
+		} else {
+			q = new Document(Fields.VER_VER, new Document("$in", versions));
+		}
+		q.put(Fields.VER_ID, objectID);
+		q.put(Fields.VER_WS_ID, rwsi.getID());
+		return q;
+	}
+	
 	List<Map<String, Object>> queryCollection(
 			final String collection,
 			final Document query,
@@ -429,6 +477,30 @@ public class QueryMethods {
 		return result;
 	}
 	
+	/* Query a collection, decoding the results directly into the result class. The result
+	 * class must have a codec registered in RecordCodecs.
+	 */
+	<T> List<T> queryCollection(
+			final String collection,
+			final Document query,
+			final Set<String> fields,
+			final Class<T> resultClass)
+			throws WorkspaceCommunicationException {
+		final Document projection = new Document(Fields.MONGO_ID, 0);
+		for (final String field: fields) {
+			projection.put(field, 1);
+		}
+		final List<T> result = new ArrayList<>();
+		try {
+			RecordCodecs.withRecordCodecs(wsmongo.getCollection(collection))
+					.find(query, resultClass).projection(projection).into(result);
+		} catch (MongoException me) {
+			throw new WorkspaceCommunicationException(
+					"There was a problem communicating with the database", me);
+		}
+		return result;
+	}
+	
 	FindIterable<Document> queryCollectionCursor(
 			final String collection,
 			final Document query,
@@ -547,6 +619,39 @@ public class QueryMethods {
 		return wsidToPerms;
 	}
 
+	/* Get the IDs of the non-deleted workspaces, excluding workspaces that are being cloned,
+	 * for which a user has at least a permission. Only the IDs are retrieved, so this is much
+	 * cheaper than queryPermissions for users with access to many workspaces.
+	 */
+	WorkspaceIDSet queryWorkspaceIDs(final User user, final Permission minPerm)
+			throws WorkspaceCommunicationException {
+		final Document aclQuery = new Document(Fields.ACL_USER, user.getUser())
+				.append(Fields.ACL_PERM, new Document("$gte", minPerm.getPermission()));
+		final List<Long> ids = new ArrayList<>();
+		try {
+			// the user / perm / ID index covers this query
+			for (final Document d: wsACL.find(aclQuery).projection(new Document(
+					Fields.ACL_WSID, 1).append(Fields.MONGO_ID, 0))) {
+				ids.add(d.getLong(Fields.ACL_WSID));
+			}
+			if (ids.isEmpty()) {
+				return WorkspaceIDSet.empty();
+			}
+			final Document wsQuery = new Document(Fields.WS_ID, new Document("$in", ids))
+					.append(Fields.WS_DEL, false)
+					.append(Fields.WS_CLONING, new Document("$exists", false));
+			final List<Long> extant = new ArrayList<>(ids.size());
+			for (final Document d: wsmongo.getCollection(workspaceCollection).find(wsQuery)
+					.projection(new Document(Fields.WS_ID, 1).append(Fields.MONGO_ID, 0))) {
+				extant.add(d.getLong(Fields.WS_ID));
+			}
+			return WorkspaceIDSet.of(extant);
+		} catch (MongoException me) {
+			throw new WorkspaceCommunicationException(
+					"There was a problem communicating with the database", me);
+		}
+	}
+
 	private void addPerm(
 			final Map<ResolvedWorkspaceID, Map<User, Permission>> wsidToPerms,
 			final Document m,
@@ -0,0 +1,142 @@
+package us.kbase.workspace.database.mongo;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import us.kbase.workspace.database.User;
+import us.kbase.workspace.database.WorkspaceIDSet;
+import us.kbase.workspace.database.exceptions.CorruptWorkspaceDBException;
+import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
+
+/** A cache for the IDs of the workspaces each user can read. The public workspaces are cached
+ * under the user representing all users.
+ *
+ * The owner of the cache must invalidate a user's entry after it writes a change to that user's
+ * permissions to the backend, and must invalidate all the entries when a workspace is deleted
+ * or undeleted. Changes made by other processes are only seen once the entries expire.
+ *
+ * Lookups that overlap an invalidation do not cache their results, so a lookup cannot
+ * cache data that was read before a change to the permissions.
+ */
+public class ReadableWorkspaceCache {
+
+	/** Loads the IDs of the workspaces a user can read from the backend. */
+	public interface Loader {
+
+		/** Load the workspace IDs.
+		 * @param user the user.
+		 * @return the workspace IDs.
+		 * @throws WorkspaceCommunicationException if a communication error with the backend
+		 * occurs.
+		 * @throws CorruptWorkspaceDBException if the backend is corrupt.
+		 */
+		WorkspaceIDSet load(User user)
+				throws WorkspaceCommunicationException, CorruptWorkspaceDBException;
+	}
+
+	private final Cache<String, WorkspaceIDSet> cache;
+	// incremented on every invalidation
+	private final AtomicLong generation = new AtomicLong();
+
+	/** Create the cache.
+	 * @param maxWorkspaceIDs the maximum number of workspace IDs to cache, summed over all
+	 * users. Each user also counts as one ID, so users with no readable workspaces are
+	 * bounded as well.
+	 * @param ttl the time to live for each user's workspace IDs.
+	 */
+	public ReadableWorkspaceCache(final long maxWorkspaceIDs, final Duration ttl) {
+		this(maxWorkspaceIDs, ttl, Ticker.systemTicker());
+	}
+
+	/** Create the cache with a custom time source. Generally only useful for tests.
+	 * @param maxWorkspaceIDs the maximum number of workspace IDs to cache, summed over all
+	 * users. Each user also counts as one ID, so users with no readable workspaces are
+	 * bounded as well.
+	 * @param ttl the time to live for each user's workspace IDs.
+	 * @param ticker the time source for expiring entries.
+	 */
+	public ReadableWorkspaceCache(
+			final long maxWorkspaceIDs,
+			final Duration ttl,
+			final Ticker ticker) {
+		requireNonNull(ttl, "ttl");
+		requireNonNull(ticker, "ticker");
+		if (maxWorkspaceIDs < 1) {
+			throw new IllegalArgumentException("maxWorkspaceIDs must be > 0");
+		}
+		if (ttl.isNegative() || ttl.isZero()) {
+			throw new IllegalArgumentException("ttl must be positive");
+		}
+		// TODO JAVA11 upgrade Caffeine to v3.x after dumping java 8
+		cache = Caffeine.newBuilder()
+				.maximumWeight(maxWorkspaceIDs)
+				.weigher((final String k, final WorkspaceIDSet v) -> v.size() + 1)
+				.expireAfterWrite(ttl.toNanos(), TimeUnit.NANOSECONDS)
+				.ticker(ticker)
+				.recordStats()
+				.build();
+	}
+
+	/** Get the IDs of the workspaces a user can read, loading them if they are not cached.
+	 * @param user the user.
+	 * @param loader loads the IDs if they are not cached.
+	 * @return the workspace IDs.
+	 * @throws WorkspaceCommunicationException if a communication error with the backend
+	 * occurs.
+	 * @throws CorruptWorkspaceDBException if the backend is corrupt.
+	 */
+	public WorkspaceIDSet get(final User user, final Loader loader)
+			throws WorkspaceCommunicationException, CorruptWorkspaceDBException {
+		requireNonNull(user, "user");
+		requireNonNull(loader, "loader");
+		final WorkspaceIDSet cached = cache.getIfPresent(user.getUser());
+		if (cached != null) {
+			return cached;
+		}
+		final long gen = generation.get();
+		final WorkspaceIDSet loaded = requireNonNull(loader.load(user), "loaded IDs");
+		cache.put(user.getUser(), loaded);
+		/* If an invalidation started after the load started, the loaded data may be stale.
+		 * Since invalidations increment the generation before removing entries, any
+		 * invalidation that starts after this check will remove the entry.
+		 */
+		if (generation.get() != gen) {
+			cache.invalidate(user.getUser());
+		}
+		return loaded;
+	}
+
+	/** Invalidate the workspace IDs for users, e.g. when their permissions change.
+	 * @param users the users.
+	 */
+	public void invalidate(final Collection<? extends User> users) {
+		requireNonNull(users, "users");
+		generation.incrementAndGet();
+		for (final User u: users) {
+			cache.invalidate(u.getUser());
+		}
+	}
+
+	/** Invalidate the workspace IDs for all users, e.g. when a workspace is deleted. */
+	public void invalidateAll() {
+		generation.incrementAndGet();
+		cache.invalidateAll();
+	}
+
+	/** Get statistics for the cache. Evictions are weighted by the number of workspace IDs,
+	 * as described in the constructor.
+	 * @return the cache statistics.
+	 */
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+}
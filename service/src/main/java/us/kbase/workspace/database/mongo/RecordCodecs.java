@@ -0,0 +1,71 @@
+package us.kbase.workspace.database.mongo;
+
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import com.mongodb.client.MongoCollection;
+
+/** Utilities for the codecs that decode workspace documents into record classes. */
+final class RecordCodecs {
+
+	private RecordCodecs() {}
+
+	private static final CodecRegistry CODECS = CodecRegistries.fromCodecs(
+			new VersionRecordCodec(), new ObjectRecordCodec());
+
+	/** Add the record codecs to a collection's codec registry, allowing the collection to be
+	 * queried with the record classes as the result class.
+	 * @param col the collection.
+	 * @return a collection instance with the record codecs.
+	 */
+	static <T> MongoCollection<T> withRecordCodecs(final MongoCollection<T> col) {
+		return col.withCodecRegistry(
+				CodecRegistries.fromRegistries(CODECS, col.getCodecRegistry()));
+	}
+
+	/* Get a new projection for the fields of an object document that are included in an
+	 * ObjectRecord.
+	 */
+	static Document objectRecordProjection() {
+		return new Document(Fields.MONGO_ID, 0)
+				.append(Fields.OBJ_WS_ID, 1)
+				.append(Fields.OBJ_ID, 1)
+				.append(Fields.OBJ_NAME, 1)
+				.append(Fields.OBJ_DEL, 1)
+				.append(Fields.OBJ_HIDE, 1)
+				.append(Fields.OBJ_VCNT, 1);
+	}
+
+	/* Skips null values, which are treated as missing fields.
+	 * @return true if the value was null.
+	 */
+	static boolean skipNull(final BsonReader reader) {
+		if (reader.getCurrentBsonType() == BsonType.NULL) {
+			reader.readNull();
+			return true;
+		}
+		return false;
+	}
+
+	// be lenient about the integer width since the type depends on the code that wrote the value
+	static long readLong(final BsonReader reader) {
+		final BsonType type = reader.getCurrentBsonType();
+		switch (type) {
+			case INT64:
+				return reader.readInt64();
+			case INT32:
+				return reader.readInt32();
+			default:
+				throw new BsonInvalidOperationException(
+						"Expected an integer value, got " + type);
+		}
+	}
+
+	static int readInt(final BsonReader reader) {
+		return Math.toIntExact(readLong(reader));
+	}
+}
@@ -0,0 +1,238 @@
+package us.kbase.workspace.database.mongo;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import us.kbase.workspace.database.Reference;
+import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
+
+/** A cache for the parts of the object reference graph used when searching for a path from an
+ * accessible object to a target object: the incoming references to object versions, and
+ * whether the objects containing the versions exist and are not deleted.
+ *
+ * Neither is immutable. Saving an object version adds incoming references to the versions it
+ * references, and objects may be deleted and undeleted. The owner of the cache must invalidate
+ * entries after it writes a change to the graph to the backend. Changes made by other processes are only seen once the
+ * entries expire, and so the existence cache should have a short time to live.
+ *
+ * Lookups that overlap an invalidation do not cache their results, so a lookup cannot
+ * cache data that was read before a change to the graph.
+ */
+public class ReferenceCache {
+
+	/** Loads data from the backend for references that are not cached.
+	 *
+	 * @param <V> the type of the loaded data.
+	 */
+	public interface Loader<V> {
+
+		/** Load data for references.
+		 * @param refs the references.
+		 * @return the data for each reference. References with no data are not cached.
+		 * @throws WorkspaceCommunicationException if a communication error with the backend
+		 * occurs.
+		 */
+		Map<Reference, V> load(Set<Reference> refs) throws WorkspaceCommunicationException;
+	}
+
+	private final Tier<Set<Reference>> incoming;
+	private final Tier<Boolean> exists;
+
+	/** Create the cache.
+	 * @param maxIncomingReferences the maximum number of incoming references to cache. Each
+	 * cached version also counts as one reference, so versions with no incoming references
+	 * are bounded as well.
+	 * @param incomingTTL the time to live for incoming references.
+	 * @param maxExistence the maximum number of object existence states to cache.
+	 * @param existenceTTL the time to live for object existence states.
+	 */
+	public ReferenceCache(
+			final long maxIncomingReferences,
+			final Duration incomingTTL,
+			final long maxExistence,
+			final Duration existenceTTL) {
+		this(maxIncomingReferences, incomingTTL, maxExistence, existenceTTL,
+				Ticker.systemTicker());
+	}
+
+	/** Create the cache with a custom time source. Generally only useful for tests.
+	 * @param maxIncomingReferences the maximum number of incoming references to cache. Each
+	 * cached version also counts as one reference, so versions with no incoming references
+	 * are bounded as well.
+	 * @param incomingTTL the time to live for incoming references.
+	 * @param maxExistence the maximum number of object existence states to cache.
+	 * @param existenceTTL the time to live for object existence states.
+	 * @param ticker the time source for expiring entries.
+	 */
+	public ReferenceCache(
+			final long maxIncomingReferences,
+			final Duration incomingTTL,
+			final long maxExistence,
+			final Duration existenceTTL,
+			final Ticker ticker) {
+		requireNonNull(ticker, "ticker");
+		if (maxIncomingReferences < 1) {
+			throw new IllegalArgumentException("maxIncomingReferences must be > 0");
+		}
+		if (maxExistence < 1) {
+			throw new IllegalArgumentException("maxExistence must be > 0");
+		}
+		// TODO JAVA11 upgrade Caffeine to v3.x after dumping java 8
+		incoming = new Tier<>(Caffeine.newBuilder()
+				.maximumWeight(maxIncomingReferences)
+				.weigher((final Reference k, final Set<Reference> v) -> v.size() + 1)
+				.expireAfterWrite(checkTTL(incomingTTL, "incomingTTL"), TimeUnit.NANOSECONDS)
+				.ticker(ticker)
+				.recordStats()
+				.build());
+		exists = new Tier<>(Caffeine.newBuilder()
+				.maximumSize(maxExistence)
+				.expireAfterWrite(checkTTL(existenceTTL, "existenceTTL"), TimeUnit.NANOSECONDS)
+				.ticker(ticker)
+				.recordStats()
+				.build());
+	}
+
+	private static long checkTTL(final Duration ttl, final String name) {
+		requireNonNull(ttl, name);
+		if (ttl.isNegative() || ttl.isZero()) {
+			throw new IllegalArgumentException(name + " must be positive");
+		}
+		return ttl.toNanos();
+	}
+
+	/** Get the incoming references for object versions, loading any that are not cached.
+	 * @param refs the object versions.
+	 * @param loader loads the incoming references that are not cached.
+	 * @return the incoming references for each object version returned by the cache or the
+	 * loader.
+	 * @throws WorkspaceCommunicationException if a communication error with the backend
+	 * occurs.
+	 */
+	public Map<Reference, Set<Reference>> getIncomingReferences(
+			final Set<Reference> refs,
+			final Loader<Set<Reference>> loader)
+			throws WorkspaceCommunicationException {
+		return incoming.get(refs, loader, s -> Collections.unmodifiableSet(new HashSet<>(s)));
+	}
+
+	/** Get whether the objects containing object versions exist and are not deleted, loading
+	 * any states that are not cached.
+	 * @param refs the object versions.
+	 * @param loader loads the states that are not cached.
+	 * @return the state of each object version returned by the cache or the loader.
+	 * @throws WorkspaceCommunicationException if a communication error with the backend
+	 * occurs.
+	 */
+	public Map<Reference, Boolean> getExists(
+			final Set<Reference> refs,
+			final Loader<Boolean> loader)
+			throws WorkspaceCommunicationException {
+		return exists.get(refs, loader, b -> b);
+	}
+
+	/** Invalidate the incoming references for object versions, e.g. when a new version that
+	 * references them is saved.
+	 * @param refs the object versions.
+	 */
+	public void invalidateIncomingReferences(final Collection<Reference> refs) {
+		requireNonNull(refs, "refs");
+		incoming.invalidate(refs);
+	}
+
+	/** Invalidate the existence states for objects, e.g. when the objects are deleted or
+	 * undeleted.
+	 * @param workspaceID the ID of the workspace containing the objects.
+	 * @param objectIDs the IDs of the objects. If empty, all the objects in the workspace are
+	 * invalidated.
+	 */
+	public void invalidateExists(final long workspaceID, final Collection<Long> objectIDs) {
+		final Set<Long> ids = new HashSet<>(requireNonNull(objectIDs, "objectIDs"));
+		// every version of an object has the same state
+		exists.invalidateIf(r -> r.getWorkspaceID() == workspaceID &&
+				(ids.isEmpty() || ids.contains(r.getObjectID())));
+	}
+
+	/** Get statistics for the incoming reference cache. Evictions are weighted by the number
+	 * of references, as described in the constructor.
+	 * @return the cache statistics.
+	 */
+	public CacheStats getIncomingReferenceStats() {
+		return incoming.cache.stats();
+	}
+
+	/** Get statistics for the existence state cache.
+	 * @return the cache statistics.
+	 */
+	public CacheStats getExistenceStats() {
+		return exists.cache.stats();
+	}
+
+	private static class Tier<V> {
+
+		private final Cache<Reference, V> cache;
+		// incremented on every invalidation
+		private final AtomicLong generation = new AtomicLong();
+
+		private Tier(final Cache<Reference, V> cache) {
+			this.cache = cache;
+		}
+
+		private Map<Reference, V> get(
+				final Set<Reference> refs,
+				final Loader<V> loader,
+				final Function<V, V> copy)
+				throws WorkspaceCommunicationException {
+			requireNonNull(refs, "refs");
+			requireNonNull(loader, "loader");
+			final Map<Reference, V> ret = new HashMap<>(cache.getAllPresent(refs));
+			if (ret.size() == refs.size()) {
+				return ret;
+			}
+			final Set<Reference> missing = new HashSet<>(refs);
+			missing.removeAll(ret.keySet());
+			final long gen = generation.get();
+			final Map<Reference, V> loaded = new HashMap<>();
+			for (final Entry<Reference, V> e: loader.load(missing).entrySet()) {
+				loaded.put(e.getKey(), copy.apply(e.getValue()));
+			}
+			cache.putAll(loaded);
+			/* If an invalidation started after the load started, the loaded data may be stale.
+			 * Since invalidations increment the generation before removing entries, any
+			 * invalidation that starts after this check will remove the entries.
+			 */
+			if (generation.get() != gen) {
+				cache.invalidateAll(loaded.keySet());
+			}
+			ret.putAll(loaded);
+			return ret;
+		}
+
+		private void invalidate(final Collection<Reference> refs) {
+			generation.incrementAndGet();
+			cache.invalidateAll(refs);
+		}
+
+		private void invalidateIf(final Predicate<Reference> remove) {
+			generation.incrementAndGet();
+			cache.asMap().keySet().removeIf(remove);
+		}
+	}
+}
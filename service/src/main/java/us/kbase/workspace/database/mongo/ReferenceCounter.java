@@ -0,0 +1,257 @@
+package us.kbase.workspace.database.mongo;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.WriteModel;
+
+import us.kbase.workspace.database.Reference;
+
+/** Counts references to object versions and converts the counts into updates of the reference
+ * counts in the object collection.
+ *
+ * The counts are kept in an open addressing hash table where each (workspace ID, object ID,
+ * version) key is stored in parallel primitive arrays, so counting does not create any objects
+ * per reference. Reference strings are parsed in place rather than via {@link Reference}.
+ *
+ * This class is not thread safe.
+ */
+public class ReferenceCounter {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final char SEP = '/';
+
+	private long[] workspaceIDs;
+	private long[] objectIDs;
+	// 0 marks an empty slot, since versions are always > 0
+	private int[] versions;
+	private int[] counts;
+	private int size = 0;
+
+	/** Create a counter. */
+	public ReferenceCounter() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** Create a counter sized for an expected number of distinct references.
+	 * @param expectedReferences the expected number of distinct references.
+	 */
+	public ReferenceCounter(final int expectedReferences) {
+		if (expectedReferences < 0) {
+			throw new IllegalArgumentException("expectedReferences must be >= 0");
+		}
+		// keep the load factor <= 0.5
+		int cap = DEFAULT_CAPACITY;
+		while (cap < expectedReferences * 2L && cap < (1 << 30)) {
+			cap <<= 1;
+		}
+		allocate(cap);
+	}
+
+	private void allocate(final int capacity) {
+		workspaceIDs = new long[capacity];
+		objectIDs = new long[capacity];
+		versions = new int[capacity];
+		counts = new int[capacity];
+	}
+
+	/** Count a reference.
+	 * @param ref the reference.
+	 */
+	public void add(final Reference ref) {
+		requireNonNull(ref, "ref");
+		add(ref.getWorkspaceID(), ref.getObjectID(), ref.getVersion());
+	}
+
+	/** Count a reference in the X/Y/Z form of {@link Reference#toString()}.
+	 * @param ref the reference.
+	 */
+	public void add(final String ref) {
+		requireNonNull(ref, "ref");
+		final int s1 = ref.indexOf(SEP);
+		final int s2 = s1 < 0 ? -1 : ref.indexOf(SEP, s1 + 1);
+		if (s2 < 0 || ref.indexOf(SEP, s2 + 1) >= 0) {
+			throw new IllegalArgumentException("Illegal reference: " + ref);
+		}
+		final long ver = parse(ref, s2 + 1, ref.length());
+		if (ver > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Illegal reference: " + ref);
+		}
+		add(parse(ref, 0, s1), parse(ref, s1 + 1, s2), (int) ver);
+	}
+
+	private static long parse(final String ref, final int start, final int end) {
+		// 18 digits can't overflow a long
+		if (start == end || end - start > 18) {
+			throw new IllegalArgumentException("Illegal reference: " + ref);
+		}
+		long ret = 0;
+		for (int i = start; i < end; i++) {
+			final char c = ref.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new IllegalArgumentException("Illegal reference: " + ref);
+			}
+			ret = ret * 10 + (c - '0');
+		}
+		return ret;
+	}
+
+	/** Count a reference.
+	 * @param workspaceID the workspace ID of the referenced object.
+	 * @param objectID the object ID of the referenced object.
+	 * @param version the version of the referenced object.
+	 */
+	public void add(final long workspaceID, final long objectID, final int version) {
+		if (workspaceID < 1 || objectID < 1 || version < 1) {
+			throw new IllegalArgumentException("All arguments must be > 0");
+		}
+		final int slot = find(workspaceIDs, objectIDs, versions, workspaceID, objectID, version);
+		if (versions[slot] != 0) {
+			counts[slot]++;
+			return;
+		}
+		workspaceIDs[slot] = workspaceID;
+		objectIDs[slot] = objectID;
+		versions[slot] = version;
+		counts[slot] = 1;
+		size++;
+		if (size * 2 > versions.length) {
+			resize();
+		}
+	}
+
+	// returns the slot containing the key, or the empty slot where it should be inserted
+	private static int find(
+			final long[] wsids,
+			final long[] objids,
+			final int[] vers,
+			final long workspaceID,
+			final long objectID,
+			final int version) {
+		final int mask = vers.length - 1;
+		int slot = hash(workspaceID, objectID, version) & mask;
+		while (vers[slot] != 0 && (vers[slot] != version || objids[slot] != objectID ||
+				wsids[slot] != workspaceID)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static int hash(final long workspaceID, final long objectID, final int version) {
+		long h = workspaceID * 0x9E3779B97F4A7C15L;
+		h = (h ^ objectID) * 0xC2B2AE3D27D4EB4FL;
+		h = (h ^ version) * 0x165667B19E3779F9L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private void resize() {
+		final long[] oldws = workspaceIDs;
+		final long[] oldobj = objectIDs;
+		final int[] oldver = versions;
+		final int[] oldcount = counts;
+		allocate(oldver.length * 2);
+		for (int i = 0; i < oldver.length; i++) {
+			if (oldver[i] != 0) {
+				final int slot = find(workspaceIDs, objectIDs, versions,
+						oldws[i], oldobj[i], oldver[i]);
+				workspaceIDs[slot] = oldws[i];
+				objectIDs[slot] = oldobj[i];
+				versions[slot] = oldver[i];
+				counts[slot] = oldcount[i];
+			}
+		}
+	}
+
+	/** Get the number of distinct references counted.
+	 * @return the number of references.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/** Get the count for a reference.
+	 * @param workspaceID the workspace ID of the referenced object.
+	 * @param objectID the object ID of the referenced object.
+	 * @param version the version of the referenced object.
+	 * @return the number of times the reference was counted.
+	 */
+	public int getCount(final long workspaceID, final long objectID, final int version) {
+		if (version < 1) {
+			return 0;
+		}
+		final int slot = find(workspaceIDs, objectIDs, versions, workspaceID, objectID, version);
+		return versions[slot] == 0 ? 0 : counts[slot];
+	}
+
+	/** Get updates that increment the reference counts in the object collection by the counted
+	 * references.
+	 *
+	 * Since the versions and counts are usually heavily skewed towards 1, there is one update
+	 * per workspace, version, and count combination, matching the objects in the workspace
+	 * with an $in query.
+	 * @return the updates, suitable for a bulk write. The order of the updates is undefined.
+	 */
+	public List<WriteModel<Document>> toUpdates() {
+		final Map<UpdateKey, List<Long>> groups = new HashMap<>();
+		for (int i = 0; i < versions.length; i++) {
+			if (versions[i] != 0) {
+				groups.computeIfAbsent(
+						new UpdateKey(workspaceIDs[i], versions[i], counts[i]),
+						k -> new ArrayList<>()).add(objectIDs[i]);
+			}
+		}
+		final List<WriteModel<Document>> ret = new ArrayList<>(groups.size());
+		for (final Map.Entry<UpdateKey, List<Long>> e: groups.entrySet()) {
+			final UpdateKey k = e.getKey();
+			ret.add(new UpdateManyModel<>(
+					new Document(Fields.OBJ_WS_ID, k.workspaceID)
+							.append(Fields.OBJ_ID, new Document("$in", e.getValue())),
+					new Document("$inc", new Document(
+							Fields.OBJ_REFCOUNTS + "." + (k.version - 1), k.count))));
+		}
+		return ret;
+	}
+
+	private static class UpdateKey {
+
+		private final long workspaceID;
+		private final int version;
+		private final int count;
+
+		private UpdateKey(final long workspaceID, final int version, final int count) {
+			this.workspaceID = workspaceID;
+			this.version = version;
+			this.count = count;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + count;
+			result = prime * result + version;
+			result = prime * result + (int) (workspaceID ^ (workspaceID >>> 32));
+			return result;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			final UpdateKey other = (UpdateKey) obj;
+			return workspaceID == other.workspaceID && version == other.version &&
+					count == other.count;
+		}
+	}
+}
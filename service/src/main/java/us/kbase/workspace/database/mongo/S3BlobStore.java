@@ -4,13 +4,23 @@ import static java.util.Objects.requireNonNull;
 import static us.kbase.workspace.database.Util.checkString;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.bson.Document;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.mongodb.MongoException;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.IndexOptions;
@@ -32,6 +42,7 @@ import us.kbase.typedobj.core.MD5;
 import us.kbase.typedobj.core.Restreamable;
 import us.kbase.workspace.database.ByteArrayFileCacheManager;
 import us.kbase.workspace.database.ByteArrayFileCacheManager.ByteArrayFileCache;
+import us.kbase.workspace.database.ByteArrayFileCacheManager.RangeSink;
 import us.kbase.workspace.database.DependencyStatus;
 import us.kbase.workspace.database.mongo.exceptions.BlobStoreAuthorizationException;
 import us.kbase.workspace.database.mongo.exceptions.BlobStoreCommunicationException;
@@ -55,12 +66,23 @@ public class S3BlobStore implements BlobStore {
 		UUID randomUUID();
 	}
 	
+	// the maximum number of threads reading ranges for all reads. Each read also reads ranges
+	// in the calling thread, and reads all the remaining ranges there when all threads are busy
+	private static final int MAX_RANGED_READ_THREADS = 100;
+	
 	private final MongoCollection<Document> col;
 	private final S3ClientWithPresign s3;
 	private final String bucket;
 	private final UUIDGen uuidGen;
+	private final S3TransferConfig transfer;
+	// reads ranges for all ranged reads. Each read limits its own concurrency
+	private final ExecutorService rangedReads = new ThreadPoolExecutor(
+			0, MAX_RANGED_READ_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+			new ThreadFactoryBuilder().setDaemon(true)
+					.setNameFormat("ws-s3-ranged-read-%d").build());
 	
-	/** Create the blob store.
+	/** Create the blob store. Objects are uploaded to S3 in a single request and read as a single
+	 * stream.
 	 * @param mongoCollection the MongoDB collection in which the blob store will store records.
 	 * @param s3 the S3 client.
 	 * @param bucket the name of the bucket in which files will be stored.
@@ -72,7 +94,24 @@ public class S3BlobStore implements BlobStore {
 			final S3ClientWithPresign s3,
 			final String bucket)
 			throws BlobStoreCommunicationException, IllegalArgumentException {
-		this(mongoCollection, s3, bucket, new UUIDGen() {
+		this(mongoCollection, s3, bucket, S3TransferConfig.getBuilder().build());
+	}
+	
+	/** Create the blob store.
+	 * @param mongoCollection the MongoDB collection in which the blob store will store records.
+	 * @param s3 the S3 client.
+	 * @param bucket the name of the bucket in which files will be stored.
+	 * @param transferConfig the configuration for multipart uploads and ranged reads.
+	 * @throws BlobStoreCommunicationException if an error occurs contacting the S3 backend.
+	 * @throws IllegalArgumentException if the bucket name is illegal.
+	 */
+	public S3BlobStore(
+			final MongoCollection<Document> mongoCollection,
+			final S3ClientWithPresign s3,
+			final String bucket,
+			final S3TransferConfig transferConfig)
+			throws BlobStoreCommunicationException, IllegalArgumentException {
+		this(mongoCollection, s3, bucket, transferConfig, new UUIDGen() {
 			@Override
 			public UUID randomUUID() {
 				return UUID.randomUUID();
@@ -90,6 +129,21 @@ public class S3BlobStore implements BlobStore {
 			final String bucket,
 			final UUIDGen uuidGen)
 			throws BlobStoreCommunicationException, IllegalArgumentException {
+		this(mongoCollection, s3, bucket, S3TransferConfig.getBuilder().build(), uuidGen);
+	}
+	
+	/** This constructor is to be used only for unit testing, as it allows mocking the UUID
+	 * generator. It is otherwise equivalent to
+	 * {@link #S3BlobStore(MongoCollection, S3ClientWithPresign, String, S3TransferConfig)}.
+	 */
+	public S3BlobStore(
+			final MongoCollection<Document> mongoCollection,
+			final S3ClientWithPresign s3,
+			final String bucket,
+			final S3TransferConfig transferConfig,
+			final UUIDGen uuidGen)
+			throws BlobStoreCommunicationException, IllegalArgumentException {
+		this.transfer = requireNonNull(transferConfig, "transferConfig");
 		this.uuidGen = uuidGen;
 		this.col = requireNonNull(mongoCollection, "mongoCollection");
 		this.s3 = requireNonNull(s3, "s3");
@@ -142,10 +196,20 @@ public class S3BlobStore implements BlobStore {
 			//go ahead, need to save
 		}
 		final String key = toS3Key(uuidGen.randomUUID());
+		final String expectedETag;
 		try {
-			s3.presignAndPutObject(
-					PutObjectRequest.builder().bucket(bucket).key(key).build(),
-					data);
+			final long partSize = transfer.getMultipartPartSize();
+			if (partSize > 0 && data.getSize() > partSize) {
+				// the ETag of a multipart upload is not the object MD5. The object MD5 is
+				// recorded in the mongo record only.
+				expectedETag = s3.putObjectMultipart(
+						bucket, key, data, partSize, transfer.getMultipartConcurrency());
+			} else {
+				s3.presignAndPutObject(
+						PutObjectRequest.builder().bucket(bucket).key(key).build(),
+						data);
+				expectedETag = md5.getMD5();
+			}
 		} catch (IOException e) {
 			throw new BlobStoreCommunicationException("S3 error: " + e.getMessage(), e);
 		}
@@ -154,7 +218,7 @@ public class S3BlobStore implements BlobStore {
 					.bucket(bucket)
 					.key(key)
 					.build());
-			if (!obj.eTag().replace("\"", "").trim().equals(md5.getMD5())) {
+			if (!obj.eTag().replace("\"", "").trim().equals(expectedETag)) {
 				// add retry here if necessary
 				throw new BlobStoreCommunicationException("S3 upload corrupted, MD5s don't match");
 			}
@@ -203,9 +267,23 @@ public class S3BlobStore implements BlobStore {
 		final Document entry = getBlobEntry(requireNonNull(md5, "md5"));
 		final boolean sorted = entry.getBoolean(Fields.S3_SORTED);
 		final String key = entry.getString(Fields.S3_KEY);
+		final long rangeSize = transfer.getRangedReadSize();
+		final GetObjectRequest.Builder req = GetObjectRequest.builder().bucket(bucket).key(key);
+		if (rangeSize > 0) {
+			// the response for the first range provides the size of the object.
+			// Objects are always non-empty JSON, so the range is always satisfiable.
+			req.range(toRange(0, rangeSize));
+		}
 		try (final ResponseInputStream<GetObjectResponse> obj = s3.getClient().getObject(
-				GetObjectRequest.builder().bucket(bucket).key(key).build())) {
-			return bafcMan.createBAFC(obj, true, sorted);
+				req.build())) {
+			final long size = rangeSize > 0 ? getObjectSize(obj.response()) : -1;
+			if (size <= rangeSize) {
+				// the response contains the entire object
+				final Long length = obj.response().contentLength();
+				return length == null ? bafcMan.createBAFC(obj, true, sorted) :
+					bafcMan.createBAFC(obj, length, true, sorted);
+			}
+			return bafcMan.createBAFC(size, sink -> readRanges(sink, key, obj, size), true, sorted);
 		} catch (NoSuchKeyException e) {
 			throw new BlobStoreCommunicationException(
 					"Inconsistent MongoDB and S3 records for MD5 " + md5.getMD5(), e);
@@ -218,6 +296,103 @@ public class S3BlobStore implements BlobStore {
 		}
 	}
 
+	private static String toRange(final long start, final long length) {
+		return "bytes=" + start + "-" + (start + length - 1);
+	}
+	
+	// returns -1 if the response contains the entire object
+	private static long getObjectSize(final GetObjectResponse res) throws IOException {
+		final String range = res.contentRange();
+		if (range == null) {
+			// the server ignored the range header
+			return -1;
+		}
+		// see https://www.rfc-editor.org/rfc/rfc9110#field.content-range
+		try {
+			return Long.parseLong(range.substring(range.lastIndexOf('/') + 1).trim());
+		} catch (NumberFormatException e) {
+			throw new IOException("Unexpected content range from S3: " + range, e);
+		}
+	}
+	
+	private void readRanges(
+			final RangeSink sink,
+			final String key,
+			final InputStream firstRange,
+			final long size)
+			throws IOException {
+		final long rangeSize = transfer.getRangedReadSize();
+		final AtomicBoolean failed = new AtomicBoolean();
+		final List<Callable<Void>> tasks = new ArrayList<>();
+		tasks.add(skipOnFailure(failed, () -> sink.write(0, firstRange, rangeSize)));
+		for (long start = rangeSize; start < size; start += rangeSize) {
+			final long st = start;
+			final long length = Math.min(rangeSize, size - start);
+			tasks.add(skipOnFailure(failed, () -> readRange(sink, key, st, length, size)));
+		}
+		try {
+			ParallelTasks.run(tasks, rangedReads, transfer.getRangedReadConcurrency());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading object ranges", e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause; // includes SdkExceptions
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw new RuntimeException("Unexpected error", cause);
+			}
+		}
+	}
+	
+	private void readRange(
+			final RangeSink sink,
+			final String key,
+			final long start,
+			final long length,
+			final long size)
+			throws IOException {
+		try (final ResponseInputStream<GetObjectResponse> obj = s3.getClient().getObject(
+				GetObjectRequest.builder()
+						.bucket(bucket)
+						.key(key)
+						.range(toRange(start, length))
+						.build())) {
+			final String expected = String.format(
+					"bytes %s-%s/%s", start, start + length - 1, size);
+			if (!expected.equals(obj.response().contentRange())) {
+				throw new IOException(String.format(
+						"Unexpected content range from S3, expected %s: %s",
+						expected, obj.response().contentRange()));
+			}
+			sink.write(start, obj, length);
+		}
+	}
+	
+	private interface RangeTask {
+		
+		void run() throws IOException;
+	}
+	
+	// once any task fails, tasks that haven't started yet do nothing
+	private static Callable<Void> skipOnFailure(final AtomicBoolean failed, final RangeTask task) {
+		return () -> {
+			if (!failed.get()) {
+				try {
+					task.run();
+				} catch (IOException | RuntimeException | Error e) {
+					failed.set(true);
+					throw e;
+				}
+			}
+			return null;
+		};
+	}
+
 	@Override
 	public void removeBlob(final MD5 md5)
 			throws BlobStoreAuthorizationException, BlobStoreCommunicationException {
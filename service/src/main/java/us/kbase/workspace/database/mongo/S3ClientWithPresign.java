@@ -4,6 +4,7 @@ import static java.util.Objects.requireNonNull;
 import static us.kbase.workspace.database.Util.checkString;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
@@ -13,8 +14,24 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
 
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPut;
@@ -30,23 +47,34 @@ import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.ssl.SSLContextBuilder;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.core.internal.http.loader.DefaultSdkHttpClientBuilder;
 import software.amazon.awssdk.http.SdkHttpConfigurationOption;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 import software.amazon.awssdk.utils.AttributeMap;
 import us.kbase.typedobj.core.Restreamable;
 
-/** An S3 client that wraps the standard Amazon supplied S3 client and provides a method to
- * upload files using a presigned URL and standard http streaming.
+/** An S3 client that wraps the standard Amazon supplied S3 client and provides methods to
+ * upload files using a presigned URL and standard http streaming or as a multipart upload.
  * 
  * See https://github.com/aws/aws-sdk-java-v2/issues/849
  * @author gaprice@lbl.gov
@@ -57,9 +85,24 @@ public class S3ClientWithPresign {
 	// this isolates code that can't easily be mocked from the rest of the S3 blobstore.
 	// all tests are in the S3BlobStore integration tests.
 	
+	/** The minimum size of a part, other than the last part, in a multipart upload. */
+	public static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+	
+	/** The maximum size of a part in a multipart upload. Parts are held in memory, so this is
+	 * smaller than the S3 limit.
+	 */
+	public static final long MAX_PART_SIZE = 1024L * 1024 * 1024;
+	
+	/** The maximum number of parts in a multipart upload. */
+	public static final int MAX_PARTS = 10000;
+	
 	private final S3Client client;
 	private final S3Presigner presigner;
 	private final CloseableHttpClient httpClient;
+	// uploads parts for all multipart uploads. Each upload limits its own concurrency
+	private final ExecutorService partUploads = Executors.newCachedThreadPool(
+			new ThreadFactoryBuilder().setDaemon(true)
+					.setNameFormat("ws-s3-part-upload-%d").build());
 	
 	/** Construct the client.
 	 * @param host the host the client will interact with. Schema must be http or https.
@@ -84,7 +127,7 @@ public class S3ClientWithPresign {
 				.serviceConfiguration(
 						S3Configuration.builder().pathStyleAccessEnabled(true).build())
 				.build();
-		// the client is not actually used in the code here, but might as well build and provide
+		// the client is only used here for multipart uploads, but might as well build and provide
 		// it here, as all the info needed to build it is required for the presigner
 		this.client = S3Client.builder()
 				.region(region)
@@ -209,4 +252,253 @@ public class S3ClientWithPresign {
 		}
 	}
 
+	/** Load an object to S3 as a multipart upload, uploading parts concurrently.
+	 * 
+	 * The object is read once, sequentially, into part sized buffers, and each buffer is
+	 * uploaded by a thread pool shared between uploads. The MD5 of each part is sent with the
+	 * part so S3 can verify the part contents. At most concurrency buffers are used for the
+	 * upload, so up to partSize * concurrency bytes of memory may be used. Reading the object
+	 * waits for a buffer to be free when all the buffers are uploading. The part ETags returned
+	 * by S3 are also checked against the part MD5s.
+	 * 
+	 * If the upload fails, the remainder of the object is not read, parts that have not yet
+	 * started uploading are skipped, and the multipart upload is aborted.
+	 * 
+	 * The bucket and key are not checked for correctness prior to the upload attempt.
+	 * @param bucket the bucket that will contain the object.
+	 * @param key the object key.
+	 * @param object the object data. {@link Restreamable#getInputStream()} is called once.
+	 * @param partSize the size of each part, other than the last part, in bytes. Must be no
+	 * more than {@link #MAX_PART_SIZE}.
+	 * @param concurrency the maximum number of parts to upload at once.
+	 * @return the ETag S3 will report for the completed object. Note that this is not the MD5
+	 * of the object.
+	 * @throws IOException if an error occurs.
+	 */
+	public String putObjectMultipart(
+			final String bucket,
+			final String key,
+			final Restreamable object,
+			final long partSize,
+			final int concurrency)
+			throws IOException {
+		checkString(bucket, "bucket");
+		checkString(key, "key");
+		requireNonNull(object, "object");
+		if (partSize < MIN_PART_SIZE) {
+			throw new IllegalArgumentException("partSize must be at least " + MIN_PART_SIZE);
+		}
+		if (partSize > MAX_PART_SIZE) {
+			throw new IllegalArgumentException("partSize must be at most " + MAX_PART_SIZE);
+		}
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("concurrency must be > 0");
+		}
+		final long size = object.getSize();
+		final long partCount = Math.max(1, (size + partSize - 1) / partSize);
+		if (partCount > MAX_PARTS) {
+			throw new IllegalArgumentException(String.format(
+					"Object of size %s requires more than %s parts with part size %s",
+					size, MAX_PARTS, partSize));
+		}
+		final String uploadID;
+		try {
+			uploadID = client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+					.bucket(bucket).key(key).build()).uploadId();
+		} catch (SdkException e) {
+			throw new IOException("Error starting multipart upload: " + e.getMessage(), e);
+		}
+		final AtomicBoolean failed = new AtomicBoolean();
+		final Buffers buffers = new Buffers(
+				(int) Math.min(concurrency, partCount), (int) Math.min(partSize, size));
+		final List<Future<PartResult>> futures = new ArrayList<>();
+		try {
+			try (final InputStream is = object.getInputStream()) {
+				for (int i = 0; i < partCount && !failed.get(); i++) {
+					final int length = (int) Math.min(partSize, size - i * partSize);
+					final byte[] buffer = buffers.take();
+					try {
+						IOUtils.readFully(is, buffer, 0, length);
+					} catch (IOException | RuntimeException e) {
+						buffers.release(buffer);
+						throw e;
+					}
+					futures.add(partUploads.submit(new PartUploadCallable(
+							bucket, key, uploadID, i + 1, buffer, length, buffers, failed)));
+				}
+			}
+			final List<PartResult> results = new ArrayList<>();
+			for (final Future<PartResult> f: futures) {
+				results.add(f.get());
+			}
+			final List<CompletedPart> parts = new ArrayList<>();
+			final byte[] digests = new byte[results.size() * 16];
+			for (int i = 0; i < results.size(); i++) {
+				parts.add(results.get(i).part);
+				System.arraycopy(results.get(i).md5, 0, digests, i * 16, 16);
+			}
+			client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+					.bucket(bucket)
+					.key(key)
+					.uploadId(uploadID)
+					.multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+					.build());
+			// see https://docs.aws.amazon.com/AmazonS3/latest/userguide/checking-object-integrity.html
+			return DigestUtils.md5Hex(digests) + "-" + results.size();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			abortMultipart(bucket, key, uploadID);
+			throw new IOException("Interrupted while uploading parts", e);
+		} catch (IOException e) {
+			// reading the object failed
+			abortMultipart(bucket, key, uploadID);
+			throw e;
+		} catch (ExecutionException e) {
+			abortMultipart(bucket, key, uploadID);
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof SdkException) {
+				throw new IOException("Error uploading part: " + cause.getMessage(), cause);
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw new RuntimeException("Unexpected error", cause);
+			}
+		} catch (SdkException e) {
+			abortMultipart(bucket, key, uploadID);
+			throw new IOException("Error completing multipart upload: " + e.getMessage(), e);
+		} finally {
+			// no op for completed uploads
+			failed.set(true);
+			for (final Future<PartResult> f: futures) {
+				f.cancel(true);
+			}
+		}
+	}
+	
+	/* The part buffers for a single upload. Buffers are allocated as needed, up to the
+	 * maximum count, and are reused once their part is uploaded.
+	 */
+	private static class Buffers {
+		
+		private final BlockingQueue<byte[]> free;
+		private final int maxCount;
+		private final int size;
+		private int allocated = 0;
+		
+		private Buffers(final int maxCount, final int size) {
+			this.free = new ArrayBlockingQueue<>(maxCount);
+			this.maxCount = maxCount;
+			this.size = size;
+		}
+		
+		// only called by the thread reading the object
+		private byte[] take() throws InterruptedException {
+			final byte[] b = free.poll();
+			if (b != null) {
+				return b;
+			}
+			if (allocated < maxCount) {
+				allocated++;
+				return new byte[size];
+			}
+			return free.take();
+		}
+		
+		private void release(final byte[] buffer) {
+			free.add(buffer);
+		}
+	}
+	
+	private void abortMultipart(final String bucket, final String key, final String uploadID) {
+		try {
+			client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+					.bucket(bucket).key(key).uploadId(uploadID).build());
+		} catch (SdkException e) {
+			// the original error is more important. S3 lifecycle rules can clean up
+			// the orphaned parts.
+		}
+	}
+	
+	private static class PartResult {
+		
+		private final CompletedPart part;
+		private final byte[] md5;
+		
+		private PartResult(final CompletedPart part, final byte[] md5) {
+			this.part = part;
+			this.md5 = md5;
+		}
+	}
+	
+	private class PartUploadCallable implements Callable<PartResult> {
+		
+		private final String bucket;
+		private final String key;
+		private final String uploadID;
+		private final int partNumber;
+		private final byte[] buffer;
+		private final int length;
+		private final Buffers buffers;
+		private final AtomicBoolean failed;
+		
+		private PartUploadCallable(
+				final String bucket,
+				final String key,
+				final String uploadID,
+				final int partNumber,
+				final byte[] buffer,
+				final int length,
+				final Buffers buffers,
+				final AtomicBoolean failed) {
+			this.bucket = bucket;
+			this.key = key;
+			this.uploadID = uploadID;
+			this.partNumber = partNumber;
+			this.buffer = buffer;
+			this.length = length;
+			this.buffers = buffers;
+			this.failed = failed;
+		}
+		
+		@Override
+		public PartResult call() throws Exception {
+			try {
+				if (failed.get()) {
+					return null; // the result is never used
+				}
+				final MessageDigest digest = DigestUtils.getMd5Digest();
+				digest.update(buffer, 0, length);
+				final byte[] md5 = digest.digest();
+				// the data is in memory with a known size, so the standard client can be used
+				// here rather than a presigned url. The stream avoids copying the buffer.
+				final UploadPartResponse res = client.uploadPart(UploadPartRequest.builder()
+								.bucket(bucket)
+								.key(key)
+								.uploadId(uploadID)
+								.partNumber(partNumber)
+								.contentLength((long) length)
+								.contentMD5(Base64.getEncoder().encodeToString(md5))
+								.build(),
+						RequestBody.fromInputStream(
+								new ByteArrayInputStream(buffer, 0, length), length));
+				final String md5hex = Hex.encodeHexString(md5);
+				if (!res.eTag().replace("\"", "").trim().equals(md5hex)) {
+					throw new IOException(String.format(
+							"S3 upload of part %s corrupted, MD5s don't match", partNumber));
+				}
+				return new PartResult(CompletedPart.builder()
+						.partNumber(partNumber).eTag(res.eTag()).build(), md5);
+			} catch (Exception | Error e) {
+				failed.set(true);
+				throw e;
+			} finally {
+				buffers.release(buffer);
+			}
+		}
+	}
+
 }
@@ -0,0 +1,153 @@
+package us.kbase.workspace.database.mongo;
+
+/** Configuration for how the {@link S3BlobStore} transfers data to and from S3.
+ *
+ * By default, objects are uploaded in a single request and downloaded as a single stream.
+ */
+public class S3TransferConfig {
+
+	private final long multipartPartSize;
+	private final int multipartConcurrency;
+	private final long rangedReadSize;
+	private final int rangedReadConcurrency;
+
+	private S3TransferConfig(
+			final long multipartPartSize,
+			final int multipartConcurrency,
+			final long rangedReadSize,
+			final int rangedReadConcurrency) {
+		this.multipartPartSize = multipartPartSize;
+		this.multipartConcurrency = multipartConcurrency;
+		this.rangedReadSize = rangedReadSize;
+		this.rangedReadConcurrency = rangedReadConcurrency;
+	}
+
+	/** Get the size of the parts of a multipart upload. Objects larger than this size are
+	 * uploaded in parts.
+	 * @return the part size in bytes, or 0 if multipart uploads are disabled.
+	 */
+	public long getMultipartPartSize() {
+		return multipartPartSize;
+	}
+
+	/** Get the maximum number of parts of a single object to upload concurrently.
+	 * @return the maximum concurrent parts.
+	 */
+	public int getMultipartConcurrency() {
+		return multipartConcurrency;
+	}
+
+	/** Get the size of the byte ranges fetched when reading an object. Objects larger than this
+	 * size are read in ranges.
+	 * @return the range size in bytes, or 0 if ranged reads are disabled.
+	 */
+	public long getRangedReadSize() {
+		return rangedReadSize;
+	}
+
+	/** Get the maximum number of ranges of a single object to read concurrently.
+	 * @return the maximum concurrent ranges.
+	 */
+	public int getRangedReadConcurrency() {
+		return rangedReadConcurrency;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + multipartConcurrency;
+		result = prime * result + (int) (multipartPartSize ^ (multipartPartSize >>> 32));
+		result = prime * result + rangedReadConcurrency;
+		result = prime * result + (int) (rangedReadSize ^ (rangedReadSize >>> 32));
+		return result;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		final S3TransferConfig other = (S3TransferConfig) obj;
+		return multipartConcurrency == other.multipartConcurrency
+				&& multipartPartSize == other.multipartPartSize
+				&& rangedReadConcurrency == other.rangedReadConcurrency
+				&& rangedReadSize == other.rangedReadSize;
+	}
+
+	/** Get a builder for a {@link S3TransferConfig}.
+	 * @return the builder.
+	 */
+	public static Builder getBuilder() {
+		return new Builder();
+	}
+
+	/** A builder for a {@link S3TransferConfig}. */
+	public static class Builder {
+
+		private long multipartPartSize = 0;
+		private int multipartConcurrency = 1;
+		private long rangedReadSize = 0;
+		private int rangedReadConcurrency = 1;
+
+		private Builder() {}
+
+		/** Upload objects larger than the part size as multipart uploads.
+		 * @param partSize the size of the parts, in bytes, of a multipart upload. Must be at
+		 * least {@link S3ClientWithPresign#MIN_PART_SIZE} and at most
+		 * {@link S3ClientWithPresign#MAX_PART_SIZE}, or 0 to never use multipart uploads.
+		 * @param concurrency the maximum number of parts of a single object to upload at once.
+		 * Note that each concurrent part is held in memory.
+		 * @return this builder.
+		 */
+		public Builder withMultipartUpload(final long partSize, final int concurrency) {
+			if (partSize != 0 && partSize < S3ClientWithPresign.MIN_PART_SIZE) {
+				throw new IllegalArgumentException("multipartPartSize must be 0 or at least " +
+						S3ClientWithPresign.MIN_PART_SIZE);
+			}
+			if (partSize > S3ClientWithPresign.MAX_PART_SIZE) {
+				throw new IllegalArgumentException("multipartPartSize must be at most " +
+						S3ClientWithPresign.MAX_PART_SIZE);
+			}
+			this.multipartPartSize = partSize;
+			this.multipartConcurrency = checkConcurrency(concurrency, "multipartConcurrency");
+			return this;
+		}
+
+		/** Read objects larger than the range size with concurrent ranged reads.
+		 * @param rangeSize the size of the byte ranges, in bytes, to read. Must be > 0, or 0 to
+		 * never use ranged reads.
+		 * @param concurrency the maximum number of ranges of a single object to read at once.
+		 * @return this builder.
+		 */
+		public Builder withRangedRead(final long rangeSize, final int concurrency) {
+			if (rangeSize < 0) {
+				throw new IllegalArgumentException("rangedReadSize must be >= 0");
+			}
+			this.rangedReadSize = rangeSize;
+			this.rangedReadConcurrency = checkConcurrency(concurrency, "rangedReadConcurrency");
+			return this;
+		}
+
+		private int checkConcurrency(final int concurrency, final String name) {
+			if (concurrency < 1) {
+				throw new IllegalArgumentException(name + " must be > 0");
+			}
+			return concurrency;
+		}
+
+		/** Build the configuration.
+		 * @return the configuration.
+		 */
+		public S3TransferConfig build() {
+			return new S3TransferConfig(multipartPartSize, multipartConcurrency,
+					rangedReadSize, rangedReadConcurrency);
+		}
+	}
+}
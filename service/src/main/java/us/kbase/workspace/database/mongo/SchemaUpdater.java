@@ -103,6 +103,49 @@ public class SchemaUpdater {
 		}
 	}
 	
+	/** Populate the latest object version collection, which holds the latest version of each
+	 * object and is used to speed up listing objects. Creates the workspace indexes, including
+	 * the latest version collection indexes, in the foreground.
+	 * 
+	 * The backfill may run while workspace servers are writing to the database, but in that
+	 * case may miss objects that are hidden or deleted while the backfill runs. Once the
+	 * backfill is complete and the servers are stopped, run it again with the complete
+	 * parameter set to true, and then restart the servers. Servers only use the collection
+	 * if it is marked complete when they start.
+	 * 
+	 * WARNING: Do NOT set the complete parameter to true if other processes may be altering
+	 * the database while the backfill occurs.
+	 * 
+	 * @param db the database to update.
+	 * @param logger a logger to which the updater can write messages.
+	 * @param complete mark the latest version collection as complete in the mongo database.
+	 * Only set to true if no other connection to the database are in use while the updater
+	 * runs.
+	 * @return the number of objects processed.
+	 * @throws SchemaUpdateException if the backfill fails.
+	 */
+	public long backfillLatestVersions(
+			final MongoDatabase db,
+			final Consumer<String> logger,
+			final boolean complete)
+			throws SchemaUpdateException {
+		final Optional<Integer> schemaVer = setUp(db, logger, true);
+		if (!schemaVer.isPresent()) {
+			return 0; // nothing to update, the workspace has never been started for this DB.
+		}
+		if (schemaVer.get() < MongoWorkspaceDB.SCHEMA_VERSION) {
+			throw new SchemaUpdateException(String.format(
+					"Current DB schema version is %s. Update the schema to version %s before " +
+					"populating the latest version collection.",
+					schemaVer.get(), MongoWorkspaceDB.SCHEMA_VERSION));
+		}
+		try {
+			return LatestVersions.backfill(db, logger, complete);
+		} catch (MongoException e) {
+			throw new SchemaUpdateException("Failed to contact database", e);
+		}
+	}
+	
 	private static Optional<Integer> setUp(
 			final MongoDatabase db,
 			final Consumer<String> logger,
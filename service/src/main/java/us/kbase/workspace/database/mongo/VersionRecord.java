@@ -0,0 +1,378 @@
+package us.kbase.workspace.database.mongo;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+
+/** The informational fields of a workspace object version document. Decoded directly from
+ * BSON by {@link VersionRecordCodec}, which avoids converting the document to a map.
+ *
+ * Fields that were not included in the query projection have their default values - 0 for
+ * numbers, null for strings and the save date, and empty maps for metadata.
+ */
+public class VersionRecord {
+
+	private final long workspaceID;
+	private final long objectID;
+	private final int version;
+	private final String typeName;
+	private final int typeMajorVersion;
+	private final int typeMinorVersion;
+	private final Instant savedDate;
+	private final String savedBy;
+	private final String checksum;
+	private final long size;
+	private final Map<String, String> metadata;
+	private final Map<String, String> adminMetadata;
+
+	private VersionRecord(
+			final long workspaceID,
+			final long objectID,
+			final int version,
+			final String typeName,
+			final int typeMajorVersion,
+			final int typeMinorVersion,
+			final Instant savedDate,
+			final String savedBy,
+			final String checksum,
+			final long size,
+			final Map<String, String> metadata,
+			final Map<String, String> adminMetadata) {
+		this.workspaceID = workspaceID;
+		this.objectID = objectID;
+		this.version = version;
+		this.typeName = typeName;
+		this.typeMajorVersion = typeMajorVersion;
+		this.typeMinorVersion = typeMinorVersion;
+		this.savedDate = savedDate;
+		this.savedBy = savedBy;
+		this.checksum = checksum;
+		this.size = size;
+		this.metadata = metadata;
+		this.adminMetadata = adminMetadata;
+	}
+
+	/** Get the ID of the workspace containing the object.
+	 * @return the workspace ID.
+	 */
+	public long getWorkspaceID() {
+		return workspaceID;
+	}
+
+	/** Get the ID of the object.
+	 * @return the object ID.
+	 */
+	public long getObjectID() {
+		return objectID;
+	}
+
+	/** Get the version of the object.
+	 * @return the version.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/** Get the name of the object's type.
+	 * @return the type name.
+	 */
+	public String getTypeName() {
+		return typeName;
+	}
+
+	/** Get the major version of the object's type.
+	 * @return the major version.
+	 */
+	public int getTypeMajorVersion() {
+		return typeMajorVersion;
+	}
+
+	/** Get the minor version of the object's type.
+	 * @return the minor version.
+	 */
+	public int getTypeMinorVersion() {
+		return typeMinorVersion;
+	}
+
+	/** Get the date the object version was saved.
+	 * @return the save date.
+	 */
+	public Instant getSavedDate() {
+		return savedDate;
+	}
+
+	/** Get the name of the user that saved the object version.
+	 * @return the user name.
+	 */
+	public String getSavedBy() {
+		return savedBy;
+	}
+
+	/** Get the MD5 checksum of the object data.
+	 * @return the checksum.
+	 */
+	public String getChecksum() {
+		return checksum;
+	}
+
+	/** Get the size of the object data.
+	 * @return the size in bytes.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/** Get the user metadata for the object version.
+	 * @return the metadata.
+	 */
+	public Map<String, String> getMetadata() {
+		return metadata;
+	}
+
+	/** Get the administrative metadata for the object version.
+	 * @return the metadata.
+	 */
+	public Map<String, String> getAdminMetadata() {
+		return adminMetadata;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((adminMetadata == null) ? 0 : adminMetadata.hashCode());
+		result = prime * result + ((checksum == null) ? 0 : checksum.hashCode());
+		result = prime * result + ((metadata == null) ? 0 : metadata.hashCode());
+		result = prime * result + (int) (objectID ^ (objectID >>> 32));
+		result = prime * result + ((savedBy == null) ? 0 : savedBy.hashCode());
+		result = prime * result + ((savedDate == null) ? 0 : savedDate.hashCode());
+		result = prime * result + (int) (size ^ (size >>> 32));
+		result = prime * result + typeMajorVersion;
+		result = prime * result + typeMinorVersion;
+		result = prime * result + ((typeName == null) ? 0 : typeName.hashCode());
+		result = prime * result + version;
+		result = prime * result + (int) (workspaceID ^ (workspaceID >>> 32));
+		return result;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		final VersionRecord other = (VersionRecord) obj;
+		if (adminMetadata == null) {
+			if (other.adminMetadata != null) {
+				return false;
+			}
+		} else if (!adminMetadata.equals(other.adminMetadata)) {
+			return false;
+		}
+		if (checksum == null) {
+			if (other.checksum != null) {
+				return false;
+			}
+		} else if (!checksum.equals(other.checksum)) {
+			return false;
+		}
+		if (metadata == null) {
+			if (other.metadata != null) {
+				return false;
+			}
+		} else if (!metadata.equals(other.metadata)) {
+			return false;
+		}
+		if (objectID != other.objectID) {
+			return false;
+		}
+		if (savedBy == null) {
+			if (other.savedBy != null) {
+				return false;
+			}
+		} else if (!savedBy.equals(other.savedBy)) {
+			return false;
+		}
+		if (savedDate == null) {
+			if (other.savedDate != null) {
+				return false;
+			}
+		} else if (!savedDate.equals(other.savedDate)) {
+			return false;
+		}
+		if (size != other.size) {
+			return false;
+		}
+		if (typeMajorVersion != other.typeMajorVersion) {
+			return false;
+		}
+		if (typeMinorVersion != other.typeMinorVersion) {
+			return false;
+		}
+		if (typeName == null) {
+			if (other.typeName != null) {
+				return false;
+			}
+		} else if (!typeName.equals(other.typeName)) {
+			return false;
+		}
+		if (version != other.version) {
+			return false;
+		}
+		if (workspaceID != other.workspaceID) {
+			return false;
+		}
+		return true;
+	}
+
+	/** Get a builder for a {@link VersionRecord}.
+	 * @return the builder.
+	 */
+	public static Builder getBuilder() {
+		return new Builder();
+	}
+
+	/** A builder for a {@link VersionRecord}. No validation is performed, as the builder
+	 * is intended for decoding records from the database.
+	 */
+	public static class Builder {
+
+		private long workspaceID = 0;
+		private long objectID = 0;
+		private int version = 0;
+		private String typeName = null;
+		private int typeMajorVersion = 0;
+		private int typeMinorVersion = 0;
+		private Instant savedDate = null;
+		private String savedBy = null;
+		private String checksum = null;
+		private long size = 0;
+		private Map<String, String> metadata = Collections.emptyMap();
+		private Map<String, String> adminMetadata = Collections.emptyMap();
+
+		private Builder() {}
+
+		/** Set the workspace ID.
+		 * @param workspaceID the workspace ID.
+		 * @return this builder.
+		 */
+		public Builder withWorkspaceID(final long workspaceID) {
+			this.workspaceID = workspaceID;
+			return this;
+		}
+
+		/** Set the object ID.
+		 * @param objectID the object ID.
+		 * @return this builder.
+		 */
+		public Builder withObjectID(final long objectID) {
+			this.objectID = objectID;
+			return this;
+		}
+
+		/** Set the object version.
+		 * @param version the version.
+		 * @return this builder.
+		 */
+		public Builder withVersion(final int version) {
+			this.version = version;
+			return this;
+		}
+
+		/** Set the name of the object's type.
+		 * @param typeName the type name.
+		 * @return this builder.
+		 */
+		public Builder withTypeName(final String typeName) {
+			this.typeName = typeName;
+			return this;
+		}
+
+		/** Set the major version of the object's type.
+		 * @param typeMajorVersion the major version.
+		 * @return this builder.
+		 */
+		public Builder withTypeMajorVersion(final int typeMajorVersion) {
+			this.typeMajorVersion = typeMajorVersion;
+			return this;
+		}
+
+		/** Set the minor version of the object's type.
+		 * @param typeMinorVersion the minor version.
+		 * @return this builder.
+		 */
+		public Builder withTypeMinorVersion(final int typeMinorVersion) {
+			this.typeMinorVersion = typeMinorVersion;
+			return this;
+		}
+
+		/** Set the date the object version was saved.
+		 * @param savedDate the save date.
+		 * @return this builder.
+		 */
+		public Builder withSavedDate(final Instant savedDate) {
+			this.savedDate = savedDate;
+			return this;
+		}
+
+		/** Set the name of the user that saved the object version.
+		 * @param savedBy the user name.
+		 * @return this builder.
+		 */
+		public Builder withSavedBy(final String savedBy) {
+			this.savedBy = savedBy;
+			return this;
+		}
+
+		/** Set the MD5 checksum of the object data.
+		 * @param checksum the checksum.
+		 * @return this builder.
+		 */
+		public Builder withChecksum(final String checksum) {
+			this.checksum = checksum;
+			return this;
+		}
+
+		/** Set the size of the object data.
+		 * @param size the size in bytes.
+		 * @return this builder.
+		 */
+		public Builder withSize(final long size) {
+			this.size = size;
+			return this;
+		}
+
+		/** Set the user metadata for the object version. The map is not copied.
+		 * @param metadata the metadata. Null is treated as an empty map.
+		 * @return this builder.
+		 */
+		public Builder withMetadata(final Map<String, String> metadata) {
+			this.metadata = metadata == null ? Collections.emptyMap() : metadata;
+			return this;
+		}
+
+		/** Set the administrative metadata for the object version. The map is not copied.
+		 * @param adminMetadata the metadata. Null is treated as an empty map.
+		 * @return this builder.
+		 */
+		public Builder withAdminMetadata(final Map<String, String> adminMetadata) {
+			this.adminMetadata = adminMetadata == null ?
+					Collections.emptyMap() : adminMetadata;
+			return this;
+		}
+
+		/** Build the record.
+		 * @return the record.
+		 */
+		public VersionRecord build() {
+			return new VersionRecord(workspaceID, objectID, version, typeName,
+					typeMajorVersion, typeMinorVersion, savedDate, savedBy, checksum, size,
+					metadata, adminMetadata);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package us.kbase.workspace.database.mongo;
+
+import static us.kbase.workspace.database.mongo.RecordCodecs.readInt;
+import static us.kbase.workspace.database.mongo.RecordCodecs.readLong;
+import static us.kbase.workspace.database.mongo.RecordCodecs.skipNull;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/** A codec that decodes workspace object version documents directly into
+ * {@link VersionRecord}s. Fields that are not part of the record are skipped without
+ * being decoded.
+ */
+public class VersionRecordCodec implements Codec<VersionRecord> {
+
+	@Override
+	public Class<VersionRecord> getEncoderClass() {
+		return VersionRecord.class;
+	}
+
+	@Override
+	public VersionRecord decode(final BsonReader reader, final DecoderContext context) {
+		final VersionRecord.Builder b = VersionRecord.getBuilder();
+		reader.readStartDocument();
+		while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			final String name = reader.readName();
+			if (skipNull(reader)) {
+				continue;
+			}
+			switch (name) {
+				case Fields.VER_WS_ID:
+					b.withWorkspaceID(readLong(reader));
+					break;
+				case Fields.VER_ID:
+					b.withObjectID(readLong(reader));
+					break;
+				case Fields.VER_VER:
+					b.withVersion(readInt(reader));
+					break;
+				case Fields.VER_TYPE_NAME:
+					b.withTypeName(reader.readString());
+					break;
+				case Fields.VER_TYPE_MAJOR_VERSION:
+					b.withTypeMajorVersion(readInt(reader));
+					break;
+				case Fields.VER_TYPE_MINOR_VERSION:
+					b.withTypeMinorVersion(readInt(reader));
+					break;
+				case Fields.VER_SAVEDATE:
+					b.withSavedDate(Instant.ofEpochMilli(reader.readDateTime()));
+					break;
+				case Fields.VER_SAVEDBY:
+					b.withSavedBy(reader.readString());
+					break;
+				case Fields.VER_CHKSUM:
+					b.withChecksum(reader.readString());
+					break;
+				case Fields.VER_SIZE:
+					b.withSize(readLong(reader));
+					break;
+				case Fields.VER_META:
+					b.withMetadata(readMetadata(reader));
+					break;
+				case Fields.VER_ADMINMETA:
+					b.withAdminMetadata(readMetadata(reader));
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.readEndDocument();
+		return b.build();
+	}
+
+	// metadata is stored as an array of key / value documents
+	private Map<String, String> readMetadata(final BsonReader reader) {
+		final Map<String, String> meta = new HashMap<>();
+		reader.readStartArray();
+		while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			String key = null;
+			String value = null;
+			reader.readStartDocument();
+			while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+				final String name = reader.readName();
+				if (skipNull(reader)) {
+					continue;
+				}
+				if (Fields.META_KEY.equals(name)) {
+					key = reader.readString();
+				} else if (Fields.META_VALUE.equals(name)) {
+					value = reader.readString();
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.readEndDocument();
+			meta.put(key, value);
+		}
+		reader.readEndArray();
+		return meta;
+	}
+
+	@Override
+	public void encode(
+			final BsonWriter writer,
+			final VersionRecord record,
+			final EncoderContext context) {
+		writer.writeStartDocument();
+		writer.writeInt64(Fields.VER_WS_ID, record.getWorkspaceID());
+		writer.writeInt64(Fields.VER_ID, record.getObjectID());
+		writer.writeInt32(Fields.VER_VER, record.getVersion());
+		writeString(writer, Fields.VER_TYPE_NAME, record.getTypeName());
+		writer.writeInt32(Fields.VER_TYPE_MAJOR_VERSION, record.getTypeMajorVersion());
+		writer.writeInt32(Fields.VER_TYPE_MINOR_VERSION, record.getTypeMinorVersion());
+		if (record.getSavedDate() == null) {
+			writer.writeNull(Fields.VER_SAVEDATE);
+		} else {
+			writer.writeDateTime(Fields.VER_SAVEDATE, record.getSavedDate().toEpochMilli());
+		}
+		writeString(writer, Fields.VER_SAVEDBY, record.getSavedBy());
+		writeString(writer, Fields.VER_CHKSUM, record.getChecksum());
+		writer.writeInt64(Fields.VER_SIZE, record.getSize());
+		writeMetadata(writer, Fields.VER_META, record.getMetadata());
+		writeMetadata(writer, Fields.VER_ADMINMETA, record.getAdminMetadata());
+		writer.writeEndDocument();
+	}
+
+	private void writeString(final BsonWriter writer, final String name, final String value) {
+		if (value == null) {
+			writer.writeNull(name);
+		} else {
+			writer.writeString(name, value);
+		}
+	}
+
+	private void writeMetadata(
+			final BsonWriter writer,
+			final String name,
+			final Map<String, String> meta) {
+		writer.writeStartArray(name);
+		for (final Entry<String, String> e: meta.entrySet()) {
+			writer.writeStartDocument();
+			writeString(writer, Fields.META_KEY, e.getKey());
+			writeString(writer, Fields.META_VALUE, e.getValue());
+			writer.writeEndDocument();
+		}
+		writer.writeEndArray();
+	}
+}
@@ -1,11 +1,17 @@
 package us.kbase.workspace.database.refsearch;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import us.kbase.workspace.database.Reference;
@@ -18,6 +24,29 @@ import us.kbase.workspace.database.Reference;
  */
 public class ReferenceGraphSearch {
 	
+	/** The strategy used to search the reference graph. */
+	public enum SearchMode {
+		
+		/** Each starting reference has its own search tree. A reference reached by more than
+		 * one tree is expanded once per tree, and every reference returned by the topology
+		 * provider counts toward the maximum search size, including references that terminate
+		 * the search.
+		 */
+		INDEPENDENT_TREES,
+		
+		/** The searches for all the starting references share a single set of visited
+		 * references, and so a reference is expanded at most once no matter how many searches
+		 * reach it. Only newly visited references count toward the maximum search size, and
+		 * references that terminate the search are found before the size is checked. If the
+		 * maximum search size is exceeded and exceptions are not thrown on failure, the search
+		 * continues with the newly visited references that fit within the maximum size.
+		 * 
+		 * A path is not necessarily the shortest path to the starting reference if the search
+		 * for that reference merged into the search for another reference.
+		 */
+		SHARED_FRONTIER;
+	}
+	
 	private final int maximumReferenceSearchCount;
 	private final Map<Reference, List<Reference>> paths = new HashMap<>();
 	private final ReferenceGraphTopologyProvider refProvider;
@@ -50,6 +79,37 @@ public class ReferenceGraphSearch {
 			final boolean throwExceptionOnFail)
 			throws ReferenceSearchFailedException, ReferenceSearchMaximumSizeExceededException,
 				ReferenceProviderException {
+		this(startingRefs, refProvider, maximumSearchSize, throwExceptionOnFail,
+				SearchMode.INDEPENDENT_TREES);
+	}
+	
+	/** Construct and perform a search in a reference graph from a set of target
+	 * references to references that meet the search termination criteria as provided by the
+	 * reference graph topology provider.
+	 * @param startingRefs the references from where the search starts. The search will proceed
+	 * through the reference graph until a reference is found that meets the termination criteria
+	 * or the search is exhausted.
+	 * @param refProvider provides access to the reference graph topology and termination criteria.
+	 * @param maximumSearchSize the maximum number of references to search through. If the search
+	 * exceeds this size an exception is thrown or the search is limited as described by the
+	 * search mode.
+	 * @param throwExceptionOnFail if a) a search ends without finding a reference that terminates
+	 * the search or b) the maximum search size is exceeded, immediately clear all data
+	 * and throw an exception containing the reference for which the search failed.
+	 * @param searchMode the strategy used to search the graph.
+	 * @throws ReferenceSearchMaximumSizeExceededException if the maximum search size is reached.
+	 * @throws ReferenceSearchFailedException if the reference search completed without meeting its
+	 * termination criteria.
+	 * @throws ReferenceProviderException if the reference provider threw and exception. 
+	 */
+	public ReferenceGraphSearch(
+			final Set<Reference> startingRefs,
+			final ReferenceGraphTopologyProvider refProvider,
+			final int maximumSearchSize,
+			final boolean throwExceptionOnFail,
+			final SearchMode searchMode)
+			throws ReferenceSearchFailedException, ReferenceSearchMaximumSizeExceededException,
+				ReferenceProviderException {
 		if (startingRefs == null || startingRefs.isEmpty()) {
 			throw new IllegalArgumentException("startingRefs cannot be null or empty");
 		}
@@ -59,10 +119,17 @@ public class ReferenceGraphSearch {
 		if (maximumSearchSize < 1) {
 			throw new IllegalArgumentException("maximumSearchSize must be > 0");
 		}
+		if (searchMode == null) {
+			throw new NullPointerException("searchMode");
+		}
 		this.refProvider = refProvider;
 		this.throwExceptionOnFail = throwExceptionOnFail;
 		maximumReferenceSearchCount = maximumSearchSize;
-		searchObjectDAG(startingRefs);
+		if (searchMode.equals(SearchMode.SHARED_FRONTIER)) {
+			searchSharedFrontier(startingRefs);
+		} else {
+			searchObjectDAG(startingRefs);
+		}
 	}
 	
 	private void searchObjectDAG(
@@ -106,6 +173,148 @@ public class ReferenceGraphSearch {
 		}
 	}
 
+	/* A reference visited by the shared frontier search. */
+	private static class SearchNode {
+		
+		private final Reference ref;
+		// the nodes from which this node was reached, e.g. nodes closer to the starting refs
+		private final List<SearchNode> children = new LinkedList<>();
+		// the path from a termination reference to this node, once one is found
+		private List<Reference> path = null;
+		
+		private SearchNode(final Reference ref) {
+			this.ref = ref;
+		}
+	}
+	
+	private void searchSharedFrontier(final Set<Reference> startingRefs)
+			throws ReferenceSearchFailedException, ReferenceSearchMaximumSizeExceededException,
+				ReferenceProviderException {
+		int refcount = startingRefs.size();
+		if (refCountExceeded(refcount)) {
+			return;
+		}
+		final Map<Reference, SearchNode> visited = new HashMap<>();
+		final Set<Reference> pending = new LinkedHashSet<>(startingRefs);
+		Set<Reference> frontier = new HashSet<>(startingRefs);
+		for (final Reference r: startingRefs) {
+			visited.put(r, new SearchNode(r));
+		}
+		while (!pending.isEmpty() && !frontier.isEmpty()) {
+			final Map<Reference, Map<Reference, Boolean>> res =
+					refProvider.getAssociatedReferences(frontier);
+			// find termination references before new references can exceed the search size
+			for (final Reference source: frontier) {
+				if (pending.isEmpty()) {
+					break;
+				}
+				final SearchNode node = visited.get(source);
+				if (node.path != null) {
+					continue;
+				}
+				for (final Entry<Reference, Boolean> e: getAdjacent(res, source).entrySet()) {
+					if (e.getValue()) {
+						completePaths(node,
+								Arrays.asList(e.getKey(), source), pending);
+						break;
+					}
+				}
+			}
+			final Map<Reference, SearchNode> discovered = new LinkedHashMap<>();
+			for (final Reference source: frontier) {
+				if (pending.isEmpty()) {
+					break;
+				}
+				final SearchNode node = visited.get(source);
+				if (node.path != null) {
+					continue;
+				}
+				for (final Entry<Reference, Boolean> e: getAdjacent(res, source).entrySet()) {
+					final Reference adj = e.getKey();
+					final SearchNode known = visited.containsKey(adj) ?
+							visited.get(adj) : discovered.get(adj);
+					if (known == null) {
+						final SearchNode newnode = new SearchNode(adj);
+						newnode.children.add(node);
+						discovered.put(adj, newnode);
+					} else {
+						// another search already reached the reference, so join that search
+						known.children.add(node);
+						if (known.path != null && node.path == null) {
+							completePaths(node, append(known.path, source), pending);
+						}
+					}
+				}
+			}
+			if (pending.isEmpty()) {
+				break;
+			}
+			refcount += discovered.size();
+			int allowed = discovered.size();
+			if (refCountExceeded(refcount)) {
+				// keep searching with the references that fit
+				allowed -= refcount - maximumReferenceSearchCount;
+				refcount = maximumReferenceSearchCount;
+			}
+			frontier = new HashSet<>();
+			for (final SearchNode n: discovered.values()) {
+				if (allowed-- < 1) {
+					break;
+				}
+				visited.put(n.ref, n);
+				frontier.add(n.ref);
+			}
+		}
+		if (throwExceptionOnFail && !pending.isEmpty()) {
+			throw new ReferenceSearchFailedException(pending.iterator().next());
+		}
+	}
+	
+	private Map<Reference, Boolean> getAdjacent(
+			final Map<Reference, Map<Reference, Boolean>> res,
+			final Reference source) {
+		final Map<Reference, Boolean> adj = res.get(source);
+		return adj == null ? Collections.emptyMap() : adj;
+	}
+	
+	private List<Reference> append(final List<Reference> path, final Reference ref) {
+		final List<Reference> ret = new ArrayList<>(path);
+		ret.add(ref);
+		return ret;
+	}
+	
+	/* Walks from the node toward the starting references, recording the path from the
+	 * termination reference to each node. Each node is walked at most once, since a node
+	 * with a path has already been walked.
+	 */
+	private void completePaths(
+			final SearchNode start,
+			final List<Reference> startPath,
+			final Set<Reference> pending) {
+		final LinkedList<SearchNode> nodes = new LinkedList<>();
+		final LinkedList<List<Reference>> nodePaths = new LinkedList<>();
+		nodes.push(start);
+		nodePaths.push(startPath);
+		while (!nodes.isEmpty()) {
+			final SearchNode node = nodes.pop();
+			final List<Reference> path = nodePaths.pop();
+			if (node.path != null) {
+				continue;
+			}
+			node.path = Collections.unmodifiableList(path);
+			if (pending.remove(node.ref)) {
+				paths.put(node.ref, node.path);
+			}
+			for (final SearchNode child: node.children) {
+				if (child.path != null) {
+					continue;
+				}
+				nodes.push(child);
+				nodePaths.push(append(path, child.ref));
+			}
+		}
+	}
+	
 	private boolean refCountExceeded(final int refcount)
 			throws ReferenceSearchMaximumSizeExceededException {
 		if (refcount > maximumReferenceSearchCount) {
@@ -3,14 +3,17 @@ package us.kbase.workspace.kbase;
 import static java.util.Objects.requireNonNull;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import us.kbase.auth.AuthToken;
@@ -47,6 +50,9 @@ import us.kbase.typedobj.idref.RemappedId;
  * 
  * The factory uses a Shock client for communicating with the KBase Blobstore.
  * 
+ * When processing IDs, the factory may optionally check and alter the ACLs of several nodes
+ * concurrently and cache the nodes that have been verified for each user.
+ * 
  * @author gaprice@lbl.gov
  *
  */
@@ -72,6 +78,8 @@ public class BytestreamIdHandlerFactory implements IdReferenceHandlerFactory {
 	public static final IdReferenceType TYPE = new IdReferenceType("bytestream");
 	private final BasicShockClient adminClient;
 	private final BytestreamClientCloner cloner;
+	private final ConcurrentIDTasks tasks;
+	private final VerifiedIDCache cache;
 	
 	/** Create the bytestream ID handler.
 	 * @param adminClient a Shock client with a Blobstore administrator token. All nodes passed to
@@ -82,8 +90,32 @@ public class BytestreamIdHandlerFactory implements IdReferenceHandlerFactory {
 	public BytestreamIdHandlerFactory(
 			final BasicShockClient adminClient,
 			final BytestreamClientCloner cloner) {
+		this(adminClient, cloner, null, 1, null);
+	}
+	
+	/** Create the bytestream ID handler.
+	 * @param adminClient a Shock client with a Blobstore administrator token. All nodes passed to
+	 * this handler will be owned by the administrator user. Pass null to 
+	 * cause an exception to be thrown if a shock id is encountered.
+	 * @param cloner a bytestream client cloner.
+	 * @param executor an executor, typically shared between handlers, with which to check
+	 * and alter the ACLs of nodes concurrently, or null to process nodes serially. The Shock
+	 * clients must be safe to use from multiple threads.
+	 * @param concurrency the maximum number of nodes a single handler will process at once.
+	 * One of the nodes is processed in the thread calling the handler.
+	 * @param cache a cache of the nodes that have been verified for each user, or null to
+	 * always check the nodes' ACLs.
+	 */
+	public BytestreamIdHandlerFactory(
+			final BasicShockClient adminClient,
+			final BytestreamClientCloner cloner,
+			final Executor executor,
+			final int concurrency,
+			final VerifiedIDCache cache) {
+		this.tasks = new ConcurrentIDTasks(TYPE, executor, concurrency);
 		this.adminClient = adminClient;
 		this.cloner = adminClient == null ? null : requireNonNull(cloner, "cloner");
+		this.cache = cache;
 	}
 	
 	@Override
@@ -225,18 +257,38 @@ public class BytestreamIdHandlerFactory implements IdReferenceHandlerFactory {
 				return;
 			}
 			// check readability first, then make copies
-			final Set<String> unowned = ensureNodesUserOwnedAndGetUnownedNodes();
+			final Map<String, T> nodes = getUncachedNodes();
+			final List<String> unowned = ensureNodesUserOwnedAndGetUnownedNodes(nodes);
+			tasks.run(unowned.size(), i -> own(unowned.get(i)));
+			if (cache != null) {
+				for (final String node: nodes.keySet()) {
+					cache.setVerified(userToken.getUserName(), node);
+				}
+			}
+			// nodes are never copied, so the remapped node is always the same node
+			for (final T assObj: ids.keySet()) {
+				for (final String node: ids.get(assObj)) {
+					remapped.put(node, node);
+				}
+			}
+		}
+		
+		// returns the nodes that need to be checked and an object associated with each node
+		private Map<String, T> getUncachedNodes() {
+			final Map<String, T> nodes = new LinkedHashMap<>();
 			for (final T assObj: ids.keySet()) {
 				for (final String node: ids.get(assObj)) {
-					if (!remapped.containsKey(node)) {
-						remapped.put(node, unowned.contains(node) ? own(node) : node);
+					if (!nodes.containsKey(node) && (cache == null ||
+							!cache.isVerified(userToken.getUserName(), node))) {
+						nodes.put(node, assObj);
 					}
 				}
 			}
+			return nodes;
 		}
 
 		// this method assumes the adminClient really is an admin and the node exists.
-		private String own(final String node) throws IdReferenceHandlerException {
+		private void own(final String node) throws IdReferenceHandlerException {
 			final String adminUser = adminClient.getToken().getUserName();
 			try {
 				// for errors, could go back and delete the other copies... YAGNI for now.
@@ -253,11 +305,13 @@ public class BytestreamIdHandlerFactory implements IdReferenceHandlerFactory {
 						"Bytestream storage reported a problem while attempting to alter nodes: " +
 						e.getMessage(), TYPE, e);
 			}
-			return node;
 		}
 
-		private Set<String> ensureNodesUserOwnedAndGetUnownedNodes()
+		private List<String> ensureNodesUserOwnedAndGetUnownedNodes(final Map<String, T> nodes)
 				throws IdReferenceHandlerException, IdReferenceException {
+			if (nodes.isEmpty()) {
+				return Collections.emptyList();
+			}
 			final BasicShockClient client;
 			try {
 				client = cloner.clone(adminClient);
@@ -268,55 +322,64 @@ public class BytestreamIdHandlerFactory implements IdReferenceHandlerFactory {
 			}
 			// prevents client from creating & deleting a shock node every startup
 			client.updateToken(userToken);
-			final Set<String> seen = new HashSet<>();
-			final Set<String> unowned = new HashSet<>();
-			final String adminUser = adminClient.getToken().getUserName();
-			for (final T assObj: ids.keySet()) {
-				for (final String node: ids.get(assObj)) {
-					if (seen.contains(node)) {
-						continue;
-					}
-					seen.add(node);
-					final ShockACL acls;
-					try {
-						// checked id syntax on add
-						// ensures user can read the node
-						acls = client.getACLs(new ShockNodeId(node));
-					} catch (ShockAuthorizationException e) {
-						throw new IdReferenceException(String.format(
-								"User %s cannot read bytestream node %s",
-								userToken.getUserName(), node),
-								TYPE, assObj, node, null, null);
-					} catch (ShockNoNodeException e) {
-						throw new IdReferenceException(
-								String.format("Bytestream node %s does not exist", node),
-								TYPE, assObj, node, null, null);
-					} catch (IOException e) {
-						throw new IdReferenceHandlerException(
-								"There was an IO problem while attempting to contact " +
-								"bytestream storage to process IDs: " + e.getMessage(), TYPE, e);
-					} catch (ShockHttpException e) {
-						throw new IdReferenceHandlerException(
-								"Bytestream storage reported a problem while attempting to " +
-								"process IDs: " + e.getMessage(), TYPE, e);
-					}
-					if (acls.getOwner().getUsername().equals(adminUser)) {
-						// clean acls up since a user could create a node and then chown it to
-						// the workspace
-						// TODO BYTESTREAM there's actually no way to unshare nodes when the WS owns them. Need to add a function to do that.
-						removeFromACL(node, adminUser, acls.getWrite(), ShockACLType.WRITE);
-						removeFromACL(node, adminUser, acls.getDelete(), ShockACLType.DELETE);
-					} else if (!acls.getOwner().getUsername().equals(userToken.getUserName())) {
-						throw new IdReferenceException(String.format(
-								"User %s does not own bytestream node %s",
-								userToken.getUserName(), node),
-								TYPE, assObj, node, null, null);
-					} else {
-						unowned.add(node); // own the node
-					}
+			final List<String> nodeList = new ArrayList<>(nodes.keySet());
+			final boolean[] unowned = new boolean[nodeList.size()];
+			tasks.run(nodeList.size(), i -> unowned[i] =
+					ensureNodeUserOwned(client, nodeList.get(i), nodes.get(nodeList.get(i))));
+			final List<String> ret = new ArrayList<>();
+			for (int i = 0; i < unowned.length; i++) {
+				if (unowned[i]) {
+					ret.add(nodeList.get(i));
 				}
 			}
-			return unowned;
+			return ret;
+		}
+		
+		// returns true if the node is owned by the user rather than the workspace
+		private boolean ensureNodeUserOwned(
+				final BasicShockClient client,
+				final String node,
+				final T assObj)
+				throws IdReferenceHandlerException, IdReferenceException {
+			final String adminUser = adminClient.getToken().getUserName();
+			final ShockACL acls;
+			try {
+				// checked id syntax on add
+				// ensures user can read the node
+				acls = client.getACLs(new ShockNodeId(node));
+			} catch (ShockAuthorizationException e) {
+				throw new IdReferenceException(String.format(
+						"User %s cannot read bytestream node %s",
+						userToken.getUserName(), node),
+						TYPE, assObj, node, null, null);
+			} catch (ShockNoNodeException e) {
+				throw new IdReferenceException(
+						String.format("Bytestream node %s does not exist", node),
+						TYPE, assObj, node, null, null);
+			} catch (IOException e) {
+				throw new IdReferenceHandlerException(
+						"There was an IO problem while attempting to contact " +
+						"bytestream storage to process IDs: " + e.getMessage(), TYPE, e);
+			} catch (ShockHttpException e) {
+				throw new IdReferenceHandlerException(
+						"Bytestream storage reported a problem while attempting to " +
+						"process IDs: " + e.getMessage(), TYPE, e);
+			}
+			if (acls.getOwner().getUsername().equals(adminUser)) {
+				// clean acls up since a user could create a node and then chown it to
+				// the workspace
+				// TODO BYTESTREAM there's actually no way to unshare nodes when the WS owns them. Need to add a function to do that.
+				removeFromACL(node, adminUser, acls.getWrite(), ShockACLType.WRITE);
+				removeFromACL(node, adminUser, acls.getDelete(), ShockACLType.DELETE);
+				return false;
+			} else if (!acls.getOwner().getUsername().equals(userToken.getUserName())) {
+				throw new IdReferenceException(String.format(
+						"User %s does not own bytestream node %s",
+						userToken.getUserName(), node),
+						TYPE, assObj, node, null, null);
+			} else {
+				return true; // own the node
+			}
 		}
 
 		// this method assumes the adminClient really is an admin and the node exists.
@@ -0,0 +1,151 @@
+package us.kbase.workspace.kbase;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import us.kbase.typedobj.idref.IdReferenceHandlerSet.IdReferenceHandlerException;
+import us.kbase.typedobj.idref.IdReferenceType;
+
+/** Runs a task for each of a number of IDs, optionally running several tasks concurrently.
+ *
+ * IDs are claimed in order, and once a task fails no more IDs are claimed, so the error thrown
+ * is the error for the first failed ID in order, as when running the tasks serially.
+ */
+class ConcurrentIDTasks {
+
+	/** A task to run for an ID. */
+	interface IDTask {
+
+		/** Run the task.
+		 * @param index the index of the ID.
+		 * @throws IdReferenceHandlerException if the task fails.
+		 */
+		void run(int index) throws IdReferenceHandlerException;
+	}
+
+	private final IdReferenceType type;
+	private final Executor executor;
+	private final int concurrency;
+
+	/** Create the task runner.
+	 * @param type the type of the IDs, used in error messages.
+	 * @param executor an executor with which to run the tasks, or null to run the tasks
+	 * serially.
+	 * @param concurrency the maximum number of tasks to run at once. One of the tasks is
+	 * always run in the calling thread.
+	 */
+	ConcurrentIDTasks(
+			final IdReferenceType type,
+			final Executor executor,
+			final int concurrency) {
+		this.type = requireNonNull(type, "type");
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("concurrency must be > 0");
+		}
+		this.executor = executor;
+		this.concurrency = concurrency;
+	}
+
+	/** Run a task for each ID.
+	 * @param count the number of IDs.
+	 * @param task the task to run for each ID index.
+	 * @throws IdReferenceHandlerException the exception thrown by the task for the first failed
+	 * ID, or if the calling thread was interrupted.
+	 */
+	void run(final int count, final IDTask task) throws IdReferenceHandlerException {
+		final int workers = executor == null ? 1 : Math.min(concurrency, count);
+		if (workers < 2) {
+			for (int i = 0; i < count; i++) {
+				task.run(i);
+			}
+			return;
+		}
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger firstError = new AtomicInteger(Integer.MAX_VALUE);
+		final Map<Integer, Exception> errors = new HashMap<>();
+		final Runnable worker = () -> {
+			for (int i = next.getAndIncrement(); i < count && i < firstError.get();
+					i = next.getAndIncrement()) {
+				try {
+					task.run(i);
+				} catch (IdReferenceHandlerException | RuntimeException e) {
+					synchronized (errors) {
+						errors.put(i, e);
+					}
+					firstError.accumulateAndGet(i, Math::min);
+				}
+			}
+		};
+		// a helper that hasn't started when this thread's worker finishes has no IDs left to
+		// process, so it's claimed here and never runs rather than being waited for
+		final List<AtomicBoolean> started = new ArrayList<>();
+		final List<FutureTask<Void>> futures = new ArrayList<>();
+		try {
+			for (int w = 1; w < workers; w++) {
+				final AtomicBoolean s = new AtomicBoolean();
+				final FutureTask<Void> f = new FutureTask<>(() -> {
+					if (s.compareAndSet(false, true)) {
+						worker.run();
+					}
+				}, null);
+				try {
+					executor.execute(f);
+				} catch (RejectedExecutionException e) {
+					// the worker in this thread will process the IDs
+					break;
+				}
+				started.add(s);
+				futures.add(f);
+			}
+			worker.run();
+			for (int i = 0; i < futures.size(); i++) {
+				if (!started.get(i).compareAndSet(false, true)) {
+					waitForWorker(futures.get(i));
+				}
+			}
+		} finally {
+			// stop any running workers, e.g. if this thread was interrupted. Cancelled workers
+			// still queued in the executor do nothing when run
+			firstError.set(-1);
+			for (final FutureTask<Void> f: futures) {
+				f.cancel(false);
+			}
+		}
+		synchronized (errors) {
+			if (!errors.isEmpty()) {
+				final Exception e = errors.get(Collections.min(errors.keySet()));
+				if (e instanceof IdReferenceHandlerException) {
+					throw (IdReferenceHandlerException) e;
+				}
+				throw (RuntimeException) e;
+			}
+		}
+	}
+
+	private void waitForWorker(final FutureTask<Void> f) throws IdReferenceHandlerException {
+		try {
+			f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IdReferenceHandlerException(
+					"Interrupted while processing " + type.getType() + " IDs", type, e);
+		} catch (ExecutionException e) {
+			// the worker catches exceptions, so only errors are possible
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new RuntimeException("Unexpected error", e.getCause());
+		}
+	}
+}
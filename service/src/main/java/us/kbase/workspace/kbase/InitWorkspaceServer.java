@@ -10,18 +10,25 @@ import java.io.UnsupportedEncodingException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.mongodb.MongoCredential;
 import com.mongodb.MongoException;
 import com.mongodb.ServerAddress;
@@ -47,6 +54,7 @@ import us.kbase.typedobj.core.TypedObjectValidator;
 import us.kbase.typedobj.db.MongoTypeStorage;
 import us.kbase.typedobj.db.TypeDefinitionDB;
 import us.kbase.typedobj.exceptions.TypeStorageException;
+import us.kbase.typedobj.idref.IdReferenceHandlerSetFactory.IdReferenceHandlerFactory;
 import us.kbase.typedobj.idref.IdReferenceHandlerSetFactoryBuilder;
 import us.kbase.workspace.WorkspaceClient;
 import us.kbase.workspace.database.ResourceUsageConfigurationBuilder;
@@ -55,11 +63,21 @@ import us.kbase.workspace.database.Workspace;
 import us.kbase.workspace.database.WorkspaceUser;
 import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
 import us.kbase.workspace.database.exceptions.WorkspaceDBException;
+import us.kbase.workspace.database.mongo.BackendRetrievalScheduler;
 import us.kbase.workspace.database.mongo.BlobStore;
+import us.kbase.workspace.database.mongo.CachingBlobStore;
 import us.kbase.workspace.database.mongo.GridFSBlobStore;
+import us.kbase.workspace.database.mongo.LookupObjectRecordFetcher;
 import us.kbase.workspace.database.mongo.MongoWorkspaceDB;
+import us.kbase.workspace.database.mongo.ObjectNameCache;
+import us.kbase.workspace.database.mongo.ObjectRecordFetcher;
+import us.kbase.workspace.database.mongo.OrQueryObjectRecordFetcher;
+import us.kbase.workspace.database.mongo.PerWorkspaceObjectRecordFetcher;
+import us.kbase.workspace.database.mongo.ReadableWorkspaceCache;
+import us.kbase.workspace.database.mongo.ReferenceCache;
 import us.kbase.workspace.database.mongo.S3BlobStore;
 import us.kbase.workspace.database.mongo.S3ClientWithPresign;
+import us.kbase.workspace.database.mongo.S3TransferConfig;
 import us.kbase.workspace.database.mongo.exceptions.BlobStoreCommunicationException;
 import us.kbase.workspace.kbase.KBaseWorkspaceConfig.ListenerConfig;
 import us.kbase.workspace.kbase.BytestreamIdHandlerFactory.BytestreamClientCloner;
@@ -86,6 +104,25 @@ public class InitWorkspaceServer {
 	
 	public static final String COL_S3_OBJECTS = "s3_objects";
 	
+	/* Incoming references cached by one server only change if another server saves an object
+	 * that references a cached version, so they can be cached for a while. Deletion states
+	 * change more often.
+	 */
+	private static final Duration REFERENCE_CACHE_INCOMING_TTL = Duration.ofMinutes(10);
+	private static final Duration REFERENCE_CACHE_EXISTENCE_TTL = Duration.ofSeconds(10);
+	// permission changes made by other servers are seen after this time
+	private static final Duration READABLE_WORKSPACE_CACHE_TTL = Duration.ofSeconds(30);
+	// object name changes made by other servers are seen after this time
+	private static final Duration OBJECT_NAME_CACHE_TTL = Duration.ofMinutes(1);
+	// workspaces with more objects than this are searched in the database
+	private static final int OBJECT_NAME_CACHE_MAX_NAMES_PER_WS = 100_000;
+	// bytestream node ACL changes made outside the workspace are seen after this time
+	private static final Duration BYTESTREAM_NODE_CACHE_TTL = Duration.ofMinutes(1);
+	// sample ACL changes are seen after this time
+	private static final Duration SAMPLE_CACHE_TTL = Duration.ofSeconds(30);
+	// the time between each log of the cache and scheduler statistics
+	private static final Duration STATISTICS_LOG_INTERVAL = Duration.ofMinutes(5);
+	
 	private static int maxUniqueIdCountPerCall = 100000;
 
 	private static int instanceCount = 0;
@@ -229,7 +266,8 @@ public class InitWorkspaceServer {
 		
 		final MongoDatabase db = buildMongo(cfg, cfg.getDBname()).getDatabase(cfg.getDBname());
 		
-		final BlobStore bs = setupBlobStore(db, cfg);
+		final StatisticsLogger stats = new StatisticsLogger();
+		final BlobStore bs = setupBlobCache(setupBlobStore(db, cfg), cfg, stats);
 		
 		final Optional<TypeDelegation> typeDelegator = getTypeDelegator(cfg, rep);
 		final TypeProvider typeProvider;
@@ -255,29 +293,66 @@ public class InitWorkspaceServer {
 		}
 		final MongoWorkspaceDB mongoWS;
 		try {
-			mongoWS = new MongoWorkspaceDB(db, bs);
+			final ReferenceCache refCache = cfg.getReferenceCacheSize() < 1 ? null :
+					new ReferenceCache(
+							cfg.getReferenceCacheSize(), REFERENCE_CACHE_INCOMING_TTL,
+							cfg.getReferenceCacheSize(), REFERENCE_CACHE_EXISTENCE_TTL);
+			if (refCache != null) {
+				stats.add("Incoming reference cache", () -> StatisticsLogger.format(
+						refCache.getIncomingReferenceStats()));
+				stats.add("Object existence cache", () -> StatisticsLogger.format(
+						refCache.getExistenceStats()));
+			}
+			final ReadableWorkspaceCache wsCache = cfg.getReadableWorkspaceCacheSize() < 1 ?
+					null : new ReadableWorkspaceCache(
+							cfg.getReadableWorkspaceCacheSize(), READABLE_WORKSPACE_CACHE_TTL);
+			final ObjectNameCache nameCache = cfg.getObjectNameCacheSize() < 1 ? null :
+					new ObjectNameCache(
+							cfg.getObjectNameCacheSize(),
+							Math.min(cfg.getObjectNameCacheSize(),
+									OBJECT_NAME_CACHE_MAX_NAMES_PER_WS),
+							OBJECT_NAME_CACHE_TTL);
+			final BackendRetrievalScheduler retrievals = cfg.getBackendRetrievalMaxThreads() < 1 ?
+					new BackendRetrievalScheduler() :
+					new BackendRetrievalScheduler(cfg.getBackendRetrievalMaxThreads());
+			stats.add("Backend retrieval", () -> String.format(
+					"queued=%s running=%s completed=%s meanQueueMS=%.3f meanRunMS=%.3f",
+					retrievals.getQueueDepth(), retrievals.getRunning(),
+					retrievals.getCompleted(), retrievals.getMeanQueueTimeMillis(),
+					retrievals.getMeanRunTimeMillis()));
+			mongoWS = MongoWorkspaceDB.getBuilder(db, bs)
+					.withReferenceCache(refCache)
+					.withReadableWorkspaceCache(wsCache)
+					.withObjectNameCache(nameCache)
+					.withBackendRetrievalScheduler(retrievals)
+					.withObjectRecordFetcher(getObjectRecordFetcher(db, cfg))
+					.withUploadExecutor(newBoundedPool(
+							cfg.getBackendUploadMaxThreads(), "ws-backend-upload-%d"))
+					.build();
 		} catch (WorkspaceDBException wde) {
 			throw new WorkspaceInitException(
 					"Error initializing the workspace database: " +
 					wde.getLocalizedMessage(), wde);
 		}
+		final TypedObjectValidator validator = new TypedObjectValidator(
+				typeProvider, cfg.getTypeSchemaCacheSizeMB() * 1024L * 1024L);
+		stats.add("Type schema cache", () -> StatisticsLogger.format(
+				validator.getSchemaCacheStats()) + " size=" + validator.getSchemaCacheSize());
 		final Workspace ws;
 		try {
 			ws = new Workspace(
 					mongoWS,
 					new ResourceUsageConfigurationBuilder().build(),
-					new TypedObjectValidator(typeProvider),
+					validator,
 					tfm,
-					loadListeners(cfg));
+					loadListeners(cfg),
+					cfg.getSaveObjectsThreads());
 		} catch (WorkspaceCommunicationException e) { // this is really hard to test
 			throw new WorkspaceInitException(e.getMessage(), e);
 		}
-		final IdReferenceHandlerSetFactoryBuilder builder = IdReferenceHandlerSetFactoryBuilder
-				.getBuilder(maxUniqueIdCountPerCall)
-				.withFactory(new HandleIdHandlerFactory(hsc))
-				.withFactory(getShockIdHandlerFactory(cfg, auth))
-				.withFactory(getSampleIdHandlerFactory(cfg, auth, rep))
-				.build();
+		ws.setReferenceSearchMode(cfg.getReferenceSearchMode());
+		final IdReferenceHandlerSetFactoryBuilder builder = getIDHandlerFactoryBuilder(
+				cfg, hsc, auth, rep);
 		final WorkspaceServerMethods wsmeth = new WorkspaceServerMethods(ws, builder, auth);
 		final WorkspaceAdministration.Builder adminbuilder = WorkspaceAdministration.getBuilder(
 				getAdminHandler(cfg, ws), (user, token) -> wsmeth.validateUser(user, token));
@@ -288,6 +363,9 @@ public class InitWorkspaceServer {
 			AdministrationCommandSetInstaller.install(
 					adminbuilder, wsmeth, (LocalTypeServerMethods) types);
 		}
+		if (!stats.isEmpty()) {
+			stats.start(STATISTICS_LOG_INTERVAL);
+		}
 		return new WorkspaceInitResults(wsmeth, adminbuilder.build(), types);
 	}
 	
@@ -347,6 +425,67 @@ public class InitWorkspaceServer {
 		));
 	}
 
+	private static IdReferenceHandlerSetFactoryBuilder getIDHandlerFactoryBuilder(
+			final KBaseWorkspaceConfig cfg,
+			final AbstractHandleClient hsc,
+			final AuthClient auth,
+			final InitReporter rep)
+			throws WorkspaceInitException {
+		final IdReferenceHandlerSetFactoryBuilder.Builder builder =
+				IdReferenceHandlerSetFactoryBuilder.getBuilder(maxUniqueIdCountPerCall);
+		// all of these handlers contact another service
+		for (final IdReferenceHandlerFactory fac: Arrays.asList(
+				new HandleIdHandlerFactory(hsc),
+				getShockIdHandlerFactory(cfg, auth),
+				getSampleIdHandlerFactory(cfg, auth, rep))) {
+			builder.withFactory(fac);
+			if (cfg.getIDProcessingTimeoutSec() > 0) {
+				builder.withProcessingTimeout(fac.getIDType(),
+						Duration.ofSeconds(cfg.getIDProcessingTimeoutSec()));
+			}
+		}
+		if (cfg.getIDProcessingThreads() > 1) {
+			builder.withConcurrentProcessing(
+					newBoundedPool(cfg.getIDProcessingThreads(), "ws-idproc-%d"));
+		}
+		return builder.build();
+	}
+	
+	private static ObjectRecordFetcher getObjectRecordFetcher(
+			final MongoDatabase db,
+			final KBaseWorkspaceConfig cfg) {
+		final OrQueryObjectRecordFetcher orQuery = new OrQueryObjectRecordFetcher(db);
+		final ObjectRecordFetcher fetcher;
+		switch (cfg.getObjectRecordFetchStrategy()) {
+			case Lookup:
+				fetcher = new LookupObjectRecordFetcher(db);
+				break;
+			case PerWorkspace:
+				fetcher = new PerWorkspaceObjectRecordFetcher(db,
+						newBoundedPool(cfg.getObjectRecordFetchThreads(), "ws-record-fetch-%d"),
+						cfg.getObjectRecordFetchThreads());
+				break;
+			default:
+				return orQuery;
+		}
+		return cfg.getObjectRecordFetchThreshold() < 2 ? fetcher :
+				ObjectRecordFetcher.byWorkspaceCount(
+						cfg.getObjectRecordFetchThreshold(), orQuery, fetcher);
+	}
+	
+	/* Creates a pool that never queues tasks. When all the threads are busy the pool rejects
+	 * tasks, and the calling code runs rejected tasks in the calling thread, so tasks
+	 * never wait for a thread and, for ID processing, time waiting doesn't count towards the
+	 * processing timeout.
+	 */
+	private static ExecutorService newBoundedPool(final int threads, final String nameFormat) {
+		final ThreadPoolExecutor pool = new ThreadPoolExecutor(
+				threads, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat(nameFormat).build());
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+	
 	private static BytestreamIdHandlerFactory getShockIdHandlerFactory(
 			final KBaseWorkspaceConfig cfg,
 			final AuthClient auth)
@@ -364,6 +503,10 @@ public class InitWorkspaceServer {
 					"Couldn't contact Shock server configured for Shock ID links: " +
 			e.getMessage(), e);
 		}
+		final Executor executor = cfg.getBytestreamIDThreads() < 2 ? null :
+				newBoundedPool(cfg.getBytestreamIDThreads(), "ws-bytestream-%d");
+		final VerifiedIDCache cache = cfg.getBytestreamIDCacheSize() < 1 ? null :
+				new VerifiedIDCache(cfg.getBytestreamIDCacheSize(), BYTESTREAM_NODE_CACHE_TTL);
 		return new BytestreamIdHandlerFactory(bsc, new BytestreamClientCloner() {
 					
 					@Override
@@ -371,7 +514,10 @@ public class InitWorkspaceServer {
 							throws IOException, InvalidShockUrlException {
 						return new BasicShockClient(source.getShockUrl());
 					}
-				});
+				},
+				executor,
+				cfg.getBytestreamIDThreads(),
+				cache);
 	}
 	
 	private static SampleIdHandlerFactory getSampleIdHandlerFactory(
@@ -406,7 +552,11 @@ public class InitWorkspaceServer {
 					"https is recommended.");
 			cli.setIsInsecureHttpConnectionAllowed(true);
 		}
-		return new SampleIdHandlerFactory(cli);
+		final Executor executor = cfg.getSampleIDThreads() < 2 ? null :
+				newBoundedPool(cfg.getSampleIDThreads(), "ws-sample-%d");
+		final VerifiedIDCache cache = cfg.getSampleIDCacheSize() < 1 ? null :
+				new VerifiedIDCache(cfg.getSampleIDCacheSize(), SAMPLE_CACHE_TTL);
+		return new SampleIdHandlerFactory(cli, executor, cfg.getSampleIDThreads(), cache);
 	}
 
 	public static MongoClient buildMongo(final KBaseWorkspaceConfig c, final String dbName)
@@ -531,7 +681,15 @@ public class InitWorkspaceServer {
 				return new S3BlobStore(
 						db.getCollection(COL_S3_OBJECTS),
 						cli,
-						cfg.getBackendContainer());
+						cfg.getBackendContainer(),
+						S3TransferConfig.getBuilder()
+								.withMultipartUpload(
+										cfg.getBackendMultipartPartSizeMB() * 1024L * 1024L,
+										cfg.getBackendMultipartThreads())
+								.withRangedRead(
+										cfg.getBackendRangedReadSizeMB() * 1024L * 1024L,
+										cfg.getBackendRangedReadThreads())
+								.build());
 			} catch (URISyntaxException e) {
 				throw new WorkspaceInitException("S3 url is not a valid URI: " +
 						e.getMessage(), e);
@@ -545,6 +703,22 @@ public class InitWorkspaceServer {
 		throw new WorkspaceInitException("Unknown backend type: " + cfg.getBackendType().name());
 	}
 
+	private static BlobStore setupBlobCache(
+			final BlobStore bs,
+			final KBaseWorkspaceConfig cfg,
+			final StatisticsLogger stats) {
+		if (cfg.getBlobCacheMemorySizeMB() < 1 && cfg.getBlobCacheDiskSizeMB() < 1) {
+			return bs;
+		}
+		final CachingBlobStore cache = new CachingBlobStore(
+				bs,
+				cfg.getBlobCacheMemorySizeMB() * 1024L * 1024L,
+				cfg.getBlobCacheDiskSizeMB() * 1024L * 1024L);
+		stats.add("Blob cache", () -> StatisticsLogger.format(cache.getStats()) +
+				" memoryBytes=" + cache.getMemoryTierSize());
+		return cache;
+	}
+
 	private static TempFilesManager initTempFilesManager(
 			final String tempDir,
 			final InitReporter rep) {
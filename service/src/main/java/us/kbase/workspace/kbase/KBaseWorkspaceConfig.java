@@ -24,6 +24,7 @@ import com.google.common.collect.ImmutableMap;
 
 import software.amazon.awssdk.regions.Region;
 import us.kbase.common.service.JsonServerServlet;
+import us.kbase.workspace.database.refsearch.ReferenceGraphSearch.SearchMode;
 
 public class KBaseWorkspaceConfig {
 	
@@ -65,6 +66,13 @@ public class KBaseWorkspaceConfig {
 	private static final String BACKEND_REGION = "backend-region";
 	private static final String BACKEND_CONTAINER = "backend-container";
 	private static final String BACKEND_SSC_SSL = "backend-trust-all-ssl-certificates";
+	private static final String BACKEND_MULTIPART_PART_SIZE = "backend-multipart-part-size-mb";
+	private static final String BACKEND_MULTIPART_THREADS = "backend-multipart-threads";
+	private static final String BACKEND_RANGED_READ_SIZE = "backend-ranged-read-size-mb";
+	private static final String BACKEND_RANGED_READ_THREADS = "backend-ranged-read-threads";
+	// S3 does not allow parts smaller than 5MB other than the last part
+	private static final int BACKEND_MIN_MULTIPART_PART_SIZE = 5;
+	private static final int BACKEND_MAX_MULTIPART_PART_SIZE = 1024;
 	
 	//auth servers
 	private static final String KBASE_AUTH2_URL = "auth2-service-url";
@@ -104,6 +112,50 @@ public class KBaseWorkspaceConfig {
 	private static final String DONT_TRUST_X_IP_HEADERS_LEGACY = "dont_trust_x_ip_headers";
 	private static final String DONT_TRUST_X_IP_HEADERS = "dont-trust-x-ip-headers";
 	
+	// the number of threads to use when processing objects to be saved
+	private static final String SAVE_OBJECTS_THREADS = "save-objects-threads";
+	// the maximum number of object data retrievals from the backend running at once
+	private static final String BACKEND_RETRIEVAL_MAX_THREADS =
+			"backend-file-retrieval-max-threads";
+	// the maximum number of threads uploading object data to the backend across all saves
+	private static final String BACKEND_UPLOAD_MAX_THREADS = "backend-file-upload-max-threads";
+	
+	// the number of threads to use to process the IDs of different types in saved objects
+	private static final String ID_PROCESSING_THREADS = "id-processing-threads";
+	// the timeout for processing the IDs of each type that refer to another service
+	private static final String ID_PROCESSING_TIMEOUT = "id-processing-timeout-sec";
+	// the number of threads to use to check and alter the ACLs of bytestream nodes
+	private static final String BYTESTREAM_ID_THREADS = "bytestream-id-threads";
+	// the maximum number of entries in the cache of bytestream nodes verified for each user
+	private static final String BYTESTREAM_ID_CACHE_SIZE = "bytestream-id-cache-size";
+	// the number of threads to use to get the ACLs of samples
+	private static final String SAMPLE_ID_THREADS = "sample-id-threads";
+	// the maximum number of entries in the cache of samples verified for each user
+	private static final String SAMPLE_ID_CACHE_SIZE = "sample-id-cache-size";
+	
+	// the maximum sizes of the tiers of the blob cache shared between requests
+	private static final String BLOB_CACHE_MEMORY_SIZE = "blob-cache-memory-size-mb";
+	private static final String BLOB_CACHE_DISK_SIZE = "blob-cache-disk-size-mb";
+	
+	// the maximum number of entries in the cache of the object reference graph
+	private static final String REFERENCE_CACHE_SIZE = "reference-cache-size";
+	// the maximum number of workspace IDs in the cache of the workspaces users can read
+	private static final String READABLE_WORKSPACE_CACHE_SIZE = "readable-workspace-cache-size";
+	// the maximum number of object names in the cache used to find names by prefix
+	private static final String OBJECT_NAME_CACHE_SIZE = "object-name-cache-size";
+	// the maximum size of the cache of parsed type schemas used when validating objects
+	private static final String TYPE_SCHEMA_CACHE_SIZE = "type-schema-cache-size-mb";
+	
+	// how to fetch the object records for objects in many workspaces
+	private static final String OBJECT_RECORD_FETCH_STRATEGY = "object-record-fetch-strategy";
+	// the minimum number of workspaces in a fetch for which the strategy is used
+	private static final String OBJECT_RECORD_FETCH_THRESHOLD = "object-record-fetch-threshold";
+	// the number of threads to use for the per workspace strategy
+	private static final String OBJECT_RECORD_FETCH_THREADS = "object-record-fetch-threads";
+	
+	// how to search the object reference graph for paths to objects
+	private static final String REFERENCE_SEARCH_MODE = "reference-search-mode";
+	
 	private static final String TRUE_STR = "true";
 	
 	// the auth2 urls are checked when getting the url
@@ -127,7 +179,21 @@ public class KBaseWorkspaceConfig {
 	private final String backendUser;
 	private final String backendToken;
 	private final boolean backendTrustAllCerts;
+	private final int backendMultipartPartSizeMB;
+	private final int backendMultipartThreads;
+	private final int backendRangedReadSizeMB;
+	private final int backendRangedReadThreads;
 	private final String tempDir;
+	private final int blobCacheMemorySizeMB;
+	private final int blobCacheDiskSizeMB;
+	private final int referenceCacheSize;
+	private final int readableWorkspaceCacheSize;
+	private final int objectNameCacheSize;
+	private final int typeSchemaCacheSizeMB;
+	private final ObjectRecordFetchStrategy objectRecordFetchStrategy;
+	private final int objectRecordFetchThreshold;
+	private final int objectRecordFetchThreads;
+	private final SearchMode referenceSearchMode;
 	private final URL bytestreamURL;
 	private final String bytestreamUser;
 	private final String bytestreamToken;
@@ -147,6 +213,15 @@ public class KBaseWorkspaceConfig {
 	private final String paramReport;
 	private final List<ListenerConfig> listenerConfigs;
 	private final boolean dontTrustXIPHeaders;
+	private final int saveObjectsThreads;
+	private final int backendRetrievalMaxThreads;
+	private final int backendUploadMaxThreads;
+	private final int idProcessingThreads;
+	private final int idProcessingTimeoutSec;
+	private final int bytestreamIDThreads;
+	private final int bytestreamIDCacheSize;
+	private final int sampleIDThreads;
+	private final int sampleIDCacheSize;
 	
 	public static class ListenerConfig {
 		
@@ -290,6 +365,38 @@ public class KBaseWorkspaceConfig {
 					DB, TYPE_DB, db));
 		}
 		tempDir = nullIfEmpty(config.get(TEMP_DIR));
+		saveObjectsThreads = getPositiveInt(config, SAVE_OBJECTS_THREADS, 1, paramErrors);
+		// 0 = no limit
+		backendRetrievalMaxThreads = getPositiveInt(
+				config, BACKEND_RETRIEVAL_MAX_THREADS, 0, paramErrors);
+		backendUploadMaxThreads = getPositiveInt(
+				config, BACKEND_UPLOAD_MAX_THREADS, 100, paramErrors);
+		idProcessingThreads = getPositiveInt(config, ID_PROCESSING_THREADS, 1, paramErrors);
+		// 0 = no timeout
+		idProcessingTimeoutSec = getPositiveInt(config, ID_PROCESSING_TIMEOUT, 0, paramErrors);
+		bytestreamIDThreads = getPositiveInt(config, BYTESTREAM_ID_THREADS, 1, paramErrors);
+		// 0 = the cache is disabled
+		bytestreamIDCacheSize = getPositiveInt(config, BYTESTREAM_ID_CACHE_SIZE, 0, paramErrors);
+		sampleIDThreads = getPositiveInt(config, SAMPLE_ID_THREADS, 1, paramErrors);
+		// 0 = the cache is disabled
+		sampleIDCacheSize = getPositiveInt(config, SAMPLE_ID_CACHE_SIZE, 0, paramErrors);
+		// 0 = the tier is disabled
+		blobCacheMemorySizeMB = getPositiveInt(config, BLOB_CACHE_MEMORY_SIZE, 0, paramErrors);
+		blobCacheDiskSizeMB = getPositiveInt(config, BLOB_CACHE_DISK_SIZE, 0, paramErrors);
+		// 0 = the cache is disabled
+		referenceCacheSize = getPositiveInt(config, REFERENCE_CACHE_SIZE, 0, paramErrors);
+		readableWorkspaceCacheSize = getPositiveInt(
+				config, READABLE_WORKSPACE_CACHE_SIZE, 0, paramErrors);
+		objectNameCacheSize = getPositiveInt(config, OBJECT_NAME_CACHE_SIZE, 0, paramErrors);
+		typeSchemaCacheSizeMB = getPositiveInt(config, TYPE_SCHEMA_CACHE_SIZE, 8, paramErrors);
+		objectRecordFetchStrategy = getEnum(config, OBJECT_RECORD_FETCH_STRATEGY,
+				ObjectRecordFetchStrategy.class, ObjectRecordFetchStrategy.OrQuery, paramErrors);
+		objectRecordFetchThreshold = getPositiveInt(
+				config, OBJECT_RECORD_FETCH_THRESHOLD, 1, paramErrors);
+		objectRecordFetchThreads = getPositiveInt(
+				config, OBJECT_RECORD_FETCH_THREADS, 1, paramErrors);
+		referenceSearchMode = getEnum(config, REFERENCE_SEARCH_MODE, SearchMode.class,
+				SearchMode.INDEPENDENT_TREES, paramErrors);
 		
 		auth2URL = getUrl(config, KBASE_AUTH2_URL, paramErrors, true);
 		
@@ -312,6 +419,10 @@ public class KBaseWorkspaceConfig {
 			backendRegion = null;
 			backendContainer = null;
 			backendTrustAllCerts = false;
+			backendMultipartPartSizeMB = 0;
+			backendMultipartThreads = 1;
+			backendRangedReadSizeMB = 0;
+			backendRangedReadThreads = 1;
 		} else {
 			backendType = BackendType.valueOf(bet);
 			for (final String param: BACKEND_TYPES.get(backendType.name())) {
@@ -326,6 +437,14 @@ public class KBaseWorkspaceConfig {
 			backendContainer = nullIfEmpty(config.get(BACKEND_CONTAINER));
 			backendRegion = getRegion(config, BACKEND_REGION, paramErrors);
 			backendTrustAllCerts = TRUE_STR.equals(nullIfEmpty(config.get(BACKEND_SSC_SSL)));
+			backendMultipartPartSizeMB = getMultipartPartSize(config, paramErrors);
+			backendMultipartThreads = getPositiveInt(
+					config, BACKEND_MULTIPART_THREADS, 1, paramErrors);
+			// 0 = ranged reads are disabled
+			backendRangedReadSizeMB = getPositiveInt(
+					config, BACKEND_RANGED_READ_SIZE, 0, paramErrors);
+			backendRangedReadThreads = getPositiveInt(
+					config, BACKEND_RANGED_READ_THREADS, 1, paramErrors);
 		}
 
 		bytestreamURL = getUrl(config, BYTESTREAM_URL, paramErrors, false);
@@ -481,7 +600,16 @@ public class KBaseWorkspaceConfig {
 						KBASE_AUTH2_URL, DONT_TRUST_X_IP_HEADERS,
 						KBASE_AUTH_ADMIN_READ_ONLY_ROLES, KBASE_AUTH_ADMIN_FULL_ROLES,
 						BACKEND_TYPE, BACKEND_URL, BACKEND_USER, BACKEND_REGION,
-						BACKEND_CONTAINER, BACKEND_SSC_SSL));
+						BACKEND_CONTAINER, BACKEND_SSC_SSL, BACKEND_MULTIPART_PART_SIZE,
+						BACKEND_MULTIPART_THREADS, BACKEND_RANGED_READ_SIZE,
+						BACKEND_RANGED_READ_THREADS, SAVE_OBJECTS_THREADS,
+						BACKEND_RETRIEVAL_MAX_THREADS, BACKEND_UPLOAD_MAX_THREADS,
+						ID_PROCESSING_THREADS, ID_PROCESSING_TIMEOUT, BYTESTREAM_ID_THREADS,
+						BYTESTREAM_ID_CACHE_SIZE, SAMPLE_ID_THREADS, SAMPLE_ID_CACHE_SIZE,
+						BLOB_CACHE_MEMORY_SIZE, BLOB_CACHE_DISK_SIZE, REFERENCE_CACHE_SIZE,
+						READABLE_WORKSPACE_CACHE_SIZE, OBJECT_NAME_CACHE_SIZE, TYPE_SCHEMA_CACHE_SIZE,
+						OBJECT_RECORD_FETCH_STRATEGY, OBJECT_RECORD_FETCH_THRESHOLD,
+						OBJECT_RECORD_FETCH_THREADS, REFERENCE_SEARCH_MODE));
 		if (delegateTypeTarget != null) {
 			paramSet.remove(TYPE_DB); // hack hack hack, see todo below
 		}
@@ -532,6 +660,65 @@ public class KBaseWorkspaceConfig {
 		return null;
 	}
 	
+	private static int getPositiveInt(
+			final Map<String, String> wsConfig,
+			final String configKey,
+			final int defaultValue,
+			final List<String> errors) {
+		final String intStr = wsConfig.get(configKey);
+		if (nullOrEmpty(intStr)) {
+			return defaultValue;
+		}
+		try {
+			final int i = Integer.parseInt(intStr.trim());
+			if (i > 0) {
+				return i;
+			}
+		} catch (NumberFormatException e) {
+			// fall through
+		}
+		errors.add(String.format("Parameter %s must be an integer > 0: %s",
+				configKey, intStr.trim()));
+		return defaultValue;
+	}
+	
+	private static <T extends Enum<T>> T getEnum(
+			final Map<String, String> wsConfig,
+			final String paramName,
+			final Class<T> enumClass,
+			final T defaultValue,
+			final List<String> errors) {
+		final String value = nullIfEmpty(wsConfig.get(paramName));
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Enum.valueOf(enumClass, value);
+		} catch (IllegalArgumentException e) {
+			errors.add(String.format("Parameter %s must be one of %s: %s",
+					paramName, Arrays.asList(enumClass.getEnumConstants()), value));
+			return defaultValue;
+		}
+	}
+
+	private static int getMultipartPartSize(
+			final Map<String, String> wsConfig,
+			final List<String> errors) {
+		// 0 = multipart uploads are disabled
+		final int size = getPositiveInt(wsConfig, BACKEND_MULTIPART_PART_SIZE, 0, errors);
+		if (size > 0 && size < BACKEND_MIN_MULTIPART_PART_SIZE) {
+			errors.add(String.format("Parameter %s must be at least %s: %s",
+					BACKEND_MULTIPART_PART_SIZE, BACKEND_MIN_MULTIPART_PART_SIZE, size));
+			return 0;
+		}
+		if (size > BACKEND_MAX_MULTIPART_PART_SIZE) {
+			errors.add(String.format("Parameter %s must be at most %s: %s",
+					BACKEND_MULTIPART_PART_SIZE, BACKEND_MAX_MULTIPART_PART_SIZE, size));
+			return 0;
+		}
+		return size;
+	}
+	
 	// assume optional for now
 	private static Region getRegion(
 			final Map<String, String> wsConfig,
@@ -603,10 +790,172 @@ public class KBaseWorkspaceConfig {
 	public boolean getBackendTrustAllCerts() {
 		return backendTrustAllCerts;
 	}
+	
+	/** Get the part size for multipart uploads to the backend.
+	 * @return the part size in megabytes, or 0 if multipart uploads are disabled.
+	 */
+	public int getBackendMultipartPartSizeMB() {
+		return backendMultipartPartSizeMB;
+	}
+	
+	public int getBackendMultipartThreads() {
+		return backendMultipartThreads;
+	}
+	
+	/** Get the range size for concurrent ranged reads from the backend.
+	 * @return the range size in megabytes, or 0 if ranged reads are disabled.
+	 */
+	public int getBackendRangedReadSizeMB() {
+		return backendRangedReadSizeMB;
+	}
+	
+	public int getBackendRangedReadThreads() {
+		return backendRangedReadThreads;
+	}
 
 	public String getTempDir() {
 		return tempDir;
 	}
+	
+	public int getSaveObjectsThreads() {
+		return saveObjectsThreads;
+	}
+	
+	/** Get the maximum number of object data retrievals from the backend to run at once across
+	 * all requests.
+	 * @return the maximum number of retrievals, or 0 if there is no limit.
+	 */
+	public int getBackendRetrievalMaxThreads() {
+		return backendRetrievalMaxThreads;
+	}
+	
+	/** Get the maximum number of threads uploading object data to the backend at once, shared
+	 * between all saves. Each save also uploads data in the saving thread.
+	 * @return the maximum number of threads.
+	 */
+	public int getBackendUploadMaxThreads() {
+		return backendUploadMaxThreads;
+	}
+	
+	/** Get the number of threads with which to process the IDs of different types in saved
+	 * objects concurrently.
+	 * @return the number of threads. 1 means the IDs are processed serially.
+	 */
+	public int getIDProcessingThreads() {
+		return idProcessingThreads;
+	}
+	
+	/** Get the timeout for processing the IDs of each type that refer to another service when
+	 * processing IDs concurrently.
+	 * @return the timeout in seconds, or 0 if there is no timeout.
+	 */
+	public int getIDProcessingTimeoutSec() {
+		return idProcessingTimeoutSec;
+	}
+	
+	/** Get the number of threads with which to check and alter the ACLs of bytestream nodes
+	 * concurrently.
+	 * @return the number of threads. 1 means the nodes are processed serially.
+	 */
+	public int getBytestreamIDThreads() {
+		return bytestreamIDThreads;
+	}
+	
+	/** Get the maximum number of entries in the cache of bytestream nodes verified for each
+	 * user.
+	 * @return the maximum number of entries, or 0 if the cache is disabled.
+	 */
+	public int getBytestreamIDCacheSize() {
+		return bytestreamIDCacheSize;
+	}
+	
+	/** Get the number of threads with which to get the ACLs of samples concurrently.
+	 * @return the number of threads. 1 means the samples are processed serially.
+	 */
+	public int getSampleIDThreads() {
+		return sampleIDThreads;
+	}
+	
+	/** Get the maximum number of entries in the cache of samples verified for each user.
+	 * @return the maximum number of entries, or 0 if the cache is disabled.
+	 */
+	public int getSampleIDCacheSize() {
+		return sampleIDCacheSize;
+	}
+	
+	/** Get the maximum size of the in memory tier of the blob cache.
+	 * @return the size in megabytes, or 0 if the tier is disabled.
+	 */
+	public int getBlobCacheMemorySizeMB() {
+		return blobCacheMemorySizeMB;
+	}
+	
+	/** Get the maximum size of the on disk tier of the blob cache.
+	 * @return the size in megabytes, or 0 if the tier is disabled.
+	 */
+	public int getBlobCacheDiskSizeMB() {
+		return blobCacheDiskSizeMB;
+	}
+	
+	/** Get the maximum number of entries in the cache of the object reference graph.
+	 * @return the maximum number of entries, or 0 if the cache is disabled.
+	 */
+	public int getReferenceCacheSize() {
+		return referenceCacheSize;
+	}
+	
+	/** Get the maximum number of workspace IDs in the cache of the workspaces users can read.
+	 * @return the maximum number of workspace IDs, or 0 if the cache is disabled.
+	 */
+	public int getReadableWorkspaceCacheSize() {
+		return readableWorkspaceCacheSize;
+	}
+	
+	/** Get the maximum number of object names in the cache used to find names by prefix.
+	 * @return the maximum number of object names, or 0 if the cache is disabled.
+	 */
+	public int getObjectNameCacheSize() {
+		return objectNameCacheSize;
+	}
+	
+	/** Get the maximum size of the cache of parsed type schemas used when validating objects.
+	 * The size of a cached schema is the number of characters in its JSONSchema document.
+	 * @return the maximum size in megabytes.
+	 */
+	public int getTypeSchemaCacheSizeMB() {
+		return typeSchemaCacheSizeMB;
+	}
+	
+	/** Get the strategy for fetching the object records for objects in many workspaces.
+	 * @return the strategy.
+	 */
+	public ObjectRecordFetchStrategy getObjectRecordFetchStrategy() {
+		return objectRecordFetchStrategy;
+	}
+	
+	/** Get the minimum number of workspaces in a fetch of object records for which the
+	 * {@link #getObjectRecordFetchStrategy()} strategy is used. Fetches from fewer workspaces use
+	 * the {@link ObjectRecordFetchStrategy#OrQuery} strategy.
+	 * @return the minimum number of workspaces.
+	 */
+	public int getObjectRecordFetchThreshold() {
+		return objectRecordFetchThreshold;
+	}
+	
+	/** Get the number of threads to use when fetching object records with the
+	 * {@link ObjectRecordFetchStrategy#PerWorkspace} strategy.
+	 * @return the number of threads.
+	 */
+	public int getObjectRecordFetchThreads() {
+		return objectRecordFetchThreads;
+	}
+	
+	/** Get the strategy for searching the object reference graph for paths to objects.
+	 * @return the search strategy.
+	 */
+	public SearchMode getReferenceSearchMode() {
+		return referenceSearchMode;
+	}
 
 	public URL getBytestreamURL() {
 		return bytestreamURL;
@@ -688,6 +1037,22 @@ public class KBaseWorkspaceConfig {
 		result = prime * result + ((backendRegion == null) ? 0 : backendRegion.id().hashCode());
 		result = prime * result + ((backendToken == null) ? 0 : backendToken.hashCode());
 		result = prime * result + (backendTrustAllCerts ? 1231 : 1237);
+		result = prime * result + backendMultipartPartSizeMB;
+		result = prime * result + backendMultipartThreads;
+		result = prime * result + backendRangedReadSizeMB;
+		result = prime * result + backendRangedReadThreads;
+		result = prime * result + blobCacheDiskSizeMB;
+		result = prime * result + blobCacheMemorySizeMB;
+		result = prime * result + referenceCacheSize;
+		result = prime * result + readableWorkspaceCacheSize;
+		result = prime * result + objectNameCacheSize;
+		result = prime * result + typeSchemaCacheSizeMB;
+		result = prime * result + ((objectRecordFetchStrategy == null) ?
+				0 : objectRecordFetchStrategy.hashCode());
+		result = prime * result + objectRecordFetchThreshold;
+		result = prime * result + objectRecordFetchThreads;
+		result = prime * result + ((referenceSearchMode == null) ?
+				0 : referenceSearchMode.hashCode());
 		result = prime * result + ((backendType == null) ? 0 : backendType.hashCode());
 		result = prime * result + ((backendURL == null) ? 0 : backendURL.hashCode());
 		result = prime * result + ((backendUser == null) ? 0 : backendUser.hashCode());
@@ -710,6 +1075,15 @@ public class KBaseWorkspaceConfig {
 		result = prime * result + ((paramReport == null) ? 0 : paramReport.hashCode());
 		result = prime * result + ((sampleServiceToken == null) ? 0 : sampleServiceToken.hashCode());
 		result = prime * result + ((sampleServiceURL == null) ? 0 : sampleServiceURL.hashCode());
+		result = prime * result + saveObjectsThreads;
+		result = prime * result + backendRetrievalMaxThreads;
+		result = prime * result + backendUploadMaxThreads;
+		result = prime * result + idProcessingThreads;
+		result = prime * result + idProcessingTimeoutSec;
+		result = prime * result + bytestreamIDThreads;
+		result = prime * result + bytestreamIDCacheSize;
+		result = prime * result + sampleIDThreads;
+		result = prime * result + sampleIDCacheSize;
 		result = prime * result + ((tempDir == null) ? 0 : tempDir.hashCode());
 		result = prime * result + ((typedb == null) ? 0 : typedb.hashCode());
 		result = prime * result + ((workspaceAdmin == null) ? 0 : workspaceAdmin.hashCode());
@@ -759,6 +1133,34 @@ public class KBaseWorkspaceConfig {
 			return false;
 		if (backendTrustAllCerts != other.backendTrustAllCerts)
 			return false;
+		if (backendMultipartPartSizeMB != other.backendMultipartPartSizeMB)
+			return false;
+		if (backendMultipartThreads != other.backendMultipartThreads)
+			return false;
+		if (backendRangedReadSizeMB != other.backendRangedReadSizeMB)
+			return false;
+		if (backendRangedReadThreads != other.backendRangedReadThreads)
+			return false;
+		if (blobCacheDiskSizeMB != other.blobCacheDiskSizeMB)
+			return false;
+		if (blobCacheMemorySizeMB != other.blobCacheMemorySizeMB)
+			return false;
+		if (referenceCacheSize != other.referenceCacheSize)
+			return false;
+		if (readableWorkspaceCacheSize != other.readableWorkspaceCacheSize)
+			return false;
+		if (objectNameCacheSize != other.objectNameCacheSize)
+			return false;
+		if (typeSchemaCacheSizeMB != other.typeSchemaCacheSizeMB)
+			return false;
+		if (objectRecordFetchStrategy != other.objectRecordFetchStrategy)
+			return false;
+		if (objectRecordFetchThreshold != other.objectRecordFetchThreshold)
+			return false;
+		if (objectRecordFetchThreads != other.objectRecordFetchThreads)
+			return false;
+		if (referenceSearchMode != other.referenceSearchMode)
+			return false;
 		if (backendType != other.backendType)
 			return false;
 		if (backendURL == null) {
@@ -857,6 +1259,24 @@ public class KBaseWorkspaceConfig {
 				return false;
 		} else if (!sampleServiceURL.equals(other.sampleServiceURL))
 			return false;
+		if (saveObjectsThreads != other.saveObjectsThreads)
+			return false;
+		if (backendRetrievalMaxThreads != other.backendRetrievalMaxThreads)
+			return false;
+		if (backendUploadMaxThreads != other.backendUploadMaxThreads)
+			return false;
+		if (idProcessingThreads != other.idProcessingThreads)
+			return false;
+		if (idProcessingTimeoutSec != other.idProcessingTimeoutSec)
+			return false;
+		if (bytestreamIDThreads != other.bytestreamIDThreads)
+			return false;
+		if (bytestreamIDCacheSize != other.bytestreamIDCacheSize)
+			return false;
+		if (sampleIDThreads != other.sampleIDThreads)
+			return false;
+		if (sampleIDCacheSize != other.sampleIDCacheSize)
+			return false;
 		if (tempDir == null) {
 			if (other.tempDir != null)
 				return false;
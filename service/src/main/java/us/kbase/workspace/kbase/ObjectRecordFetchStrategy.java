@@ -0,0 +1,17 @@
+package us.kbase.workspace.kbase;
+
+/** The strategies for fetching object records for objects spread over many workspaces.
+ * See {@link us.kbase.workspace.database.mongo.ObjectRecordFetcher}.
+ */
+public enum ObjectRecordFetchStrategy {
+
+	/** A single query with an $or clause per workspace. */
+	OrQuery,
+	
+	/** A single aggregation with a $lookup stage. Requires MongoDB 5.0+. */
+	Lookup,
+	
+	/** A query per workspace, run in parallel. */
+	PerWorkspace,
+	
+}
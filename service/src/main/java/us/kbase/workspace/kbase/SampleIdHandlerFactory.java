@@ -11,6 +11,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.stream.Collectors;
 
 import us.kbase.auth.AuthToken;
@@ -36,11 +41,21 @@ import us.kbase.typedobj.idref.RemappedId;
 /**
  * A factory for building a handler for Sample Service IDs. These are embedded in Workspace
  * Service objects and denoted in the object type specification with an @id sample annotation.
+ * 
+ * When processing IDs, the factory may optionally get the ACLs of several samples concurrently
+ * and cache the samples that have been verified for each user. Concurrent requests for the
+ * ACLs of the same sample, from any handler created by the factory, are combined into one
+ * request.
  */
 public class SampleIdHandlerFactory implements IdReferenceHandlerFactory {
 
 	public static final IdReferenceType TYPE = new IdReferenceType("sample");
 	private final SampleServiceClient client;
+	private final ConcurrentIDTasks tasks;
+	private final VerifiedIDCache cache;
+	// ACL requests in progress by sample ID
+	private final ConcurrentMap<String, FutureTask<SampleACLs>> inFlight =
+			new ConcurrentHashMap<>();
 	
 	/** Create the Sample ID handler factory.
 	 * @param client a sample service client with service administrator write permissions.
@@ -48,7 +63,29 @@ public class SampleIdHandlerFactory implements IdReferenceHandlerFactory {
 	 * case an error will be thrown if a sample ID is encountered.
 	 */
 	public SampleIdHandlerFactory(final SampleServiceClient client) {
+		this(client, null, 1, null);
+	}
+	
+	/** Create the Sample ID handler factory.
+	 * @param client a sample service client with service administrator write permissions.
+	 * Pass null if there is no sample service available - in this
+	 * case an error will be thrown if a sample ID is encountered. The client must be safe to
+	 * use from multiple threads.
+	 * @param executor an executor, typically shared between handlers, with which to get the
+	 * ACLs of samples concurrently, or null to get the ACLs serially.
+	 * @param concurrency the maximum number of samples a single handler will process at once.
+	 * One of the samples is processed in the thread calling the handler.
+	 * @param cache a cache of the samples that have been verified for each user, or null to
+	 * always get the samples' ACLs.
+	 */
+	public SampleIdHandlerFactory(
+			final SampleServiceClient client,
+			final Executor executor,
+			final int concurrency,
+			final VerifiedIDCache cache) {
+		this.tasks = new ConcurrentIDTasks(TYPE, executor, concurrency);
 		this.client = client;
+		this.cache = cache;
 	}
 	
 	@Override
@@ -88,6 +125,38 @@ public class SampleIdHandlerFactory implements IdReferenceHandlerFactory {
 		}
 	}
 	
+	/* Get the ACLs for a sample. If another thread is already getting the ACLs for the sample,
+	 * wait for and return its result rather than making another request.
+	 */
+	private SampleACLs getSampleACLs(final String id)
+			throws IOException, JsonClientException, InterruptedException {
+		final FutureTask<SampleACLs> f = new FutureTask<>(() -> client.getSampleAcls(
+				new GetSampleACLsParams().withId(id).withAsAdmin(1L)));
+		final FutureTask<SampleACLs> running = inFlight.putIfAbsent(id, f);
+		if (running == null) {
+			try {
+				f.run();
+			} finally {
+				inFlight.remove(id, f);
+			}
+		}
+		try {
+			return (running == null ? f : running).get();
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof JsonClientException) {
+				throw (JsonClientException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException("Unexpected error", cause);
+		}
+	}
+	
 	private class SamplePermissionsHandler implements IdReferencePermissionHandler {
 		
 		private final String user;
@@ -209,37 +278,49 @@ public class SampleIdHandlerFactory implements IdReferenceHandlerFactory {
 			 * Decision: 1)
 			 */
 			final String user = userToken.getUserName();
-			for (final String id: idToObj.keySet()) {
-				final SampleACLs acls;
-				try {
-					// having a bulk method for getting ACLs would definitely be nice here
-					acls = client.getSampleAcls(new GetSampleACLsParams().withId(id)
-							.withAsAdmin(1L));
-				} catch (UnauthorizedException e) {
-					throw new IdReferenceHandlerException(
-							"Unable to contact the Sample Service - " +
-							"the Workspace credentials were rejected: " +
-							e.getLocalizedMessage(), TYPE, e);
-				} catch (IOException e) {
-					throw new IdReferenceHandlerException(
-							"There was a communication error while trying to contact the " +
-							"Sample Service: " + e.getLocalizedMessage(), TYPE, e);
-				} catch (ServerException e) {
-					throw new IdReferenceException(
-							"The Sample Service reported a problem while attempting " +
-							"to get Sample ACLs: " + e.getMessage(),
-							TYPE, idToObj.get(id), id, null, e);
-				} catch (JsonClientException e) {
-					throw new IdReferenceHandlerException(
-							"There was an unexpected error while trying to contact the " +
-							"Sample Service: " + e.getLocalizedMessage(), TYPE, e);
-				}
-				if (!user.equals(acls.getOwner()) && !acls.getAdmin().contains(user)) {
-					throw new IdReferenceException(
-							String.format("User %s does not have administrative permissions " +
-									"for sample %s", user, id),
-							TYPE, idToObj.get(id), id, null, null);
-				}
+			final List<String> toCheck = idToObj.keySet().stream()
+					.filter(id -> cache == null || !cache.isVerified(user, id))
+					.collect(Collectors.toList());
+			tasks.run(toCheck.size(), i -> checkAdmin(
+					user, toCheck.get(i), idToObj.get(toCheck.get(i))));
+		}
+		
+		private void checkAdmin(final String user, final String id, final T assobj)
+				throws IdReferenceHandlerException {
+			final SampleACLs acls;
+			try {
+				acls = getSampleACLs(id);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IdReferenceHandlerException(
+						"Interrupted while getting Sample ACLs", TYPE, e);
+			} catch (UnauthorizedException e) {
+				throw new IdReferenceHandlerException(
+						"Unable to contact the Sample Service - " +
+						"the Workspace credentials were rejected: " +
+						e.getLocalizedMessage(), TYPE, e);
+			} catch (IOException e) {
+				throw new IdReferenceHandlerException(
+						"There was a communication error while trying to contact the " +
+						"Sample Service: " + e.getLocalizedMessage(), TYPE, e);
+			} catch (ServerException e) {
+				throw new IdReferenceException(
+						"The Sample Service reported a problem while attempting " +
+						"to get Sample ACLs: " + e.getMessage(),
+						TYPE, assobj, id, null, e);
+			} catch (JsonClientException e) {
+				throw new IdReferenceHandlerException(
+						"There was an unexpected error while trying to contact the " +
+						"Sample Service: " + e.getLocalizedMessage(), TYPE, e);
+			}
+			if (!user.equals(acls.getOwner()) && !acls.getAdmin().contains(user)) {
+				throw new IdReferenceException(
+						String.format("User %s does not have administrative permissions " +
+								"for sample %s", user, id),
+						TYPE, assobj, id, null, null);
+			}
+			if (cache != null) {
+				cache.setVerified(user, id);
 			}
 		}
 
@@ -59,6 +59,12 @@ public class SchemaUpdaterCLI implements Callable<Integer>{
 				"indicates it is complete.")
 	private boolean override;
 	
+	@Option(names = {"-l", "--latest-versions"},
+			description = "Populate the latest version collection rather than updating the " +
+				"schema. Servers started after the collection is completed use it to list " +
+				"objects.")
+	private boolean latestVersions;
+	
 	@Option(names = {"-s", "--print-stacktrace"},
 			description = "On an error, print a stacktrace if available.")
 	private boolean stacktrace;
@@ -144,7 +150,11 @@ public class SchemaUpdaterCLI implements Callable<Integer>{
 		}
 		try (final MongoClient mc = mongoProvider.provide(cfg)) {
 			final MongoDatabase db = mc.getDatabase(cfg.getDBname());
-			updater.update(db, s -> cl.getOut().println(s), complete, override);
+			if (latestVersions) {
+				updater.backfillLatestVersions(db, s -> cl.getOut().println(s), complete);
+			} else {
+				updater.update(db, s -> cl.getOut().println(s), complete, override);
+			}
 		} catch (SchemaUpdateException | WorkspaceInitException e) {
 			printStackTrace(cl, e);
 			throw new ParameterException(cl, e.getLocalizedMessage(), e);
@@ -0,0 +1,101 @@
+package us.kbase.workspace.kbase;
+
+import static java.util.Objects.requireNonNull;
+import static us.kbase.workspace.database.Util.checkString;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/** Periodically logs statistics, such as cache hit rates, from the server's caches and
+ * schedulers.
+ */
+public class StatisticsLogger {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final Map<String, Supplier<String>> sources = new LinkedHashMap<>();
+	private ScheduledExecutorService executor = null;
+
+	/** Add a source of statistics. Sources are logged in the order they were added.
+	 * @param name the name of the source, for example the name of a cache.
+	 * @param statistics a supplier of the current statistics for the source.
+	 * @return this logger.
+	 */
+	public synchronized StatisticsLogger add(
+			final String name,
+			final Supplier<String> statistics) {
+		sources.put(checkString(name, "name"), requireNonNull(statistics, "statistics"));
+		return this;
+	}
+
+	/** Check whether any sources of statistics have been added.
+	 * @return true if there are no sources.
+	 */
+	public synchronized boolean isEmpty() {
+		return sources.isEmpty();
+	}
+
+	/** Log the current statistics from each source at the info level. */
+	public synchronized void log() {
+		for (final Entry<String, Supplier<String>> e: sources.entrySet()) {
+			try {
+				logger.info(String.format("%s statistics: %s", e.getKey(), e.getValue().get()));
+			} catch (RuntimeException ex) {
+				// don't let one broken source stop the rest from being logged
+				logger.warn(String.format("Failed to get %s statistics: %s",
+						e.getKey(), ex.getMessage()), ex);
+			}
+		}
+	}
+
+	/** Start logging the statistics in a background thread.
+	 * @param interval the time between each log of the statistics.
+	 */
+	public synchronized void start(final Duration interval) {
+		requireNonNull(interval, "interval");
+		if (interval.isNegative() || interval.isZero()) {
+			throw new IllegalArgumentException("interval must be positive");
+		}
+		if (executor != null) {
+			throw new IllegalStateException("Already started");
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setDaemon(true).setNameFormat("ws-statistics-log-%d").build());
+		executor.scheduleAtFixedRate(
+				this::log, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/** Stop logging the statistics. Does nothing if the logger was never started. */
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	/** Format Caffeine cache statistics for logging.
+	 * @param stats the statistics.
+	 * @return the formatted statistics.
+	 */
+	public static String format(final CacheStats stats) {
+		requireNonNull(stats, "stats");
+		return String.format(
+				"requests=%s hits=%s misses=%s hitRate=%.3f loadFailures=%s " +
+				"meanLoadMS=%.3f evictions=%s evictionWeight=%s",
+				stats.requestCount(), stats.hitCount(), stats.missCount(), stats.hitRate(),
+				stats.loadFailureCount(), stats.averageLoadPenalty() / 1_000_000.0,
+				stats.evictionCount(), stats.evictionWeight());
+	}
+}
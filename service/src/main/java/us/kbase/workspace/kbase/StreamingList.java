@@ -0,0 +1,204 @@
+package us.kbase.workspace.kbase;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import us.kbase.workspace.database.CloseableIterator;
+
+/** A list that lazily pulls its elements from an iterator. When the list is serialized to
+ * JSON with Jackson, each element is written as it is pulled from the iterator, and so the
+ * elements are never all held in memory at once. This allows server methods, which must
+ * return a list, to stream large results.
+ *
+ * The elements may only be iterated once. Calling any method that requires random access,
+ * such as {@link #size()} or {@link #get(int)}, before iterating the list pulls all the
+ * elements into memory, after which the list behaves as a normal list.
+ *
+ * Errors thrown by the iterator are thrown from the list methods, and when serializing the
+ * list, after some of the list may have already been written. In the latter case the
+ * serialized list is incomplete, and so the error is logged. Use {@link #buffer(int)} to
+ * pull the start of the list before serializing it, so that errors in small lists are
+ * thrown before anything is written.
+ * @param <T> the type of the list elements.
+ */
+@JsonSerialize(using = StreamingList.StreamingListSerializer.class)
+public class StreamingList<T> extends AbstractList<T> {
+
+	private final CloseableIterator<?> source;
+	// the source elements, mapped to list elements
+	private final Iterator<T> mapped;
+	// the buffered elements followed by the mapped elements
+	private final Iterator<T> iterator;
+	private final Deque<T> buffered = new ArrayDeque<>();
+	private List<T> materialized = null;
+	private boolean iterated = false;
+
+	/** Create the list.
+	 * @param source the source of the list elements. The source is closed when it is exhausted
+	 * or the list is serialized.
+	 * @param mapper a function to convert the source elements into the list elements.
+	 */
+	public <S> StreamingList(
+			final CloseableIterator<S> source,
+			final Function<? super S, ? extends T> mapper) {
+		this.source = requireNonNull(source, "source");
+		requireNonNull(mapper, "mapper");
+		this.mapped = new Iterator<T>() {
+
+			@Override
+			public boolean hasNext() {
+				return source.hasNext();
+			}
+
+			@Override
+			public T next() {
+				return mapper.apply(source.next());
+			}
+		};
+		this.iterator = new Iterator<T>() {
+
+			@Override
+			public boolean hasNext() {
+				return !buffered.isEmpty() || mapped.hasNext();
+			}
+
+			@Override
+			public T next() {
+				return buffered.isEmpty() ? mapped.next() : buffered.remove();
+			}
+		};
+	}
+	
+	/** Pull up to the given number of elements from the source into memory. Any errors
+	 * from the source while doing so are thrown from this method rather than when the list is
+	 * iterated or serialized, and so a list no longer than the buffer can be serialized
+	 * without errors. If the source is exhausted, it is closed and the list behaves as a
+	 * normal list.
+	 * @param maxElements the maximum number of elements to pull into memory.
+	 * @return this list.
+	 */
+	public StreamingList<T> buffer(final int maxElements) {
+		if (maxElements < 1) {
+			throw new IllegalArgumentException("maxElements must be > 0");
+		}
+		if (materialized != null) {
+			return this;
+		}
+		checkNotIterated();
+		try {
+			while (buffered.size() < maxElements && mapped.hasNext()) {
+				buffered.add(mapped.next());
+			}
+			if (!mapped.hasNext()) {
+				materialized = new ArrayList<>(buffered);
+				buffered.clear();
+				source.close();
+			}
+		} catch (RuntimeException | Error e) {
+			source.close();
+			throw e;
+		}
+		return this;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		if (materialized != null) {
+			return materialized.iterator();
+		}
+		checkNotIterated();
+		iterated = true;
+		return iterator;
+	}
+
+	private void checkNotIterated() {
+		if (iterated) {
+			throw new IllegalStateException("This list has already been iterated");
+		}
+	}
+
+	private List<T> materialize() {
+		if (materialized == null) {
+			checkNotIterated();
+			final List<T> list = new ArrayList<>();
+			try {
+				iterator.forEachRemaining(list::add);
+			} finally {
+				source.close();
+			}
+			materialized = list;
+		}
+		return materialized;
+	}
+
+	@Override
+	public T get(final int index) {
+		return materialize().get(index);
+	}
+
+	@Override
+	public int size() {
+		return materialize().size();
+	}
+
+	/** Close the source of the list elements. Any elements not yet pulled from the source are
+	 * discarded.
+	 */
+	public void close() {
+		source.close();
+	}
+
+	/** Serializes a {@link StreamingList} to a JSON array without calling {@link #size()},
+	 * writing each element as it is pulled from the list's source.
+	 */
+	public static class StreamingListSerializer extends StdSerializer<StreamingList<?>> {
+
+		private static final long serialVersionUID = 1L;
+
+		/** Create the serializer. */
+		public StreamingListSerializer() {
+			super(StreamingList.class, false);
+		}
+
+		@Override
+		public void serialize(
+				final StreamingList<?> list,
+				final JsonGenerator gen,
+				final SerializerProvider provider)
+				throws IOException {
+			gen.writeStartArray();
+			int count = 0;
+			try {
+				for (final Object o: list) {
+					provider.defaultSerializeValue(o, gen);
+					count++;
+				}
+			} catch (IOException | RuntimeException e) {
+				// the start of the array has been written, so the caller can't send a
+				// normal error response. Make sure the failure is recorded somewhere
+				LoggerFactory.getLogger(StreamingList.class).error(String.format(
+						"Failed to serialize list after writing %s elements, the " +
+						"serialized list is incomplete: %s", count, e.getMessage()), e);
+				throw e;
+			} finally {
+				list.close();
+			}
+			gen.writeEndArray();
+		}
+	}
+}
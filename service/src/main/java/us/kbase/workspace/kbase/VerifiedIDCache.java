@@ -0,0 +1,86 @@
+package us.kbase.workspace.kbase;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/** A cache of the IDs, such as bytestream nodes or samples, that have been verified for a user.
+ * What verification means depends on the ID type - for example, for bytestream nodes it means
+ * the user could read the node and the node is owned by the workspace.
+ *
+ * Only successful verifications are cached. The permissions on the IDs may be changed outside
+ * the workspace, so those changes are only seen once the entries expire, and the time to live
+ * should be short.
+ */
+public class VerifiedIDCache {
+
+	// the keys are lists of the user name and the ID
+	private final Cache<List<String>, Boolean> cache;
+
+	/** Create the cache.
+	 * @param maxEntries the maximum number of user and ID pairs to cache.
+	 * @param ttl the time to live for each entry.
+	 */
+	public VerifiedIDCache(final long maxEntries, final Duration ttl) {
+		this(maxEntries, ttl, Ticker.systemTicker());
+	}
+
+	/** Create the cache with a custom time source. Generally only useful for tests.
+	 * @param maxEntries the maximum number of user and ID pairs to cache.
+	 * @param ttl the time to live for each entry.
+	 * @param ticker the time source for expiring entries.
+	 */
+	public VerifiedIDCache(final long maxEntries, final Duration ttl, final Ticker ticker) {
+		requireNonNull(ttl, "ttl");
+		requireNonNull(ticker, "ticker");
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be > 0");
+		}
+		if (ttl.isNegative() || ttl.isZero()) {
+			throw new IllegalArgumentException("ttl must be positive");
+		}
+		// TODO JAVA11 upgrade Caffeine to v3.x after dumping java 8
+		cache = Caffeine.newBuilder()
+				.maximumSize(maxEntries)
+				.expireAfterWrite(ttl.toNanos(), TimeUnit.NANOSECONDS)
+				.ticker(ticker)
+				.recordStats()
+				.build();
+	}
+
+	/** Check whether an ID has been verified for a user.
+	 * @param userName the name of the user.
+	 * @param id the ID.
+	 * @return true if the ID was verified for the user and the entry has not expired.
+	 */
+	public boolean isVerified(final String userName, final String id) {
+		return cache.getIfPresent(key(userName, id)) != null;
+	}
+
+	/** Record that an ID has been verified for a user.
+	 * @param userName the name of the user.
+	 * @param id the ID.
+	 */
+	public void setVerified(final String userName, final String id) {
+		cache.put(key(userName, id), true);
+	}
+
+	private static List<String> key(final String userName, final String id) {
+		return Arrays.asList(requireNonNull(userName, "userName"), requireNonNull(id, "id"));
+	}
+
+	/** Get statistics for the cache.
+	 * @return the cache statistics.
+	 */
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+}
@@ -91,6 +91,7 @@ import us.kbase.workspace.database.exceptions.NoSuchObjectException;
 import us.kbase.workspace.database.exceptions.NoSuchReferenceException;
 import us.kbase.workspace.database.exceptions.NoSuchWorkspaceException;
 import us.kbase.workspace.database.exceptions.PreExistingWorkspaceException;
+import us.kbase.workspace.database.exceptions.UncheckedWorkspaceCommunicationException;
 import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
 import us.kbase.workspace.database.provenance.Provenance;
 import us.kbase.workspace.database.refsearch.ReferenceSearchMaximumSizeExceededException;
@@ -101,6 +102,9 @@ public class WorkspaceServerMethods {
 	// TODO TEST unit
 	// TODO JAVADOC
 	
+	// the number of objects to retrieve before serializing a streamed list of objects
+	private static final int LIST_OBJECTS_BUFFER_SIZE = 1000;
+	
 	private final Workspace ws;
 	private final AuthClient auth;
 	private final IdReferenceHandlerSetFactoryBuilder idFacBuilder;
@@ -598,6 +602,56 @@ public class WorkspaceServerMethods {
 					throws ParseException, MetadataException, CorruptWorkspaceDBException,
 						NoSuchWorkspaceException, WorkspaceCommunicationException,
 						WorkspaceAuthorizationException {
+		final ListObjectsParameters lop = toListObjectsParameters(params, user, asAdmin);
+		return objInfoToTuple(ws.listObjects(lop), false, !lop.isIncludeMetaData());
+	}
+	
+	/** List objects in one or more workspaces. Rather than holding the objects in memory,
+	 * the returned list retrieves the objects from the storage system as it is serialized.
+	 * See {@link StreamingList} for restrictions on the list.
+	 * 
+	 * The first 1000 objects are retrieved before this method returns, and so errors that
+	 * occur while retrieving them are thrown from this method. Errors that occur while the
+	 * rest of the list is being serialized cannot be reported to the caller in the usual
+	 * manner, since part of the response may already have been sent, and so are logged.
+	 * @param params the parameters determining which workspace objects will be listed.
+	 * @param user the user listing the objects, or null for an anonymous user.
+	 * @param asAdmin true to run the method as an admin. The user is ignored and all requested
+	 * data is returned without considering permissions. If true, at least one and no more than
+	 * 1000 workspaces must be specified for querying.
+	 * @return the objects information.
+	 * @throws ParseException if a date could not be parsed.
+	 * @throws MetadataException if the user supplied metadata was illegal.
+	 * @throws CorruptWorkspaceDBException if corrupt data was found in the storage system.
+	 * @throws NoSuchWorkspaceException if a requested workspace does not exist or is illegal.
+	 * @throws WorkspaceCommunicationException if a communication error occurred with the storage
+	 * system.
+	 * @throws WorkspaceAuthorizationException if the user is not authorized to access one or
+	 * more of the workspaces.
+	 */
+	public StreamingList<Tuple11<Long, String, String, String, Long, String, Long, String,
+			String, Long, Map<String,String>>> listObjectsStreaming(
+					final ListObjectsParams params,
+					final WorkspaceUser user,
+					final boolean asAdmin)
+					throws ParseException, MetadataException, CorruptWorkspaceDBException,
+						NoSuchWorkspaceException, WorkspaceCommunicationException,
+						WorkspaceAuthorizationException {
+		final ListObjectsParameters lop = toListObjectsParameters(params, user, asAdmin);
+		try {
+			return new StreamingList<>(ws.iterateObjects(lop),
+					oi -> objInfoToTuple(oi, false, !lop.isIncludeMetaData()))
+					.buffer(LIST_OBJECTS_BUFFER_SIZE);
+		} catch (UncheckedWorkspaceCommunicationException e) {
+			throw e.getCause();
+		}
+	}
+	
+	private ListObjectsParameters toListObjectsParameters(
+			final ListObjectsParams params,
+			final WorkspaceUser user,
+			final boolean asAdmin)
+			throws ParseException, MetadataException {
 		checkAddlArgs(params.getAdditionalProperties(), params.getClass());
 		final List<WorkspaceIdentifier> wsis = new LinkedList<WorkspaceIdentifier>();
 		if (params.getWorkspaces() != null) {
@@ -613,8 +667,7 @@ public class WorkspaceServerMethods {
 				"Cannot specify both timestamp and epoch for after parameter");
 		final Instant before = chooseInstant(params.getBefore(), params.getBeforeEpoch(),
 				"Cannot specify both timestamp and epoch for before parameter");
-		final boolean includeMeta = longToBoolean(params.getIncludeMetadata());
-		final ListObjectsParameters lop = ListObjectsParameters.getBuilder(wsis)
+		return ListObjectsParameters.getBuilder(wsis)
 				.withUser(user)
 				.withAsAdmin(asAdmin)
 				.withType(type)
@@ -630,11 +683,9 @@ public class WorkspaceServerMethods {
 				.withShowDeleted(longToBoolean(params.getShowDeleted()))
 				.withShowOnlyDeleted(longToBoolean(params.getShowOnlyDeleted()))
 				.withShowAllVersions(longToBoolean(params.getShowAllVersions()))
-				.withIncludeMetaData(includeMeta)
+				.withIncludeMetaData(longToBoolean(params.getIncludeMetadata()))
 				.withLimit(longToInt(params.getLimit(), "Limit", -1))
 				.build();
-		
-		return objInfoToTuple(ws.listObjects(lop), false, !includeMeta);
 	}
 
 	/** Get all versions of an object.
@@ -0,0 +1,444 @@
+package us.kbase.workspace.modules;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/** A durable, append only queue of events stored in a local directory. Events are written to
+ * log files as lines of JSON and are read back in order, in batches, by a single consumer. The
+ * consumer commits each batch once it has been delivered, and the position of the first
+ * undelivered event is then stored in an offset file. Events that were read but not committed
+ * are read again, and so are delivered at least once, including after a restart.
+ *
+ * The log is split into numbered segment files. Events are appended to the newest segment, and
+ * a new segment is started once the newest segment reaches the segment size. A segment is
+ * deleted once all its events have been delivered, so events are never copied between files.
+ *
+ * The number of undelivered events is capped; once the cap is reached, events cannot be
+ * appended until some events are delivered.
+ *
+ * Lines in the log that can't be parsed as events, for example due to a corrupted disk, are
+ * skipped rather than blocking the events after them. Skipped lines are logged and counted
+ * when the batch containing them is committed.
+ *
+ * The directory must not be shared with another outbox or process.
+ */
+public class FileEventOutbox {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final TypeReference<Map<String, Object>> EVENT_TYPE =
+			new TypeReference<Map<String, Object>>() {};
+
+	private static final String LOG_PREFIX = "events-";
+	private static final String LOG_SUFFIX = ".log";
+	private static final String OFFSET_FILE = "events.offset";
+	private static final String OFFSET_TEMP_FILE = "events.offset.tmp";
+	private static final int READ_SIZE = 64 * 1024;
+
+	/** The default size at which a new log segment is started. */
+	public static final long DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+	/** The default maximum number of undelivered events. */
+	public static final long DEFAULT_MAX_BACKLOG = 1_000_000;
+
+	/** A batch of events read from the outbox. */
+	public static class Batch {
+
+		private final List<Map<String, Object>> events;
+		private final List<String> corrupt;
+		private final long generation;
+		private final long start;
+		private final long end;
+
+		private Batch(
+				final List<Map<String, Object>> events,
+				final List<String> corrupt,
+				final long generation,
+				final long start,
+				final long end) {
+			this.events = Collections.unmodifiableList(events);
+			this.corrupt = corrupt;
+			this.generation = generation;
+			this.start = start;
+			this.end = end;
+		}
+
+		/** Get the events in the batch, in the order they were added to the outbox.
+		 * @return the events.
+		 */
+		public List<Map<String, Object>> getEvents() {
+			return events;
+		}
+
+		/** Check if the batch is empty. An empty batch may still contain corrupt events that
+		 * are skipped when the batch is committed.
+		 * @return true if the batch contains no events.
+		 */
+		public boolean isEmpty() {
+			return events.isEmpty();
+		}
+	}
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final Path dir;
+	private final boolean sync;
+	private final long segmentSize;
+	private final long maxBacklog;
+	// the segment containing the first event that has not been delivered
+	private long readGeneration;
+	private FileChannel readLog;
+	// the segment to which events are appended. May be the same as the read segment.
+	private long writeGeneration;
+	private FileChannel writeLog;
+	// the offset in the read segment of the first event that has not been delivered
+	private long committed;
+	private long backlog;
+	private long corruptEvents;
+
+	/** Open an outbox with the default segment size and maximum backlog, creating it if it does
+	 * not exist. Any events that were not delivered when the outbox was last used will be
+	 * delivered again.
+	 * @param dir the directory in which to store the outbox.
+	 * @param sync true to force each event to the storage device before returning from
+	 * {@link #append(Map)}. If false, events survive a restart of the process, but may be lost if
+	 * the host fails.
+	 * @throws IOException if the outbox could not be opened.
+	 */
+	public FileEventOutbox(final Path dir, final boolean sync) throws IOException {
+		this(dir, sync, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_BACKLOG);
+	}
+
+	/** Open an outbox, creating it if it does not exist. Any events that were not delivered
+	 * when the outbox was last used will be delivered again.
+	 * @param dir the directory in which to store the outbox.
+	 * @param sync true to force each event to the storage device before returning from
+	 * {@link #append(Map)}. If false, events survive a restart of the process, but may be lost if
+	 * the host fails.
+	 * @param segmentSize the size in bytes at which a new log segment is started.
+	 * @param maxBacklog the maximum number of undelivered events. Attempts to append events
+	 * beyond this limit fail.
+	 * @throws IOException if the outbox could not be opened.
+	 */
+	public FileEventOutbox(
+			final Path dir,
+			final boolean sync,
+			final long segmentSize,
+			final long maxBacklog)
+			throws IOException {
+		this.dir = requireNonNull(dir, "dir");
+		if (segmentSize < 1) {
+			throw new IllegalArgumentException("segmentSize must be > 0");
+		}
+		if (maxBacklog < 1) {
+			throw new IllegalArgumentException("maxBacklog must be > 0");
+		}
+		this.sync = sync;
+		this.segmentSize = segmentSize;
+		this.maxBacklog = maxBacklog;
+		Files.createDirectories(dir);
+		final TreeSet<Long> segments = listSegments();
+		final Path offsetFile = dir.resolve(OFFSET_FILE);
+		if (Files.exists(offsetFile)) {
+			final String[] offset = new String(Files.readAllBytes(offsetFile),
+					StandardCharsets.UTF_8).trim().split(" ");
+			try {
+				readGeneration = Long.parseLong(offset[0]);
+				committed = Long.parseLong(offset[1]);
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				throw new IOException("Illegal outbox offset file " + offsetFile, e);
+			}
+		} else if (!segments.isEmpty()) {
+			readGeneration = segments.first();
+		}
+		// segments before the read segment were delivered but not deleted
+		for (final Long gen: segments.headSet(readGeneration)) {
+			Files.delete(logPath(gen));
+		}
+		segments.add(readGeneration);
+		writeGeneration = segments.last();
+		readLog = openLog(readGeneration);
+		writeLog = readGeneration == writeGeneration ? readLog : openLog(writeGeneration);
+		if (committed > readLog.size()) {
+			close();
+			throw new IOException(String.format(
+					"Outbox offset %s is beyond the end of the log %s", committed,
+					logPath(readGeneration)));
+		}
+		for (final Long gen: segments.tailSet(readGeneration)) {
+			recover(gen);
+		}
+		skipDeliveredSegments();
+	}
+
+	private Path logPath(final long gen) {
+		return dir.resolve(LOG_PREFIX + gen + LOG_SUFFIX);
+	}
+
+	private FileChannel openLog(final long gen) throws IOException {
+		return FileChannel.open(logPath(gen), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	private TreeSet<Long> listSegments() throws IOException {
+		final TreeSet<Long> segments = new TreeSet<>();
+		try (final DirectoryStream<Path> logs = Files.newDirectoryStream(
+				dir, LOG_PREFIX + "*" + LOG_SUFFIX)) {
+			for (final Path p: logs) {
+				final String name = p.getFileName().toString();
+				try {
+					segments.add(Long.parseLong(name.substring(
+							LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length())));
+				} catch (NumberFormatException e) {
+					throw new IOException("Illegal outbox log file " + p, e);
+				}
+			}
+		}
+		return segments;
+	}
+
+	/* Counts the undelivered events in a segment and removes any partially written event at the
+	 * end of the segment, which can only be present if the process stopped while appending the
+	 * event.
+	 */
+	private void recover(final long gen) throws IOException {
+		final FileChannel log;
+		if (gen == readGeneration) {
+			log = readLog;
+		} else if (gen == writeGeneration) {
+			log = writeLog;
+		} else {
+			log = openLog(gen);
+		}
+		try {
+			final long start = gen == readGeneration ? committed : 0;
+			long pos = start;
+			long lastLineEnd = start;
+			final ByteBuffer buf = ByteBuffer.allocate(READ_SIZE);
+			while (pos < log.size()) {
+				buf.clear();
+				final int read = log.read(buf, pos);
+				for (int i = 0; i < read; i++) {
+					if (buf.get(i) == '\n') {
+						backlog++;
+						lastLineEnd = pos + i + 1;
+					}
+				}
+				pos += read;
+			}
+			if (lastLineEnd < log.size()) {
+				log.truncate(lastLineEnd);
+				log.force(false);
+			}
+		} finally {
+			if (log != readLog && log != writeLog) {
+				log.close();
+			}
+		}
+	}
+
+	/* Moves the read position to the next segment, and deletes the read segment, while the read
+	 * segment has been completely delivered and is not the segment being written.
+	 */
+	private void skipDeliveredSegments() throws IOException {
+		while (readGeneration < writeGeneration && committed >= readLog.size()) {
+			final long newGen = readGeneration + 1;
+			// switching the offset file to the next segment is the commit point
+			writeOffset(newGen, 0);
+			final Path oldLog = logPath(readGeneration);
+			readLog.close();
+			readLog = newGen == writeGeneration ? writeLog : openLog(newGen);
+			readGeneration = newGen;
+			committed = 0;
+			Files.deleteIfExists(oldLog);
+		}
+	}
+
+	/** Add an event to the end of the outbox.
+	 * @param event the event. The event must be serializable to JSON.
+	 * @throws IOException if the event could not be written.
+	 */
+	public synchronized void append(final Map<String, Object> event) throws IOException {
+		final ByteArrayOutputStream line = new ByteArrayOutputStream();
+		MAPPER.writeValue(line, requireNonNull(event, "event"));
+		line.write('\n');
+		if (backlog >= maxBacklog) {
+			throw new IOException(String.format(
+					"The outbox at %s is full with %s undelivered events", dir, backlog));
+		}
+		if (writeLog.size() >= segmentSize) {
+			startSegment();
+		}
+		final ByteBuffer buf = ByteBuffer.wrap(line.toByteArray());
+		final long start = writeLog.size();
+		try {
+			while (buf.hasRemaining()) {
+				writeLog.write(buf, start + buf.position());
+			}
+			if (sync) {
+				writeLog.force(false);
+			}
+		} catch (IOException e) {
+			// don't leave a partial event in the log
+			writeLog.truncate(start);
+			throw e;
+		}
+		backlog++;
+		notifyAll();
+	}
+
+	private void startSegment() throws IOException {
+		final long newGen = writeGeneration + 1;
+		final FileChannel newLog = FileChannel.open(logPath(newGen), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		if (writeLog != readLog) {
+			writeLog.close();
+		}
+		writeLog = newLog;
+		writeGeneration = newGen;
+	}
+
+	/** Read the oldest undelivered events from the outbox. Until a batch is committed, the
+	 * same events are returned by each call. Corrupt events are not returned, but are included
+	 * in the batch so that committing the batch skips them.
+	 * @param maxEvents the maximum number of events to return.
+	 * @param waitMillis the maximum time to wait for events if the outbox is empty.
+	 * @return the events, which may be empty.
+	 * @throws IOException if the events could not be read.
+	 * @throws InterruptedException if the thread is interrupted while waiting for events.
+	 */
+	public synchronized Batch next(final int maxEvents, final long waitMillis)
+			throws IOException, InterruptedException {
+		if (maxEvents < 1) {
+			throw new IllegalArgumentException("maxEvents must be > 0");
+		}
+		final long end = System.nanoTime() + waitMillis * 1_000_000L;
+		long remaining = waitMillis;
+		while (backlog == 0 && remaining > 0) {
+			wait(remaining);
+			remaining = (end - System.nanoTime()) / 1_000_000L;
+		}
+		// the read segment may have been delivered before a new segment was started
+		skipDeliveredSegments();
+		// batches never span segments
+		final List<Map<String, Object>> events = new ArrayList<>();
+		final List<String> corrupt = new ArrayList<>();
+		final ByteArrayOutputStream line = new ByteArrayOutputStream();
+		final ByteBuffer buf = ByteBuffer.allocate(READ_SIZE);
+		long pos = committed;
+		long eventsEnd = committed;
+		while (events.size() < maxEvents && pos < readLog.size()) {
+			buf.clear();
+			final int read = readLog.read(buf, pos);
+			int i = 0;
+			for (; i < read && events.size() < maxEvents; i++) {
+				final byte b = buf.get(i);
+				if (b == '\n') {
+					try {
+						events.add(MAPPER.readValue(line.toByteArray(), EVENT_TYPE));
+					} catch (JsonProcessingException e) {
+						// retrying can't fix the event, so skip it rather than block the outbox
+						corrupt.add(String.format("Skipped corrupt event at offset %s in %s: %s",
+								eventsEnd, logPath(readGeneration), e.getOriginalMessage()));
+					}
+					line.reset();
+					eventsEnd = pos + i + 1;
+				} else {
+					line.write(b);
+				}
+			}
+			pos += i;
+		}
+		return new Batch(events, corrupt, readGeneration, committed, eventsEnd);
+	}
+
+	/** Mark the events in a batch as delivered. The events will not be returned again, and any
+	 * corrupt events in the batch are logged and skipped.
+	 * @param batch the batch, which must be the last batch returned by
+	 * {@link #next(int, long)}.
+	 * @throws IOException if the offset could not be stored.
+	 */
+	public synchronized void commit(final Batch batch) throws IOException {
+		requireNonNull(batch, "batch");
+		if (batch.start == batch.end) {
+			return;
+		}
+		if (batch.generation != readGeneration || batch.start != committed) {
+			throw new IllegalStateException("The batch has already been committed");
+		}
+		committed = batch.end;
+		backlog -= batch.events.size() + batch.corrupt.size();
+		corruptEvents += batch.corrupt.size();
+		for (final String err: batch.corrupt) {
+			logger.error(err);
+		}
+		if (readGeneration < writeGeneration && committed >= readLog.size()) {
+			skipDeliveredSegments();
+		} else {
+			writeOffset(readGeneration, committed);
+		}
+	}
+
+	private void writeOffset(final long gen, final long offset) throws IOException {
+		final Path temp = dir.resolve(OFFSET_TEMP_FILE);
+		try (final FileChannel c = FileChannel.open(temp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			final ByteBuffer buf = ByteBuffer.wrap(
+					(gen + " " + offset + "\n").getBytes(StandardCharsets.UTF_8));
+			while (buf.hasRemaining()) {
+				c.write(buf);
+			}
+			if (sync) {
+				c.force(false);
+			}
+		}
+		Files.move(temp, dir.resolve(OFFSET_FILE), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/** Get the number of events in the outbox that have not been delivered.
+	 * @return the number of events.
+	 */
+	public synchronized long getBacklog() {
+		return backlog;
+	}
+
+	/** Get the number of corrupt events that were skipped since the outbox was opened.
+	 * @return the number of events.
+	 */
+	public synchronized long getCorruptEvents() {
+		return corruptEvents;
+	}
+
+	/** Close the outbox. Undelivered events remain in the outbox directory.
+	 * @throws IOException if the outbox could not be closed.
+	 */
+	public synchronized void close() throws IOException {
+		try {
+			readLog.close();
+		} finally {
+			writeLog.close();
+		}
+	}
+}
@@ -3,6 +3,8 @@ package us.kbase.workspace.modules;
 import static java.util.Objects.requireNonNull;
 import static us.kbase.workspace.database.Util.checkString;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.HashMap;
@@ -66,6 +68,20 @@ import us.kbase.workspace.listener.WorkspaceEventListenerFactory;
  * to Kafka returns, and if a write fails, an exception is thrown in the thread that called
  * the listener.
  * 
+ * Alternatively, the listener can write events to a durable outbox on local disk and send them
+ * to Kafka in batches in a background thread - see {@link FileEventOutbox} and
+ * {@link KafkaOutboxSender}. Workspace operations then do not wait for Kafka, and events
+ * written while Kafka is unavailable are sent when it becomes available, but errors sending
+ * events are only logged. The outbox is configured with the optional arguments:
+ * outbox.dir - the directory in which to store the outbox. If absent, the outbox is not used.
+ * outbox.batch.size - the maximum number of events to send to Kafka in one batch. Default 500.
+ * outbox.max.backlog - the maximum number of unsent events in the outbox. Once reached,
+ * workspace operations fail until events are sent. Default
+ * {@link FileEventOutbox#DEFAULT_MAX_BACKLOG}.
+ * outbox.sync - "true" to force each event to disk before the workspace operation completes.
+ * Default false, in which case events may be lost if the host, but not the workspace, fails.
+ * The sender is stopped, and the Kafka client and outbox closed, when the JVM shuts down.
+ * 
  * @author gaprice@lbl.gov
  *
  */
@@ -81,7 +97,7 @@ public class KafkaNotifierFactory implements WorkspaceEventListenerFactory {
 		 * 
 		 * If this turns out to be a bad plan, we may need to relax those requirements.
 		 * 
-		 * To improve reliability further, we'd need persistent storage of unsent messages.
+		 * If the outbox is configured, 2) is replaced by persistent storage of unsent messages.
 		 */
 		
 		private static final String KAFKA = "Kafka";
@@ -89,6 +105,11 @@ public class KafkaNotifierFactory implements WorkspaceEventListenerFactory {
 		// may want to split events into different topics
 		private static final String TOPIC = "topic";
 		private static final String KAFKA_WS_TOPIC = KAFKA + " " + TOPIC;
+		private static final String OUTBOX_DIR = "outbox.dir";
+		private static final String OUTBOX_BATCH_SIZE = "outbox.batch.size";
+		private static final String OUTBOX_MAX_BACKLOG = "outbox.max.backlog";
+		private static final String OUTBOX_SYNC = "outbox.sync";
+		private static final int DEFAULT_OUTBOX_BATCH_SIZE = 500;
 		
 		/** The event type sent by the
 		 * {@link WorkspaceEventListener#saveObject(ObjectInformation, boolean)},
@@ -169,10 +190,74 @@ public class KafkaNotifierFactory implements WorkspaceEventListenerFactory {
 		kcfg.put("acks", "all");
 		kcfg.put("enable.idempotence", true);
 		kcfg.put("delivery.timeout.ms", 30000);
-		return new KafkaNotifier(
-				topic,
-				bootstrapServers,
-				new KafkaProducer<>(kcfg, new StringSerializer(), new MapSerializer()));
+		final String outboxDir = cfg.get(OUTBOX_DIR);
+		if (outboxDir == null || outboxDir.trim().isEmpty()) {
+			return new KafkaNotifier(
+					topic,
+					bootstrapServers,
+					new KafkaProducer<>(kcfg, new StringSerializer(), new MapSerializer()));
+		}
+		final int batchSize = getPositiveInt(
+				cfg, OUTBOX_BATCH_SIZE, DEFAULT_OUTBOX_BATCH_SIZE);
+		final int maxBacklog = getPositiveInt(
+				cfg, OUTBOX_MAX_BACKLOG, (int) FileEventOutbox.DEFAULT_MAX_BACKLOG);
+		// events are sent in batches, so give the client a chance to group them
+		kcfg.put("linger.ms", 5);
+		final FileEventOutbox outbox;
+		try {
+			outbox = new FileEventOutbox(Paths.get(outboxDir.trim()),
+					"true".equals(cfg.get(OUTBOX_SYNC)), FileEventOutbox.DEFAULT_SEGMENT_SIZE,
+					maxBacklog);
+		} catch (IOException e) {
+			throw new ListenerInitializationException(String.format(
+					"Could not open %s outbox at %s: %s", KAFKA, outboxDir.trim(),
+					e.getMessage()), e);
+		}
+		final KafkaProducer<String, Map<String, Object>> client =
+				new KafkaProducer<>(kcfg, new StringSerializer(), new MapSerializer());
+		final KafkaNotifier notifier;
+		try {
+			notifier = new KafkaNotifier(topic, bootstrapServers, client, outbox);
+		} catch (ListenerInitializationException e) {
+			closeQuietly(outbox);
+			throw e;
+		}
+		notifier.sender = new KafkaOutboxSender(client, notifier.topic, outbox, batchSize);
+		notifier.sender.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(
+				notifier::shutdown, "ws-kafka-outbox-shutdown"));
+		return notifier;
+	}
+
+	private int getPositiveInt(
+			final Map<String, String> cfg,
+			final String key,
+			final int defaultValue)
+			throws ListenerInitializationException {
+		final String value = cfg.get(key);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		final int size;
+		try {
+			size = Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new ListenerInitializationException(String.format(
+					"%s %s must be an integer: %s", KAFKA, key, value));
+		}
+		if (size < 1) {
+			throw new ListenerInitializationException(String.format(
+					"%s %s must be > 0: %s", KAFKA, key, value));
+		}
+		return size;
+	}
+
+	private void closeQuietly(final FileEventOutbox outbox) {
+		try {
+			outbox.close();
+		} catch (IOException e) {
+			// nothing to be done, the original error is more important
+		}
 	}
 
 	/** A Kafka JSON serializer for arbitrary maps. Requires no configuration. The topic
@@ -212,6 +297,9 @@ public class KafkaNotifierFactory implements WorkspaceEventListenerFactory {
 		
 		private final String topic;
 		private final KafkaProducer<String, Map<String, Object>> client;
+		private final FileEventOutbox outbox;
+		// set when the outbox is used
+		private KafkaOutboxSender sender = null;
 		
 		// constructor is here to allow for unit tests
 		private KafkaNotifier(
@@ -219,6 +307,17 @@ public class KafkaNotifierFactory implements WorkspaceEventListenerFactory {
 				final String bootstrapServers,
 				final KafkaProducer<String, Map<String, Object>> client)
 				throws ListenerInitializationException {
+			this(topic, bootstrapServers, client, null);
+		}
+		
+		// if outbox is non-null, events are written to the outbox rather than sent to Kafka
+		private KafkaNotifier(
+				final String topic,
+				final String bootstrapServers,
+				final KafkaProducer<String, Map<String, Object>> client,
+				final FileEventOutbox outbox)
+				throws ListenerInitializationException {
+			this.outbox = outbox;
 			this.topic = checkString(topic, KAFKA_WS_TOPIC, 249);
 			final Matcher m = INVALID_TOPIC_CHARS.matcher(this.topic);
 			if (m.find()) {
@@ -240,6 +339,15 @@ public class KafkaNotifierFactory implements WorkspaceEventListenerFactory {
 		}
 		
 		private void post(final Map<String, Object> message) {
+			if (outbox != null) {
+				try {
+					outbox.append(message);
+				} catch (IOException e) {
+					throw new RuntimeException("Failed writing notification to the Kafka " +
+							"outbox: " + e.getMessage(), e);
+				}
+				return;
+			}
 			final Future<RecordMetadata> res = client.send(new ProducerRecord<>(topic, message));
 			try {
 				res.get(35000, TimeUnit.MILLISECONDS);
@@ -255,6 +363,19 @@ public class KafkaNotifierFactory implements WorkspaceEventListenerFactory {
 			}
 		}
 		
+		// stops sending outbox events and closes the Kafka client and the outbox
+		private void shutdown() {
+			if (sender == null) {
+				return;
+			}
+			try {
+				sender.stop();
+				outbox.close();
+			} catch (InterruptedException | IOException e) {
+				// the JVM is shutting down, nothing to be done. Unsent events remain in the outbox
+			}
+		}
+		
 		private String getNullableUser(final WorkspaceUser user) {
 			return user == null ? null : user.getUser();
 		}
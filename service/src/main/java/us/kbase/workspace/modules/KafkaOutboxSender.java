@@ -0,0 +1,285 @@
+package us.kbase.workspace.modules;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import us.kbase.workspace.modules.FileEventOutbox.Batch;
+
+/** Sends the events in a {@link FileEventOutbox} to Kafka in a background thread.
+ *
+ * Events are sent in batches. A batch is only removed from the outbox once Kafka has
+ * acknowledged every event in the batch; otherwise the whole batch is retried after a delay
+ * that increases with each consecutive failure. Events are therefore delivered at least once,
+ * and may be delivered more than once if a batch is partially sent.
+ *
+ * Events that Kafka can never accept - events too large for Kafka or that can't be
+ * serialized - are dropped with an error log rather than retried, as they would otherwise block
+ * the outbox permanently. Any other error, including non-retriable errors such as authorization
+ * failures that an operator can fix, causes the batch to be retried.
+ *
+ * The state of the sender - the backlog, the number of sent, dropped and corrupt events and
+ * failed batches, the latency of the last batch, and the last error - is logged periodically
+ * while the sender is running.
+ */
+public class KafkaOutboxSender {
+
+	private static final long POLL_WAIT_MS = 1000;
+	private static final long SEND_TIMEOUT_MS = 35000;
+	private static final long MIN_RETRY_DELAY_MS = 100;
+	private static final long MAX_RETRY_DELAY_MS = 30000;
+	private static final long STATUS_LOG_INTERVAL_MS = 60000;
+	private static final int MAX_LOGGED_EVENT_LENGTH = 1000;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final Producer<String, Map<String, Object>> client;
+	private final String topic;
+	private final FileEventOutbox outbox;
+	private final int batchSize;
+	private final Thread thread;
+	private volatile boolean running = false;
+
+	private final AtomicLong sentEvents = new AtomicLong();
+	private final AtomicLong droppedEvents = new AtomicLong();
+	private final AtomicLong failedBatches = new AtomicLong();
+	private volatile long lastBatchLatencyMS = 0;
+	private volatile String lastError = null;
+
+	/** Create the sender. The sender does nothing until {@link #start()} is called.
+	 * @param client the Kafka client.
+	 * @param topic the topic to which events will be sent.
+	 * @param outbox the outbox containing the events to send.
+	 * @param batchSize the maximum number of events to send in one batch.
+	 */
+	public KafkaOutboxSender(
+			final Producer<String, Map<String, Object>> client,
+			final String topic,
+			final FileEventOutbox outbox,
+			final int batchSize) {
+		this.client = requireNonNull(client, "client");
+		this.topic = requireNonNull(topic, "topic");
+		this.outbox = requireNonNull(outbox, "outbox");
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be > 0");
+		}
+		this.batchSize = batchSize;
+		thread = new Thread(this::run, "ws-kafka-outbox");
+		thread.setDaemon(true);
+	}
+
+	/** Start sending events in a background thread. */
+	public synchronized void start() {
+		if (running) {
+			throw new IllegalStateException("The sender is already started");
+		}
+		running = true;
+		thread.start();
+	}
+
+	/** Stop sending events and close the Kafka client. Events that have not been sent remain in
+	 * the outbox.
+	 * @throws InterruptedException if the thread is interrupted while waiting for the sender
+	 * to stop.
+	 */
+	public synchronized void stop() throws InterruptedException {
+		if (running) {
+			running = false;
+			thread.interrupt();
+			thread.join();
+			logStatus();
+		}
+		client.close();
+	}
+
+	private void run() {
+		long retryDelay = MIN_RETRY_DELAY_MS;
+		long nextStatusLog = System.nanoTime();
+		while (running) {
+			if (System.nanoTime() - nextStatusLog >= 0) {
+				logStatus();
+				nextStatusLog = System.nanoTime() +
+						TimeUnit.MILLISECONDS.toNanos(STATUS_LOG_INTERVAL_MS);
+			}
+			try {
+				if (sendBatch()) {
+					retryDelay = MIN_RETRY_DELAY_MS;
+				} else {
+					Thread.sleep(retryDelay);
+					retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MS);
+				}
+			} catch (InterruptedException e) {
+				// check whether the sender is stopping
+			}
+		}
+	}
+
+	/** Send the next batch of events in the outbox, waiting for events to arrive if the outbox
+	 * is empty. Generally only useful for tests, as the background thread calls this method
+	 * repeatedly.
+	 * @return false if the batch could not be sent and should be retried, true otherwise.
+	 * @throws InterruptedException if the thread is interrupted.
+	 */
+	public boolean sendBatch() throws InterruptedException {
+		final Batch batch;
+		try {
+			batch = outbox.next(batchSize, POLL_WAIT_MS);
+		} catch (IOException e) {
+			return fail("Failed reading events from the outbox: " + e.getMessage(), e);
+		}
+		if (batch.isEmpty()) {
+			try {
+				// skips any corrupt events
+				outbox.commit(batch);
+			} catch (IOException e) {
+				return fail("Failed updating the outbox offset: " + e.getMessage(), e);
+			}
+			return true;
+		}
+		final long start = System.nanoTime();
+		final List<Map<String, Object>> events = batch.getEvents();
+		final List<Future<RecordMetadata>> results = new ArrayList<>();
+		// the events that can never be sent, and why
+		final Map<Integer, Throwable> dropped = new TreeMap<>();
+		try {
+			for (int i = 0; i < events.size(); i++) {
+				try {
+					results.add(client.send(new ProducerRecord<>(topic, events.get(i))));
+				} catch (RecordTooLargeException | SerializationException e) {
+					results.add(null);
+					dropped.put(i, e);
+				}
+			}
+			client.flush();
+			final long end = start + TimeUnit.MILLISECONDS.toNanos(SEND_TIMEOUT_MS);
+			for (int i = 0; i < results.size(); i++) {
+				if (results.get(i) != null) {
+					try {
+						results.get(i).get(
+								Math.max(0, end - System.nanoTime()), TimeUnit.NANOSECONDS);
+					} catch (ExecutionException e) {
+						if (!isUnsendable(e.getCause())) {
+							throw e;
+						}
+						dropped.put(i, e.getCause());
+					}
+				}
+			}
+		} catch (TimeoutException e) {
+			return fail("Timed out after 35s while sending notifications to Kafka", e);
+		} catch (ExecutionException e) {
+			return fail("Failed sending notifications to Kafka: " + e.getCause().getMessage(),
+					e.getCause());
+		} catch (RuntimeException e) {
+			return fail("Failed sending notifications to Kafka: " + e.getMessage(), e);
+		}
+		lastBatchLatencyMS = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		try {
+			outbox.commit(batch);
+		} catch (IOException e) {
+			// the batch will be sent again
+			return fail("Failed updating the outbox offset: " + e.getMessage(), e);
+		}
+		sentEvents.addAndGet(events.size() - dropped.size());
+		droppedEvents.addAndGet(dropped.size());
+		for (final Entry<Integer, Throwable> e: dropped.entrySet()) {
+			String event = String.valueOf(events.get(e.getKey()));
+			if (event.length() > MAX_LOGGED_EVENT_LENGTH) {
+				event = event.substring(0, MAX_LOGGED_EVENT_LENGTH) + "...";
+			}
+			logger.error(String.format("Dropped an event that can't be sent to Kafka: %s: %s",
+					e.getValue().getMessage(), event), e.getValue());
+		}
+		return true;
+	}
+
+	private static boolean isUnsendable(final Throwable error) {
+		return error instanceof RecordTooLargeException ||
+				error instanceof SerializationException;
+	}
+
+	private void logStatus() {
+		final long backlog = getBacklog();
+		final String msg = String.format(
+				"Kafka outbox status: backlog %s, sent %s, dropped %s, corrupt %s, " +
+				"failed batches %s, last batch latency %sms, last error: %s",
+				backlog, getSentEvents(), getDroppedEvents(), outbox.getCorruptEvents(),
+				getFailedBatches(), getLastBatchLatencyMillis(), getLastError().orElse("none"));
+		if (lastError != null && backlog > 0) {
+			logger.warn(msg);
+		} else {
+			logger.info(msg);
+		}
+	}
+
+	private boolean fail(final String message, final Throwable cause) {
+		failedBatches.incrementAndGet();
+		lastError = message;
+		logger.error(message, cause);
+		return false;
+	}
+
+	/** Get the number of events in the outbox that have not been sent.
+	 * @return the number of events.
+	 */
+	public long getBacklog() {
+		return outbox.getBacklog();
+	}
+
+	/** Get the number of events sent to Kafka since the sender was created.
+	 * @return the number of events.
+	 */
+	public long getSentEvents() {
+		return sentEvents.get();
+	}
+
+	/** Get the number of events that were dropped since the sender was created because they
+	 * can never be sent to Kafka, for example because they are too large.
+	 * @return the number of events.
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents.get();
+	}
+
+	/** Get the number of attempts to send a batch of events that failed since the sender was
+	 * created.
+	 * @return the number of failed attempts.
+	 */
+	public long getFailedBatches() {
+		return failedBatches.get();
+	}
+
+	/** Get the time taken for Kafka to acknowledge the last batch of events that was sent
+	 * successfully.
+	 * @return the time in milliseconds, or 0 if no batches have been sent.
+	 */
+	public long getLastBatchLatencyMillis() {
+		return lastBatchLatencyMS;
+	}
+
+	/** Get the error message for the last failed attempt to send a batch of events.
+	 * @return the error message, if any.
+	 */
+	public Optional<String> getLastError() {
+		return Optional.ofNullable(lastError);
+	}
+}
@@ -229,6 +229,27 @@ public class MetadataExtractionTest {
 		}
 		assertTrue("  -("+instance.resourceName+") does not validate, but should",
 				report.isInstanceValid());
+		checkMetadata(report, expectedMetadata, exception, maxMetadataSizeLong);
+		
+		// check metadata extracted while relabeling matches
+		han = fac.createHandlers(String.class).associateObject("foo");
+		report = validator.validate(
+				instanceRootNode,
+				new TypeDefId(new TypeDefName(instance.moduleName,instance.typeName)),
+				han);
+		han.processIDs();
+		report.relabel(null, Long.MAX_VALUE, Long.MAX_VALUE, maxMetadataSizeLong);
+		checkMetadata(report, expectedMetadata, exception, maxMetadataSizeLong);
+		report.destroyCachedResources();
+		System.out.println("       PASS");
+	}
+	
+	private void checkMetadata(
+			final ValidatedTypedObject report,
+			final JsonNode expectedMetadata,
+			final JsonNode exception,
+			final long maxMetadataSizeLong)
+			throws Exception {
 		try {
 			ExtractedMetadata extraction = report.extractMetadata(maxMetadataSizeLong);
 			Map<String, String> actualMetadata = extraction.getMetadata();
@@ -246,7 +267,6 @@ public class MetadataExtractionTest {
 						exceptionName, exception.asText());
 			}
 		}
-		System.out.println("       PASS");
 	}
 
 	public void compare(JsonNode expectedSubset, Map<String, String> actualMetadata, String resourceName) throws IOException {
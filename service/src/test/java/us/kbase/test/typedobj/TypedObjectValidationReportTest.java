@@ -469,6 +469,104 @@ public class TypedObjectValidationReportTest {
 		assertThat("Temp files manager is empty", tfm.isEmpty(), is(true));
 	}
 
+	@Test
+	public void relabelThenSort() throws Exception {
+		// tests the single pass relabel method with both sorted and unsorted objects
+		String json = "{\"m\": {\"z\": \"a\", \"b\": \"d\"}}";
+		String expectedJson = "{\"m\":{\"b\":\"whoop\",\"y\":\"a\"}}";
+		Map<String, String> refmap = new HashMap<String, String>();
+		refmap.put("z", "y");
+		refmap.put("d", "whoop");
+		refmap.put("a", "a");
+		refmap.put("b", "b");
+		
+		IdReferenceHandlerSetFactory fac = getFac(100);
+		fac.addFactory(new DummyIdHandlerFactory(new IdReferenceType("ws"),
+				refmap));
+		IdReferenceHandlerSet<String> handlers =
+				fac.createHandlers(String.class).associateObject("foo");
+		
+		ValidatedTypedObject tovr = validator.validate(json,
+				new TypeDefId("TestIDMap.IDMap"), handlers);
+		try {
+			tovr.relabel(null, 100, 100, 0);
+			fail("relabeled w/o processed IDs");
+		} catch (IllegalStateException e) {
+			assertThat("incorrect exception", e.getMessage(),
+					is("Must process IDs in handler prior to relabling"));
+		}
+		handlers.processIDs();
+		
+		TempFilesManager tfm = new TempFilesManager(
+				new File(TestCommon.getTempDir()));
+		tfm.cleanup();
+		
+		// in memory, unsorted
+		tovr.relabel(tfm, 27, 27, 0);
+		assertThat("incorrect size", tovr.getRelabeledSize(), is(27L));
+		failGetMD5(tovr);
+		assertThat("Temp files manager is empty", tfm.isEmpty(), is(true));
+		tovr.sort(SORT_FAC, tfm);
+		assertThat("incorrect md5", tovr.getMD5(),
+				is(new MD5("920d54af26c56df84e4c4df358952138")));
+		assertThat("Relabel and sort in memory correctly",
+				IOUtils.toString(tovr.getInputStream(), "UTF-8"), is(expectedJson));
+		assertThat("Temp files manager is empty", tfm.isEmpty(), is(true));
+		
+		// in file, unsorted
+		tovr.relabel(tfm, 26, 27, 0);
+		assertThat("incorrect size", tovr.getRelabeledSize(), is(27L));
+		assertThat("TFM has one file", tfm.getTempFileList().size(), is(1));
+		tovr.sort(SORT_FAC, tfm);
+		assertThat("TFM has one file", tfm.getTempFileList().size(), is(1));
+		assertThat("incorrect md5", tovr.getMD5(),
+				is(new MD5("920d54af26c56df84e4c4df358952138")));
+		assertThat("Relabel and sort in file correctly",
+				IOUtils.toString(tovr.getInputStream(), "UTF-8"), is(expectedJson));
+		tovr.destroyCachedResources();
+		assertThat("Temp files manager is empty", tfm.isEmpty(), is(true));
+		
+		// move from memory to file
+		tovr.relabel(tfm, 27, 27, 0);
+		tovr.moveCacheToFile(tfm);
+		assertThat("TFM has one file", tfm.getTempFileList().size(), is(1));
+		tovr.sort(SORT_FAC, tfm);
+		assertThat("TFM has one file", tfm.getTempFileList().size(), is(1));
+		assertThat("incorrect md5", tovr.getMD5(),
+				is(new MD5("920d54af26c56df84e4c4df358952138")));
+		assertThat("Relabel, move, and sort correctly",
+				IOUtils.toString(tovr.getInputStream(), "UTF-8"), is(expectedJson));
+		tovr.destroyCachedResources();
+		assertThat("Temp files manager is empty", tfm.isEmpty(), is(true));
+		
+		// too big, data is discarded but the size is still calculated
+		tovr.relabel(tfm, 10, 26, 0);
+		assertThat("incorrect size", tovr.getRelabeledSize(), is(27L));
+		assertThat("Temp files manager is empty", tfm.isEmpty(), is(true));
+		
+		// naturally sorted, no sort required
+		json = "{\"m\": {\"c\": \"a\", \"z\": \"d\"}}";
+		refmap.put("c", "c");
+		fac = getFac(100);
+		fac.addFactory(new DummyIdHandlerFactory(new IdReferenceType("ws"),
+				refmap));
+		handlers = fac.createHandlers(String.class).associateObject("foo");
+		tovr = validator.validate(json, new TypeDefId("TestIDMap.IDMap"), handlers);
+		handlers.processIDs();
+		tovr.relabel(tfm, 0, 100, 0);
+		assertThat("incorrect size", tovr.getRelabeledSize(), is(27L));
+		assertThat("incorrect md5", tovr.getMD5(),
+				is(new MD5("b5a128ad62a50790c65d66831eec6e66")));
+		assertThat("TFM has one file", tfm.getTempFileList().size(), is(1));
+		tovr.sort(SORT_FAC, tfm);
+		assertThat("TFM has one file", tfm.getTempFileList().size(), is(1));
+		assertThat("Relabel correctly without sort",
+				IOUtils.toString(tovr.getInputStream(), "UTF-8"),
+				is("{\"m\":{\"c\":\"a\",\"y\":\"whoop\"}}"));
+		tovr.destroyCachedResources();
+		assertThat("Temp files manager is empty", tfm.isEmpty(), is(true));
+	}
+	
 	private void failGetRelabeledSize(ValidatedTypedObject tovr) {
 		try {
 			tovr.getRelabeledSize();
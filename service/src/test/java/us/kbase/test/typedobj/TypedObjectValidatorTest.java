@@ -0,0 +1,137 @@
+package us.kbase.test.typedobj;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import us.kbase.common.service.UObject;
+import us.kbase.test.common.TestCommon;
+import us.kbase.typedobj.core.AbsoluteTypeDefId;
+import us.kbase.typedobj.core.TypeDefId;
+import us.kbase.typedobj.core.TypeProvider;
+import us.kbase.typedobj.core.TypeProvider.ResolvedType;
+import us.kbase.typedobj.core.TypedObjectValidator;
+import us.kbase.typedobj.core.ValidatedTypedObject;
+import us.kbase.typedobj.idref.IdReferenceHandlerSet;
+import us.kbase.typedobj.idref.IdReferenceHandlerSetFactoryBuilder;
+
+public class TypedObjectValidatorTest {
+
+	private static final TypeDefId TYPE = TypeDefId.fromTypeString("Foo.Bar");
+	private static final AbsoluteTypeDefId ABSTYPE =
+			AbsoluteTypeDefId.fromAbsoluteTypeString("Foo.Bar-1.0");
+
+	private static IdReferenceHandlerSet<String> getHandlers() {
+		final IdReferenceHandlerSet<String> h = IdReferenceHandlerSetFactoryBuilder
+				.getBuilder(100).build().getFactory(null).createHandlers(String.class);
+		h.associateObject("foo");
+		return h;
+	}
+
+	private static UObject getObject(final Object value) {
+		return new UObject(ImmutableMap.of("dontusethiskeyunlessyoureallywant", value));
+	}
+
+	@Test
+	public void constants() throws Exception {
+		assertThat("incorrect schema cache size",
+				TypedObjectValidator.DEFAULT_SCHEMA_CACHE_MAX_SIZE, is(8388608));
+	}
+
+	@Test
+	public void constructFail() throws Exception {
+		try {
+			new TypedObjectValidator(mock(TypeProvider.class), -1);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IllegalArgumentException(
+					"schemaCacheMaxSize must be >= 0"));
+		}
+	}
+
+	@Test
+	public void schemaCache() throws Exception {
+		final TypeProvider tp = mock(TypeProvider.class);
+		final TypedObjectValidator tov = new TypedObjectValidator(tp);
+
+		when(tp.getTypeJsonSchema(TYPE)).thenReturn(
+				// new string each call to emulate a remote type provider
+				new ResolvedType(ABSTYPE, new String(JsonSchemas.EMPTY_STRUCT)),
+				new ResolvedType(ABSTYPE, new String(JsonSchemas.EMPTY_STRUCT)),
+				new ResolvedType(ABSTYPE, new String(JsonSchemas.EMPTY_STRUCT)));
+
+		assertThat("incorrect size", tov.getSchemaCacheSize(), is(0L));
+
+		ValidatedTypedObject vto = tov.validate(getObject(1), TYPE, getHandlers());
+		assertThat("incorrect valid", vto.isInstanceValid(), is(true));
+		assertThat("incorrect type", vto.getValidationTypeDefId(), is(ABSTYPE));
+
+		vto = tov.validate(getObject(2), TYPE, getHandlers());
+		assertThat("incorrect valid", vto.isInstanceValid(), is(true));
+
+		vto = tov.validate(getObject("foo"), TYPE, getHandlers());
+		assertThat("incorrect valid", vto.isInstanceValid(), is(false));
+		assertThat("incorrect error count", vto.getErrorMessages().size(), is(1));
+
+		assertThat("incorrect size", tov.getSchemaCacheSize(), is(1L));
+		assertThat("incorrect hits", tov.getSchemaCacheStats().hitCount(), is(2L));
+		assertThat("incorrect misses", tov.getSchemaCacheStats().missCount(), is(1L));
+	}
+
+	@Test
+	public void schemaCacheChangedSchema() throws Exception {
+		// the schema for an absolute type should never change outside of tests, but check that
+		// a stale parsed schema isn't used if it does
+		final TypeProvider tp = mock(TypeProvider.class);
+		final TypedObjectValidator tov = new TypedObjectValidator(tp);
+
+		final String intSchema = "{\"id\": \"Bar\", \"type\": \"object\", " +
+				"\"original-type\": \"kidl-structure\", " +
+				"\"properties\": {\"dontusethiskeyunlessyoureallywant\": " +
+				"{\"type\": \"string\", \"original-type\": \"kidl-string\"}}, " +
+				"\"additionalProperties\": true}";
+		when(tp.getTypeJsonSchema(TYPE)).thenReturn(
+				new ResolvedType(ABSTYPE, JsonSchemas.EMPTY_STRUCT),
+				new ResolvedType(ABSTYPE, intSchema));
+
+		assertThat("incorrect valid", tov.validate(getObject("foo"), TYPE, getHandlers())
+				.isInstanceValid(), is(false));
+		assertThat("incorrect valid", tov.validate(getObject("foo"), TYPE, getHandlers())
+				.isInstanceValid(), is(true));
+
+		// the stale entry can't be used and so is recorded as a miss
+		assertThat("incorrect size", tov.getSchemaCacheSize(), is(1L));
+		assertThat("incorrect hits", tov.getSchemaCacheStats().hitCount(), is(0L));
+		assertThat("incorrect misses", tov.getSchemaCacheStats().missCount(), is(2L));
+		assertThat("incorrect loads", tov.getSchemaCacheStats().loadSuccessCount(), is(2L));
+	}
+
+	@Test
+	public void schemaCacheDisabled() throws Exception {
+		final TypeProvider tp = mock(TypeProvider.class);
+		final TypedObjectValidator tov = new TypedObjectValidator(tp, 0);
+
+		when(tp.getTypeJsonSchema(TYPE)).thenReturn(
+				new ResolvedType(ABSTYPE, JsonSchemas.EMPTY_STRUCT));
+
+		for (int i = 0; i < 3; i++) {
+			assertThat("incorrect valid", tov.validate(getObject(i), TYPE, getHandlers())
+					.isInstanceValid(), is(true));
+		}
+		// the schema is fetched and parsed for every validation
+		verify(tp, times(3)).getTypeJsonSchema(TYPE);
+		assertThat("incorrect size", tov.getSchemaCacheSize(), is(0L));
+		assertThat("incorrect hits", tov.getSchemaCacheStats().hitCount(), is(0L));
+		assertThat("incorrect misses", tov.getSchemaCacheStats().missCount(), is(3L));
+		assertThat("incorrect loads", tov.getSchemaCacheStats().loadSuccessCount(), is(3L));
+	}
+
+}
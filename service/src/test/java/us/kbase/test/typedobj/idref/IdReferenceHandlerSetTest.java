@@ -0,0 +1,412 @@
+package us.kbase.test.typedobj.idref;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static us.kbase.test.common.TestCommon.set;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import us.kbase.test.common.TestCommon;
+import us.kbase.test.typedobj.DummyIdHandlerFactory;
+import us.kbase.typedobj.idref.IdReference;
+import us.kbase.typedobj.idref.IdReferenceHandlerSet;
+import us.kbase.typedobj.idref.IdReferenceHandlerSet.IdReferenceHandler;
+import us.kbase.typedobj.idref.IdReferenceHandlerSet.IdReferenceHandlerException;
+import us.kbase.typedobj.idref.IdReferenceHandlerSet.TooManyIdsException;
+import us.kbase.typedobj.idref.IdReferenceHandlerSetFactory;
+import us.kbase.typedobj.idref.IdReferenceHandlerSetFactory.IdReferenceHandlerFactory;
+import us.kbase.typedobj.idref.IdReferenceHandlerSetFactoryBuilder;
+import us.kbase.typedobj.idref.IdReferenceType;
+import us.kbase.typedobj.idref.RemappedId;
+import us.kbase.typedobj.idref.SharedIdCount;
+
+public class IdReferenceHandlerSetTest {
+
+	private static final IdReferenceType TYPE = new IdReferenceType("foo");
+	private static final IdReferenceType TYPE_A = new IdReferenceType("a");
+	private static final IdReferenceType TYPE_B = new IdReferenceType("b");
+	
+	private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(4);
+	
+	@AfterClass
+	public static void tearDownClass() {
+		EXECUTOR.shutdownNow();
+	}
+
+	private static IdReference<String> ref(final String id) {
+		return new IdReference<String>(TYPE, id, null);
+	}
+
+	private static IdReferenceHandlerSetFactory getFactory(
+			final int maxIds,
+			final Map<String, Integer> found) {
+		final IdReferenceHandlerSetFactory fac = IdReferenceHandlerSetFactoryBuilder
+				.getBuilder(maxIds).build().getFactory(null);
+		fac.addFactory(new DummyIdHandlerFactory(TYPE, ImmutableMap.of(
+				"a", "a1", "b", "b1", "c", "c1"), found));
+		return fac;
+	}
+
+	@Test
+	public void addIds() throws Exception {
+		final Map<String, Integer> found = new HashMap<>();
+		final IdReferenceHandlerSetFactory fac = getFactory(100, found);
+		final IdReferenceHandlerSet<String> main = fac.createHandlers(String.class);
+		final IdReferenceHandlerSet<String> h1 = fac.createRecordingHandlers(String.class);
+		final IdReferenceHandlerSet<String> h2 = fac.createRecordingHandlers(String.class);
+
+		h1.associateObject("o1");
+		h1.addStringId(ref("a"));
+		h1.addStringId(ref("b"));
+		h2.associateObject("o2");
+		h2.addStringId(ref("c"));
+		h2.addStringId(ref("a"));
+		assertThat("incorrect size", h1.size(), is(2));
+		assertThat("incorrect size", main.size(), is(0));
+
+		main.associateObject("o0");
+		assertThat("incorrect return", main.addIds(h1), is(main));
+		main.addIds(h2);
+		// the dummy handler only counts IDs as unique once across all objects
+		assertThat("incorrect size", main.size(), is(3));
+		assertThat("incorrect size", h1.size(), is(3));
+		assertThat("incorrect empty", h2.isEmpty(), is(false));
+		assertThat("incorrect handler", h1.hasHandler(TYPE), is(true));
+		assertThat("incorrect types", h2.getIDTypes(), is(set(TYPE)));
+
+		// check the association wasn't changed
+		main.addStringId(ref("c"));
+
+		assertThat("incorrect processed", h1.wereIdsProcessed(), is(false));
+		h2.processIDs();
+		assertThat("incorrect processed", main.wereIdsProcessed(), is(true));
+		assertThat("incorrect processed", h1.wereIdsProcessed(), is(true));
+		assertThat("incorrect ids", found, is(ImmutableMap.of("a", 2, "b", 1, "c", 2)));
+		assertThat("incorrect remap", h1.getRemappedId(TYPE, "c").getId(), is("c1"));
+	}
+
+	@Test
+	public void addIdsFail() throws Exception {
+		final IdReferenceHandlerSetFactory fac = getFactory(100, new HashMap<>());
+		final IdReferenceHandlerSet<String> main = fac.createHandlers(String.class);
+		final IdReferenceHandlerSet<String> h = fac.createRecordingHandlers(String.class);
+		final IdReferenceHandlerSet<String> processed = fac.createRecordingHandlers(String.class)
+				.processIDs();
+
+		failAddIds(main, null, new NullPointerException("other cannot be null"));
+		failAddIds(main, fac.createHandlers(String.class), new IllegalArgumentException(
+				"The other handler set does not record its IDs"));
+		failAddIds(main, processed, new IllegalArgumentException(
+				"The other handler set's IDs have been processed"));
+
+		main.addIds(h);
+		failAddIds(main, h, new IllegalArgumentException(
+				"The other handler set's IDs have already been added to a handler set"));
+
+		try {
+			h.associateObject("o1").addStringId(ref("a"));
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IllegalStateException(
+					"This ID handler set instance's IDs have been added to another handler " +
+					"set and no more can be added"));
+		}
+	}
+
+	@Test
+	public void addIdsTooManyIds() throws Exception {
+		final IdReferenceHandlerSetFactory fac = getFactory(2, new HashMap<>());
+		final IdReferenceHandlerSet<String> main = fac.createHandlers(String.class);
+		final IdReferenceHandlerSet<String> h1 = fac.createRecordingHandlers(String.class);
+		final IdReferenceHandlerSet<String> h2 = fac.createRecordingHandlers(String.class);
+		h1.associateObject("o1").addStringId(ref("a"));
+		h2.associateObject("o2").addStringId(ref("b"));
+		h2.addStringId(ref("c"));
+
+		main.addIds(h1);
+		failAddIds(main, h2, new TooManyIdsException("Maximum ID count of 2 exceeded"));
+	}
+
+	@Test
+	public void sharedIdCountTooManyIds() throws Exception {
+		final IdReferenceHandlerSetFactory fac = getFactory(2, new HashMap<>());
+		final SharedIdCount count = new SharedIdCount();
+		final IdReferenceHandlerSet<String> h1 = fac.createRecordingHandlers(String.class, count);
+		final IdReferenceHandlerSet<String> h2 = fac.createRecordingHandlers(String.class, count);
+		h1.associateObject("o1").addStringId(ref("a"));
+		h2.associateObject("o2").addStringId(ref("b"));
+		assertThat("incorrect count", count.get(), is(2));
+		assertThat("incorrect size", h1.size(), is(1));
+
+		try {
+			h1.addStringId(ref("c"));
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got,
+					new TooManyIdsException("Maximum ID count of 2 exceeded"));
+		}
+	}
+
+	@Test
+	public void sharedIdCountCountsDistinctIds() throws Exception {
+		final IdReferenceHandlerSetFactory fac = getFactory(2, new HashMap<>());
+		final SharedIdCount count = new SharedIdCount();
+		final IdReferenceHandlerSet<String> h1 = fac.createRecordingHandlers(String.class, count);
+		final IdReferenceHandlerSet<String> h2 = fac.createRecordingHandlers(String.class, count);
+		final IdReferenceHandlerSet<String> h3 = fac.createRecordingHandlers(String.class, count);
+		h1.associateObject("o1").addStringId(ref("a"));
+		h1.addStringId(ref("b"));
+		h2.associateObject("o2").addStringId(ref("a"));
+		h2.addStringId(ref("b"));
+		h3.associateObject("o3").addStringId(ref("b"));
+		assertThat("incorrect count", count.get(), is(2));
+		assertThat("incorrect size", h2.size(), is(2));
+
+		try {
+			h3.addStringId(ref("c"));
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got,
+					new TooManyIdsException("Maximum ID count of 2 exceeded"));
+		}
+	}
+
+	@Test
+	public void createRecordingHandlersFail() throws Exception {
+		try {
+			getFactory(2, new HashMap<>()).createRecordingHandlers(String.class, null);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got,
+					new NullPointerException("sharedIdCount cannot be null"));
+		}
+	}
+
+	private void failAddIds(
+			final IdReferenceHandlerSet<String> set,
+			final IdReferenceHandlerSet<String> other,
+			final Exception expected) {
+		try {
+			set.addIds(other);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+	private interface Process {
+		void run() throws Exception;
+	}
+	
+	private static class ProcessingHandler extends IdReferenceHandler<String> {
+		
+		private final IdReferenceType type;
+		private final Process process;
+		
+		private ProcessingHandler(final IdReferenceType type, final Process process) {
+			this.type = type;
+			this.process = process;
+		}
+
+		@Override
+		protected boolean addIdImpl(
+				final String associatedObject,
+				final String id,
+				final List<String> attributes) {
+			return true;
+		}
+
+		@Override
+		protected void processIdsImpl() throws IdReferenceHandlerException {
+			try {
+				process.run();
+			} catch (IdReferenceHandlerException | RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		protected RemappedId getRemappedIdImpl(final String oldId) {
+			return null;
+		}
+
+		@Override
+		protected Set<RemappedId> getRemappedIdsImpl(final String associatedObject) {
+			return Collections.emptySet();
+		}
+
+		@Override
+		public IdReferenceType getIdType() {
+			return type;
+		}
+	}
+	
+	private static IdReferenceHandlerSetFactoryBuilder.Builder withHandler(
+			final IdReferenceHandlerSetFactoryBuilder.Builder builder,
+			final IdReferenceType type,
+			final Process process) {
+		final IdReferenceHandlerFactory fac = mock(IdReferenceHandlerFactory.class);
+		when(fac.getIDType()).thenReturn(type);
+		when(fac.createHandler(String.class, null)).thenReturn(
+				new ProcessingHandler(type, process));
+		return builder.withFactory(fac);
+	}
+	
+	@Test
+	public void processIDsConcurrently() throws Exception {
+		// a can only complete if b runs at the same time
+		final CountDownLatch latch = new CountDownLatch(1);
+		final IdReferenceHandlerSet<String> h = withHandler(withHandler(
+				IdReferenceHandlerSetFactoryBuilder.getBuilder(10)
+						.withConcurrentProcessing(EXECUTOR),
+				TYPE_A, () -> {
+					if (!latch.await(10, TimeUnit.SECONDS)) {
+						throw new IllegalStateException("not concurrent");
+					}
+				}),
+				TYPE_B, () -> latch.countDown())
+				.build().getFactory(null).createHandlers(String.class);
+		
+		assertThat("incorrect return", h.processIDs(), is(h));
+		assertThat("incorrect processed", h.wereIdsProcessed(), is(true));
+		// check the handlers were processed
+		assertThat("incorrect remap", h.getRemappedIds(TYPE_A, "o"), is(Collections.emptySet()));
+		assertThat("incorrect remap", h.getRemappedIds(TYPE_B, "o"), is(Collections.emptySet()));
+	}
+	
+	@Test
+	public void processIDsConcurrentlyWithRejectingExecutor() throws Exception {
+		final Map<String, Integer> found = new HashMap<>();
+		final IdReferenceHandlerSetFactory fac = IdReferenceHandlerSetFactoryBuilder
+				.getBuilder(10)
+				.withConcurrentProcessing(r -> {
+					throw new RejectedExecutionException("full");
+				})
+				.build().getFactory(null);
+		fac.addFactory(new DummyIdHandlerFactory(TYPE, ImmutableMap.of("a", "a1"), found));
+		final IdReferenceHandlerSet<String> h = fac.createHandlers(String.class);
+		
+		h.associateObject("o").addStringId(ref("a"));
+		h.processIDs();
+		
+		assertThat("incorrect ids", found, is(ImmutableMap.of("a", 1)));
+		assertThat("incorrect remap", h.getRemappedId(TYPE, "a").getId(), is("a1"));
+	}
+	
+	@Test
+	public void processIDsConcurrentlyFailInTypeOrder() throws Exception {
+		// b fails first, but a's error should be thrown
+		final IdReferenceHandlerSet<String> h = withHandler(withHandler(
+				IdReferenceHandlerSetFactoryBuilder.getBuilder(10)
+						.withConcurrentProcessing(EXECUTOR),
+				TYPE_A, () -> {
+					Thread.sleep(100);
+					throw new IdReferenceHandlerException("a failed", TYPE_A, null);
+				}),
+				TYPE_B, () -> {
+					throw new IdReferenceHandlerException("b failed", TYPE_B, null);
+				})
+				.build().getFactory(null).createHandlers(String.class);
+		
+		failProcessIDs(h, new IdReferenceHandlerException("a failed", TYPE_A, null));
+	}
+	
+	@Test
+	public void processIDsConcurrentlyRuntimeException() throws Exception {
+		final IdReferenceHandlerSet<String> h = withHandler(
+				IdReferenceHandlerSetFactoryBuilder.getBuilder(10)
+						.withConcurrentProcessing(EXECUTOR),
+				TYPE_A, () -> {
+					throw new IllegalStateException("oops");
+				})
+				.build().getFactory(null).createHandlers(String.class);
+		
+		failProcessIDs(h, new IllegalStateException("oops"));
+	}
+	
+	@Test
+	public void processIDsConcurrentlyTimeout() throws Exception {
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		final IdReferenceHandlerSet<String> h = withHandler(withHandler(
+				IdReferenceHandlerSetFactoryBuilder.getBuilder(10)
+						.withConcurrentProcessing(EXECUTOR)
+						.withProcessingTimeout(TYPE_A, Duration.ofSeconds(10))
+						.withProcessingTimeout(TYPE_B, Duration.ofMillis(100)),
+				TYPE_A, () -> {}),
+				TYPE_B, () -> {
+					try {
+						Thread.sleep(10000);
+					} catch (InterruptedException e) {
+						interrupted.countDown();
+					}
+				})
+				.build().getFactory(null).createHandlers(String.class);
+		
+		failProcessIDs(h, new IdReferenceHandlerException(
+				"Timed out processing IDs of type b after 100 ms", TYPE_B,
+				new TimeoutException()));
+		assertThat("task not cancelled", interrupted.await(10, TimeUnit.SECONDS), is(true));
+	}
+	
+	private void failProcessIDs(final IdReferenceHandlerSet<String> h, final Exception expected) {
+		try {
+			h.processIDs();
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+	
+	@Test
+	public void builderFailConcurrentProcessing() throws Exception {
+		final IdReferenceHandlerSetFactoryBuilder.Builder b = IdReferenceHandlerSetFactoryBuilder
+				.getBuilder(1);
+		try {
+			b.withConcurrentProcessing(null);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new NullPointerException("executor"));
+		}
+		failWithTimeout(b, null, Duration.ofSeconds(1), new NullPointerException("idType"));
+		failWithTimeout(b, TYPE, null, new NullPointerException("timeout"));
+		failWithTimeout(b, TYPE, Duration.ZERO,
+				new IllegalArgumentException("timeout must be positive"));
+		failWithTimeout(b, TYPE, Duration.ofMillis(-1),
+				new IllegalArgumentException("timeout must be positive"));
+	}
+	
+	private void failWithTimeout(
+			final IdReferenceHandlerSetFactoryBuilder.Builder b,
+			final IdReferenceType type,
+			final Duration timeout,
+			final Exception expected) {
+		try {
+			b.withProcessingTimeout(type, timeout);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+}
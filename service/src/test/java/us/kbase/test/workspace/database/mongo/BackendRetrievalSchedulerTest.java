@@ -0,0 +1,270 @@
+package us.kbase.test.workspace.database.mongo;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import us.kbase.test.common.TestCommon;
+import us.kbase.workspace.database.mongo.BackendRetrievalScheduler;
+
+public class BackendRetrievalSchedulerTest {
+
+	/* Tracks the maximum number of tasks running at once. */
+	private static class Concurrency {
+
+		private final AtomicInteger running = new AtomicInteger();
+		private final AtomicInteger max = new AtomicInteger();
+
+		private Callable<Integer> task(final int ret) {
+			return () -> {
+				max.accumulateAndGet(running.incrementAndGet(), Math::max);
+				Thread.sleep(20);
+				running.decrementAndGet();
+				return ret;
+			};
+		}
+
+		private List<Callable<Integer>> tasks(final int count) {
+			final List<Callable<Integer>> ret = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				ret.add(task(i));
+			}
+			return ret;
+		}
+	}
+
+	private static List<Integer> results(final List<Future<Integer>> futures) throws Exception {
+		final List<Integer> ret = new ArrayList<>();
+		for (final Future<Integer> f: futures) {
+			ret.add(f.get());
+		}
+		return ret;
+	}
+
+	@Test
+	public void invokeAll() throws Exception {
+		final BackendRetrievalScheduler s = new BackendRetrievalScheduler();
+		final Concurrency c = new Concurrency();
+
+		final List<Future<Integer>> res = s.invokeAll(c.tasks(6), 3, 10, TimeUnit.SECONDS);
+
+		assertThat("incorrect results", results(res), is(Arrays.asList(0, 1, 2, 3, 4, 5)));
+		assertThat("incorrect concurrency", c.max.get(), is(3));
+		assertThat("incorrect completed", s.getCompleted(), is(6L));
+		assertThat("incorrect queue", s.getQueueDepth(), is(0));
+		assertThat("incorrect run time", s.getMeanRunTimeMillis() >= 20, is(true));
+		assertThat("incorrect queue time", s.getMeanQueueTimeMillis() > 0, is(true));
+	}
+
+	@Test
+	public void invokeAllEmpty() throws Exception {
+		final BackendRetrievalScheduler s = new BackendRetrievalScheduler(1);
+
+		final List<Future<Integer>> res = s.invokeAll(
+				Collections.<Callable<Integer>>emptyList(), 1, 10, TimeUnit.SECONDS);
+
+		assertThat("incorrect results", res, is(Collections.emptyList()));
+		assertThat("incorrect completed", s.getCompleted(), is(0L));
+		assertThat("incorrect queue time", s.getMeanQueueTimeMillis(), is(0.0));
+		assertThat("incorrect run time", s.getMeanRunTimeMillis(), is(0.0));
+	}
+
+	@Test
+	public void serverLimit() throws Exception {
+		final BackendRetrievalScheduler s = new BackendRetrievalScheduler(2);
+		final Concurrency c = new Concurrency();
+		final List<Thread> threads = new ArrayList<>();
+		final List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+		for (int i = 0; i < 4; i++) {
+			final Thread t = new Thread(() -> {
+				try {
+					results(s.invokeAll(c.tasks(5), 5, 10, TimeUnit.SECONDS));
+				} catch (Exception e) {
+					errors.add(e);
+				}
+			});
+			threads.add(t);
+			t.start();
+		}
+		for (final Thread t: threads) {
+			t.join();
+		}
+
+		assertThat("incorrect errors", errors, is(Collections.emptyList()));
+		assertThat("incorrect concurrency", c.max.get(), is(2));
+		assertThat("incorrect completed", s.getCompleted(), is(20L));
+	}
+
+	@Test
+	public void fairQueuing() throws Exception {
+		// with one thread, the tasks of the waiting requests are started in turn
+		final BackendRetrievalScheduler s = new BackendRetrievalScheduler(1);
+		final List<String> order = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Callable<Void>> tasks1 = new ArrayList<>();
+		tasks1.add(() -> {
+			order.add("a0");
+			started.countDown();
+			release.await();
+			return null;
+		});
+		for (int i = 1; i < 4; i++) {
+			final String name = "a" + i;
+			tasks1.add(() -> {
+				order.add(name);
+				return null;
+			});
+		}
+		final Thread t = new Thread(() -> {
+			try {
+				s.invokeAll(tasks1, 4, 10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		t.start();
+		started.await();
+		assertThat("incorrect queue", s.getQueueDepth(), is(3));
+		assertThat("incorrect running", s.getRunning(), is(1));
+
+		final List<Callable<Void>> tasks2 = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			final String name = "b" + i;
+			tasks2.add(() -> {
+				order.add(name);
+				return null;
+			});
+		}
+		final Thread t2 = new Thread(() -> {
+			try {
+				s.invokeAll(tasks2, 4, 10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		t2.start();
+		while (s.getQueueDepth() < 5) {
+			Thread.sleep(5);
+		}
+		release.countDown();
+		t.join();
+		t2.join();
+
+		assertThat("incorrect order", order,
+				is(Arrays.asList("a0", "b0", "a1", "b1", "a2", "a3")));
+	}
+
+	@Test
+	public void failedTask() throws Exception {
+		final BackendRetrievalScheduler s = new BackendRetrievalScheduler(2);
+		final List<Callable<Integer>> tasks = Arrays.asList(
+				() -> 1,
+				() -> {
+					throw new IllegalStateException("whoops");
+				},
+				() -> 3);
+
+		final List<Future<Integer>> res = s.invokeAll(tasks, 2, 10, TimeUnit.SECONDS);
+
+		assertThat("incorrect result", res.get(0).get(), is(1));
+		try {
+			res.get(1).get();
+			fail("expected exception");
+		} catch (ExecutionException got) {
+			TestCommon.assertExceptionCorrect(got.getCause(),
+					new IllegalStateException("whoops"));
+		}
+		assertThat("incorrect result", res.get(2).get(), is(3));
+	}
+
+	@Test
+	public void timeout() throws Exception {
+		final BackendRetrievalScheduler s = new BackendRetrievalScheduler(1);
+		final AtomicInteger interrupted = new AtomicInteger();
+		final List<Callable<Integer>> tasks = Arrays.asList(
+				() -> {
+					try {
+						Thread.sleep(10000);
+					} catch (InterruptedException e) {
+						interrupted.incrementAndGet();
+					}
+					return 1;
+				},
+				() -> 2);
+
+		final List<Future<Integer>> res = s.invokeAll(tasks, 1, 100, TimeUnit.MILLISECONDS);
+
+		for (final Future<Integer> f: res) {
+			try {
+				f.get();
+				fail("expected exception");
+			} catch (CancellationException e) {
+				// expected
+			}
+		}
+		assertThat("incorrect queue", s.getQueueDepth(), is(0));
+		for (int i = 0; i < 100 && s.getRunning() > 0; i++) {
+			Thread.sleep(10);
+		}
+		assertThat("incorrect running", s.getRunning(), is(0));
+		assertThat("incorrect interrupted", interrupted.get(), is(1));
+
+		// the thread is reusable after the interrupt
+		final Concurrency c = new Concurrency();
+		assertThat("incorrect results", results(s.invokeAll(c.tasks(2), 1, 10, TimeUnit.SECONDS)),
+				is(Arrays.asList(0, 1)));
+	}
+
+	@Test
+	public void constructFail() throws Exception {
+		try {
+			new BackendRetrievalScheduler(0);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IllegalArgumentException(
+					"maxConcurrency must be > 0"));
+		}
+	}
+
+	@Test
+	public void invokeAllFail() throws Exception {
+		final BackendRetrievalScheduler s = new BackendRetrievalScheduler();
+		final List<Callable<Integer>> tasks = new Concurrency().tasks(1);
+		failInvokeAll(s, null, 1, TimeUnit.SECONDS, new NullPointerException("tasks"));
+		failInvokeAll(s, tasks, 1, null, new NullPointerException("unit"));
+		failInvokeAll(s, tasks, 0, TimeUnit.SECONDS, new IllegalArgumentException(
+				"maxConcurrency must be > 0"));
+		failInvokeAll(s, Arrays.asList(tasks.get(0), null), 1, TimeUnit.SECONDS,
+				new NullPointerException("null found in tasks"));
+		assertThat("incorrect queue", s.getQueueDepth(), is(0));
+	}
+
+	private void failInvokeAll(
+			final BackendRetrievalScheduler s,
+			final List<Callable<Integer>> tasks,
+			final int maxConcurrency,
+			final TimeUnit unit,
+			final Exception expected) {
+		try {
+			s.invokeAll(tasks, maxConcurrency, 10, unit);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+}
@@ -0,0 +1,259 @@
+package us.kbase.test.workspace.database.mongo;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import us.kbase.test.common.TestCommon;
+import us.kbase.typedobj.core.MD5;
+import us.kbase.typedobj.core.Restreamable;
+import us.kbase.typedobj.core.TempFilesManager;
+import us.kbase.workspace.database.ByteArrayFileCacheManager;
+import us.kbase.workspace.database.ByteArrayFileCacheManager.ByteArrayFileCache;
+import us.kbase.workspace.database.DependencyStatus;
+import us.kbase.workspace.database.mongo.BlobStore;
+import us.kbase.workspace.database.mongo.CachingBlobStore;
+import us.kbase.workspace.database.mongo.exceptions.NoSuchBlobException;
+
+public class CachingBlobStoreTest {
+
+	private static final TempFilesManager TFM = new TempFilesManager(
+			Paths.get(TestCommon.getTempDir()).resolve("CachingBlobStoreTest").toFile());
+
+	private static final MD5 MD5_1 = new MD5("1fc5a11811de5142af444f5d482cd748");
+	private static final MD5 MD5_2 = new MD5("2fc5a11811de5142af444f5d482cd748");
+	private static final MD5 MD5_3 = new MD5("3fc5a11811de5142af444f5d482cd748");
+
+	// 1000 bytes
+	private static final String JSON = "\"" + TestCommon.LONG1001.substring(0, 998) + "\"";
+
+	@Before
+	public void before() {
+		TFM.cleanup();
+	}
+
+	private static ByteArrayFileCache bafc(
+			final ByteArrayFileCacheManager man,
+			final String json,
+			final boolean sorted)
+			throws Exception {
+		return man.createBAFC(new ByteArrayInputStream(json.getBytes()), true, sorted);
+	}
+
+	private static void assertCacheCorrect(
+			final ByteArrayFileCache b,
+			final String json,
+			final boolean sorted)
+			throws Exception {
+		assertThat("incorrect data", IOUtils.toString(b.getJSON()), is(json));
+		assertThat("incorrect sorted", b.isSorted(), is(sorted));
+		assertThat("incorrect trusted", b.containsTrustedJson(), is(true));
+		assertThat("incorrect size", b.getSize(), is((long) json.length()));
+	}
+
+	private static void assertStatsCorrect(
+			final CachingBlobStore cbs,
+			final long hits,
+			final long misses,
+			final long loadFailures,
+			final long evictions,
+			final long evictionSize) {
+		final CacheStats s = cbs.getStats();
+		assertThat("incorrect hits", s.hitCount(), is(hits));
+		assertThat("incorrect misses", s.missCount(), is(misses));
+		assertThat("incorrect load successes", s.loadSuccessCount(), is(misses - loadFailures));
+		assertThat("incorrect load failures", s.loadFailureCount(), is(loadFailures));
+		assertThat("incorrect evictions", s.evictionCount(), is(evictions));
+		assertThat("incorrect eviction size", s.evictionWeight(), is(evictionSize));
+	}
+
+	@Test
+	public void constructFail() throws Exception {
+		final BlobStore bs = mock(BlobStore.class);
+		failConstruct(null, 0, 0, new NullPointerException("store"));
+		failConstruct(bs, -1, 0, new IllegalArgumentException(
+				"memoryTierMaxSize must be >= 0"));
+		failConstruct(bs, 0, -1, new IllegalArgumentException("diskTierMaxSize must be >= 0"));
+	}
+
+	private void failConstruct(
+			final BlobStore bs,
+			final long memSize,
+			final long diskSize,
+			final Exception expected) {
+		try {
+			new CachingBlobStore(bs, memSize, diskSize);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+	@Test
+	public void delegates() throws Exception {
+		final BlobStore bs = mock(BlobStore.class);
+		final CachingBlobStore cbs = new CachingBlobStore(bs, 10000, 10000);
+		final Restreamable r = mock(Restreamable.class);
+		final List<DependencyStatus> status = Arrays.asList(
+				new DependencyStatus(true, "OK", "GridFS", "4.0"));
+		when(bs.status()).thenReturn(status);
+
+		cbs.saveBlob(MD5_1, r, true);
+		cbs.removeBlob(MD5_2);
+
+		assertThat("incorrect status", cbs.status(), is(status));
+		verify(bs).saveBlob(MD5_1, r, true);
+		verify(bs).removeBlob(MD5_2);
+	}
+
+	@Test
+	public void getBlobMemoryTier() throws Exception {
+		final BlobStore bs = mock(BlobStore.class);
+		final CachingBlobStore cbs = new CachingBlobStore(bs, 10000, 0);
+		final ByteArrayFileCacheManager man = new ByteArrayFileCacheManager();
+		when(bs.getBlob(MD5_1, man)).thenReturn(bafc(man, JSON, true));
+
+		final ByteArrayFileCache b1 = cbs.getBlob(MD5_1, man);
+		assertStatsCorrect(cbs, 0, 1, 0, 0, 0);
+		assertThat("incorrect size", cbs.getMemoryTierSize(), is(1000L));
+		assertThat("incorrect size", cbs.getDiskTierSize(), is(0L));
+
+		// the cached data is served to a request storing data on disk
+		final ByteArrayFileCache b2 = cbs.getBlob(MD5_1, new ByteArrayFileCacheManager(TFM));
+		b1.destroy();
+		final ByteArrayFileCache b3 = cbs.getBlob(MD5_1, man);
+
+		assertCacheCorrect(b2, JSON, true);
+		assertCacheCorrect(b3, JSON, true);
+		assertStatsCorrect(cbs, 2, 1, 0, 0, 0);
+		assertThat("incorrect file count", TFM.getTempFileList().size(), is(0));
+		verify(bs, times(1)).getBlob(MD5_1, man);
+		b2.destroy();
+		b3.destroy();
+	}
+
+	@Test
+	public void getBlobDiskTier() throws Exception {
+		final BlobStore bs = mock(BlobStore.class);
+		final CachingBlobStore cbs = new CachingBlobStore(bs, 0, 10000);
+		final ByteArrayFileCacheManager man = new ByteArrayFileCacheManager(TFM);
+		when(bs.getBlob(MD5_1, man)).thenReturn(bafc(man, JSON, false));
+
+		final ByteArrayFileCache b1 = cbs.getBlob(MD5_1, man);
+		b1.destroy();
+		// the file is owned by the cache
+		assertThat("incorrect file count", TFM.getTempFileList().size(), is(1));
+		assertThat("incorrect size", cbs.getMemoryTierSize(), is(0L));
+		assertThat("incorrect size", cbs.getDiskTierSize(), is(1000L));
+
+		final ByteArrayFileCache b2 = cbs.getBlob(MD5_1, new ByteArrayFileCacheManager());
+		assertCacheCorrect(b2, JSON, false);
+		assertStatsCorrect(cbs, 1, 1, 0, 0, 0);
+
+		// removing the blob removes the data from the cache, but the data is not deleted
+		// while in use
+		cbs.removeBlob(MD5_1);
+		assertThat("incorrect size", cbs.getDiskTierSize(), is(0L));
+		assertThat("incorrect file count", TFM.getTempFileList().size(), is(1));
+		assertCacheCorrect(b2, JSON, false);
+		b2.destroy();
+		assertThat("incorrect file count", TFM.getTempFileList().size(), is(0));
+		assertStatsCorrect(cbs, 1, 1, 0, 0, 0);
+		verify(bs, times(1)).getBlob(MD5_1, man);
+		verify(bs).removeBlob(MD5_1);
+	}
+
+	@Test
+	public void getBlobNotCached() throws Exception {
+		// tier disabled
+		getBlobNotCached(new ByteArrayFileCacheManager(), 0, 10000, JSON);
+		getBlobNotCached(new ByteArrayFileCacheManager(TFM), 10000, 0, JSON);
+		getBlobNotCached(new ByteArrayFileCacheManager(), 0, 0, "{}");
+		// blob too large
+		getBlobNotCached(new ByteArrayFileCacheManager(), 999, 10000, JSON);
+		getBlobNotCached(new ByteArrayFileCacheManager(TFM), 10000, 999, JSON);
+	}
+
+	private void getBlobNotCached(
+			final ByteArrayFileCacheManager man,
+			final long memSize,
+			final long diskSize,
+			final String json)
+			throws Exception {
+		final BlobStore bs = mock(BlobStore.class);
+		final CachingBlobStore cbs = new CachingBlobStore(bs, memSize, diskSize);
+		when(bs.getBlob(MD5_1, man)).thenReturn(bafc(man, json, true), bafc(man, json, true));
+
+		final ByteArrayFileCache b1 = cbs.getBlob(MD5_1, man);
+		final ByteArrayFileCache b2 = cbs.getBlob(MD5_1, man);
+
+		assertCacheCorrect(b1, json, true);
+		assertCacheCorrect(b2, json, true);
+		assertStatsCorrect(cbs, 0, 2, 0, 0, 0);
+		assertThat("incorrect size", cbs.getMemoryTierSize(), is(0L));
+		assertThat("incorrect size", cbs.getDiskTierSize(), is(0L));
+		b1.destroy();
+		b2.destroy();
+		assertThat("incorrect file count", TFM.getTempFileList().size(), is(0));
+		verify(bs, times(2)).getBlob(MD5_1, man);
+	}
+
+	@Test
+	public void getBlobEviction() throws Exception {
+		final BlobStore bs = mock(BlobStore.class);
+		// room for two 1000 byte blobs
+		final CachingBlobStore cbs = new CachingBlobStore(bs, 0, 2048);
+		final ByteArrayFileCacheManager man = new ByteArrayFileCacheManager(TFM);
+		for (final MD5 md5: Arrays.asList(MD5_1, MD5_2, MD5_3)) {
+			when(bs.getBlob(md5, man)).thenReturn(bafc(man, JSON, true));
+			cbs.getBlob(md5, man).destroy();
+		}
+
+		assertStatsCorrect(cbs, 0, 3, 0, 1, 1000);
+		assertThat("incorrect size", cbs.getDiskTierSize(), is(2000L));
+		// the evicted data is deleted since it's not in use
+		assertThat("incorrect file count", TFM.getTempFileList().size(), is(2));
+	}
+
+	@Test
+	public void getBlobFail() throws Exception {
+		final BlobStore bs = mock(BlobStore.class);
+		final CachingBlobStore cbs = new CachingBlobStore(bs, 10000, 10000);
+		final ByteArrayFileCacheManager man = new ByteArrayFileCacheManager();
+		when(bs.getBlob(MD5_1, man)).thenThrow(new NoSuchBlobException("nope", MD5_1));
+
+		failGetBlob(cbs, MD5_1, man, new NoSuchBlobException("nope", MD5_1));
+		failGetBlob(cbs, null, man, new NullPointerException("md5"));
+		failGetBlob(cbs, MD5_1, null, new NullPointerException("bafcMan"));
+
+		assertStatsCorrect(cbs, 0, 1, 1, 0, 0);
+	}
+
+	private void failGetBlob(
+			final CachingBlobStore cbs,
+			final MD5 md5,
+			final ByteArrayFileCacheManager man,
+			final Exception expected) {
+		try {
+			cbs.getBlob(md5, man);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+}
@@ -608,7 +608,7 @@ public class MongoInternalsTest {
 				dummy,
 				new HashSet<Reference>(), new LinkedList<Reference>(),
 				new HashMap<IdReferenceType, Set<RemappedId>>());
-		mwdb.saveObjects(user, rwsi, Arrays.asList(rso));
+		mwdb.saveObjects(user, rwsi, Arrays.asList(rso), 1);
 
 		IDnPackage inp = startSaveObject(rwsi, rso, 3, at);
 		ObjectSavePackage pkg = inp.pkg;
@@ -636,6 +636,93 @@ public class MongoInternalsTest {
 		assertThat("objectid is revised to existing object", md.getObjectId(), is(1L));
 	}
 
+	@Test
+	public void raceConditionSaveObjectsNewName() throws Exception {
+		// tests the case where another save creates an object with the same name as a new
+		// object after the names are resolved in a saveObjects call
+		final WorkspaceIdentifier wsi = new WorkspaceIdentifier("nameRace");
+		final WorkspaceUser user = new WorkspaceUser("u");
+		final long wsid = ws.createWorkspace(user, wsi.getName(), false, null, null).getId();
+		final Provenance p = Provenance.getBuilder(new WorkspaceUser("kbasetest2"), now())
+				.withWorkspaceID(wsid).build();
+		final AbsoluteTypeDefId at = new AbsoluteTypeDefId(
+				new TypeDefName("SomeModule", "AType"), 0, 1);
+		final ResolvedWorkspaceID rwsi = mwdb.resolveWorkspace(wsi);
+		final Map<String, Object> data = new HashMap<>();
+
+		mwdb.saveObjects(user, rwsi, Arrays.asList(
+				createResolvedWSObj(rwsi, "foo", data, p, SAFE_TYPE, at)), 1); // objid 1
+
+		final List<ObjectSavePackage> pkgs = Arrays.asList(
+				createSavePackage(createResolvedWSObj(rwsi, "foo", data, p, SAFE_TYPE, at)),
+				createSavePackage(createResolvedWSObj(rwsi, "bar", data, p, SAFE_TYPE, at)),
+				createSavePackage(createResolvedWSObj(rwsi, "foo", data, p, SAFE_TYPE, at)));
+
+		final Method saveProvenance = mwdb.getClass()
+				.getDeclaredMethod("saveProvenance", List.class);
+		saveProvenance.setAccessible(true);
+		saveProvenance.invoke(mwdb, pkgs);
+
+		final Method incrementWorkspaceCounter = mwdb.getClass()
+				.getDeclaredMethod("incrementWorkspaceCounter",
+						ResolvedWorkspaceID.class, long.class);
+		incrementWorkspaceCounter.setAccessible(true);
+		incrementWorkspaceCounter.invoke(mwdb, rwsi, 2); // objids 2 & 3
+
+		// pretend foo didn't exist when the names were resolved
+		final Method saveObjectPackages = mwdb.getClass()
+				.getDeclaredMethod("saveObjectPackages", WorkspaceUser.class,
+						ResolvedWorkspaceID.class, List.class, Map.class, long.class);
+		saveObjectPackages.setAccessible(true);
+		@SuppressWarnings("unchecked")
+		final List<ObjectInformation> res = (List<ObjectInformation>) saveObjectPackages.invoke(
+				mwdb, user, rwsi, pkgs, new HashMap<>(), 2L);
+
+		assertThat("incorrect result count", res.size(), is(3));
+		assertObjectInfo(res.get(0), 1, "foo", 2);
+		assertObjectInfo(res.get(1), 3, "bar", 1);
+		assertObjectInfo(res.get(2), 1, "foo", 3);
+
+		final ObjectIDResolvedWS foo = new ObjectIDResolvedWS(rwsi, "foo");
+		final ObjectIDResolvedWS bar = new ObjectIDResolvedWS(rwsi, "bar");
+		final Map<ObjectIDResolvedWS, ObjectInformation> got = mwdb.getObjectInformation(
+				new HashSet<>(Arrays.asList(foo, bar)), false, true, false, true);
+		assertObjectInfo(got.get(foo), 1, "foo", 3);
+		assertObjectInfo(got.get(bar), 3, "bar", 1);
+
+		// no object should have been created with the allocated id
+		assertThat("incorrect object count", db.getCollection("workspaceObjects").countDocuments(
+				new Document("ws", wsid)), is(2L));
+	}
+
+	private void assertObjectInfo(
+			final ObjectInformation info,
+			final long id,
+			final String name,
+			final int version) {
+		assertThat("incorrect id", info.getObjectId(), is(id));
+		assertThat("incorrect name", info.getObjectName(), is(name));
+		assertThat("incorrect version", info.getVersion(), is(version));
+	}
+
+	private ObjectSavePackage createSavePackage(final ResolvedSaveObject rso) throws Exception {
+		final Constructor<ObjectSavePackage> objConst =
+				ObjectSavePackage.class.getDeclaredConstructor();
+		objConst.setAccessible(true);
+		final ObjectSavePackage pkg = objConst.newInstance();
+		final Map<String, Object> fields = new HashMap<>();
+		fields.put("wo", rso);
+		fields.put("name", rso.getObjectIdentifier().getName().get());
+		fields.put("refs", new HashSet<String>());
+		fields.put("provrefs", new LinkedList<String>());
+		for (final Entry<String, Object> e: fields.entrySet()) {
+			final Field f = pkg.getClass().getDeclaredField(e.getKey());
+			f.setAccessible(true);
+			f.set(pkg, e.getValue());
+		}
+		return pkg;
+	}
+
 	@Test
 	public void setGetRaceCondition() throws Exception {
 		String objname = "testobj";
@@ -660,7 +747,7 @@ public class MongoInternalsTest {
 		ResolvedSaveObject rso2 = createResolvedWSObj(rwsi, objname2, data, p, t, at);
 
 		startSaveObject(rwsi, rso, 1, at);
-		mwdb.saveObjects(user, rwsi, Arrays.asList(rso2)); //objid 2
+		mwdb.saveObjects(user, rwsi, Arrays.asList(rso2), 1); //objid 2
 
 		//possible race condition 1 - no version provided, version not yet
 		//saved, version count not yet incremented
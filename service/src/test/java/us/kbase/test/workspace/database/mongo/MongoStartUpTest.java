@@ -10,6 +10,7 @@ import static us.kbase.test.workspace.WorkspaceMongoIndex.getAndNormalizeIndexes
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -38,8 +39,12 @@ import us.kbase.workspace.database.WorkspaceUser;
 import us.kbase.workspace.database.WorkspaceUserMetadata;
 import us.kbase.workspace.database.exceptions.CorruptWorkspaceDBException;
 import us.kbase.workspace.database.exceptions.WorkspaceDBInitializationException;
+import us.kbase.workspace.database.mongo.BackendRetrievalScheduler;
 import us.kbase.workspace.database.mongo.GridFSBlobStore;
+import us.kbase.workspace.database.mongo.LookupObjectRecordFetcher;
 import us.kbase.workspace.database.mongo.MongoWorkspaceDB;
+import us.kbase.workspace.database.mongo.ObjectNameCache;
+import us.kbase.workspace.database.mongo.ReadableWorkspaceCache;
 
 /** Test that Mongo starts up correctly with the correct indexes and configuration document
  * Test that Mongo correctly fails to start up when the configuration document is incorrect.
@@ -98,6 +103,7 @@ public class MongoStartUpTest {
 		assertThat("correct config key & value", (String)cd.get("config"), is("config"));
 		assertThat("not in update", (Boolean)cd.get("inupdate"), is(false));
 		assertThat("schema ver", (Integer)cd.get("schemaver"), is(2));
+		assertThat("latest complete", (Boolean)cd.get("latestcomplete"), is(true));
 		assertThat("Only one config doc", c.hasNext(), is(false));
 
 		//check startup works with the config object in place
@@ -107,6 +113,50 @@ public class MongoStartUpTest {
 		assertThat("check a ws field", ws.getName(), is("bar"));
 	}
 
+	@Test
+	public void startUpWithBuilder() throws Exception {
+		final MongoDatabase db = mongoClient.getDatabase("startUpWithBuilder");
+		final ReadableWorkspaceCache wsCache = new ReadableWorkspaceCache(
+				100, Duration.ofMinutes(5));
+		final ObjectNameCache nameCache = new ObjectNameCache(100, 10, Duration.ofMinutes(5));
+		final MongoWorkspaceDB m = MongoWorkspaceDB.getBuilder(db, new GridFSBlobStore(db))
+				.withReadableWorkspaceCache(wsCache)
+				.withObjectNameCache(nameCache)
+				.withBackendRetrievalScheduler(new BackendRetrievalScheduler(2))
+				.withObjectRecordFetcher(new LookupObjectRecordFetcher(db))
+				.build();
+
+		assertThat("incorrect ref cache", m.getReferenceCache(), is(Optional.empty()));
+		assertThat("incorrect ws cache", m.getReadableWorkspaceCache(), is(Optional.of(wsCache)));
+		assertThat("incorrect name cache", m.getObjectNameCache(), is(Optional.of(nameCache)));
+		final WorkspaceInformation ws = m.createWorkspace(
+				new WorkspaceUser("foo"), "bar", false, null, new WorkspaceUserMetadata());
+		assertThat("check a ws field", ws.getName(), is("bar"));
+	}
+
+	@Test
+	public void builderFail() throws Exception {
+		failBuilder(() -> MongoWorkspaceDB.getBuilder(null, new GridFSBlobStore(db)),
+				new NullPointerException("workspaceDB"));
+		failBuilder(() -> MongoWorkspaceDB.getBuilder(db, null),
+				new NullPointerException("blobStore"));
+		failBuilder(() -> MongoWorkspaceDB.getBuilder(db, new GridFSBlobStore(db))
+				.withBackendRetrievalScheduler(null),
+				new NullPointerException("retrievalScheduler"));
+		failBuilder(() -> MongoWorkspaceDB.getBuilder(db, new GridFSBlobStore(db))
+				.withObjectRecordFetcher(null),
+				new NullPointerException("objectRecordFetcher"));
+	}
+
+	private void failBuilder(final Runnable builder, final Exception expected) {
+		try {
+			builder.run();
+			fail("expected exception");
+		} catch (Exception got) {
+			assertExceptionCorrect(got, expected);
+		}
+	}
+
 	@Test
 	public void startUpWith2ConfigDocs() throws Exception {
 		final MongoDatabase db = mongoClient.getDatabase("startUpWith2ConfigDocs");
@@ -279,6 +329,7 @@ public class MongoStartUpTest {
 				"workspaceACLs",
 				"workspaceObjects",
 				"workspaceObjVersions",
+				"workspaceObjLatest",
 				// "provenance", no provenance collection because no created indexes
 				"admins"
 				);
@@ -471,6 +522,52 @@ public class MongoStartUpTest {
 				is(expectedIndexes));
 	}
 
+	@Test
+	public void indexesWorkspaceObjectLatest() throws Exception {
+		final Set<Document> expectedIndexes = set(
+				new Document("v", INDEX_VER)
+						.append("unique", true)
+						.append("key", new Document("ws", 1).append("id", 1))
+						.append("name", "ws_1_id_1"),
+				new Document("v", INDEX_VER)
+						.append("key", new Document("ws", 1).append("id", 1).append("ver", -1))
+						.append("name", "ws_1_id_1_ver_-1"),
+				new Document("v", INDEX_VER)
+						.append("key", new Document("tyname", 1)
+								.append("tymaj", 1).append("tymin", 1)
+								.append("ws", 1).append("id", 1).append("ver", -1))
+						.append("name", "tyname_1_tymaj_1_tymin_1_ws_1_id_1_ver_-1"),
+				new Document("v", INDEX_VER)
+						.append("key", new Document("tyname", 1).append("tymaj", 1)
+								.append("ws", 1).append("id", 1).append("ver", -1))
+						.append("name", "tyname_1_tymaj_1_ws_1_id_1_ver_-1"),
+				new Document("v", INDEX_VER)
+						.append("key", new Document("tyname", 1)
+								.append("ws", 1).append("id", 1).append("ver", -1))
+						.append("name", "tyname_1_ws_1_id_1_ver_-1"),
+				new Document("v", INDEX_VER)
+						.append("key", new Document("savedby", 1))
+						.append("name", "savedby_1"),
+				new Document("v", INDEX_VER)
+						.append("key", new Document("savedate", 1))
+						.append("name", "savedate_1"),
+				new Document("v", INDEX_VER)
+						.append("sparse", true)
+						.append("key", new Document("meta", 1))
+						.append("name", "meta_1"),
+				new Document("v", INDEX_VER)
+						.append("key", new Document("_id", 1))
+						.append("name", "_id_")
+				);
+		assertThat("incorrect indexes", getAndNormalizeIndexes(db, "workspaceObjLatest"),
+				is(expectedIndexes));
+
+		final MongoDatabase wsdb = mongoClient.getDatabase("indexesWorkspaceObjectLatest");
+		createIndexes("indexesWorkspaceObjectLatest");
+		assertThat("incorrect indexes", getAndNormalizeIndexes(wsdb, "workspaceObjLatest"),
+				is(expectedIndexes));
+	}
+
 	@Test
 	public void indexesAdmins() throws Exception {
 		final Set<Document> expectedIndexes = set(
@@ -3,7 +3,10 @@ package us.kbase.test.workspace.database.mongo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static us.kbase.test.common.TestCommon.inst;
 import static us.kbase.test.common.TestCommon.list;
@@ -14,6 +17,7 @@ import static us.kbase.test.workspace.WorkspaceTestCommon.basicProv;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -28,6 +32,9 @@ import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.IntStream;
 
 import org.bson.Document;
@@ -37,6 +44,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.google.common.collect.ImmutableMap;
 
 import com.mongodb.client.MongoClient;
@@ -49,15 +57,20 @@ import us.kbase.common.utils.sortjson.UTF8JsonSorterFactory;
 import us.kbase.test.common.TestCommon;
 import us.kbase.test.typedobj.DummyValidatedTypedObject;
 import us.kbase.typedobj.core.AbsoluteTypeDefId;
+import us.kbase.typedobj.core.ExtractedMetadata;
 import us.kbase.typedobj.core.MD5;
 import us.kbase.typedobj.core.SubsetSelection;
 import us.kbase.typedobj.core.TypeDefId;
 import us.kbase.typedobj.core.TypeDefName;
+import us.kbase.typedobj.core.ValidatedTypedObject;
 import us.kbase.typedobj.exceptions.TypedObjectExtractionException;
+import us.kbase.workspace.database.AllUsers;
 import us.kbase.workspace.database.ByteArrayFileCacheManager;
 import us.kbase.workspace.database.ObjectIDResolvedWS;
 import us.kbase.workspace.database.ObjectInformation;
+import us.kbase.workspace.database.ObjectReferenceSet;
 import us.kbase.workspace.database.Permission;
+import us.kbase.workspace.database.PermissionSet;
 import us.kbase.workspace.database.Reference;
 import us.kbase.workspace.database.ResolvedObjectID;
 import us.kbase.workspace.database.exceptions.CorruptWorkspaceDBException;
@@ -68,6 +81,8 @@ import us.kbase.workspace.database.ResolvedObjectIDNoVer;
 import us.kbase.workspace.database.ResolvedSaveObject;
 import us.kbase.workspace.database.ResolvedWorkspaceID;
 import us.kbase.workspace.database.UncheckedUserMetadata;
+import us.kbase.workspace.database.WorkspaceIDSet;
+import us.kbase.workspace.database.WorkspaceIdentifier;
 import us.kbase.workspace.database.WorkspaceInformation;
 import us.kbase.workspace.database.WorkspaceObjectData;
 import us.kbase.workspace.database.WorkspaceSaveObject;
@@ -75,12 +90,16 @@ import us.kbase.workspace.database.WorkspaceUser;
 import us.kbase.workspace.database.WorkspaceUserMetadata;
 import us.kbase.workspace.database.ByteArrayFileCacheManager.ByteArrayFileCache;
 import us.kbase.workspace.database.DynamicConfig;
+import us.kbase.workspace.database.ListObjectsParameters;
 import us.kbase.workspace.database.ObjectIDNoWSNoVer;
 import us.kbase.workspace.database.DynamicConfig.DynamicConfigUpdate;
 import us.kbase.workspace.database.MetadataUpdate;
 import us.kbase.workspace.database.mongo.Fields;
 import us.kbase.workspace.database.mongo.GridFSBlobStore;
 import us.kbase.workspace.database.mongo.MongoWorkspaceDB;
+import us.kbase.workspace.database.mongo.ObjectNameCache;
+import us.kbase.workspace.database.mongo.ReadableWorkspaceCache;
+import us.kbase.workspace.database.mongo.ReferenceCache;
 import us.kbase.workspace.database.mongo.exceptions.BlobStoreAuthorizationException;
 import us.kbase.workspace.database.mongo.exceptions.BlobStoreCommunicationException;
 import us.kbase.workspace.database.mongo.exceptions.NoSuchBlobException;
@@ -763,10 +782,197 @@ public class MongoWorkspaceDBTest {
 			objects.add(wso.resolve(ws, dummy, set(), list(), Collections.emptyMap()));
 
 		}
-		db.saveObjects(new WorkspaceUser("u1"), ws, objects);
+		db.saveObjects(new WorkspaceUser("u1"), ws, objects, 1);
 		return objects;
 	}
 
+	@Test
+	public void saveObjectsBackendScaling() throws Exception {
+		// as addDataToObjectsBackendScaling, just check different scaling factors don't cause
+		// failures and print the speed for informational purposes
+
+		// make a real MongoWSDB environment vs mocks
+		final MongoWorkspaceDB db = new MongoWorkspaceDB(MONGO_DB, new GridFSBlobStore(MONGO_DB));
+		final WorkspaceUser u = new WorkspaceUser("u1");
+		final Map<Integer, Long> scaling2elapsed = new TreeMap<>();
+		final List<Integer> scaling = list(1, 2, 5, 10, 50, 100, 500);
+		for (int i = 0; i < scaling.size(); i++) {
+			final ResolvedWorkspaceID ws = new ResolvedWorkspaceID(i + 1, "ws" + i, false, false);
+			db.createWorkspace(u, "ws" + i, false, null, new WorkspaceUserMetadata());
+			final List<ResolvedSaveObject> objects = new LinkedList<>();
+			for (int j = 0; j < 100; j++) {
+				objects.add(createResolvedSaveObject(
+						ws, "o" + j, ImmutableMap.of("foo", "bar", "baz", i + "bat" + j)));
+			}
+			final long start = System.currentTimeMillis();
+			final List<ObjectInformation> res = db.saveObjects(u, ws, objects, scaling.get(i));
+			scaling2elapsed.put(scaling.get(i), System.currentTimeMillis() - start);
+
+			assertThat("incorrect object count", res.size(), is(100));
+			final WorkspaceObjectData.Builder wod = db.getObjects(
+					set(new ObjectIDResolvedWS(ws, "o99")), true, false, true)
+					.get(new ObjectIDResolvedWS(ws, "o99"));
+			db.addDataToObjects(list(wod), new ByteArrayFileCacheManager(), 1);
+			final Object data = wod.build().getSerializedData().get().getUObject()
+					.asClassInstance(Object.class);
+			assertThat("incorrect data", data,
+					is(ImmutableMap.of("foo", "bar", "baz", i + "bat99")));
+		}
+		System.out.println(scaling2elapsed);
+	}
+
+	private ResolvedSaveObject createResolvedSaveObject(
+			final ResolvedWorkspaceID ws,
+			final String name,
+			final Map<String, String> data)
+			throws Exception {
+		final WorkspaceSaveObject wso = new WorkspaceSaveObject(
+				new ObjectIDNoWSNoVer(name),
+				new UObject(data),
+				new TypeDefId("Mod.Meth"),
+				null,
+				basicProv(new WorkspaceUser("u1")),
+				false);
+		final DummyValidatedTypedObject dummy = new DummyValidatedTypedObject(
+				AbsoluteTypeDefId.fromAbsoluteTypeString("Mod.Meth-1.0"),
+				wso.getData());
+		dummy.calculateRelabeledSize();
+		dummy.sort(new UTF8JsonSorterFactory(100000));
+		return wso.resolve(ws, dummy, set(), list(), Collections.emptyMap());
+	}
+
+	private ResolvedSaveObject createResolvedSaveObject(
+			final ResolvedWorkspaceID ws,
+			final String name,
+			final ValidatedTypedObject vto,
+			final String md5)
+			throws Exception {
+		when(vto.getValidationTypeDefId()).thenReturn(
+				AbsoluteTypeDefId.fromAbsoluteTypeString("Mod.Meth-1.0"));
+		when(vto.extractMetadata(16000)).thenReturn(new ExtractedMetadata(Collections.emptyMap()));
+		when(vto.getMD5()).thenReturn(new MD5(md5));
+		when(vto.getRelabeledSize()).thenReturn(10L);
+		return new WorkspaceSaveObject(
+				new ObjectIDNoWSNoVer(name),
+				new UObject(ImmutableMap.of("foo", "bar")),
+				new TypeDefId("Mod.Meth"),
+				null,
+				basicProv(new WorkspaceUser("u1")),
+				false)
+				.resolve(ws, vto, set(), list(), Collections.emptyMap());
+	}
+
+	@Test
+	public void saveObjectsDuplicateData() throws Exception {
+		// identical data should only be saved to the blob store once per call
+		final PartialMock mocks = new PartialMock(MONGO_DB);
+		when(mocks.clockmock.instant()).thenReturn(Instant.now());
+		final WorkspaceUser u = new WorkspaceUser("u");
+		mocks.mdb.createWorkspace(u, "ws", false, null, new WorkspaceUserMetadata());
+		final ResolvedWorkspaceID ws = new ResolvedWorkspaceID(1, "ws", false, false);
+
+		final String md51 = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+		final String md52 = "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb";
+		final ValidatedTypedObject vto1 = mock(ValidatedTypedObject.class);
+		final ValidatedTypedObject vto2 = mock(ValidatedTypedObject.class);
+		final ValidatedTypedObject vto3 = mock(ValidatedTypedObject.class);
+
+		final List<ObjectInformation> res = mocks.mdb.saveObjects(u, ws, list(
+				createResolvedSaveObject(ws, "o1", vto1, md51),
+				createResolvedSaveObject(ws, "o2", vto2, md52),
+				createResolvedSaveObject(ws, "o3", vto3, md51)),
+				3);
+
+		assertThat("incorrect object count", res.size(), is(3));
+		verify(mocks.bsmock).saveBlob(new MD5(md51), vto1, true);
+		verify(mocks.bsmock).saveBlob(new MD5(md52), vto2, true);
+		verifyNoMoreInteractions(mocks.bsmock);
+		verify(vto1).destroyCachedResources();
+		verify(vto2).destroyCachedResources();
+		verify(vto3).destroyCachedResources();
+	}
+
+	@Test
+	public void saveObjectsFailBadBackendScaling() throws Exception {
+		final PartialMock mocks = new PartialMock(MONGO_DB);
+		final ResolvedWorkspaceID ws = new ResolvedWorkspaceID(1, "ws", false, false);
+		final List<ResolvedSaveObject> objs = list(createResolvedSaveObject(
+				ws, "o1", mock(ValidatedTypedObject.class), "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa"));
+		for (final int scaling: list(0, -1)) {
+			failSaveObjects(mocks.mdb, ws, objs, scaling,
+					new IllegalArgumentException("backendScaling must be > 0"));
+		}
+	}
+
+	@Test
+	public void saveObjectsFailBlobCommException() throws Exception {
+		failSaveObjectsBlobException(
+				new BlobStoreCommunicationException("oh poop"),
+				new WorkspaceCommunicationException("oh poop"));
+	}
+
+	@Test
+	public void saveObjectsFailBlobAuthException() throws Exception {
+		failSaveObjectsBlobException(
+				new BlobStoreAuthorizationException("oh poop"),
+				new WorkspaceCommunicationException(
+						"Authorization error communicating with the backend storage system"));
+	}
+
+	@Test
+	public void saveObjectsFailBlobRuntimeException() throws Exception {
+		failSaveObjectsBlobException(
+				new IllegalStateException("oh poop"), new IllegalStateException("oh poop"));
+	}
+
+	private void failSaveObjectsBlobException(final Exception thrown, final Exception expected)
+			throws Exception {
+		final PartialMock mocks = new PartialMock(MONGO_DB);
+		when(mocks.clockmock.instant()).thenReturn(Instant.now());
+		final WorkspaceUser u = new WorkspaceUser("u");
+		mocks.mdb.createWorkspace(u, "ws", false, null, new WorkspaceUserMetadata());
+		final ResolvedWorkspaceID ws = new ResolvedWorkspaceID(1, "ws", false, false);
+
+		final List<ValidatedTypedObject> vtos = new LinkedList<>();
+		final List<ResolvedSaveObject> objs = new LinkedList<>();
+		for (int i = 0; i < 5; i++) {
+			final ValidatedTypedObject vto = mock(ValidatedTypedObject.class);
+			vtos.add(vto);
+			objs.add(createResolvedSaveObject(ws, "o" + i, vto,
+					"aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa" + i));
+		}
+		doThrow(thrown).when(mocks.bsmock).saveBlob(
+				new MD5("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa2"), vtos.get(2), true);
+
+		final Exception got = failSaveObjects(mocks.mdb, ws, objs, 2, expected);
+		if (!(thrown instanceof RuntimeException)) {
+			TestCommon.assertExceptionCorrect(got.getCause(), thrown);
+		}
+		// temp files must be cleaned up even on failure
+		for (final ValidatedTypedObject vto: vtos) {
+			verify(vto).destroyCachedResources();
+		}
+		// nothing should be saved to mongo
+		assertThat("incorrect object count", MONGO_DB.getCollection("workspaceObjects")
+				.countDocuments(), is(0L));
+	}
+
+	private Exception failSaveObjects(
+			final MongoWorkspaceDB db,
+			final ResolvedWorkspaceID ws,
+			final List<ResolvedSaveObject> objects,
+			final int backendScaling,
+			final Exception expected) {
+		try {
+			db.saveObjects(new WorkspaceUser("u"), ws, objects, backendScaling);
+			fail("expected exception");
+			return null; // can't actually get here
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+			return got;
+		}
+	}
+
 	@Test
 	public void dynamicConfigSetAndGetNoop() throws Exception {
 		final PartialMock mocks = new PartialMock(MONGO_DB);
@@ -1158,6 +1364,433 @@ public class MongoWorkspaceDBTest {
 				is(opt(new UncheckedUserMetadata(ImmutableMap.of("whee", "whoo")))));
 	}
 	
+	private Map<Long, Document> getLatestVersions() {
+		final Map<Long, Document> ret = new HashMap<>();
+		for (final Document d: MONGO_DB.getCollection("workspaceObjLatest").find()
+				.projection(new Document("_id", 0).append("ws", 1).append("id", 1)
+						.append("ver", 1).append("chksum", 1).append("hide", 1)
+						.append("del", 1).append("adminmeta", 1))) {
+			ret.put(d.getLong("id"), d);
+		}
+		return ret;
+	}
+	
+	private Document latest(
+			final long id,
+			final int ver,
+			final String chksum,
+			final boolean hide,
+			final boolean del) {
+		return new Document("ws", 1L).append("id", id).append("ver", ver)
+				.append("chksum", chksum).append("hide", hide).append("del", del);
+	}
+	
+	@Test
+	public void latestVersionsMaintained() throws Exception {
+		final PartialMock mocks = new PartialMock(MONGO_DB);
+		final WorkspaceUser user = new WorkspaceUser("a");
+		final ResolvedWorkspaceID rwsi = new ResolvedWorkspaceID(1, "wsn", false, false);
+		when(mocks.clockmock.instant()).thenReturn(inst(10000));
+		mocks.mdb.createWorkspace(user, "wsn", false, null, new WorkspaceUserMetadata());
+		final Provenance p = Provenance.getBuilder(user, inst(10000)).withWorkspaceID(1L).build();
+		final String md5a = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+		final String md5b = "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb";
+		
+		mocks.saveTestObject(rwsi, user, p, "newobj", "Mod.Type-5.1", md5a, 22L);
+		mocks.saveTestObject(rwsi, user, p, "newobj2", "Mod.Type-5.1", md5a, 22L);
+		mocks.saveTestObject(rwsi, user, p, "newobj", "Mod.Type-5.1", md5b, 22L);
+		assertThat("incorrect latest", getLatestVersions(), is(ImmutableMap.of(
+				1L, latest(1, 2, md5b, false, false),
+				2L, latest(2, 1, md5a, false, false))));
+		
+		final ObjectIDResolvedWS o1 = new ObjectIDResolvedWS(rwsi, 1);
+		final ObjectIDResolvedWS o2 = new ObjectIDResolvedWS(rwsi, 2);
+		mocks.mdb.setObjectsHidden(set(o1), true);
+		mocks.mdb.setObjectsDeleted(set(o2), true);
+		assertThat("incorrect latest", getLatestVersions(), is(ImmutableMap.of(
+				1L, latest(1, 2, md5b, true, false),
+				2L, latest(2, 1, md5a, false, true))));
+		
+		// the state is copied from the object, so a stale copy is repaired by the next update
+		MONGO_DB.getCollection("workspaceObjLatest").updateOne(
+				new Document("ws", 1L).append("id", 1L),
+				new Document("$set", new Document("hide", false).append("del", true)));
+		mocks.mdb.setObjectsHidden(set(o1), true);
+		assertThat("incorrect latest", getLatestVersions(), is(ImmutableMap.of(
+				1L, latest(1, 2, md5b, true, false),
+				2L, latest(2, 1, md5a, false, true))));
+		
+		// admin metadata on earlier versions is not copied
+		mocks.mdb.setAdminObjectMeta(ImmutableMap.of(
+				new ObjectIDResolvedWS(rwsi, 1, 1), new MetadataUpdate(
+						new WorkspaceUserMetadata(ImmutableMap.of("x", "y")), null),
+				new ObjectIDResolvedWS(rwsi, 1, 2), new MetadataUpdate(
+						new WorkspaceUserMetadata(ImmutableMap.of("foo", "bar")), null)));
+		assertThat("incorrect latest", getLatestVersions(), is(ImmutableMap.of(
+				1L, latest(1, 2, md5b, true, false).append("adminmeta", Arrays.asList(
+						new Document("k", "foo").append("v", "bar"))),
+				2L, latest(2, 1, md5a, false, true))));
+		
+		// saving a new version undeletes the object and replaces the admin metadata
+		mocks.saveTestObject(rwsi, user, p, "newobj2", "Mod.Type-5.1", md5b, 22L);
+		mocks.mdb.setObjectsDeleted(set(o1), true);
+		mocks.saveTestObject(rwsi, user, p, "newobj", "Mod.Type-5.1", md5a, 22L);
+		assertThat("incorrect latest", getLatestVersions(), is(ImmutableMap.of(
+				1L, latest(1, 3, md5a, false, false),
+				2L, latest(2, 2, md5b, false, false))));
+	}
+	
+	@Test
+	public void latestVersionsConcurrentSaveAndHideOrDelete() throws Exception {
+		final PartialMock mocks = new PartialMock(MONGO_DB);
+		final WorkspaceUser user = new WorkspaceUser("a");
+		final ResolvedWorkspaceID rwsi = new ResolvedWorkspaceID(1, "wsn", false, false);
+		when(mocks.clockmock.instant()).thenReturn(inst(10000));
+		mocks.mdb.createWorkspace(user, "wsn", false, null, new WorkspaceUserMetadata());
+		final Provenance p = Provenance.getBuilder(user, inst(10000)).withWorkspaceID(1L).build();
+		final String md5 = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+		final ObjectIDResolvedWS o1 = new ObjectIDResolvedWS(rwsi, 1);
+		
+		final ExecutorService exe = Executors.newFixedThreadPool(2);
+		try {
+			for (int i = 0; i < 20; i++) {
+				// undeletes the object
+				mocks.saveTestObject(rwsi, user, p, "newobj", "Mod.Type-5.1", md5, 22L);
+				final boolean hide = i % 2 == 0;
+				final Future<?> save = exe.submit(() -> mocks.saveTestObject(
+						rwsi, user, p, "newobj", "Mod.Type-5.1", md5, 22L));
+				final Future<?> mod = exe.submit(() -> hide ?
+						mocks.mdb.setObjectsHidden(set(o1), true) :
+						mocks.mdb.setObjectsDeleted(set(o1), true));
+				save.get();
+				mod.get();
+				
+				final Document obj = MONGO_DB.getCollection("workspaceObjects").find(
+						new Document("ws", 1L).append("id", 1L)).first();
+				final Document latest = getLatestVersions().get(1L);
+				assertThat("incorrect version", latest.getInteger("ver"),
+						is(obj.getInteger("numver")));
+				assertThat("incorrect hide", latest.getBoolean("hide"),
+						is(obj.getBoolean("hide")));
+				assertThat("incorrect del", latest.getBoolean("del"),
+						is(obj.getBoolean("del")));
+			}
+		} finally {
+			exe.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void latestVersionsRepairedWhenListing() throws Exception {
+		final PartialMock mocks = new PartialMock(MONGO_DB);
+		final WorkspaceUser user = new WorkspaceUser("a");
+		final ResolvedWorkspaceID rwsi = new ResolvedWorkspaceID(1, "wsn", false, false);
+		when(mocks.clockmock.instant()).thenReturn(inst(10000));
+		mocks.mdb.createWorkspace(user, "wsn", false, null, new WorkspaceUserMetadata());
+		final Provenance p = Provenance.getBuilder(user, inst(10000)).withWorkspaceID(1L).build();
+		final String md5a = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+		final String md5b = "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb";
+		
+		mocks.saveTestObject(rwsi, user, p, "newobj", "Mod.Type-5.1", md5a, 22L);
+		mocks.saveTestObject(rwsi, user, p, "newobj", "Mod.Type-5.1", md5b, 22L);
+		mocks.saveTestObject(rwsi, user, p, "newobj2", "Mod.Type-5.1", md5a, 22L);
+		mocks.saveTestObject(rwsi, user, p, "newobj3", "Mod.Type-5.1", md5a, 22L);
+		mocks.saveTestObject(rwsi, user, p, "newobj3", "Mod.Type-5.1", md5b, 22L);
+		mocks.mdb.setObjectsHidden(set(new ObjectIDResolvedWS(rwsi, 3)), true);
+		
+		// as if the server failed after saving the versions but before updating the copies
+		MONGO_DB.getCollection("workspaceObjLatest").updateOne(
+				new Document("ws", 1L).append("id", 1L),
+				new Document("$set", new Document("ver", 1).append("chksum", md5a)));
+		MONGO_DB.getCollection("workspaceObjLatest").updateOne(
+				new Document("ws", 1L).append("id", 3L),
+				new Document("$set", new Document("ver", 1).append("chksum", md5a)
+						.append("hide", false)));
+		
+		final List<ObjectInformation> objs = mocks.mdb.getObjectInformation(
+				ListObjectsParameters.getBuilder(Arrays.asList(new WorkspaceIdentifier(1)))
+						.build()
+						.resolve(PermissionSet.getBuilder(user, new AllUsers('*'))
+								.withWorkspace(rwsi, Permission.OWNER, Permission.NONE)
+								.build()));
+		
+		// the hidden object's actual latest version is filtered out
+		assertThat("incorrect object count", objs.size(), is(2));
+		assertThat("incorrect id", objs.get(0).getObjectId(), is(1L));
+		assertThat("incorrect version", objs.get(0).getVersion(), is(2));
+		assertThat("incorrect chksum", objs.get(0).getCheckSum(), is(md5b));
+		assertThat("incorrect id", objs.get(1).getObjectId(), is(2L));
+		assertThat("incorrect version", objs.get(1).getVersion(), is(1));
+		
+		assertThat("incorrect latest", getLatestVersions(), is(ImmutableMap.of(
+				1L, latest(1, 2, md5b, false, false),
+				2L, latest(2, 1, md5a, false, false),
+				3L, latest(3, 2, md5b, true, false))));
+	}
+	
+	@Test
+	public void cloneWorkspace() throws Exception {
+		final PartialMock mocks = new PartialMock(MONGO_DB);
+		final WorkspaceUser user = new WorkspaceUser("a");
+		final WorkspaceUser cloner = new WorkspaceUser("b");
+		final ResolvedWorkspaceID rwsi = new ResolvedWorkspaceID(1, "wsn", false, false);
+		when(mocks.clockmock.instant()).thenReturn(inst(10000));
+		mocks.mdb.createWorkspace(user, "wsn", false, null, new WorkspaceUserMetadata());
+		final Provenance p = Provenance.getBuilder(user, inst(10000)).withWorkspaceID(1L).build();
+		final String md5a = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+		final String md5b = "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb";
+		
+		mocks.saveTestObject(rwsi, user, p, "obj1", "Mod.Type-5.1", md5a, 22L);
+		mocks.saveTestObject(rwsi, user, p, "obj1", "Mod.Type-5.1", md5b, 22L);
+		mocks.saveTestObject(rwsi, user, p, "obj2", "Mod.Type-5.1", md5a, 22L);
+		mocks.saveTestObject(rwsi, user, p, "obj3", "Mod.Type-5.1", md5b, 22L);
+		mocks.mdb.setObjectsHidden(set(new ObjectIDResolvedWS(rwsi, 1)), true);
+		mocks.mdb.setObjectsDeleted(set(new ObjectIDResolvedWS(rwsi, 2)), true);
+		// an object with a version count but no versions, e.g. from a failed save
+		MONGO_DB.getCollection("workspaceObjects").updateOne(
+				new Document("ws", 1L).append("id", 3L),
+				new Document("$set", new Document("numver", 2)));
+		MONGO_DB.getCollection("workspaceObjVersions").deleteMany(
+				new Document("ws", 1L).append("id", 3L));
+		
+		final WorkspaceInformation wsinfo = mocks.mdb.cloneWorkspace(
+				cloner, rwsi, "clone", false, null, new WorkspaceUserMetadata(), null);
+		assertThat("incorrect ws id", wsinfo.getId(), is(2L));
+		assertThat("incorrect max obj id", wsinfo.getMaximumObjectID(), is(3L));
+		
+		final List<Document> objs = new LinkedList<>();
+		for (final Document o: MONGO_DB.getCollection("workspaceObjects")
+				.find(new Document("ws", 2L))
+				.projection(new Document("_id", 0).append("id", 1).append("name", 1)
+						.append("numver", 1).append("refcnt", 1).append("hide", 1)
+						.append("del", 1))) {
+			objs.add(o);
+		}
+		assertThat("incorrect objects", objs, is(Arrays.asList(new Document("id", 1L)
+				.append("numver", 2)
+				.append("refcnt", Arrays.asList(0, 0))
+				.append("name", "obj1")
+				.append("del", false)
+				.append("hide", true))));
+		
+		final List<Document> vers = new LinkedList<>();
+		for (final Document v: MONGO_DB.getCollection("workspaceObjVersions")
+				.find(new Document("ws", 2L))
+				.projection(new Document("_id", 0).append("id", 1).append("ver", 1)
+						.append("chksum", 1).append("savedby", 1).append("copied", 1))
+				.sort(new Document("ver", 1))) {
+			vers.add(v);
+		}
+		assertThat("incorrect versions", vers, is(Arrays.asList(
+				new Document("id", 1L).append("ver", 1).append("chksum", md5a)
+						.append("savedby", "b").append("copied", "1/1/1"),
+				new Document("id", 1L).append("ver", 2).append("chksum", md5b)
+						.append("savedby", "b").append("copied", "1/1/2"))));
+		
+		final Document latest = MONGO_DB.getCollection("workspaceObjLatest")
+				.find(new Document("ws", 2L))
+				.projection(new Document("_id", 0).append("id", 1).append("ver", 1)
+						.append("hide", 1).append("del", 1))
+				.first();
+		assertThat("incorrect latest", latest, is(new Document("id", 1L).append("ver", 2)
+				.append("hide", true).append("del", false)));
+	}
+	
+	@Test
+	public void referenceCacheInvalidated() throws Exception {
+		final ReferenceCache cache = new ReferenceCache(
+				100, Duration.ofHours(1), 100, Duration.ofHours(1));
+		final PartialMock mocks = new PartialMock(MONGO_DB, cache);
+		final WorkspaceUser user = new WorkspaceUser("a");
+		final ResolvedWorkspaceID rwsi = new ResolvedWorkspaceID(1, "wsn", false, false);
+		when(mocks.clockmock.instant()).thenReturn(inst(10000));
+		mocks.mdb.createWorkspace(user, "wsn", false, null, new WorkspaceUserMetadata());
+		final Provenance p = Provenance.getBuilder(user, inst(10000)).withWorkspaceID(1L).build();
+		final String md5 = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+		mocks.saveTestObject(rwsi, user, p, "obj1", "Mod.Type-5.1", md5, 22L);
+		mocks.saveTestObject(rwsi, user, p, "obj2", "Mod.Type-5.1", md5, 22L);
+		MONGO_DB.getCollection("workspaceObjVersions").updateOne(
+				new Document("ws", 1L).append("id", 2L).append("ver", 1),
+				new Document("$set", new Document("refs", Arrays.asList("1/1/1"))));
+		final Reference r111 = new Reference(1, 1, 1);
+		final Reference r121 = new Reference(1, 2, 1);
+		final Reference r122 = new Reference(1, 2, 2);
+		
+		assertThat("incorrect refs", mocks.mdb.getObjectIncomingReferences(set(r111)),
+				is(ImmutableMap.of(r111, new ObjectReferenceSet(r111, set(r121), true))));
+		assertThat("incorrect exists", mocks.mdb.getObjectExistsRef(set(r121)),
+				is(ImmutableMap.of(r121, true)));
+		
+		// the reverted version also references 1/1/1
+		mocks.mdb.revertObject(user, new ObjectIDResolvedWS(rwsi, 2, 1));
+		mocks.mdb.setObjectsDeleted(set(new ObjectIDResolvedWS(rwsi, 2)), true);
+		assertThat("incorrect refs", mocks.mdb.getObjectIncomingReferences(set(r111)),
+				is(ImmutableMap.of(r111, new ObjectReferenceSet(r111, set(r121, r122), true))));
+		assertThat("incorrect exists", mocks.mdb.getObjectExistsRef(set(r121, r122)),
+				is(ImmutableMap.of(r121, false, r122, false)));
+		
+		assertThat("incorrect cache", mocks.mdb.getReferenceCache(), is(Optional.of(cache)));
+		final CacheStats incoming = cache.getIncomingReferenceStats();
+		assertThat("incorrect misses", incoming.missCount(), is(2L));
+		final CacheStats exists = cache.getExistenceStats();
+		assertThat("incorrect misses", exists.missCount(), is(3L));
+	}
+	
+	@Test
+	public void readableWorkspaceIDs() throws Exception {
+		readableWorkspaceIDs(new PartialMock(MONGO_DB));
+	}
+	
+	@Test
+	public void readableWorkspaceIDsCached() throws Exception {
+		final ReadableWorkspaceCache cache = new ReadableWorkspaceCache(100, Duration.ofHours(1));
+		final PartialMock mocks = new PartialMock(MONGO_DB, null, cache);
+		readableWorkspaceIDs(mocks);
+		
+		assertThat("incorrect cache", mocks.mdb.getReadableWorkspaceCache(),
+				is(Optional.of(cache)));
+		final CacheStats stats = cache.getStats();
+		assertThat("incorrect hits", stats.hitCount(), is(2L));
+		assertThat("incorrect misses", stats.missCount(), is(9L));
+	}
+	
+	private void readableWorkspaceIDs(final PartialMock mocks) throws Exception {
+		final WorkspaceUser u1 = new WorkspaceUser("a");
+		final WorkspaceUser u2 = new WorkspaceUser("b");
+		when(mocks.clockmock.instant()).thenReturn(inst(10000));
+		mocks.mdb.createWorkspace(u1, "ws1", false, null, new WorkspaceUserMetadata());
+		mocks.mdb.createWorkspace(u1, "ws2", true, null, new WorkspaceUserMetadata());
+		mocks.mdb.createWorkspace(u2, "ws3", false, null, new WorkspaceUserMetadata());
+		final ResolvedWorkspaceID ws1 = new ResolvedWorkspaceID(1, "ws1", false, false);
+		final ResolvedWorkspaceID ws3 = new ResolvedWorkspaceID(3, "ws3", false, false);
+		final MongoWorkspaceDB db = mocks.mdb;
+		
+		assertThat("incorrect ids", db.getUserReadableWorkspaceIDs(u1), is(WorkspaceIDSet.of(1, 2)));
+		assertThat("incorrect ids", db.getUserReadableWorkspaceIDs(u2), is(WorkspaceIDSet.of(3)));
+		assertThat("incorrect ids", db.getPublicWorkspaceIDs(), is(WorkspaceIDSet.of(2)));
+		assertThat("incorrect ids", db.getUserReadableWorkspaceIDs(u1), is(WorkspaceIDSet.of(1, 2)));
+		
+		db.setPermissions(ws1, Arrays.asList(u2), Permission.READ);
+		assertThat("incorrect ids", db.getUserReadableWorkspaceIDs(u2),
+				is(WorkspaceIDSet.of(1, 3)));
+		assertThat("incorrect ids", db.getUserReadableWorkspaceIDs(u1), is(WorkspaceIDSet.of(1, 2)));
+		
+		db.setGlobalPermission(ws3, Permission.READ);
+		assertThat("incorrect ids", db.getPublicWorkspaceIDs(), is(WorkspaceIDSet.of(2, 3)));
+		
+		db.setWorkspaceDeleted(ws1, true);
+		assertThat("incorrect ids", db.getUserReadableWorkspaceIDs(u1), is(WorkspaceIDSet.of(2)));
+		assertThat("incorrect ids", db.getUserReadableWorkspaceIDs(u2), is(WorkspaceIDSet.of(3)));
+		
+		db.setWorkspaceDeleted(ws1, false);
+		assertThat("incorrect ids", db.getUserReadableWorkspaceIDs(u1), is(WorkspaceIDSet.of(1, 2)));
+		
+		db.setPermissions(ws1, Arrays.asList(u2), Permission.NONE);
+		assertThat("incorrect ids", db.getUserReadableWorkspaceIDs(u2), is(WorkspaceIDSet.of(3)));
+	}
+	
+	@Test
+	public void namesByPrefix() throws Exception {
+		namesByPrefix(new PartialMock(MONGO_DB));
+	}
+	
+	@Test
+	public void namesByPrefixCached() throws Exception {
+		final ObjectNameCache cache = new ObjectNameCache(100, 100, Duration.ofHours(1));
+		final PartialMock mocks = new PartialMock(MONGO_DB, null, null, cache);
+		namesByPrefix(mocks);
+		
+		assertThat("incorrect cache", mocks.mdb.getObjectNameCache(), is(Optional.of(cache)));
+		assertThat("incorrect hits", cache.getStats().hitCount() > 0, is(true));
+	}
+	
+	@Test
+	public void namesByPrefixCachedWorkspacesTooLarge() throws Exception {
+		// workspaces with more than one object are searched in the database
+		final ObjectNameCache cache = new ObjectNameCache(100, 1, Duration.ofHours(1));
+		namesByPrefix(new PartialMock(MONGO_DB, null, null, cache));
+	}
+	
+	private void namesByPrefix(final PartialMock mocks) throws Exception {
+		final WorkspaceUser u = new WorkspaceUser("a");
+		when(mocks.clockmock.instant()).thenReturn(inst(10000));
+		mocks.mdb.createWorkspace(u, "ws1", false, null, new WorkspaceUserMetadata());
+		mocks.mdb.createWorkspace(u, "ws2", false, null, new WorkspaceUserMetadata());
+		final ResolvedWorkspaceID ws1 = new ResolvedWorkspaceID(1, "ws1", false, false);
+		final ResolvedWorkspaceID ws2 = new ResolvedWorkspaceID(2, "ws2", false, false);
+		final Provenance p = Provenance.getBuilder(u, inst(10000)).build();
+		final String md5 = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+		for (final String name: Arrays.asList("abc", "abd", "b")) {
+			mocks.saveTestObject(ws1, u, p, name, "Mod.Type-5.1", md5, 22L);
+		}
+		mocks.saveTestObject(ws2, u, p, "abe", "Mod.Type-5.1", md5, 22L);
+		final MongoWorkspaceDB db = mocks.mdb;
+		
+		assertNamesCorrect(db, ws1, ws2, "ab", false,
+				ImmutableMap.of(ws1, set("abc", "abd"), ws2, set("abe")));
+		assertNamesCorrect(db, ws1, ws2, "", false,
+				ImmutableMap.of(ws1, set("abc", "abd", "b"), ws2, set("abe")));
+		assertNamesCorrect(db, ws1, ws2, "c", true, ImmutableMap.of());
+		
+		mocks.saveTestObject(ws1, u, p, "abf", "Mod.Type-5.1", md5, 22L);
+		assertNamesCorrect(db, ws1, ws2, "ab", false,
+				ImmutableMap.of(ws1, set("abc", "abd", "abf"), ws2, set("abe")));
+		
+		db.renameObject(new ObjectIDResolvedWS(ws1, 1), "xyz");
+		assertNamesCorrect(db, ws1, ws2, "ab", false,
+				ImmutableMap.of(ws1, set("abd", "abf"), ws2, set("abe")));
+		
+		db.setObjectsHidden(set(new ObjectIDResolvedWS(ws1, 2)), true);
+		assertNamesCorrect(db, ws1, ws2, "ab", false,
+				ImmutableMap.of(ws1, set("abf"), ws2, set("abe")));
+		assertNamesCorrect(db, ws1, ws2, "ab", true,
+				ImmutableMap.of(ws1, set("abd", "abf"), ws2, set("abe")));
+		
+		db.setObjectsDeleted(set(new ObjectIDResolvedWS(ws1, 4)), true);
+		assertNamesCorrect(db, ws1, ws2, "ab", true,
+				ImmutableMap.of(ws1, set("abd"), ws2, set("abe")));
+		
+		// saving a new version undeletes the object
+		mocks.saveTestObject(ws1, u, p, "abf", "Mod.Type-5.1", md5, 22L);
+		assertNamesCorrect(db, ws1, ws2, "ab", false,
+				ImmutableMap.of(ws1, set("abf"), ws2, set("abe")));
+		
+		db.copyObject(u, new ObjectIDResolvedWS(ws1, "b"), new ObjectIDResolvedWS(ws2, "abg"));
+		assertNamesCorrect(db, ws1, ws2, "ab", false,
+				ImmutableMap.of(ws1, set("abf"), ws2, set("abe", "abg")));
+		
+		final Map<ResolvedWorkspaceID, List<String>> limited = db.getNamesByPrefix(
+				set(ws1, ws2), "", true, 3);
+		assertThat("incorrect name count",
+				limited.values().stream().mapToInt(l -> l.size()).sum(), is(3));
+	}
+	
+	private void assertNamesCorrect(
+			final MongoWorkspaceDB db,
+			final ResolvedWorkspaceID ws1,
+			final ResolvedWorkspaceID ws2,
+			final String prefix,
+			final boolean includeHidden,
+			final Map<ResolvedWorkspaceID, Set<String>> expected)
+			throws Exception {
+		final Map<ResolvedWorkspaceID, Set<String>> got = new HashMap<>();
+		for (final Entry<ResolvedWorkspaceID, List<String>> e: db.getNamesByPrefix(
+				set(ws1, ws2), prefix, includeHidden, 1000).entrySet()) {
+			got.put(e.getKey(), new HashSet<>(e.getValue()));
+		}
+		assertThat("incorrect names", got, is(expected));
+	}
+	
+	@Test
+	public void getUserReadableWorkspaceIDsFail() throws Exception {
+		try {
+			new PartialMock(MONGO_DB).mdb.getUserReadableWorkspaceIDs(null);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new NullPointerException("user"));
+		}
+	}
+	
 	@Test
 	public void setAdminObjectMetaFailBadInput() throws Exception {
 		final PartialMock mocks = new PartialMock(MONGO_DB);
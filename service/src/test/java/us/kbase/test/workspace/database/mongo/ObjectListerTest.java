@@ -32,14 +32,15 @@ import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 
-import us.kbase.test.common.MapBuilder;
 import us.kbase.typedobj.core.AbsoluteTypeDefId;
 import us.kbase.typedobj.core.TypeDefId;
 import us.kbase.typedobj.core.TypeDefName;
 import us.kbase.workspace.database.AllUsers;
+import us.kbase.workspace.database.CloseableIterator;
 import us.kbase.workspace.database.ListObjectsParameters;
 import us.kbase.workspace.database.ListObjectsParameters.Builder;
 import us.kbase.workspace.database.ListObjectsParameters.ResolvedListObjectParameters;
+import us.kbase.workspace.database.exceptions.UncheckedWorkspaceCommunicationException;
 import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
 import us.kbase.workspace.database.ObjectInformation;
 import us.kbase.workspace.database.Permission;
@@ -51,6 +52,7 @@ import us.kbase.workspace.database.WorkspaceUser;
 import us.kbase.workspace.database.WorkspaceUserMetadata;
 import us.kbase.workspace.database.mongo.ObjectInfoUtils;
 import us.kbase.workspace.database.mongo.ObjectLister;
+import us.kbase.workspace.database.mongo.VersionRecord;
 
 public class ObjectListerTest {
 
@@ -59,32 +61,18 @@ public class ObjectListerTest {
 	private static final ResolvedWorkspaceID WSID_1 = new ResolvedWorkspaceID(
 			5, "foo", false, false);
 
-	private static Document makeDBObject(final int id) {
-		return new Document()
-				.append("ver", 7)
-				.append("tyname", "Mod.Type")
-				.append("tymaj", 3)
-				.append("tymin", 2)
-				.append("savedate", Date.from(inst(10000)))
-				.append("savedby", "someguy")
-				.append("chksum", SHTTY_MD5)
-				.append("size", 3)
-				.append("id", id)
-				.append("ws", 5);
-	}
-
-	private static Map<String, Object> makeMapObject(final int id) {
-		return MapBuilder.<String,Object>newHashMap()
-				.with("ver", 7)
-				.with("tyname", "Mod.Type")
-				.with("tymaj", 3)
-				.with("tymin", 2)
-				.with("savedate", Date.from(inst(10000)))
-				.with("savedby", "someguy")
-				.with("chksum", SHTTY_MD5)
-				.with("size", 3)
-				.with("id", id)
-				.with("ws", 5)
+	private static VersionRecord makeRecord(final int id) {
+		return VersionRecord.getBuilder()
+				.withVersion(7)
+				.withTypeName("Mod.Type")
+				.withTypeMajorVersion(3)
+				.withTypeMinorVersion(2)
+				.withSavedDate(inst(10000))
+				.withSavedBy("someguy")
+				.withChecksum(SHTTY_MD5)
+				.withSize(3)
+				.withObjectID(id)
+				.withWorkspaceID(5)
 				.build();
 	}
 
@@ -103,12 +91,12 @@ public class ObjectListerTest {
 	}
 
 	// start is inclusive, end is exclusive
-	private static Document[] makeDBObjs(final int start, final int end) {
-		return IntStream.range(start, end).mapToObj(i -> makeDBObject(i)).toArray(Document[]::new);
+	private static VersionRecord[] makeRecords(final int start, final int end) {
+		return IntStream.range(start, end).mapToObj(i -> makeRecord(i))
+				.toArray(VersionRecord[]::new);
 	}
 
-	private static final Map<String, Object> OBJ_MAP_1 = makeMapObject(24);
-	private static final Document OBJ_DB_1 = makeDBObject(24);
+	private static final VersionRecord OBJ_REC_1 = makeRecord(24);
 	private static final ObjectInformation OBJ_INFO_1 = makeObjInfo(24);
 
 	private final AllUsers AU = new AllUsers('*');
@@ -117,8 +105,8 @@ public class ObjectListerTest {
 		public final MongoCollection<Document> col;
 		public final ObjectInfoUtils infoutils;
 		public final ObjectLister lister;
-		public final FindIterable<Document> cur;
-		public final MongoCursor<Document> mcur;
+		public final FindIterable<VersionRecord> cur;
+		public final MongoCursor<VersionRecord> mcur;
 
 		public Mocks() {
 			@SuppressWarnings("unchecked")
@@ -127,10 +115,10 @@ public class ObjectListerTest {
 			infoutils = mock(ObjectInfoUtils.class);
 			lister = new ObjectLister(col, infoutils);
 			@SuppressWarnings("unchecked")
-			final FindIterable<Document> cur = mock(FindIterable.class);
+			final FindIterable<VersionRecord> cur = mock(FindIterable.class);
 			this.cur = cur;
 			@SuppressWarnings("unchecked")
-			final MongoCursor<Document> mcur = mock(MongoCursor.class);
+			final MongoCursor<VersionRecord> mcur = mock(MongoCursor.class);
 			this.mcur = mcur;
 		}
 	}
@@ -193,7 +181,7 @@ public class ObjectListerTest {
 		final Document expectedQuery = new Document(
 				"ws", new Document("$in", Arrays.asList(5L)));
 
-		when(m.col.find(expectedQuery)).thenThrow(new MongoException("ah creahp"));
+		when(m.col.find(expectedQuery, VersionRecord.class)).thenThrow(new MongoException("ah creahp"));
 
 		filterFail(m.lister, p, new WorkspaceCommunicationException(
 				"There was a problem communicating with the database"));
@@ -302,7 +290,7 @@ public class ObjectListerTest {
 			final Document startFrom)
 			throws Exception {
 		final Mocks m = new Mocks();
-		when(m.col.find(expectedQuery)).thenReturn(m.cur);
+		when(m.col.find(expectedQuery, VersionRecord.class)).thenReturn(m.cur);
 		when(m.cur.projection(getProjection(boolopts.get(0)))).thenReturn(m.cur);
 		when(m.cur.iterator()).thenReturn(m.mcur);
 		when(m.cur.hint(expectedSort)).thenReturn(m.cur); // mock fluent interface
@@ -311,17 +299,17 @@ public class ObjectListerTest {
 		// if include meta is true, all these object representations should include metadata.
 		// however, the code doesn't actually know what's going on beyond setting up the
 		// mongo projection, so not really worth the bother.
-		when(m.mcur.next()).thenReturn(OBJ_DB_1);
+		when(m.mcur.next()).thenReturn(OBJ_REC_1);
 
 		when(m.infoutils.generateObjectInfo(
 				pset,
-				Arrays.asList(OBJ_MAP_1),
+				Arrays.asList(OBJ_REC_1),
 				boolopts.get(1),
 				boolopts.get(2),
 				boolopts.get(3),
 				boolopts.get(4),
 				boolopts.get(5)))
-				.thenReturn(ImmutableMap.of(OBJ_MAP_1, OBJ_INFO_1));
+				.thenReturn(ImmutableMap.of(OBJ_REC_1, OBJ_INFO_1));
 
 		final List<ObjectInformation> ret = m.lister.filter(p);
 
@@ -352,7 +340,7 @@ public class ObjectListerTest {
 		final Document expectedQuery = new Document(
 				"ws", new Document("$in", Arrays.asList(5L)));
 
-		when(m.col.find(expectedQuery)).thenReturn(m.cur);
+		when(m.col.find(expectedQuery, VersionRecord.class)).thenReturn(m.cur);
 		when(m.cur.projection(getProjection())).thenReturn(m.cur);
 		when(m.cur.iterator()).thenReturn(m.mcur);
 		when(m.mcur.hasNext()).thenReturn(false);
@@ -772,27 +760,27 @@ public class ObjectListerTest {
 				"ws", new Document("$in", Arrays.asList(5L)));
 
 		final Mocks m = new Mocks();
-		when(m.col.find(expectedQuery)).thenReturn(m.cur);
+		when(m.col.find(expectedQuery, VersionRecord.class)).thenReturn(m.cur);
 		when(m.cur.projection(getProjection())).thenReturn(m.cur);
 		when(m.cur.iterator()).thenReturn(m.mcur);
 
 		when(m.mcur.hasNext()).thenReturn(true, true, true, true, true, false);
 		when(m.mcur.next()).thenReturn(
-				makeDBObject(7), makeDBObject(8), makeDBObject(9), makeDBObject(10));
+				makeRecord(7), makeRecord(8), makeRecord(9), makeRecord(10));
 
 		when(m.infoutils.generateObjectInfo(
 				pset,
 				Arrays.asList(
-						makeMapObject(7), makeMapObject(8), makeMapObject(9), makeMapObject(10)),
+						makeRecord(7), makeRecord(8), makeRecord(9), makeRecord(10)),
 				false,
 				false,
 				false,
 				false,
 				false))
 				.thenReturn(ImmutableMap.of(
-						makeMapObject(10), makeObjInfo(10),
-						makeMapObject(7), makeObjInfo(7),
-						makeMapObject(9), makeObjInfo(9)
+						makeRecord(10), makeObjInfo(10),
+						makeRecord(7), makeObjInfo(7),
+						makeRecord(9), makeObjInfo(9)
 				));
 
 		final List<ObjectInformation> ret = m.lister.filter(p);
@@ -818,16 +806,16 @@ public class ObjectListerTest {
 				"ws", new Document("$in", Arrays.asList(5L)));
 
 		final Mocks m = new Mocks();
-		when(m.col.find(expectedQuery)).thenReturn(m.cur);
+		when(m.col.find(expectedQuery, VersionRecord.class)).thenReturn(m.cur);
 		when(m.cur.projection(getProjection())).thenReturn(m.cur);
 		when(m.cur.iterator()).thenReturn(m.mcur);
 
 		when(m.mcur.hasNext()).thenReturn(true);
-		when(m.mcur.next()).thenReturn(makeDBObject(45), makeDBObjs(46, 200));
+		when(m.mcur.next()).thenReturn(makeRecord(45), makeRecords(46, 200));
 
 		when(m.infoutils.generateObjectInfo(
 				pset,
-				IntStream.range(45, 145).mapToObj(i -> makeMapObject(i))
+				IntStream.range(45, 145).mapToObj(i -> makeRecord(i))
 						.collect(Collectors.toList()),
 				false,
 				false,
@@ -835,9 +823,9 @@ public class ObjectListerTest {
 				false,
 				false))
 				.thenReturn(ImmutableMap.of(
-						makeMapObject(87), makeObjInfo(87),
-						makeMapObject(72), makeObjInfo(72),
-						makeMapObject(76), makeObjInfo(76)
+						makeRecord(87), makeObjInfo(87),
+						makeRecord(72), makeObjInfo(72),
+						makeRecord(76), makeObjInfo(76)
 				));
 
 		final List<ObjectInformation> ret = m.lister.filter(p);
@@ -863,20 +851,20 @@ public class ObjectListerTest {
 
 		final Mocks m = new Mocks();
 
-		when(m.col.find(expectedQuery)).thenReturn(m.cur);
+		when(m.col.find(expectedQuery, VersionRecord.class)).thenReturn(m.cur);
 		when(m.cur.projection(getProjection())).thenReturn(m.cur);
 		when(m.cur.iterator()).thenReturn(m.mcur);
 		when(m.mcur.hasNext()).thenReturn(true);
-		when(m.mcur.next()).thenReturn(makeDBObject(40), makeDBObjs(41, 500));
+		when(m.mcur.next()).thenReturn(makeRecord(40), makeRecords(41, 500));
 
-		final Map<Map<String, Object>, ObjectInformation> retmap = new HashMap<>();
-		IntStream.range(40, 80).forEach(i -> retmap.put(makeMapObject(i), makeObjInfo(i)));
+		final Map<VersionRecord, ObjectInformation> retmap = new HashMap<>();
+		IntStream.range(40, 80).forEach(i -> retmap.put(makeRecord(i), makeObjInfo(i)));
 		// oh dang, we're going to have to do two passes
-		IntStream.range(90, 190).forEach(i -> retmap.put(makeMapObject(i), makeObjInfo(i)));
+		IntStream.range(90, 190).forEach(i -> retmap.put(makeRecord(i), makeObjInfo(i)));
 
 		when(m.infoutils.generateObjectInfo(
 				pset,
-				IntStream.range(40, 190).mapToObj(i -> makeMapObject(i))
+				IntStream.range(40, 190).mapToObj(i -> makeRecord(i))
 						.collect(Collectors.toList()),
 				false,
 				false,
@@ -886,12 +874,12 @@ public class ObjectListerTest {
 				.thenReturn(retmap);
 
 		// don't reuse retmap, will screw up the mocks
-		final Map<Map<String, Object>, ObjectInformation> retmap2 = new HashMap<>();
-		IntStream.range(190, 340).forEach(i -> retmap2.put(makeMapObject(i), makeObjInfo(i)));
+		final Map<VersionRecord, ObjectInformation> retmap2 = new HashMap<>();
+		IntStream.range(190, 340).forEach(i -> retmap2.put(makeRecord(i), makeObjInfo(i)));
 
 		when(m.infoutils.generateObjectInfo(
 				pset,
-				IntStream.range(190, 340).mapToObj(i -> makeMapObject(i))
+				IntStream.range(190, 340).mapToObj(i -> makeRecord(i))
 						.collect(Collectors.toList()),
 				false,
 				false,
@@ -910,4 +898,178 @@ public class ObjectListerTest {
 
 		verify(m.cur).sort(new Document("ws", 1).append("id",  1).append("ver", -1));
 	}
+
+	private Mocks setUpIterateMocks(final PermissionSet pset) throws Exception {
+		final Document expectedQuery = new Document(
+				"ws", new Document("$in", Arrays.asList(5L)));
+
+		final Mocks m = new Mocks();
+
+		when(m.col.find(expectedQuery, VersionRecord.class)).thenReturn(m.cur);
+		when(m.cur.projection(getProjection())).thenReturn(m.cur);
+		when(m.cur.iterator()).thenReturn(m.mcur);
+		when(m.mcur.hasNext()).thenReturn(true);
+
+		final Map<VersionRecord, ObjectInformation> retmap = new HashMap<>();
+		IntStream.range(40, 50).forEach(i -> retmap.put(makeRecord(i), makeObjInfo(i)));
+
+		when(m.infoutils.generateObjectInfo(
+				pset,
+				IntStream.range(40, 190).mapToObj(i -> makeRecord(i))
+						.collect(Collectors.toList()),
+				false,
+				false,
+				false,
+				false,
+				false))
+				.thenReturn(retmap);
+		return m;
+	}
+
+	@Test
+	public void iterateFetchesLazilyAndCloses() throws Exception {
+		final PermissionSet pset = PermissionSet.getBuilder(new WorkspaceUser("foo"), AU)
+				.withWorkspace(WSID_1, Permission.READ, Permission.NONE)
+				.build();
+
+		final ResolvedListObjectParameters p = ListObjectsParameters.getBuilder(
+				Arrays.asList(new WorkspaceIdentifier(5))).withLimit(150).build().resolve(pset);
+
+		final Mocks m = setUpIterateMocks(pset);
+		when(m.mcur.next()).thenReturn(makeRecord(40), makeRecords(41, 500));
+
+		final CloseableIterator<ObjectInformation> iter = m.lister.iterate(p);
+
+		// only the first batch is fetched until it's consumed
+		verify(m.infoutils).generateObjectInfo(
+				any(), any(), any(boolean.class), any(boolean.class), any(boolean.class),
+				any(boolean.class), any(boolean.class));
+		assertThat("incorrect next", iter.next(), is(makeObjInfo(40)));
+		assertThat("incorrect next", iter.next(), is(makeObjInfo(41)));
+
+		iter.close();
+		verify(m.mcur).close();
+		assertThat("incorrect hasNext", iter.hasNext(), is(false));
+		iter.close();
+		verify(m.mcur).close(); // only closed once
+	}
+
+	@Test
+	public void iterateFailOnLaterBatch() throws Exception {
+		final PermissionSet pset = PermissionSet.getBuilder(new WorkspaceUser("foo"), AU)
+				.withWorkspace(WSID_1, Permission.READ, Permission.NONE)
+				.build();
+
+		final ResolvedListObjectParameters p = ListObjectsParameters.getBuilder(
+				Arrays.asList(new WorkspaceIdentifier(5))).withLimit(150).build().resolve(pset);
+
+		final Mocks m = setUpIterateMocks(pset);
+		when(m.mcur.next()).thenReturn(makeRecord(40), makeRecords(41, 190))
+				.thenThrow(new MongoException("oops"));
+
+		final CloseableIterator<ObjectInformation> iter = m.lister.iterate(p);
+
+		for (int i = 40; i < 50; i++) {
+			assertThat("incorrect next", iter.next(), is(makeObjInfo(i)));
+		}
+		try {
+			iter.hasNext();
+			fail("expected exception");
+		} catch (UncheckedWorkspaceCommunicationException got) {
+			assertExceptionCorrect(got.getCause(), new WorkspaceCommunicationException(
+					"There was a problem communicating with the database"));
+		}
+		verify(m.mcur).close();
+		assertThat("incorrect hasNext", iter.hasNext(), is(false));
+	}
+
+	private void latestVersionsFilterTest(
+			final Builder params,
+			final boolean expectLatest,
+			final Document extraQuery,
+			// 0 - 3 = hidden, del, only del, versions
+			final BitSet boolopts)
+			throws Exception {
+		final PermissionSet pset = PermissionSet.getBuilder(new WorkspaceUser("foo"), AU)
+				.withWorkspace(WSID_1, Permission.READ, Permission.NONE)
+				.build();
+		final ResolvedListObjectParameters p = params.build().resolve(pset);
+		final Mocks m = new Mocks();
+		@SuppressWarnings("unchecked")
+		final MongoCollection<Document> latest = mock(MongoCollection.class);
+		final ObjectLister lister = new ObjectLister(m.col, latest, m.infoutils);
+
+		final Document expectedQuery = new Document(
+				"ws", new Document("$in", Arrays.asList(5L)));
+		expectedQuery.putAll(extraQuery);
+		when((expectLatest ? latest : m.col).find(expectedQuery, VersionRecord.class))
+				.thenReturn(m.cur);
+		when(m.cur.projection(getProjection())).thenReturn(m.cur);
+		when(m.cur.iterator()).thenReturn(m.mcur);
+		when(m.mcur.hasNext()).thenReturn(true, false);
+		when(m.mcur.next()).thenReturn(OBJ_REC_1);
+		when(m.infoutils.generateObjectInfo(
+				pset,
+				Arrays.asList(OBJ_REC_1),
+				boolopts.get(0),
+				boolopts.get(1),
+				boolopts.get(2),
+				boolopts.get(3),
+				false))
+				.thenReturn(ImmutableMap.of(OBJ_REC_1, OBJ_INFO_1));
+
+		assertThat("incorrect objects", lister.filter(p), is(Arrays.asList(OBJ_INFO_1)));
+		verify(m.cur).sort(new Document("ws", 1).append("id",  1).append("ver", -1));
+		if (expectLatest) {
+			verify(m.col, never()).find(any(Document.class), any());
+		} else {
+			verify(latest, never()).find(any(Document.class), any());
+		}
+	}
+
+	@Test
+	public void filterLatestVersionsCollection() throws Exception {
+		latestVersionsFilterTest(
+				ListObjectsParameters.getBuilder(Arrays.asList(new WorkspaceIdentifier(5))),
+				true,
+				new Document("hide", false).append("del", false),
+				new BitSet());
+	}
+
+	@Test
+	public void filterLatestVersionsCollectionShowHiddenAndDeleted() throws Exception {
+		final BitSet bs = new BitSet();
+		bs.set(0, 2);
+		latestVersionsFilterTest(
+				ListObjectsParameters.getBuilder(Arrays.asList(new WorkspaceIdentifier(5)))
+						.withShowHidden(true)
+						.withShowDeleted(true),
+				true,
+				new Document(),
+				bs);
+	}
+
+	@Test
+	public void filterLatestVersionsCollectionShowOnlyDeleted() throws Exception {
+		final BitSet bs = new BitSet();
+		bs.set(2);
+		latestVersionsFilterTest(
+				ListObjectsParameters.getBuilder(Arrays.asList(new WorkspaceIdentifier(5)))
+						.withShowOnlyDeleted(true),
+				true,
+				new Document("hide", false).append("del", true),
+				bs);
+	}
+
+	@Test
+	public void filterLatestVersionsCollectionIgnoredForAllVersions() throws Exception {
+		final BitSet bs = new BitSet();
+		bs.set(3);
+		latestVersionsFilterTest(
+				ListObjectsParameters.getBuilder(Arrays.asList(new WorkspaceIdentifier(5)))
+						.withShowAllVersions(true),
+				false,
+				new Document(),
+				bs);
+	}
 }
@@ -0,0 +1,305 @@
+package us.kbase.test.workspace.database.mongo;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static us.kbase.test.common.TestCommon.set;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.collect.ImmutableMap;
+
+import us.kbase.test.common.TestCommon;
+import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
+import us.kbase.workspace.database.mongo.ObjectNameCache;
+import us.kbase.workspace.database.mongo.ObjectNameCache.Loader;
+import us.kbase.workspace.database.mongo.ObjectNameCache.PrefixQuery;
+
+public class ObjectNameCacheTest {
+
+	private static final Duration TTL = Duration.ofMinutes(1);
+
+	private final AtomicLong time = new AtomicLong();
+	private final Ticker ticker = time::get;
+
+	private ObjectNameCache cache() {
+		return new ObjectNameCache(100, 10, TTL, ticker);
+	}
+
+	private static Map<String, Boolean> names(final Object... nameAndHidden) {
+		final Map<String, Boolean> ret = new HashMap<>();
+		for (int i = 0; i < nameAndHidden.length; i += 2) {
+			ret.put((String) nameAndHidden[i], (Boolean) nameAndHidden[i + 1]);
+		}
+		return ret;
+	}
+
+	// the order of names within a workspace is not defined
+	private static Map<Long, Set<String>> toSets(final Map<Long, List<String>> names) {
+		final Map<Long, Set<String>> ret = new HashMap<>();
+		for (final Long ws: names.keySet()) {
+			ret.put(ws, new HashSet<>(names.get(ws)));
+		}
+		return ret;
+	}
+
+	@Test
+	public void constructFail() throws Exception {
+		failConstruct(0, 1, TTL, ticker, new IllegalArgumentException("maxNames must be > 0"));
+		failConstruct(1, 0, TTL, ticker,
+				new IllegalArgumentException("maxNamesPerWorkspace must be > 0"));
+		failConstruct(1, 1, null, ticker, new NullPointerException("ttl"));
+		failConstruct(1, 1, Duration.ZERO, ticker,
+				new IllegalArgumentException("ttl must be positive"));
+		failConstruct(1, 1, TTL, null, new NullPointerException("ticker"));
+	}
+
+	private void failConstruct(
+			final long maxNames,
+			final int maxNamesPerWS,
+			final Duration ttl,
+			final Ticker ticker,
+			final Exception expected) {
+		try {
+			new ObjectNameCache(maxNames, maxNamesPerWS, ttl, ticker);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+	@Test
+	public void getNamesByPrefix() throws Exception {
+		final ObjectNameCache c = cache();
+		final Loader l = mock(Loader.class);
+		final PrefixQuery q = mock(PrefixQuery.class);
+		when(l.load(set(1L, 2L, 3L), 10)).thenReturn(ImmutableMap.of(
+				1L, names("abc", false, "abd", true, "ab", false, "b", false),
+				2L, names("aaa", false, "abz", false)));
+
+		assertThat("incorrect names", toSets(c.getNamesByPrefix(
+				set(1L, 2L, 3L), "ab", false, 1000, l, q)),
+				is(ImmutableMap.of(1L, set("ab", "abc"), 2L, set("abz"))));
+		// all loaded now
+		assertThat("incorrect names", toSets(c.getNamesByPrefix(
+				set(1L, 2L, 3L), "ab", true, 1000, l, q)),
+				is(ImmutableMap.of(1L, set("ab", "abc", "abd"), 2L, set("abz"))));
+		assertThat("incorrect names", toSets(c.getNamesByPrefix(
+				set(1L, 3L), "", false, 0, l, q)),
+				is(ImmutableMap.of(1L, set("ab", "abc", "b"))));
+		assertThat("incorrect names", c.getNamesByPrefix(
+				set(1L, 2L), "abd", false, 1000, l, q), is(Collections.emptyMap()));
+		assertThat("incorrect names", c.getNamesByPrefix(
+				set(1L), "abc", false, 1000, l, q), is(ImmutableMap.of(1L, Arrays.asList("abc"))));
+
+		verify(l).load(set(1L, 2L, 3L), 10);
+		verifyNoMoreInteractions(l);
+		verifyZeroInteractions(q);
+	}
+
+	@Test
+	public void limit() throws Exception {
+		final ObjectNameCache c = cache();
+		final Loader l = mock(Loader.class);
+		final PrefixQuery q = mock(PrefixQuery.class);
+		when(l.load(set(1L), 10)).thenReturn(ImmutableMap.of(
+				1L, names("a1", false, "a2", false, "a3", false)));
+		when(l.load(set(2L), 10)).thenReturn(ImmutableMap.of(2L, names("a4", false)));
+
+		assertThat("incorrect names", c.getNamesByPrefix(set(1L), "a", false, 2, l, q),
+				is(ImmutableMap.of(1L, Arrays.asList("a1", "a2"))));
+		// the cached workspace fills the limit, so the other workspace isn't loaded
+		assertThat("incorrect names", c.getNamesByPrefix(set(1L, 2L), "a", false, 3, l, q),
+				is(ImmutableMap.of(1L, Arrays.asList("a1", "a2", "a3"))));
+		verify(l).load(set(1L), 10);
+		verifyNoMoreInteractions(l);
+
+		assertThat("incorrect names", c.getNamesByPrefix(set(1L, 2L), "a", false, 4, l, q),
+				is(ImmutableMap.of(1L, Arrays.asList("a1", "a2", "a3"), 2L, Arrays.asList("a4"))));
+		verify(l).load(set(2L), 10);
+	}
+
+	@Test
+	public void workspaceTooLarge() throws Exception {
+		final ObjectNameCache c = new ObjectNameCache(100, 2, TTL, ticker);
+		final Loader l = mock(Loader.class);
+		final PrefixQuery q = mock(PrefixQuery.class);
+		when(l.load(set(1L, 2L), 2)).thenReturn(ImmutableMap.of(
+				1L, names("a1", false, "a2", false, "a3", false),
+				2L, names("a4", false)));
+		when(q.query(set(1L), "a", false, 5)).thenReturn(ImmutableMap.of(
+				1L, Arrays.asList("a1", "a2", "a3")));
+		when(q.query(set(1L), "a", true, 0)).thenReturn(ImmutableMap.of(
+				1L, Arrays.asList("a1", "a2", "a3")));
+
+		assertThat("incorrect names", toSets(c.getNamesByPrefix(
+				set(1L, 2L), "a", false, 6, l, q)),
+				is(ImmutableMap.of(1L, set("a1", "a2", "a3"), 2L, set("a4"))));
+		// the large workspace isn't loaded again
+		assertThat("incorrect names", toSets(c.getNamesByPrefix(
+				set(1L, 2L), "a", true, 0, l, q)),
+				is(ImmutableMap.of(1L, set("a1", "a2", "a3"), 2L, set("a4"))));
+		verify(l).load(set(1L, 2L), 2);
+		verifyNoMoreInteractions(l);
+	}
+
+	@Test
+	public void loadLimit() throws Exception {
+		final ObjectNameCache c = cache();
+		final Loader l = mock(Loader.class);
+		final PrefixQuery q = mock(PrefixQuery.class);
+		final Set<Long> wsids = new HashSet<>();
+		final Set<Long> loaded = new HashSet<>();
+		final Map<Long, Map<String, Boolean>> names = new HashMap<>();
+		for (long i = 1; i <= ObjectNameCache.MAX_LOADS_PER_REQUEST + 2; i++) {
+			wsids.add(i);
+			if (i <= ObjectNameCache.MAX_LOADS_PER_REQUEST) {
+				loaded.add(i);
+				names.put(i, names("a" + i, false));
+			}
+		}
+		final long ws1 = ObjectNameCache.MAX_LOADS_PER_REQUEST + 1;
+		final long ws2 = ObjectNameCache.MAX_LOADS_PER_REQUEST + 2;
+		when(l.load(loaded, 10)).thenReturn(names);
+		when(q.query(set(ws1, ws2), "a", false, 0)).thenReturn(ImmutableMap.of(
+				ws1, Arrays.asList("a" + ws1)));
+
+		final Map<Long, List<String>> got = c.getNamesByPrefix(wsids, "a", false, 0, l, q);
+
+		final Set<Long> expected = new HashSet<>(loaded);
+		expected.add(ws1);
+		assertThat("incorrect workspaces", got.keySet(), is(expected));
+		assertThat("incorrect names", got.get(ws1), is(Arrays.asList("a" + ws1)));
+		// the workspaces over the load limit are searched in the backend
+		verify(l).load(loaded, 10);
+		verify(q).query(set(ws1, ws2), "a", false, 0);
+		verifyNoMoreInteractions(l, q);
+	}
+
+	@Test
+	public void update() throws Exception {
+		final ObjectNameCache c = cache();
+		final Loader l = mock(Loader.class);
+		final PrefixQuery q = mock(PrefixQuery.class);
+		when(l.load(set(1L), 10)).thenReturn(ImmutableMap.of(1L, names("a1", false)))
+				.thenReturn(ImmutableMap.of(1L, names("a1", false, "a3", true)));
+
+		c.update(1L, "a0", false); // not cached, ignored
+		c.getNamesByPrefix(set(1L), "a", true, 0, l, q);
+		c.update(1L, "a2", true);
+		c.update(1L, "a1", true);
+		assertThat("incorrect names", c.getNamesByPrefix(set(1L), "a", true, 0, l, q),
+				is(ImmutableMap.of(1L, Arrays.asList("a1", "a2"))));
+		assertThat("incorrect names", c.getNamesByPrefix(set(1L), "a", false, 0, l, q),
+				is(Collections.emptyMap()));
+		c.update(1L, "a1", null); // already cached, no change
+		c.update(1L, "a2", false);
+		assertThat("incorrect names", c.getNamesByPrefix(set(1L), "a", false, 0, l, q),
+				is(ImmutableMap.of(1L, Arrays.asList("a2"))));
+		verify(l).load(set(1L), 10);
+
+		// hidden state unknown, so the workspace is reloaded
+		c.update(1L, "a3", null);
+		assertThat("incorrect names", c.getNamesByPrefix(set(1L), "a", true, 0, l, q),
+				is(ImmutableMap.of(1L, Arrays.asList("a1", "a3"))));
+		verify(l, times(2)).load(set(1L), 10);
+	}
+
+	@Test
+	public void invalidateAndExpire() throws Exception {
+		final ObjectNameCache c = cache();
+		final Loader l = mock(Loader.class);
+		final PrefixQuery q = mock(PrefixQuery.class);
+		when(l.load(set(1L), 10)).thenReturn(ImmutableMap.of(1L, names("a1", false)))
+				.thenReturn(ImmutableMap.of(1L, names("a2", false)))
+				.thenReturn(ImmutableMap.of(1L, names("a3", false)));
+
+		c.getNamesByPrefix(set(1L), "a", false, 0, l, q);
+		c.invalidate(1L);
+		assertThat("incorrect names", c.getNamesByPrefix(set(1L), "a", false, 0, l, q),
+				is(ImmutableMap.of(1L, Arrays.asList("a2"))));
+		time.addAndGet(TTL.toNanos() - 1);
+		assertThat("incorrect names", c.getNamesByPrefix(set(1L), "a", false, 0, l, q),
+				is(ImmutableMap.of(1L, Arrays.asList("a2"))));
+		time.addAndGet(1);
+		assertThat("incorrect names", c.getNamesByPrefix(set(1L), "a", false, 0, l, q),
+				is(ImmutableMap.of(1L, Arrays.asList("a3"))));
+	}
+
+	@Test
+	public void changeDuringLoad() throws Exception {
+		// data loaded while the workspace changes may be stale and isn't cached
+		final ObjectNameCache c = cache();
+		final PrefixQuery q = mock(PrefixQuery.class);
+		final Loader l = (wsids, max) -> {
+			c.update(1L, "a2", false);
+			return ImmutableMap.of(1L, names("a1", false));
+		};
+		c.getNamesByPrefix(set(1L), "a", false, 0, l, q);
+		c.getNamesByPrefix(set(1L), "a", false, 0, l, q);
+		assertThat("incorrect misses", c.getStats().missCount(), is(4L));
+	}
+
+	@Test
+	public void loadFail() throws Exception {
+		final ObjectNameCache c = cache();
+		final Loader l = mock(Loader.class);
+		final PrefixQuery q = mock(PrefixQuery.class);
+		when(l.load(set(1L), 10)).thenThrow(new WorkspaceCommunicationException("oops"));
+
+		try {
+			c.getNamesByPrefix(set(1L), "a", false, 0, l, q);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new WorkspaceCommunicationException("oops"));
+		}
+	}
+
+	@Test
+	public void badArgs() throws Exception {
+		final ObjectNameCache c = cache();
+		final Loader l = mock(Loader.class);
+		final PrefixQuery q = mock(PrefixQuery.class);
+		failCall(() -> c.getNamesByPrefix(null, "a", false, 1, l, q),
+				new NullPointerException("workspaceIDs"));
+		failCall(() -> c.getNamesByPrefix(set(), null, false, 1, l, q),
+				new NullPointerException("prefix"));
+		failCall(() -> c.getNamesByPrefix(set(), "a", false, 1, null, q),
+				new NullPointerException("loader"));
+		failCall(() -> c.getNamesByPrefix(set(), "a", false, 1, l, null),
+				new NullPointerException("prefixQuery"));
+		failCall(() -> c.getNamesByPrefix(set(1L), "a", false, 1, (w, m) -> null, q),
+				new NullPointerException("loaded names"));
+		failCall(() -> c.update(1L, null, true), new NullPointerException("name"));
+	}
+
+	private interface ThrowingRunnable {
+		void run() throws Exception;
+	}
+
+	private void failCall(final ThrowingRunnable r, final Exception expected) {
+		try {
+			r.run();
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+}
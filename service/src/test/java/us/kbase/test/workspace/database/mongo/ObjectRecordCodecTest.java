@@ -0,0 +1,95 @@
+package us.kbase.test.workspace.database.mongo;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static us.kbase.test.common.TestCommon.inst;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import com.mongodb.MongoClientSettings;
+
+import nl.jqno.equalsverifier.EqualsVerifier;
+import us.kbase.workspace.database.mongo.ObjectRecord;
+import us.kbase.workspace.database.mongo.ObjectRecordCodec;
+
+public class ObjectRecordCodecTest {
+
+	private static final ObjectRecordCodec CODEC = new ObjectRecordCodec();
+
+	private static ObjectRecord decode(final Document doc) {
+		final BsonDocument bd = doc.toBsonDocument(
+				BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+		return CODEC.decode(new BsonDocumentReader(bd), DecoderContext.builder().build());
+	}
+
+	@Test
+	public void equals() throws Exception {
+		EqualsVerifier.forClass(ObjectRecord.class).usingGetClass().verify();
+	}
+
+	@Test
+	public void construct() throws Exception {
+		final ObjectRecord r = new ObjectRecord(5, 24, "foo", true, false, 7);
+
+		assertThat("incorrect ws id", r.getWorkspaceID(), is(5L));
+		assertThat("incorrect obj id", r.getObjectID(), is(24L));
+		assertThat("incorrect name", r.getName(), is("foo"));
+		assertThat("incorrect deleted", r.isDeleted(), is(true));
+		assertThat("incorrect hidden", r.isHidden(), is(false));
+		assertThat("incorrect ver count", r.getVersionCount(), is(7));
+	}
+
+	@Test
+	public void encoderClass() throws Exception {
+		assertThat("incorrect class", CODEC.getEncoderClass(), is(ObjectRecord.class));
+	}
+
+	@Test
+	public void decodeMaximal() throws Exception {
+		final Document doc = new Document("_id", new ObjectId())
+				.append("ws", 5L)
+				.append("id", 24L)
+				.append("name", "foo")
+				.append("del", false)
+				.append("hide", true)
+				.append("numver", 7)
+				// fields that aren't part of the record
+				.append("moddate", Date.from(inst(10000)))
+				.append("refcnt", new Document("1", 0).append("2", 3))
+				.append("latest", Arrays.asList(1, 2));
+
+		assertThat("incorrect record", decode(doc), is(new ObjectRecord(
+				5, 24, "foo", false, true, 7)));
+	}
+
+	@Test
+	public void decodeMinimal() throws Exception {
+		assertThat("incorrect record", decode(new Document("name", null)), is(new ObjectRecord(
+				0, 0, null, false, false, 0)));
+	}
+
+	@Test
+	public void roundTrip() throws Exception {
+		roundTrip(new ObjectRecord(5, 24, "foo", true, false, 7));
+		roundTrip(new ObjectRecord(0, 0, null, false, true, 0));
+	}
+
+	private void roundTrip(final ObjectRecord record) {
+		final BsonDocument doc = new BsonDocument();
+		CODEC.encode(new BsonDocumentWriter(doc), record, EncoderContext.builder().build());
+		final ObjectRecord got = CODEC.decode(
+				new BsonDocumentReader(doc), DecoderContext.builder().build());
+
+		assertThat("incorrect record", got, is(record));
+	}
+}
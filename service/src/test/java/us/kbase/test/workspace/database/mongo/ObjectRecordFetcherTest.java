@@ -0,0 +1,202 @@
+package us.kbase.test.workspace.database.mongo;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static us.kbase.test.common.TestCommon.set;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.bson.Document;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+
+import us.kbase.test.common.TestCommon;
+import us.kbase.testutils.controllers.mongo.MongoController;
+import us.kbase.workspace.database.mongo.LookupObjectRecordFetcher;
+import us.kbase.workspace.database.mongo.ObjectRecord;
+import us.kbase.workspace.database.mongo.ObjectRecordFetcher;
+import us.kbase.workspace.database.mongo.OrQueryObjectRecordFetcher;
+import us.kbase.workspace.database.mongo.PerWorkspaceObjectRecordFetcher;
+
+public class ObjectRecordFetcherTest {
+
+	private static MongoController MONGO;
+	private static MongoDatabase MONGO_DB;
+
+	@BeforeClass
+	public static void setup() throws Exception {
+		TestCommon.stfuLoggers();
+		MONGO = new MongoController(TestCommon.getMongoExe(),
+				Paths.get(TestCommon.getTempDir()),
+				TestCommon.useWiredTigerEngine());
+		System.out.println("Using Mongo temp dir " + MONGO.getTempDir());
+		System.out.println("Started test mongo instance at localhost:" +
+				MONGO.getServerPort());
+
+		final MongoClient mc = MongoClients.create("mongodb://localhost:" + MONGO.getServerPort());
+		MONGO_DB = mc.getDatabase("test_" + ObjectRecordFetcherTest.class.getSimpleName());
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		if (MONGO != null) {
+			System.out.println("destroying mongo temp files");
+			MONGO.destroy(TestCommon.getDeleteTempFiles());
+		}
+	}
+
+	@Before
+	public void clearDB() throws Exception {
+		TestCommon.destroyDB(MONGO_DB);
+	}
+
+	private void loadObjects() {
+		for (long ws = 1; ws < 4; ws++) {
+			MONGO_DB.getCollection("workspaces").insertOne(
+					new Document("ws", ws).append("name", "ws" + ws));
+			for (long id = 1; id < 5; id++) {
+				MONGO_DB.getCollection("workspaceObjects").insertOne(new Document("ws", ws)
+						.append("id", id)
+						.append("name", "obj" + ws + id)
+						.append("del", id == 2)
+						.append("hide", id == 3)
+						.append("numver", (int) id)
+						.append("moddate", new Date()));
+			}
+		}
+	}
+
+	private Map<Long, Set<Long>> query() {
+		final Map<Long, Set<Long>> ret = new HashMap<>();
+		ret.put(1L, set(1L, 3L));
+		ret.put(3L, set(2L, 4L, 7L)); // 7 doesn't exist
+		ret.put(6L, set(1L)); // workspace doesn't exist
+		return ret;
+	}
+
+	private static final Set<ObjectRecord> EXPECTED = set(
+			new ObjectRecord(1, 1, "obj11", false, false, 1),
+			new ObjectRecord(1, 3, "obj13", false, true, 3),
+			new ObjectRecord(3, 2, "obj32", true, false, 2),
+			new ObjectRecord(3, 4, "obj34", false, false, 4));
+
+	private void assertFetchCorrect(final ObjectRecordFetcher fetcher) throws Exception {
+		loadObjects();
+		final List<ObjectRecord> got = fetcher.fetch(query());
+		assertThat("incorrect count", got.size(), is(4));
+		assertThat("incorrect records", new HashSet<>(got), is(EXPECTED));
+
+		assertThat("incorrect records", fetcher.fetch(Collections.emptyMap()),
+				is(Collections.emptyList()));
+	}
+
+	@Test
+	public void fetchOrQuery() throws Exception {
+		assertFetchCorrect(new OrQueryObjectRecordFetcher(MONGO_DB));
+	}
+
+	@Test
+	public void fetchLookup() throws Exception {
+		assertFetchCorrect(new LookupObjectRecordFetcher(MONGO_DB));
+	}
+
+	@Test
+	public void fetchPerWorkspace() throws Exception {
+		final ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			assertFetchCorrect(new PerWorkspaceObjectRecordFetcher(MONGO_DB, executor, 2));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void fetchPerWorkspaceSingleThread() throws Exception {
+		final ExecutorService executor = mock(ExecutorService.class);
+		assertFetchCorrect(new PerWorkspaceObjectRecordFetcher(MONGO_DB, executor, 1));
+		verifyZeroInteractions(executor);
+	}
+
+	@Test
+	public void fetchPerWorkspaceBusyExecutor() throws Exception {
+		// the fetching thread runs all the queries when the executor rejects them
+		final ExecutorService executor = mock(ExecutorService.class);
+		doThrow(new RejectedExecutionException()).when(executor).execute(any(Runnable.class));
+		assertFetchCorrect(new PerWorkspaceObjectRecordFetcher(MONGO_DB, executor, 5));
+	}
+
+	@Test
+	public void constructFail() throws Exception {
+		failConstruct(() -> new OrQueryObjectRecordFetcher(null),
+				new NullPointerException("workspaceDB"));
+		failConstruct(() -> new LookupObjectRecordFetcher(null),
+				new NullPointerException("workspaceDB"));
+		final ExecutorService e = mock(ExecutorService.class);
+		failConstruct(() -> new PerWorkspaceObjectRecordFetcher(null, e, 1),
+				new NullPointerException("workspaceDB"));
+		failConstruct(() -> new PerWorkspaceObjectRecordFetcher(MONGO_DB, null, 1),
+				new NullPointerException("executor"));
+		failConstruct(() -> new PerWorkspaceObjectRecordFetcher(MONGO_DB, e, 0),
+				new IllegalArgumentException("threads must be > 0"));
+		final ObjectRecordFetcher f = mock(ObjectRecordFetcher.class);
+		failConstruct(() -> ObjectRecordFetcher.byWorkspaceCount(0, f, f),
+				new IllegalArgumentException("threshold must be > 0"));
+		failConstruct(() -> ObjectRecordFetcher.byWorkspaceCount(1, null, f),
+				new NullPointerException("fewWorkspaces"));
+		failConstruct(() -> ObjectRecordFetcher.byWorkspaceCount(1, f, null),
+				new NullPointerException("manyWorkspaces"));
+	}
+
+	private void failConstruct(final Runnable construct, final Exception expected) {
+		try {
+			construct.run();
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+	@Test
+	public void byWorkspaceCount() throws Exception {
+		final ObjectRecordFetcher few = mock(ObjectRecordFetcher.class);
+		final ObjectRecordFetcher many = mock(ObjectRecordFetcher.class);
+		final ObjectRecordFetcher f = ObjectRecordFetcher.byWorkspaceCount(2, few, many);
+
+		final Map<Long, Set<Long>> one = ImmutableMap.of(1L, set(1L));
+		final Map<Long, Set<Long>> two = ImmutableMap.of(1L, set(1L), 2L, set(1L));
+		final List<ObjectRecord> r1 = Arrays.asList(new ObjectRecord(1, 1, "a", false, false, 1));
+		final List<ObjectRecord> r2 = Arrays.asList(new ObjectRecord(2, 1, "b", false, false, 1));
+		when(few.fetch(one)).thenReturn(r1);
+		when(many.fetch(two)).thenReturn(r2);
+
+		assertThat("incorrect records", f.fetch(one), is(r1));
+		verifyZeroInteractions(many);
+		assertThat("incorrect records", f.fetch(two), is(r2));
+		verify(few).fetch(one);
+	}
+}
@@ -29,6 +29,9 @@ import us.kbase.workspace.database.WorkspaceUser;
 import us.kbase.workspace.database.WorkspaceUserMetadata;
 import us.kbase.workspace.database.mongo.BlobStore;
 import us.kbase.workspace.database.mongo.MongoWorkspaceDB;
+import us.kbase.workspace.database.mongo.ObjectNameCache;
+import us.kbase.workspace.database.mongo.ReadableWorkspaceCache;
+import us.kbase.workspace.database.mongo.ReferenceCache;
 import us.kbase.workspace.database.provenance.Provenance;
 
 /** Create a {@link MongoWorkspaceDB} instance with a real Mongo DB but all other dependencies
@@ -43,14 +46,37 @@ public class PartialMock {
 	public final Clock clockmock;
 
 	public PartialMock(final MongoDatabase db) {
+		this(db, null);
+	}
+
+	public PartialMock(final MongoDatabase db, final ReferenceCache referenceCache) {
+		this(db, referenceCache, null);
+	}
+
+	public PartialMock(
+			final MongoDatabase db,
+			final ReferenceCache referenceCache,
+			final ReadableWorkspaceCache readableWorkspaceCache) {
+		this(db, referenceCache, readableWorkspaceCache, null);
+	}
+
+	public PartialMock(
+			final MongoDatabase db,
+			final ReferenceCache referenceCache,
+			final ReadableWorkspaceCache readableWorkspaceCache,
+			final ObjectNameCache objectNameCache) {
 		bsmock = mock(BlobStore.class);
 		clockmock = mock(Clock.class);
 		Constructor<MongoWorkspaceDB> con;
 		try {
 			con = MongoWorkspaceDB.class.getDeclaredConstructor(
-					MongoDatabase.class, BlobStore.class, Clock.class);
+					MongoWorkspaceDB.Builder.class, Clock.class);
 			con.setAccessible(true);
-			mdb = con.newInstance(db, bsmock, clockmock);
+			mdb = con.newInstance(MongoWorkspaceDB.getBuilder(db, bsmock)
+					.withReferenceCache(referenceCache)
+					.withReadableWorkspaceCache(readableWorkspaceCache)
+					.withObjectNameCache(objectNameCache),
+					clockmock);
 		} catch (NoSuchMethodException | SecurityException | InstantiationException |
 				IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
 			throw new RuntimeException(
@@ -101,7 +127,8 @@ public class PartialMock {
 								set(),
 								Collections.emptyList(),
 								Collections.emptyMap())
-						));
+						),
+				1);
 		return res.get(0).getReferencePath().get(0);
 	}
 }
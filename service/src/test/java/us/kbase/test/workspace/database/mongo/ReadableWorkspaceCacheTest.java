@@ -0,0 +1,183 @@
+package us.kbase.test.workspace.database.mongo;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import us.kbase.test.common.TestCommon;
+import us.kbase.workspace.database.AllUsers;
+import us.kbase.workspace.database.WorkspaceIDSet;
+import us.kbase.workspace.database.WorkspaceUser;
+import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
+import us.kbase.workspace.database.mongo.ReadableWorkspaceCache;
+import us.kbase.workspace.database.mongo.ReadableWorkspaceCache.Loader;
+
+public class ReadableWorkspaceCacheTest {
+
+	private static final WorkspaceUser U1 = new WorkspaceUser("u1");
+	private static final WorkspaceUser U2 = new WorkspaceUser("u2");
+	private static final AllUsers ALL = new AllUsers('*');
+
+	private static final Duration TTL = Duration.ofSeconds(30);
+
+	private final AtomicLong time = new AtomicLong();
+	private final Ticker ticker = time::get;
+
+	private ReadableWorkspaceCache cache() {
+		return new ReadableWorkspaceCache(100, TTL, ticker);
+	}
+
+	private static void assertStatsCorrect(
+			final CacheStats s,
+			final long hits,
+			final long misses) {
+		assertThat("incorrect hits", s.hitCount(), is(hits));
+		assertThat("incorrect misses", s.missCount(), is(misses));
+	}
+
+	@Test
+	public void constructFail() throws Exception {
+		failConstruct(0, TTL, ticker,
+				new IllegalArgumentException("maxWorkspaceIDs must be > 0"));
+		failConstruct(1, null, ticker, new NullPointerException("ttl"));
+		failConstruct(1, Duration.ZERO, ticker,
+				new IllegalArgumentException("ttl must be positive"));
+		failConstruct(1, Duration.ofSeconds(-1), ticker,
+				new IllegalArgumentException("ttl must be positive"));
+		failConstruct(1, TTL, null, new NullPointerException("ticker"));
+	}
+
+	private void failConstruct(
+			final long maxIDs,
+			final Duration ttl,
+			final Ticker ticker,
+			final Exception expected) {
+		try {
+			new ReadableWorkspaceCache(maxIDs, ttl, ticker);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+	@Test
+	public void get() throws Exception {
+		final ReadableWorkspaceCache c = cache();
+		final Loader l = mock(Loader.class);
+		when(l.load(U1)).thenReturn(WorkspaceIDSet.of(1, 3));
+		when(l.load(U2)).thenReturn(WorkspaceIDSet.empty());
+		when(l.load(ALL)).thenReturn(WorkspaceIDSet.of(2));
+
+		assertThat("incorrect ids", c.get(U1, l), is(WorkspaceIDSet.of(1, 3)));
+		assertThat("incorrect ids", c.get(U2, l), is(WorkspaceIDSet.empty()));
+		assertThat("incorrect ids", c.get(ALL, l), is(WorkspaceIDSet.of(2)));
+		assertThat("incorrect ids", c.get(U1, l), is(WorkspaceIDSet.of(1, 3)));
+		assertThat("incorrect ids", c.get(U2, l), is(WorkspaceIDSet.empty()));
+
+		verify(l).load(U1);
+		verify(l).load(U2);
+		verify(l).load(ALL);
+		assertStatsCorrect(c.getStats(), 2, 3);
+	}
+
+	@Test
+	public void invalidate() throws Exception {
+		final ReadableWorkspaceCache c = cache();
+		final Loader l = mock(Loader.class);
+		when(l.load(U1)).thenReturn(WorkspaceIDSet.of(1)).thenReturn(WorkspaceIDSet.of(1, 4));
+		when(l.load(U2)).thenReturn(WorkspaceIDSet.of(2)).thenReturn(WorkspaceIDSet.of(5));
+		when(l.load(ALL)).thenReturn(WorkspaceIDSet.of(3)).thenReturn(WorkspaceIDSet.empty());
+
+		c.get(U1, l);
+		c.get(U2, l);
+		c.get(ALL, l);
+		c.invalidate(Arrays.asList(U1, ALL));
+		assertThat("incorrect ids", c.get(U1, l), is(WorkspaceIDSet.of(1, 4)));
+		assertThat("incorrect ids", c.get(U2, l), is(WorkspaceIDSet.of(2)));
+		assertThat("incorrect ids", c.get(ALL, l), is(WorkspaceIDSet.empty()));
+
+		c.invalidateAll();
+		assertThat("incorrect ids", c.get(U2, l), is(WorkspaceIDSet.of(5)));
+		assertStatsCorrect(c.getStats(), 1, 6);
+	}
+
+	@Test
+	public void expire() throws Exception {
+		final ReadableWorkspaceCache c = cache();
+		final Loader l = mock(Loader.class);
+		when(l.load(U1)).thenReturn(WorkspaceIDSet.of(1)).thenReturn(WorkspaceIDSet.of(2));
+
+		c.get(U1, l);
+		time.addAndGet(TTL.toNanos() - 1);
+		assertThat("incorrect ids", c.get(U1, l), is(WorkspaceIDSet.of(1)));
+		time.addAndGet(1);
+		assertThat("incorrect ids", c.get(U1, l), is(WorkspaceIDSet.of(2)));
+	}
+
+	@Test
+	public void invalidationDuringLoad() throws Exception {
+		// data loaded while an invalidation occurs may be stale and isn't cached
+		final ReadableWorkspaceCache c = cache();
+		final Loader l = user -> {
+			c.invalidate(Arrays.asList(U2));
+			return WorkspaceIDSet.of(1);
+		};
+		assertThat("incorrect ids", c.get(U1, l), is(WorkspaceIDSet.of(1)));
+		assertThat("incorrect ids", c.get(U1, l), is(WorkspaceIDSet.of(1)));
+		assertStatsCorrect(c.getStats(), 0, 2);
+	}
+
+	@Test
+	public void loadFail() throws Exception {
+		final ReadableWorkspaceCache c = cache();
+		final Loader l = mock(Loader.class);
+		final Loader nocall = mock(Loader.class);
+		when(l.load(U1)).thenThrow(new WorkspaceCommunicationException("oops"))
+				.thenReturn(WorkspaceIDSet.of(1));
+
+		try {
+			c.get(U1, l);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new WorkspaceCommunicationException("oops"));
+		}
+		c.get(U1, l);
+		assertThat("incorrect ids", c.get(U1, nocall), is(WorkspaceIDSet.of(1)));
+		verifyZeroInteractions(nocall);
+	}
+
+	@Test
+	public void badArgs() throws Exception {
+		final ReadableWorkspaceCache c = cache();
+		failCall(() -> c.get(null, mock(Loader.class)), new NullPointerException("user"));
+		failCall(() -> c.get(U1, null), new NullPointerException("loader"));
+		failCall(() -> c.get(U1, user -> null), new NullPointerException("loaded IDs"));
+		failCall(() -> c.invalidate(null), new NullPointerException("users"));
+	}
+
+	private interface ThrowingRunnable {
+		void run() throws Exception;
+	}
+
+	private void failCall(final ThrowingRunnable r, final Exception expected) {
+		try {
+			r.run();
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+}
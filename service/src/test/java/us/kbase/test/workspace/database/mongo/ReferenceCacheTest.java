@@ -0,0 +1,241 @@
+package us.kbase.test.workspace.database.mongo;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static us.kbase.test.common.TestCommon.set;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.collect.ImmutableMap;
+
+import us.kbase.test.common.TestCommon;
+import us.kbase.workspace.database.Reference;
+import us.kbase.workspace.database.exceptions.WorkspaceCommunicationException;
+import us.kbase.workspace.database.mongo.ReferenceCache;
+import us.kbase.workspace.database.mongo.ReferenceCache.Loader;
+
+public class ReferenceCacheTest {
+
+	private static final Reference R111 = new Reference(1, 1, 1);
+	private static final Reference R112 = new Reference(1, 1, 2);
+	private static final Reference R121 = new Reference(1, 2, 1);
+	private static final Reference R211 = new Reference(2, 1, 1);
+	private static final Reference R311 = new Reference(3, 1, 1);
+
+	private static final Duration INC_TTL = Duration.ofMinutes(10);
+	private static final Duration EXISTS_TTL = Duration.ofSeconds(10);
+
+	private final AtomicLong time = new AtomicLong();
+	private final Ticker ticker = time::get;
+
+	private ReferenceCache cache() {
+		return new ReferenceCache(100, INC_TTL, 100, EXISTS_TTL, ticker);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <V> Loader<V> loader() {
+		return mock(Loader.class);
+	}
+
+	private static void assertStatsCorrect(
+			final CacheStats s,
+			final long hits,
+			final long misses) {
+		assertThat("incorrect hits", s.hitCount(), is(hits));
+		assertThat("incorrect misses", s.missCount(), is(misses));
+	}
+
+	@Test
+	public void constructFail() throws Exception {
+		failConstruct(0, INC_TTL, 1, EXISTS_TTL, ticker,
+				new IllegalArgumentException("maxIncomingReferences must be > 0"));
+		failConstruct(1, null, 1, EXISTS_TTL, ticker, new NullPointerException("incomingTTL"));
+		failConstruct(1, Duration.ZERO, 1, EXISTS_TTL, ticker,
+				new IllegalArgumentException("incomingTTL must be positive"));
+		failConstruct(1, INC_TTL, 0, EXISTS_TTL, ticker,
+				new IllegalArgumentException("maxExistence must be > 0"));
+		failConstruct(1, INC_TTL, 1, null, ticker, new NullPointerException("existenceTTL"));
+		failConstruct(1, INC_TTL, 1, Duration.ofSeconds(-1), ticker,
+				new IllegalArgumentException("existenceTTL must be positive"));
+		failConstruct(1, INC_TTL, 1, EXISTS_TTL, null, new NullPointerException("ticker"));
+	}
+
+	private void failConstruct(
+			final long maxInc,
+			final Duration incTTL,
+			final long maxExists,
+			final Duration existsTTL,
+			final Ticker ticker,
+			final Exception expected) {
+		try {
+			new ReferenceCache(maxInc, incTTL, maxExists, existsTTL, ticker);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+	@Test
+	public void incomingReferences() throws Exception {
+		final ReferenceCache c = cache();
+		final Loader<Set<Reference>> l = loader();
+		when(l.load(set(R111, R112))).thenReturn(ImmutableMap.of(
+				R111, set(R211, R311), R112, set()));
+		when(l.load(set(R121))).thenReturn(ImmutableMap.of(R121, set(R211)));
+
+		assertThat("incorrect refs", c.getIncomingReferences(set(R111, R112), l),
+				is(ImmutableMap.of(R111, set(R211, R311), R112, set())));
+		// only the uncached version is loaded
+		assertThat("incorrect refs", c.getIncomingReferences(set(R111, R121), l),
+				is(ImmutableMap.of(R111, set(R211, R311), R121, set(R211))));
+		assertThat("incorrect refs", c.getIncomingReferences(set(R111, R112, R121), l),
+				is(ImmutableMap.of(R111, set(R211, R311), R112, set(), R121, set(R211))));
+
+		verify(l).load(set(R111, R112));
+		verify(l).load(set(R121));
+		assertStatsCorrect(c.getIncomingReferenceStats(), 4, 3);
+		assertStatsCorrect(c.getExistenceStats(), 0, 0);
+	}
+
+	@Test
+	public void incomingReferencesExpireAndInvalidate() throws Exception {
+		final ReferenceCache c = cache();
+		final Loader<Set<Reference>> l = loader();
+		when(l.load(set(R111, R121))).thenReturn(ImmutableMap.of(
+				R111, set(R211), R121, set()));
+		when(l.load(set(R111))).thenReturn(ImmutableMap.of(R111, set(R211, R311)));
+		when(l.load(set(R121))).thenReturn(ImmutableMap.of(R121, set(R311)));
+
+		c.getIncomingReferences(set(R111, R121), l);
+		c.invalidateIncomingReferences(Arrays.asList(R111, R311));
+		assertThat("incorrect refs", c.getIncomingReferences(set(R111, R121), l),
+				is(ImmutableMap.of(R111, set(R211, R311), R121, set())));
+
+		time.addAndGet(INC_TTL.toNanos() - 1);
+		c.getIncomingReferences(set(R121), l); // not expired
+		verify(l).load(set(R111, R121));
+		verify(l).load(set(R111));
+
+		time.addAndGet(1);
+		assertThat("incorrect refs", c.getIncomingReferences(set(R121), l),
+				is(ImmutableMap.of(R121, set(R311))));
+		verify(l).load(set(R121));
+	}
+
+	@Test
+	public void exists() throws Exception {
+		final ReferenceCache c = cache();
+		final Loader<Boolean> l = loader();
+		when(l.load(set(R111, R112, R121, R211))).thenReturn(ImmutableMap.of(
+				R111, true, R112, true, R121, false, R211, true));
+		when(l.load(set(R111, R112))).thenReturn(ImmutableMap.of(R111, false, R112, false));
+		when(l.load(set(R211, R121))).thenReturn(ImmutableMap.of(R211, false, R121, true));
+
+		assertThat("incorrect exists", c.getExists(set(R111, R112, R121, R211), l),
+				is(ImmutableMap.of(R111, true, R112, true, R121, false, R211, true)));
+		// all versions of the object are invalidated
+		c.invalidateExists(1, Arrays.asList(1L, 3L));
+		c.invalidateExists(3, Collections.emptyList());
+		assertThat("incorrect exists", c.getExists(set(R111, R112, R121, R211), l),
+				is(ImmutableMap.of(R111, false, R112, false, R121, false, R211, true)));
+		// all objects in the workspace are invalidated
+		c.invalidateExists(2, Collections.emptyList());
+		c.invalidateExists(1, Arrays.asList(2L));
+		assertThat("incorrect exists", c.getExists(set(R111, R121, R211), l),
+				is(ImmutableMap.of(R111, false, R121, true, R211, false)));
+
+		verify(l).load(set(R111, R112, R121, R211));
+		verify(l).load(set(R111, R112));
+		verify(l).load(set(R211, R121));
+		assertStatsCorrect(c.getExistenceStats(), 3, 8);
+		assertStatsCorrect(c.getIncomingReferenceStats(), 0, 0);
+	}
+
+	@Test
+	public void existsExpire() throws Exception {
+		final ReferenceCache c = cache();
+		final Loader<Boolean> l = loader();
+		when(l.load(set(R111))).thenReturn(ImmutableMap.of(R111, true))
+				.thenReturn(ImmutableMap.of(R111, false));
+
+		c.getExists(set(R111), l);
+		time.addAndGet(EXISTS_TTL.toNanos() - 1);
+		assertThat("incorrect exists", c.getExists(set(R111), l),
+				is(ImmutableMap.of(R111, true)));
+		time.addAndGet(1);
+		assertThat("incorrect exists", c.getExists(set(R111), l),
+				is(ImmutableMap.of(R111, false)));
+	}
+
+	@Test
+	public void invalidationDuringLoad() throws Exception {
+		// data loaded while an invalidation occurs may be stale and isn't cached
+		final ReferenceCache c = cache();
+		final Loader<Boolean> l = refs -> {
+			c.invalidateExists(4, Arrays.asList(1L));
+			return ImmutableMap.of(R111, true);
+		};
+		assertThat("incorrect exists", c.getExists(set(R111), l),
+				is(ImmutableMap.of(R111, true)));
+		assertThat("incorrect exists", c.getExists(set(R111), l),
+				is(ImmutableMap.of(R111, true)));
+		assertStatsCorrect(c.getExistenceStats(), 0, 2);
+	}
+
+	@Test
+	public void loadFail() throws Exception {
+		final ReferenceCache c = cache();
+		final Loader<Boolean> l = loader();
+		final Loader<Boolean> nocall = loader();
+		when(l.load(set(R111))).thenThrow(new WorkspaceCommunicationException("oops"))
+				.thenReturn(ImmutableMap.of(R111, true));
+
+		try {
+			c.getExists(set(R111), l);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new WorkspaceCommunicationException("oops"));
+		}
+		c.getExists(set(R111), l);
+		assertThat("incorrect exists", c.getExists(set(R111), nocall),
+				is(ImmutableMap.of(R111, true)));
+		verifyZeroInteractions(nocall);
+	}
+
+	@Test
+	public void badArgs() throws Exception {
+		final ReferenceCache c = cache();
+		failGet(() -> c.getIncomingReferences(null, loader()), new NullPointerException("refs"));
+		failGet(() -> c.getIncomingReferences(set(), null), new NullPointerException("loader"));
+		failGet(() -> c.getExists(null, loader()), new NullPointerException("refs"));
+		failGet(() -> c.getExists(set(), null), new NullPointerException("loader"));
+		failGet(() -> c.invalidateIncomingReferences(null), new NullPointerException("refs"));
+		failGet(() -> c.invalidateExists(1, null), new NullPointerException("objectIDs"));
+	}
+
+	private interface ThrowingRunnable {
+		void run() throws Exception;
+	}
+
+	private void failGet(final ThrowingRunnable r, final Exception expected) {
+		try {
+			r.run();
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+}
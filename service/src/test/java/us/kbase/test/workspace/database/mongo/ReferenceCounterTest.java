@@ -0,0 +1,180 @@
+package us.kbase.test.workspace.database.mongo;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static us.kbase.test.common.TestCommon.set;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.bson.Document;
+import org.junit.Test;
+
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.WriteModel;
+
+import us.kbase.test.common.TestCommon;
+import us.kbase.workspace.database.Reference;
+import us.kbase.workspace.database.mongo.ReferenceCounter;
+
+public class ReferenceCounterTest {
+
+	@Test
+	public void empty() throws Exception {
+		for (final ReferenceCounter c: Arrays.asList(
+				new ReferenceCounter(), new ReferenceCounter(0), new ReferenceCounter(100))) {
+			assertThat("incorrect size", c.size(), is(0));
+			assertThat("incorrect count", c.getCount(1, 1, 1), is(0));
+			assertThat("incorrect updates", c.toUpdates(), is(Arrays.asList()));
+		}
+	}
+
+	@Test
+	public void count() throws Exception {
+		final ReferenceCounter c = new ReferenceCounter();
+		c.add(new Reference(1, 1, 1));
+		c.add("1/1/1");
+		c.add(1, 1, 1);
+		c.add("1/1/2");
+		c.add(new Reference(1, 2, 1));
+		c.add("2/1/1");
+		c.add(Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+		c.add("999999999999999999/123456789012345678/" + Integer.MAX_VALUE);
+
+		assertThat("incorrect size", c.size(), is(6));
+		assertThat("incorrect count", c.getCount(1, 1, 1), is(3));
+		assertThat("incorrect count", c.getCount(1, 1, 2), is(1));
+		assertThat("incorrect count", c.getCount(1, 2, 1), is(1));
+		assertThat("incorrect count", c.getCount(2, 1, 1), is(1));
+		assertThat("incorrect count", c.getCount(
+				Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE), is(1));
+		assertThat("incorrect count", c.getCount(
+				999999999999999999L, 123456789012345678L, Integer.MAX_VALUE), is(1));
+		assertThat("incorrect count", c.getCount(2, 1, 2), is(0));
+		assertThat("incorrect count", c.getCount(1, 1, 0), is(0));
+	}
+
+	@Test
+	public void countMany() throws Exception {
+		// forces several resizes
+		final ReferenceCounter c = new ReferenceCounter();
+		for (int ws = 1; ws <= 10; ws++) {
+			for (int obj = 1; obj <= 1000; obj++) {
+				for (int i = 0; i < obj % 3 + 1; i++) {
+					c.add(ws, obj, obj % 4 + 1);
+				}
+			}
+		}
+		assertThat("incorrect size", c.size(), is(10000));
+		for (int ws = 1; ws <= 10; ws++) {
+			for (int obj = 1; obj <= 1000; obj++) {
+				assertThat("incorrect count", c.getCount(ws, obj, obj % 4 + 1), is(obj % 3 + 1));
+			}
+		}
+	}
+
+	@Test
+	public void toUpdates() throws Exception {
+		final ReferenceCounter c = new ReferenceCounter();
+		c.add("1/1/1");
+		c.add("1/2/1");
+		c.add("1/3/1");
+		c.add("1/3/1");
+		c.add("1/1/2");
+		c.add("2/1/1");
+		c.add("2/4/1");
+
+		assertThat("incorrect updates", updates(c.toUpdates()), is(set(
+				update(1, set(1L, 2L), "refcnt.0", 1),
+				update(1, set(3L), "refcnt.0", 2),
+				update(1, set(1L), "refcnt.1", 1),
+				update(2, set(1L, 4L), "refcnt.0", 1))));
+	}
+
+	private static Set<List<Object>> updates(final List<WriteModel<Document>> updates) {
+		final Set<List<Object>> ret = new HashSet<>();
+		for (final WriteModel<Document> wm: updates) {
+			final UpdateManyModel<Document> u = (UpdateManyModel<Document>) wm;
+			final Document filter = (Document) u.getFilter();
+			final Document inc = (Document) ((Document) u.getUpdate()).get("$inc");
+			final String field = inc.keySet().iterator().next();
+			@SuppressWarnings("unchecked")
+			final List<Long> ids = (List<Long>) ((Document) filter.get("id")).get("$in");
+			ret.add(update(filter.getLong("ws"), new HashSet<>(ids), field, inc.get(field)));
+		}
+		return ret;
+	}
+
+	private static List<Object> update(
+			final long ws,
+			final Set<Long> objs,
+			final String field,
+			final Object count) {
+		return Arrays.asList(ws, objs, field, count);
+	}
+
+	@Test
+	public void failConstruct() throws Exception {
+		try {
+			new ReferenceCounter(-1);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got,
+					new IllegalArgumentException("expectedReferences must be >= 0"));
+		}
+	}
+
+	@Test
+	public void failAdd() throws Exception {
+		final ReferenceCounter c = new ReferenceCounter();
+		failAdd(c, (Reference) null, new NullPointerException("ref"));
+		failAdd(c, (String) null, new NullPointerException("ref"));
+		for (final String ref: Arrays.asList("", "1", "1/1", "1/1/", "/1/1", "1//1", "1/1/1/1",
+				"1/1/1/", "1/a/1", "1/1/-1", "-1/1/1", "1/1/2147483648",
+				"1/1234567890123456789/1", "1 /1/1")) {
+			failAdd(c, ref, new IllegalArgumentException("Illegal reference: " + ref));
+		}
+		for (final String ref: Arrays.asList("0/1/1", "1/0/1", "1/1/0")) {
+			failAdd(c, ref, new IllegalArgumentException("All arguments must be > 0"));
+		}
+		failAdd(c, 0, 1, 1, new IllegalArgumentException("All arguments must be > 0"));
+		failAdd(c, 1, 0, 1, new IllegalArgumentException("All arguments must be > 0"));
+		failAdd(c, 1, 1, 0, new IllegalArgumentException("All arguments must be > 0"));
+		assertThat("incorrect size", c.size(), is(0));
+	}
+
+	private void failAdd(final ReferenceCounter c, final Reference ref, final Exception expected) {
+		try {
+			c.add(ref);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+	private void failAdd(final ReferenceCounter c, final String ref, final Exception expected) {
+		try {
+			c.add(ref);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+	private void failAdd(
+			final ReferenceCounter c,
+			final long ws,
+			final long obj,
+			final int ver,
+			final Exception expected) {
+		try {
+			c.add(ws, obj, ver);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+}
@@ -6,12 +6,17 @@ import static org.hamcrest.CoreMatchers.containsString;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -23,17 +28,20 @@ import com.mongodb.client.MongoDatabase;
 
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.model.DeleteBucketRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import us.kbase.testutils.controllers.minio.MinioController;
 import us.kbase.testutils.controllers.mongo.MongoController;
 import us.kbase.test.common.TestCommon;
 import us.kbase.typedobj.core.MD5;
 import us.kbase.typedobj.core.Restreamable;
+import us.kbase.typedobj.core.TempFilesManager;
 import us.kbase.workspace.database.ByteArrayFileCacheManager;
 import us.kbase.workspace.database.DependencyStatus;
 import us.kbase.workspace.database.ByteArrayFileCacheManager.ByteArrayFileCache;
 import us.kbase.workspace.database.mongo.S3BlobStore;
 import us.kbase.workspace.database.mongo.S3ClientWithPresign;
+import us.kbase.workspace.database.mongo.S3TransferConfig;
 import us.kbase.workspace.database.mongo.exceptions.BlobStoreCommunicationException;
 import us.kbase.workspace.database.mongo.exceptions.NoSuchBlobException;
 
@@ -50,6 +58,8 @@ public class S3BlobStoreIntegrationTest {
 	// use to exercise the cert trusting code, although doesn't actually test against self
 	//signed certs
 	private static S3BlobStore s3bsTrustCerts;
+	private static S3BlobStore s3bsMultipart;
+	private static S3BlobStore s3bsRanged;
 	private static S3ClientWithPresign s3client;
 	private static MongoDatabase mongo;
 	private static MinioController minio;
@@ -58,6 +68,8 @@ public class S3BlobStoreIntegrationTest {
 	private static final String A32 = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
 	private static final String COLLECTION = "minio_blobs";
 	private static final String BUCKET = "test-bucket";
+	private static final long PART_SIZE = S3ClientWithPresign.MIN_PART_SIZE;
+	private static final long RANGE_SIZE = 100_000;
 
 	@BeforeClass
 	public static void setUpClass() throws Exception {
@@ -86,6 +98,10 @@ public class S3BlobStoreIntegrationTest {
 		final S3ClientWithPresign s3client2 = new S3ClientWithPresign(
 				url, "s3keyhere", "sooporsekrit", Region.of("us-west-1"), true);
 		s3bsTrustCerts = new S3BlobStore(mongo.getCollection(COLLECTION), s3client2, BUCKET);
+		s3bsMultipart = new S3BlobStore(mongo.getCollection(COLLECTION), s3client, BUCKET,
+				S3TransferConfig.getBuilder().withMultipartUpload(PART_SIZE, 3).build());
+		s3bsRanged = new S3BlobStore(mongo.getCollection(COLLECTION), s3client, BUCKET,
+				S3TransferConfig.getBuilder().withRangedRead(RANGE_SIZE, 4).build());
 	}
 
 	@AfterClass
@@ -155,6 +171,148 @@ public class S3BlobStoreIntegrationTest {
 		}
 	}
 
+	@Test
+	public void uploadMultipartFailBadInput() throws Exception {
+		final Restreamable r = new StringRestreamable("foo");
+		final long p = PART_SIZE;
+
+		uploadMultipartFail(null, "k", r, p, 1, new IllegalArgumentException(
+				"bucket cannot be null or whitespace only"));
+		uploadMultipartFail("   \t   ", "k", r, p, 1, new IllegalArgumentException(
+				"bucket cannot be null or whitespace only"));
+		uploadMultipartFail("b", null, r, p, 1, new IllegalArgumentException(
+				"key cannot be null or whitespace only"));
+		uploadMultipartFail("b", "   \t   ", r, p, 1, new IllegalArgumentException(
+				"key cannot be null or whitespace only"));
+		uploadMultipartFail("b", "k", null, p, 1, new NullPointerException("object"));
+		uploadMultipartFail("b", "k", r, p - 1, 1, new IllegalArgumentException(
+				"partSize must be at least 5242880"));
+		uploadMultipartFail("b", "k", r, S3ClientWithPresign.MAX_PART_SIZE + 1, 1,
+				new IllegalArgumentException("partSize must be at most 1073741824"));
+		uploadMultipartFail("b", "k", r, p, 0, new IllegalArgumentException(
+				"concurrency must be > 0"));
+		uploadMultipartFail("b", "k", new BytesRestreamable(new byte[0]) {
+			@Override
+			public long getSize() {
+				return p * 10000 + 1;
+			}
+		}, p, 1, new IllegalArgumentException(
+				"Object of size 52428800001 requires more than 10000 parts with part size " +
+				"5242880"));
+	}
+
+	private void uploadMultipartFail(
+			final String bucket,
+			final String key,
+			final Restreamable object,
+			final long partSize,
+			final int concurrency,
+			final Exception expected) {
+		try {
+			s3client.putObjectMultipart(bucket, key, object, partSize, concurrency);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+	@Test
+	public void uploadMultipartSinglePart() throws Exception {
+		final String etag = s3client.putObjectMultipart(
+				BUCKET, "multipart/single", new StringRestreamable("this is a blob yo"),
+				PART_SIZE, 2);
+		// the ETag of a multipart upload is the MD5 of the concatenated binary part MD5s
+		assertThat("incorrect etag", etag, is(
+				DigestUtils.md5Hex(DigestUtils.md5("this is a blob yo")) + "-1"));
+		s3client.getClient().deleteObject(DeleteObjectRequest.builder()
+				.bucket(BUCKET).key("multipart/single").build());
+	}
+
+	@Test
+	public void saveAndGetBlobMultipart() throws Exception {
+		// 3 full parts and a partial part
+		final byte[] data = randomJSON((int) (PART_SIZE * 3 + 1000));
+		final MD5 md5 = new MD5(DigestUtils.md5Hex(data));
+
+		s3bsMultipart.saveBlob(md5, new BytesRestreamable(data), false);
+		final ByteArrayFileCache d = s3bsMultipart.getBlob(md5, new ByteArrayFileCacheManager());
+		assertThat("data returned marked as unsorted", d.isSorted(), is(false));
+		assertMD5Correct(d, md5);
+		// should be able to save the same thing twice with no error
+		s3bsMultipart.saveBlob(md5, new BytesRestreamable(data), true);
+
+		// small blobs are saved in a single request
+		final MD5 md2 = new MD5("78afe93c486269db5b49d9017e850103");
+		s3bsMultipart.saveBlob(md2, new StringRestreamable("this is also a blob yo"), true);
+		assertThat("incorrect data", IOUtils.toString(s3bsMultipart.getBlob(
+				md2, new ByteArrayFileCacheManager()).getJSON()), is("this is also a blob yo"));
+
+		s3bsMultipart.removeBlob(md5);
+		s3bsMultipart.removeBlob(md2);
+		failGetBlob(md5);
+	}
+
+	@Test
+	public void saveAndGetBlobRanged() throws Exception {
+		final TempFilesManager tfm = new TempFilesManager(
+				Paths.get(TestCommon.getTempDir(), "S3RangedReadTest").toFile());
+		// 10 full ranges and a partial range, and the boundary cases
+		for (final long size: Arrays.asList(
+				RANGE_SIZE * 10 + 7, RANGE_SIZE * 2, RANGE_SIZE + 1, RANGE_SIZE, 2L)) {
+			final byte[] data = randomJSON((int) size);
+			final MD5 md5 = new MD5(DigestUtils.md5Hex(data));
+			s3bs.saveBlob(md5, new BytesRestreamable(data), true);
+
+			for (final ByteArrayFileCacheManager bafcMan: Arrays.asList(
+					new ByteArrayFileCacheManager(), new ByteArrayFileCacheManager(tfm))) {
+				final ByteArrayFileCache d = s3bsRanged.getBlob(md5, bafcMan);
+				assertThat("data returned marked as sorted", d.isSorted(), is(true));
+				assertThat("incorrect size", d.getSize(), is(size));
+				assertMD5Correct(d, md5);
+				d.destroy();
+			}
+			s3bs.removeBlob(md5);
+		}
+		assertThat("temp files not deleted", tfm.getTempFileList().size(), is(0));
+	}
+
+	private static byte[] randomJSON(final int size) {
+		// a JSON string of ASCII letters, so the data read as characters is identical to the
+		// data as bytes
+		final byte[] data = new byte[size];
+		final Random r = new Random(42);
+		data[0] = '"';
+		for (int i = 1; i < size - 1; i++) {
+			data[i] = (byte) ('a' + r.nextInt(26));
+		}
+		data[size - 1] = '"';
+		return data;
+	}
+
+	private static void assertMD5Correct(final ByteArrayFileCache d, final MD5 md5)
+			throws Exception {
+		final String json = IOUtils.toString(d.getJSON());
+		assertThat("incorrect md5", DigestUtils.md5Hex(json.getBytes(StandardCharsets.UTF_8)),
+				is(md5.getMD5()));
+	}
+
+	static class BytesRestreamable implements Restreamable {
+
+		private final byte[] data;
+
+		public BytesRestreamable(final byte[] data) {
+			this.data = data;
+		}
+		@Override
+		public InputStream getInputStream() {
+			return new ByteArrayInputStream(data);
+		}
+		@Override
+		public long getSize() {
+			return data.length;
+		}
+	}
+
 	static class StringRestreamable implements Restreamable {
 
 		private final String data;
@@ -4,6 +4,8 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
@@ -18,9 +20,12 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
+import org.apache.commons.io.IOUtils;
 import org.bson.Document;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -52,12 +57,14 @@ import us.kbase.test.common.TestCommon.LogEvent;
 import us.kbase.test.workspace.UpdateOptionsMatcher;
 import us.kbase.typedobj.core.MD5;
 import us.kbase.typedobj.core.Restreamable;
+import us.kbase.typedobj.core.TempFilesManager;
 import us.kbase.workspace.database.ByteArrayFileCacheManager;
 import us.kbase.workspace.database.ByteArrayFileCacheManager.ByteArrayFileCache;
 import us.kbase.workspace.database.DependencyStatus;
 import us.kbase.workspace.database.mongo.S3BlobStore;
 import us.kbase.workspace.database.mongo.S3BlobStore.UUIDGen;
 import us.kbase.workspace.database.mongo.S3ClientWithPresign;
+import us.kbase.workspace.database.mongo.S3TransferConfig;
 import us.kbase.workspace.database.mongo.exceptions.BlobStoreCommunicationException;
 import us.kbase.workspace.database.mongo.exceptions.NoSuchBlobException;
 
@@ -76,6 +83,9 @@ public class S3BlobStoreTest {
 		assertThat("incorrect length", BUCKET63.length(), is(63));
 	}
 
+	private static final TempFilesManager TFM = new TempFilesManager(
+			Paths.get(TestCommon.getTempDir(), "S3BlobStoreTest").toFile());
+
 	private static List<ILoggingEvent> logEvents;
 
 	@BeforeClass
@@ -177,6 +187,21 @@ public class S3BlobStoreTest {
 		}
 	}
 
+	@Test
+	public void constructFailNullTransferConfig() throws Exception {
+		final Mocks m = new Mocks();
+		try {
+			new S3BlobStore(m.col, m.s3clipre, "foo", (S3TransferConfig) null);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new NullPointerException("transferConfig"));
+		}
+	}
+
+	private static S3TransferConfig multipart(final long partSize, final int concurrency) {
+		return S3TransferConfig.getBuilder().withMultipartUpload(partSize, concurrency).build();
+	}
+
 	private static class TestRestreamable implements Restreamable {
 		private final String data;
 
@@ -285,6 +310,133 @@ public class S3BlobStoreTest {
 				argThat(new UpdateOptionsMatcher(new UpdateOptions().upsert(true))));
 	}
 
+	@Test
+	public void saveBlobMultipart() throws Exception {
+		final Mocks m = new Mocks();
+		final Restreamable data = mock(Restreamable.class);
+		when(data.getSize()).thenReturn(5242881L);
+
+		final S3BlobStore s3 = new S3BlobStore(
+				m.col, m.s3clipre, "foo", multipart(5242880, 3), m.uuidGen);
+
+		when(m.col.find(new Document("chksum", "1fc5a11811de5142af444f5d482cd748")))
+			.thenReturn(m.cur);
+		when(m.cur.first()).thenReturn(null);
+
+		when(m.uuidGen.randomUUID()).thenReturn(UUID.fromString(
+				"68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9"));
+
+		when(m.s3clipre.putObjectMultipart(
+				"foo", "68/47/1b/68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9", data, 5242880, 3))
+				.thenReturn("5d3bd2fb6b4c6d03a6e3b4c5a3bbd1b4-2");
+
+		when(m.s3cli.headObject(HeadObjectRequest.builder().bucket("foo").key(
+				"68/47/1b/68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9").build())).thenReturn(
+				HeadObjectResponse.builder()
+						.eTag("\"5d3bd2fb6b4c6d03a6e3b4c5a3bbd1b4-2\"").build());
+
+		s3.saveBlob(new MD5("1fc5a11811de5142af444f5d482cd748"), data, true);
+
+		verify(m.s3clipre, never()).presignAndPutObject(any(), any());
+		// the object MD5, not the ETag, is recorded
+		verify(m.col).updateOne(
+				eq(new Document("chksum", "1fc5a11811de5142af444f5d482cd748")),
+				eq(new Document("$set",
+						new Document("key", "68/47/1b/68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9")
+								.append("sorted", true))),
+				argThat(new UpdateOptionsMatcher(new UpdateOptions().upsert(true))));
+	}
+
+	@Test
+	public void saveBlobMultipartEnabledSmallObject() throws Exception {
+		// objects no larger than the part size are uploaded in a single request
+		final Mocks m = new Mocks();
+		final Restreamable data = mock(Restreamable.class);
+		when(data.getSize()).thenReturn(5242880L);
+
+		final S3BlobStore s3 = new S3BlobStore(
+				m.col, m.s3clipre, "foo", multipart(5242880, 3), m.uuidGen);
+
+		when(m.col.find(new Document("chksum", "1fc5a11811de5142af444f5d482cd748")))
+			.thenReturn(m.cur);
+		when(m.cur.first()).thenReturn(null);
+
+		when(m.uuidGen.randomUUID()).thenReturn(UUID.fromString(
+				"68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9"));
+
+		when(m.s3cli.headObject(HeadObjectRequest.builder().bucket("foo").key(
+				"68/47/1b/68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9").build())).thenReturn(
+				HeadObjectResponse.builder()
+						.eTag("\"1fc5a11811de5142af444f5d482cd748\"").build());
+
+		s3.saveBlob(new MD5("1fc5a11811de5142af444f5d482cd748"), data, false);
+
+		verify(m.s3clipre).presignAndPutObject(
+				PutObjectRequest.builder()
+						.bucket("foo")
+						.key("68/47/1b/68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9")
+						.build(),
+				data);
+		verify(m.s3clipre, never()).putObjectMultipart(any(), any(), any(), anyLong(), anyInt());
+		verify(m.col).updateOne(
+				eq(new Document("chksum", "1fc5a11811de5142af444f5d482cd748")),
+				eq(new Document("$set",
+						new Document("key", "68/47/1b/68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9")
+								.append("sorted", false))),
+				argThat(new UpdateOptionsMatcher(new UpdateOptions().upsert(true))));
+	}
+
+	@Test
+	public void saveBlobFailOnMultipart() throws Exception {
+		final Mocks m = new Mocks();
+		final Restreamable data = mock(Restreamable.class);
+		when(data.getSize()).thenReturn(5242881L);
+
+		final S3BlobStore s = new S3BlobStore(
+				m.col, m.s3clipre, "foo", multipart(5242880, 1), m.uuidGen);
+		final MD5 md5 = new MD5("1fc5a11811de5142af444f5d482cd748");
+
+		when(m.col.find(new Document("chksum", "1fc5a11811de5142af444f5d482cd748")))
+				.thenReturn(m.cur);
+		when(m.cur.first()).thenReturn(null);
+		when(m.uuidGen.randomUUID()).thenReturn(UUID.fromString(
+				"68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9"));
+		when(m.s3clipre.putObjectMultipart(
+				"foo", "68/47/1b/68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9", data, 5242880, 1))
+				.thenThrow(new IOException("S3 upload of part 2 corrupted, MD5s don't match"));
+
+		saveBlobFail(s, md5, data, new BlobStoreCommunicationException(
+				"S3 error: S3 upload of part 2 corrupted, MD5s don't match"));
+	}
+
+	@Test
+	public void saveBlobFailMultipartBadETag() throws Exception {
+		final Mocks m = new Mocks();
+		final Restreamable data = mock(Restreamable.class);
+		when(data.getSize()).thenReturn(5242881L);
+
+		final S3BlobStore s = new S3BlobStore(
+				m.col, m.s3clipre, "foo", multipart(5242880, 1), m.uuidGen);
+		final MD5 md5 = new MD5("1fc5a11811de5142af444f5d482cd748");
+
+		when(m.col.find(new Document("chksum", "1fc5a11811de5142af444f5d482cd748")))
+				.thenReturn(m.cur);
+		when(m.cur.first()).thenReturn(null);
+		when(m.uuidGen.randomUUID()).thenReturn(UUID.fromString(
+				"68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9"));
+		when(m.s3clipre.putObjectMultipart(
+				"foo", "68/47/1b/68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9", data, 5242880, 1))
+				.thenReturn("5d3bd2fb6b4c6d03a6e3b4c5a3bbd1b4-2");
+		// the object MD5 is not a valid multipart ETag
+		when(m.s3cli.headObject(HeadObjectRequest.builder().bucket("foo").key(
+				"68/47/1b/68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9").build())).thenReturn(
+				HeadObjectResponse.builder()
+						.eTag("\"1fc5a11811de5142af444f5d482cd748\"").build());
+
+		saveBlobFail(s, md5, data, new BlobStoreCommunicationException(
+				"S3 upload corrupted, MD5s don't match"));
+	}
+
 	@Test
 	public void saveBlobFailBadInput() throws Exception {
 		final Mocks m = new Mocks();
@@ -429,11 +581,18 @@ public class S3BlobStoreTest {
 
 	@Test
 	public void getBlob() throws Exception {
-		getBlob(true);
-		getBlob(false);
+		getBlob(true, null);
+		getBlob(false, null);
 	}
 
-	private void getBlob(final boolean sorted) throws Exception {
+	@Test
+	public void getBlobWithContentLength() throws Exception {
+		// the data is read directly into storage of the correct size
+		getBlob(true, 12L);
+		getBlob(false, 12L);
+	}
+
+	private void getBlob(final boolean sorted, final Long contentLength) throws Exception {
 		final Mocks m = new Mocks();
 
 		final S3BlobStore s = new S3BlobStore(m.col, m.s3clipre, "foo");
@@ -449,7 +608,7 @@ public class S3BlobStoreTest {
 		when(m.s3cli.getObject(GetObjectRequest.builder().bucket("foo")
 				.key("68/47/1b/68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9").build()))
 			.thenReturn(new ResponseInputStream<GetObjectResponse>(
-					GetObjectResponse.builder().build(), // not currently used
+					GetObjectResponse.builder().contentLength(contentLength).build(),
 					AbortableInputStream.create(
 							new ByteArrayInputStream("\"input here\"".getBytes()))));
 
@@ -459,10 +618,140 @@ public class S3BlobStoreTest {
 
 		assertThat("incorrect data", ba.getUObject().asClassInstance(String.class),
 				is("input here"));
+		assertThat("incorrect size", ba.getSize(), is(12L));
 		assertThat("incorrect sorted", ba.isSorted(), is(sorted));
 		assertThat("incorrect is trusted json", ba.containsTrustedJson(), is(true));
 	}
 
+	private static final String RANGED_DATA = "\"0123456789abc\"";
+
+	private Mocks setUpRangedGet(final boolean sorted) {
+		final Mocks m = new Mocks();
+		when(m.col.find(new Document("chksum", "1fc5a11811de5142af444f5d482cd748")))
+				.thenReturn(m.cur);
+		when(m.cur.first()).thenReturn(
+				new Document("chksum", "1fc5a11811de5142af444f5d482cd748")
+						.append("key", "68/47/1b/68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9")
+						.append("sorted", sorted));
+		return m;
+	}
+
+	private void mockRange(
+			final Mocks m,
+			final String range,
+			final String contentRange,
+			final String data) {
+		when(m.s3cli.getObject(GetObjectRequest.builder().bucket("foo")
+				.key("68/47/1b/68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9").range(range).build()))
+			// new stream per call so the range can be read more than once
+			.thenAnswer(inv -> new ResponseInputStream<GetObjectResponse>(
+					GetObjectResponse.builder().contentRange(contentRange).build(),
+					AbortableInputStream.create(new ByteArrayInputStream(data.getBytes()))));
+	}
+
+	private static S3TransferConfig ranged(final long rangeSize, final int concurrency) {
+		return S3TransferConfig.getBuilder().withRangedRead(rangeSize, concurrency).build();
+	}
+
+	@Test
+	public void getBlobRanged() throws Exception {
+		getBlobRanged(true, 1);
+		getBlobRanged(false, 2);
+		getBlobRanged(true, 10);
+	}
+
+	private void getBlobRanged(final boolean sorted, final int concurrency) throws Exception {
+		final Mocks m = setUpRangedGet(sorted);
+		final S3BlobStore s = new S3BlobStore(
+				m.col, m.s3clipre, "foo", ranged(4, concurrency));
+
+		mockRange(m, "bytes=0-3", "bytes 0-3/15", "\"012");
+		mockRange(m, "bytes=4-7", "bytes 4-7/15", "3456");
+		mockRange(m, "bytes=8-11", "bytes 8-11/15", "789a");
+		mockRange(m, "bytes=12-14", "bytes 12-14/15", "bc\"");
+
+		for (final ByteArrayFileCacheManager bafcMan: Arrays.asList(
+				new ByteArrayFileCacheManager(), new ByteArrayFileCacheManager(TFM))) {
+			final ByteArrayFileCache ba = s.getBlob(
+					new MD5("1fc5a11811de5142af444f5d482cd748"), bafcMan);
+
+			assertThat("incorrect data", IOUtils.toString(ba.getJSON()), is(RANGED_DATA));
+			assertThat("incorrect size", ba.getSize(), is(15L));
+			assertThat("incorrect sorted", ba.isSorted(), is(sorted));
+			assertThat("incorrect is trusted json", ba.containsTrustedJson(), is(true));
+			ba.destroy();
+		}
+	}
+
+	@Test
+	public void getBlobRangedSingleRange() throws Exception {
+		// if the object is no larger than the range size, the first response is the object
+		getBlobRangedSingleRange(15, "bytes 0-14/15");
+		getBlobRangedSingleRange(100, "bytes 0-14/15");
+		// the server ignored the range header
+		getBlobRangedSingleRange(4, null);
+	}
+
+	private void getBlobRangedSingleRange(final long rangeSize, final String contentRange)
+			throws Exception {
+		final Mocks m = setUpRangedGet(true);
+		final S3BlobStore s = new S3BlobStore(m.col, m.s3clipre, "foo", ranged(rangeSize, 3));
+
+		mockRange(m, "bytes=0-" + (rangeSize - 1), contentRange, RANGED_DATA);
+
+		final ByteArrayFileCache ba = s.getBlob(
+				new MD5("1fc5a11811de5142af444f5d482cd748"), new ByteArrayFileCacheManager());
+
+		assertThat("incorrect data", IOUtils.toString(ba.getJSON()), is(RANGED_DATA));
+		assertThat("incorrect size", ba.getSize(), is(15L));
+		verify(m.s3cli).getObject(any(GetObjectRequest.class));
+	}
+
+	@Test
+	public void getBlobRangedFailBadContentRange() throws Exception {
+		final Mocks m = setUpRangedGet(true);
+		final S3BlobStore s = new S3BlobStore(m.col, m.s3clipre, "foo", ranged(4, 2));
+
+		mockRange(m, "bytes=0-3", "bytes 0-3/*", "\"012");
+
+		getBlobFail(s, new MD5("1fc5a11811de5142af444f5d482cd748"),
+				new ByteArrayFileCacheManager(), new BlobStoreCommunicationException(
+						"IO Error accessing blob: Unexpected content range from S3: " +
+						"bytes 0-3/*"));
+
+		mockRange(m, "bytes=0-3", "bytes 0-3/15", "\"012");
+		mockRange(m, "bytes=4-7", "bytes 4-7/15", "3456");
+		mockRange(m, "bytes=8-11", "bytes 8-11/16", "789a");
+		mockRange(m, "bytes=12-14", "bytes 12-14/15", "bc\"");
+
+		for (final ByteArrayFileCacheManager bafcMan: Arrays.asList(
+				new ByteArrayFileCacheManager(), new ByteArrayFileCacheManager(TFM))) {
+			getBlobFail(s, new MD5("1fc5a11811de5142af444f5d482cd748"), bafcMan,
+					new BlobStoreCommunicationException(
+							"IO Error accessing blob: Unexpected content range from S3, " +
+							"expected bytes 8-11/15: bytes 8-11/16"));
+		}
+		assertThat("temp files not deleted", TFM.getTempFileList().size(), is(0));
+	}
+
+	@Test
+	public void getBlobRangedFailGetObject() throws Exception {
+		final Mocks m = setUpRangedGet(true);
+		final S3BlobStore s = new S3BlobStore(m.col, m.s3clipre, "foo", ranged(4, 3));
+
+		mockRange(m, "bytes=0-3", "bytes 0-3/15", "\"012");
+		mockRange(m, "bytes=4-7", "bytes 4-7/15", "3456");
+		when(m.s3cli.getObject(GetObjectRequest.builder().bucket("foo")
+				.key("68/47/1b/68471ba8-c6b3-4ab7-9fc1-3c9ff304d6d9").range("bytes=8-11")
+				.build()))
+			.thenThrow(SdkException.builder().message("oh no").build());
+		mockRange(m, "bytes=12-14", "bytes 12-14/15", "bc\"");
+
+		getBlobFail(s, new MD5("1fc5a11811de5142af444f5d482cd748"),
+				new ByteArrayFileCacheManager(), new BlobStoreCommunicationException(
+						"Error getting S3 object: oh no"));
+	}
+
 	@Test
 	public void getBlobFailBadInput() throws Exception {
 		final Mocks m = new Mocks();
@@ -0,0 +1,101 @@
+package us.kbase.test.workspace.database.mongo;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import nl.jqno.equalsverifier.EqualsVerifier;
+import us.kbase.test.common.TestCommon;
+import us.kbase.workspace.database.mongo.S3TransferConfig;
+
+public class S3TransferConfigTest {
+
+	@Test
+	public void equals() throws Exception {
+		EqualsVerifier.forClass(S3TransferConfig.class).usingGetClass().verify();
+	}
+
+	@Test
+	public void buildDefault() throws Exception {
+		final S3TransferConfig c = S3TransferConfig.getBuilder().build();
+
+		assertThat("incorrect part size", c.getMultipartPartSize(), is(0L));
+		assertThat("incorrect part conc", c.getMultipartConcurrency(), is(1));
+		assertThat("incorrect range size", c.getRangedReadSize(), is(0L));
+		assertThat("incorrect range conc", c.getRangedReadConcurrency(), is(1));
+	}
+
+	@Test
+	public void buildMaximal() throws Exception {
+		final S3TransferConfig c = S3TransferConfig.getBuilder()
+				.withMultipartUpload(5242880, 4)
+				.withRangedRead(1, 6)
+				.build();
+
+		assertThat("incorrect part size", c.getMultipartPartSize(), is(5242880L));
+		assertThat("incorrect part conc", c.getMultipartConcurrency(), is(4));
+		assertThat("incorrect range size", c.getRangedReadSize(), is(1L));
+		assertThat("incorrect range conc", c.getRangedReadConcurrency(), is(6));
+	}
+
+	@Test
+	public void buildDisabled() throws Exception {
+		final S3TransferConfig c = S3TransferConfig.getBuilder()
+				.withMultipartUpload(5242880, 4)
+				.withRangedRead(100000, 6)
+				.withMultipartUpload(0, 1)
+				.withRangedRead(0, 1)
+				.build();
+
+		assertThat("incorrect config", c, is(S3TransferConfig.getBuilder().build()));
+	}
+
+	@Test
+	public void withMultipartUploadFail() throws Exception {
+		failWithMultipartUpload(-1, 1, new IllegalArgumentException(
+				"multipartPartSize must be 0 or at least 5242880"));
+		failWithMultipartUpload(5242879, 1, new IllegalArgumentException(
+				"multipartPartSize must be 0 or at least 5242880"));
+		failWithMultipartUpload(1073741825, 1, new IllegalArgumentException(
+				"multipartPartSize must be at most 1073741824"));
+		failWithMultipartUpload(0, 0, new IllegalArgumentException(
+				"multipartConcurrency must be > 0"));
+		failWithMultipartUpload(5242880, -1, new IllegalArgumentException(
+				"multipartConcurrency must be > 0"));
+	}
+
+	private void failWithMultipartUpload(
+			final long partSize,
+			final int concurrency,
+			final Exception expected) {
+		try {
+			S3TransferConfig.getBuilder().withMultipartUpload(partSize, concurrency);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+	@Test
+	public void withRangedReadFail() throws Exception {
+		failWithRangedRead(-1, 1, new IllegalArgumentException("rangedReadSize must be >= 0"));
+		failWithRangedRead(0, 0, new IllegalArgumentException(
+				"rangedReadConcurrency must be > 0"));
+		failWithRangedRead(1, -1, new IllegalArgumentException(
+				"rangedReadConcurrency must be > 0"));
+	}
+
+	private void failWithRangedRead(
+			final long rangeSize,
+			final int concurrency,
+			final Exception expected) {
+		try {
+			S3TransferConfig.getBuilder().withRangedRead(rangeSize, concurrency);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+}
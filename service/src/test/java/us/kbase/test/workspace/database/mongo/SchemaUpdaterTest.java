@@ -482,4 +482,97 @@ public class SchemaUpdaterTest {
 				);
 		runUpdateAndCheck(getDB(), false, true, 2, 2, query, 0L, expectedLogs);
 	}
+
+	private static final List<String> LATEST_FIELDS = Arrays.asList(
+			"ws", "id", "ver", "tyname", "tymaj", "tymin", "savedate", "savedby", "chksum",
+			"size", "meta");
+
+	private static Document toLatest(
+			final Document version,
+			final boolean hidden,
+			final boolean deleted) {
+		final Document ret = new Document();
+		LATEST_FIELDS.forEach(f -> ret.append(f, version.get(f)));
+		return ret.append("hide", hidden).append("del", deleted);
+	}
+
+	private void runBackfillAndCheck(final boolean complete) throws Exception {
+		final MongoDatabase db = getDB();
+		copySourceTo(db, 2);
+		for (final Document o: MC.getDatabase(SOURCE_DB).getCollection("workspaceObjects")
+				.find()) {
+			db.getCollection("workspaceObjects").insertOne(o);
+		}
+		final Document ws1o2 = new Document("ws", 1L).append("id", 2L);
+		final Document ws2o1 = new Document("ws", 2L).append("id", 1L);
+		db.getCollection("workspaceObjects").updateOne(
+				ws1o2, new Document("$set", new Document("hide", true)));
+		db.getCollection("workspaceObjects").updateOne(
+				ws2o1, new Document("$set", new Document("del", true)));
+		// an object with no versions, e.g. from a failed save, is skipped
+		db.getCollection("workspaceObjects").insertOne(new Document("ws", 3L).append("id", 2L)
+				.append("name", "o2").append("numver", 0).append("hide", false)
+				.append("del", false));
+
+		final List<String> logs = new LinkedList<>();
+		assertThat("incorrect obj counts", new SchemaUpdater().backfillLatestVersions(
+				db, s -> logs.add(s), complete), is(7L));
+
+		final List<String> expectedLogs = new LinkedList<>(Arrays.asList(
+				"Processed objects: 7"));
+		if (complete) {
+			expectedLogs.add("Marked the latest version collection as complete");
+		}
+		assertThat("incorrect logs", logs, is(expectedLogs));
+		final List<Document> got = new LinkedList<>();
+		db.getCollection("workspaceObjLatest").find()
+				.projection(new Document("_id", 0))
+				.sort(new Document("ws", 1).append("id", 1))
+				.forEach((Consumer<Document>) d -> got.add(d));
+		assertThat("incorrect latest versions", got, is(Arrays.asList(
+				toLatest(EXPECTED.get(0), false, false),
+				toLatest(EXPECTED.get(2), true, false),
+				toLatest(EXPECTED.get(3), false, false),
+				toLatest(EXPECTED.get(4), false, false),
+				toLatest(EXPECTED.get(6), false, true),
+				toLatest(EXPECTED.get(7), false, false),
+				toLatest(EXPECTED.get(9), false, false))));
+
+		final Document cfg = db.getCollection("config").find().first();
+		assertThat("incorrect complete flag", cfg.get("latestcomplete"),
+				is(complete ? true : null));
+	}
+
+	@Test
+	public void backfillLatestVersions() throws Exception {
+		runBackfillAndCheck(false);
+	}
+
+	@Test
+	public void backfillLatestVersionsWithComplete() throws Exception {
+		runBackfillAndCheck(true);
+	}
+
+	@Test
+	public void backfillLatestVersionsNewDatabase() throws Exception {
+		final List<String> logs = new LinkedList<>();
+		assertThat("incorrect obj counts", new SchemaUpdater().backfillLatestVersions(
+				getDB(), s -> logs.add(s), true), is(0L));
+		assertThat("incorrect logs", logs, is(Collections.emptyList()));
+	}
+
+	@Test
+	public void backfillLatestVersionsFailOldSchema() throws Exception {
+		final MongoDatabase db = getDB();
+		db.getCollection("config").insertOne(new Document("config", "config")
+				.append("schemaver", 1).append("inupdate", false));
+		try {
+			new SchemaUpdater().backfillLatestVersions(db, s -> {}, true);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new SchemaUpdateException(
+					"Current DB schema version is 1. Update the schema to version 2 before " +
+					"populating the latest version collection."));
+		}
+	}
 }
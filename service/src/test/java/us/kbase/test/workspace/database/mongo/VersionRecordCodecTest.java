@@ -0,0 +1,178 @@
+package us.kbase.test.workspace.database.mongo;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static us.kbase.test.common.TestCommon.inst;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonInvalidOperationException;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.mongodb.MongoClientSettings;
+
+import nl.jqno.equalsverifier.EqualsVerifier;
+import us.kbase.test.common.TestCommon;
+import us.kbase.workspace.database.mongo.VersionRecord;
+import us.kbase.workspace.database.mongo.VersionRecordCodec;
+
+public class VersionRecordCodecTest {
+
+	private static final VersionRecordCodec CODEC = new VersionRecordCodec();
+
+	private static VersionRecord decode(final Document doc) {
+		final BsonDocument bd = doc.toBsonDocument(
+				BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+		return CODEC.decode(new BsonDocumentReader(bd), DecoderContext.builder().build());
+	}
+
+	private static Document meta(final String key, final String value) {
+		return new Document("k", key).append("v", value);
+	}
+
+	private static final VersionRecord MAXIMAL = VersionRecord.getBuilder()
+			.withWorkspaceID(5)
+			.withObjectID(24)
+			.withVersion(7)
+			.withTypeName("Mod.Type")
+			.withTypeMajorVersion(3)
+			.withTypeMinorVersion(2)
+			.withSavedDate(inst(10000))
+			.withSavedBy("someguy")
+			.withChecksum("thisshouldbeaMD5")
+			.withSize(3000000000L)
+			.withMetadata(ImmutableMap.of("foo", "bar", "baz", "bat"))
+			.withAdminMetadata(ImmutableMap.of("whoo", "whee"))
+			.build();
+
+	@Test
+	public void equals() throws Exception {
+		EqualsVerifier.forClass(VersionRecord.class).usingGetClass().verify();
+	}
+
+	@Test
+	public void encoderClass() throws Exception {
+		assertThat("incorrect class", CODEC.getEncoderClass(), is(VersionRecord.class));
+	}
+
+	@Test
+	public void buildMinimal() throws Exception {
+		final VersionRecord r = VersionRecord.getBuilder().build();
+
+		assertThat("incorrect ws id", r.getWorkspaceID(), is(0L));
+		assertThat("incorrect obj id", r.getObjectID(), is(0L));
+		assertThat("incorrect version", r.getVersion(), is(0));
+		assertThat("incorrect type", r.getTypeName(), is((String) null));
+		assertThat("incorrect type maj", r.getTypeMajorVersion(), is(0));
+		assertThat("incorrect type min", r.getTypeMinorVersion(), is(0));
+		assertThat("incorrect date", r.getSavedDate(), is((Object) null));
+		assertThat("incorrect saver", r.getSavedBy(), is((String) null));
+		assertThat("incorrect chksum", r.getChecksum(), is((String) null));
+		assertThat("incorrect size", r.getSize(), is(0L));
+		assertThat("incorrect meta", r.getMetadata(), is(Collections.emptyMap()));
+		assertThat("incorrect admin meta", r.getAdminMetadata(), is(Collections.emptyMap()));
+	}
+
+	@Test
+	public void buildNullMetadata() throws Exception {
+		final VersionRecord r = VersionRecord.getBuilder()
+				.withMetadata(ImmutableMap.of("a", "b"))
+				.withAdminMetadata(ImmutableMap.of("a", "b"))
+				.withMetadata(null)
+				.withAdminMetadata(null)
+				.build();
+
+		assertThat("incorrect record", r, is(VersionRecord.getBuilder().build()));
+	}
+
+	@Test
+	public void decodeMaximal() throws Exception {
+		final Document doc = new Document("_id", new ObjectId())
+				.append("ws", 5L)
+				.append("id", 24L)
+				.append("ver", 7)
+				.append("tyname", "Mod.Type")
+				.append("tymaj", 3)
+				.append("tymin", 2)
+				.append("savedate", Date.from(inst(10000)))
+				.append("savedby", "someguy")
+				.append("chksum", "thisshouldbeaMD5")
+				.append("size", 3000000000L)
+				.append("meta", Arrays.asList(meta("foo", "bar"), meta("baz", "bat")))
+				.append("adminmeta", Arrays.asList(meta("whoo", "whee")))
+				// fields that aren't part of the record
+				.append("provenance", new ObjectId())
+				.append("refs", Arrays.asList("1/2/3"))
+				.append("extids", new Document("sample", Arrays.asList("foo")));
+
+		assertThat("incorrect record", decode(doc), is(MAXIMAL));
+	}
+
+	@Test
+	public void decodeMinimal() throws Exception {
+		assertThat("incorrect record", decode(new Document()),
+				is(VersionRecord.getBuilder().build()));
+	}
+
+	@Test
+	public void decodeNullsAndIntegerWidths() throws Exception {
+		final Document doc = new Document("ws", 5)
+				.append("id", 24)
+				.append("ver", 7L)
+				.append("tyname", null)
+				.append("size", 3)
+				.append("meta", null)
+				.append("adminmeta", Arrays.asList(
+						new Document("k", "whoo").append("other", 1).append("v", null)));
+
+		assertThat("incorrect record", decode(doc), is(VersionRecord.getBuilder()
+				.withWorkspaceID(5)
+				.withObjectID(24)
+				.withVersion(7)
+				.withSize(3)
+				.withAdminMetadata(Collections.singletonMap("whoo", null))
+				.build()));
+	}
+
+	@Test
+	public void decodeFail() throws Exception {
+		failDecode(new Document("ws", "5"), new BsonInvalidOperationException(
+				"Expected an integer value, got STRING"));
+		failDecode(new Document("ver", 1L << 32), new ArithmeticException("integer overflow"));
+	}
+
+	private void failDecode(final Document doc, final Exception expected) {
+		try {
+			decode(doc);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+	@Test
+	public void roundTrip() throws Exception {
+		roundTrip(MAXIMAL);
+		roundTrip(VersionRecord.getBuilder().build());
+	}
+
+	private void roundTrip(final VersionRecord record) {
+		final BsonDocument doc = new BsonDocument();
+		CODEC.encode(new BsonDocumentWriter(doc), record, EncoderContext.builder().build());
+		final VersionRecord got = CODEC.decode(
+				new BsonDocumentReader(doc), DecoderContext.builder().build());
+
+		assertThat("incorrect record", got, is(record));
+	}
+}
@@ -15,11 +15,17 @@ import static org.mockito.Mockito.when;
 import static us.kbase.test.common.TestCommon.set;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 import org.junit.Test;
@@ -45,6 +51,7 @@ import us.kbase.typedobj.idref.IdReferencePermissionHandlerSet.IdReferencePermis
 import us.kbase.typedobj.idref.IdReferencePermissionHandlerSet.IdReferencePermissionHandlerException;
 import us.kbase.workspace.database.DependencyStatus;
 import us.kbase.workspace.kbase.BytestreamIdHandlerFactory;
+import us.kbase.workspace.kbase.VerifiedIDCache;
 import us.kbase.workspace.kbase.BytestreamIdHandlerFactory.BytestreamClientCloner;
 
 public class BytestreamIdHandlerFactoryTest {
@@ -77,6 +84,16 @@ public class BytestreamIdHandlerFactoryTest {
 		} catch (Exception got) {
 			TestCommon.assertExceptionCorrect(got, new NullPointerException("cloner"));
 		}
+		for (final int c: Arrays.asList(0, -1)) {
+			try {
+				new BytestreamIdHandlerFactory(
+						cli, mock(BytestreamClientCloner.class), null, c, null);
+				fail("expected exception");
+			} catch (Exception got) {
+				TestCommon.assertExceptionCorrect(got,
+						new IllegalArgumentException("concurrency must be > 0"));
+			}
+		}
 	}
 	
 	@Test
@@ -372,6 +389,210 @@ public class BytestreamIdHandlerFactoryTest {
 		assertThat("incorrect ids", h.getRemappedIds("baz"), is(set()));
 	}
 	
+	@Test
+	public void processIDsConcurrently() throws Exception {
+		final ExecutorService exe = Executors.newFixedThreadPool(3);
+		try {
+			processIDsConcurrently(exe);
+		} finally {
+			exe.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void processIDsConcurrentlyWithRejectingExecutor() throws Exception {
+		// all the nodes should be processed in the calling thread
+		processIDsConcurrently(r -> {
+			throw new RejectedExecutionException("nope");
+		});
+	}
+	
+	@Test
+	public void processIDsConcurrentlyWithQueuingExecutor() throws Exception {
+		// the executor never starts the helpers, so all the nodes should be processed in the
+		// calling thread without waiting for the helpers
+		final List<Runnable> queued = new ArrayList<>();
+		processIDsConcurrently(queued::add);
+		assertThat("incorrect queued", queued.size(), is(3));
+		// the helpers do nothing if the executor gets around to running them
+		for (final Runnable r: queued) {
+			r.run();
+		}
+	}
+	
+	private void processIDsConcurrently(final Executor exe)
+			throws Exception {
+		final BasicShockClient adminCli = mock(BasicShockClient.class);
+		final BytestreamClientCloner cloner = mock(BytestreamClientCloner.class);
+		
+		final IdReferenceHandler<String> h = new BytestreamIdHandlerFactory(
+				adminCli, cloner, exe, 4, null)
+				.createHandler(String.class, new AuthToken("token", "user"));
+		
+		final BasicShockClient cloned = mock(BasicShockClient.class);
+		when(cloner.clone(adminCli)).thenReturn(cloned);
+		when(adminCli.getToken()).thenReturn(new AuthToken("token", "admin"));
+		
+		final List<String> wsOwned = new ArrayList<>();
+		final List<String> userOwned = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			final String wsid = UUID.randomUUID().toString();
+			wsOwned.add(wsid);
+			h.addId("obj" + i, wsid, null);
+			setUpShockACLResponse(cloned, wsid, "admin", list("w" + i), MTL);
+			final String userid = UUID.randomUUID().toString();
+			userOwned.add(userid);
+			h.addId("obj" + i, userid, null);
+			setUpShockACLResponse(cloned, userid, "user", MTL, MTL);
+			setUpShockOwnResponse(adminCli, userid, "admin", MTL, list("d" + i));
+		}
+		
+		h.processIds();
+		
+		verify(cloner, times(1)).clone(adminCli);
+		verify(cloned, times(1)).updateToken(new AuthToken("token", "user"));
+		for (int i = 0; i < 10; i++) {
+			verify(cloned, times(1)).getACLs(new ShockNodeId(wsOwned.get(i)));
+			verify(adminCli, times(1)).removeFromNodeAcl(
+					new ShockNodeId(wsOwned.get(i)), list("w" + i), ShockACLType.WRITE);
+			verify(adminCli, times(0)).addToNodeAcl(
+					new ShockNodeId(wsOwned.get(i)), list("admin"), ShockACLType.OWNER);
+			verify(cloned, times(1)).getACLs(new ShockNodeId(userOwned.get(i)));
+			verify(adminCli, times(1)).addToNodeAcl(
+					new ShockNodeId(userOwned.get(i)), list("admin"), ShockACLType.OWNER);
+			verify(adminCli, times(1)).removeFromNodeAcl(
+					new ShockNodeId(userOwned.get(i)), list("d" + i), ShockACLType.DELETE);
+			
+			assertThat("incorrect ids", h.getRemappedIds("obj" + i),
+					is(set(toSRD(wsOwned.get(i)), toSRD(userOwned.get(i)))));
+		}
+	}
+	
+	@Test
+	public void processIDsConcurrentlyFail() throws Exception {
+		final ExecutorService exe = Executors.newFixedThreadPool(3);
+		try {
+			final BasicShockClient adminCli = mock(BasicShockClient.class);
+			final BytestreamClientCloner cloner = mock(BytestreamClientCloner.class);
+			
+			final IdReferenceHandler<String> h = new BytestreamIdHandlerFactory(
+					adminCli, cloner, exe, 4, null)
+					.createHandler(String.class, new AuthToken("token", "someuser"));
+			
+			final BasicShockClient cloned = mock(BasicShockClient.class);
+			when(cloner.clone(adminCli)).thenReturn(cloned);
+			when(adminCli.getToken()).thenReturn(new AuthToken("token", "admin"));
+			
+			for (int i = 0; i < 10; i++) {
+				final String id = UUID.randomUUID().toString();
+				h.addId("foo", id, null);
+				setUpShockACLResponse(cloned, id, "admin", MTL, MTL);
+			}
+			final String id = "51b68baa-ef40-4be1-a072-03814d61280e";
+			h.addId("bar", id, null);
+			setUpShockACLResponse(cloned, id, "notadmin", MTL, MTL);
+			
+			processIDsFail(h, new IdReferenceException(
+					"User someuser does not own bytestream node " +
+					"51b68baa-ef40-4be1-a072-03814d61280e",
+					new IdReferenceType("bytestream"), "bar",
+					"51b68baa-ef40-4be1-a072-03814d61280e", null, null));
+			verify(adminCli, times(0)).addToNodeAcl(any(), any(), any());
+		} finally {
+			exe.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void processIDsWithCache() throws Exception {
+		final BasicShockClient adminCli = mock(BasicShockClient.class);
+		final BytestreamClientCloner cloner = mock(BytestreamClientCloner.class);
+		final VerifiedIDCache cache = new VerifiedIDCache(100, Duration.ofMinutes(1));
+		final BytestreamIdHandlerFactory fac = new BytestreamIdHandlerFactory(
+				adminCli, cloner, null, 1, cache);
+		
+		final BasicShockClient cloned = mock(BasicShockClient.class);
+		when(cloner.clone(adminCli)).thenReturn(cloned);
+		when(adminCli.getToken()).thenReturn(new AuthToken("token", "admin"));
+		
+		final String id1 = UUID.randomUUID().toString();
+		final String id2 = UUID.randomUUID().toString();
+		final String id3 = UUID.randomUUID().toString();
+		setUpShockACLResponse(cloned, id1, "admin", MTL, MTL);
+		setUpShockACLResponse(cloned, id2, "user", MTL, MTL);
+		setUpShockOwnResponse(adminCli, id2, "admin", MTL, MTL);
+		setUpShockACLResponse(cloned, id3, "admin", MTL, MTL);
+		
+		final IdReferenceHandler<String> h1 = fac.createHandler(
+				String.class, new AuthToken("token", "user"));
+		h1.addId("foo", id1, null);
+		h1.addId("foo", id2, null);
+		h1.processIds();
+		
+		assertThat("incorrect cache", cache.isVerified("user", id1), is(true));
+		assertThat("incorrect cache", cache.isVerified("user", id2), is(true));
+		
+		// fully cached, so no contact with the bytestream storage
+		final IdReferenceHandler<String> h2 = fac.createHandler(
+				String.class, new AuthToken("token", "user"));
+		h2.addId("bar", id1, null);
+		h2.addId("bar", id2, null);
+		h2.processIds();
+		
+		verify(cloner, times(1)).clone(adminCli);
+		assertThat("incorrect ids", h2.getRemappedIds("bar"), is(set(toSRD(id1), toSRD(id2))));
+		
+		// partially cached
+		final IdReferenceHandler<String> h3 = fac.createHandler(
+				String.class, new AuthToken("token", "user"));
+		h3.addId("baz", id1, null);
+		h3.addId("baz", id3, null);
+		h3.processIds();
+		
+		// the cache is per user
+		final IdReferenceHandler<String> h4 = fac.createHandler(
+				String.class, new AuthToken("token", "user2"));
+		h4.addId("bat", id1, null);
+		h4.processIds();
+		
+		verify(cloner, times(3)).clone(adminCli);
+		verify(cloned, times(2)).getACLs(new ShockNodeId(id1));
+		verify(cloned, times(1)).getACLs(new ShockNodeId(id2));
+		verify(cloned, times(1)).getACLs(new ShockNodeId(id3));
+		verify(adminCli, times(1)).addToNodeAcl(
+				new ShockNodeId(id2), list("admin"), ShockACLType.OWNER);
+		assertThat("incorrect ids", h3.getRemappedIds("baz"), is(set(toSRD(id1), toSRD(id3))));
+		assertThat("incorrect ids", h4.getRemappedIds("bat"), is(set(toSRD(id1))));
+		assertThat("incorrect cache", cache.isVerified("user2", id1), is(true));
+		assertThat("incorrect cache", cache.isVerified("user2", id2), is(false));
+	}
+	
+	@Test
+	public void processIDsWithCacheFailNotCached() throws Exception {
+		final BasicShockClient adminCli = mock(BasicShockClient.class);
+		final BytestreamClientCloner cloner = mock(BytestreamClientCloner.class);
+		final VerifiedIDCache cache = new VerifiedIDCache(100, Duration.ofMinutes(1));
+		
+		final IdReferenceHandler<String> h = new BytestreamIdHandlerFactory(
+				adminCli, cloner, null, 1, cache)
+				.createHandler(String.class, new AuthToken("token", "someuser"));
+		
+		final BasicShockClient cloned = mock(BasicShockClient.class);
+		when(cloner.clone(adminCli)).thenReturn(cloned);
+		when(adminCli.getToken()).thenReturn(new AuthToken("token", "admin"));
+		
+		final String id = "51b68baa-ef40-4be1-a072-03814d61280e";
+		h.addId("foo", id, null);
+		setUpShockACLResponse(cloned, id, "notadmin", MTL, MTL);
+		
+		processIDsFail(h, new IdReferenceException(
+				"User someuser does not own bytestream node " +
+				"51b68baa-ef40-4be1-a072-03814d61280e",
+				new IdReferenceType("bytestream"), "foo",
+				"51b68baa-ef40-4be1-a072-03814d61280e", null, null));
+		assertThat("incorrect cache", cache.isVerified("someuser", id), is(false));
+	}
+	
 	/* test a few more special cases for removing users from node ACLs
 	 * when the node is owned by the workspace.
 	 */
@@ -32,6 +32,7 @@ import java.util.stream.IntStream;
 import java.util.stream.LongStream;
 
 import org.apache.commons.codec.digest.DigestUtils;
+import org.bson.Document;
 import org.junit.Test;
 
 import us.kbase.common.service.JsonTokenStream;
@@ -2815,6 +2816,41 @@ public class JSONRPCLayerTest extends JSONRPCLayerTester {
 				0L, 0L, 4000000000L, "Limit can be no greater than 2147483647");
 	}
 
+	@Test
+	public void listObjectsFailInLaterBatch() throws Exception {
+		/* The objects are listed from the database in batches, and are streamed to the client.
+		 * Check that a failure in a batch after the first, once some objects have been listed,
+		 * is still returned as an error rather than as a truncated list.
+		 */
+		final String ws = "laterbatchfail";
+		final long wsid = CLIENT1.createWorkspace(new CreateWorkspaceParams()
+				.withWorkspace(ws)).getE1();
+		final List<ObjectSaveData> objs = new LinkedList<ObjectSaveData>();
+		for (int i = 0; i < 101; i++) {
+			objs.add(new ObjectSaveData().withData(new UObject(new HashMap<String, String>()))
+					.withType(SAFE_TYPE).withName("obj" + i));
+		}
+		CLIENT1.saveObjects(new SaveObjectsParams().withWorkspace(ws).withObjects(objs));
+		// with a limit of 100 the first batch is objects 1-100, of which 1-50 are hidden,
+		// and the second batch is object 101, which is broken by removing its object record
+		modifyServer1DB(db -> {
+			db.getCollection("workspaceObjects").updateMany(
+					new Document("ws", wsid).append("id", new Document("$lte", 50)),
+					new Document("$set", new Document("hide", true)));
+			db.getCollection("workspaceObjects").deleteOne(
+					new Document("ws", wsid).append("id", 101));
+		});
+
+		try {
+			CLIENT1.listObjects(new ListObjectsParams().withWorkspaces(Arrays.asList(ws))
+					.withLimit(100L));
+			fail("listed objects with a broken object record");
+		} catch (ServerException e) {
+			assertThat("incorrect error", e.getData(),
+					containsString("java.lang.NullPointerException"));
+		}
+	}
+
 	@Test
 	public void listObjectsByDate() throws Exception {
 		ArrayList<Tuple11<Long, String, String, String, Long, String, Long, String, String, Long, Map<String, String>>> mt =
@@ -3551,19 +3587,24 @@ public class JSONRPCLayerTest extends JSONRPCLayerTester {
 		final Object ret = CLIENT_AA_ADMIN_READ.administer(new UObject(gcCmd))
 				.asClassInstance(Object.class);
 		assertThat("incorrect config", ret, is(ImmutableMap.of(
-				"config", ImmutableMap.of("backend-file-retrieval-scaling", 1))));
+				"config", ImmutableMap.of(
+						"backend-file-retrieval-scaling", 1,
+						"backend-file-upload-scaling", 1))));
 
 		final Map<String, Object> command = ImmutableMap.of(
 				"command", "setConfig",
 				"params", ImmutableMap.of("set", ImmutableMap.of(
-						"backend-file-retrieval-scaling", 4)));
+						"backend-file-retrieval-scaling", 4,
+						"backend-file-upload-scaling", 6)));
 		failAdmin(CLIENT_AA_ADMIN_READ, command,
 				"Full administration rights required for this command");
 		CLIENT_AA_ADMIN_FULL.administer(new UObject(command));
 		final Object ret2 = CLIENT_AA_ADMIN_FULL.administer(new UObject(gcCmd))
 				.asClassInstance(Object.class);
 		assertThat("incorrect config", ret2, is(ImmutableMap.of(
-				"config", ImmutableMap.of("backend-file-retrieval-scaling", 4))));
+				"config", ImmutableMap.of(
+						"backend-file-retrieval-scaling", 4,
+						"backend-file-upload-scaling", 6))));
 
 		final Map<String, Object> badcommand = ImmutableMap.of(
 				"command", "setConfig",
@@ -3575,7 +3616,9 @@ public class JSONRPCLayerTest extends JSONRPCLayerTester {
 		final Object ret3 = CLIENT_AA_ADMIN_FULL.administer(new UObject(gcCmd))
 				.asClassInstance(Object.class);
 		assertThat("incorrect config", ret3, is(ImmutableMap.of(
-				"config", ImmutableMap.of("backend-file-retrieval-scaling", 4))));
+				"config", ImmutableMap.of(
+						"backend-file-retrieval-scaling", 4,
+						"backend-file-upload-scaling", 6))));
 	}
 
 	@Test
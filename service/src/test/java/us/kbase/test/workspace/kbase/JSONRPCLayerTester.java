@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.bson.Document;
@@ -537,10 +538,22 @@ public class JSONRPCLayerTester {
 				TestCommon.destroyDB(wsdb);
 				wsdb.getCollection("dyncfg").insertOne(
 						new Document("key", DynamicConfig.KEY_BACKEND_SCALING).append("value", 1));
+				wsdb.getCollection("dyncfg").insertOne(
+						new Document("key", DynamicConfig.KEY_BACKEND_UPLOAD_SCALING)
+								.append("value", 1));
 			}
 		}
 	}
 
+	/** Modify the database for server 1 directly, for example to simulate a corrupt database.
+	 * @param modifier a function that modifies the database.
+	 */
+	protected static void modifyServer1DB(final Consumer<MongoDatabase> modifier) {
+		try (final MongoClient mcli = MongoClients.create("mongodb://localhost:" + mongo.getServerPort())) {
+			modifier.accept(mcli.getDatabase(DB_WS_NAME_1));
+		}
+	}
+
 	@After
 	public void cleanupTempFilesAfterTest() throws Exception {
 		TestCommon.assertNoTempFilesExist(TFMS);
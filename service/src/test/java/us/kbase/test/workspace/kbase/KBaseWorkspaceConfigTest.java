@@ -32,10 +32,12 @@ import nl.jqno.equalsverifier.EqualsVerifier;
 import software.amazon.awssdk.regions.Region;
 import us.kbase.test.common.MapBuilder;
 import us.kbase.test.common.TestCommon;
+import us.kbase.workspace.database.refsearch.ReferenceGraphSearch.SearchMode;
 import us.kbase.workspace.kbase.BackendType;
 import us.kbase.workspace.kbase.KBaseWorkspaceConfig;
 import us.kbase.workspace.kbase.KBaseWorkspaceConfig.KBaseWorkspaceConfigException;
 import us.kbase.workspace.kbase.KBaseWorkspaceConfig.ListenerConfig;
+import us.kbase.workspace.kbase.ObjectRecordFetchStrategy;
 
 public class KBaseWorkspaceConfigTest {
 	
@@ -185,6 +187,10 @@ public class KBaseWorkspaceConfigTest {
 		public String backendContiner = null;
 		public Region backendRegion = null;
 		public boolean backendTrustAllCerts = false;
+		public int backendMultipartPartSizeMB = 0;
+		public int backendMultipartThreads = 1;
+		public int backendRangedReadSizeMB = 0;
+		public int backendRangedReadThreads = 1;
 		public URL handleServiceURL = null;
 		public String handleServiceToken = null;
 		public boolean ignoreHandleService = false;
@@ -198,7 +204,123 @@ public class KBaseWorkspaceConfigTest {
 		public String paramReport = null;
 		public boolean hasErrors = false;
 		public List<String> errors = Collections.emptyList();
+		public int saveObjectsThreads = 1;
+		public int backendRetrievalMaxThreads = 0;
+		public int backendUploadMaxThreads = 100;
+		public int idProcessingThreads = 1;
+		public int idProcessingTimeoutSec = 0;
+		public int bytestreamIDThreads = 1;
+		public int bytestreamIDCacheSize = 0;
+		public int sampleIDThreads = 1;
+		public int sampleIDCacheSize = 0;
+		public int blobCacheMemorySizeMB = 0;
+		public int blobCacheDiskSizeMB = 0;
+		public int referenceCacheSize = 0;
+		public int readableWorkspaceCacheSize = 0;
+		public int objectNameCacheSize = 0;
+		public int typeSchemaCacheSizeMB = 8;
+		public ObjectRecordFetchStrategy objectRecordFetchStrategy =
+				ObjectRecordFetchStrategy.OrQuery;
+		public int objectRecordFetchThreshold = 1;
+		public int objectRecordFetchThreads = 1;
+		public SearchMode referenceSearchMode = SearchMode.INDEPENDENT_TREES;
 
+		public ExpectedConfig withSaveObjectsThreads(final int saveObjectsThreads) {
+			this.saveObjectsThreads = saveObjectsThreads;
+			return this;
+		}
+		
+		public ExpectedConfig withBackendRetrievalMaxThreads(final int threads) {
+			this.backendRetrievalMaxThreads = threads;
+			return this;
+		}
+		
+		public ExpectedConfig withBackendUploadMaxThreads(final int threads) {
+			this.backendUploadMaxThreads = threads;
+			return this;
+		}
+		
+		public ExpectedConfig withIDProcessingThreads(final int threads) {
+			this.idProcessingThreads = threads;
+			return this;
+		}
+		
+		public ExpectedConfig withIDProcessingTimeoutSec(final int timeout) {
+			this.idProcessingTimeoutSec = timeout;
+			return this;
+		}
+		
+		public ExpectedConfig withBytestreamIDThreads(final int threads) {
+			this.bytestreamIDThreads = threads;
+			return this;
+		}
+		
+		public ExpectedConfig withBytestreamIDCacheSize(final int size) {
+			this.bytestreamIDCacheSize = size;
+			return this;
+		}
+		
+		public ExpectedConfig withSampleIDThreads(final int threads) {
+			this.sampleIDThreads = threads;
+			return this;
+		}
+		
+		public ExpectedConfig withSampleIDCacheSize(final int size) {
+			this.sampleIDCacheSize = size;
+			return this;
+		}
+		
+		public ExpectedConfig withBlobCacheMemorySizeMB(final int size) {
+			this.blobCacheMemorySizeMB = size;
+			return this;
+		}
+		
+		public ExpectedConfig withBlobCacheDiskSizeMB(final int size) {
+			this.blobCacheDiskSizeMB = size;
+			return this;
+		}
+		
+		public ExpectedConfig withReferenceCacheSize(final int size) {
+			this.referenceCacheSize = size;
+			return this;
+		}
+		
+		public ExpectedConfig withReadableWorkspaceCacheSize(final int size) {
+			this.readableWorkspaceCacheSize = size;
+			return this;
+		}
+		
+		public ExpectedConfig withObjectNameCacheSize(final int size) {
+			this.objectNameCacheSize = size;
+			return this;
+		}
+		
+		public ExpectedConfig withTypeSchemaCacheSizeMB(final int size) {
+			this.typeSchemaCacheSizeMB = size;
+			return this;
+		}
+		
+		public ExpectedConfig withObjectRecordFetchStrategy(
+				final ObjectRecordFetchStrategy strategy) {
+			this.objectRecordFetchStrategy = strategy;
+			return this;
+		}
+		
+		public ExpectedConfig withObjectRecordFetchThreshold(final int threshold) {
+			this.objectRecordFetchThreshold = threshold;
+			return this;
+		}
+		
+		public ExpectedConfig withObjectRecordFetchThreads(final int threads) {
+			this.objectRecordFetchThreads = threads;
+			return this;
+		}
+		
+		public ExpectedConfig withReferenceSearchMode(final SearchMode mode) {
+			this.referenceSearchMode = mode;
+			return this;
+		}
+		
 		public ExpectedConfig withDontTrustXIPHeaders(final boolean dontTrust) {
 			this.dontTrustXIPHeaders = dontTrust;
 			return this;
@@ -253,6 +375,26 @@ public class KBaseWorkspaceConfigTest {
 			this.backendTrustAllCerts = backendTrustAllCerts;
 			return this;
 		}
+		
+		public ExpectedConfig withBackendMultipartPartSizeMB(final int partSize) {
+			this.backendMultipartPartSizeMB = partSize;
+			return this;
+		}
+		
+		public ExpectedConfig withBackendMultipartThreads(final int threads) {
+			this.backendMultipartThreads = threads;
+			return this;
+		}
+		
+		public ExpectedConfig withBackendRangedReadSizeMB(final int rangeSize) {
+			this.backendRangedReadSizeMB = rangeSize;
+			return this;
+		}
+		
+		public ExpectedConfig withBackendRangedReadThreads(final int threads) {
+			this.backendRangedReadThreads = threads;
+			return this;
+		}
 
 		public ExpectedConfig withMongoDBname(final String mongoDBname) {
 			this.mongoDBname = mongoDBname;
@@ -388,6 +530,14 @@ public class KBaseWorkspaceConfigTest {
 			assertThat("incorrect backend region", kwc.getBackendRegion(), is(exp.backendRegion));
 			assertThat("incorrect backend trust certs",
 					kwc.getBackendTrustAllCerts(), is(exp.backendTrustAllCerts));
+			assertThat("incorrect backend part size",
+					kwc.getBackendMultipartPartSizeMB(), is(exp.backendMultipartPartSizeMB));
+			assertThat("incorrect backend part threads",
+					kwc.getBackendMultipartThreads(), is(exp.backendMultipartThreads));
+			assertThat("incorrect backend range size",
+					kwc.getBackendRangedReadSizeMB(), is(exp.backendRangedReadSizeMB));
+			assertThat("incorrect backend range threads",
+					kwc.getBackendRangedReadThreads(), is(exp.backendRangedReadThreads));
 			assertThat("incorrect db", kwc.getDBname(), is(exp.mongoDBname));
 			assertThat("incorrect errors", kwc.getErrors(), is(exp.errors));
 			assertThat("incorrect srvc token",
@@ -410,6 +560,44 @@ public class KBaseWorkspaceConfigTest {
 					kwc.getSampleServiceToken(), is(exp.sampleServiceToken));
 			assertThat("incorrect sample url", kwc.getSampleServiceURL(), is(exp.sampleServiceURL));
 			assertThat("incorrect temp dir", kwc.getTempDir(), is(exp.tempDir));
+			assertThat("incorrect save threads",
+					kwc.getSaveObjectsThreads(), is(exp.saveObjectsThreads));
+			assertThat("incorrect backend retrieval threads",
+					kwc.getBackendRetrievalMaxThreads(), is(exp.backendRetrievalMaxThreads));
+			assertThat("incorrect backend upload threads",
+					kwc.getBackendUploadMaxThreads(), is(exp.backendUploadMaxThreads));
+			assertThat("incorrect ID processing threads",
+					kwc.getIDProcessingThreads(), is(exp.idProcessingThreads));
+			assertThat("incorrect ID processing timeout",
+					kwc.getIDProcessingTimeoutSec(), is(exp.idProcessingTimeoutSec));
+			assertThat("incorrect bytestream ID threads",
+					kwc.getBytestreamIDThreads(), is(exp.bytestreamIDThreads));
+			assertThat("incorrect bytestream ID cache size",
+					kwc.getBytestreamIDCacheSize(), is(exp.bytestreamIDCacheSize));
+			assertThat("incorrect sample ID threads",
+					kwc.getSampleIDThreads(), is(exp.sampleIDThreads));
+			assertThat("incorrect sample ID cache size",
+					kwc.getSampleIDCacheSize(), is(exp.sampleIDCacheSize));
+			assertThat("incorrect blob cache memory",
+					kwc.getBlobCacheMemorySizeMB(), is(exp.blobCacheMemorySizeMB));
+			assertThat("incorrect blob cache disk",
+					kwc.getBlobCacheDiskSizeMB(), is(exp.blobCacheDiskSizeMB));
+			assertThat("incorrect reference cache",
+					kwc.getReferenceCacheSize(), is(exp.referenceCacheSize));
+			assertThat("incorrect readable workspace cache",
+					kwc.getReadableWorkspaceCacheSize(), is(exp.readableWorkspaceCacheSize));
+			assertThat("incorrect object name cache",
+					kwc.getObjectNameCacheSize(), is(exp.objectNameCacheSize));
+			assertThat("incorrect type schema cache",
+					kwc.getTypeSchemaCacheSizeMB(), is(exp.typeSchemaCacheSizeMB));
+			assertThat("incorrect object record fetch strategy",
+					kwc.getObjectRecordFetchStrategy(), is(exp.objectRecordFetchStrategy));
+			assertThat("incorrect object record fetch threshold",
+					kwc.getObjectRecordFetchThreshold(), is(exp.objectRecordFetchThreshold));
+			assertThat("incorrect object record fetch threads",
+					kwc.getObjectRecordFetchThreads(), is(exp.objectRecordFetchThreads));
+			assertThat("incorrect reference search mode",
+					kwc.getReferenceSearchMode(), is(exp.referenceSearchMode));
 			assertThat("incorrect type db", kwc.getTypeDBName(), is(exp.typeDBname));
 			assertThat("incorrect type delegation",
 					kwc.getTypeDelegationTarget(), is(exp.typeDelegationTarget));
@@ -494,6 +682,29 @@ public class KBaseWorkspaceConfigTest {
 				.with("backend-container", "   mahbukkit   ")
 				.with("backend-region", "   a-lovely-region   ")
 				.with("backend-trust-all-ssl-certificates", "     true    ")
+				.with("backend-multipart-part-size-mb", "    50    ")
+				.with("backend-multipart-threads", "    6    ")
+				.with("backend-ranged-read-size-mb", "    1    ")
+				.with("backend-ranged-read-threads", "    12    ")
+				.with("save-objects-threads", "     8    ")
+				.with("backend-file-retrieval-max-threads", "     64    ")
+				.with("backend-file-upload-max-threads", "     32    ")
+				.with("id-processing-threads", "     3    ")
+				.with("id-processing-timeout-sec", "     45    ")
+				.with("bytestream-id-threads", "     5    ")
+				.with("bytestream-id-cache-size", "     20000    ")
+				.with("sample-id-threads", "     7    ")
+				.with("sample-id-cache-size", "     30000    ")
+				.with("blob-cache-memory-size-mb", "     100    ")
+				.with("blob-cache-disk-size-mb", "     2000    ")
+				.with("reference-cache-size", "     500000    ")
+				.with("readable-workspace-cache-size", "     300000    ")
+				.with("object-name-cache-size", "     4000000    ")
+				.with("type-schema-cache-size-mb", "     16    ")
+				.with("object-record-fetch-strategy", "     PerWorkspace    ")
+				.with("object-record-fetch-threshold", "     50    ")
+				.with("object-record-fetch-threads", "     4    ")
+				.with("reference-search-mode", "     SHARED_FRONTIER    ")
 				.with("handle-service-token", "    hstoken    ")
 				.with("handle-manager-token", "    hmtoken    ")  // test service takes precedence
 				.with("handle-manager-url", "    " + CI_SERV + "handle_mngr     ")
@@ -527,6 +738,29 @@ public class KBaseWorkspaceConfigTest {
 				"backend-region=a-lovely-region\n" +
 				"backend-container=mahbukkit\n" +
 				"backend-trust-all-ssl-certificates=true\n" +
+				"backend-multipart-part-size-mb=50\n" +
+				"backend-multipart-threads=6\n" +
+				"backend-ranged-read-size-mb=1\n" +
+				"backend-ranged-read-threads=12\n" +
+				"save-objects-threads=8\n" +
+				"backend-file-retrieval-max-threads=64\n" +
+				"backend-file-upload-max-threads=32\n" +
+				"id-processing-threads=3\n" +
+				"id-processing-timeout-sec=45\n" +
+				"bytestream-id-threads=5\n" +
+				"bytestream-id-cache-size=20000\n" +
+				"sample-id-threads=7\n" +
+				"sample-id-cache-size=30000\n" +
+				"blob-cache-memory-size-mb=100\n" +
+				"blob-cache-disk-size-mb=2000\n" +
+				"reference-cache-size=500000\n" +
+				"readable-workspace-cache-size=300000\n" +
+				"object-name-cache-size=4000000\n" +
+				"type-schema-cache-size-mb=16\n" +
+				"object-record-fetch-strategy=PerWorkspace\n" +
+				"object-record-fetch-threshold=50\n" +
+				"object-record-fetch-threads=4\n" +
+				"reference-search-mode=SHARED_FRONTIER\n" +
 				"handle-service-url=" + CI_SERV + "handle_service\n" +
 				"bytestream-url=" + CI_SERV + "shock-api2\n" +
 				"bytestream-user=otheruser\n" +
@@ -560,6 +794,10 @@ public class KBaseWorkspaceConfigTest {
 						.withBackendContainer("mahbukkit")
 						.withBackendRegion(Region.of("a-lovely-region"))
 						.withBackendTrustAllCerts(true)
+						.withBackendMultipartPartSizeMB(50)
+						.withBackendMultipartThreads(6)
+						.withBackendRangedReadSizeMB(1)
+						.withBackendRangedReadThreads(12)
 						.withHandleServiceURL(new URL(CI_SERV + "handle_service"))
 						.withHandleServiceToken("hstoken")
 						.withBytestreamURL(new URL(CI_SERV + "shock-api2"))
@@ -567,6 +805,25 @@ public class KBaseWorkspaceConfigTest {
 						.withBytestreamToken("token token")
 						.withSampleServiceURL(new URL(CI_SERV + "sample_service2"))
 						.withSampleServiceToken("sstoken2")
+						.withSaveObjectsThreads(8)
+						.withBackendRetrievalMaxThreads(64)
+						.withBackendUploadMaxThreads(32)
+						.withIDProcessingThreads(3)
+						.withIDProcessingTimeoutSec(45)
+						.withBytestreamIDThreads(5)
+						.withBytestreamIDCacheSize(20000)
+						.withSampleIDThreads(7)
+						.withSampleIDCacheSize(30000)
+						.withBlobCacheMemorySizeMB(100)
+						.withBlobCacheDiskSizeMB(2000)
+						.withReferenceCacheSize(500000)
+						.withReadableWorkspaceCacheSize(300000)
+						.withObjectNameCacheSize(4000000)
+						.withTypeSchemaCacheSizeMB(16)
+						.withObjectRecordFetchStrategy(ObjectRecordFetchStrategy.PerWorkspace)
+						.withObjectRecordFetchThreshold(50)
+						.withObjectRecordFetchThreads(4)
+						.withReferenceSearchMode(SearchMode.SHARED_FRONTIER)
 						.withTempDir("temp")
 						.withParamReport(paramReport)
 				);
@@ -631,6 +888,29 @@ public class KBaseWorkspaceConfigTest {
 				.with("backend-container", "   \t    ")
 				.with("backend-trust-all-ssl-certificates", "   \t    ")
 				.with("backend-region", "   \t    ")
+				.with("backend-multipart-part-size-mb", "   \t    ")
+				.with("backend-multipart-threads", "   \t    ")
+				.with("backend-ranged-read-size-mb", "   \t    ")
+				.with("backend-ranged-read-threads", "   \t    ")
+				.with("save-objects-threads", "   \t    ")
+				.with("backend-file-retrieval-max-threads", "   \t    ")
+				.with("backend-file-upload-max-threads", "   \t    ")
+				.with("id-processing-threads", "   \t    ")
+				.with("id-processing-timeout-sec", "   \t    ")
+				.with("bytestream-id-threads", "   \t    ")
+				.with("bytestream-id-cache-size", "   \t    ")
+				.with("sample-id-threads", "   \t    ")
+				.with("sample-id-cache-size", "   \t    ")
+				.with("blob-cache-memory-size-mb", "   \t    ")
+				.with("blob-cache-disk-size-mb", "   \t    ")
+				.with("reference-cache-size", "   \t    ")
+				.with("readable-workspace-cache-size", "   \t    ")
+				.with("object-name-cache-size", "   \t    ")
+				.with("type-schema-cache-size-mb", "   \t    ")
+				.with("object-record-fetch-strategy", "   \t    ")
+				.with("object-record-fetch-threshold", "   \t    ")
+				.with("object-record-fetch-threads", "   \t    ")
+				.with("reference-search-mode", "   \t    ")
 				.with("handle-manager-token", "       hmtoken   ") // test that backwards compat ok
 				.with("handle-service-url", CI_SERV + "handle_service")
 				.with("bytestream-token", "   \t    ")
@@ -667,6 +947,269 @@ public class KBaseWorkspaceConfigTest {
 				);
 	}
 	
+	@Test
+	public void configFailSaveObjectsThreads() throws Exception {
+		configFailSaveObjectsThreads("   foo   ", "foo");
+		configFailSaveObjectsThreads("0", "0");
+		configFailSaveObjectsThreads("  -1  ", "-1");
+		configFailSaveObjectsThreads("1.5", "1.5");
+	}
+	
+	private void configFailSaveObjectsThreads(final String threads, final String errThreads)
+			throws Exception {
+		final Map<String, String> cfg = MapBuilder.<String, String>newHashMap()
+				.with("mongodb-host", "somehost")
+				.with("mongodb-database", "somedb")
+				.with("mongodb-type-database", "typedb")
+				.with("backend-type", "GridFS")
+				.with("temp-dir", "temp")
+				.with("auth2-service-url", CI_SERV + "auth")
+				.with("ignore-handle-service", "true")
+				.with("save-objects-threads", threads)
+				.build();
+		
+		final String paramReport =
+				"mongodb-host=somehost\n" +
+				"mongodb-database=somedb\n" +
+				"mongodb-type-database=typedb\n" +
+				"auth2-service-url=" + CI_SERV + "auth\n" +
+				"backend-type=GridFS\n" +
+				"save-objects-threads=" + errThreads + "\n";
+		
+		assertConfigCorrect(
+				cfg,
+				new ExpectedConfig()
+						.withAuth2URL(new URL(CI_SERV + "auth"))
+						.withMongohost("somehost")
+						.withMongoDBname("somedb")
+						.withTypeDBname("typedb")
+						.withBackendType(BackendType.GridFS)
+						.withInfoMessages(Arrays.asList(IGNORE_HANDLE))
+						.withParamReport(paramReport)
+						.withTempDir("temp")
+						.withIgnoreHandleService(true)
+						.withHasErrors(true)
+						.withErrors(Arrays.asList(
+								"Parameter save-objects-threads must be an integer > 0: " +
+								errThreads))
+				);
+	}
+	
+	@Test
+	public void configFailBackendRetrievalMaxThreads() throws Exception {
+		configFailBlobCache("backend-file-retrieval-max-threads", "   foo   ", "foo");
+		configFailBlobCache("backend-file-retrieval-max-threads", "0", "0");
+		configFailBlobCache("backend-file-retrieval-max-threads", "  -1  ", "-1");
+	}
+	
+	@Test
+	public void configFailBackendUploadMaxThreads() throws Exception {
+		configFailBlobCache("backend-file-upload-max-threads", "   foo   ", "foo");
+		configFailBlobCache("backend-file-upload-max-threads", "0", "0");
+		configFailBlobCache("backend-file-upload-max-threads", "  -1  ", "-1");
+	}
+	
+	@Test
+	public void configFailIDProcessing() throws Exception {
+		configFailBlobCache("id-processing-threads", "   foo   ", "foo");
+		configFailBlobCache("id-processing-threads", "0", "0");
+		configFailBlobCache("id-processing-timeout-sec", "  -1  ", "-1");
+		configFailBlobCache("id-processing-timeout-sec", "1.5", "1.5");
+	}
+	
+	@Test
+	public void configFailBytestreamID() throws Exception {
+		configFailBlobCache("bytestream-id-threads", "   foo   ", "foo");
+		configFailBlobCache("bytestream-id-threads", "0", "0");
+		configFailBlobCache("bytestream-id-cache-size", "  -1  ", "-1");
+		configFailBlobCache("bytestream-id-cache-size", "1.5", "1.5");
+	}
+	
+	@Test
+	public void configFailSampleID() throws Exception {
+		configFailBlobCache("sample-id-threads", "   foo   ", "foo");
+		configFailBlobCache("sample-id-threads", "0", "0");
+		configFailBlobCache("sample-id-cache-size", "  -1  ", "-1");
+		configFailBlobCache("sample-id-cache-size", "1.5", "1.5");
+	}
+	
+	@Test
+	public void configFailBlobCache() throws Exception {
+		configFailBlobCache("blob-cache-memory-size-mb", "   foo   ", "foo");
+		configFailBlobCache("blob-cache-memory-size-mb", "0", "0");
+		configFailBlobCache("blob-cache-disk-size-mb", "  -1  ", "-1");
+		configFailBlobCache("blob-cache-disk-size-mb", "1.5", "1.5");
+	}
+	
+	@Test
+	public void configFailReferenceCache() throws Exception {
+		configFailBlobCache("reference-cache-size", "   foo   ", "foo");
+		configFailBlobCache("reference-cache-size", "0", "0");
+		configFailBlobCache("reference-cache-size", "  -1  ", "-1");
+	}
+	
+	@Test
+	public void configFailReadableWorkspaceCache() throws Exception {
+		configFailBlobCache("readable-workspace-cache-size", "   foo   ", "foo");
+		configFailBlobCache("readable-workspace-cache-size", "0", "0");
+		configFailBlobCache("readable-workspace-cache-size", "  -1  ", "-1");
+	}
+	
+	@Test
+	public void configFailObjectNameCache() throws Exception {
+		configFailBlobCache("object-name-cache-size", "   foo   ", "foo");
+		configFailBlobCache("object-name-cache-size", "0", "0");
+		configFailBlobCache("object-name-cache-size", "  -1  ", "-1");
+	}
+	
+	@Test
+	public void configFailTypeSchemaCache() throws Exception {
+		configFailBlobCache("type-schema-cache-size-mb", "   foo   ", "foo");
+		configFailBlobCache("type-schema-cache-size-mb", "0", "0");
+		configFailBlobCache("type-schema-cache-size-mb", "  -1  ", "-1");
+	}
+	
+	@Test
+	public void configFailObjectRecordFetch() throws Exception {
+		configFailBlobCache("object-record-fetch-threshold", "   foo   ", "foo");
+		configFailBlobCache("object-record-fetch-threshold", "0", "0");
+		configFailBlobCache("object-record-fetch-threads", "   foo   ", "foo");
+		configFailBlobCache("object-record-fetch-threads", "  -1  ", "-1");
+		configFailParam("object-record-fetch-strategy", "   foo   ", "foo",
+				"Parameter object-record-fetch-strategy must be one of " +
+				"[OrQuery, Lookup, PerWorkspace]: foo");
+	}
+	
+	@Test
+	public void configFailReferenceSearchMode() throws Exception {
+		configFailParam("reference-search-mode", "   shared_frontier   ", "shared_frontier",
+				"Parameter reference-search-mode must be one of " +
+				"[INDEPENDENT_TREES, SHARED_FRONTIER]: shared_frontier");
+	}
+	
+	private void configFailBlobCache(final String param, final String size, final String errSize)
+			throws Exception {
+		configFailParam(param, size, errSize, String.format(
+				"Parameter %s must be an integer > 0: %s", param, errSize));
+	}
+	
+	private void configFailParam(
+			final String param,
+			final String size,
+			final String errSize,
+			final String error)
+			throws Exception {
+		final Map<String, String> cfg = MapBuilder.<String, String>newHashMap()
+				.with("mongodb-host", "somehost")
+				.with("mongodb-database", "somedb")
+				.with("mongodb-type-database", "typedb")
+				.with("backend-type", "GridFS")
+				.with("temp-dir", "temp")
+				.with("auth2-service-url", CI_SERV + "auth")
+				.with("ignore-handle-service", "true")
+				.with(param, size)
+				.build();
+		
+		final String paramReport =
+				"mongodb-host=somehost\n" +
+				"mongodb-database=somedb\n" +
+				"mongodb-type-database=typedb\n" +
+				"auth2-service-url=" + CI_SERV + "auth\n" +
+				"backend-type=GridFS\n" +
+				param + "=" + errSize + "\n";
+		
+		assertConfigCorrect(
+				cfg,
+				new ExpectedConfig()
+						.withAuth2URL(new URL(CI_SERV + "auth"))
+						.withMongohost("somehost")
+						.withMongoDBname("somedb")
+						.withTypeDBname("typedb")
+						.withBackendType(BackendType.GridFS)
+						.withInfoMessages(Arrays.asList(IGNORE_HANDLE))
+						.withParamReport(paramReport)
+						.withTempDir("temp")
+						.withIgnoreHandleService(true)
+						.withHasErrors(true)
+						.withErrors(Arrays.asList(error))
+				);
+	}
+	
+	@Test
+	public void configFailBackendTransfer() throws Exception {
+		final String err = "Parameter %s must be an integer > 0: %s";
+		final String ps = "backend-multipart-part-size-mb";
+		final String pt = "backend-multipart-threads";
+		final String rs = "backend-ranged-read-size-mb";
+		final String rt = "backend-ranged-read-threads";
+		configFailBackendTransfer(ps, "   foo   ", String.format(err, ps, "foo"));
+		configFailBackendTransfer(ps, "0", String.format(err, ps, "0"));
+		configFailBackendTransfer(ps, "  4  ", "Parameter " + ps + " must be at least 5: 4");
+		configFailBackendTransfer(ps, "  1025  ",
+				"Parameter " + ps + " must be at most 1024: 1025");
+		configFailBackendTransfer(pt, "   0   ", String.format(err, pt, "0"));
+		configFailBackendTransfer(pt, "1.5", String.format(err, pt, "1.5"));
+		configFailBackendTransfer(rs, "   -1   ", String.format(err, rs, "-1"));
+		configFailBackendTransfer(rs, "0", String.format(err, rs, "0"));
+		configFailBackendTransfer(rt, "   0   ", String.format(err, rt, "0"));
+		configFailBackendTransfer(rt, "bar", String.format(err, rt, "bar"));
+	}
+	
+	private void configFailBackendTransfer(
+			final String param,
+			final String value,
+			final String error)
+			throws Exception {
+		final Map<String, String> cfg = MapBuilder.<String, String>newHashMap()
+				.with("mongodb-host", "somehost")
+				.with("mongodb-database", "somedb")
+				.with("mongodb-type-database", "typedb")
+				.with("backend-type", "S3")
+				.with("backend-token", "bet")
+				.with("backend-user", "buser")
+				.with("backend-url", "http://localhost:34567")
+				.with("backend-container", "foo")
+				.with("backend-region", "over-there")
+				.with(param, value)
+				.with("temp-dir", "temp")
+				.with("auth2-service-url", CI_SERV + "auth")
+				.with("ignore-handle-service", "true")
+				.build();
+		
+		final String paramReport =
+				"mongodb-host=somehost\n" +
+				"mongodb-database=somedb\n" +
+				"mongodb-type-database=typedb\n" +
+				"auth2-service-url=" + CI_SERV + "auth\n" +
+				"backend-type=S3\n" +
+				"backend-url=http://localhost:34567\n" +
+				"backend-user=buser\n" +
+				"backend-region=over-there\n" +
+				"backend-container=foo\n" +
+				param + "=" + value.trim() + "\n";
+		
+		assertConfigCorrect(
+				cfg,
+				new ExpectedConfig()
+						.withAuth2URL(new URL(CI_SERV + "auth"))
+						.withMongohost("somehost")
+						.withMongoDBname("somedb")
+						.withTypeDBname("typedb")
+						.withBackendType(BackendType.S3)
+						.withBackendURL(new URL("http://localhost:34567"))
+						.withBackendUser("buser")
+						.withBackendToken("bet")
+						.withBackendContainer("foo")
+						.withBackendRegion(Region.of("over-there"))
+						.withInfoMessages(Arrays.asList(IGNORE_HANDLE))
+						.withParamReport(paramReport)
+						.withTempDir("temp")
+						.withIgnoreHandleService(true)
+						.withHasErrors(true)
+						.withErrors(Arrays.asList(error))
+				);
+	}
+	
 	@Test
 	public void immutable() throws Exception {
 		final Map<String, String> cfg = MapBuilder.<String, String>newHashMap()
@@ -227,6 +227,9 @@ public class LoggingTest {
 			TestCommon.destroyDB(wsdb);
 			wsdb.getCollection("dyncfg").insertOne(
 					new Document("key", DynamicConfig.KEY_BACKEND_SCALING).append("value", 1));
+			wsdb.getCollection("dyncfg").insertOne(
+					new Document("key", DynamicConfig.KEY_BACKEND_UPLOAD_SCALING)
+							.append("value", 1));
 		}
 	}
 
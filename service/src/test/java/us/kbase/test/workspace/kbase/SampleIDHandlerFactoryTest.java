@@ -5,16 +5,23 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import org.mockito.ArgumentMatcher;
@@ -40,6 +47,7 @@ import us.kbase.typedobj.idref.IdReferencePermissionHandlerSet.IdReferencePermis
 import us.kbase.typedobj.idref.IdReferencePermissionHandlerSet.IdReferencePermissionHandlerException;
 import us.kbase.workspace.database.DependencyStatus;
 import us.kbase.workspace.kbase.SampleIdHandlerFactory;
+import us.kbase.workspace.kbase.VerifiedIDCache;
 
 public class SampleIDHandlerFactoryTest {
 	
@@ -109,6 +117,19 @@ public class SampleIDHandlerFactoryTest {
 		}
 	}
 	
+	@Test
+	public void constructFail() throws Exception {
+		for (final int c: Arrays.asList(0, -1)) {
+			try {
+				new SampleIdHandlerFactory(mock(SampleServiceClient.class), null, c, null);
+				fail("expected exception");
+			} catch (Exception got) {
+				TestCommon.assertExceptionCorrect(got,
+						new IllegalArgumentException("concurrency must be > 0"));
+			}
+		}
+	}
+	
 	@Test
 	public void getIDType() throws Exception {
 		final SampleServiceClient cli = mock(SampleServiceClient.class);
@@ -361,6 +382,192 @@ public class SampleIDHandlerFactoryTest {
 		assertThat("incorrect ids", h.getRemappedIds(1), is(Collections.emptySet()));
 	}
 	
+	private void setUpACLs(
+			final SampleServiceClient cli,
+			final String id,
+			final String owner,
+			final String... admins)
+			throws Exception {
+		when(cli.getSampleAcls(argThat(new GetSampleACLParamsMatcher(
+				new GetSampleACLsParams().withAsAdmin(1L).withId(id)))))
+				.thenReturn(new SampleACLs().withOwner(owner).withAdmin(Arrays.asList(admins)));
+	}
+	
+	private void verifyGetACLs(final SampleServiceClient cli, final String id, final int count)
+			throws Exception {
+		verify(cli, times(count)).getSampleAcls(argThat(new GetSampleACLParamsMatcher(
+				new GetSampleACLsParams().withAsAdmin(1L).withId(id))));
+	}
+	
+	@Test
+	public void sampleIDHandlerProcessIDsConcurrently() throws Exception {
+		final SampleServiceClient cli = mock(SampleServiceClient.class);
+		final ExecutorService exe = Executors.newFixedThreadPool(3);
+		try {
+			final IdReferenceHandler<Integer> h = new SampleIdHandlerFactory(cli, exe, 4, null)
+					.createHandler(Integer.class, new AuthToken("t", "user1"));
+			
+			for (int i = 0; i < 20; i++) {
+				h.addId(i % 5, "id" + i, null);
+				if (i % 2 == 0) {
+					setUpACLs(cli, "id" + i, "user1");
+				} else {
+					setUpACLs(cli, "id" + i, "user2", "user1");
+				}
+			}
+			
+			h.processIds();
+			
+			for (int i = 0; i < 20; i++) {
+				verifyGetACLs(cli, "id" + i, 1);
+			}
+			assertThat("incorrect ids", h.getRemappedIds(3), is(new HashSet<>(Arrays.asList(
+					new SimpleRemappedId("id3"), new SimpleRemappedId("id8"),
+					new SimpleRemappedId("id13"), new SimpleRemappedId("id18")))));
+		} finally {
+			exe.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void processIdsConcurrentlyFailNoAdminPermission() throws Exception {
+		final SampleServiceClient cli = mock(SampleServiceClient.class);
+		final ExecutorService exe = Executors.newFixedThreadPool(3);
+		try {
+			final IdReferenceHandler<Integer> h = new SampleIdHandlerFactory(cli, exe, 4, null)
+					.createHandler(Integer.class, new AuthToken("t", "user1"));
+			
+			for (int i = 0; i < 10; i++) {
+				h.addId(9, "id" + i, null);
+				setUpACLs(cli, "id" + i, "user1");
+			}
+			h.addId(3, "bad", null);
+			setUpACLs(cli, "bad", "user2", "user3");
+			
+			try {
+				h.processIds();
+				fail("expected exception");
+			} catch (IdReferenceHandlerException got) {
+				assertIDReferenceHandlerExceptionCorrect(got, new IdReferenceException(
+						"User user1 does not have administrative permissions for sample bad",
+						new IdReferenceType("sample"), 3, "bad", null, null));
+			}
+		} finally {
+			exe.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void processIdsWithCache() throws Exception {
+		final SampleServiceClient cli = mock(SampleServiceClient.class);
+		final VerifiedIDCache cache = new VerifiedIDCache(100, Duration.ofMinutes(1));
+		final SampleIdHandlerFactory fac = new SampleIdHandlerFactory(cli, null, 1, cache);
+		
+		setUpACLs(cli, "id1", "user1");
+		setUpACLs(cli, "id2", "user2", "user1");
+		setUpACLs(cli, "id3", "user2");
+		
+		final IdReferenceHandler<Integer> h1 = fac.createHandler(
+				Integer.class, new AuthToken("t", "user1"));
+		h1.addId(9, "id1", null);
+		h1.addId(9, "id2", null);
+		h1.processIds();
+		
+		final IdReferenceHandler<Integer> h2 = fac.createHandler(
+				Integer.class, new AuthToken("t", "user1"));
+		h2.addId(3, "id1", null);
+		h2.addId(4, "id2", null);
+		h2.processIds();
+		
+		// the cache is per user
+		final IdReferenceHandler<Integer> h3 = fac.createHandler(
+				Integer.class, new AuthToken("t", "user2"));
+		h3.addId(3, "id1", null);
+		try {
+			h3.processIds();
+			fail("expected exception");
+		} catch (IdReferenceHandlerException got) {
+			assertIDReferenceHandlerExceptionCorrect(got, new IdReferenceException(
+					"User user2 does not have administrative permissions for sample id1",
+					new IdReferenceType("sample"), 3, "id1", null, null));
+		}
+		
+		// failures are not cached
+		for (int i = 0; i < 2; i++) {
+			final IdReferenceHandler<Integer> h4 = fac.createHandler(
+					Integer.class, new AuthToken("t", "user1"));
+			h4.addId(3, "id3", null);
+			try {
+				h4.processIds();
+				fail("expected exception");
+			} catch (IdReferenceHandlerException got) {
+				assertIDReferenceHandlerExceptionCorrect(got, new IdReferenceException(
+						"User user1 does not have administrative permissions for sample id3",
+						new IdReferenceType("sample"), 3, "id3", null, null));
+			}
+		}
+		
+		verifyGetACLs(cli, "id1", 2);
+		verifyGetACLs(cli, "id2", 1);
+		verifyGetACLs(cli, "id3", 2);
+		assertThat("incorrect ids", h2.getRemappedIds(4), is(new HashSet<>(Arrays.asList(
+				new SimpleRemappedId("id2")))));
+	}
+	
+	@Test
+	public void processIdsCoalesceRequests() throws Exception {
+		// two handlers processing the same sample at once should only cause one request
+		final SampleServiceClient cli = mock(SampleServiceClient.class);
+		final SampleIdHandlerFactory fac = new SampleIdHandlerFactory(cli);
+		
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		when(cli.getSampleAcls(any())).thenAnswer(inv -> {
+			started.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return new SampleACLs().withOwner("user1").withAdmin(Arrays.asList("user2"));
+		});
+		
+		final IdReferenceHandler<Integer> h1 = fac.createHandler(
+				Integer.class, new AuthToken("t", "user1"));
+		h1.addId(9, "id1", null);
+		final IdReferenceHandler<Integer> h2 = fac.createHandler(
+				Integer.class, new AuthToken("t", "user2"));
+		h2.addId(9, "id1", null);
+		
+		final Exception[] errors = new Exception[2];
+		final Thread t1 = new Thread(() -> {
+			try {
+				h1.processIds();
+			} catch (Exception e) {
+				errors[0] = e;
+			}
+		});
+		final Thread t2 = new Thread(() -> {
+			try {
+				h2.processIds();
+			} catch (Exception e) {
+				errors[1] = e;
+			}
+		});
+		t1.start();
+		assertThat("request not started", started.await(10, TimeUnit.SECONDS), is(true));
+		t2.start();
+		// wait for the second handler to wait for the first handler's request
+		final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (t2.getState() != Thread.State.WAITING && System.nanoTime() < end) {
+			Thread.sleep(10);
+		}
+		release.countDown();
+		t1.join(10000);
+		t2.join(10000);
+		
+		assertThat("incorrect error", errors[0], is((Exception) null));
+		assertThat("incorrect error", errors[1], is((Exception) null));
+		verify(cli, times(1)).getSampleAcls(any());
+		assertThat("incorrect id", h2.getRemappedId("id1"), is(new SimpleRemappedId("id1")));
+	}
+	
 	@Test
 	public void addIdFailNoClient() throws Exception {
 		final IdReferenceHandler<String> h = new SampleIdHandlerFactory(null)
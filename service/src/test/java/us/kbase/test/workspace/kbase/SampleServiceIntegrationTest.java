@@ -316,6 +316,9 @@ public class SampleServiceIntegrationTest {
 			TestCommon.destroyDB(db);
 			db.getCollection("dyncfg").insertOne(
 					new Document("key", DynamicConfig.KEY_BACKEND_SCALING).append("value", 1));
+			db.getCollection("dyncfg").insertOne(
+					new Document("key", DynamicConfig.KEY_BACKEND_UPLOAD_SCALING)
+							.append("value", 1));
 
 		}
 		ARANGO.clearDatabase(ARANGO_DB, false);
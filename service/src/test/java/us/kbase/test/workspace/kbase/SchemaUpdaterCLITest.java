@@ -4,8 +4,11 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static us.kbase.testutils.controllers.ControllerCommon.makeTempDirs;
 
@@ -44,7 +47,7 @@ public class SchemaUpdaterCLITest {
 	private static final String VERSION = "0.15.0";
 	
 	private static final List<String> HELP = list(
-			"Usage: update_workspace_database_schema [-chosV] <CONFIG_FILE>",
+			"Usage: update_workspace_database_schema [-chlosV] <CONFIG_FILE>",
 			"Update the workspace database to the current version.",
 			"Please read the upgrade documentation carefully before running this script.",
 			"      <CONFIG_FILE>        The configuration file (usually called deploy.cfg)",
@@ -53,6 +56,9 @@ public class SchemaUpdaterCLITest {
 			"                             upgrade unless no other processes are writing to",
 			"                             the workspace database.",
 			"  -h, --help               Show this help message and exit.",
+			"  -l, --latest-versions    Populate the latest version collection rather than",
+			"                             updating the schema. Servers started after the",
+			"                             collection is completed use it to list objects.",
 			"  -o, --override-version-check",
 			"                           Allow the upgrade to continue even if the database",
 			"                             schema version indicates it is complete.",
@@ -209,6 +215,24 @@ public class SchemaUpdaterCLITest {
 		runUpdater(m, args, "I'm, like, supposed to find some types or something?\nwhatever\n");
 	}
 	
+	@Test
+	public void runLatestVersions() throws Exception {
+		runLatestVersions(array("-l", VALID_CONFIG_FILE.toString()), false);
+		runLatestVersions(array("--latest-versions", "-c", VALID_CONFIG_FILE.toString()), true);
+	}
+	
+	private void runLatestVersions(final String[] args, final boolean complete)
+			throws Exception {
+		final Mocks m = new Mocks();
+		
+		when(m.provider.provide(new KBaseWorkspaceConfig(VALID_CONFIG))).thenReturn(m.client);
+		when(m.updater.backfillLatestVersions(eq(m.db), any(), eq(complete)))
+				.then(new UpdateAnswer(list("Processed objects: 1000", "done")));
+		
+		runUpdater(m, args, "Processed objects: 1000\ndone\n");
+		verify(m.updater, never()).update(any(), any(), anyBoolean(), anyBoolean());
+	}
+	
 	@Test
 	public void version() throws Exception {
 		version(array("-V"));
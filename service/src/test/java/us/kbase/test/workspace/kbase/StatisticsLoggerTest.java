@@ -0,0 +1,166 @@
+package us.kbase.test.workspace.kbase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static us.kbase.test.common.TestCommon.assertLogEventsCorrect;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import us.kbase.test.common.TestCommon;
+import us.kbase.test.common.TestCommon.LogEvent;
+import us.kbase.workspace.kbase.StatisticsLogger;
+
+public class StatisticsLoggerTest {
+
+	private static List<ILoggingEvent> logEvents;
+
+	@BeforeClass
+	public static void beforeClass() {
+		logEvents = TestCommon.setUpSLF4JTestLoggerAppender("us.kbase.workspace");
+	}
+
+	@Before
+	public void before() {
+		logEvents.clear();
+	}
+
+	@Test
+	public void log() throws Exception {
+		final AtomicInteger count = new AtomicInteger();
+		final StatisticsLogger s = new StatisticsLogger()
+				.add("Foo cache", () -> "hits=" + count.incrementAndGet())
+				.add("  Bar  ", () -> "queue=2");
+
+		assertThat("incorrect empty", s.isEmpty(), is(false));
+		s.log();
+		s.log();
+
+		assertLogEventsCorrect(logEvents,
+				new LogEvent(Level.INFO, "Foo cache statistics: hits=1", StatisticsLogger.class),
+				new LogEvent(Level.INFO, "Bar statistics: queue=2", StatisticsLogger.class),
+				new LogEvent(Level.INFO, "Foo cache statistics: hits=2", StatisticsLogger.class),
+				new LogEvent(Level.INFO, "Bar statistics: queue=2", StatisticsLogger.class));
+	}
+
+	@Test
+	public void logEmpty() throws Exception {
+		final StatisticsLogger s = new StatisticsLogger();
+
+		assertThat("incorrect empty", s.isEmpty(), is(true));
+		s.log();
+
+		assertLogEventsCorrect(logEvents);
+	}
+
+	@Test
+	public void logFailedSource() throws Exception {
+		final IllegalStateException err = new IllegalStateException("whoops");
+		final StatisticsLogger s = new StatisticsLogger()
+				.add("Foo", () -> {
+					throw err;
+				})
+				.add("Bar", () -> "queue=2");
+
+		s.log();
+
+		assertLogEventsCorrect(logEvents,
+				new LogEvent(Level.WARN, "Failed to get Foo statistics: whoops",
+						StatisticsLogger.class, err),
+				new LogEvent(Level.INFO, "Bar statistics: queue=2", StatisticsLogger.class));
+	}
+
+	@Test
+	public void startAndStop() throws Exception {
+		final StatisticsLogger s = new StatisticsLogger().add("Foo", () -> "hits=1");
+		s.start(Duration.ofMillis(20));
+		try {
+			for (int i = 0; i < 100 && logEvents.size() < 2; i++) {
+				Thread.sleep(20);
+			}
+		} finally {
+			s.stop();
+		}
+		final List<ILoggingEvent> events = new ArrayList<>(logEvents);
+		assertThat("incorrect log count", events.size() >= 2, is(true));
+		for (final ILoggingEvent e: events) {
+			assertThat("incorrect message", e.getFormattedMessage(), is("Foo statistics: hits=1"));
+		}
+		Thread.sleep(50);
+		assertThat("logged after stop", logEvents.size(), is(events.size()));
+
+		s.stop(); // noop
+	}
+
+	@Test
+	public void format() throws Exception {
+		assertThat("incorrect format", StatisticsLogger.format(
+				new CacheStats(3, 1, 1, 0, 2_000_000, 4, 5)),
+				is("requests=4 hits=3 misses=1 hitRate=0.750 loadFailures=0 meanLoadMS=2.000 " +
+						"evictions=4 evictionWeight=5"));
+		assertThat("incorrect format", StatisticsLogger.format(CacheStats.empty()),
+				is("requests=0 hits=0 misses=0 hitRate=1.000 loadFailures=0 meanLoadMS=0.000 " +
+						"evictions=0 evictionWeight=0"));
+	}
+
+	@Test
+	public void addFail() throws Exception {
+		final Supplier<String> sup = () -> "foo";
+		failAdd(null, sup, new IllegalArgumentException("name cannot be null or whitespace only"));
+		failAdd("   \t  ", sup,
+				new IllegalArgumentException("name cannot be null or whitespace only"));
+		failAdd("foo", null, new NullPointerException("statistics"));
+	}
+
+	private void failAdd(
+			final String name,
+			final Supplier<String> stats,
+			final Exception expected) {
+		try {
+			new StatisticsLogger().add(name, stats);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+	@Test
+	public void startFail() throws Exception {
+		failStart(new StatisticsLogger(), null, new NullPointerException("interval"));
+		failStart(new StatisticsLogger(), Duration.ZERO,
+				new IllegalArgumentException("interval must be positive"));
+		failStart(new StatisticsLogger(), Duration.ofMillis(-1),
+				new IllegalArgumentException("interval must be positive"));
+		final StatisticsLogger s = new StatisticsLogger();
+		s.start(Duration.ofMinutes(1));
+		try {
+			failStart(s, Duration.ofMinutes(1), new IllegalStateException("Already started"));
+		} finally {
+			s.stop();
+		}
+	}
+
+	private void failStart(
+			final StatisticsLogger s,
+			final Duration interval,
+			final Exception expected) {
+		try {
+			s.start(interval);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+}
@@ -0,0 +1,285 @@
+package us.kbase.test.workspace.kbase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static us.kbase.test.common.TestCommon.assertLogEventsCorrect;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import us.kbase.test.common.TestCommon;
+import us.kbase.test.common.TestCommon.LogEvent;
+import us.kbase.workspace.database.CloseableIterator;
+import us.kbase.workspace.kbase.StreamingList;
+
+public class StreamingListTest {
+
+	private static List<ILoggingEvent> logEvents;
+
+	@BeforeClass
+	public static void beforeClass() {
+		logEvents = TestCommon.setUpSLF4JTestLoggerAppender("us.kbase.workspace");
+	}
+
+	@Before
+	public void before() {
+		logEvents.clear();
+	}
+
+	/* An iterator that records how many elements have been pulled and whether it was closed,
+	 * and optionally fails after a number of elements.
+	 */
+	private static class TestIterator implements CloseableIterator<Integer> {
+
+		private final Iterator<Integer> iter;
+		private final int failAfter;
+		private int pulled = 0;
+		private boolean closed = false;
+
+		private TestIterator(final int failAfter, final List<Integer> elements) {
+			this.iter = elements.iterator();
+			this.failAfter = failAfter;
+		}
+
+		private TestIterator(final Integer... elements) {
+			this(-1, Arrays.asList(elements));
+		}
+
+		private static TestIterator failing(final int failAfter, final Integer... elements) {
+			return new TestIterator(failAfter, Arrays.asList(elements));
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !closed && iter.hasNext();
+		}
+
+		@Override
+		public Integer next() {
+			if (pulled == failAfter) {
+				throw new IllegalStateException("oh no");
+			}
+			pulled++;
+			return iter.next();
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+
+	@Test
+	public void constructFail() throws Exception {
+		failConstruct(null, i -> i, new NullPointerException("source"));
+		failConstruct(new TestIterator(), null, new NullPointerException("mapper"));
+	}
+
+	private void failConstruct(
+			final CloseableIterator<Integer> source,
+			final Function<Integer, String> mapper,
+			final Exception expected) {
+		try {
+			new StreamingList<>(source, mapper);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+	@Test
+	public void iterate() throws Exception {
+		final TestIterator source = new TestIterator(1, 2, 3);
+		final StreamingList<String> l = new StreamingList<>(source, i -> "s" + i);
+
+		final Iterator<String> iter = l.iterator();
+		assertThat("incorrect pulled", source.pulled, is(0));
+		assertThat("incorrect next", iter.next(), is("s1"));
+		assertThat("incorrect pulled", source.pulled, is(1));
+
+		final List<String> rest = new LinkedList<>();
+		iter.forEachRemaining(rest::add);
+		assertThat("incorrect elements", rest, is(Arrays.asList("s2", "s3")));
+
+		try {
+			l.iterator();
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IllegalStateException(
+					"This list has already been iterated"));
+		}
+		try {
+			l.size();
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IllegalStateException(
+					"This list has already been iterated"));
+		}
+	}
+
+	@Test
+	public void materialize() throws Exception {
+		final TestIterator source = new TestIterator(1, 2, 3);
+		final StreamingList<String> l = new StreamingList<>(source, i -> "s" + i);
+
+		assertThat("incorrect size", l.size(), is(3));
+		assertThat("incorrect closed", source.closed, is(true));
+		assertThat("incorrect get", l.get(1), is("s2"));
+		assertThat("incorrect list", l, is(Arrays.asList("s1", "s2", "s3")));
+		// can iterate multiple times after materializing
+		assertThat("incorrect list", new LinkedList<>(l), is(Arrays.asList("s1", "s2", "s3")));
+		assertThat("incorrect list", new LinkedList<>(l), is(Arrays.asList("s1", "s2", "s3")));
+	}
+
+	@Test
+	public void serialize() throws Exception {
+		final TestIterator source = new TestIterator(1, 2, 3);
+		final StreamingList<String> l = new StreamingList<>(source, i -> "s" + i);
+
+		// wrap the list as the JSON-RPC server does
+		final String json = new ObjectMapper().writeValueAsString(
+				Collections.singletonMap("result", Arrays.asList(l)));
+
+		assertThat("incorrect json", json, is("{\"result\":[[\"s1\",\"s2\",\"s3\"]]}"));
+		assertThat("incorrect closed", source.closed, is(true));
+		// the list was not materialized in memory prior to serialization
+		try {
+			l.size();
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IllegalStateException(
+					"This list has already been iterated"));
+		}
+	}
+
+	@Test
+	public void serializeEmpty() throws Exception {
+		final TestIterator source = new TestIterator();
+		final StreamingList<String> l = new StreamingList<>(source, i -> "s" + i);
+
+		assertThat("incorrect json", new ObjectMapper().writeValueAsString(l), is("[]"));
+		assertThat("incorrect closed", source.closed, is(true));
+	}
+
+	@Test
+	public void serializeFail() throws Exception {
+		final TestIterator source = TestIterator.failing(2, 1, 2, 3);
+		final StreamingList<String> l = new StreamingList<>(source, i -> "s" + i);
+
+		try {
+			new ObjectMapper().writeValueAsString(l);
+			fail("expected exception");
+		} catch (JsonMappingException got) {
+			TestCommon.assertExceptionCorrect(got.getCause(), new IllegalStateException("oh no"));
+		}
+		assertThat("incorrect closed", source.closed, is(true));
+		assertLogEventsCorrect(logEvents, new LogEvent(Level.ERROR,
+				"Failed to serialize list after writing 2 elements, the serialized list is " +
+				"incomplete: oh no", StreamingList.class, new IllegalStateException("oh no")));
+	}
+
+	@Test
+	public void bufferAll() throws Exception {
+		final TestIterator source = new TestIterator(1, 2, 3);
+		final StreamingList<String> l = new StreamingList<>(source, i -> "s" + i);
+
+		assertThat("incorrect return", l.buffer(3), sameInstance(l));
+		assertThat("incorrect pulled", source.pulled, is(3));
+		assertThat("incorrect closed", source.closed, is(true));
+		// the list was materialized, so it can be used as a normal list
+		assertThat("incorrect size", l.size(), is(3));
+		assertThat("incorrect json", new ObjectMapper().writeValueAsString(l),
+				is("[\"s1\",\"s2\",\"s3\"]"));
+		assertThat("incorrect list", new LinkedList<>(l), is(Arrays.asList("s1", "s2", "s3")));
+		l.buffer(1); // noop
+	}
+
+	@Test
+	public void bufferPart() throws Exception {
+		final TestIterator source = new TestIterator(1, 2, 3);
+		final StreamingList<String> l = new StreamingList<>(source, i -> "s" + i);
+
+		l.buffer(2);
+		assertThat("incorrect pulled", source.pulled, is(2));
+		assertThat("incorrect closed", source.closed, is(false));
+		l.buffer(2); // noop, already buffered
+		assertThat("incorrect pulled", source.pulled, is(2));
+
+		assertThat("incorrect json", new ObjectMapper().writeValueAsString(l),
+				is("[\"s1\",\"s2\",\"s3\"]"));
+		assertThat("incorrect closed", source.closed, is(true));
+	}
+
+	@Test
+	public void bufferPartMaterialize() throws Exception {
+		final TestIterator source = new TestIterator(1, 2, 3);
+		final StreamingList<String> l = new StreamingList<>(source, i -> "s" + i);
+
+		l.buffer(1);
+		assertThat("incorrect list", l, is(Arrays.asList("s1", "s2", "s3")));
+		assertThat("incorrect closed", source.closed, is(true));
+	}
+
+	@Test
+	public void bufferEmpty() throws Exception {
+		final TestIterator source = new TestIterator();
+		final StreamingList<String> l = new StreamingList<>(source, i -> "s" + i);
+
+		l.buffer(5);
+		assertThat("incorrect closed", source.closed, is(true));
+		assertThat("incorrect json", new ObjectMapper().writeValueAsString(l), is("[]"));
+	}
+
+	@Test
+	public void bufferFail() throws Exception {
+		final TestIterator source = TestIterator.failing(2, 1, 2, 3);
+		final StreamingList<String> l = new StreamingList<>(source, i -> "s" + i);
+
+		try {
+			l.buffer(5);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IllegalStateException("oh no"));
+		}
+		assertThat("incorrect closed", source.closed, is(true));
+		// nothing was serialized, so nothing is logged
+		assertLogEventsCorrect(logEvents);
+	}
+
+	@Test
+	public void bufferFailBadArgs() throws Exception {
+		final StreamingList<String> l = new StreamingList<>(new TestIterator(1), i -> "s" + i);
+		for (final int max: Arrays.asList(0, -1)) {
+			try {
+				l.buffer(max);
+				fail("expected exception");
+			} catch (Exception got) {
+				TestCommon.assertExceptionCorrect(got, new IllegalArgumentException(
+						"maxElements must be > 0"));
+			}
+		}
+		l.iterator();
+		try {
+			l.buffer(1);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IllegalStateException(
+					"This list has already been iterated"));
+		}
+	}
+}
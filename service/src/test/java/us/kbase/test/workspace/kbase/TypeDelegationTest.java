@@ -261,6 +261,9 @@ public class TypeDelegationTest {
 				// this will also insert into the type db but the collection is unused so meh
 				wsdb.getCollection("dyncfg").insertOne(
 						new Document("key", DynamicConfig.KEY_BACKEND_SCALING).append("value", 1));
+				wsdb.getCollection("dyncfg").insertOne(
+						new Document("key", DynamicConfig.KEY_BACKEND_UPLOAD_SCALING)
+								.append("value", 1));
 			}
 		}
 	}
@@ -0,0 +1,101 @@
+package us.kbase.test.workspace.kbase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import us.kbase.test.common.TestCommon;
+import us.kbase.workspace.kbase.VerifiedIDCache;
+
+public class VerifiedIDCacheTest {
+
+	private static final Duration TTL = Duration.ofMinutes(1);
+
+	private final AtomicLong time = new AtomicLong();
+	private final Ticker ticker = time::get;
+
+	@Test
+	public void constructFail() throws Exception {
+		failConstruct(0, TTL, ticker, new IllegalArgumentException("maxEntries must be > 0"));
+		failConstruct(1, null, ticker, new NullPointerException("ttl"));
+		failConstruct(1, Duration.ZERO, ticker,
+				new IllegalArgumentException("ttl must be positive"));
+		failConstruct(1, Duration.ofSeconds(-1), ticker,
+				new IllegalArgumentException("ttl must be positive"));
+		failConstruct(1, TTL, null, new NullPointerException("ticker"));
+	}
+
+	private void failConstruct(
+			final long maxEntries,
+			final Duration ttl,
+			final Ticker ticker,
+			final Exception expected) {
+		try {
+			new VerifiedIDCache(maxEntries, ttl, ticker);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+	@Test
+	public void verify() throws Exception {
+		final VerifiedIDCache cache = new VerifiedIDCache(100, TTL, ticker);
+
+		assertThat("incorrect verified", cache.isVerified("user", "id1"), is(false));
+
+		cache.setVerified("user", "id1");
+
+		assertThat("incorrect verified", cache.isVerified("user", "id1"), is(true));
+		assertThat("incorrect verified", cache.isVerified("user", "id2"), is(false));
+		assertThat("incorrect verified", cache.isVerified("user2", "id1"), is(false));
+		assertThat("incorrect hits", cache.getStats().hitCount(), is(1L));
+		assertThat("incorrect misses", cache.getStats().missCount(), is(3L));
+	}
+
+	@Test
+	public void expire() throws Exception {
+		final VerifiedIDCache cache = new VerifiedIDCache(100, TTL, ticker);
+
+		cache.setVerified("user", "id1");
+		time.addAndGet(TTL.toNanos() - 1);
+		assertThat("incorrect verified", cache.isVerified("user", "id1"), is(true));
+
+		time.addAndGet(1);
+		assertThat("incorrect verified", cache.isVerified("user", "id1"), is(false));
+	}
+
+	@Test
+	public void failNulls() throws Exception {
+		final VerifiedIDCache cache = new VerifiedIDCache(100, TTL, ticker);
+
+		failVerified(cache, null, "n", new NullPointerException("userName"));
+		failVerified(cache, "u", null, new NullPointerException("id"));
+	}
+
+	private void failVerified(
+			final VerifiedIDCache cache,
+			final String user,
+			final String id,
+			final Exception expected) {
+		try {
+			cache.isVerified(user, id);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+		try {
+			cache.setVerified(user, id);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+}
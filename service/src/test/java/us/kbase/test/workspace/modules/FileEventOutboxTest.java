@@ -0,0 +1,353 @@
+package us.kbase.test.workspace.modules;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import us.kbase.test.common.TestCommon;
+import us.kbase.workspace.modules.FileEventOutbox;
+import us.kbase.workspace.modules.FileEventOutbox.Batch;
+
+public class FileEventOutboxTest {
+
+	private static Path tempDir;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		final Path temppath = Paths.get(TestCommon.getTempDir());
+		Files.createDirectories(temppath);
+		tempDir = Files.createTempDirectory(temppath, "FileEventOutboxTest");
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		if (tempDir != null && TestCommon.getDeleteTempFiles()) {
+			FileUtils.deleteDirectory(tempDir.toFile());
+		}
+	}
+
+	private static Path newDir() throws IOException {
+		return Files.createTempDirectory(tempDir, "outbox");
+	}
+
+	private static Map<String, Object> event(final int id) {
+		return ImmutableMap.of("wsid", id, "evtype", "NEW_VERSION");
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Map<String, Object>> events(final int... ids) {
+		final Map<String, Object>[] ret = new Map[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			ret[i] = event(ids[i]);
+		}
+		return Arrays.asList(ret);
+	}
+
+	@Test
+	public void emptyOutbox() throws Exception {
+		final FileEventOutbox ob = new FileEventOutbox(newDir(), false);
+
+		assertThat("incorrect backlog", ob.getBacklog(), is(0L));
+		final Batch b = ob.next(10, 0);
+		assertThat("incorrect empty", b.isEmpty(), is(true));
+		assertThat("incorrect events", b.getEvents(), is(Collections.emptyList()));
+		ob.commit(b); // noop
+		ob.close();
+	}
+
+	@Test
+	public void appendNextCommit() throws Exception {
+		final FileEventOutbox ob = new FileEventOutbox(newDir(), true);
+		for (int i = 1; i < 6; i++) {
+			ob.append(event(i));
+		}
+		assertThat("incorrect backlog", ob.getBacklog(), is(5L));
+
+		final Batch b1 = ob.next(3, 0);
+		assertThat("incorrect events", b1.getEvents(), is(events(1, 2, 3)));
+		// uncommitted batches are returned again
+		assertThat("incorrect events", ob.next(3, 0).getEvents(), is(events(1, 2, 3)));
+		ob.commit(b1);
+		assertThat("incorrect backlog", ob.getBacklog(), is(2L));
+
+		final Batch b2 = ob.next(3, 0);
+		assertThat("incorrect events", b2.getEvents(), is(events(4, 5)));
+		ob.commit(b2);
+		assertThat("incorrect backlog", ob.getBacklog(), is(0L));
+		assertThat("incorrect empty", ob.next(3, 0).isEmpty(), is(true));
+		ob.close();
+	}
+
+	@Test
+	public void nextWaitsForEvents() throws Exception {
+		final FileEventOutbox ob = new FileEventOutbox(newDir(), false);
+		final Thread t = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+				ob.append(event(1));
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		t.start();
+		final Batch b = ob.next(10, 10000);
+		t.join();
+
+		assertThat("incorrect events", b.getEvents(), is(events(1)));
+		ob.close();
+	}
+
+	@Test
+	public void reopen() throws Exception {
+		final Path dir = newDir();
+		final FileEventOutbox ob = new FileEventOutbox(dir, false);
+		for (int i = 1; i < 5; i++) {
+			ob.append(event(i));
+		}
+		ob.commit(ob.next(1, 0));
+		ob.next(2, 0); // read but not committed
+		ob.close();
+
+		final FileEventOutbox ob2 = new FileEventOutbox(dir, false);
+		assertThat("incorrect backlog", ob2.getBacklog(), is(3L));
+		assertThat("incorrect events", ob2.next(10, 0).getEvents(), is(events(2, 3, 4)));
+		ob2.close();
+	}
+
+	@Test
+	public void reopenWithPartialEvent() throws Exception {
+		final Path dir = newDir();
+		final FileEventOutbox ob = new FileEventOutbox(dir, false);
+		ob.append(event(1));
+		ob.append(event(2));
+		ob.close();
+		Files.write(dir.resolve("events-0.log"), "{\"wsid\":".getBytes(),
+				StandardOpenOption.APPEND);
+
+		final FileEventOutbox ob2 = new FileEventOutbox(dir, false);
+		assertThat("incorrect backlog", ob2.getBacklog(), is(2L));
+		ob2.append(event(3));
+		assertThat("incorrect events", ob2.next(10, 0).getEvents(), is(events(1, 2, 3)));
+		ob2.close();
+	}
+
+	@Test
+	public void skipCorruptEvents() throws Exception {
+		final Path dir = newDir();
+		final FileEventOutbox ob = new FileEventOutbox(dir, false);
+		ob.append(event(1));
+		ob.close();
+		Files.write(dir.resolve("events-0.log"), "{\"wsid\": 2, bad\n[3]\n".getBytes(),
+				StandardOpenOption.APPEND);
+
+		final FileEventOutbox ob2 = new FileEventOutbox(dir, false);
+		ob2.append(event(4));
+		assertThat("incorrect backlog", ob2.getBacklog(), is(4L));
+		final Batch b1 = ob2.next(1, 0);
+		assertThat("incorrect events", b1.getEvents(), is(events(1)));
+		ob2.commit(b1);
+		assertThat("incorrect corrupt", ob2.getCorruptEvents(), is(0L));
+
+		final Batch b2 = ob2.next(10, 0);
+		assertThat("incorrect events", b2.getEvents(), is(events(4)));
+		// corrupt events are only counted once they're committed
+		assertThat("incorrect corrupt", ob2.getCorruptEvents(), is(0L));
+		ob2.commit(b2);
+		assertThat("incorrect backlog", ob2.getBacklog(), is(0L));
+		assertThat("incorrect corrupt", ob2.getCorruptEvents(), is(2L));
+		assertThat("incorrect empty", ob2.next(10, 0).isEmpty(), is(true));
+		ob2.close();
+	}
+
+	@Test
+	public void skipCorruptEventsOnly() throws Exception {
+		final Path dir = newDir();
+		Files.write(dir.resolve("events-0.log"), "not json\n".getBytes());
+		final FileEventOutbox ob = new FileEventOutbox(dir, false);
+		assertThat("incorrect backlog", ob.getBacklog(), is(1L));
+
+		final Batch b = ob.next(10, 0);
+		assertThat("incorrect empty", b.isEmpty(), is(true));
+		ob.commit(b);
+		assertThat("incorrect backlog", ob.getBacklog(), is(0L));
+		assertThat("incorrect corrupt", ob.getCorruptEvents(), is(1L));
+		ob.close();
+	}
+
+	@Test
+	public void segments() throws Exception {
+		final Path dir = newDir();
+		// each event is 34 bytes, so 3 events fill a segment
+		final FileEventOutbox ob = new FileEventOutbox(dir, false, 100, 100);
+		for (int i = 1; i < 8; i++) {
+			ob.append(event(i));
+		}
+		assertThat("incorrect backlog", ob.getBacklog(), is(7L));
+		assertThat("missing segment", Files.exists(dir.resolve("events-2.log")), is(true));
+
+		// batches don't span segments
+		final Batch b = ob.next(10, 0);
+		assertThat("incorrect events", b.getEvents(), is(events(1, 2, 3)));
+		ob.commit(b);
+		try {
+			ob.commit(b);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IllegalStateException(
+					"The batch has already been committed"));
+		}
+		assertThat("delivered segment exists", Files.exists(dir.resolve("events-0.log")),
+				is(false));
+		ob.close();
+
+		final FileEventOutbox ob2 = new FileEventOutbox(dir, false, 100, 100);
+		assertThat("incorrect backlog", ob2.getBacklog(), is(4L));
+		ob2.commit(ob2.next(10, 0));
+		assertThat("delivered segment exists", Files.exists(dir.resolve("events-1.log")),
+				is(false));
+		assertThat("incorrect log size", Files.size(dir.resolve("events-2.log")),
+				is((long) "{\"wsid\":7,\"evtype\":\"NEW_VERSION\"}\n".length()));
+		assertThat("incorrect events", ob2.next(10, 0).getEvents(), is(events(7)));
+		ob2.close();
+	}
+
+	@Test
+	public void newSegmentAfterDelivery() throws Exception {
+		final Path dir = newDir();
+		final FileEventOutbox ob = new FileEventOutbox(dir, false, 100, 100);
+		for (int i = 1; i < 4; i++) {
+			ob.append(event(i));
+		}
+		ob.commit(ob.next(10, 0));
+		// the delivered segment is full, so a new segment is started
+		ob.append(event(4));
+		assertThat("incorrect backlog", ob.getBacklog(), is(1L));
+		final Batch b = ob.next(10, 0);
+		assertThat("incorrect events", b.getEvents(), is(events(4)));
+		assertThat("delivered segment exists", Files.exists(dir.resolve("events-0.log")),
+				is(false));
+		ob.commit(b);
+		ob.close();
+	}
+
+	@Test
+	public void backlogFull() throws Exception {
+		final Path dir = newDir();
+		final FileEventOutbox ob = new FileEventOutbox(dir, false, 100, 2);
+		ob.append(event(1));
+		ob.append(event(2));
+		try {
+			ob.append(event(3));
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IOException(
+					"The outbox at " + dir + " is full with 2 undelivered events"));
+		}
+		ob.commit(ob.next(1, 0));
+		ob.append(event(3));
+		assertThat("incorrect events", ob.next(10, 0).getEvents(), is(events(2, 3)));
+		ob.close();
+	}
+
+	@Test
+	public void commitTwice() throws Exception {
+		final FileEventOutbox ob = new FileEventOutbox(newDir(), false);
+		ob.append(event(1));
+		ob.append(event(2));
+		final Batch b = ob.next(1, 0);
+		ob.commit(b);
+		try {
+			ob.commit(b);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IllegalStateException(
+					"The batch has already been committed"));
+		}
+		assertThat("incorrect backlog", ob.getBacklog(), is(1L));
+		ob.close();
+	}
+
+	@Test
+	public void constructFail() throws Exception {
+		try {
+			new FileEventOutbox(null, false);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new NullPointerException("dir"));
+		}
+		final Path dir = newDir();
+		try {
+			new FileEventOutbox(dir, false, 0, 1);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IllegalArgumentException(
+					"segmentSize must be > 0"));
+		}
+		try {
+			new FileEventOutbox(dir, false, 1, 0);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IllegalArgumentException(
+					"maxBacklog must be > 0"));
+		}
+		Files.write(dir.resolve("events.offset"), "0 foo\n".getBytes());
+		try {
+			new FileEventOutbox(dir, false);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IOException(
+					"Illegal outbox offset file " + dir.resolve("events.offset")));
+		}
+		Files.write(dir.resolve("events.offset"), "0 10\n".getBytes());
+		try {
+			new FileEventOutbox(dir, false);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IOException(
+					"Outbox offset 10 is beyond the end of the log " +
+					dir.resolve("events-0.log")));
+		}
+	}
+
+	@Test
+	public void appendAndNextFail() throws Exception {
+		final FileEventOutbox ob = new FileEventOutbox(newDir(), false);
+		try {
+			ob.append(null);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new NullPointerException("event"));
+		}
+		try {
+			ob.next(0, 0);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new IllegalArgumentException(
+					"maxEvents must be > 0"));
+		}
+		try {
+			ob.commit(null);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new NullPointerException("batch"));
+		}
+		ob.close();
+	}
+}
@@ -0,0 +1,257 @@
+package us.kbase.test.workspace.modules;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.NotEnoughReplicasException;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import us.kbase.test.common.TestCommon;
+import us.kbase.workspace.modules.FileEventOutbox;
+import us.kbase.workspace.modules.KafkaNotifierFactory.MapSerializer;
+import us.kbase.workspace.modules.KafkaOutboxSender;
+
+public class KafkaOutboxSenderTest {
+
+	private static Path tempDir;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		final Path temppath = Paths.get(TestCommon.getTempDir());
+		Files.createDirectories(temppath);
+		tempDir = Files.createTempDirectory(temppath, "KafkaOutboxSenderTest");
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		if (tempDir != null && TestCommon.getDeleteTempFiles()) {
+			FileUtils.deleteDirectory(tempDir.toFile());
+		}
+	}
+
+	private static FileEventOutbox newOutbox() throws IOException {
+		return new FileEventOutbox(Files.createTempDirectory(tempDir, "outbox"), false);
+	}
+
+	private static Map<String, Object> event(final int id) {
+		return ImmutableMap.of("wsid", id, "evtype", "NEW_VERSION");
+	}
+
+	private static MockProducer<String, Map<String, Object>> mockProducer() {
+		return new MockProducer<>(true, new StringSerializer(), new MapSerializer());
+	}
+
+	private static Object sentIDs(final MockProducer<String, Map<String, Object>> client) {
+		return client.history().stream().map(r -> r.value().get("wsid"))
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void sendBatches() throws Exception {
+		final MockProducer<String, Map<String, Object>> client = mockProducer();
+		final FileEventOutbox outbox = newOutbox();
+		for (int i = 1; i < 6; i++) {
+			outbox.append(event(i));
+		}
+		final KafkaOutboxSender sender = new KafkaOutboxSender(client, "mytopic", outbox, 3);
+
+		assertThat("incorrect send", sender.sendBatch(), is(true));
+		assertThat("incorrect sent", sentIDs(client), is(Arrays.asList(1, 2, 3)));
+		assertThat("incorrect backlog", sender.getBacklog(), is(2L));
+		assertThat("incorrect sent count", sender.getSentEvents(), is(3L));
+
+		assertThat("incorrect send", sender.sendBatch(), is(true));
+		assertThat("incorrect sent", sentIDs(client), is(Arrays.asList(1, 2, 3, 4, 5)));
+		assertThat("incorrect topic", client.history().get(4).topic(), is("mytopic"));
+		assertThat("incorrect backlog", sender.getBacklog(), is(0L));
+		assertThat("incorrect sent count", sender.getSentEvents(), is(5L));
+		assertThat("incorrect failures", sender.getFailedBatches(), is(0L));
+		assertThat("incorrect error", sender.getLastError(), is(Optional.empty()));
+		outbox.close();
+	}
+
+	@Test
+	public void sendInBackground() throws Exception {
+		final MockProducer<String, Map<String, Object>> client = mockProducer();
+		final FileEventOutbox outbox = newOutbox();
+		final KafkaOutboxSender sender = new KafkaOutboxSender(client, "mytopic", outbox, 2);
+		sender.start();
+		for (int i = 1; i < 6; i++) {
+			outbox.append(event(i));
+		}
+		for (int i = 0; i < 100 && sender.getSentEvents() < 5; i++) {
+			Thread.sleep(50);
+		}
+		sender.stop();
+
+		assertThat("incorrect sent", sentIDs(client), is(Arrays.asList(1, 2, 3, 4, 5)));
+		assertThat("incorrect backlog", sender.getBacklog(), is(0L));
+		assertThat("incorrect closed", client.closed(), is(true));
+		outbox.close();
+	}
+
+	@Test
+	public void sendFailAndRetry() throws Exception {
+		@SuppressWarnings("unchecked")
+		final Producer<String, Map<String, Object>> client = mock(Producer.class);
+		@SuppressWarnings("unchecked")
+		final Future<RecordMetadata> good = mock(Future.class);
+		@SuppressWarnings("unchecked")
+		final Future<RecordMetadata> bad = mock(Future.class);
+		when(bad.get(anyLong(), any())).thenThrow(new ExecutionException(
+				new IllegalStateException("well poop")));
+		final FileEventOutbox outbox = newOutbox();
+		outbox.append(event(1));
+		outbox.append(event(2));
+		final KafkaOutboxSender sender = new KafkaOutboxSender(client, "mytopic", outbox, 5);
+
+		when(client.send(any(ProducerRecord.class))).thenReturn(good, bad);
+		assertThat("incorrect send", sender.sendBatch(), is(false));
+		assertThat("incorrect backlog", sender.getBacklog(), is(2L));
+		assertThat("incorrect sent count", sender.getSentEvents(), is(0L));
+		assertThat("incorrect failures", sender.getFailedBatches(), is(1L));
+		assertThat("incorrect error", sender.getLastError(), is(Optional.of(
+				"Failed sending notifications to Kafka: well poop")));
+
+		when(client.send(any(ProducerRecord.class))).thenReturn(good);
+		assertThat("incorrect send", sender.sendBatch(), is(true));
+		assertThat("incorrect backlog", sender.getBacklog(), is(0L));
+		assertThat("incorrect sent count", sender.getSentEvents(), is(2L));
+		assertThat("incorrect failures", sender.getFailedBatches(), is(1L));
+		outbox.close();
+	}
+
+	@Test
+	public void dropUnsendableEvents() throws Exception {
+		@SuppressWarnings("unchecked")
+		final Producer<String, Map<String, Object>> client = mock(Producer.class);
+		@SuppressWarnings("unchecked")
+		final Future<RecordMetadata> good = mock(Future.class);
+		@SuppressWarnings("unchecked")
+		final Future<RecordMetadata> tooLarge = mock(Future.class);
+		when(tooLarge.get(anyLong(), any())).thenThrow(new ExecutionException(
+				new RecordTooLargeException("too big")));
+		final FileEventOutbox outbox = newOutbox();
+		for (int i = 1; i < 5; i++) {
+			outbox.append(event(i));
+		}
+		final KafkaOutboxSender sender = new KafkaOutboxSender(client, "mytopic", outbox, 5);
+
+		when(client.send(any(ProducerRecord.class))).thenReturn(good, tooLarge)
+				.thenThrow(new SerializationException("can't serialize"))
+				.thenReturn(good);
+		assertThat("incorrect send", sender.sendBatch(), is(true));
+		assertThat("incorrect backlog", sender.getBacklog(), is(0L));
+		assertThat("incorrect sent count", sender.getSentEvents(), is(2L));
+		assertThat("incorrect dropped count", sender.getDroppedEvents(), is(2L));
+		assertThat("incorrect failures", sender.getFailedBatches(), is(0L));
+		assertThat("incorrect error", sender.getLastError(), is(Optional.empty()));
+		outbox.close();
+	}
+
+	@Test
+	public void retryWithUnsendableEvents() throws Exception {
+		// other errors cause a retry, and the events aren't dropped until the batch is sent
+		@SuppressWarnings("unchecked")
+		final Producer<String, Map<String, Object>> client = mock(Producer.class);
+		@SuppressWarnings("unchecked")
+		final Future<RecordMetadata> good = mock(Future.class);
+		@SuppressWarnings("unchecked")
+		final Future<RecordMetadata> bad = mock(Future.class);
+		when(bad.get(anyLong(), any())).thenThrow(new ExecutionException(
+				new NotEnoughReplicasException("no replicas")));
+		final FileEventOutbox outbox = newOutbox();
+		outbox.append(event(1));
+		outbox.append(event(2));
+		final KafkaOutboxSender sender = new KafkaOutboxSender(client, "mytopic", outbox, 5);
+
+		when(client.send(any(ProducerRecord.class)))
+				.thenThrow(new SerializationException("can't serialize"))
+				.thenReturn(bad);
+		assertThat("incorrect send", sender.sendBatch(), is(false));
+		assertThat("incorrect backlog", sender.getBacklog(), is(2L));
+		assertThat("incorrect dropped count", sender.getDroppedEvents(), is(0L));
+		assertThat("incorrect failures", sender.getFailedBatches(), is(1L));
+		assertThat("incorrect error", sender.getLastError(), is(Optional.of(
+				"Failed sending notifications to Kafka: no replicas")));
+
+		when(client.send(any(ProducerRecord.class)))
+				.thenThrow(new SerializationException("can't serialize"))
+				.thenReturn(good);
+		assertThat("incorrect send", sender.sendBatch(), is(true));
+		assertThat("incorrect backlog", sender.getBacklog(), is(0L));
+		assertThat("incorrect sent count", sender.getSentEvents(), is(1L));
+		assertThat("incorrect dropped count", sender.getDroppedEvents(), is(1L));
+		outbox.close();
+	}
+
+	@Test
+	public void skipCorruptEvents() throws Exception {
+		final MockProducer<String, Map<String, Object>> client = mockProducer();
+		final Path dir = Files.createTempDirectory(tempDir, "outbox");
+		Files.write(dir.resolve("events-0.log"), "not json\n".getBytes());
+		final FileEventOutbox outbox = new FileEventOutbox(dir, false);
+		outbox.append(event(1));
+		final KafkaOutboxSender sender = new KafkaOutboxSender(client, "mytopic", outbox, 1);
+
+		assertThat("incorrect send", sender.sendBatch(), is(true));
+		assertThat("incorrect sent", sentIDs(client), is(Arrays.asList(1)));
+		assertThat("incorrect backlog", sender.getBacklog(), is(0L));
+		assertThat("incorrect corrupt", outbox.getCorruptEvents(), is(1L));
+		outbox.close();
+	}
+
+	@Test
+	public void constructFail() throws Exception {
+		final MockProducer<String, Map<String, Object>> client = mockProducer();
+		final FileEventOutbox outbox = newOutbox();
+		failConstruct(null, "t", outbox, 1, new NullPointerException("client"));
+		failConstruct(client, null, outbox, 1, new NullPointerException("topic"));
+		failConstruct(client, "t", null, 1, new NullPointerException("outbox"));
+		failConstruct(client, "t", outbox, 0, new IllegalArgumentException(
+				"batchSize must be > 0"));
+		outbox.close();
+	}
+
+	private void failConstruct(
+			final Producer<String, Map<String, Object>> client,
+			final String topic,
+			final FileEventOutbox outbox,
+			final int batchSize,
+			final Exception expected) {
+		try {
+			new KafkaOutboxSender(client, topic, outbox, batchSize);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+}
@@ -10,13 +10,19 @@ import static org.mockito.Mockito.when;
 import static us.kbase.test.common.TestCommon.list;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.Before;
@@ -31,6 +37,8 @@ import us.kbase.typedobj.core.TempFilesManager;
 import us.kbase.typedobj.exceptions.TypedObjectExtractionException;
 import us.kbase.workspace.database.ByteArrayFileCacheManager;
 import us.kbase.workspace.database.ByteArrayFileCacheManager.ByteArrayFileCache;
+import us.kbase.workspace.database.ByteArrayFileCacheManager.RangeSource;
+import us.kbase.workspace.database.ByteArrayFileCacheManager.SharedData;
 
 public class ByteArrayFileCacheManagerTest {
 	
@@ -204,6 +212,288 @@ public class ByteArrayFileCacheManagerTest {
 		}
 	}
 	
+	private static final String RANGE_JSON = "{\"foo\": \"bar\", \"baz\": [1, 2, 3]}";
+	
+	private static RangeSource getRangeSource(final String data, final int rangeSize) {
+		// write the ranges in reverse order, concurrently
+		return sink -> {
+			final byte[] b = data.getBytes(StandardCharsets.UTF_8);
+			final List<Thread> threads = new LinkedList<>();
+			final List<Exception> errors = Collections.synchronizedList(new LinkedList<>());
+			for (int i = (b.length - 1) / rangeSize; i >= 0; i--) {
+				final int start = i * rangeSize;
+				final int len = Math.min(rangeSize, b.length - start);
+				final Thread t = new Thread(() -> {
+					try {
+						sink.write(start, new ByteArrayInputStream(b, start, len), len);
+					} catch (Exception e) {
+						errors.add(e);
+					}
+				});
+				threads.add(t);
+				t.start();
+			}
+			for (final Thread t: threads) {
+				try {
+					t.join();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			if (!errors.isEmpty()) {
+				throw new IOException(errors.get(0).getMessage(), errors.get(0));
+			}
+		};
+	}
+	
+	@Test
+	public void createAndDestroyRangedBAFCInMem() throws Exception {
+		createAndDestroyRangedBAFC(null, true, true, 3);
+		createAndDestroyRangedBAFC(null, false, true, 5);
+		createAndDestroyRangedBAFC(null, true, false, 100);
+		createAndDestroyRangedBAFC(null, false, false, 1);
+	}
+	
+	@Test
+	public void createAndDestroyRangedBAFCOnDisk() throws Exception {
+		createAndDestroyRangedBAFC(TFM, true, true, 3);
+		createAndDestroyRangedBAFC(TFM, false, true, 5);
+		createAndDestroyRangedBAFC(TFM, true, false, 100);
+		createAndDestroyRangedBAFC(TFM, false, false, 1);
+	}
+	
+	private void createAndDestroyRangedBAFC(
+			final TempFilesManager tfm,
+			final boolean trustedJson,
+			final boolean sorted,
+			final int rangeSize)
+			throws Exception {
+		final ByteArrayFileCacheManager m = new ByteArrayFileCacheManager(tfm);
+		
+		final ByteArrayFileCache b = m.createBAFC(
+				32, getRangeSource(RANGE_JSON, rangeSize), trustedJson, sorted);
+		
+		assertThat("incorrect file count", TFM.getTempFileList().size(), is(tfm == null ? 0 : 1));
+		assertThat("incorrect sorted", b.isSorted(), is(sorted));
+		assertThat("incorrect trusted json", b.containsTrustedJson(), is(trustedJson));
+		assertThat("incorrect size", b.getSize(), is(32L));
+		assertThat("incorrect JSON", IOUtils.toString(b.getJSON()), is(RANGE_JSON));
+		assertThat("incorrect UObject", b.getUObject().asClassInstance(Map.class),
+				is(ImmutableMap.of("foo", "bar", "baz", list(1, 2, 3))));
+		
+		destroyTwice(b);
+		assertThat("incorrect file count", TFM.getTempFileList().size(), is(0));
+	}
+	
+	@Test
+	public void createRangedBAFCFailBadInput() throws Exception {
+		final RangeSource rs = getRangeSource(RANGE_JSON, 5);
+		failCreateRangedBAFC(null, 32, null, new NullPointerException("source"));
+		failCreateRangedBAFC(null, -1, rs, new IllegalArgumentException("size must be >= 0"));
+		failCreateRangedBAFC(null, 1L + Integer.MAX_VALUE, rs, new IllegalArgumentException(
+				"size is too large to be stored in memory: 2147483648"));
+	}
+	
+	@Test
+	public void createRangedBAFCFailOutOfRange() throws Exception {
+		for (final TempFilesManager tfm: Arrays.asList(null, TFM)) {
+			failCreateRangedBAFC(tfm, 31, getRangeSource(RANGE_JSON, 5), new IOException(
+					"Range at position 30 with length 2 is outside of data of size 31"));
+			failCreateRangedBAFC(tfm, 32, sink -> sink.write(-1, null, 1),
+					new IllegalArgumentException(
+							"Range at position -1 with length 1 is outside of data of size 32"));
+			failCreateRangedBAFC(tfm, 32, sink -> sink.write(1, null, -1),
+					new IllegalArgumentException(
+							"Range at position 1 with length -1 is outside of data of size 32"));
+			assertThat("didn't delete file", TFM.getTempFileList().size(), is(0));
+		}
+	}
+	
+	@Test
+	public void createRangedBAFCFailShortInput() throws Exception {
+		for (final TempFilesManager tfm: Arrays.asList(null, TFM)) {
+			failCreateRangedBAFC(tfm, 32, sink -> sink.write(
+					0, new ByteArrayInputStream(new byte[10]), 11),
+					new EOFException("Length to read: 11 actual: 10"));
+			assertThat("didn't delete file", TFM.getTempFileList().size(), is(0));
+		}
+	}
+	
+	@Test
+	public void createRangedBAFCFailIOExceptionWithFile() throws Exception {
+		final List<File> createdFiles = new LinkedList<>(); 
+		final TempFileListener listener = f -> createdFiles.add(f);
+		TFM.addListener(listener);
+		try {
+			failCreateRangedBAFC(TFM, 32, sink -> {throw new IOException("rats");},
+					new IOException("rats"));
+			assertThat("incorrect files", createdFiles.size(), is(1));
+			assertThat("didn't delete file", TFM.getTempFileList().size(), is(0));
+		} finally {
+			TFM.removeListener(listener);
+		}
+	}
+	
+	private void failCreateRangedBAFC(
+			final TempFilesManager tfm,
+			final long size,
+			final RangeSource source,
+			final Exception expected) {
+		try {
+			new ByteArrayFileCacheManager(tfm).createBAFC(size, source, false, false);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+	
+	@Test
+	public void createAndDestroySizedBAFC() throws Exception {
+		for (final TempFilesManager tfm: Arrays.asList(null, TFM)) {
+			final ByteArrayFileCacheManager m = new ByteArrayFileCacheManager(tfm);
+			final InputStream is = new ByteArrayInputStream(RANGE_JSON.getBytes());
+			
+			final ByteArrayFileCache b = m.createBAFC(is, 32, true, false);
+			
+			assertThat("incorrect file count", TFM.getTempFileList().size(),
+					is(tfm == null ? 0 : 1));
+			assertThat("incorrect sorted", b.isSorted(), is(false));
+			assertThat("incorrect trusted json", b.containsTrustedJson(), is(true));
+			assertThat("incorrect size", b.getSize(), is(32L));
+			assertThat("incorrect JSON", IOUtils.toString(b.getJSON()), is(RANGE_JSON));
+			
+			destroyTwice(b);
+			assertThat("incorrect file count", TFM.getTempFileList().size(), is(0));
+		}
+	}
+	
+	@Test
+	public void createSizedBAFCFail() throws Exception {
+		for (final TempFilesManager tfm: Arrays.asList(null, TFM)) {
+			failCreateSizedBAFC(tfm, null, 32, new NullPointerException("input"));
+			failCreateSizedBAFC(tfm, RANGE_JSON, 31, new IOException(
+					"Input data is longer than the expected size of 31"));
+			failCreateSizedBAFC(tfm, RANGE_JSON, 33,
+					new EOFException("Length to read: 33 actual: 32"));
+			assertThat("didn't delete file", TFM.getTempFileList().size(), is(0));
+		}
+	}
+	
+	private void failCreateSizedBAFC(
+			final TempFilesManager tfm,
+			final String data,
+			final long size,
+			final Exception expected) {
+		try {
+			new ByteArrayFileCacheManager(tfm).createBAFC(data == null ? null :
+				new ByteArrayInputStream(data.getBytes()), size, false, false);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+	
+	@Test
+	public void shareInMem() throws Exception {
+		share(null);
+	}
+	
+	@Test
+	public void shareOnDisk() throws Exception {
+		share(TFM);
+	}
+	
+	private void share(final TempFilesManager tfm) throws Exception {
+		final ByteArrayFileCacheManager m = new ByteArrayFileCacheManager(tfm);
+		final ByteArrayFileCache b = m.createBAFC(
+				new ByteArrayInputStream(RANGE_JSON.getBytes()), true, true);
+		
+		final SharedData sd = b.share();
+		checkDestroyed(b);
+		assertThat("incorrect size", sd.getSize(), is(32L));
+		assertThat("incorrect on disk", sd.isStoredOnDisk(), is(tfm != null));
+		
+		// the manager's storage mode is ignored
+		final ByteArrayFileCache b1 = new ByteArrayFileCacheManager(TFM).createBAFC(sd).get();
+		final ByteArrayFileCache b2 = new ByteArrayFileCacheManager().createBAFC(sd).get();
+		for (final ByteArrayFileCache bs: Arrays.asList(b1, b2)) {
+			assertThat("incorrect sorted", bs.isSorted(), is(true));
+			assertThat("incorrect trusted json", bs.containsTrustedJson(), is(true));
+			assertThat("incorrect size", bs.getSize(), is(32L));
+		}
+		// check the caches read the data independently
+		final Reader r1 = b1.getJSON();
+		final Reader r2 = b2.getJSON();
+		assertThat("incorrect JSON", IOUtils.toString(r1), is(RANGE_JSON));
+		assertThat("incorrect JSON", IOUtils.toString(r2), is(RANGE_JSON));
+		final int files = tfm == null ? 0 : 1;
+		assertThat("incorrect file count", TFM.getTempFileList().size(), is(files));
+		
+		sd.release();
+		sd.release(); // noop
+		destroyTwice(b1);
+		assertThat("incorrect file count", TFM.getTempFileList().size(), is(files));
+		assertThat("incorrect JSON", IOUtils.toString(b2.getJSON()), is(RANGE_JSON));
+		destroyTwice(b2);
+		assertThat("incorrect file count", TFM.getTempFileList().size(), is(0));
+		
+		assertThat("incorrect create", m.createBAFC(sd), is(Optional.empty()));
+	}
+	
+	@Test
+	public void shareFail() throws Exception {
+		final ByteArrayFileCacheManager m = new ByteArrayFileCacheManager();
+		final ByteArrayFileCache parent = m.createBAFC(
+				new ByteArrayInputStream("{\"foo\": \"bar\"}".getBytes()), true, true);
+		final ByteArrayFileCache subset = m.getSubdataExtraction(
+				parent, new SubsetSelection(list("/foo")));
+		final SharedData sd = m.createBAFC(
+				new ByteArrayInputStream("{}".getBytes()), true, true).share();
+		final ByteArrayFileCache shared = m.createBAFC(sd).get();
+		
+		final Exception expected = new IllegalStateException("Only a cache that is not a " +
+				"subset and does not use shared data can be shared");
+		failShare(subset, expected);
+		failShare(shared, expected);
+		
+		subset.destroy();
+		shared.destroy();
+		sd.release();
+		failShare(shared, new RuntimeException("This ByteArrayFileCache is destroyed"));
+		
+		try {
+			m.createBAFC((SharedData) null);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new NullPointerException("shared"));
+		}
+	}
+	
+	private void failShare(final ByteArrayFileCache b, final Exception expected) {
+		try {
+			b.share();
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+	
+	@Test
+	public void createBAFCInMemLargeData() throws Exception {
+		// tests data that spans many in memory storage segments
+		final StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < 200000; i++) {
+			sb.append(i).append(",");
+		}
+		final String json = sb.append("-1]").toString();
+		
+		final ByteArrayFileCache b = new ByteArrayFileCacheManager().createBAFC(
+				new ByteArrayInputStream(json.getBytes()), true, true);
+		
+		assertThat("incorrect size", b.getSize(), is((long) json.length()));
+		assertThat("incorrect JSON", IOUtils.toString(b.getJSON()), is(json));
+	}
+	
 	@Test
 	public void getSubdataExtractionInMemory() throws Exception {
 		getSubdataExtractionInMemory(true, true);
@@ -21,6 +21,7 @@ import us.kbase.workspace.database.DynamicConfig.DynamicConfigUpdate;
 public class DynamicConfigTest {
 	
 	private static final String BACKEND_SCALING_TXT = "backend-file-retrieval-scaling";
+	private static final String BACKEND_UPLOAD_SCALING_TXT = "backend-file-upload-scaling";
 
 	@Test
 	public void equals() throws Exception {
@@ -33,6 +34,7 @@ public class DynamicConfigTest {
 		final DynamicConfig dc = DynamicConfig.getBuilder().build();
 		
 		assertThat("incorrect scaling", dc.getBackendScaling(), is(EI));
+		assertThat("incorrect upload scaling", dc.getBackendUploadScaling(), is(EI));
 		assertThat("incorrect map", dc.toMap(), is(Collections.emptyMap()));
 	}
 	
@@ -42,6 +44,7 @@ public class DynamicConfigTest {
 				.withMap(Collections.emptyMap()).build();
 		
 		assertThat("incorrect scaling", dc.getBackendScaling(), is(EI));
+		assertThat("incorrect upload scaling", dc.getBackendUploadScaling(), is(EI));
 		assertThat("incorrect map", dc.toMap(), is(Collections.emptyMap()));
 	}
 	
@@ -73,6 +76,53 @@ public class DynamicConfigTest {
 		assertThat("incorrect map", dc2.toMap(), is(ImmutableMap.of(BACKEND_SCALING_TXT, 100000)));
 	}
 	
+	@Test
+	public void buildConfigMaximal() throws Exception {
+		final DynamicConfig dc = DynamicConfig.getBuilder()
+				.withBackendScaling(3)
+				.withBackendUploadScaling(7)
+				.build();
+		
+		assertThat("incorrect scaling", dc.getBackendScaling(), is(opt(3)));
+		assertThat("incorrect upload scaling", dc.getBackendUploadScaling(), is(opt(7)));
+		assertThat("incorrect map", dc.toMap(), is(ImmutableMap.of(
+				BACKEND_SCALING_TXT, 3, BACKEND_UPLOAD_SCALING_TXT, 7)));
+	}
+	
+	@Test
+	public void buildConfigMaximalFromMap() throws Exception {
+		final DynamicConfig dc = DynamicConfig.getBuilder()
+				.withMap(ImmutableMap.of(BACKEND_SCALING_TXT, 3, BACKEND_UPLOAD_SCALING_TXT, 7))
+				.build();
+		
+		assertThat("incorrect scaling", dc.getBackendScaling(), is(opt(3)));
+		assertThat("incorrect upload scaling", dc.getBackendUploadScaling(), is(opt(7)));
+		assertThat("incorrect map", dc.toMap(), is(ImmutableMap.of(
+				BACKEND_SCALING_TXT, 3, BACKEND_UPLOAD_SCALING_TXT, 7)));
+	}
+	
+	@Test
+	public void buildConfigUploadScalingOnly() throws Exception {
+		final DynamicConfig dc = DynamicConfig.getBuilder().withBackendUploadScaling(1).build();
+		
+		assertThat("incorrect scaling", dc.getBackendScaling(), is(EI));
+		assertThat("incorrect upload scaling", dc.getBackendUploadScaling(), is(opt(1)));
+		assertThat("incorrect map", dc.toMap(), is(ImmutableMap.of(
+				BACKEND_UPLOAD_SCALING_TXT, 1)));
+	}
+	
+	@Test
+	public void buildConfigOverrideMapWithUploadScaling() throws Exception {
+		final DynamicConfig dc = DynamicConfig.getBuilder()
+				.withMap(ImmutableMap.of(BACKEND_SCALING_TXT, 3, BACKEND_UPLOAD_SCALING_TXT, 7))
+				.withBackendUploadScaling(10)
+				.withMap(ImmutableMap.of(BACKEND_SCALING_TXT, 5))
+				.build();
+		
+		assertThat("incorrect scaling", dc.getBackendScaling(), is(opt(5)));
+		assertThat("incorrect upload scaling", dc.getBackendUploadScaling(), is(opt(10)));
+	}
+	
 	@Test
 	public void buildConfigOverrideMap() throws Exception {
 		final DynamicConfig dc = DynamicConfig.getBuilder()
@@ -122,6 +172,19 @@ public class DynamicConfigTest {
 		}
 	}
 	
+	@Test
+	public void configWithBackendUploadScalingFail() throws Exception {
+		final String err = "backend upload scaling must be > 0";
+		for (final int scaling: new int[] {0, -1000}) {
+			try {
+				DynamicConfig.getBuilder().withBackendUploadScaling(scaling);
+				fail("expected exception");
+			} catch (Exception got) {
+				TestCommon.assertExceptionCorrect(got, new IllegalArgumentException(err));
+			}
+		}
+	}
+	
 	@Test
 	public void configWithMapFail() throws Exception {
 		final String err = "backend-file-retrieval-scaling must be an integer > 0";
@@ -133,6 +196,11 @@ public class DynamicConfigTest {
 				ImmutableMap.of(BACKEND_SCALING_TXT, "six"), new IllegalArgumentException(err));
 		failConfigWithMap(ImmutableMap.of(BACKEND_SCALING_TXT, 1, "ayyy", "fonz", "baar", "foo"),
 				new IllegalArgumentException("Unexpected key in configuration map: ayyy"));
+		final String uperr = "backend-file-upload-scaling must be an integer > 0";
+		failConfigWithMap(ImmutableMap.of(BACKEND_UPLOAD_SCALING_TXT, 0),
+				new IllegalArgumentException(uperr));
+		failConfigWithMap(ImmutableMap.of(BACKEND_SCALING_TXT, 1, BACKEND_UPLOAD_SCALING_TXT, 6.5),
+				new IllegalArgumentException(uperr));
 		failConfigWithMap(ImmutableMap.of("ribaldry", 1, "ayyyy", "fonz", "baar", "foo"),
 				new IllegalArgumentException("Unexpected key in configuration map: ayyyy"));
 	}
@@ -150,7 +218,8 @@ public class DynamicConfigTest {
 	public void getDefaultUpdate() throws Exception {
 		final DynamicConfigUpdate dcu = DynamicConfigUpdate.getDefault();
 		
-		assertThat("incorrect set", dcu.toSet(), is(ImmutableMap.of(BACKEND_SCALING_TXT, 1)));
+		assertThat("incorrect set", dcu.toSet(), is(ImmutableMap.of(
+				BACKEND_SCALING_TXT, 1, BACKEND_UPLOAD_SCALING_TXT, 1)));
 		assertThat("incorrect map", dcu.toRemove(), is(Collections.emptySet()));
 	}
 	
@@ -202,6 +271,30 @@ public class DynamicConfigTest {
 		assertThat("incorrect map", dcu2.toRemove(), is(Collections.emptySet()));
 	}
 	
+	@Test
+	public void buildUpdateMaximal() throws Exception {
+		final DynamicConfigUpdate dcu = DynamicConfigUpdate.getBuilder()
+				.withBackendScaling(3)
+				.withBackendUploadScaling(7)
+				.build();
+		
+		assertThat("incorrect set", dcu.toSet(), is(ImmutableMap.of(
+				BACKEND_SCALING_TXT, 3, BACKEND_UPLOAD_SCALING_TXT, 7)));
+		assertThat("incorrect map", dcu.toRemove(), is(Collections.emptySet()));
+	}
+	
+	@Test
+	public void buildUpdateMaximalFromMap() throws Exception {
+		final DynamicConfigUpdate dcu = DynamicConfigUpdate.getBuilder()
+				.withMap(ImmutableMap.of(BACKEND_UPLOAD_SCALING_TXT, 7))
+				.withMap(ImmutableMap.of(BACKEND_SCALING_TXT, 3))
+				.build();
+		
+		assertThat("incorrect set", dcu.toSet(), is(ImmutableMap.of(
+				BACKEND_SCALING_TXT, 3, BACKEND_UPLOAD_SCALING_TXT, 7)));
+		assertThat("incorrect map", dcu.toRemove(), is(Collections.emptySet()));
+	}
+	
 	@Test
 	public void buildUpdateOverrideMap() throws Exception {
 		final DynamicConfigUpdate dcu = DynamicConfigUpdate.getBuilder()
@@ -251,6 +344,19 @@ public class DynamicConfigTest {
 		}
 	}
 	
+	@Test
+	public void updateWithBackendUploadScalingFail() throws Exception {
+		final String err = "backend upload scaling must be > 0";
+		for (final int scaling: new int[] {0, -1000}) {
+			try {
+				DynamicConfigUpdate.getBuilder().withBackendUploadScaling(scaling);
+				fail("expected exception");
+			} catch (Exception got) {
+				TestCommon.assertExceptionCorrect(got, new IllegalArgumentException(err));
+			}
+		}
+	}
+	
 	@Test
 	public void updateWithMapFail() throws Exception {
 		final String err = "backend-file-retrieval-scaling must be an integer > 0";
@@ -262,6 +368,11 @@ public class DynamicConfigTest {
 				ImmutableMap.of(BACKEND_SCALING_TXT, "six"), new IllegalArgumentException(err));
 		failUpdateWithMap(ImmutableMap.of(BACKEND_SCALING_TXT, 1, "ayyy", "fonz", "baar", "foo"),
 				new IllegalArgumentException("Unexpected key in configuration map: ayyy"));
+		final String uperr = "backend-file-upload-scaling must be an integer > 0";
+		failUpdateWithMap(ImmutableMap.of(BACKEND_UPLOAD_SCALING_TXT, -1),
+				new IllegalArgumentException(uperr));
+		failUpdateWithMap(ImmutableMap.of(BACKEND_UPLOAD_SCALING_TXT, "six"),
+				new IllegalArgumentException(uperr));
 		failUpdateWithMap(ImmutableMap.of("ribaldry", 1, "ayyyy", "fonz", "baar", "foo"),
 				new IllegalArgumentException("Unexpected key in configuration map: ayyyy"));
 	}
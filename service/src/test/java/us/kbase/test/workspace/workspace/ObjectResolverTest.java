@@ -31,6 +31,7 @@ import us.kbase.workspace.database.PermissionSet;
 import us.kbase.workspace.database.Reference;
 import us.kbase.workspace.database.ResolvedWorkspaceID;
 import us.kbase.workspace.database.WorkspaceDatabase;
+import us.kbase.workspace.database.WorkspaceIDSet;
 import us.kbase.workspace.database.WorkspaceIdentifier;
 import us.kbase.workspace.database.WorkspaceUser;
 import us.kbase.workspace.database.exceptions.InaccessibleObjectException;
@@ -506,14 +507,54 @@ public class ObjectResolverTest {
 		final Reference pathendref = new Reference("4/1/1");
 		final ObjectIDResolvedWS pathendresfinal = new ObjectIDResolvedWS(rwsi2, 1, 1);
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi2.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
+		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
+		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
 				.withWorkspace(rwsi2, Permission.READ, Permission.NONE)
 				.build());
+		when(wsdb.getObjectReference(set(pathendresws))).thenReturn(ImmutableMap.of(
+				pathendresws, pathendref));
+		when(wsdb.getObjectExistsRef(set(pathendref))).thenReturn(
+				ImmutableMap.of(pathendref, true));
+		
+		final ObjectResolver or = ObjectResolver.getBuilder(wsdb, user)
+				.withObject(objpath).resolve();
+		
+		assertThat("incorrect objects", or.getObjects(), is(Arrays.asList(objpath)));
+		assertThat("incorrect object resolution", or.getObjectResolution(objpath),
+				is(ObjectResolution.PATH));
+		assertThat("incorrect path objects", or.getObjects(true), is(set(objpath)));
+		assertThat("incorrect pathless objects", or.getObjects(false), is(set()));
+		assertThat("incorrect resolved object", or.getResolvedObject(objpath), is(pathendresfinal));
+		assertThat("incorrect path resolved objects", or.getResolvedObjects(true),
+				is(set(pathendresfinal)));
+		assertThat("incorrect pathless resolved objects", or.getResolvedObjects(false), is(set()));
+		assertThat("incorrec ref path", or.getReferencePath(objpath), is(Arrays.asList(
+				pathendref)));
+	}
+	
+	@Test
+	public void searchSingleObjectAccessibleInPublicWorkspace() throws Exception {
+		final WorkspaceDatabase wsdb = mock(WorkspaceDatabase.class);
+		
+		final WorkspaceUser user = new WorkspaceUser("userfoo");
+		final WorkspaceIdentifier wsi2 = new WorkspaceIdentifier("wsfoo2");
+		final ResolvedWorkspaceID rwsi2 = new ResolvedWorkspaceID(4, "wsfoo2", false, false);
+		final ObjectIdentifier objpath = ObjectIdentifier.getBuilder(wsi2).withName("objfoo2")
+				.withLookupRequired(true).build();
+		
+		final ObjectIDResolvedWS pathendresws = new ObjectIDResolvedWS(rwsi2, "objfoo2");
+		final Reference pathendref = new Reference("4/1/1");
+		final ObjectIDResolvedWS pathendresfinal = new ObjectIDResolvedWS(rwsi2, 1, 1);
+		
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(3L, 5L));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.of(rwsi2.getID()));
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi2, Permission.READ, Permission.NONE)
+				.withWorkspace(rwsi2, Permission.NONE, Permission.READ)
 				.build());
 		when(wsdb.getObjectReference(set(pathendresws))).thenReturn(ImmutableMap.of(
 				pathendresws, pathendref));
@@ -550,10 +591,8 @@ public class ObjectResolverTest {
 		final ObjectIDResolvedWS pathendresws = new ObjectIDResolvedWS(rwsi2, "objfoo2");
 		final Reference pathendref = new Reference("4/1/1");
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi1, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi1.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -592,10 +631,8 @@ public class ObjectResolverTest {
 		final ObjectIDResolvedWS pathendresws = new ObjectIDResolvedWS(rwsi2, "objfoo2");
 		final Reference pathendref = new Reference("4/1/1");
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi1, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi1.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -638,10 +675,8 @@ public class ObjectResolverTest {
 		final ObjectIDResolvedWS pathendresws = new ObjectIDResolvedWS(rwsi2, "objfoo2");
 		final Reference pathendref = new Reference("4/1/1");
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi2, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi2.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -680,10 +715,8 @@ public class ObjectResolverTest {
 		final ObjectIDResolvedWS pathendresws = new ObjectIDResolvedWS(rwsi2, "objfoo2");
 		final Reference pathendref = new Reference("4/1/1");
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi2, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi2.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -728,9 +761,8 @@ public class ObjectResolverTest {
 		final Reference pathendref = new Reference("4/1/1");
 		final ObjectIDResolvedWS pathendresfinal = new ObjectIDResolvedWS(rwsi2, 1, 1);
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.empty());
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -769,10 +801,8 @@ public class ObjectResolverTest {
 		final ObjectIDResolvedWS pathendresws = new ObjectIDResolvedWS(rwsi2, "objfoo2");
 		final Reference pathendref = new Reference("4/1/1");
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi2, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi2.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -812,10 +842,8 @@ public class ObjectResolverTest {
 		final ObjectIDResolvedWS pathendresws = new ObjectIDResolvedWS(rwsi2, "objfoo2");
 		final Reference pathendref = new Reference("4/1/1");
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi2, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi2.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -868,10 +896,8 @@ public class ObjectResolverTest {
 		final Reference garbageref2 = new Reference("64/5/1");
 		final Reference garbageref3 = new Reference("67/13/1");
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi1, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi1.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -923,9 +949,8 @@ public class ObjectResolverTest {
 		final ObjectIdentifier objpath = ObjectIdentifier.getBuilder(wsi2).withName("objfoo2")
 				.withLookupRequired(true).build();
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.empty());
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 
 		final Builder or = ObjectResolver.getBuilder(wsdb, user).withObject(objpath);
 		
@@ -945,9 +970,8 @@ public class ObjectResolverTest {
 		final ObjectIdentifier objpath = ObjectIdentifier.getBuilder(wsi2).withName("objfoo2")
 				.withLookupRequired(true).build();
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.empty());
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 
 		final ObjectResolver or = ObjectResolver.getBuilder(wsdb, user).withObject(objpath)
 				.withIgnoreInaccessible(true).resolve();
@@ -984,10 +1008,9 @@ public class ObjectResolverTest {
 		final Reference garbageref2 = new Reference("64/5/1");
 		final Reference garbageref3 = new Reference("67/13/1");
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsireadable, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user))
+				.thenReturn(WorkspaceIDSet.of(rwsireadable.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -1044,10 +1067,9 @@ public class ObjectResolverTest {
 		final Reference garbageref2 = new Reference("64/5/1");
 		final Reference garbageref3 = new Reference("67/13/1");
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsireadable, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user))
+				.thenReturn(WorkspaceIDSet.of(rwsireadable.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -1109,10 +1131,8 @@ public class ObjectResolverTest {
 		final Reference garbageref2 = new Reference("64/5/1");
 		final Reference garbageref3 = new Reference("67/13/1");
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi1, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi1.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -1172,10 +1192,8 @@ public class ObjectResolverTest {
 		final Reference garbageref2 = new Reference("64/5/1");
 		final Reference garbageref3 = new Reference("67/13/1");
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi1, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi1.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -1232,10 +1250,8 @@ public class ObjectResolverTest {
 		
 		final ObjectIDResolvedWS pathendresws = new ObjectIDResolvedWS(rwsi2, "objfoo2");
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi1, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi1.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -1267,10 +1283,8 @@ public class ObjectResolverTest {
 		
 		final ObjectIDResolvedWS pathendresws = new ObjectIDResolvedWS(rwsi2, "objfoo2");
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi1, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi1.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -1304,10 +1318,8 @@ public class ObjectResolverTest {
 		final ObjectIdentifier objpath = ObjectIdentifier.getBuilder(wsi2).withName("objfoo2")
 				.withLookupRequired(true).build();
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi1, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi1.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(Collections.emptyMap());
 		
 		final Builder or = ObjectResolver.getBuilder(wsdb, user).withObject(objpath);
@@ -1332,10 +1344,8 @@ public class ObjectResolverTest {
 		final ObjectIdentifier objpath = ObjectIdentifier.getBuilder(wsi2).withName("objfoo2")
 				.withLookupRequired(true).build();
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi1, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi1.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(Collections.emptyMap());
 		
 		final ObjectResolver or = ObjectResolver.getBuilder(wsdb, user).withObject(objpath)
@@ -1377,9 +1387,8 @@ public class ObjectResolverTest {
 		final Reference garbageref3 = new Reference("67/13/1");
 		
 		//set up
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.empty());
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -1451,9 +1460,8 @@ public class ObjectResolverTest {
 		final Reference garbageref3 = new Reference("67/13/1");
 		
 		//set up
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.empty());
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -1522,9 +1530,8 @@ public class ObjectResolverTest {
 		final Reference garbageref3 = new Reference("67/13/1");
 		
 		//set up
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.empty());
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -1589,10 +1596,8 @@ public class ObjectResolverTest {
 		
 		final ObjectIDResolvedWS pathendresws = new ObjectIDResolvedWS(rwsi2, "objfoo2");
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi1, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi1.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -1625,10 +1630,8 @@ public class ObjectResolverTest {
 		
 		final ObjectIDResolvedWS pathendresws = new ObjectIDResolvedWS(rwsi2, "objfoo2");
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi1, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi1.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(ImmutableMap.of(wsi2, rwsi2));
 		when(wsdb.getPermissions(user, set(rwsi2))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
@@ -1662,10 +1665,8 @@ public class ObjectResolverTest {
 		final ObjectIdentifier objpath = ObjectIdentifier.getBuilder(wsi2).withName("objfoo2")
 				.withLookupRequired(true).build();
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi1, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi1.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(Collections.emptyMap());
 		
 		final ObjectResolver or = ObjectResolver.getBuilder(wsdb, user).withObject(objpath)
@@ -1695,10 +1696,8 @@ public class ObjectResolverTest {
 		final ObjectIdentifier objpath = ObjectIdentifier.getBuilder(wsi2).withName("objfoo2")
 				.withLookupRequired(true).build();
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi1, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi1.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi2), true)).thenReturn(Collections.emptyMap());
 		
 		final Builder or = ObjectResolver.getBuilder(wsdb, user).withObject(objpath)
@@ -1730,10 +1729,8 @@ public class ObjectResolverTest {
 		final Reference topref = new Reference("3/27/1");
 		final ObjectIDResolvedWS objres = new ObjectIDResolvedWS(rwsi, 24, 1);
 		
-		when(wsdb.getPermissions(user, Permission.READ, false)).thenReturn(
-				PermissionSet.getBuilder(user, new AllUsers('*'))
-				.withWorkspace(rwsi, Permission.READ, Permission.NONE)
-				.build());
+		when(wsdb.getUserReadableWorkspaceIDs(user)).thenReturn(WorkspaceIDSet.of(rwsi.getID()));
+		when(wsdb.getPublicWorkspaceIDs()).thenReturn(WorkspaceIDSet.empty());
 		when(wsdb.resolveWorkspaces(set(wsi), true)).thenReturn(ImmutableMap.of(wsi, rwsi));
 		when(wsdb.getPermissions(user, set(rwsi))).thenReturn(
 				PermissionSet.getBuilder(user, new AllUsers('*'))
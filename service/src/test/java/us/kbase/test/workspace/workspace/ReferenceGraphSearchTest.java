@@ -3,7 +3,10 @@ package us.kbase.test.workspace.workspace;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
+import static us.kbase.test.common.TestCommon.set;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -12,13 +15,17 @@ import java.util.Set;
 
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
 
 import us.kbase.test.common.TestCommon;
 import us.kbase.workspace.database.Reference;
 import us.kbase.workspace.database.refsearch.ReferenceGraphSearch;
+import us.kbase.workspace.database.refsearch.ReferenceGraphSearch.SearchMode;
 import us.kbase.workspace.database.refsearch.ReferenceGraphTopologyProvider;
 import us.kbase.workspace.database.refsearch.ReferenceProviderException;
+import us.kbase.workspace.database.refsearch.ReferenceSearchFailedException;
+import us.kbase.workspace.database.refsearch.ReferenceSearchMaximumSizeExceededException;
 
 public class ReferenceGraphSearchTest {
 
@@ -45,6 +52,37 @@ public class ReferenceGraphSearchTest {
 		}
 	}
 	
+	/* Provides the topology from a fixed graph and records the requested references. */
+	private static class GraphTopologyProvider implements ReferenceGraphTopologyProvider {
+		
+		private final Map<Reference, Map<Reference, Boolean>> graph;
+		private final List<Set<Reference>> requests = new LinkedList<>();
+		
+		public GraphTopologyProvider(final Map<Reference, Map<Reference, Boolean>> graph) {
+			this.graph = graph;
+		}
+		
+		@Override
+		public Map<Reference, Map<Reference, Boolean>> getAssociatedReferences(
+				final Set<Reference> sourceRefs) {
+			requests.add(sourceRefs);
+			final Map<Reference, Map<Reference, Boolean>> ret = new HashMap<>();
+			for (final Reference r: sourceRefs) {
+				ret.put(r, graph.getOrDefault(r, Collections.emptyMap()));
+			}
+			return ret;
+		}
+	}
+	
+	private static final Reference A = new Reference(1, 1, 1);
+	private static final Reference B = new Reference(1, 2, 1);
+	private static final Reference C = new Reference(2, 1, 1);
+	private static final Reference E = new Reference(2, 2, 1);
+	private static final Reference X = new Reference(3, 1, 1);
+	private static final Reference Y = new Reference(3, 2, 1);
+	private static final Reference Z = new Reference(3, 3, 1);
+	private static final Reference T = new Reference(4, 1, 1);
+	
 	private void failCreate(
 			final Set<Reference> startingRefs,
 			final ReferenceGraphTopologyProvider refProvider,
@@ -102,4 +140,133 @@ public class ReferenceGraphSearchTest {
 			assertThat("incorrect exception message", e.getMessage(), is("No path for ref 1/1/1"));
 		}
 	}
+	
+	@Test
+	public void failConstructNullSearchMode() throws Exception {
+		try {
+			new ReferenceGraphSearch(set(A), new TestReferenceGraphTopologyProvider(null), 1,
+					false, null);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new NullPointerException("searchMode"));
+		}
+	}
+	
+	@Test
+	public void sharedFrontierDiamond() throws Exception {
+		final GraphTopologyProvider p = new GraphTopologyProvider(ImmutableMap.of(
+				A, ImmutableMap.of(C, false),
+				B, ImmutableMap.of(C, false),
+				C, ImmutableMap.of(T, true)));
+		final ReferenceGraphSearch graph = new ReferenceGraphSearch(
+				set(A, B), p, 3, true, SearchMode.SHARED_FRONTIER);
+		
+		assertThat("incorrect path", graph.getPath(A), is(Arrays.asList(T, C, A)));
+		assertThat("incorrect path", graph.getPath(B), is(Arrays.asList(T, C, B)));
+		assertThat("incorrect requests", p.requests, is(Arrays.asList(set(A, B), set(C))));
+	}
+	
+	@Test
+	public void sharedFrontierMergeIntoCompletedSearch() throws Exception {
+		// B's search reaches C after A's search has found a path through C
+		final GraphTopologyProvider p = new GraphTopologyProvider(ImmutableMap.of(
+				A, ImmutableMap.of(C, false),
+				B, ImmutableMap.of(E, false),
+				C, ImmutableMap.of(T, true),
+				E, ImmutableMap.of(C, false)));
+		final ReferenceGraphSearch graph = new ReferenceGraphSearch(
+				set(A, B), p, 4, true, SearchMode.SHARED_FRONTIER);
+		
+		assertThat("incorrect path", graph.getPath(A), is(Arrays.asList(T, C, A)));
+		assertThat("incorrect path", graph.getPath(B), is(Arrays.asList(T, C, E, B)));
+		assertThat("incorrect requests", p.requests, is(Arrays.asList(set(A, B), set(C, E))));
+	}
+	
+	@Test
+	public void sharedFrontierTargetOnPathOfOtherTarget() throws Exception {
+		final GraphTopologyProvider p = new GraphTopologyProvider(ImmutableMap.of(
+				A, ImmutableMap.of(B, false),
+				B, ImmutableMap.of(C, false),
+				C, ImmutableMap.of(T, true)));
+		final ReferenceGraphSearch graph = new ReferenceGraphSearch(
+				set(A, B), p, 3, true, SearchMode.SHARED_FRONTIER);
+		
+		assertThat("incorrect path", graph.getPath(A), is(Arrays.asList(T, C, B, A)));
+		assertThat("incorrect path", graph.getPath(B), is(Arrays.asList(T, C, B)));
+		assertThat("incorrect requests", p.requests, is(Arrays.asList(set(A, B), set(C))));
+	}
+	
+	@Test
+	public void sharedFrontierTerminalFoundBeforeLimit() throws Exception {
+		final GraphTopologyProvider p = new GraphTopologyProvider(ImmutableMap.of(
+				A, ImmutableMap.of(X, false, Y, false, Z, false, T, true)));
+		final ReferenceGraphSearch graph = new ReferenceGraphSearch(
+				set(A), p, 2, true, SearchMode.SHARED_FRONTIER);
+		
+		assertThat("incorrect path", graph.getPath(A), is(Arrays.asList(T, A)));
+		
+		// the independent tree search counts all the returned references first
+		try {
+			new ReferenceGraphSearch(set(A), p, 2, true, SearchMode.INDEPENDENT_TREES);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got,
+					new ReferenceSearchMaximumSizeExceededException(
+							"Reached reference search limit"));
+		}
+	}
+	
+	@Test
+	public void sharedFrontierLimitExceeded() throws Exception {
+		final GraphTopologyProvider p = new GraphTopologyProvider(ImmutableMap.of(
+				A, ImmutableMap.of(X, false, Y, false),
+				Y, ImmutableMap.of(T, true)));
+		try {
+			new ReferenceGraphSearch(set(A), p, 2, true, SearchMode.SHARED_FRONTIER);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got,
+					new ReferenceSearchMaximumSizeExceededException(
+							"Reached reference search limit"));
+		}
+	}
+	
+	@Test
+	public void sharedFrontierLimitExceededNoThrow() throws Exception {
+		// the search continues with the part of the frontier that fits in the limit
+		final GraphTopologyProvider p = new GraphTopologyProvider(ImmutableMap.of(
+				A, ImmutableMap.of(X, false, Y, false),
+				Y, ImmutableMap.of(T, true)));
+		final ReferenceGraphSearch graph = new ReferenceGraphSearch(
+				set(A), p, 2, false, SearchMode.SHARED_FRONTIER);
+		
+		assertThat("impossible path found", graph.isPathFound(A), is(false));
+		assertThat("incorrect requests", p.requests, is(Arrays.asList(set(A), set(X))));
+		
+		final GraphTopologyProvider p2 = new GraphTopologyProvider(ImmutableMap.of(
+				A, ImmutableMap.of(Y, false, X, false),
+				Y, ImmutableMap.of(T, true)));
+		final ReferenceGraphSearch graph2 = new ReferenceGraphSearch(
+				set(A), p2, 2, false, SearchMode.SHARED_FRONTIER);
+		
+		assertThat("incorrect path", graph2.getPath(A), is(Arrays.asList(T, Y, A)));
+		assertThat("incorrect requests", p2.requests, is(Arrays.asList(set(A), set(Y))));
+	}
+	
+	@Test
+	public void sharedFrontierFailSearch() throws Exception {
+		final GraphTopologyProvider p = new GraphTopologyProvider(ImmutableMap.of(
+				A, ImmutableMap.of(C, false),
+				B, ImmutableMap.of(T, true)));
+		try {
+			new ReferenceGraphSearch(set(A, B), p, 10, true, SearchMode.SHARED_FRONTIER);
+			fail("expected exception");
+		} catch (ReferenceSearchFailedException got) {
+			assertThat("incorrect ref", got.getFailedReference(), is(A));
+		}
+		final ReferenceGraphSearch graph = new ReferenceGraphSearch(
+				set(A, B), p, 10, false, SearchMode.SHARED_FRONTIER);
+		assertThat("impossible path found", graph.isPathFound(A), is(false));
+		assertThat("incorrect path", graph.getPath(B), is(Arrays.asList(T, B)));
+	}
 }
@@ -58,6 +58,30 @@ public class WorkspaceConstructorTest {
 		// lots of other tests will fail
 	}
 	
+	@Test
+	public void construct6() throws Exception {
+		final WorkspaceDatabase db = mock(WorkspaceDatabase.class);
+		final TypedObjectValidator tv = mock(TypedObjectValidator.class);
+		final TempFilesManager tfm = mock(TempFilesManager.class);
+		final ResourceUsageConfiguration cfg = new ResourceUsageConfigurationBuilder()
+				.withMaxObjectSize(3).build();
+		final WorkspaceEventListener l = mock(WorkspaceEventListener.class);
+		
+		final Workspace ws = new Workspace(db, cfg, tv, tfm, Arrays.asList(l), 4);
+		
+		assertThat("incorrect resource cfg", ws.getResourceConfig(), is(cfg));
+		assertThat("incorrect max search count", ws.getMaximumObjectSearchCount(), is(10000));
+		assertThat("incorrect tfm", ws.getTempFilesManager(), is(tfm));
+		assertThat("incorrect save threads", ws.getSaveThreadCount(), is(4));
+		
+		final Workspace ws2 = new Workspace(db, cfg, tv, tfm, Arrays.asList(l));
+		assertThat("incorrect save threads", ws2.getSaveThreadCount(), is(1));
+		
+		ws.shutdown();
+		ws.shutdown(); // noop
+		ws2.shutdown(); // noop, there's no thread pool
+	}
+	
 	@Test
 	public void construct4Fail() throws Exception {
 		final WorkspaceDatabase db = mock(WorkspaceDatabase.class);
@@ -91,6 +115,26 @@ public class WorkspaceConstructorTest {
 		failConstruct(db, cfg, tv, tfm, Arrays.asList(wel, null),
 				new NullPointerException("null item in listeners"));
 	}
+	
+	@Test
+	public void construct6Fail() throws Exception {
+		final WorkspaceDatabase db = mock(WorkspaceDatabase.class);
+		final TypedObjectValidator tv = mock(TypedObjectValidator.class);
+		final ResourceUsageConfiguration cfg = new ResourceUsageConfigurationBuilder()
+				.withMaxObjectSize(3).build();
+		final TempFilesManager tfm = mock(TempFilesManager.class);
+		final List<WorkspaceEventListener> l = Arrays.asList(mock(WorkspaceEventListener.class));
+		
+		for (final int threads: Arrays.asList(0, -1)) {
+			try {
+				new Workspace(db, cfg, tv, tfm, l, threads);
+				fail("expected exception");
+			} catch (Exception got) {
+				TestCommon.assertExceptionCorrect(got, new IllegalArgumentException(
+						"saveThreads must be > 0"));
+			}
+		}
+	}
 
 	private void failConstruct(
 			final WorkspaceDatabase db,
@@ -0,0 +1,102 @@
+package us.kbase.test.workspace.workspace;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import nl.jqno.equalsverifier.EqualsVerifier;
+import us.kbase.test.common.TestCommon;
+import us.kbase.workspace.database.WorkspaceIDSet;
+
+public class WorkspaceIDSetTest {
+
+	@Test
+	public void equals() {
+		EqualsVerifier.forClass(WorkspaceIDSet.class).usingGetClass().verify();
+	}
+
+	@Test
+	public void empty() {
+		for (final WorkspaceIDSet s: Arrays.asList(WorkspaceIDSet.empty(), WorkspaceIDSet.of(),
+				WorkspaceIDSet.of(Collections.emptyList()))) {
+			assertThat("incorrect empty", s.isEmpty(), is(true));
+			assertThat("incorrect size", s.size(), is(0));
+			assertThat("incorrect contains", s.contains(1), is(false));
+			assertThat("incorrect ids", s.stream().count(), is(0L));
+			assertThat("incorrect toString", s.toString(), is("WorkspaceIDSet []"));
+		}
+	}
+
+	@Test
+	public void ofArray() {
+		final WorkspaceIDSet s = WorkspaceIDSet.of(9, 7, 3, 5, 9, 3);
+		assertThat("incorrect empty", s.isEmpty(), is(false));
+		assertThat("incorrect size", s.size(), is(4));
+		assertThat("incorrect ids", ids(s), is(Arrays.asList(3L, 5L, 7L, 9L)));
+		assertThat("incorrect contains", s.contains(7), is(true));
+		assertThat("incorrect contains", s.contains(6), is(false));
+		assertThat("incorrect toString", s.toString(), is("WorkspaceIDSet [3, 5, 7, 9]"));
+	}
+
+	@Test
+	public void ofCollection() {
+		final WorkspaceIDSet s = WorkspaceIDSet.of(Arrays.asList(9L, 7L, 3L, 5L, 9L, 3L));
+		assertThat("incorrect size", s.size(), is(4));
+		assertThat("incorrect ids", ids(s), is(Arrays.asList(3L, 5L, 7L, 9L)));
+		assertThat("incorrect equals", s, is(WorkspaceIDSet.of(3, 5, 7, 9)));
+	}
+
+	@Test
+	public void union() {
+		final WorkspaceIDSet s1 = WorkspaceIDSet.of(1, 4, 6, 10);
+		final WorkspaceIDSet s2 = WorkspaceIDSet.of(2, 4, 5, 10, 11);
+		assertThat("incorrect union", s1.union(s2), is(WorkspaceIDSet.of(1, 2, 4, 5, 6, 10, 11)));
+		assertThat("incorrect union", s2.union(s1), is(WorkspaceIDSet.of(1, 2, 4, 5, 6, 10, 11)));
+		assertThat("incorrect union", s1.union(WorkspaceIDSet.empty()), is(s1));
+		assertThat("incorrect union", WorkspaceIDSet.empty().union(s2), is(s2));
+		assertThat("incorrect union", s1.union(s1), is(s1));
+	}
+
+	@Test
+	public void failOf() {
+		failOf(null, new NullPointerException("ids"));
+		failOf(Arrays.asList(1L, null), new NullPointerException("null item in ids"));
+		try {
+			WorkspaceIDSet.of((long[]) null);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new NullPointerException("ids"));
+		}
+	}
+
+	private void failOf(final Collection<Long> ids, final Exception expected) {
+		try {
+			WorkspaceIDSet.of(ids);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, expected);
+		}
+	}
+
+	@Test
+	public void failUnion() {
+		try {
+			WorkspaceIDSet.of(1).union(null);
+			fail("expected exception");
+		} catch (Exception got) {
+			TestCommon.assertExceptionCorrect(got, new NullPointerException("other"));
+		}
+	}
+
+	private static List<Long> ids(final WorkspaceIDSet s) {
+		return s.stream().boxed().collect(Collectors.toList());
+	}
+}
@@ -38,6 +38,7 @@ import us.kbase.typedobj.idref.IdReferenceHandlerSetFactory;
 import us.kbase.typedobj.idref.IdReferenceHandlerSetFactoryBuilder;
 import us.kbase.workspace.database.AllUsers;
 import us.kbase.workspace.database.CopyResult;
+import us.kbase.workspace.database.DynamicConfig;
 import us.kbase.workspace.database.MetadataUpdate;
 import us.kbase.workspace.database.ObjectIDNoWSNoVer;
 import us.kbase.workspace.database.ObjectIDResolvedWS;
@@ -1006,8 +1007,10 @@ public class WorkspaceListenerTest {
 		when(vto2.getRelabeledSize()).thenReturn(7L);
 		
 		when(m.db.getWorkspaceInformation(user, rwsi)).thenReturn(wsinfo);
+		when(m.db.getConfig()).thenReturn(
+				DynamicConfig.getBuilder().withBackendUploadScaling(3).build());
 		when(m.db.saveObjects(eq(user), eq(rwsi),
-				argThat(new SaveObjectsAnswerMatcher(Arrays.asList(rso1, rso2)))))
+				argThat(new SaveObjectsAnswerMatcher(Arrays.asList(rso1, rso2))), eq(3)))
 				.thenReturn(Arrays.asList(oi1, oi2));
 		
 		final Workspace ws = new Workspace(m.db, m.cfg, m.tv, m.tfm, Arrays.asList(m.l1));
@@ -1091,8 +1094,10 @@ public class WorkspaceListenerTest {
 		when(vto2.getRelabeledSize()).thenReturn(7L);
 		
 		when(m.db.getWorkspaceInformation(user, rwsi)).thenReturn(wsinfo);
+		when(m.db.getConfig()).thenReturn(
+				DynamicConfig.getBuilder().withBackendUploadScaling(3).build());
 		when(m.db.saveObjects(eq(user), eq(rwsi),
-				argThat(new SaveObjectsAnswerMatcher(Arrays.asList(rso1, rso2)))))
+				argThat(new SaveObjectsAnswerMatcher(Arrays.asList(rso1, rso2))), eq(3)))
 				.thenReturn(Arrays.asList(oi1, oi2));
 		
 		final Workspace ws = new Workspace(m.db, m.cfg, m.tv, m.tfm, Arrays.asList(m.l1, m.l2));
@@ -9,6 +9,7 @@ import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static us.kbase.test.common.TestCommon.list;
@@ -506,6 +507,56 @@ public class WorkspaceUnitTest {
 				.addDataToObjects(any(), any(ByteArrayFileCacheManager.class), eq(scaling));
 	}
 	
+	@Test
+	public void getObjectsCachesConfig() throws Exception {
+		final TestMocks mocks = initMocks();
+
+		final WorkspaceUser u = new WorkspaceUser("u1");
+		final WorkspaceIdentifier wsi = new WorkspaceIdentifier(1);
+		final ResolvedWorkspaceID rwsi = new ResolvedWorkspaceID(1, "foo", false, false);
+		final List<ObjectIdentifier> objs = list(
+				ObjectIdentifier.getBuilder(wsi).withID(1L).build());
+		final Set<ObjectIDResolvedWS> robjs = set(new ObjectIDResolvedWS(rwsi, 1));
+		final Map<ObjectIDResolvedWS, WorkspaceObjectData.Builder> data = new HashMap<>();
+		data.put(
+				new ObjectIDResolvedWS(rwsi, 1),
+				WorkspaceObjectData.getBuilder(
+						ObjectInformation.getBuilder()
+							.withObjectID(1)
+							.withObjectName("foo")
+							.withType(new AbsoluteTypeDefId(new TypeDefName("Foo.Bar"), 2, 1))
+							.withSavedDate(new Date())
+							.withVersion(1)
+							.withSavedBy(u)
+							.withWorkspace(rwsi)
+							.withChecksum("chcksm")
+							.withSize(12)
+							.build(),
+						basicProv(u))
+				);
+		when(mocks.db.resolveWorkspaces(set(wsi), false)).thenReturn(ImmutableMap.of(wsi, rwsi));
+		when(mocks.db.getPermissions(null, set(rwsi))).thenReturn(PermissionSet.getBuilder(
+				null, Workspace.ALL_USERS)
+				.withWorkspace(rwsi, Permission.NONE, Permission.READ)
+				.build());
+		when(mocks.db.getObjects(robjs, true, false, true)).thenReturn(data);
+		when(mocks.db.getConfig()).thenReturn(
+				DynamicConfig.getBuilder().withBackendScaling(3).build(),
+				DynamicConfig.getBuilder().withBackendScaling(5).build());
+
+		mocks.ws.getObjects(null, objs, false, false, false);
+		mocks.ws.getObjects(null, objs, false, false, false);
+		// setting the config clears the cached config
+		mocks.ws.setConfig(DynamicConfigUpdate.getBuilder().withBackendScaling(5).build());
+		mocks.ws.getObjects(null, objs, false, false, false);
+
+		verify(mocks.db, times(2)).getConfig();
+		verify(mocks.db, times(2))
+				.addDataToObjects(any(), any(ByteArrayFileCacheManager.class), eq(3));
+		verify(mocks.db)
+				.addDataToObjects(any(), any(ByteArrayFileCacheManager.class), eq(5));
+	}
+	
 	@Test
 	public void getObjects10K() throws Exception {
 		final TestMocks mocks = initMocks();